@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Compares the results of a run of the micro benchmarks with a baseline, and prints a report 
+ * that can be attached to the review of a change.
+ * <p>
+ * A benchmark is reported as a regression (or improvement) if its time per operation changed by more than 
+ * the threshold (default {@value #DEFAULT_THRESHOLD_PERCENT}%) <em>and</em> by more than the sum of the standard deviations 
+ * of the two runs, so that noisy benchmarks do not raise false alarms. 
+ * The allocated bytes per operation are compared with the same threshold, since they are not noisy.
+ * <p>
+ * Usage: <code>BenchmarkComparison &lt;baselineFile&gt; &lt;resultsFile&gt; [thresholdPercent]</code>. 
+ * The exit code is 2 if regressions were found, which allows to use it in scripts.
+ */
+public class BenchmarkComparison {
+
+	public static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+
+	public static enum Verdict {
+		SAME(""), 
+		REGRESSION("REGRESSION"), 
+		IMPROVEMENT("improvement"), 
+		MORE_ALLOCATION("more allocation"),
+		NEW("new"),
+		MISSING("missing");
+
+		private final String text;
+
+		private Verdict(String text) {
+			this.text = text;
+		}
+
+		public String getText() {
+			return text;
+		}
+	}
+
+	/**
+	 * One line of the comparison report.
+	 */
+	public static class Entry {
+		private final String name;
+		private final BenchmarkResult baseline;
+		private final BenchmarkResult current;
+		private final Verdict verdict;
+
+		Entry(String name, BenchmarkResult baseline, BenchmarkResult current, Verdict verdict) {
+			this.name = name;
+			this.baseline = baseline;
+			this.current = current;
+			this.verdict = verdict;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the baseline result, or <code>null</code> for a new benchmark.
+		 */
+		public BenchmarkResult getBaseline() {
+			return baseline;
+		}
+
+		/**
+		 * @return the current result, or <code>null</code> for a benchmark that was not run.
+		 */
+		public BenchmarkResult getCurrent() {
+			return current;
+		}
+
+		public Verdict getVerdict() {
+			return verdict;
+		}
+
+		/**
+		 * @return the relative change of the time per operation in percent, or NaN.
+		 */
+		public double getChangePercent() {
+			if (baseline == null || current == null || baseline.getNanosPerOp() <= 0) {
+				return Double.NaN;
+			}
+			return 100.0 * (current.getNanosPerOp() - baseline.getNanosPerOp()) / baseline.getNanosPerOp();
+		}
+	}
+
+	private final double thresholdPercent;
+
+	public BenchmarkComparison(double thresholdPercent) {
+		this.thresholdPercent = thresholdPercent;
+	}
+
+	/**
+	 * @return one entry for each benchmark of the baseline or of the current results, baseline benchmarks first.
+	 */
+	public List<Entry> compare(BenchmarkResults baseline, BenchmarkResults current) {
+		Set<String> names = new LinkedHashSet<String>(baseline.getNames());
+		names.addAll(current.getNames());
+		List<Entry> ret = new ArrayList<Entry>(names.size());
+		for (String name : names) {
+			BenchmarkResult base = baseline.get(name);
+			BenchmarkResult cur = current.get(name);
+			ret.add(new Entry(name, base, cur, judge(base, cur)));
+		}
+		return ret;
+	}
+
+	Verdict judge(BenchmarkResult base, BenchmarkResult cur) {
+		if (base == null) {
+			return Verdict.NEW;
+		}
+		if (cur == null) {
+			return Verdict.MISSING;
+		}
+		double diff = cur.getNanosPerOp() - base.getNanosPerOp();
+		double minDiff = Math.max(base.getNanosPerOp() * thresholdPercent / 100.0, base.getStdDevNanos() + cur.getStdDevNanos());
+		if (diff > minDiff) {
+			return Verdict.REGRESSION;
+		}
+		if (-diff > minDiff) {
+			return Verdict.IMPROVEMENT;
+		}
+		if (base.getBytesPerOp() >= 0 && cur.getBytesPerOp() >= 0 
+				&& cur.getBytesPerOp() - base.getBytesPerOp() > Math.max(base.getBytesPerOp() * thresholdPercent / 100.0, 8)) {
+			return Verdict.MORE_ALLOCATION;
+		}
+		return Verdict.SAME;
+	}
+
+	/**
+	 * Prints the comparison as a table.
+	 * @return the number of regressions.
+	 */
+	public int printReport(List<Entry> entries, BenchmarkResults baseline, BenchmarkResults current, PrintStream out) {
+		out.println("Baseline: " + baseline.getRunInfo());
+		out.println("Current:  " + current.getRunInfo());
+		out.println(String.format(Locale.US, "Threshold: %.1f%% (and more than the sum of the standard deviations)", thresholdPercent));
+		out.println(String.format(Locale.US, "%-50s %14s %14s %9s %12s %12s  %s", 
+				"benchmark", "base ns/op", "ns/op", "change", "base B/op", "B/op", "verdict"));
+		int regressions = 0;
+		for (Entry entry : entries) {
+			BenchmarkResult base = entry.getBaseline();
+			BenchmarkResult cur = entry.getCurrent();
+			double change = entry.getChangePercent();
+			out.println(String.format(Locale.US, "%-50s %14s %14s %9s %12s %12s  %s", 
+					entry.getName(), 
+					( base != null ? String.format(Locale.US, "%.1f", base.getNanosPerOp()) : "-" ),
+					( cur != null ? String.format(Locale.US, "%.1f", cur.getNanosPerOp()) : "-" ),
+					( Double.isNaN(change) ? "-" : String.format(Locale.US, "%+.1f%%", change) ),
+					( base != null && base.getBytesPerOp() >= 0 ? String.format(Locale.US, "%.0f", base.getBytesPerOp()) : "-" ),
+					( cur != null && cur.getBytesPerOp() >= 0 ? String.format(Locale.US, "%.0f", cur.getBytesPerOp()) : "-" ),
+					entry.getVerdict().getText()));
+			if (entry.getVerdict() == Verdict.REGRESSION) {
+				regressions++;
+			}
+		}
+		out.println(regressions + " regression(s) in " + entries.size() + " benchmarks.");
+		return regressions;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: BenchmarkComparison <baselineFile> <resultsFile> [thresholdPercent]");
+			System.exit(1);
+		}
+		double threshold = ( args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT );
+		BenchmarkResults baseline = BenchmarkResults.read(new File(args[0]));
+		BenchmarkResults current = BenchmarkResults.read(new File(args[1]));
+		BenchmarkComparison comparison = new BenchmarkComparison(threshold);
+		int regressions = comparison.printReport(comparison.compare(baseline, current), baseline, current, System.out);
+		System.exit(regressions > 0 ? 2 : 0);
+	}
+}
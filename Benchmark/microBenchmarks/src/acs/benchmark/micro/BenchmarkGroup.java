@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro;
+
+import java.util.List;
+
+/**
+ * The benchmarks of one library class, which share their state and payloads (like a JMH <code>@State</code> class).
+ * <p>
+ * {@link #setUp()} is called once before the benchmarks of the group run, {@link #tearDown()} once after them.
+ * {@link #getBenchmarks()} may be called before <code>setUp</code>, so the benchmarks should access the state 
+ * of the group only when they run.
+ * Groups must not need an ORB with network access, a manager or other ACS services, 
+ * so that they can run on a laptop.
+ */
+public abstract class BenchmarkGroup {
+
+	private final String name;
+
+	protected BenchmarkGroup(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the name of the group, usually the simple name of the benchmarked class.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public void setUp() throws Exception {
+	}
+
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * @return the benchmarks of this group, in the order in which they should run.
+	 */
+	public abstract List<MicroBenchmark> getBenchmarks();
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro;
+
+import java.util.Locale;
+
+/**
+ * The result of one benchmark: mean time per operation over the measurement iterations, 
+ * its standard deviation, and the mean number of bytes allocated per operation by the benchmark thread.
+ */
+public class BenchmarkResult {
+
+	private final String name;
+	private final double nanosPerOp;
+	private final double stdDevNanos;
+	private final double bytesPerOp;
+	private final int iterations;
+
+	/**
+	 * @param name  qualified name <code>group.benchmark</code>
+	 * @param nanosPerOp  mean time per operation
+	 * @param stdDevNanos  standard deviation of the time per operation between the iterations
+	 * @param bytesPerOp  allocated bytes per operation, or -1 if the JVM cannot measure it
+	 * @param iterations  number of measurement iterations
+	 */
+	public BenchmarkResult(String name, double nanosPerOp, double stdDevNanos, double bytesPerOp, int iterations) {
+		this.name = name;
+		this.nanosPerOp = nanosPerOp;
+		this.stdDevNanos = stdDevNanos;
+		this.bytesPerOp = bytesPerOp;
+		this.iterations = iterations;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getNanosPerOp() {
+		return nanosPerOp;
+	}
+
+	public double getStdDevNanos() {
+		return stdDevNanos;
+	}
+
+	public double getBytesPerOp() {
+		return bytesPerOp;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	public double getOpsPerSecond() {
+		return ( nanosPerOp > 0 ? 1e9 / nanosPerOp : 0 );
+	}
+
+	/**
+	 * @return the result as one line of a results file, see {@link BenchmarkResults}.
+	 */
+	String toLine() {
+		return String.format(Locale.US, "%s\t%.3f\t%.3f\t%.1f\t%d", name, nanosPerOp, stdDevNanos, bytesPerOp, iterations);
+	}
+
+	/**
+	 * Parses a line written by {@link #toLine()}.
+	 * @throws IllegalArgumentException if the line is malformed.
+	 */
+	static BenchmarkResult fromLine(String line) {
+		String[] fields = line.split("\t");
+		if (fields.length != 5) {
+			throw new IllegalArgumentException("Expected 5 tab-separated fields: " + line);
+		}
+		try {
+			return new BenchmarkResult(fields[0], Double.parseDouble(fields[1]), Double.parseDouble(fields[2]), 
+					Double.parseDouble(fields[3]), Integer.parseInt(fields[4]));
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid number in line: " + line, ex);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.US, "%-50s %14.1f ns/op +- %10.1f %14.0f ops/s %12s", 
+				name, nanosPerOp, stdDevNanos, getOpsPerSecond(), 
+				( bytesPerOp >= 0 ? String.format(Locale.US, "%.0f B/op", bytesPerOp) : "" ));
+	}
+}
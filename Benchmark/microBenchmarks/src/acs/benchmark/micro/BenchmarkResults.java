@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of one run of the micro benchmarks, which can be stored as a baseline and compared 
+ * with later runs using {@link BenchmarkComparison}.
+ * <p>
+ * The file format is plain text, to be easily diffed and kept under version control:
+ * <ul>
+ *   <li>Lines starting with <code>#</code> are comments. 
+ *       Comments of the form <code># key=value</code> describe the run (JVM, host, settings) 
+ *       and are read back as {@link #getRunInfo()}.
+ *   <li>Each other line is the result of one benchmark with tab-separated fields
+ *       <code>name  ns/op  stddev-ns  bytes/op  iterations</code>, see {@link BenchmarkResult}.
+ * </ul>
+ */
+public class BenchmarkResults {
+
+	public static final String FILE_HEADER = "# ACS micro benchmark results";
+
+	private final Map<String, String> runInfo = new LinkedHashMap<String, String>();
+
+	/**
+	 * key = benchmark name
+	 */
+	private final Map<String, BenchmarkResult> results = new LinkedHashMap<String, BenchmarkResult>();
+
+	public void putRunInfo(String key, String value) {
+		runInfo.put(key, value);
+	}
+
+	public Map<String, String> getRunInfo() {
+		return runInfo;
+	}
+
+	public void add(BenchmarkResult result) {
+		results.put(result.getName(), result);
+	}
+
+	/**
+	 * @return the result of the given benchmark, or <code>null</code> if it was not run.
+	 */
+	public BenchmarkResult get(String name) {
+		return results.get(name);
+	}
+
+	public Collection<BenchmarkResult> getResults() {
+		return results.values();
+	}
+
+	public void write(File file) throws IOException {
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.println(FILE_HEADER);
+			for (Map.Entry<String, String> entry : runInfo.entrySet()) {
+				writer.println("# " + entry.getKey() + "=" + entry.getValue());
+			}
+			writer.println("# benchmark\tns/op\tstddev-ns\tbytes/op\titerations");
+			for (BenchmarkResult result : results.values()) {
+				writer.println(result.toLine());
+			}
+		} finally {
+			writer.close();
+		}
+		if (writer.checkError()) {
+			throw new IOException("Failed to write " + file);
+		}
+	}
+
+	public static BenchmarkResults read(File file) throws IOException {
+		BenchmarkResults ret = new BenchmarkResults();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				if (line.startsWith("#")) {
+					int pos = line.indexOf('=');
+					if (pos > 0) {
+						ret.putRunInfo(line.substring(1, pos).trim(), line.substring(pos + 1).trim());
+					}
+					continue;
+				}
+				try {
+					ret.add(BenchmarkResult.fromLine(line));
+				} catch (IllegalArgumentException ex) {
+					throw new IOException(file + ":" + lineNumber + ": " + ex.getMessage());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the names of all benchmarks, in the order of the run.
+	 */
+	public List<String> getNames() {
+		return new ArrayList<String>(results.keySet());
+	}
+}
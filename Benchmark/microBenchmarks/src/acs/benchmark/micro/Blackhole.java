@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro;
+
+/**
+ * Consumes the results of benchmarked operations, so that the JIT compiler cannot eliminate the operations as dead code.
+ * <p>
+ * Same idea as the JMH <code>Blackhole</code>, in a simpler form: the values are folded into a field 
+ * that the runner reads after each iteration.
+ */
+public final class Blackhole {
+
+	private int intSink;
+	private long longSink;
+	private Object objectSink;
+
+	public void consume(Object obj) {
+		// keeps a reference only now and then, to not keep all results alive
+		if (obj != null && (System.identityHashCode(obj) & 0xFFFF) == 0) {
+			objectSink = obj;
+		}
+		intSink += (obj == null ? 0 : 1);
+	}
+
+	public void consume(boolean b) {
+		intSink += (b ? 1 : 0);
+	}
+
+	public void consume(int i) {
+		intSink += i;
+	}
+
+	public void consume(long l) {
+		longSink += l;
+	}
+
+	/**
+	 * Returns a value that depends on all consumed values, to be printed or discarded by the runner.
+	 */
+	int getDigest() {
+		return intSink + (int) longSink + (objectSink == null ? 0 : 1);
+	}
+}
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro;
+
+/**
+ * A single benchmarked operation, similar to a method annotated with <code>@Benchmark</code> in JMH.
+ * <p>
+ * The runner calls {@link #run(Blackhole)} in a loop, so one call should do one realistic unit of work
+ * (format one log record, parse one XML record, etc.). Results should be passed to the blackhole.
+ */
+public interface MicroBenchmark {
+
+	/**
+	 * @return the name of the operation, unique within its {@link BenchmarkGroup}.
+	 */
+	String getName();
+
+	void run(Blackhole bh) throws Exception;
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import acs.benchmark.micro.benchmarks.AcsXMLLogFormatterBenchmarks;
+import acs.benchmark.micro.benchmarks.BACITimerBenchmarks;
+import acs.benchmark.micro.benchmarks.DALParsingBenchmarks;
+import acs.benchmark.micro.benchmarks.RepeatGuardBenchmarks;
+import acs.benchmark.micro.benchmarks.TimestampedStringQueueBenchmarks;
+import acs.benchmark.micro.benchmarks.WildcharMatcherBenchmarks;
+
+import alma.acs.logging.DispatchingLogQueueBenchmarks;
+import alma.acs.nc.AnyAideBenchmarks;
+
+/**
+ * Runs the in-process micro benchmarks of the ACS Java libraries, in the spirit of JMH: 
+ * each benchmark first runs for some warmup iterations, whose results are discarded, 
+ * and then for the measurement iterations, each of a fixed duration. 
+ * The time per operation and the bytes allocated per operation (by the benchmark thread) are reported,
+ * and can be written to a results file that serves as baseline for later runs (see {@link BenchmarkResults}, {@link BenchmarkComparison}).
+ * <p>
+ * No ORB services, manager or CDB are needed. Still the results are only comparable between runs on the same machine and JVM.
+ * <p>
+ * Usage: <code>MicroBenchmarkRunner [-wi warmupIterations] [-i iterations] [-t iterationMillis] [-o resultsFile] 
+ * [-b baselineFile [-threshold percent]] [-l] [regex ...]</code>
+ * <br>
+ * The regular expressions select the benchmarks by their name <code>group.benchmark</code> (<code>find</code> semantics), 
+ * <code>-l</code> lists the benchmarks without running them.
+ * <p>
+ * Example: <code>acsMicroBenchmarks -o today.txt -b baseline.txt AcsXMLLogFormatter</code>.
+ */
+public class MicroBenchmarkRunner {
+
+	/**
+	 * A batch of operations between two time checks should take about this long.
+	 */
+	private static final long TARGET_BATCH_NANOS = 100 * 1000;
+
+	private int warmupIterations = 5;
+	private int iterations = 5;
+	private long iterationMillis = 1000;
+
+	private final Blackhole blackhole = new Blackhole();
+
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Creates the benchmark groups. New groups must be added here.
+	 */
+	static List<BenchmarkGroup> createGroups() {
+		List<BenchmarkGroup> ret = new ArrayList<BenchmarkGroup>();
+		ret.add(new AcsXMLLogFormatterBenchmarks());
+		ret.add(new DispatchingLogQueueBenchmarks());
+		ret.add(new AnyAideBenchmarks());
+		ret.add(new TimestampedStringQueueBenchmarks());
+		ret.add(new RepeatGuardBenchmarks());
+		ret.add(new WildcharMatcherBenchmarks());
+		ret.add(new BACITimerBenchmarks());
+		ret.add(new DALParsingBenchmarks());
+		return ret;
+	}
+
+	/**
+	 * Runs the selected benchmarks of the given groups.
+	 * @param filters  selects benchmarks by name; all benchmarks if empty
+	 */
+	public BenchmarkResults run(List<BenchmarkGroup> groups, List<Pattern> filters) throws Exception {
+		BenchmarkResults results = new BenchmarkResults();
+		results.putRunInfo("date", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()));
+		results.putRunInfo("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+		results.putRunInfo("os", System.getProperty("os.name") + " " + System.getProperty("os.arch") + 
+				", " + Runtime.getRuntime().availableProcessors() + " cpus");
+		results.putRunInfo("settings", warmupIterations + " warmup and " + iterations + " measurement iterations of " + iterationMillis + " ms");
+
+		for (BenchmarkGroup group : groups) {
+			List<MicroBenchmark> selected = new ArrayList<MicroBenchmark>();
+			for (MicroBenchmark benchmark : group.getBenchmarks()) {
+				if (matches(group.getName() + "." + benchmark.getName(), filters)) {
+					selected.add(benchmark);
+				}
+			}
+			if (selected.isEmpty()) {
+				continue;
+			}
+			group.setUp();
+			try {
+				for (MicroBenchmark benchmark : selected) {
+					BenchmarkResult result = measure(group.getName() + "." + benchmark.getName(), benchmark);
+					System.out.println(result);
+					results.add(result);
+				}
+			} finally {
+				group.tearDown();
+			}
+		}
+		return results;
+	}
+
+	private static boolean matches(String name, List<Pattern> filters) {
+		if (filters.isEmpty()) {
+			return true;
+		}
+		for (Pattern filter : filters) {
+			if (filter.matcher(name).find()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	BenchmarkResult measure(String name, MicroBenchmark benchmark) throws Exception {
+		System.gc();
+		int batchSize = calibrateBatchSize(benchmark);
+		for (int i = 0; i < warmupIterations; i++) {
+			runIteration(benchmark, batchSize);
+		}
+		double[] nanosPerOp = new double[iterations];
+		double bytesPerOpSum = 0;
+		boolean allocationMeasured = true;
+		for (int i = 0; i < iterations; i++) {
+			double[] iterationResult = runIteration(benchmark, batchSize);
+			nanosPerOp[i] = iterationResult[0];
+			if (iterationResult[1] < 0) {
+				allocationMeasured = false;
+			}
+			bytesPerOpSum += iterationResult[1];
+		}
+		double mean = 0;
+		for (double value : nanosPerOp) {
+			mean += value;
+		}
+		mean /= iterations;
+		double variance = 0;
+		for (double value : nanosPerOp) {
+			variance += (value - mean) * (value - mean);
+		}
+		double stdDev = ( iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0 );
+		return new BenchmarkResult(name, mean, stdDev, ( allocationMeasured ? bytesPerOpSum / iterations : -1 ), iterations);
+	}
+
+	/**
+	 * Finds the number of operations that take about {@link #TARGET_BATCH_NANOS}, 
+	 * so that checking the time does not distort the results of fast operations.
+	 */
+	private int calibrateBatchSize(MicroBenchmark benchmark) throws Exception {
+		int batchSize = 1;
+		while (batchSize < (1 << 20)) {
+			long start = System.nanoTime();
+			for (int i = 0; i < batchSize; i++) {
+				benchmark.run(blackhole);
+			}
+			if (System.nanoTime() - start >= TARGET_BATCH_NANOS) {
+				break;
+			}
+			batchSize *= 2;
+		}
+		return batchSize;
+	}
+
+	/**
+	 * @return {nanos per operation, allocated bytes per operation or -1}
+	 */
+	private double[] runIteration(MicroBenchmark benchmark, int batchSize) throws Exception {
+		long allocatedBefore = getAllocatedBytes();
+		long ops = 0;
+		long start = System.nanoTime();
+		long end = start + iterationMillis * 1000 * 1000;
+		long now;
+		do {
+			for (int i = 0; i < batchSize; i++) {
+				benchmark.run(blackhole);
+			}
+			ops += batchSize;
+			now = System.nanoTime();
+		} while (now < end);
+		long allocatedAfter = getAllocatedBytes();
+		double bytesPerOp = ( allocatedBefore >= 0 && allocatedAfter >= 0 ? (double) (allocatedAfter - allocatedBefore) / ops : -1 );
+		return new double[] {(double) (now - start) / ops, bytesPerOp};
+	}
+
+	/**
+	 * @return the bytes allocated so far by the current thread, or -1 if not supported by the JVM.
+	 */
+	private long getAllocatedBytes() {
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) threadMXBean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	public static void main(String[] args) throws Exception {
+		MicroBenchmarkRunner runner = new MicroBenchmarkRunner();
+		File resultsFile = null;
+		File baselineFile = null;
+		double threshold = BenchmarkComparison.DEFAULT_THRESHOLD_PERCENT;
+		boolean listOnly = false;
+		List<Pattern> filters = new ArrayList<Pattern>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-wi")) {
+					runner.warmupIterations = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-i")) {
+					runner.iterations = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-t")) {
+					runner.iterationMillis = Long.parseLong(args[++i]);
+				} else if (args[i].equals("-o")) {
+					resultsFile = new File(args[++i]);
+				} else if (args[i].equals("-b")) {
+					baselineFile = new File(args[++i]);
+				} else if (args[i].equals("-threshold")) {
+					threshold = Double.parseDouble(args[++i]);
+				} else if (args[i].equals("-l")) {
+					listOnly = true;
+				} else if (args[i].startsWith("-")) {
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				} else {
+					filters.add(Pattern.compile(args[i]));
+				}
+			}
+			if (runner.iterations < 1 || runner.warmupIterations < 0 || runner.iterationMillis < 1) {
+				throw new IllegalArgumentException("Invalid iteration settings");
+			}
+		} catch (RuntimeException ex) {
+			System.err.println(ex.getMessage());
+			System.err.println("Usage: MicroBenchmarkRunner [-wi warmupIterations] [-i iterations] [-t iterationMillis] " +
+					"[-o resultsFile] [-b baselineFile [-threshold percent]] [-l] [regex ...]");
+			System.exit(1);
+		}
+
+		List<BenchmarkGroup> groups = createGroups();
+		if (listOnly) {
+			for (BenchmarkGroup group : groups) {
+				for (MicroBenchmark benchmark : group.getBenchmarks()) {
+					String name = group.getName() + "." + benchmark.getName();
+					if (matches(name, filters)) {
+						System.out.println(name);
+					}
+				}
+			}
+			System.exit(0);
+		}
+
+		System.out.println("Running micro benchmarks " + ( filters.isEmpty() ? "" : Arrays.toString(args) ));
+		BenchmarkResults results = runner.run(groups, filters);
+		if (resultsFile != null) {
+			results.write(resultsFile);
+			System.out.println("Results written to " + resultsFile);
+		}
+		int regressions = 0;
+		if (baselineFile != null) {
+			BenchmarkResults baseline = BenchmarkResults.read(baselineFile);
+			BenchmarkComparison comparison = new BenchmarkComparison(threshold);
+			regressions = comparison.printReport(comparison.compare(baseline, results), baseline, results, System.out);
+		}
+		System.out.println("(" + runner.blackhole.getDigest() + ")");
+		System.exit(regressions > 0 ? 2 : 0);
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.LogRecord;
+
+import acs.benchmark.micro.BenchmarkGroup;
+import acs.benchmark.micro.Blackhole;
+import acs.benchmark.micro.MicroBenchmark;
+
+import alma.acs.logging.AcsLogLevel;
+import alma.acs.logging.LogParameterUtil;
+import alma.acs.logging.formatters.AcsXMLLogFormatter;
+
+/**
+ * Formatting of log records to XML, as done for every log that is sent to the central log service.
+ * The records resemble those produced by an <code>AcsLogger</code> in a container: 
+ * with source class and method, and with the special properties map for line, thread, host, process etc.
+ */
+public class AcsXMLLogFormatterBenchmarks extends BenchmarkGroup {
+
+	private AcsXMLLogFormatter formatter;
+	private LogRecord infoRecord;
+	private LogRecord debugRecord;
+	private LogRecord warningRecord;
+
+	public AcsXMLLogFormatterBenchmarks() {
+		super("AcsXMLLogFormatter");
+	}
+
+	private static LogRecord createRecord(AcsLogLevel level, String message, int line, String context) {
+		LogRecord record = new LogRecord(level, message);
+		record.setLoggerName("CONTROL/DV01/MountController");
+		record.setSourceClassName("alma.Control.device.gui.MountControllerImpl");
+		record.setSourceMethodName("updateTrackingStatus");
+		Map<String, Object> props = LogParameterUtil.createPropertiesMap();
+		props.put(LogParameterUtil.PARAM_LINE, Long.valueOf(line));
+		props.put(LogParameterUtil.PARAM_THREAD_NAME, "RequestProcessor-42");
+		props.put(LogParameterUtil.PARAM_HOSTNAME, "gas01");
+		props.put(LogParameterUtil.PARAM_PROCESSNAME, "CONTROL/DV01/cppContainer");
+		props.put(LogParameterUtil.PARAM_SOURCEOBJECT, "CONTROL/DV01/MountController");
+		if (context != null) {
+			props.put("Context", context);
+		}
+		record.setParameters(new Object[] {props});
+		return record;
+	}
+
+	@Override
+	public void setUp() {
+		formatter = new AcsXMLLogFormatter();
+		infoRecord = createRecord(AcsLogLevel.INFO, "Antenna DV01 is now tracking source J1924-2914 (az=123.456789, el=45.678901).", 312, null);
+		debugRecord = createRecord(AcsLogLevel.DEBUG, "Pointing model <PM_2013_04> & offsets applied: ca=0.12\", ie=-3.4\"", 488, "scan 17, subscan 3");
+		warningRecord = createRecord(AcsLogLevel.WARNING, "Timeout while waiting for the ACU reply, will retry.", 1021, null);
+		warningRecord.setThrown(new IllegalStateException("ACU did not reply within 48 ms"));
+	}
+
+	@Override
+	public List<MicroBenchmark> getBenchmarks() {
+		List<MicroBenchmark> ret = new ArrayList<MicroBenchmark>();
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "formatInfo";
+			}
+			public void run(Blackhole bh) {
+				bh.consume(formatter.format(infoRecord));
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "formatDebugWithMaskedChars";
+			}
+			public void run(Blackhole bh) {
+				bh.consume(formatter.format(debugRecord));
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "formatWarningWithException";
+			}
+			public void run(Blackhole bh) {
+				bh.consume(formatter.format(warningRecord));
+			}
+		});
+		return ret;
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import acs.benchmark.micro.BenchmarkGroup;
+import acs.benchmark.micro.Blackhole;
+import acs.benchmark.micro.MicroBenchmark;
+
+import alma.ACS.jbaci.BACITimer;
+
+/**
+ * Scheduling with the {@link BACITimer}, which drives the monitors and the periodic tasks of BACI properties.
+ * The time of the timer thread is included, but not its allocations.
+ */
+public class BACITimerBenchmarks extends BenchmarkGroup {
+
+	/**
+	 * Delay of the tasks that get cancelled, so that they are still in the heap of the timer 
+	 * when they get cancelled, like the monitors of a component that gets deactivated.
+	 */
+	private static final long CANCEL_DELAY_MILLIS = 10;
+
+	private BACITimer timer;
+
+	private final Semaphore executed = new Semaphore(0);
+
+	private final BACITimer.TimerRunnable noop = new BACITimer.TimerRunnable() {
+		public void timeout(long timeToRun) {
+		}
+	};
+
+	private final BACITimer.TimerRunnable release = new BACITimer.TimerRunnable() {
+		public void timeout(long timeToRun) {
+			executed.release();
+		}
+	};
+
+	public BACITimerBenchmarks() {
+		super("BACITimer");
+	}
+
+	@Override
+	public void setUp() {
+		timer = new BACITimer(null);
+	}
+
+	@Override
+	public void tearDown() {
+		timer.shutDown();
+	}
+
+	@Override
+	public List<MicroBenchmark> getBenchmarks() {
+		List<MicroBenchmark> ret = new ArrayList<MicroBenchmark>();
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "scheduleAndCancel";
+			}
+			public void run(Blackhole bh) {
+				Object task = timer.executeAfterDelay(CANCEL_DELAY_MILLIS, noop);
+				BACITimer.cancel(task);
+				bh.consume(task);
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "executeNowAndWait";
+			}
+			public void run(Blackhole bh) throws InterruptedException {
+				bh.consume(timer.executeAfterDelay(0, release));
+				executed.acquire();
+			}
+		});
+		return ret;
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro.benchmarks;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+
+import acs.benchmark.micro.BenchmarkGroup;
+import acs.benchmark.micro.Blackhole;
+import acs.benchmark.micro.MicroBenchmark;
+
+import com.cosylab.cdb.jdal.XMLHandler;
+
+/**
+ * Parsing of CDB records into the {@link XMLHandler} of the DAL, either to the tree of nodes from which DAOs are served 
+ * or to the XML string returned by <code>get_DAO</code>.
+ * The payloads are a MACI Components list with 200 components and the record of a BACI component with 30 properties.
+ * <p>
+ * Unlike the DAL, the parser does not validate against the CDB schemas, which are only available in an ACS installation; 
+ * so the numbers do not include the cost of the schema validation.
+ */
+public class DALParsingBenchmarks extends BenchmarkGroup {
+
+	private final Logger logger = Logger.getLogger("DALParsingBenchmarks");
+
+	private SAXParser saxParser;
+	private String componentsXml;
+	private String baciComponentXml;
+
+	public DALParsingBenchmarks() {
+		super("DALParsing");
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		saxParser = factory.newSAXParser();
+
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n");
+		sb.append("<Components xmlns=\"urn:schemas-cosylab-com:Components:1.0\" xmlns:cdb=\"urn:schemas-cosylab-com:CDB:1.0\" ");
+		sb.append("xmlns:baci=\"urn:schemas-cosylab-com:BACI:1.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+		for (int i = 0; i < 200; i++) {
+			sb.append("  <_ Name=\"CONTROL/DV").append(i / 8).append("/Device").append(i % 8).append("\" ");
+			sb.append("Code=\"alma.Control.device.Device").append(i % 8).append("ImplHelper\" ");
+			sb.append("Type=\"IDL:alma/Control/Device").append(i % 8).append(":1.0\" ");
+			sb.append("Container=\"CONTROL/DV").append(i / 8).append("/javaContainer\" ImplLang=\"java\" Autostart=\"false\" Default=\"false\"/>\n");
+		}
+		sb.append("</Components>\n");
+		componentsXml = sb.toString();
+
+		sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n");
+		sb.append("<TestPowerSupplyACS xmlns=\"urn:schemas-cosylab-com:TestPowerSupplyACS:1.0\" ");
+		sb.append("xmlns:baci=\"urn:schemas-cosylab-com:BACI:1.0\" xmlns:cdb=\"urn:schemas-cosylab-com:CDB:1.0\" ");
+		sb.append("xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+		for (int i = 0; i < 30; i++) {
+			sb.append("  <property").append(i).append(" description=\"Property ").append(i).append(" of the power supply\" ");
+			sb.append("format=\"%9.4f\" units=\"A\" resolution=\"65535\" default_timer_trig=\"1.0\" min_timer_trig=\"0.001\" ");
+			sb.append("default_value=\"0.0\" graph_min=\"0.0\" graph_max=\"1000.0\" min_step=\"0.01526\" min_delta_trig=\"0.01\" ");
+			sb.append("alarm_low_on=\"10\" alarm_low_off=\"20\" alarm_high_on=\"990\" alarm_high_off=\"980\" ");
+			sb.append("archive_priority=\"3\" archive_min_int=\"0.0\" archive_max_int=\"0.0\"/>\n");
+		}
+		sb.append("</TestPowerSupplyACS>\n");
+		baciComponentXml = sb.toString();
+	}
+
+	private XMLHandler parse(String xml, boolean toString) throws Exception {
+		XMLHandler xmlSolver = new XMLHandler(toString, logger);
+		xmlSolver.setMarkArrays(1);
+		saxParser.parse(new InputSource(new StringReader(xml)), xmlSolver);
+		if (xmlSolver.m_errorString != null) {
+			throw new IllegalStateException(xmlSolver.m_errorString);
+		}
+		return xmlSolver;
+	}
+
+	private MicroBenchmark createBenchmark(final String name, final boolean componentList, final boolean toString) {
+		return new MicroBenchmark() {
+			public String getName() {
+				return name;
+			}
+			public void run(Blackhole bh) throws Exception {
+				XMLHandler xmlSolver = parse(componentList ? componentsXml : baciComponentXml, toString);
+				bh.consume(toString ? xmlSolver.m_xmlString : xmlSolver.m_rootNode);
+			}
+		};
+	}
+
+	@Override
+	public List<MicroBenchmark> getBenchmarks() {
+		List<MicroBenchmark> ret = new ArrayList<MicroBenchmark>();
+		ret.add(createBenchmark("componentsToTree", true, false));
+		ret.add(createBenchmark("componentsToString", true, true));
+		ret.add(createBenchmark("baciComponentToTree", false, false));
+		ret.add(createBenchmark("baciComponentToString", false, true));
+		return ret;
+	}
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import acs.benchmark.micro.BenchmarkGroup;
+import acs.benchmark.micro.Blackhole;
+import acs.benchmark.micro.MicroBenchmark;
+
+import alma.acs.logging.RepeatGuard;
+
+/**
+ * The checks of {@link RepeatGuard}, which are done for each log or alarm that goes through a repeat guard. 
+ * Most checks return false, as in a log flood.
+ */
+public class RepeatGuardBenchmarks extends BenchmarkGroup {
+
+	public RepeatGuardBenchmarks() {
+		super("RepeatGuard");
+	}
+
+	private static MicroBenchmark checkAndIncrement(final String name, final RepeatGuard guard) {
+		return new MicroBenchmark() {
+			public String getName() {
+				return name;
+			}
+			public void run(Blackhole bh) {
+				bh.consume(guard.checkAndIncrement());
+			}
+		};
+	}
+
+	@Override
+	public List<MicroBenchmark> getBenchmarks() {
+		List<MicroBenchmark> ret = new ArrayList<MicroBenchmark>();
+		ret.add(checkAndIncrement("checkAndIncrementOr", new RepeatGuard(1, TimeUnit.SECONDS, 1000, RepeatGuard.Logic.OR)));
+		ret.add(checkAndIncrement("checkAndIncrementTimer", new RepeatGuard(1, TimeUnit.SECONDS, 0, RepeatGuard.Logic.TIMER)));
+		ret.add(checkAndIncrement("checkAndIncrementCounter", new RepeatGuard(0, TimeUnit.SECONDS, 1000, RepeatGuard.Logic.COUNTER)));
+		return ret;
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import acs.benchmark.micro.BenchmarkGroup;
+import acs.benchmark.micro.Blackhole;
+import acs.benchmark.micro.MicroBenchmark;
+
+import alma.acs.util.stringqueue.TimestampedStringQueue;
+
+/**
+ * Pushing XML logs through the file-backed {@link TimestampedStringQueue}, as done by the logging and alarm clients 
+ * that cache what they receive. The files are written to <code>ACS.tmp</code>, or to <code>java.io.tmpdir</code> if that is not set.
+ */
+public class TimestampedStringQueueBenchmarks extends BenchmarkGroup {
+
+	/**
+	 * Strings pushed before popping them in the burst benchmark
+	 */
+	private static final int BURST = 100;
+
+	private static final String LOG = 
+		"<Info TimeStamp=\"2013-10-19T12:34:56.789\" File=\"alma.Control.device.gui.MountControllerImpl\" Line=\"312\" " +
+		"Routine=\"updateTrackingStatus\" Host=\"gas01\" Process=\"CONTROL/DV01/cppContainer\" " +
+		"SourceObject=\"CONTROL/DV01/MountController\" Thread=\"RequestProcessor-42\" LogId=\"4711\" Priority=\"4\">" +
+		"<![CDATA[Antenna DV01 is now tracking source J1924-2914 (az=123.456789, el=45.678901).]]></Info>";
+
+	private TimestampedStringQueue queue;
+
+	public TimestampedStringQueueBenchmarks() {
+		super("TimestampedStringQueue");
+	}
+
+	@Override
+	public void setUp() {
+		if (System.getProperty("ACS.tmp") == null) {
+			System.setProperty("ACS.tmp", System.getProperty("java.io.tmpdir") + File.separator);
+		}
+		queue = new TimestampedStringQueue("TimeStamp=\"");
+		queue.start();
+	}
+
+	@Override
+	public void tearDown() {
+		queue.close(true);
+	}
+
+	@Override
+	public List<MicroBenchmark> getBenchmarks() {
+		List<MicroBenchmark> ret = new ArrayList<MicroBenchmark>();
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "pushAndPop";
+			}
+			public void run(Blackhole bh) throws Exception {
+				queue.push(LOG);
+				bh.consume(queue.pop());
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "push" + BURST + "ThenPop" + BURST;
+			}
+			public void run(Blackhole bh) throws Exception {
+				for (int i = 0; i < BURST; i++) {
+					queue.push(LOG);
+				}
+				for (int i = 0; i < BURST; i++) {
+					bh.consume(queue.pop());
+				}
+			}
+		});
+		return ret;
+	}
+}
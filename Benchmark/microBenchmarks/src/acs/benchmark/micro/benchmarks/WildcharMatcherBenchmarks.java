@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package acs.benchmark.micro.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import acs.benchmark.micro.BenchmarkGroup;
+import acs.benchmark.micro.Blackhole;
+import acs.benchmark.micro.MicroBenchmark;
+
+import com.cosylab.util.WildcharMatcher;
+
+/**
+ * Wildcard matching with {@link WildcharMatcher}, as done by the manager to find components by name or type wildcards, 
+ * and by the NC and alarm libraries that convert wildcards to regular expressions.
+ * One operation matches a pattern against the names of a system with 100 components.
+ */
+public class WildcharMatcherBenchmarks extends BenchmarkGroup {
+
+	private static final int ANTENNAS = 25;
+
+	private final String[] componentNames = new String[4 * ANTENNAS];
+	private final String[] componentTypes = new String[4 * ANTENNAS];
+
+	public WildcharMatcherBenchmarks() {
+		super("WildcharMatcher");
+		String[] devices = {"MountController", "Mount", "FrontEnd", "LORR"};
+		for (int a = 0; a < ANTENNAS; a++) {
+			String antenna = (a % 2 == 0 ? "DV" : "PM") + (a < 10 ? "0" : "") + a;
+			for (int d = 0; d < devices.length; d++) {
+				componentNames[4 * a + d] = "CONTROL/" + antenna + "/" + devices[d];
+				componentTypes[4 * a + d] = "IDL:alma/Control/" + devices[d] + ":1.0";
+			}
+		}
+	}
+
+	private int matchAll(String pattern, String[] names) {
+		int matches = 0;
+		for (String name : names) {
+			if (WildcharMatcher.match(pattern, name)) {
+				matches++;
+			}
+		}
+		return matches;
+	}
+
+	@Override
+	public List<MicroBenchmark> getBenchmarks() {
+		List<MicroBenchmark> ret = new ArrayList<MicroBenchmark>();
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "matchNames";
+			}
+			public void run(Blackhole bh) {
+				bh.consume(matchAll("CONTROL/DV*/Mount*", componentNames));
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "matchTypesWithSet";
+			}
+			public void run(Blackhole bh) {
+				bh.consume(matchAll("IDL:alma/[A-Z]*/Mount?ontroller:1.0", componentTypes));
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "simpleWildcardToRegexAndMatch";
+			}
+			public void run(Blackhole bh) {
+				Pattern pattern = Pattern.compile(WildcharMatcher.simpleWildcardToRegex("CONTROL/*/MountController"));
+				int matches = 0;
+				for (String name : componentNames) {
+					if (pattern.matcher(name).matches()) {
+						matches++;
+					}
+				}
+				bh.consume(matches);
+			}
+		});
+		return ret;
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.omg.CORBA.Any;
+import org.omg.CORBA.ORB;
+
+import acs.benchmark.micro.BenchmarkGroup;
+import acs.benchmark.micro.Blackhole;
+import acs.benchmark.micro.MicroBenchmark;
+
+import alma.Logging.XmlLogRecord;
+import alma.acs.logging.formatters.AcsXMLLogFormatter;
+
+/**
+ * Queueing and dispatching of log records by the {@link DispatchingLogQueue}, 
+ * with a {@link RemoteLogDispatcher} whose remote calls are replaced by no-ops. 
+ * The records are still sorted, formatted to XML and inserted into Anys as for the real log service.
+ * <p>
+ * This group is in package <code>alma.acs.logging</code> because the queue and the dispatcher are package-private.
+ * The CORBA Anys are created by the ORB singleton, which does not open any network connections.
+ * The work of the dispatcher thread is included in the time, but not in the allocated bytes.
+ */
+public class DispatchingLogQueueBenchmarks extends BenchmarkGroup {
+
+	/**
+	 * Log records per operation, as many as the default dispatch packet size.
+	 */
+	private static final int RECORDS_PER_OP = 30;
+
+	/**
+	 * Replaces the calls to the log service.
+	 */
+	private static class NoopLogDispatcher extends RemoteLogDispatcher {
+		NoopLogDispatcher(ORB orb) {
+			super(orb, null, new AcsXMLLogFormatter());
+		}
+
+		@Override
+		protected void writeRecords(Any[] anyLogRecordsArray) {
+		}
+
+		@Override
+		protected void writeRecords(XmlLogRecord[] remoteLogRecords) {
+		}
+	}
+
+	private static final Level[] LEVELS = {AcsLogLevel.DEBUG, AcsLogLevel.INFO, AcsLogLevel.TRACE, AcsLogLevel.INFO, AcsLogLevel.WARNING};
+
+	private DispatchingLogQueue queue;
+	private int count;
+
+	public DispatchingLogQueueBenchmarks() {
+		super("DispatchingLogQueue");
+	}
+
+	@Override
+	public void setUp() {
+		queue = new DispatchingLogQueue();
+		queue.setMaxQueueSize(10 * RECORDS_PER_OP);
+		NoopLogDispatcher dispatcher = new NoopLogDispatcher(ORB.init());
+		dispatcher.setBufferSize(RECORDS_PER_OP);
+		queue.setRemoteLogDispatcher(dispatcher);
+	}
+
+	@Override
+	public void tearDown() {
+		queue.shutDown();
+	}
+
+	private LogRecord createRecord(Level level) {
+		LogRecord record = new LogRecord(level, "Processed request " + (count++) + " for antenna DV01");
+		record.setLoggerName("CONTROL/DV01/MountController");
+		record.setSourceClassName("alma.Control.device.gui.MountControllerImpl");
+		record.setSourceMethodName("processRequest");
+		return record;
+	}
+
+	@Override
+	public List<MicroBenchmark> getBenchmarks() {
+		List<MicroBenchmark> ret = new ArrayList<MicroBenchmark>();
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "log" + RECORDS_PER_OP + "AndFlush";
+			}
+			public void run(Blackhole bh) {
+				for (int i = 0; i < RECORDS_PER_OP; i++) {
+					bh.consume(queue.log(createRecord(LEVELS[i % LEVELS.length])));
+				}
+				queue.flushAllAndWait();
+			}
+		});
+		return ret;
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.nc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.omg.CORBA.Any;
+import org.omg.CORBA.ORB;
+
+import si.ijs.maci.AdministratorOperations;
+
+import acs.benchmark.micro.BenchmarkGroup;
+import acs.benchmark.micro.Blackhole;
+import acs.benchmark.micro.MicroBenchmark;
+
+import alma.acs.container.AdvancedContainerServices;
+import alma.acs.nc.testsupport.DummyContainerServicesBase;
+import alma.acsnc.EventDescription;
+
+/**
+ * Conversion of event data to and from CORBA Anys, as done for every event published or received on a notification channel.
+ * The struct payload is the <code>EventDescription</code> that the NC libraries add to each event, 
+ * the array payload resembles a block of monitor data.
+ * <p>
+ * This group is in package <code>alma.acs.nc</code> because <code>AnyAide</code> is package-private.
+ * The Anys are created by the ORB singleton, which does not open any network connections.
+ */
+public class AnyAideBenchmarks extends BenchmarkGroup {
+
+	/**
+	 * Gives {@link AnyAide} what it needs to create Anys, without container.
+	 */
+	private static class AnyContainerServices extends DummyContainerServicesBase {
+		private final AdvancedContainerServices advancedContainerServices;
+
+		AnyContainerServices(final ORB orb) {
+			super("AnyAideBenchmarks", Logger.getLogger("AnyAideBenchmarks"));
+			advancedContainerServices = new AdvancedContainerServices() {
+				public String corbaObjectToString(org.omg.CORBA.Object objRef) {
+					throw new UnsupportedOperationException();
+				}
+				public org.omg.CORBA.Object corbaObjectFromString(String strObjRef) {
+					throw new UnsupportedOperationException();
+				}
+				public ORB getORB() {
+					return orb;
+				}
+				public Any getAny() {
+					return orb.create_any();
+				}
+				public void connectManagerAdmin(AdministratorOperations adminOp, boolean retryConnectOnFailure) {
+					throw new UnsupportedOperationException();
+				}
+				public void disconnectManagerAdmin(AdministratorOperations adminOp) {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public AdvancedContainerServices getAdvancedContainerServices() {
+			return advancedContainerServices;
+		}
+	}
+
+	private AnyAide anyAide;
+	private EventDescription eventDescription;
+	private Any eventDescriptionAny;
+	private double[] monitorData;
+	private Any monitorDataAny;
+
+	public AnyAideBenchmarks() {
+		super("AnyAide");
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		anyAide = new AnyAide(new AnyContainerServices(ORB.init()));
+		eventDescription = new EventDescription("CONTROL/DV01/MountController", 134567890123456789L, 4711L);
+		eventDescriptionAny = anyAide.objectToCorbaAny(eventDescription);
+		monitorData = new double[120];
+		for (int i = 0; i < monitorData.length; i++) {
+			monitorData[i] = 20.0 + Math.sin(i / 10.0);
+		}
+		monitorDataAny = anyAide.objectToCorbaAny(monitorData);
+	}
+
+	@Override
+	public List<MicroBenchmark> getBenchmarks() {
+		List<MicroBenchmark> ret = new ArrayList<MicroBenchmark>();
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "structToAny";
+			}
+			public void run(Blackhole bh) throws Exception {
+				bh.consume(anyAide.objectToCorbaAny(eventDescription));
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "anyToStruct";
+			}
+			public void run(Blackhole bh) {
+				bh.consume(anyAide.corbaAnyToObject(eventDescriptionAny));
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "doubleArrayToAny";
+			}
+			public void run(Blackhole bh) throws Exception {
+				bh.consume(anyAide.objectToCorbaAny(monitorData));
+			}
+		});
+		ret.add(new MicroBenchmark() {
+			public String getName() {
+				return "anyToDoubleArray";
+			}
+			public void run(Blackhole bh) {
+				bh.consume(anyAide.corbaAnyToObject(monitorDataAny));
+			}
+		});
+		return ret;
+	}
+}
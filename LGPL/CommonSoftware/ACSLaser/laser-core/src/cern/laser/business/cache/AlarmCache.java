@@ -1,5 +1,6 @@
 package cern.laser.business.cache;
 
+import java.util.Collection;
 import java.util.Map;
 
 import cern.laser.business.data.Alarm;
@@ -31,6 +32,8 @@ public interface AlarmCache {
 
   /**
    * Returns a reference to the cached alarm.
+   * The alarm is shared with the other users of the cache and must not be modified:
+   * use it for reading without the cost of a copy.
    *
    * @param identifier the alarm private identifier
    * @return the reference to the alarm object
@@ -72,6 +75,16 @@ public interface AlarmCache {
    */
   public  void put(Alarm alarm) throws AlarmCacheException;
 
+  /**
+   * Puts several objects in the cache, like @link put for each of them.
+   * The active lists of the categories are updated once for all the alarms.
+   *
+   * @param alarms the new alarm objects
+   *
+   * @throws AlarmCacheException if the operation can not be performed
+   */
+  public  void putAll(Collection<Alarm> alarms) throws AlarmCacheException;
+
   /**
    * Invalidate the cached object. 
    * Subsequent accesses to that object will cause the object to be loaded again from the ejb.
@@ -10,11 +10,14 @@
 package cern.laser.business.data;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 
 /**
- * 
+ * The IDs of the active alarms of a category.
+ * <P>
+ * The list is thread safe.
  * 
  * @version $Revision: 1.2 $ $Date: 2006/09/25 08:52:36 $
  * @author Katarina Sigerud
@@ -46,24 +49,38 @@ public class CategoryActiveList implements Serializable {
   /**
    * @return
    */
-  public String[] getActiveAlarms() {
+  public synchronized String[] getActiveAlarms() {
     return activeAlarmIds == null ? null : (String[]) activeAlarmIds.toArray(new String[activeAlarmIds.size()]);
   }
 
   /**
    * @param alarmId
    */
-  public boolean addAlarm(String alarmId) {
+  public synchronized boolean addAlarm(String alarmId) {
     return activeAlarmIds.add(alarmId);
   }
 
   /**
    * @param identifier
    */
-  public boolean removeAlarm(String identifier) {
+  public synchronized boolean removeAlarm(String identifier) {
     return activeAlarmIds.remove(identifier);
   }
 
+  /**
+   * Adds and removes several alarms at once.
+   * 
+   * @param addedAlarmIds the IDs of the alarms that became active
+   * @param removedAlarmIds the IDs of the alarms that are no longer active
+   */
+  public synchronized void update(Collection addedAlarmIds, Collection removedAlarmIds) {
+    activeAlarmIds.addAll(addedAlarmIds);
+    // not removeAll, that can call contains() of the collection for each active alarm
+    for (Iterator iter = removedAlarmIds.iterator(); iter.hasNext();) {
+      activeAlarmIds.remove(iter.next());
+    }
+  }
+
   //
   // -- extends Object ----------------------------------------------
   //
@@ -95,7 +112,7 @@ public class CategoryActiveList implements Serializable {
    * 
    * @see java.lang.Object#toString()
    */
-  public String toString() {
+  public synchronized String toString() {
     StringBuffer str_buf = new StringBuffer();
     str_buf.append("\nACTIVE LIST FOR CATEGORY " + categoryId + " :");
     for (Iterator iter = activeAlarmIds.iterator(); iter.hasNext();) {
@@ -3,9 +3,11 @@ package cern.laser.business.pojo;
 import java.sql.Timestamp;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -253,14 +255,21 @@ public class AlarmMessageProcessorImpl {
       
   }
 
+  /**
+   * Process a fault state.
+   * <P>
+   * Only the alarm of the fault state and the alarms that can change with it
+   * (see {@link #getChangedAlarms(String, boolean)}) are locked in the cache,
+   * so that fault states of unrelated alarms are processed in parallel.
+   */
   public void processChange(FaultState faultState, String sourceName, String sourceHostname, Timestamp sourceTimestamp)
       throws Exception {
-	alarmCache.acquire();
+	String alarmId = Triplet.toIdentifier(faultState.getFamily(), faultState.getMember(), Integer.valueOf(faultState.getCode()));
+	int[] lockedStripes = lockChangedAlarms(alarmId);
 	try {
 		logger.log(AcsLogLevel.DEBUG,"processing fault state: " + faultState.getFamily()+":"+faultState.getMember()+":"+faultState.getCode()+", Descriptor="+faultState.getDescriptor()+"\n");
 	    Timestamp system_timestamp = new Timestamp(System.currentTimeMillis());
-	    Alarm alarm = alarmCache.getCopy(
-	    		Triplet.toIdentifier(faultState.getFamily(), faultState.getMember(), Integer.valueOf(faultState.getCode())));
+	    Alarm alarm = alarmCache.getCopy(alarmId);
 	    
 	    // process the change
 	    String defined_source_name = alarm.getSource().getName();
@@ -364,11 +373,93 @@ public class AlarmMessageProcessorImpl {
 	      }
 	    }
 	} finally {
-		alarmCache.release();
+		alarmCache.releaseAlarms(lockedStripes);
 		logger.log(AcsLogLevel.DEBUG,"processed fault state:" + faultState.getFamily()+":"+faultState.getMember()+":"+faultState.getCode()+", Descriptor="+faultState.getDescriptor()+"\n");
 	}
   }
 
+  /**
+   * Lock in the cache the alarm with the given ID and the alarms that can change with it.
+   * <P>
+   * The alarms are loaded in the cache before locking them. The reduction links 
+   * can change before the locks are taken: in that case the locks are released and taken again.
+   *
+   * @param alarmId The ID of the alarm of the fault state
+   * @return The stripes to pass to {@link ACSAlarmCacheImpl#releaseAlarms(int[])}
+   */
+  private int[] lockChangedAlarms(String alarmId) throws AlarmCacheException {
+    Set<String> toLock = getChangedAlarms(alarmId, true);
+    while (true) {
+      int[] stripes = alarmCache.acquireAlarms(toLock);
+      boolean locked = false;
+      try {
+        Set<String> changed = getChangedAlarms(alarmId, false);
+        locked = changed != null && alarmCache.holdsAlarms(stripes, changed);
+      } finally {
+        if (!locked) {
+          alarmCache.releaseAlarms(stripes);
+        }
+      }
+      if (locked) {
+        return stripes;
+      }
+      toLock = getChangedAlarms(alarmId, true);
+    }
+  }
+
+  /**
+   * Return the IDs of the alarms that can change while processing a fault state
+   * of the alarm with the given ID: the alarm itself, its node and multiplicity children
+   * (reduced or unreduced) and its multiplicity parents (activated or terminated),
+   * whose relatives change in turn.
+   * <P>
+   * The parents of the children are read to update their reduction; 
+   * they are loaded in the cache as well, but are not returned.
+   *
+   * @param alarmId The ID of the alarm of the fault state
+   * @param load If <code>true</code> the alarms that are not in the cache are loaded;
+   *             otherwise only the alarms in the cache are read
+   * @return The IDs of the alarms or <code>null</code> if <code>load</code> is <code>false</code>
+   *         and one of the alarms is not in the cache
+   */
+  private Set<String> getChangedAlarms(String alarmId, boolean load) throws AlarmCacheException {
+    Set<String> changed = new HashSet<String>();
+    Set<String> visited = new HashSet<String>();
+    List<String> toVisit = new ArrayList<String>();
+    toVisit.add(alarmId);
+    visited.add(alarmId);
+    while (!toVisit.isEmpty()) {
+      String id = toVisit.remove(toVisit.size() - 1);
+      Alarm alarm = getAlarm(id, load);
+      if (alarm == null) { return null; }
+      changed.add(id);
+      List<String> children = new ArrayList<String>(Arrays.asList(alarm.getNodeChildren()));
+      children.addAll(Arrays.asList(alarm.getMultiplicityChildren()));
+      for (String childId: children) {
+        Alarm child = getAlarm(childId, load);
+        if (child == null) { return null; }
+        changed.add(childId);
+        // read by isReduced()
+        for (String parentId: child.getNodeParents()) {
+          if (getAlarm(parentId, load) == null) { return null; }
+        }
+        for (String parentId: child.getMultiplicityParents()) {
+          if (getAlarm(parentId, load) == null) { return null; }
+        }
+      }
+      for (String parentId: alarm.getMultiplicityParents()) {
+        if (visited.add(parentId)) {
+          toVisit.add(parentId);
+        }
+      }
+    }
+    return changed;
+  }
+
+  private Alarm getAlarm(String alarmId, boolean load) throws AlarmCacheException {
+    return load ? alarmCache.getReference(alarmId) : alarmCache.getCachedReference(alarmId);
+  }
+
   private void updateStatus(FaultState faultState, Status currentStatus, Boolean active, String sourceHostname,
       Timestamp sourceTimestamp, Timestamp system_timestamp) {
     currentStatus.setActive(active);
@@ -420,16 +511,10 @@ public class AlarmMessageProcessorImpl {
   public void updateReductionStatus(Alarm alarm) {
     try {
     	logger.log(AcsLogLevel.DEBUG,"Updating reduction status for alarm : " + alarm);
-      if (alarm.getStatus().getReduced().equals(Boolean.TRUE)) {
-        if ((!hasActiveNodeParents(alarm)) && (!hasActiveMultiplicityParents(alarm))) {
-          alarm.getStatus().setReduced(Boolean.FALSE);
-          alarmCache.put(alarm);
-        }
-      } else {
-        if (hasActiveNodeParents(alarm) || hasActiveMultiplicityParents(alarm)) {
-          alarm.getStatus().setReduced(Boolean.TRUE);
-          alarmCache.put(alarm);
-        }
+      boolean reduced = isReduced(alarm);
+      if (alarm.getStatus().getReduced().booleanValue() != reduced) {
+        alarm.getStatus().setReduced(Boolean.valueOf(reduced));
+        alarmCache.put(alarm);
       }
       logger.log(AcsLogLevel.DEBUG,"updated");
     } catch (Exception e) {
@@ -437,6 +522,18 @@ public class AlarmMessageProcessorImpl {
     }
   }
 
+  /**
+   * Check if the passed alarm is reduced by one of its parents.
+   * <P>
+   * The passed alarm is not changed.
+   *
+   * @param alarm The alarm to check
+   * @return <code>true</code> if at least one of the node or multiplicity parents of the alarm is active
+   */
+  public boolean isReduced(Alarm alarm) throws Exception {
+    return hasActiveNodeParents(alarm) || hasActiveMultiplicityParents(alarm);
+  }
+
   //
   // -- PRIVATE METHODS ---------------------------------------------
   //
@@ -608,44 +705,56 @@ public class AlarmMessageProcessorImpl {
 
   private void notifyNodeChildren(Alarm alarm) throws Exception {
     String[] children = alarm.getNodeChildren();
+    Collection<Alarm> changed_children = new ArrayList<Alarm>(children.length);
     for (int i = 0; i < children.length; i++) {
-      Alarm child = alarmCache.getCopy(children[i]);
+      // only the children whose reduction changes are copied
+      Alarm child = alarmCache.getReference(children[i]);
       logger.log(AcsLogLevel.DEBUG,"notifying node child " + child.getTriplet());
       if (hasActiveNodeParents(child)) {
         if (child.getStatus().getReduced().equals(Boolean.FALSE)) {
         	logger.log(AcsLogLevel.DEBUG,"reducing node child " + child.getTriplet());
-          child.getStatus().setReduced(Boolean.TRUE);
-          alarmCache.put(child);
+          changed_children.add(copyWithReduced(children[i], Boolean.TRUE));
         }
       } else {
         if (child.getStatus().getReduced().equals(Boolean.TRUE)) {
         	logger.log(AcsLogLevel.DEBUG,"unreducing node child " + child.getTriplet());
-          child.getStatus().setReduced(Boolean.FALSE);
-          alarmCache.put(child);
+          changed_children.add(copyWithReduced(children[i], Boolean.FALSE));
         }
       }
     }
+    if (!changed_children.isEmpty()) {
+      alarmCache.putAll(changed_children);
+    }
   }
 
   private void notifyMultiplicityChildren(Alarm alarm) throws Exception {
     String[] children = alarm.getMultiplicityChildren();
+    Collection<Alarm> changed_children = new ArrayList<Alarm>(children.length);
     for (int i = 0; i < children.length; i++) {
-      Alarm child = alarmCache.getCopy(children[i]);
+      // only the children whose reduction changes are copied
+      Alarm child = alarmCache.getReference(children[i]);
       logger.log(AcsLogLevel.DEBUG,"notifying multiplicity child " + child.getTriplet());
       if (hasActiveMultiplicityParents(child)) {
         if (child.getStatus().getReduced().equals(Boolean.FALSE)) {
         	logger.log(AcsLogLevel.DEBUG,"reducing multiplicity child " + child.getTriplet());
-          child.getStatus().setReduced(Boolean.TRUE);
-          alarmCache.put(child);
+          changed_children.add(copyWithReduced(children[i], Boolean.TRUE));
         }
       } else {
         if (child.getStatus().getReduced().equals(Boolean.TRUE)) {
         	logger.log(AcsLogLevel.DEBUG,"unreducing multiplicity child " + child.getTriplet());
-          child.getStatus().setReduced(Boolean.FALSE);
-          alarmCache.put(child);
+          changed_children.add(copyWithReduced(children[i], Boolean.FALSE));
         }
       }
     }
+    if (!changed_children.isEmpty()) {
+      alarmCache.putAll(changed_children);
+    }
+  }
+
+  private Alarm copyWithReduced(String alarmId, Boolean reduced) throws AlarmCacheException {
+    Alarm copy = alarmCache.getCopy(alarmId);
+    copy.getStatus().setReduced(reduced);
+    return copy;
   }
 
   private void notifyMultiplicityParents(Alarm alarm) throws Exception {
@@ -163,7 +163,7 @@ public class CoreServiceImpl {
   public Alarm getAlarmById(String id) {
     Alarm result = null;
     try {
-      result = alarmCache.getCopy(id);
+      result = alarmCache.getReference(id);
     } catch (AlarmCacheException e) {
       LOGGER.warn("unable to get alarm by id " + id, e);
     }
@@ -180,7 +180,7 @@ public class CoreServiceImpl {
   public Alarm getAlarmByTriplet(String ff, String fm, Integer fc) {
     Alarm result = null;
     try {
-      result = alarmCache.getCopy(Triplet.toIdentifier(ff, fm, fc));
+      result = alarmCache.getReference(Triplet.toIdentifier(ff, fm, fc));
     } catch (Exception e) {
       LOGGER.warn("unable to get alarm by triplet : " + ff + ":" + fm + ":" + fc, e);
     }
@@ -23,14 +23,21 @@
 package com.cosylab.acs.laser.dao;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Properties;
 import java.util.Set;
-import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
 
 import cern.laser.business.LaserObjectNotFoundException;
@@ -56,83 +63,131 @@ import com.cosylab.acs.laser.dao.ACSAlarmDAOImpl;
  * Implementation of the {@link AlarmCache} to use within ACS.
  * <P>
  * <b>Note on the locking mechanism.</b><BR>
- * Each method that changes or reads the cache is surrounded by lock/unlock
- * to ensure the mutual exclusion and therefore the integrity of the cache.
- * If a sequence of operations have to be performed in mutual exclusion then
- * the code must initially call <code>acquire()</code> and finally <code>release()</code>. 
- * The locking mechanism of each method works as follows:
- * <UL>
- * <LI>if the lock is free then it is acquired at the beginning and released before exiting
- * <LI>if the lock is not free then it is acquired only if owned by the same thread that is locking it 
- *     and released before exiting
- * </UL>
- * 
+ * The alarms and the active lists are stored in concurrent maps, and the cache
+ * never modifies an alarm once it has been stored: changes are done on a copy
+ * (see {@link #getCopy(String)}) that replaces the stored alarm with {@link #put(Alarm)}.
+ * Therefore reading from the cache ({@link #getReference(String)}) does not lock,
+ * and the returned reference can be read without cloning it.
+ * <BR>
+ * Changes to the same alarm are serialized by a lock that is selected by the ID of the alarm
+ * out of {@link #ALARM_LOCK_STRIPES} locks, so that changes to different alarms
+ * can run in parallel. The listener is notified while this lock is held, i.e.
+ * in the order of the changes of each alarm.
+ * The DAO changes the definition of the alarms (reduction links, thresholds) while holding the same lock,
+ * with {@link #changeDefinition(String, DefinitionChange)}.
+ * <BR>
+ * If a sequence of changes of some alarms have to be performed in mutual exclusion
+ * with the other changes of the same alarms, then the code must initially call
+ * {@link #acquireAlarms(Collection)} and finally {@link #releaseAlarms(int[])}:
+ * the locks of the alarms are taken in stripe order, so that sequences
+ * that change overlapping sets of alarms do not deadlock, while sequences that
+ * change different alarms run in parallel. The alarm message processor does so for each fault state.
+ * <BR>
+ * If a sequence of operations have to be performed in mutual exclusion with all the other changes then
+ * the code must initially call <code>acquire()</code> and finally <code>release()</code>.
+ * No other thread can change the cache in the meantime, but other threads can still read from the cache.
+ * <BR>
+ * An alarm that is not in the cache is loaded from the DAO without holding any lock,
+ * because the DAO can in turn change other alarms of the cache (reduction rules of default alarms).
+ *
  * @author acaproni
  */
-public class ACSAlarmCacheImpl implements AlarmCache 
+public class ACSAlarmCacheImpl implements AlarmCache
 {
 	/**
 	 * The empty String used for undefined String fields
 	 */
 	private static final String EMPTY_STRING="";
-	
+
 	/**
 	 * The key of the property for undocumented alarms
 	 */
 	public static final String alarmServerPropkey="AlarmServerProp";
-	
+
 	/**
 	 * The value of the property for undocumented alarms
 	 */
 	public static final String undocumentedAlarmProp="UnconfiguredAlarm";
-	
+
+	/**
+	 * The number of locks used to serialize the changes of the alarms.
+	 * Must be a power of 2.
+	 */
+	public static final int ALARM_LOCK_STRIPES=64;
+
+	/**
+	 * A change of the definition of an alarm (for example a new reduction link),
+	 * applied by {@link ACSAlarmCacheImpl#changeDefinition(String, DefinitionChange)}
+	 * while holding the lock of the alarm.
+	 */
+	public interface DefinitionChange {
+
+		/**
+		 * Apply the change to a copy of the alarm.
+		 * <P>
+		 * The passed alarm is shared with the readers of the cache and must not be modified.
+		 *
+		 * @param cached The alarm in the cache; <code>null</code> if the alarm is not in the cache
+		 * @return The changed copy of the alarm or <code>null</code> if the alarm does not change
+		 */
+		public Alarm apply(Alarm cached);
+	}
+
 	// The cache of the alarms
 	//
-	// The key is a string (the same string generated 
+	// The key is a string (the same string generated
 	// by Alarm.getTriplet().toIdentifier())
 	// The value is an alarm (AlarmImpl)
-	private Map<String,Alarm> alarms = Collections.synchronizedMap(new HashMap<String,Alarm>());
-	
+	private final ConcurrentHashMap<String,Alarm> alarms = new ConcurrentHashMap<String,Alarm>();
+
 	// The object to access the database
 	private AlarmDAO dao;
-	
+
 	// The listener for the changes in this cache
 	private AlarmCacheListener listener;
-	
+
 	/**
-	 * the lock used to ensure mutual exclusion when accessing the cache.
-	 * 
-	 * It is required instead of synchronized because sometimes the mutual exclusion
-	 * spans between calls to a series of methods of the cache.  
+	 * The lock to ensure mutual exclusion of a series of calls to the methods of the cache
+	 * between <code>acquire()</code> and <code>release()</code>:
+	 * <UL>
+	 * 	<LI>the write lock is held from <code>acquire()</code> to <code>release()</code>
+	 *  <LI>the read lock is held by each method that changes the cache
+	 * </UL>
+	 * Reading from the cache does not use this lock.
+	 */
+	private final ReentrantReadWriteLock lock=new ReentrantReadWriteLock();
+
+	/**
+	 * The locks serializing the changes of the alarms (see {@link #getAlarmLock(String)}).
 	 */
-	private final ReentrantLock lock=new ReentrantLock();
-	
+	private final ReentrantLock[] alarmLocks = new ReentrantLock[ALARM_LOCK_STRIPES];
+
 	/**
-	 * The HashMap with the active alarms per each category
-	 * The map contains a CategoryActiveList per each category 
+	 * The map with the active alarms per each category
+	 * The map contains a CategoryActiveList per each category
 	 * (the key is the Integer identifying the category)
-	 * 
-	 * Policy: 
-	 *   the CategoryActiveList for a category is created and inserted in the map 
+	 *
+	 * Policy:
+	 *   the CategoryActiveList for a category is created and inserted in the map
 	 *   when a new alarm arrives (remember that an alarm has a Set of Categories)
 	 *   So it basically happens in the put and replace methods (based on the
 	 *   status of the alarm itself)
 	 */
-	private HashMap<Integer,CategoryActiveList> activeLists = new HashMap<Integer,CategoryActiveList>();
-	
+	private final ConcurrentHashMap<Integer,CategoryActiveList> activeLists = new ConcurrentHashMap<Integer,CategoryActiveList>();
+
 	/**
 	 * The logger
 	 */
 	private final Logger logger;
-	
+
 	/**
 	 * The category DAO
 	 */
 	private final ACSCategoryDAOImpl categoryDAO;
-	
+
 	/**
 	 * The constructor
-	 * 
+	 *
 	 * @param alarmDAO The object to access the database
 	 * @param alarmCacheListener The listener
 	 */
@@ -143,46 +198,41 @@ public class ACSAlarmCacheImpl implements AlarmCache
 		}
 		this.logger=logger;
 		this.categoryDAO=categoryDAO;
-		
-		alarms.clear(); // Redundant
-		
+
+		for (int t=0; t<alarmLocks.length; t++) {
+			alarmLocks[t]=new ReentrantLock();
+		}
+
 		// Store the values in local variables
 		dao=alarmDAO;
 		ACSAlarmDAOImpl t = (ACSAlarmDAOImpl)dao;
 		t.setAlarmCache(this);
 		listener=alarmCacheListener;
-		
+
 		// The alarms should be loaded in the cache in the constructor
 		// but it is not working because something in the DAO chain has
 		// not yet been initialized
 		//
-		// All the alarms are load when the first request arrives 
+		// All the alarms are load when the first request arrives
 		// in the getReference method
 	}
 
 	public void initializeAlarmCache(Map alarms, Map activeLists) {
-		lock.lock();
+		lock.writeLock().lock();
 		try {
 			this.alarms.putAll(alarms);
 			this.activeLists.putAll(activeLists);
 		} finally {
-			lock.unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
 	public Alarm getCopy(String identifier) throws AlarmCacheException {
 		// This method get the reference to the object first and then
-		// create a copy to return to the caller
-		
-		// The Alarm to return a copy of
-		lock.lock();
-		Alarm retAl;
-		try {
-			retAl = getReference(identifier);
-			return (Alarm)(((AlarmImpl)retAl).clone());
-		} finally {
-			lock.unlock();
-		}
+		// create a copy to return to the caller.
+		// No lock is needed because a stored alarm is never modified.
+		Alarm retAl = getReference(identifier);
+		return (Alarm)(((AlarmImpl)retAl).clone());
 	}
 
 	/**
@@ -191,170 +241,237 @@ public class ACSAlarmCacheImpl implements AlarmCache
 	 * to the {@link ACSAlarmDAOImpl}.
 	 * <P>
 	 * If the alarm is not found then an alarm is built to be sent to the client
-	 * but it is marked with a special property to identify it as a misconfigured 
-	 * alarm. In the case of the alarm panel, such alarms will be displayed in a 
+	 * but it is marked with a special property to identify it as a misconfigured
+	 * alarm. In the case of the alarm panel, such alarms will be displayed in a
 	 * dedicated tab.
-	 * 
+	 * <P>
+	 * The returned alarm is shared with the other users of the cache and must not be modified:
+	 * to change an alarm, use {@link #getCopy(String)} and {@link #put(Alarm)}.
+	 *
 	 * @param identifier The ID of the alarm to get from the cache
 	 */
 	public Alarm getReference(String identifier) throws AlarmCacheException {
-		lock.lock();
-		Alarm retAl;
-		try {
-			// The Alarm to return a reference of
-			// Check the integrity of internal data structs
-			if (alarms==null || dao==null) {
-				System.err.println("*** ACSAlarmCache internal data corrupted!");
-				throw new AlarmCacheException("ACSAlarmCache internal data corrupted!");
-			}
-			
-			if (!alarms.containsKey(identifier)) {
-				// Get the alarm from the database
-				try {
-					retAl=(Alarm)dao.findAlarm(identifier);
-				} catch (LaserObjectNotFoundException lonfe) {
-					// The alarm is not in the configuration database
-					//
-					// Built an alarm to be sent to the clients 
-					// with an special property
-					logger.finer(identifier+" is not in TM/CDB: building an unconfigured alarm");
-					retAl=buildUnconfiguredAlarm(identifier);
-				} catch (Throwable t) {
-					System.err.println("*** Exception reading from CDB "+t.getMessage());
-					throw new AlarmCacheException(t.getMessage());
-				}
-				if (retAl==null) {
-					System.err.println("*** Alarm not found in database");
-					throw new AlarmCacheException("Alarm not found in database");
-				} else {
-					// Add the alarm to the cache
-					alarms.put(identifier,retAl);
-				}
-			} else {
-				// Get the alarm from the cache
-				retAl=alarms.get(identifier);
-			}
-			if (retAl==null) {
-				System.err.println("*** Invalid Alarm");
-				throw new AlarmCacheException("Invalid Alarm");
-			}
+		if (identifier==null) {
+			throw new AlarmCacheException("Invalid null alarm identifier");
+		}
+		// Check the integrity of internal data structs
+		if (dao==null) {
+			System.err.println("*** ACSAlarmCache internal data corrupted!");
+			throw new AlarmCacheException("ACSAlarmCache internal data corrupted!");
+		}
+
+		Alarm retAl=alarms.get(identifier);
+		if (retAl!=null) {
 			return retAl;
-		} finally {
-			lock.unlock();
 		}
+
+		// Get the alarm from the database.
+		//
+		// If another thread loads the same alarm at the same time then
+		// the alarm that first made it into the cache is returned to both of them.
+		try {
+			retAl=(Alarm)dao.findAlarm(identifier);
+		} catch (LaserObjectNotFoundException lonfe) {
+			// The alarm is not in the configuration database
+			//
+			// Built an alarm to be sent to the clients
+			// with an special property
+			logger.finer(identifier+" is not in TM/CDB: building an unconfigured alarm");
+			retAl=buildUnconfiguredAlarm(identifier);
+		} catch (Throwable t) {
+			System.err.println("*** Exception reading from CDB "+t.getMessage());
+			throw new AlarmCacheException(t.getMessage());
+		}
+		if (retAl==null) {
+			System.err.println("*** Alarm not found in database");
+			throw new AlarmCacheException("Alarm not found in database");
+		}
+		// Add the alarm to the cache
+		Alarm cachedAl=alarms.putIfAbsent(identifier,retAl);
+		return (cachedAl==null) ? retAl : cachedAl;
 	}
-	
+
 	/**
 	 * Update an alarm in the cache without notifying the listener.
-	 * 
+	 *
 	 * NOTE: this is used when alarms are generated on the fly (defaultFM) because in
 	 * that case there i sno need to notify the listener
-	 * 
+	 *
 	 * @param alarm
 	 */
 	public void update(Alarm alarm) {
-		lock.lock();
+		if (alarm==null) {
+			throw new IllegalArgumentException("The alarm can't be null");
+		}
+		lock.readLock().lock();
+		ReentrantLock alarmLock = getAlarmLock(alarm.getAlarmId());
+		alarmLock.lock();
 		try {
-			if (alarm==null) {
-				throw new IllegalArgumentException("The alarm can't be null");
-			}
 			alarms.put(alarm.getAlarmId(), alarm);
 			dao.updateAlarm(alarm);
 		} finally {
-			lock.unlock();
+			alarmLock.unlock();
+			lock.readLock().unlock();
 		}
 	}
 
 	public void replace(Alarm alarm) throws AlarmCacheException {
-		lock.lock();
+		if (alarm==null) {
+			throw new IllegalArgumentException("Replacing with a null alarm is not allowed");
+		}
+		String identifier=alarm.getTriplet().toIdentifier();
+		lock.readLock().lock();
+		ReentrantLock alarmLock = getAlarmLock(identifier);
+		alarmLock.lock();
+		try {
+			Alarm oldAl=alarms.put(identifier,alarm);
+			dao.updateAlarm(alarm);
+			sendMsgToListener(alarm,oldAl);
+			updateCategoryActiveLists(Collections.singletonList(alarm));
+			//dumpAlarmsCache(false);
+		} finally {
+			alarmLock.unlock();
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Change the definition of the alarm with the given ID while holding the lock of the alarm,
+	 * so that concurrent changes of the same alarm are not lost.
+	 * <P>
+	 * The changed alarm returned by <code>change</code> replaces the alarm in the cache
+	 * and the listener is notified, like {@link #replace(Alarm)} does.
+	 *
+	 * @param identifier The ID of the alarm to change
+	 * @param change The change to apply to the alarm
+	 * @return The changed alarm or <code>null</code> if <code>change</code> did not change the alarm
+	 * @see DefinitionChange
+	 */
+	public Alarm changeDefinition(String identifier, DefinitionChange change) throws AlarmCacheException {
+		if (identifier==null || change==null) {
+			throw new IllegalArgumentException("The ID and the change can't be null");
+		}
+		lock.readLock().lock();
+		ReentrantLock alarmLock = getAlarmLock(identifier);
+		alarmLock.lock();
 		try {
+			Alarm oldAl=alarms.get(identifier);
+			Alarm alarm=change.apply(oldAl);
 			if (alarm==null) {
-				throw new IllegalArgumentException("Replacing with a null alarm is not allowed");
+				return null;
 			}
-			Alarm oldAl=alarms.put(alarm.getTriplet().toIdentifier(),alarm);
+			alarms.put(identifier,alarm);
 			dao.updateAlarm(alarm);
 			sendMsgToListener(alarm,oldAl);
-			updateCategoryActiveLists(alarm);
-			//dumpAlarmsCache(false); 
+			updateCategoryActiveLists(Collections.singletonList(alarm));
+			return alarm;
 		} finally {
-			lock.unlock();
+			alarmLock.unlock();
+			lock.readLock().unlock();
 		}
 	}
 
 	public void put(Alarm alarm) throws AlarmCacheException {
-		lock.lock();
+		if (alarm==null) {
+			throw new IllegalArgumentException("Inserting a null alarm is not allowed");
+		}
+		String identifier=alarm.getTriplet().toIdentifier();
+		lock.readLock().lock();
+		ReentrantLock alarmLock = getAlarmLock(identifier);
+		alarmLock.lock();
 		try {
-			if (alarm==null) {
-				throw new IllegalArgumentException("Inserting a null alarm is not allowed");
-			}
-			Alarm oldAl=alarms.put(alarm.getTriplet().toIdentifier(),alarm);
+			Alarm oldAl=alarms.put(identifier,alarm);
 			dao.updateAlarm(alarm);
-			updateCategoryActiveLists(alarm);
+			updateCategoryActiveLists(Collections.singletonList(alarm));
 			sendMsgToListener(alarm,oldAl);
 			//dumpAlarmsCache(false);
 		} finally {
-			lock.unlock();
+			alarmLock.unlock();
+			lock.readLock().unlock();
 		}
 	}
 
-	public void invalidate(String identifier) throws AlarmCacheException {
-		lock.lock();
+	/**
+	 * Put several alarms in the cache, like calling {@link #put(Alarm)} for each of them,
+	 * but updating the active lists only once per category at the end.
+	 * <P>
+	 * The listener is notified for each alarm in the order of the collection.
+	 *
+	 * @param alarmsToPut The alarms to put in the cache
+	 */
+	public void putAll(Collection<Alarm> alarmsToPut) throws AlarmCacheException {
+		if (alarmsToPut==null) {
+			throw new IllegalArgumentException("Inserting a null collection of alarms is not allowed");
+		}
+		lock.readLock().lock();
 		try {
-			if (identifier==null) {
-				throw new IllegalArgumentException("Invalidating a null key is not allowed");
-			}
-			
-			if (!alarms.containsKey(identifier)) {
-				throw new AlarmCacheException("The object with the given identifier does not exist");
+			for (Alarm alarm: alarmsToPut) {
+				if (alarm==null) {
+					throw new IllegalArgumentException("Inserting a null alarm is not allowed");
+				}
+				String identifier=alarm.getTriplet().toIdentifier();
+				ReentrantLock alarmLock = getAlarmLock(identifier);
+				alarmLock.lock();
+				try {
+					Alarm oldAl=alarms.put(identifier,alarm);
+					dao.updateAlarm(alarm);
+					sendMsgToListener(alarm,oldAl);
+				} finally {
+					alarmLock.unlock();
+				}
 			}
-			alarms.remove(identifier);
-			//dumpAlarmsCache(false);
+			updateCategoryActiveLists(alarmsToPut);
 		} finally {
-			lock.unlock();
+			lock.readLock().unlock();
 		}
 	}
 
-	public CategoryActiveList getActiveListReference(Integer identifier) throws AlarmCacheException {
-		lock.lock();
+	public void invalidate(String identifier) throws AlarmCacheException {
+		if (identifier==null) {
+			throw new IllegalArgumentException("Invalidating a null key is not allowed");
+		}
+		lock.readLock().lock();
+		ReentrantLock alarmLock = getAlarmLock(identifier);
+		alarmLock.lock();
 		try {
-			if (activeLists.containsKey(identifier)) {
-				return activeLists.get(identifier);
-			} else {
-				CategoryActiveList catList = new CategoryActiveList(identifier);
-				activeLists.put(identifier,catList);
-				return catList;
+			if (alarms.remove(identifier)==null) {
+				throw new AlarmCacheException("The object with the given identifier does not exist");
 			}
+			//dumpAlarmsCache(false);
 		} finally {
-			lock.unlock();
+			alarmLock.unlock();
+			lock.readLock().unlock();
 		}
 	}
 
+	public CategoryActiveList getActiveListReference(Integer identifier) throws AlarmCacheException {
+		return getCategoryList(identifier);
+	}
+
 	public void close() {
-		lock.lock();
+		lock.writeLock().lock();
 		try {
 			alarms.clear();
 		} finally {
-			lock.unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
 	public void removeActiveList(Integer identifier) throws AlarmCacheException {
-		lock.lock();
 		activeLists.remove(identifier);
-		lock.unlock();
 	}
-	
+
 	/**
 	 * Send the message to the listener
-	 * 
+	 *
 	 * NOTE: If the previous alarm does not exist (for example if the alarm is new)
 	 *       then we send as old alarm the actual alarm
 	 *       If we send a null then cern.laser.business.pojo.AlarmPublisher:publish
 	 *       returns an exception while executing
 	 *       Status previous_alarm_status=previous.getStatus();
-	 *       
+	 *
 	 *       This policy seems reasonable but could have an impact somewhere
-	 * 
+	 *
 	 * @param actual The actual alarm
 	 * @param old The previous alarm
 	 */
@@ -365,7 +482,58 @@ public class ACSAlarmCacheImpl implements AlarmCache
 			listener.onAlarmChange(new AlarmChange(actual,old));
 		}
 	}
-	
+
+	/**
+	 * Return the lock that serializes the changes of the alarm with the given ID.
+	 * The same lock is shared by all the alarms whose IDs fall in the same stripe.
+	 *
+	 * @param identifier The ID of the alarm
+	 * @return The lock for the alarm
+	 */
+	private ReentrantLock getAlarmLock(String identifier) {
+		return alarmLocks[getStripe(identifier)];
+	}
+
+	/**
+	 * Return the stripe of the lock of the alarm with the given ID.
+	 *
+	 * @param identifier The ID of the alarm
+	 * @return The index of the lock of the alarm in {@link #alarmLocks}
+	 */
+	private static int getStripe(String identifier) {
+		int hash=identifier.hashCode();
+		// spread the bits of the hash code as the HashMap does
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return hash & (ALARM_LOCK_STRIPES-1);
+	}
+
+	/**
+	 * Return the stripes of the locks of the alarms with the given IDs.
+	 *
+	 * @param identifiers The IDs of the alarms
+	 * @return The stripes, sorted and without duplicates
+	 */
+	private static int[] getStripes(Collection<String> identifiers) {
+		boolean[] used = new boolean[ALARM_LOCK_STRIPES];
+		int count=0;
+		for (String identifier: identifiers) {
+			int stripe=getStripe(identifier);
+			if (!used[stripe]) {
+				used[stripe]=true;
+				count++;
+			}
+		}
+		int[] stripes = new int[count];
+		int pos=0;
+		for (int t=0; t<ALARM_LOCK_STRIPES; t++) {
+			if (used[t]) {
+				stripes[pos++]=t;
+			}
+		}
+		return stripes;
+	}
+
 	/**
 	 * Print a copy of the alarms in the cache in the standard output.
 	 * This method is added for debugging
@@ -397,79 +565,166 @@ public class ACSAlarmCacheImpl implements AlarmCache
 		}
 		System.out.println("ACSAlarmCacheImpl dumping cache..... done");
 	}
-	
+
 	/**
 	 * Return the CategoryActiveList for the specified categoryId.
 	 * If the CategoryActiveList does not exist than a new one is created and
 	 * inserted in the activeList and then returned to the caller
-	 * 
+	 *
 	 * @param categoryId The categoryId identifying the CategoryActiveList
 	 * @return The CategoryActiveList for the specified categoryId
 	 */
 	private CategoryActiveList getCategoryList(Integer categoryId) {
-		if (activeLists.containsKey(categoryId)) {
-			return activeLists.get(categoryId);
-		} else {
-			CategoryActiveList catList = new CategoryActiveList(categoryId);
-			activeLists.put(categoryId,catList);
-			return catList;
+		CategoryActiveList catList = activeLists.get(categoryId);
+		if (catList==null) {
+			CategoryActiveList newCatList = new CategoryActiveList(categoryId);
+			catList = activeLists.putIfAbsent(categoryId,newCatList);
+			if (catList==null) {
+				catList=newCatList;
+			}
 		}
+		return catList;
 	}
-	
+
 	/**
-	 * Update the CategoryActiveList for the alarm: all the CategoryActiveLists
-	 * of the categories of the alarm will be updated.
+	 * Update the CategoryActiveLists for the alarms: all the CategoryActiveLists
+	 * of the categories of the alarms will be updated.
 	 * The alarmId is inserted or removed in the CategoryActiveList depending
-	 * of the status of the alarm
-	 * 
-	 * @param alarm The alarm whose id must be inserted or removed for the
-	 *     	        CategoryActiveLists of its categories
+	 * of the status of the alarm.
+	 * <P>
+	 * The changes are collected per category first, so that each CategoryActiveList
+	 * is updated once. If the same alarm is passed more then once then its last status wins.
+	 *
+	 * @param alarmsToUpdate The alarms whose ids must be inserted or removed for the
+	 *     	                 CategoryActiveLists of their categories
 	 */
-	private void updateCategoryActiveLists(Alarm alarm) {
-		if (alarm.getStatus()==null || alarm.getStatus().getActive()==null) {
-			throw new IllegalArgumentException("Invalid alarm: status and/or status.active null");
-		}
-		boolean status = alarm.getStatus().getActive().booleanValue();
-		String alarmId = alarm.getAlarmId();
-		Iterator categoryIterator = alarm.getCategories().iterator();
-		while (categoryIterator.hasNext()) {
-			Integer categoryId = (Integer)((Category)categoryIterator.next()).getCategoryId();
-			CategoryActiveList catList = null;
-			try {
-				catList = getActiveListReference(categoryId);
-			} catch (AlarmCacheException ace) {
-				// In this implementation no exception can be thrown
-				// by getActiveListReference
-				// I write a message in case someone changes the things
-				System.err.println("Exception "+ace.getMessage());
-				ace.printStackTrace();
-				continue;
+	private void updateCategoryActiveLists(Collection<Alarm> alarmsToUpdate) {
+		// For each category, the IDs of the alarms with their active flag
+		Map<Integer, Map<String,Boolean>> changes = new HashMap<Integer, Map<String,Boolean>>();
+		for (Alarm alarm: alarmsToUpdate) {
+			if (alarm.getStatus()==null || alarm.getStatus().getActive()==null) {
+				throw new IllegalArgumentException("Invalid alarm: status and/or status.active null");
 			}
-			if (status) {
-				catList.addAlarm(alarmId);
-			} else {
-				catList.removeAlarm(alarmId);
+			Boolean status = alarm.getStatus().getActive();
+			String alarmId = alarm.getAlarmId();
+			Iterator categoryIterator = alarm.getCategories().iterator();
+			while (categoryIterator.hasNext()) {
+				Integer categoryId = (Integer)((Category)categoryIterator.next()).getCategoryId();
+				Map<String,Boolean> catChanges = changes.get(categoryId);
+				if (catChanges==null) {
+					catChanges = new LinkedHashMap<String,Boolean>();
+					changes.put(categoryId, catChanges);
+				}
+				catChanges.put(alarmId, status);
 			}
 		}
+		for (Map.Entry<Integer, Map<String,Boolean>> entry: changes.entrySet()) {
+			List<String> toAdd = new ArrayList<String>();
+			List<String> toRemove = new ArrayList<String>();
+			for (Map.Entry<String,Boolean> change: entry.getValue().entrySet()) {
+				if (change.getValue().booleanValue()) {
+					toAdd.add(change.getKey());
+				} else {
+					toRemove.add(change.getKey());
+				}
+			}
+			getCategoryList(entry.getKey()).update(toAdd, toRemove);
+		}
 	}
-	
+
+	/**
+	 * Acquire the locks of the alarms with the given IDs.
+	 * <P>
+	 * Until {@link #releaseAlarms(int[])}, other threads cannot change these alarms (nor the alarms
+	 * that share the same locks) but can change the other alarms and read from the cache.
+	 * The locks are taken in stripe order. While holding them, the caller can change the
+	 * alarms with the methods of the cache, that take the same locks again.
+	 * <P>
+	 * The alarms should be already in the cache (for example read with {@link #getReference(String)}
+	 * before calling this method) because loading an alarm from the DAO can change other alarms,
+	 * whose locks might not be held.
+	 *
+	 * @param identifiers The IDs of the alarms to lock
+	 * @return The stripes of the locks taken, to pass to {@link #releaseAlarms(int[])}
+	 *         and {@link #holdsAlarms(int[], Collection)}
+	 */
+	public int[] acquireAlarms(Collection<String> identifiers) {
+		if (identifiers==null) {
+			throw new IllegalArgumentException("The collection of IDs can't be null");
+		}
+		int[] stripes = getStripes(identifiers);
+		lock.readLock().lock();
+		for (int stripe: stripes) {
+			alarmLocks[stripe].lock();
+		}
+		return stripes;
+	}
+
+	/**
+	 * Check if the locks taken by {@link #acquireAlarms(Collection)} cover the alarms with the given IDs.
+	 * <P>
+	 * This is needed when the alarms to lock were found following the reduction links,
+	 * that can change before the locks are taken.
+	 *
+	 * @param stripes The stripes returned by {@link #acquireAlarms(Collection)}
+	 * @param identifiers The IDs of the alarms
+	 * @return <code>true</code> if the locks of all the alarms are held
+	 */
+	public boolean holdsAlarms(int[] stripes, Collection<String> identifiers) {
+		for (String identifier: identifiers) {
+			if (Arrays.binarySearch(stripes, getStripe(identifier))<0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Release the locks taken by {@link #acquireAlarms(Collection)}.
+	 *
+	 * @param stripes The stripes returned by {@link #acquireAlarms(Collection)}
+	 */
+	public void releaseAlarms(int[] stripes) {
+		for (int t=stripes.length-1; t>=0; t--) {
+			alarmLocks[stripes[t]].unlock();
+		}
+		lock.readLock().unlock();
+	}
+
+	/**
+	 * Return the alarm with the given ID if it is in the cache, without loading it from the DAO.
+	 * <P>
+	 * Like for {@link #getReference(String)}, the returned alarm must not be modified.
+	 *
+	 * @param identifier The ID of the alarm
+	 * @return The alarm or <code>null</code> if the alarm is not in the cache
+	 */
+	public Alarm getCachedReference(String identifier) {
+		if (identifier==null) {
+			throw new IllegalArgumentException("Invalid null alarm identifier");
+		}
+		return alarms.get(identifier);
+	}
+
 	/**
 	 * Acquire the lock for using the cache.
+	 * <P>
+	 * Until {@link #release()}, other threads cannot change the cache but can read from it.
 	 */
 	public void acquire() {
-		if (lock.isHeldByCurrentThread()) {
+		if (lock.isWriteLockedByCurrentThread()) {
 			System.out.println("===>>>>> The same thread tries to acquire the cache more then once!");
 		}
-		lock.lock();
+		lock.writeLock().lock();
 	}
-	
+
 	/**
-	 * Acquire the lock for using the cache.
+	 * Release the lock for using the cache.
 	 */
 	public void release() {
-		lock.unlock();
+		lock.writeLock().unlock();
 	}
-	
+
 	/**
 	 * Build a unconfigured alarm from the passed ID.
 	 * 
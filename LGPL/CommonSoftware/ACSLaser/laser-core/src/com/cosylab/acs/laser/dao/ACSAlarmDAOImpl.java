@@ -62,6 +62,7 @@ import alma.alarmsystem.alarmmessage.generated.Thresholds;
 import alma.alarmsystem.core.alarms.LaserCoreFaultState.LaserCoreFaultCodes;
 import alma.cdbErrType.CDBRecordDoesNotExistEx;
 import cern.laser.business.LaserObjectNotFoundException;
+import cern.laser.business.cache.AlarmCacheException;
 import cern.laser.business.dao.AlarmDAO;
 import cern.laser.business.dao.ResponsiblePersonDAO;
 import cern.laser.business.data.Alarm;
@@ -123,6 +124,10 @@ class HardcodedLocation extends Location
  * <P>
  * For the assigning alarms to reduction rules, the class take advantage of the fact that
  * a parent in a reduction rule never contains regular expressions nor wildcards. 
+ * <P>
+ * The alarms stored in <code>alarmDefs</code> are shared with the {@link ACSAlarmCacheImpl} and
+ * its readers, so they are never modified: the reduction links and the thresholds
+ * are set on a copy that replaces the alarm (see {@link #changeDefinition(String, DefinitionUpdate)}).
  * 
  *   
  *  @see ACSSourceDAOImpl
@@ -541,15 +546,12 @@ public class ACSAlarmDAOImpl implements AlarmDAO
 					// This alarm is a child in this reduction rule lsb, let's
 					// get the parent from the reduction rule itself
 					String alarmParentID=lsb._parent.getMatcherAlarmID();
-					Alarm parent = alarmDefs.get(alarmParentID);
-					if (parent!=null) {
+					if (alarmDefs.containsKey(alarmParentID)) {
 						if (lsb.isMultiplicity()) {
-							addMultiplicityChild(parent, allAlarms[a]);
-							parent.setMultiplicityThreshold(theThreshods.get(parent.getAlarmId()));
+							addMultiplicityChild(alarmParentID, allAlarms[a].getAlarmId());
 						} else {
-							addNodeChild(parent, allAlarms[a]);
+							addNodeChild(alarmParentID, allAlarms[a].getAlarmId());
 						}
-					} else {
 					}
 				}
 			}
@@ -668,10 +670,9 @@ public class ACSAlarmDAOImpl implements AlarmDAO
 					AlarmImpl aic=allAlarms[c];
 					if (parentMatcher.isMatch(aic)) {
 						if (isMulti) {
-							addMultiplicityChild(aic,alarm);
-							aic.setMultiplicityThreshold(theThreshods.get(aic.getAlarmId()));
+							addMultiplicityChild(aic.getAlarmId(), alarm.getAlarmId());
 						} else {
-							addNodeChild(aic,alarm);
+							addNodeChild(aic.getAlarmId(), alarm.getAlarmId());
 						}
 					}
 				}
@@ -685,10 +686,9 @@ public class ACSAlarmDAOImpl implements AlarmDAO
 					AlarmImpl aic=allAlarms[c];
 					if (childMatcher.isMatch(aic)) {
 						if (isMulti) {
-							addMultiplicityChild(alarm, aic);
-							alarm.setMultiplicityThreshold(theThreshods.get(alarm.getAlarmId()));
+							addMultiplicityChild(alarm.getAlarmId(), aic.getAlarmId());
 						} else {
-							addNodeChild(alarm, aic);
+							addNodeChild(alarm.getAlarmId(), aic.getAlarmId());
 						}
 					}
 				}
@@ -697,70 +697,151 @@ public class ACSAlarmDAOImpl implements AlarmDAO
 	}
 	
 	/**
-	 * Add the child to the parent in the node reduction
+	 * A change of the definition of an alarm, applied by {@link ACSAlarmDAOImpl#changeDefinition(String, DefinitionUpdate)}
+	 * to a copy of the alarm.
+	 */
+	private interface DefinitionUpdate {
+
+		/**
+		 * Change the passed copy of the alarm
+		 *
+		 * @param copy The copy of the alarm to change
+		 * @return <code>true</code> if the copy has been changed
+		 */
+		public boolean update(AlarmImpl copy);
+	}
+
+	/**
+	 * Change the definition of an alarm without modifying the instance shared with
+	 * the readers: the change is applied to a copy of the alarm that replaces the alarm
+	 * in <code>alarmDefs</code> and, if any, in the alarm cache.
 	 * <P>
-	 * It checks if the definition of the parent and/or the definition of the child
-	 * change after the updating and call a replace(...) in the cache to trigger
-	 * the notification to the clients.
-	 * 
-	 * @param parent The parent of the node reduction
-	 * @param child The child of the node reduction
+	 * The changes of the same alarm are serialized so that none of them is lost:
+	 * by the lock of the alarm in the cache or, if there is no cache, by <code>alarmDefs</code>.
+	 * If the alarm is replaced in the cache then the clients are notified.
+	 *
+	 * @param alarmId The ID of the alarm to change
+	 * @param update The change of the alarm
+	 * @return The changed alarm or <code>null</code> if the alarm has not been changed
 	 */
-	private void addNodeChild(Alarm parent, Alarm child) {
-		boolean notifyParent=!((AlarmImpl)parent).getNodeChildrenIds().contains(child.getAlarmId());
-		boolean notifyChild=!((AlarmImpl)child).getNodeParentIds().contains(parent.getAlarmId());
-		parent.addNodeChild(child);
-		logger.log(AcsLogLevel.DEBUG,"Added NODE RR node child "+child.getAlarmId()+" to "+parent.getAlarmId());
-		if (notifyParent && alarmCache!=null) {
-			try {
-				alarmCache.replace(parent);
-				if (messageProcessor!=null) {
-					messageProcessor.updateReductionStatus(parent);
+	private Alarm changeDefinition(final String alarmId, final DefinitionUpdate update) throws AlarmCacheException {
+		if (alarmCache==null) {
+			synchronized (alarmDefs) {
+				Alarm alarm=alarmDefs.get(alarmId);
+				if (alarm==null) {
+					return null;
+				}
+				AlarmImpl copy=(AlarmImpl)((AlarmImpl)alarm).clone();
+				if (!update.update(copy)) {
+					return null;
 				}
-			} catch (Throwable t) {
-				System.err.println("Error updating a node child:"+t.getMessage());
-				t.printStackTrace();
+				addAlarmToCache(copy);
+				return copy;
 			}
 		}
-		if (notifyChild && alarmCache!=null) {
-			try {
-				alarmCache.replace(child);
-				if (messageProcessor!=null) {
-					messageProcessor.updateReductionStatus(child);
+		return alarmCache.changeDefinition(alarmId, new ACSAlarmCacheImpl.DefinitionChange() {
+			public Alarm apply(Alarm cached) {
+				// The alarm is not yet in the cache while it is built from the default
+				Alarm alarm = (cached!=null) ? cached : alarmDefs.get(alarmId);
+				if (alarm==null) {
+					return null;
 				}
-			} catch (Throwable t) {
-				System.err.println("Error updating a node child:"+t.getMessage());
-				t.printStackTrace();
+				AlarmImpl copy=(AlarmImpl)((AlarmImpl)alarm).clone();
+				return update.update(copy) ? copy : null;
 			}
+		});
+	}
+
+	/**
+	 * Set the reduced flag of the status of the passed child
+	 * if at least one of its parents is active.
+	 * <P>
+	 * It is called while the changes of the cache are locked so that
+	 * the status of the parents does not change in the meantime.
+	 *
+	 * @param child The child whose reduction status must be updated
+	 */
+	private void updateReductionStatus(AlarmImpl child) {
+		if (alarmCache==null || messageProcessor==null) {
+			return;
+		}
+		try {
+			child.getStatus().setReduced(Boolean.valueOf(messageProcessor.isReduced(child)));
+		} catch (Throwable t) {
+			logger.log(AcsLogLevel.ERROR,"Error updating the reduction status of "+child.getAlarmId(),t);
 		}
 	}
-	
-	private void addMultiplicityChild(Alarm parent, Alarm child) {
-		boolean notifyParent=!((AlarmImpl)parent).getMultiplicityChildrenIds().contains(child.getAlarmId());
-		boolean notifyChild=!((AlarmImpl)child).getMultiplicityParentIds().contains(parent.getAlarmId());
-		
-		parent.addMultiplicityChild(child);
-		if (notifyParent && alarmCache!=null) {
-			try {
-				alarmCache.replace(parent);
-				if (messageProcessor!=null) {
-					messageProcessor.updateReductionStatus(parent);
+
+	/**
+	 * Add the child to the parent in the node reduction
+	 * <P>
+	 * The definitions of the parent and of the child are changed only if
+	 * they do not already contain the link; the cache notifies the clients
+	 * of the changed alarms.
+	 * <BR>
+	 * The reduction status of the child is updated together with its definition.
+	 * The status of the parent does not depend on its children and does not change.
+	 *
+	 * @param parentId The ID of the parent of the node reduction
+	 * @param childId The ID of the child of the node reduction
+	 */
+	private void addNodeChild(final String parentId, final String childId) {
+		try {
+			changeDefinition(parentId, new DefinitionUpdate() {
+				public boolean update(AlarmImpl copy) {
+					return copy.getNodeChildrenIds().add(childId);
 				}
-			} catch (Throwable t) {
-				System.err.println("Error updating a node child:"+t.getMessage());
-				t.printStackTrace();
-			}
+			});
+			changeDefinition(childId, new DefinitionUpdate() {
+				public boolean update(AlarmImpl copy) {
+					if (!copy.getNodeParentIds().add(parentId)) {
+						return false;
+					}
+					updateReductionStatus(copy);
+					return true;
+				}
+			});
+			logger.log(AcsLogLevel.DEBUG,"Added NODE RR node child "+childId+" to "+parentId);
+		} catch (Throwable t) {
+			logger.log(AcsLogLevel.ERROR,"Error adding the node child "+childId+" to "+parentId,t);
 		}
-		if (notifyChild && alarmCache!=null) {
-			try {
-				alarmCache.replace(child);
-				if (messageProcessor!=null) {
-					messageProcessor.updateReductionStatus(child);
+	}
+
+	/**
+	 * Add the child to the parent in the multiplicity reduction
+	 * and set the threshold of the parent.
+	 * <P>
+	 * Like {@link #addNodeChild(String, String)}, the definitions are changed only if
+	 * they do not already contain the link (or the threshold).
+	 *
+	 * @param parentId The ID of the parent of the multiplicity reduction
+	 * @param childId The ID of the child of the multiplicity reduction
+	 */
+	private void addMultiplicityChild(final String parentId, final String childId) {
+		try {
+			changeDefinition(parentId, new DefinitionUpdate() {
+				public boolean update(AlarmImpl copy) {
+					boolean changed=copy.getMultiplicityChildrenIds().add(childId);
+					Integer threshold=theThreshods.get(parentId);
+					if (threshold!=null && !threshold.equals(copy.getMultiplicityThreshold())) {
+						copy.setMultiplicityThreshold(threshold);
+						changed=true;
+					}
+					return changed;
 				}
-			} catch (Throwable t) {
-				System.err.println("Error updating a node child:"+t.getMessage());
-				t.printStackTrace();
-			}
+			});
+			changeDefinition(childId, new DefinitionUpdate() {
+				public boolean update(AlarmImpl copy) {
+					if (!copy.getMultiplicityParentIds().add(parentId)) {
+						return false;
+					}
+					updateReductionStatus(copy);
+					return true;
+				}
+			});
+			logger.log(AcsLogLevel.DEBUG,"Added MULTIPLICITY RR child "+childId+" to "+parentId);
+		} catch (Throwable t) {
+			logger.log(AcsLogLevel.ERROR,"Error adding the multiplicity child "+childId+" to "+parentId,t);
 		}
 	}
 
@@ -877,6 +958,8 @@ public class ACSAlarmDAOImpl implements AlarmDAO
 							alarmTriplet.getFaultFamily(), 
 							alarmTriplet.getFaultMember(), 
 							alarmTriplet.getFaultCode()));
+			// The threshold is set before the alarm is visible to other threads
+			updateAlarmThreshold(alarm);
 			// Add the alarm in the HashMap
 			//
 			// addAlarmToCache trigger the sending of the alarm to the clients
@@ -884,8 +967,9 @@ public class ACSAlarmDAOImpl implements AlarmDAO
 			addAlarmToCache(alarm);
 			// Refresh the reduction rules with the newly added alarm
 			updateAlarmReductionRule(alarm);
-			updateAlarmThreshold(alarm);
 			//dumpReductionRules();
+			// The reduction rules replaced the alarm with a changed copy
+			alarm=(AlarmImpl)alarmDefs.get(alarmId);
 		}
 		return alarm;
 		
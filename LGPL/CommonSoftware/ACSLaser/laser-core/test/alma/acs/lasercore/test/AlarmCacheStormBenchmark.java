@@ -0,0 +1,227 @@
+/*
+ * ALMA - Atacama Large Millimiter Array (c) European Southern Observatory, 2013
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+package alma.acs.lasercore.test;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import alma.alarmsystem.core.alarms.LaserCoreFaultState.LaserCoreFaultCodes;
+
+import cern.laser.business.cache.AlarmCacheListener;
+import cern.laser.business.data.Alarm;
+import cern.laser.business.data.AlarmChange;
+import cern.laser.business.data.AlarmImpl;
+import cern.laser.business.data.Category;
+import cern.laser.business.data.CategoryImpl;
+import cern.laser.business.data.StatusImpl;
+import cern.laser.business.data.Triplet;
+
+import com.cosylab.acs.laser.dao.ACSAlarmCacheImpl;
+import com.cosylab.acs.laser.dao.ACSAlarmDAOImpl;
+import com.cosylab.acs.laser.dao.ACSCategoryDAOImpl;
+
+/**
+ * Reproduces an alarm storm on the {@link ACSAlarmCacheImpl}, without alarm sources, CDB or clients.
+ * <P>
+ * The writer threads change the alarms as the alarm message processor does (lock the alarm, copy, change the status, put)
+ * at the given total rate, while the reader threads read alarms and active lists as the client queries do.
+ * The alarms are put in the cache beforehand, so the DAO is not read from.
+ * At the end, the rate of the changes and of the reads, the max time of a change, and the number
+ * of notifications received by the listener are printed.
+ * <P>
+ * Arguments: number of alarms (default 10000), duration in seconds (default 10),
+ * writer threads (default 4), reader threads (default 4),
+ * changes per second of all the writers together (default 50000, 0 means as fast as possible).
+ * <P>
+ * Only for manual runs, e.g. <code>acsStartJava alma.acs.lasercore.test.AlarmCacheStormBenchmark 10000 10 4 4 50000</code>.
+ */
+public class AlarmCacheStormBenchmark {
+
+	/**
+	 * The number of categories, each alarm belongs to one of them
+	 */
+	private static final int NUM_CATEGORIES = 10;
+
+	/**
+	 * The writers sleep, if they are ahead of the rate, after this number of changes
+	 */
+	private static final int CHANGES_PER_PACING = 100;
+
+	private static class CountingListener implements AlarmCacheListener {
+		final AtomicLong changes = new AtomicLong();
+
+		public void close() {}
+
+		public void onAlarmChange(AlarmChange change) {
+			changes.incrementAndGet();
+		}
+	}
+
+	private static Map<String, Alarm> buildAlarms(int numAlarms) {
+		AlarmImpl template = LaserCoreFaultCodes.generateAlarms().iterator().next();
+		Category[] categories = new Category[NUM_CATEGORIES];
+		for (int t=0; t<NUM_CATEGORIES; t++) {
+			categories[t] = new CategoryImpl(Integer.valueOf(t), "Category"+t, "Storm category "+t, "ROOT:Category"+t, true);
+		}
+		Map<String, Alarm> alarms = new HashMap<String, Alarm>();
+		for (int t=0; t<numAlarms; t++) {
+			AlarmImpl alarm = (AlarmImpl)template.clone();
+			alarm.setTriplet(new Triplet("StormFF", "StormFM"+(t/10), Integer.valueOf(t%10)));
+			alarm.setIdentifier(alarm.getTriplet().toIdentifier());
+			Set<Category> alarmCategories = new HashSet<Category>();
+			alarmCategories.add(categories[t%NUM_CATEGORIES]);
+			alarm.setCategories(alarmCategories);
+			Timestamp ts = new Timestamp(System.currentTimeMillis());
+			alarm.setStatus(new StatusImpl(false, false, false, false, false, "", ts, ts, ts, new Properties()));
+			alarms.put(alarm.getAlarmId(), alarm);
+		}
+		return alarms;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int numAlarms = (args.length > 0 ? Integer.parseInt(args[0]) : 10000);
+		int seconds = (args.length > 1 ? Integer.parseInt(args[1]) : 10);
+		final int numWriters = (args.length > 2 ? Integer.parseInt(args[2]) : 4);
+		int numReaders = (args.length > 3 ? Integer.parseInt(args[3]) : 4);
+		int changesPerSecond = (args.length > 4 ? Integer.parseInt(args[4]) : 50000);
+
+		Logger logger = Logger.getLogger("AlarmCacheStormBenchmark");
+		ACSAlarmDAOImpl alarmDAO = new ACSAlarmDAOImpl(logger);
+		ACSCategoryDAOImpl categoryDAO = new ACSCategoryDAOImpl(logger, alarmDAO);
+		CountingListener listener = new CountingListener();
+		final ACSAlarmCacheImpl cache = new ACSAlarmCacheImpl(alarmDAO, categoryDAO, listener, logger);
+		Map<String, Alarm> alarms = buildAlarms(numAlarms);
+		cache.initializeAlarmCache(alarms, new HashMap<Integer, Object>());
+		final String[] ids = alarms.keySet().toArray(new String[alarms.size()]);
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong numChanges = new AtomicLong();
+		final AtomicLong numReads = new AtomicLong();
+		final AtomicLong maxChangeNanos = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(numWriters + numReaders);
+		final double changesPerWriterPerMs = changesPerSecond / 1000.0 / numWriters;
+
+		for (int w=0; w<numWriters; w++) {
+			final int writer = w;
+			new Thread("Writer"+w) {
+				public void run() {
+					long start = System.currentTimeMillis();
+					long changes = 0;
+					int idx = writer;
+					try {
+						while (running.get()) {
+							String id = ids[idx];
+							idx = (idx + 7 * numWriters) % ids.length;
+							long before = System.nanoTime();
+							int[] stripes = cache.acquireAlarms(Collections.singleton(id));
+							try {
+								Alarm alarm = cache.getCopy(id);
+								alarm.getStatus().setActive(Boolean.valueOf(!alarm.getStatus().getActive().booleanValue()));
+								alarm.getStatus().setSystemTimestamp(new Timestamp(System.currentTimeMillis()));
+								cache.put(alarm);
+							} finally {
+								cache.releaseAlarms(stripes);
+							}
+							long nanos = System.nanoTime() - before;
+							long max = maxChangeNanos.get();
+							while (nanos > max && !maxChangeNanos.compareAndSet(max, nanos)) {
+								max = maxChangeNanos.get();
+							}
+							numChanges.incrementAndGet();
+							changes++;
+							if (changesPerWriterPerMs > 0 && changes % CHANGES_PER_PACING == 0) {
+								long ahead = (long)(changes / changesPerWriterPerMs) - (System.currentTimeMillis() - start);
+								if (ahead > 0) {
+									Thread.sleep(ahead);
+								}
+							}
+						}
+					} catch (Throwable t) {
+						t.printStackTrace();
+						errors.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		for (int r=0; r<numReaders; r++) {
+			final int reader = r;
+			new Thread("Reader"+r) {
+				public void run() {
+					int idx = reader;
+					long active = 0;
+					try {
+						while (running.get()) {
+							idx = (idx + 13) % ids.length;
+							Alarm alarm = cache.getReference(ids[idx]);
+							if (alarm.getStatus().getActive().booleanValue()) {
+								active++;
+							}
+							if (idx % 100 == 0) {
+								active += cache.getActiveListReference(Integer.valueOf(idx % NUM_CATEGORIES)).getActiveAlarms().length;
+							}
+							numReads.incrementAndGet();
+						}
+					} catch (Throwable t) {
+						t.printStackTrace();
+						errors.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+
+		long start = System.currentTimeMillis();
+		Thread.sleep(seconds * 1000L);
+		running.set(false);
+		done.await();
+		double elapsed = (System.currentTimeMillis() - start) / 1000.0;
+
+		int activeInLists = 0;
+		for (int t=0; t<NUM_CATEGORIES; t++) {
+			activeInLists += cache.getActiveListReference(Integer.valueOf(t)).getActiveAlarms().length;
+		}
+		int activeAlarms = 0;
+		for (String id: ids) {
+			if (cache.getReference(id).getStatus().getActive().booleanValue()) {
+				activeAlarms++;
+			}
+		}
+
+		System.out.println(String.format("%d alarms, %d writers, %d readers, target %d changes/s:",
+				numAlarms, numWriters, numReaders, changesPerSecond));
+		System.out.println(String.format("  %.0f changes/s (max %.3f ms per change), %.0f reads/s, %d notifications for %d changes, %d errors",
+				numChanges.get() / elapsed, maxChangeNanos.get() / 1e6, numReads.get() / elapsed,
+				listener.changes.get(), numChanges.get(), errors.get()));
+		System.out.println("  "+activeAlarms+" active alarms, "+activeInLists+" in the active lists of the categories");
+		System.exit(0);
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.lasercore.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import alma.acs.component.client.ComponentClientTestCase;
+import cern.laser.business.cache.AlarmCacheListener;
+import cern.laser.business.data.Alarm;
+import cern.laser.business.data.AlarmChange;
+
+import com.cosylab.acs.laser.dao.ACSAlarmCacheImpl;
+import com.cosylab.acs.laser.dao.ACSAlarmDAOImpl;
+import com.cosylab.acs.laser.dao.ACSCategoryDAOImpl;
+import com.cosylab.acs.laser.dao.ConfigurationAccessor;
+import com.cosylab.acs.laser.dao.ConfigurationAccessorFactory;
+
+/**
+ * Test the changes of the definitions of the alarms done by the {@link ACSAlarmDAOImpl}
+ * (i.e. the reduction rules of the alarms created from the default fault member)
+ * while other threads read and change the same alarms in the {@link ACSAlarmCacheImpl}.
+ * <P>
+ * The children of the multiplicity reduction rule of {@link #PARENT_ID} are defined
+ * by the default fault member (<code>NODE_DEFAULT:*:3</code>) in the CDB:
+ * the test creates many children at the same time, while
+ * <UL>
+ * 	<LI>the readers clone the parent
+ * 	<LI>the writers change the status of the parent
+ * </UL>
+ *
+ * @author acaproni
+ *
+ */
+public class TestConcurrentDefinitions extends ComponentClientTestCase {
+
+	/**
+	 * The listener of the cache does nothing
+	 */
+	private static class NullListener implements AlarmCacheListener {
+		public void close() {}
+		public void onAlarmChange(AlarmChange change) {}
+	}
+
+	/**
+	 * The parent of the multiplicity reduction rule
+	 */
+	private static final String PARENT_ID="NODE_DEFAULT:MULTIPLICITY_REG:2";
+
+	/**
+	 * The number of threads creating the children
+	 */
+	private static final int CREATORS=4;
+
+	/**
+	 * The number of children created by each creator
+	 */
+	private static final int CHILDREN_PER_CREATOR=50;
+
+	/**
+	 * The number of threads reading the parent
+	 */
+	private static final int READERS=2;
+
+	/**
+	 * The number of threads changing the status of the parent
+	 */
+	private static final int WRITERS=2;
+
+	/**
+	 * The number of changes of the status of the parent done by each writer
+	 */
+	private static final int CHANGES_PER_WRITER=500;
+
+	private ACSAlarmDAOImpl alarmDAO;
+
+	private ACSAlarmCacheImpl alarmCache;
+
+	/**
+	 * The errors thrown by the threads
+	 */
+	private final List<Throwable> errors = Collections.synchronizedList(new Vector<Throwable>());
+
+	/**
+	 * Constructor
+	 *
+	 * @throws Exception
+	 */
+	public TestConcurrentDefinitions() throws Exception {
+		super("TestConcurrentDefinitions");
+	}
+
+	public void setUp() throws Exception {
+		super.setUp();
+
+		ConfigurationAccessor conf;
+		conf = ConfigurationAccessorFactory.getInstance(getContainerServices());
+		assertNotNull("Got a null ConfigurationAccessor", conf);
+
+		alarmDAO=new ACSAlarmDAOImpl(getContainerServices().getLogger());
+		alarmDAO.setConfAccessor(conf);
+		alarmDAO.loadAlarms();
+
+		ACSCategoryDAOImpl categoryDAO = new ACSCategoryDAOImpl(getContainerServices().getLogger(), alarmDAO);
+		alarmCache = new ACSAlarmCacheImpl(alarmDAO, categoryDAO, new NullListener(), getContainerServices().getLogger());
+	}
+
+	public void tearDown() throws Exception {
+		alarmCache.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Create the children from the default fault member while the parent
+	 * is read and changed by other threads.
+	 * <P>
+	 * At the end, no thread must have failed, the parent and the children must be linked
+	 * and no change of the status of the parent must have been lost.
+	 *
+	 * @throws Exception
+	 */
+	public void testCreateChildrenConcurrently() throws Exception {
+		// The status of the parent is used as a counter of the changes done by the writers
+		Alarm parent = alarmCache.getCopy(PARENT_ID);
+		parent.getStatus().setSourceHostname("0");
+		alarmCache.put(parent);
+
+		final AtomicBoolean creating = new AtomicBoolean(true);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch creatorsDone = new CountDownLatch(CREATORS);
+		final CountDownLatch othersDone = new CountDownLatch(READERS+WRITERS);
+
+		for (int c=0; c<CREATORS; c++) {
+			final int creator=c;
+			new Thread("Creator"+c) {
+				public void run() {
+					try {
+						start.await();
+						for (int t=0; t<CHILDREN_PER_CREATOR; t++) {
+							Alarm child = alarmCache.getReference(getChildID(creator, t));
+							assertTrue(Arrays.asList(child.getMultiplicityParents()).contains(PARENT_ID));
+						}
+					} catch (Throwable t) {
+						errors.add(t);
+					} finally {
+						creatorsDone.countDown();
+					}
+				}
+			}.start();
+		}
+		for (int r=0; r<READERS; r++) {
+			new Thread("Reader"+r) {
+				public void run() {
+					try {
+						start.await();
+						while (creating.get()) {
+							Alarm copy=alarmCache.getCopy(PARENT_ID);
+							assertNotNull(copy.getMultiplicityChildren());
+						}
+					} catch (Throwable t) {
+						errors.add(t);
+					} finally {
+						othersDone.countDown();
+					}
+				}
+			}.start();
+		}
+		for (int w=0; w<WRITERS; w++) {
+			new Thread("Writer"+w) {
+				public void run() {
+					try {
+						start.await();
+						for (int t=0; t<CHANGES_PER_WRITER; t++) {
+							// as the alarm message processor does
+							int[] stripes=alarmCache.acquireAlarms(Collections.singleton(PARENT_ID));
+							try {
+								Alarm alarm=alarmCache.getCopy(PARENT_ID);
+								int counter=Integer.parseInt(alarm.getStatus().getSourceHostname());
+								alarm.getStatus().setSourceHostname(String.valueOf(counter+1));
+								alarm.getStatus().setActive(Boolean.valueOf(!alarm.getStatus().getActive().booleanValue()));
+								alarmCache.put(alarm);
+							} finally {
+								alarmCache.releaseAlarms(stripes);
+							}
+						}
+					} catch (Throwable t) {
+						errors.add(t);
+					} finally {
+						othersDone.countDown();
+					}
+				}
+			}.start();
+		}
+
+		start.countDown();
+		assertTrue("Timeout creating the children", creatorsDone.await(2, TimeUnit.MINUTES));
+		creating.set(false);
+		assertTrue("Timeout changing the parent", othersDone.await(2, TimeUnit.MINUTES));
+		for (Throwable t: errors) {
+			t.printStackTrace();
+		}
+		assertTrue("Errors: "+errors, errors.isEmpty());
+
+		// Check the reduction links
+		parent = alarmCache.getReference(PARENT_ID);
+		List<String> children = Arrays.asList(parent.getMultiplicityChildren());
+		for (int c=0; c<CREATORS; c++) {
+			for (int t=0; t<CHILDREN_PER_CREATOR; t++) {
+				String childID=getChildID(c, t);
+				assertTrue(childID+" is not a child of the parent", children.contains(childID));
+				Alarm child = alarmCache.getReference(childID);
+				assertTrue(Arrays.asList(child.getMultiplicityParents()).contains(PARENT_ID));
+			}
+		}
+		assertEquals(Integer.valueOf(3), parent.getMultiplicityThreshold());
+		// The DAO and the cache must have the same definition of the parent
+		assertSame(parent, alarmDAO.getAlarm(PARENT_ID));
+
+		// Check the changes of the status
+		assertEquals(String.valueOf(WRITERS*CHANGES_PER_WRITER), parent.getStatus().getSourceHostname());
+	}
+
+	/**
+	 * @return The ID of the child created by the given creator
+	 */
+	private String getChildID(int creator, int num) {
+		return "NODE_DEFAULT:NODE_C"+creator+"_"+num+":3";
+	}
+}
@@ -209,6 +209,8 @@ public class AlarmSystemInterfaceProxy implements AlarmSystemInterface, SynchroB
   }
 
   /** Push an fault states collection.
+   * The collection is validated and then pushed into the buffer in one step so that
+   * all its fault states are published in the same ASIMessage.
    * @param states the fault states collection to push
    */
   public void push(Collection states) throws ASIException {
@@ -225,12 +227,14 @@ public class AlarmSystemInterfaceProxy implements AlarmSystemInterface, SynchroB
     while (iterator.hasNext()) {
       Object next = iterator.next();
 
-      if (next instanceof FaultState) {
-        push((FaultState) next);
-      } else {
+      if (next instanceof FaultStateImpl) {
+        ((FaultStateImpl) next).validate();
+      } else if (!(next instanceof FaultState)) {
         throw new IllegalArgumentException("states collection does not contain FaultState instances");
       }
     }
+
+    buffer.push(states);
   }
 
   /** Push the source active list forcing a backup
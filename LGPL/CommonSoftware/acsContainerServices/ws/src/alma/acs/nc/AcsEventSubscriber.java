@@ -19,6 +19,8 @@
 
 package alma.acs.nc;
 
+import java.util.List;
+
 import alma.ACSErrTypeCommon.wrappers.AcsJCouldntPerformActionEx;
 import alma.ACSErrTypeCommon.wrappers.AcsJIllegalStateEventEx;
 import alma.acsErrTypeLifeCycle.wrappers.AcsJEventSubscriptionEx;
@@ -137,6 +139,49 @@ public interface AcsEventSubscriber<T> {
 		throws AcsJEventSubscriptionEx;
 
 	
+	/*===========================================*/
+	/*   Local event queue methods               */
+	/*===========================================*/
+
+	/**
+	 * Sets the size and overflow behavior of the local queue in which incoming events 
+	 * wait for the receiver of the given event type.
+	 * Each event type (and the generic subscription) has its own queue, so that a slow receiver
+	 * causes only the loss of its own events. The receiver gets the events of its type in the order of arrival.
+	 * <p>
+	 * Event types without configured policy use {@link EventQueuePolicy#DEFAULT}, 
+	 * unless a policy was set for the subscriber's base type &lt;T&gt;, which then applies to all event types.
+	 * <p>
+	 * Must be called before {@link #startReceivingEvents()}.
+	 * 
+	 * @param structClass The event type, or <code>null</code> for the queue of the generic subscription.
+	 * @param policy The policy, or <code>null</code> to use the default again.
+	 * @throws AcsJIllegalStateEventEx if this subscriber has already started receiving events.
+	 */
+	public void setEventQueuePolicy(Class<? extends T> structClass, EventQueuePolicy policy) 
+		throws AcsJIllegalStateEventEx;
+
+	/**
+	 * Sets the number of threads that call the receivers. 
+	 * With more than one thread, receivers of different event types may be called concurrently,
+	 * while a receiver for one event type is never called concurrently for several events.
+	 * The default is given by the property <code>alma.acs.nc.subscriber.dispatchThreads</code>, or 1.
+	 * <p>
+	 * Must be called before {@link #startReceivingEvents()}.
+	 * 
+	 * @throws AcsJIllegalStateEventEx if this subscriber has already started receiving events.
+	 */
+	public void setEventDispatchThreads(int numThreads) 
+		throws AcsJIllegalStateEventEx;
+
+	/**
+	 * Returns the current statistics of the local event queues, 
+	 * with one entry for every event type (or generic subscription) for which events were received.
+	 * This is meant for monitoring and tuning of the event queue policies.
+	 */
+	public List<EventQueueStatistics> getEventQueueStatistics();
+
+	
 	/*===========================================*/
 	/*   Lifecycle methods                       */
 	/*===========================================*/
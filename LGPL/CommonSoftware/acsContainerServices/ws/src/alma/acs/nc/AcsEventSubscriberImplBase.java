@@ -26,11 +26,14 @@ import static alma.acs.nc.sm.generated.EventSubscriberAction.destroyEnvironment;
 import static alma.acs.nc.sm.generated.EventSubscriberAction.resumeConnection;
 import static alma.acs.nc.sm.generated.EventSubscriberAction.suspendConnection;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -102,26 +105,71 @@ public abstract class AcsEventSubscriberImplBase<T>
 	 * Event queue should hold at least two events to avoid unnecessary scary logs about slow receivers,
 	 * but must be short enough to get receivers to actually implement their own queue and discard mechanism
 	 * instead of relying on this ACS queue which may buffer events for a limited time and thus obscure the problem.
-	 * @see #eventHandlingExecutor
+	 * This is the default capacity of the queue per event type, see {@link EventQueuePolicy#DEFAULT}.
+	 * @see #eventQueues
 	 */
 	public static final int EVENT_QUEUE_CAPACITY = 50;
 	
 	/**
-	 * Single-thread executor with a small queue (size given in {@link #EVENT_QUEUE_CAPACITY}, 
+	 * Name of the property that gives the default number of threads that call the receivers,
+	 * see {@link #setEventDispatchThreads(int)}.
+	 */
+	public static final String EVENT_DISPATCH_THREADS_PROPERTYNAME = "alma.acs.nc.subscriber.dispatchThreads";
+
+	/**
+	 * With one thread the receivers of different event types are never called concurrently, 
+	 * as it was the case before we had one queue per event type.
+	 */
+	public static final int EVENT_DISPATCH_THREADS_DEFAULT = 1;
+
+	/**
+	 * Executor with up to {@link #eventDispatchThreads} threads that is shared by the {@link #eventQueues},
 	 * used to stay responsive toward the NC even if receivers are slow. 
+	 */
+	private volatile ThreadPoolExecutor eventHandlingExecutor;
+
+	private int eventDispatchThreads = Integer.getInteger(EVENT_DISPATCH_THREADS_PROPERTYNAME, EVENT_DISPATCH_THREADS_DEFAULT).intValue();
+
+	/**
+	 * One queue per subscribed event type, with a small size by default (see {@link #EVENT_QUEUE_CAPACITY}),
+	 * so that a slow receiver only loses its own events and does not hold up the receivers of other event types
+	 * (unless all dispatch threads are busy with slow receivers).
 	 * The purpose is only to track down receivers that don't keep up with the event rate, and not to provide reliable event buffering, 
 	 * see http://jira.alma.cl/browse/COMP-5767.
+	 * Users can still choose a different size or overflow policy per event type, see {@link #setEventQueuePolicy(Class, EventQueuePolicy)}.
 	 * <p>
 	 * Errors are logged, using also fields {@link #numEventsDiscarded} and {@link #receiverTooSlowLogRepeatGuard}.
 	 * <p>
 	 * The difference of this mechanism compared to the logs controlled by {@link #processTimeLogRepeatGuard} is that
 	 * here we take into account the actual event rate and check whether the receiver can handle it, 
 	 * whereas {@link #processTimeLogRepeatGuard} only compares the actual process times against pre-configured values.
+	 * <p>
+	 * key = the incoming event type, or {@link #GENERIC_QUEUE_KEY} for events that go to the generic receiver.
+	 */
+	private final ConcurrentMap<Class<?>, EventDispatchQueue> eventQueues = new ConcurrentHashMap<Class<?>, EventDispatchQueue>();
+
+	/**
+	 * Key in {@link #eventQueues} and {@link #eventQueuePolicies} for the generic subscription. 
+	 * Event types are never of this class.
 	 */
-	private ThreadPoolExecutor eventHandlingExecutor;
+	private static final Class<?> GENERIC_QUEUE_KEY = GenericCallback.class;
 
 	/**
-	 * @see #eventHandlingExecutor
+	 * Queue policies by event type, see {@link #setEventQueuePolicy(Class, EventQueuePolicy)}.
+	 */
+	private final Map<Class<?>, EventQueuePolicy> eventQueuePolicies = new ConcurrentHashMap<Class<?>, EventQueuePolicy>();
+
+	/**
+	 * Used by the event queues to call {@link #processEvent(Object, EventDescription)}.
+	 */
+	private final EventDispatchQueue.EventProcessor eventQueueProcessor = new EventDispatchQueue.EventProcessor() {
+		public void processEvent(Object eventData, EventDescription eventDesc) {
+			AcsEventSubscriberImplBase.this.processEvent(eventData, eventDesc);
+		}
+	};
+
+	/**
+	 * @see #eventQueues
 	 */
 	private final AtomicLong numEventsDiscarded = new AtomicLong(0);
 
@@ -318,14 +366,17 @@ public abstract class AcsEventSubscriberImplBase<T>
 	 */
 	protected void createConnectionAction(EventDispatcher evtDispatcher, ErrorReporter errRep, SCInstance scInstance, Collection<TriggerEvent> derivedEvents) 
 			throws AcsJStateMachineActionEx {
-		eventHandlingExecutor = new ThreadPoolExecutor(0, 1, 1L, TimeUnit.MINUTES,
-				new ArrayBlockingQueue<Runnable>(EVENT_QUEUE_CAPACITY), services.getThreadFactory(), new ThreadPoolExecutor.AbortPolicy() );
+		// The executor queue holds at most one drain task per event queue and therefore needs no limit. 
+		eventHandlingExecutor = new ThreadPoolExecutor(eventDispatchThreads, eventDispatchThreads, 1L, TimeUnit.MINUTES,
+				new LinkedBlockingQueue<Runnable>(), services.getThreadFactory(), new ThreadPoolExecutor.AbortPolicy() );
+		eventHandlingExecutor.allowCoreThreadTimeOut(true);
+		eventQueues.clear();
 	}
 	
 	/**
 	 * Handler for "destroyConnection" state machine action.
 	 * <p>
-	 * Shuts down the event queue. 
+	 * Shuts down the event queues. 
 	 * Queued events may still be processed by the receivers afterwards, 
 	 * but here we wait for up to 500 ms to log it if it is the case.
 	 * <p>
@@ -337,16 +388,26 @@ public abstract class AcsEventSubscriberImplBase<T>
 	protected void destroyConnectionAction(EventDispatcher evtDispatcher, ErrorReporter errRep, SCInstance scInstance,
 			Collection<TriggerEvent> derivedEvents) throws AcsJStateMachineActionEx {
 		
-		eventHandlingExecutor.shutdown();
-		boolean queueOK = false; // just in case we want to report the success of this shutdown
-		try {
-			queueOK = eventHandlingExecutor.awaitTermination(500, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException ex) {
-			// just leave queueOK == false
+		for (EventDispatchQueue eventQueue : eventQueues.values()) {
+			eventQueue.close();
 		}
-		if (!queueOK) {
-			// interrupted or timeout occurred, may still have events in the queue. Terminate with error message
-			int remainingEvents = eventHandlingExecutor.getQueue().size();
+		long deadline = System.currentTimeMillis() + 500;
+		int remainingEvents = 0;
+		boolean interrupted = false;
+		for (EventDispatchQueue eventQueue : eventQueues.values()) {
+			try {
+				remainingEvents += ( interrupted ? eventQueue.getStatistics().getQueueSize() : eventQueue.awaitIdle(deadline) );
+			} catch (InterruptedException ex) {
+				interrupted = true;
+				remainingEvents += eventQueue.getStatistics().getQueueSize();
+			}
+		}
+		// the remaining drain tasks will still run, or continue in their current thread
+		eventHandlingExecutor.shutdown();
+		// allows re-configuring the event queues before the next startReceivingEvents()
+		eventHandlingExecutor = null;
+		if (remainingEvents > 0) {
+			// interrupted or timeout occurred, still have events in the queues. Terminate with error message
 			logQueueShutdownError(500, remainingEvents);
 		}
 	}
@@ -410,7 +471,7 @@ public abstract class AcsEventSubscriberImplBase<T>
 	
 	/**
 	 * Asynchronously calls {@link #processEvent(Object, EventDescription)}, 
-	 * using {@link #eventHandlingExecutor}.
+	 * using the queue for the event type (see {@link #eventQueues}).
 	 * <p>
 	 * This method should be called from the subclass-specific method that receives the event,
 	 * for example <code>push_structured_event</code> in case of Corba NC.
@@ -422,31 +483,41 @@ public abstract class AcsEventSubscriberImplBase<T>
 	 */
 	protected void processEventAsync(final Object eventData, final EventDescription eventDesc) {
 
-		// to avoid unnecessary scary logs, we tolerate previous events up to half the queue size
-		boolean isReceiverBusyWithPreviousEvent = ( eventHandlingExecutor.getQueue().size() > EVENT_QUEUE_CAPACITY / 2 );
-		
-//			logger.info("Queue size: " + eventHandlingExecutor.getQueue().size());
-		
-		boolean thisEventDiscarded = false;
-		try {
-			eventHandlingExecutor.execute(
-					new Runnable() {
-						public void run() {
-							// here we call processEvent from the worker thread
-							processEvent(eventData, eventDesc);
-						}
-					});
-		} catch (RejectedExecutionException ex) {
-			// receivers have been too slow, queue is actually full, will drop data.
-			thisEventDiscarded = true;
+		ThreadPoolExecutor executor = eventHandlingExecutor;
+		if (executor == null) {
+			// Late event after disconnect (or before connect): as with a rejected execution,
+			// we count and drop it instead of throwing into the middleware upcall.
+			numEventsDiscarded.incrementAndGet();
+			logger.finer("The subscriber is not connected, dropping event " + eventData.getClass().getName());
+			return;
+		}
+
+		// Events for which no typed receiver is registered go through the queue of the generic receiver,
+		// also if there is none, so that processEvent can report the missing receiver.
+		Class<?> queueKey = ( receivers.containsKey(eventData.getClass()) ? eventData.getClass() : GENERIC_QUEUE_KEY );
+		EventDispatchQueue eventQueue = eventQueues.get(queueKey);
+		if (eventQueue == null) {
+			EventQueuePolicy policy = getEventQueuePolicy(queueKey);
+			String queueName = ( queueKey == GENERIC_QUEUE_KEY ? "generic" : queueKey.getName() );
+			eventQueue = new EventDispatchQueue(queueName, policy, executor, eventQueueProcessor, logger);
+			EventDispatchQueue previousQueue = eventQueues.putIfAbsent(queueKey, eventQueue);
+			if (previousQueue != null) {
+				eventQueue = previousQueue;
+			}
+		}
+
+		// To avoid unnecessary scary logs, we tolerate previous events up to half the queue size. 
+		// With DROP_NEWEST a discarded event means that receivers have been too slow, the queue is actually full.
+		EventDispatchQueue.OfferResult offerResult = eventQueue.offer(eventData, eventDesc);
+		if (offerResult == EventDispatchQueue.OfferResult.DISCARDED) {
 			numEventsDiscarded.incrementAndGet();
 		}
-		if (thisEventDiscarded || isReceiverBusyWithPreviousEvent) {
+		if (offerResult != EventDispatchQueue.OfferResult.QUEUED) {
 			// receiverTooSlowLogRepeatGuard currently not thread-safe, therefore synchronize
 			synchronized (receiverTooSlowLogRepeatGuard) {
 				if (receiverTooSlowLogRepeatGuard.checkAndIncrement()) {
 					// About numEventsDiscarded and concurrency: 
-					// That counter may have been incremented by other threads between the above RejectedExecutionException
+					// That counter may have been incremented by other threads between the above discarding of the event
 					// and here. These threads are blocked now, and have not yet incremented the repeat guard.
 					// This can lead to some harmless irregularities in how often we actually log the message.
 					// What matters is that we report correctly the number of discarded events. 
@@ -504,7 +575,12 @@ public abstract class AcsEventSubscriberImplBase<T>
 		else if (genericReceiver != null) {
 			
 			profiler.reset();
-			genericReceiver.receiveGeneric(eventData, eventDesc);
+			try {
+				genericReceiver.receiveGeneric(eventData, eventDesc);
+			}
+			catch (Throwable thr) {
+				logEventReceiveHandlerException(eventName, genericReceiver.getClass().getName(), thr);
+			}
 			double usedSecondsToProcess = (profiler.getLapTimeMillis() / 1000.0);
 
 			// warn the end-user if the receiver is taking too long 
@@ -545,6 +621,18 @@ public abstract class AcsEventSubscriberImplBase<T>
 	}
 
 	
+	/**
+	 * Returns the policy configured for the given queue key, or the default policy.
+	 */
+	private EventQueuePolicy getEventQueuePolicy(Class<?> queueKey) {
+		EventQueuePolicy policy = eventQueuePolicies.get(queueKey);
+		if (policy == null && queueKey != GENERIC_QUEUE_KEY) {
+			// a default set by the user for all event types
+			policy = eventQueuePolicies.get(eventType);
+		}
+		return ( policy != null ? policy : EventQueuePolicy.DEFAULT );
+	}
+
 	/**
 	 * Use only for unit testing!
 	 */
@@ -652,6 +740,53 @@ public abstract class AcsEventSubscriberImplBase<T>
 		}
 	}
 
+	/**
+	 * @see alma.acs.nc.AcsEventSubscriber#setEventQueuePolicy(java.lang.Class, alma.acs.nc.EventQueuePolicy)
+	 */
+	@Override
+	public final void setEventQueuePolicy(Class<? extends T> structClass, EventQueuePolicy policy) throws AcsJIllegalStateEventEx {
+		checkNotReceivingEvents("setEventQueuePolicy");
+		Class<?> queueKey = ( structClass != null ? structClass : GENERIC_QUEUE_KEY );
+		if (policy != null) {
+			eventQueuePolicies.put(queueKey, policy);
+		}
+		else {
+			eventQueuePolicies.remove(queueKey);
+		}
+	}
+
+	/**
+	 * @see alma.acs.nc.AcsEventSubscriber#setEventDispatchThreads(int)
+	 */
+	@Override
+	public final void setEventDispatchThreads(int numThreads) throws AcsJIllegalStateEventEx {
+		checkNotReceivingEvents("setEventDispatchThreads");
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Illegal number of event dispatch threads " + numThreads);
+		}
+		eventDispatchThreads = numThreads;
+	}
+
+	private void checkNotReceivingEvents(String methodName) throws AcsJIllegalStateEventEx {
+		if (eventHandlingExecutor != null) {
+			AcsJIllegalStateEventEx ex = new AcsJIllegalStateEventEx("Method '" + methodName + "' must be called before startReceivingEvents().");
+			ex.setState(getLifecycleState());
+			throw ex;
+		}
+	}
+
+	/**
+	 * @see alma.acs.nc.AcsEventSubscriber#getEventQueueStatistics()
+	 */
+	@Override
+	public List<EventQueueStatistics> getEventQueueStatistics() {
+		List<EventQueueStatistics> ret = new ArrayList<EventQueueStatistics>(eventQueues.size());
+		for (EventDispatchQueue eventQueue : eventQueues.values()) {
+			ret.add(eventQueue.getStatistics());
+		}
+		return ret;
+	}
+
 	@Override
 	public final void startReceivingEvents() throws AcsJIllegalStateEventEx, AcsJCouldntPerformActionEx {
 		try {
@@ -0,0 +1,306 @@
+/*
+ * ALMA - Atacama Large Millimiter Array
+ * (c) European Southern Observatory, 2013
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package alma.acs.nc;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alma.acs.nc.EventQueuePolicy.OverflowPolicy;
+import alma.acsnc.EventDescription;
+
+/**
+ * The local event queue of a subscriber for one event type (or for the generic subscription).
+ * <p>
+ * The queue does not own a thread. When events are waiting, the queue itself is submitted as a task
+ * to the executor that is shared by all queues of the subscriber.
+ * At most one such task is submitted or running at a time, so that the receiver gets the events
+ * in the order of arrival and is never called concurrently. After {@link #DRAIN_BATCH_SIZE} events
+ * the task re-submits itself, to give the queues of other event types their turn if the executor has fewer threads than queues.
+ * <p>
+ * This class is thread-safe.
+ */
+class EventDispatchQueue implements Runnable
+{
+	/**
+	 * Max number of events processed before the worker thread is yielded to other queues.
+	 */
+	static final int DRAIN_BATCH_SIZE = 32;
+
+	/**
+	 * Gets called for every queued event, from a thread of the executor.
+	 * Should not throw any exception; if it does, the exception gets logged and the next event is processed.
+	 */
+	static interface EventProcessor {
+		void processEvent(Object eventData, EventDescription eventDesc);
+	}
+
+	/**
+	 * Result of {@link EventDispatchQueue#offer(Object, EventDescription)}.
+	 */
+	static enum OfferResult {
+		/** The event was queued. */
+		QUEUED,
+		/** The event was queued (or coalesced), but the queue was more than half full already. */
+		QUEUED_BUSY,
+		/** The queue was full, and the incoming or the oldest event was discarded. */
+		DISCARDED
+	}
+
+	private static class PendingEvent {
+		Object eventData;
+		EventDescription eventDesc;
+		final Object key;
+		final long queuedNanos;
+		PendingEvent(Object eventData, EventDescription eventDesc, Object key, long queuedNanos) {
+			this.eventData = eventData;
+			this.eventDesc = eventDesc;
+			this.key = key;
+			this.queuedNanos = queuedNanos;
+		}
+	}
+
+	private final String eventName;
+	private final EventQueuePolicy policy;
+	private final Executor executor;
+	private final EventProcessor processor;
+	private final Logger logger;
+
+	// The following fields are guarded by "this"
+
+	private final ArrayDeque<PendingEvent> queue;
+
+	/**
+	 * Index of the queued events by coalescing key, only used with {@link OverflowPolicy#COALESCE_LATEST}.
+	 */
+	private final Map<Object, PendingEvent> queuedByKey;
+
+	/**
+	 * True while a drain task is submitted to the executor or running.
+	 */
+	private boolean drainScheduled;
+
+	private boolean closed;
+
+	private int maxQueueSize;
+	private long numEventsQueued;
+	private long numEventsProcessed;
+	private long numEventsDiscarded;
+	private long numEventsCoalesced;
+	private long totalLatencyNanos;
+	private long maxLatencyNanos;
+	private long totalProcessNanos;
+	private long maxProcessNanos;
+
+
+	EventDispatchQueue(String eventName, EventQueuePolicy policy, Executor executor, EventProcessor processor, Logger logger) {
+		this.eventName = eventName;
+		this.policy = policy;
+		this.executor = executor;
+		this.processor = processor;
+		this.logger = logger;
+		queue = new ArrayDeque<PendingEvent>(Math.min(policy.getCapacity(), 1024));
+		queuedByKey = ( policy.getOverflowPolicy() == OverflowPolicy.COALESCE_LATEST ? new HashMap<Object, PendingEvent>() : null );
+	}
+
+	/**
+	 * Queues an event for asynchronous processing, applying the overflow policy if the queue is full.
+	 * <p>
+	 * With {@link OverflowPolicy#BLOCK} this method may block the calling thread.
+	 */
+	OfferResult offer(Object eventData, EventDescription eventDesc) {
+		OfferResult result = OfferResult.QUEUED;
+		synchronized (this) {
+			if (closed) {
+				numEventsDiscarded++;
+				return OfferResult.DISCARDED;
+			}
+			if (queue.size() > policy.getCapacity() / 2) {
+				result = OfferResult.QUEUED_BUSY;
+			}
+			Object key = null;
+			if (queuedByKey != null) {
+				key = policy.getCoalescingKeyExtractor().getKey(eventData);
+				PendingEvent queuedEvent = queuedByKey.get(key);
+				if (queuedEvent != null) {
+					// replace the outdated event, which is still waiting for the receiver
+					queuedEvent.eventData = eventData;
+					queuedEvent.eventDesc = eventDesc;
+					numEventsCoalesced++;
+					return result;
+				}
+			}
+			if (queue.size() >= policy.getCapacity()) {
+				switch (policy.getOverflowPolicy()) {
+				case DROP_NEWEST:
+					numEventsDiscarded++;
+					return OfferResult.DISCARDED;
+				case BLOCK:
+					if (!awaitSpace()) {
+						numEventsDiscarded++;
+						return OfferResult.DISCARDED;
+					}
+					break;
+				default:
+					// DROP_OLDEST, COALESCE_LATEST
+					removeFirst();
+					numEventsDiscarded++;
+					result = OfferResult.DISCARDED;
+				}
+			}
+			PendingEvent pendingEvent = new PendingEvent(eventData, eventDesc, key, System.nanoTime());
+			queue.addLast(pendingEvent);
+			if (queuedByKey != null) {
+				queuedByKey.put(key, pendingEvent);
+			}
+			numEventsQueued++;
+			maxQueueSize = Math.max(maxQueueSize, queue.size());
+			if (drainScheduled) {
+				return result;
+			}
+			drainScheduled = true;
+		}
+		scheduleDrain();
+		return result;
+	}
+
+	/**
+	 * Waits for the receiver to make room in the full queue, for at most the configured block timeout.
+	 * Must be called while holding the lock.
+	 * @return true if the event can be queued.
+	 */
+	private boolean awaitSpace() {
+		long deadline = System.currentTimeMillis() + policy.getBlockTimeoutMillis();
+		long waitMillis = policy.getBlockTimeoutMillis();
+		while (waitMillis > 0 && queue.size() >= policy.getCapacity() && !closed) {
+			try {
+				wait(waitMillis);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			waitMillis = deadline - System.currentTimeMillis();
+		}
+		return ( queue.size() < policy.getCapacity() && !closed );
+	}
+
+	/**
+	 * Must be called while holding the lock.
+	 */
+	private PendingEvent removeFirst() {
+		PendingEvent pendingEvent = queue.pollFirst();
+		if (pendingEvent != null && queuedByKey != null) {
+			queuedByKey.remove(pendingEvent.key);
+		}
+		return pendingEvent;
+	}
+
+	private void scheduleDrain() {
+		try {
+			executor.execute(this);
+		} catch (RejectedExecutionException ex) {
+			// the subscriber is shutting down. Deliver the events from this thread, as the old executor did for queued events.
+			run();
+		}
+	}
+
+	/**
+	 * Drain task, see class comment.
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			for (int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+				PendingEvent pendingEvent;
+				long startNanos;
+				synchronized (this) {
+					pendingEvent = removeFirst();
+					if (pendingEvent == null) {
+						drainScheduled = false;
+						// wake up blocked publishers and awaitIdle
+						notifyAll();
+						return;
+					}
+					if (policy.getOverflowPolicy() == OverflowPolicy.BLOCK) {
+						notifyAll();
+					}
+					startNanos = System.nanoTime();
+					long latencyNanos = startNanos - pendingEvent.queuedNanos;
+					totalLatencyNanos += latencyNanos;
+					maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+				}
+				try {
+					processor.processEvent(pendingEvent.eventData, pendingEvent.eventDesc);
+				}
+				catch (Throwable thr) {
+					// An exception escaping here would leave drainScheduled==true without a drain task, 
+					// so that no further event of this type would ever get delivered.
+					logger.log(Level.WARNING, "Failed to process event '" + eventName + "'. Will continue with the next event.", thr);
+				}
+				finally {
+					long processNanos = System.nanoTime() - startNanos;
+					synchronized (this) {
+						numEventsProcessed++;
+						totalProcessNanos += processNanos;
+						maxProcessNanos = Math.max(maxProcessNanos, processNanos);
+					}
+				}
+			}
+			// Give other queues their turn. We keep drainScheduled==true for the re-submitted task.
+			try {
+				executor.execute(this);
+				return;
+			} catch (RejectedExecutionException ex) {
+				// executor was shut down, continue draining in this thread
+			}
+		}
+	}
+
+	/**
+	 * Rejects further events. Queued events will still be processed.
+	 */
+	synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Waits until all queued events are processed, or until the given time.
+	 * @return The number of events still queued.
+	 */
+	synchronized int awaitIdle(long deadlineMillis) throws InterruptedException {
+		long waitMillis = deadlineMillis - System.currentTimeMillis();
+		while (drainScheduled && waitMillis > 0) {
+			wait(waitMillis);
+			waitMillis = deadlineMillis - System.currentTimeMillis();
+		}
+		return queue.size();
+	}
+
+	synchronized EventQueueStatistics getStatistics() {
+		return new EventQueueStatistics(eventName, policy, queue.size(), maxQueueSize,
+				numEventsQueued, numEventsProcessed, numEventsDiscarded, numEventsCoalesced,
+				totalLatencyNanos, maxLatencyNanos, totalProcessNanos, maxProcessNanos);
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * ALMA - Atacama Large Millimiter Array
+ * (c) European Southern Observatory, 2013
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package alma.acs.nc;
+
+/**
+ * Size and overflow behavior of the local event queue that an {@link AcsEventSubscriber}
+ * keeps for one event type (or for the generic subscription),
+ * see {@link AcsEventSubscriber#setEventQueuePolicy(Class, EventQueuePolicy)}.
+ * <p>
+ * Objects of this class are immutable and can be shared among subscribers.
+ */
+public class EventQueuePolicy
+{
+	/**
+	 * What to do with an incoming event when the receiver has not yet processed the
+	 * <code>capacity</code> events that came in before.
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * The incoming event gets discarded. This is the traditional ACS behavior.
+		 */
+		DROP_NEWEST,
+		/**
+		 * The oldest queued event gets discarded to make room for the incoming event.
+		 */
+		DROP_OLDEST,
+		/**
+		 * The thread that delivers the event (e.g. the Corba NC proxy thread) is blocked
+		 * until the receiver makes room in the queue, for at most <code>blockTimeoutMillis</code>,
+		 * after which the incoming event gets discarded.
+		 * Note that this slows down the delivery of all other event types to this subscriber.
+		 */
+		BLOCK,
+		/**
+		 * An incoming event replaces the queued event that has the same key
+		 * (see {@link CoalescingKeyExtractor}), keeping its position in the queue.
+		 * If no such event is queued and the queue is full, the oldest queued event gets discarded.
+		 * This is meant for receivers that only care about the latest value, e.g. of a given device.
+		 */
+		COALESCE_LATEST
+	}
+
+	/**
+	 * Gives the key under which events get coalesced with {@link OverflowPolicy#COALESCE_LATEST}.
+	 */
+	public static interface CoalescingKeyExtractor {
+		/**
+		 * @param eventData The event, of the type for which the policy is used.
+		 * @return The key, e.g. a device name taken from the event struct. Must not be <code>null</code>.
+		 */
+		public Object getKey(Object eventData);
+	}
+
+	/**
+	 * Used when coalescing without a CoalescingKeyExtractor,
+	 * so that only the latest event of a type is kept.
+	 */
+	private static final CoalescingKeyExtractor EVENT_TYPE_KEY_EXTRACTOR = new CoalescingKeyExtractor() {
+		public Object getKey(Object eventData) {
+			return eventData.getClass();
+		}
+	};
+
+	/**
+	 * The policy used for event types without a configured policy,
+	 * which corresponds to the single event queue used in earlier ACS versions.
+	 */
+	public static final EventQueuePolicy DEFAULT =
+			new EventQueuePolicy(OverflowPolicy.DROP_NEWEST, AcsEventSubscriberImplBase.EVENT_QUEUE_CAPACITY, 0, null);
+
+	private final OverflowPolicy overflowPolicy;
+	private final int capacity;
+	private final long blockTimeoutMillis;
+	private final CoalescingKeyExtractor keyExtractor;
+
+	/**
+	 * @param overflowPolicy
+	 * @param capacity Max number of events queued for the receiver, must be at least 1.
+	 * @param blockTimeoutMillis Only used for {@link OverflowPolicy#BLOCK}.
+	 * @param keyExtractor Only used for {@link OverflowPolicy#COALESCE_LATEST}.
+	 *                     If <code>null</code>, all events of the type are coalesced.
+	 * @throws IllegalArgumentException if <code>overflowPolicy</code> is null or <code>capacity</code> is less than 1.
+	 */
+	public EventQueuePolicy(OverflowPolicy overflowPolicy, int capacity, long blockTimeoutMillis, CoalescingKeyExtractor keyExtractor) {
+		if (overflowPolicy == null) {
+			throw new IllegalArgumentException("overflowPolicy must not be null.");
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Illegal event queue capacity " + capacity);
+		}
+		this.overflowPolicy = overflowPolicy;
+		this.capacity = capacity;
+		this.blockTimeoutMillis = Math.max(0, blockTimeoutMillis);
+		this.keyExtractor = ( keyExtractor != null ? keyExtractor : EVENT_TYPE_KEY_EXTRACTOR );
+	}
+
+	/**
+	 * Convenience ctor for {@link OverflowPolicy#DROP_NEWEST} and {@link OverflowPolicy#DROP_OLDEST}.
+	 */
+	public EventQueuePolicy(OverflowPolicy overflowPolicy, int capacity) {
+		this(overflowPolicy, capacity, 0, null);
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getBlockTimeoutMillis() {
+		return blockTimeoutMillis;
+	}
+
+	public CoalescingKeyExtractor getCoalescingKeyExtractor() {
+		return keyExtractor;
+	}
+
+	@Override
+	public String toString() {
+		return overflowPolicy.name() + "(capacity=" + capacity +
+				( overflowPolicy == OverflowPolicy.BLOCK ? ", blockTimeoutMillis=" + blockTimeoutMillis : "" ) + ")";
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * ALMA - Atacama Large Millimiter Array
+ * (c) European Southern Observatory, 2013
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package alma.acs.nc;
+
+/**
+ * Snapshot of the counters of the local event queue for one event type of a subscriber
+ * (or for its generic subscription), see {@link AcsEventSubscriber#getEventQueueStatistics()}.
+ * The counters are accumulated since the subscriber started receiving events.
+ * <p>
+ * The latency is the time an event spent in the queue before its receiver got called,
+ * the process time is the time the receiver took.
+ */
+public class EventQueueStatistics
+{
+	private final String eventName;
+	private final EventQueuePolicy policy;
+	private final int queueSize;
+	private final int maxQueueSize;
+	private final long numEventsQueued;
+	private final long numEventsProcessed;
+	private final long numEventsDiscarded;
+	private final long numEventsCoalesced;
+	private final long totalLatencyNanos;
+	private final long maxLatencyNanos;
+	private final long totalProcessNanos;
+	private final long maxProcessNanos;
+
+	EventQueueStatistics(String eventName, EventQueuePolicy policy, int queueSize, int maxQueueSize,
+			long numEventsQueued, long numEventsProcessed, long numEventsDiscarded, long numEventsCoalesced,
+			long totalLatencyNanos, long maxLatencyNanos, long totalProcessNanos, long maxProcessNanos) {
+		this.eventName = eventName;
+		this.policy = policy;
+		this.queueSize = queueSize;
+		this.maxQueueSize = maxQueueSize;
+		this.numEventsQueued = numEventsQueued;
+		this.numEventsProcessed = numEventsProcessed;
+		this.numEventsDiscarded = numEventsDiscarded;
+		this.numEventsCoalesced = numEventsCoalesced;
+		this.totalLatencyNanos = totalLatencyNanos;
+		this.maxLatencyNanos = maxLatencyNanos;
+		this.totalProcessNanos = totalProcessNanos;
+		this.maxProcessNanos = maxProcessNanos;
+	}
+
+	/**
+	 * @return The event type name (Java class name), or "generic" for the queue of the generic subscription.
+	 */
+	public String getEventName() {
+		return eventName;
+	}
+
+	public EventQueuePolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return The number of events currently waiting for the receiver.
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	/**
+	 * @return The number of events that got queued (including those discarded later with {@link EventQueuePolicy.OverflowPolicy#DROP_OLDEST}).
+	 */
+	public long getNumEventsQueued() {
+		return numEventsQueued;
+	}
+
+	public long getNumEventsProcessed() {
+		return numEventsProcessed;
+	}
+
+	public long getNumEventsDiscarded() {
+		return numEventsDiscarded;
+	}
+
+	/**
+	 * @return The number of events that replaced a queued event with {@link EventQueuePolicy.OverflowPolicy#COALESCE_LATEST}.
+	 */
+	public long getNumEventsCoalesced() {
+		return numEventsCoalesced;
+	}
+
+	public double getAverageLatencyMillis() {
+		return ( numEventsProcessed > 0 ? totalLatencyNanos / 1e6 / numEventsProcessed : 0.0 );
+	}
+
+	public double getMaxLatencyMillis() {
+		return maxLatencyNanos / 1e6;
+	}
+
+	public double getAverageProcessTimeMillis() {
+		return ( numEventsProcessed > 0 ? totalProcessNanos / 1e6 / numEventsProcessed : 0.0 );
+	}
+
+	public double getMaxProcessTimeMillis() {
+		return maxProcessNanos / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s: queued=%d, processed=%d, discarded=%d, coalesced=%d, queueSize=%d (max %d), " +
+				"latency avg=%.3f ms max=%.3f ms, process time avg=%.3f ms max=%.3f ms",
+				eventName, policy, numEventsQueued, numEventsProcessed, numEventsDiscarded, numEventsCoalesced, queueSize, maxQueueSize,
+				getAverageLatencyMillis(), getMaxLatencyMillis(), getAverageProcessTimeMillis(), getMaxProcessTimeMillis());
+	}
+}
@@ -3,6 +3,7 @@ package alma.acs.nc.testsupport;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
@@ -28,6 +29,9 @@ import alma.acs.nc.AcsEventPublisher;
 import alma.acs.nc.AcsEventSubscriber;
 import alma.acs.nc.AcsEventSubscriber.GenericCallback;
 import alma.acs.nc.AcsEventSubscriberImplBase;
+import alma.acs.nc.EventQueuePolicy;
+import alma.acs.nc.EventQueuePolicy.OverflowPolicy;
+import alma.acs.nc.EventQueueStatistics;
 import alma.acs.util.StopWatch;
 import alma.acsnc.EventDescription;
 
@@ -515,4 +519,136 @@ public class InMemoryNcTest extends JUnit4StandaloneTestBase
 		
 		sw.logLapTime("publish " + numEventsPublishedTotal + " and receive " + numEventsToReceiveTotal + " events");
 	}
+
+	/**
+	 * Tests the separate event queues per event type, with a fast receiver for event1 
+	 * whose events must all be delivered in order (using a blocking queue),
+	 * and a slow receiver for event2 that loses events (using a drop-oldest queue).
+	 * The slow receiver must not cause any loss of event1.
+	 */
+	@Test
+	public void testEventQueuePerEventType() throws Exception {
+		InMemoryNcFake nc = new InMemoryNcFake(services, "myTestChannel");
+
+		final int numEvents1 = 100000;
+		final int event2Ratio = 100; // every 100th event1 is followed by an event2
+		final int numEvents2 = numEvents1 / event2Ratio;
+		final long slowReceiverMillis = 2;
+
+		AcsEventSubscriber<TestEventTypeBase> sub = nc.createSubscriber("myTestSubscriber", TestEventTypeBase.class);
+		sub.setEventDispatchThreads(4);
+		sub.setEventQueuePolicy(TestEventType1.class, new EventQueuePolicy(OverflowPolicy.BLOCK, 1000, 10000, null));
+		sub.setEventQueuePolicy(TestEventType2.class, new EventQueuePolicy(OverflowPolicy.DROP_OLDEST, 10));
+
+		final List<TestEventType1> receivedEvents1 = Collections.synchronizedList(new ArrayList<TestEventType1>(numEvents1));
+		final CountDownLatch allEvents1Received = new CountDownLatch(numEvents1);
+		sub.addSubscription(new AcsEventSubscriber.Callback<TestEventType1>() {
+			public void receive(TestEventType1 eventData, EventDescription eventDescrip) {
+				receivedEvents1.add(eventData);
+				allEvents1Received.countDown();
+			}
+			public Class<TestEventType1> getEventType() {
+				return TestEventType1.class;
+			}
+		});
+		sub.addSubscription(new AcsEventSubscriber.Callback<TestEventType2>() {
+			public void receive(TestEventType2 eventData, EventDescription eventDescrip) {
+				try {
+					Thread.sleep(slowReceiverMillis);
+				} catch (InterruptedException ex) {
+					// ignore
+				}
+			}
+			public Class<TestEventType2> getEventType() {
+				return TestEventType2.class;
+			}
+		});
+		sub.startReceivingEvents();
+
+		AcsEventPublisher<TestEventTypeBase> pub = nc.createPublisher("myTestPublisher", TestEventTypeBase.class);
+		List<TestEventType1> events1 = new ArrayList<TestEventType1>(numEvents1);
+		for (int i = 0; i < numEvents1; i++) {
+			events1.add(new TestEventType1());
+		}
+		TestEventType2 event2 = new TestEventType2();
+
+		StopWatch sw = new StopWatch(logger);
+		for (int i = 0; i < numEvents1; i++) {
+			pub.publishEvent(events1.get(i));
+			if (i % event2Ratio == 0) {
+				pub.publishEvent(event2);
+			}
+		}
+		sw.logLapTime("publish " + (numEvents1 + numEvents2) + " events");
+		assertThat(allEvents1Received.await(1, TimeUnit.MINUTES), is(true));
+		sw.logLapTime("receive " + numEvents1 + " events by the fast receiver");
+
+		// all event1 must be received in the published order
+		assertThat(receivedEvents1, hasSize(numEvents1));
+		for (int i = 0; i < numEvents1; i++) {
+			assertThat(receivedEvents1.get(i), sameInstance(events1.get(i)));
+		}
+
+		// wait for the slow receiver to work off its queue
+		EventQueueStatistics stats1 = null;
+		EventQueueStatistics stats2 = null;
+		for (int i = 0; i < 100; i++) {
+			for (EventQueueStatistics stats : sub.getEventQueueStatistics()) {
+				logger.fine(stats.toString());
+				if (stats.getEventName().equals(TestEventType1.class.getName())) {
+					stats1 = stats;
+				}
+				else if (stats.getEventName().equals(TestEventType2.class.getName())) {
+					stats2 = stats;
+				}
+			}
+			if (stats2 != null && stats2.getNumEventsProcessed() + stats2.getNumEventsDiscarded() == numEvents2) {
+				break;
+			}
+			Thread.sleep(100);
+		}
+		logger.info(stats1.toString());
+		logger.info(stats2.toString());
+		assertThat(stats1.getNumEventsProcessed(), equalTo((long)numEvents1));
+		assertThat(stats1.getNumEventsDiscarded(), equalTo(0L));
+		assertThat(stats2.getNumEventsProcessed() + stats2.getNumEventsDiscarded(), equalTo((long)numEvents2));
+		assertThat(stats2.getNumEventsDiscarded(), greaterThan(0L));
+		assertThat(stats2.getMaxQueueSize(), equalTo(10));
+
+		sub.disconnect();
+	}
+
+	/**
+	 * Tests that a generic receiver that throws an exception for every event 
+	 * still gets all following events, i.e. that the exception does not stall the event queue.
+	 */
+	@Test
+	public void testThrowingGenericReceiver() throws Exception {
+		InMemoryNcFake nc = new InMemoryNcFake(services, "myTestChannel");
+
+		final int numEvents = 3 * 32 + 5; // more than a drain batch of the event queue
+		final CountDownLatch allEventsReceived = new CountDownLatch(numEvents);
+
+		AcsEventSubscriber<TestEventTypeBase> sub = nc.createSubscriber("myTestSubscriber", TestEventTypeBase.class);
+		sub.addGenericSubscription(new GenericCallback() {
+			public void receiveGeneric(Object eventData, EventDescription eventDescrip) {
+				allEventsReceived.countDown();
+				throw new IllegalStateException("Receiver failure for test.");
+			}
+		});
+		sub.startReceivingEvents();
+
+		AcsEventPublisher<TestEventTypeBase> pub = nc.createPublisher("myTestPublisher", TestEventTypeBase.class);
+		for (int i = 0; i < numEvents; i++) {
+			pub.publishEvent(new TestEventType1());
+		}
+		assertThat(allEventsReceived.await(10, TimeUnit.SECONDS), is(true));
+
+		List<EventQueueStatistics> statsList = sub.getEventQueueStatistics();
+		assertThat(statsList, hasSize(1));
+		logger.info(statsList.get(0).toString());
+		assertThat(statsList.get(0).getNumEventsDiscarded(), equalTo(0L));
+
+		sub.disconnect();
+	}
 }
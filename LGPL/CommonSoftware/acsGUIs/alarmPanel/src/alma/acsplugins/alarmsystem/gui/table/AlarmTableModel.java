@@ -26,10 +26,10 @@
 package alma.acsplugins.alarmsystem.gui.table;
 
 import java.awt.Color;
+import java.lang.reflect.InvocationTargetException;
 import java.text.SimpleDateFormat;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -54,6 +54,13 @@ import com.cosylab.acs.laser.dao.ACSAlarmCacheImpl;
 /** 
  * 
  * The table model for the table alarms
+ * <P>
+ * The alarms received from the alarm service are queued in the {@link AlarmsUpdateQueue}
+ * and injected in the container by the thread (see {@link #run()}) in slices of
+ * at most {@link #ALARMS_PER_SLICE} alarms, each one executed inside the EDT.
+ * The changes of the rows of the container are notified to the table with the events
+ * for the changed rows (inserted, deleted, updated) so that the sorter of the table sorts and
+ * filters only those rows.
  *
  */
 public class AlarmTableModel extends AbstractTableModel implements AlarmSelectionListener, Runnable {
@@ -263,9 +270,63 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 	
 	/** 
 	 * The queue of alarms received from the <code>CategoryClient</code> that will be
-	 * injected in the table
+	 * injected in the table.
+	 * <P>
+	 * An urgent alarm triggers the refresh of the table without waiting for the next
+	 * periodic update.
 	 */
-	private final Map<String, AlarmTableEntry> alarmsToAdd = Collections.synchronizedMap(new HashMap<String, AlarmTableEntry>());
+	private final AlarmsUpdateQueue alarmsToAdd = new AlarmsUpdateQueue(new Runnable() {
+		@Override
+		public void run() {
+			refreshNow();
+		}
+	});
+	
+	/**
+	 * Forwards the changes of the rows of one of the indexes of the container to the table
+	 * if the index is the one shown by the table (i.e. depending on {@link AlarmTableModel#applyReductionRules}).
+	 * <P>
+	 * The container notifies the changes from inside the EDT.
+	 */
+	private class RowsListener implements AlarmsIndex.IndexListener {
+		
+		/**
+		 * <code>true</code> if the listener is for the index of the reduced alarms
+		 */
+		private final boolean reduced;
+		
+		public RowsListener(boolean reduced) {
+			this.reduced=reduced;
+		}
+		
+		@Override
+		public void rowsInserted(int first, int last) {
+			if (reduced==applyReductionRules) {
+				fireTableRowsInserted(first, last);
+			}
+		}
+		
+		@Override
+		public void rowsDeleted(int first, int last) {
+			if (reduced==applyReductionRules) {
+				fireTableRowsDeleted(first, last);
+			}
+		}
+		
+		@Override
+		public void rowsUpdated(int first, int last) {
+			if (reduced==applyReductionRules) {
+				fireTableRowsUpdated(first, last);
+			}
+		}
+		
+		@Override
+		public void dataChanged() {
+			if (reduced==applyReductionRules) {
+				fireTableDataChanged();
+			}
+		}
+	}
 	
 	/**
 	 * The boolean to pause the refresh of the table if the user pressed the pause button 
@@ -302,6 +363,8 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 		this.addInactiveAlarms=addInactiveAlarms;
 		this.undocModel=undocModel;
 		this.items = new AlarmsReductionContainer(MAX_ALARMS);
+		items.setRowsListener(new RowsListener(false));
+		items.setReducedRowsListener(new RowsListener(true));
 		// Put each alarm type in the has map of the counters
 		for (AlarmGUIType alarmType: AlarmGUIType.values()) {
 			counters.put(alarmType, new AtomicInteger());
@@ -309,9 +372,9 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 	}
 	
 	/**
-	 * Each received alarm is temporarily stored in the {@link #alarmsToAdd} map so that if it appears more then
+	 * Each received alarm is temporarily stored in the {@link #alarmsToAdd} queue so that if it appears more then
 	 * once the last occurrence replaces the old one.
-	 * The thread will get alarms from this map and flush them in the container to updated the table (@see {@link #run()}).
+	 * The thread will get alarms from this queue and flush them in the container to updated the table (@see {@link #run()}).
 	 * 
 	 * @param alarm The alarm to add to the table.
 	 * @see AlarmSelectionListener
@@ -324,7 +387,7 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 			return;
 		}
 		AlarmTableEntry tableEntry = new AlarmTableEntry(alarm);
-		alarmsToAdd.put(alarm.getAlarmId(), tableEntry);
+		alarmsToAdd.put(tableEntry);
 	}
 	
 	private void dumpAlarm(Alarm alarm) {
@@ -423,12 +486,6 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 			return;
 		}
 		counters.get(AlarmGUIType.fromAlarm(alarm)).decrementAndGet();
-		EDTExecutor.instance().execute(new Runnable() {
-			@Override
-			public void run() {
-				fireTableDataChanged();
-			}
-		});
 	}
 	
 	/**
@@ -502,6 +559,13 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 	 */
 	public static final int REFRESH_TIMEINTERVAL=2;
 	
+	/**
+	 * The max number of alarms injected in the container in one go inside the EDT.
+	 * <P>
+	 * Between two slices the EDT is free to repaint the table and react to the user.
+	 */
+	public static final int ALARMS_PER_SLICE=250;
+	
 	/**
 	 * The owner component (used to show dialog messages) 
 	 */
@@ -521,7 +585,7 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 	/**
 	 *	If <code>true</code> applies the reduction rules hiding reduced alarms 
 	 */
-	private boolean applyReductionRules;
+	private volatile boolean applyReductionRules;
 	
 	/**
 	 * This boolean <code>addInactiveAlarms</code> says if the model has to add inactive alarms if
@@ -747,16 +811,8 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 			System.out.println("Error removing inactive alarms "+e.getMessage());
 			e.printStackTrace(System.err);
 		}
-		if (removed>0) {
-			for (int t=0; t<removed; t++) {
-				counters.get(AlarmGUIType.INACTIVE).decrementAndGet();
-			}
-			EDTExecutor.instance().execute(new Runnable() {
-				@Override
-				public void run() {
-					fireTableDataChanged();
-				}
-			});
+		for (int t=0; t<removed; t++) {
+			counters.get(AlarmGUIType.INACTIVE).decrementAndGet();
 		}
 	}
 	
@@ -800,11 +856,13 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 	 * 				if <code>reduce</code> is <code>false</code> all the alarms are shown 
 	 * 				by the table independently of the reduction rules
 	 */
-	public void applyReductions(boolean reduce) {
-		applyReductionRules=reduce;
+	public void applyReductions(final boolean reduce) {
+		// The table shows another index: the flag is changed inside the EDT
+		// to be consistent with the events fired by the listeners of the container
 		EDTExecutor.instance().execute(new Runnable() {
 			@Override
 			public void run() {
+				applyReductionRules=reduce;
 				fireTableDataChanged();
 			}
 		});
@@ -850,10 +908,17 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 	/**
 	 * The thread refreshes the content of the table at a fixed rate.
 	 * It is the {@link #executor} that schedules the execution of this thread 
-	 * at {@link #REFRESH_TIMEINTERVAL} ({@value #REFRESH_TIMEINTERVAL}) msecs. 
+	 * at {@link #REFRESH_TIMEINTERVAL} ({@value #REFRESH_TIMEINTERVAL}) secs
+	 * or as soon as an urgent alarm is received (see {@link #refreshNow()}).
 	 * <P>
-	 * The thread flushes all the alarms from the {@link #alarmsToAdd} vector
-	 * in the table before firing the event to refresh the content of the table.
+	 * The thread flushes all the alarms from the {@link #alarmsToAdd} queue
+	 * in the table. The alarms are ordered by urgency outside of the EDT and
+	 * injected in the container in slices of at most {@link #ALARMS_PER_SLICE}
+	 * alarms, each one executed inside the EDT.
+	 * <BR>
+	 * If an urgent alarm arrives while injecting the slices, the alarms not yet injected
+	 * are put back in the queue and the thread runs again immediately so that the urgent
+	 * alarm is shown after at most one slice.
 	 */
 	@Override
 	public void run() {
@@ -864,42 +929,31 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 			return;
 		}
 		// The alarms to add/update in the table
-		AlarmTableEntry[] alarms;
-		
-		synchronized (alarmsToAdd) {
-			alarms=new AlarmTableEntry[alarmsToAdd.size()];
-			alarmsToAdd.values().toArray(alarms);
-			alarmsToAdd.clear();
-		}
+		final AlarmTableEntry[] alarms = alarmsToAdd.drain();
 		
-		EDTExecutor.instance().execute(new Runnable() {
-			public void run() {
-				for (int t=0; t<alarms.length && !terminateThread.get(); t++) {
-					AlarmTableEntry alarm=alarms[t];
-					
-					if (items.contains(alarm.getAlarmId())) {
-						replaceAlarm(alarm);
-					} else {
-						synchronized (items) {
-							// Enough room for the new alarm? If not remove the oldest
-							if (items.size(applyReductionRules)==MAX_ALARMS) {
-								AlarmTableEntry removedAlarm=null;
-								try {
-									removedAlarm = items.removeOldest(); // Remove the last one
-								} catch (Exception e) {
-									System.err.println("Error removing the oldest alarm: "+e.getMessage());
-									e.printStackTrace(System.err);
-									return;
-								}
-								counters.get(removedAlarm.getAlarmType()).decrementAndGet();
-							}
-							addAlarm(alarm);
-						}	
+		for (int from=0; from<alarms.length && !terminateThread.get(); from+=ALARMS_PER_SLICE) {
+			if (from>0 && (alarmsToAdd.hasUrgentAlarms() || paused.get())) {
+				alarmsToAdd.putBack(alarms, from);
+				return;
+			}
+			final int first=from;
+			final int last=Math.min(from+ALARMS_PER_SLICE, alarms.length);
+			try {
+				EDTExecutor.instance().executeSync(new Runnable() {
+					public void run() {
+						for (int t=first; t<last && !terminateThread.get(); t++) {
+							injectAlarm(alarms[t]);
+						}
 					}
-				}
-				fireTableDataChanged();
+				});
+			} catch (InterruptedException ie) {
+				// The executor has been shut down
+				return;
+			} catch (InvocationTargetException ite) {
+				System.err.println("Error updating the table: "+ite.getCause().getMessage());
+				ite.getCause().printStackTrace(System.err);
 			}
-		});
+		}
 		
 		
 			// Debug messages: enable to investigate reductions
@@ -916,6 +970,51 @@ public class AlarmTableModel extends AbstractTableModel implements AlarmSelectio
 
 	}
 	
+	/**
+	 * Inject an alarm in the container, replacing the entry of the same alarm if
+	 * already present.
+	 * <P>
+	 * If there is no room for a new alarm, the oldest one is removed.
+	 * This method must be executed inside the EDT.
+	 * 
+	 * @param alarm The alarm to inject in the container
+	 */
+	private void injectAlarm(AlarmTableEntry alarm) {
+		if (items.contains(alarm.getAlarmId())) {
+			replaceAlarm(alarm);
+			return;
+		}
+		synchronized (items) {
+			// Enough room for the new alarm? If not remove the oldest
+			if (items.size(false)>=MAX_ALARMS) {
+				AlarmTableEntry removedAlarm=null;
+				try {
+					removedAlarm = items.removeOldest(); // Remove the last one
+				} catch (Exception e) {
+					System.err.println("Error removing the oldest alarm: "+e.getMessage());
+					e.printStackTrace(System.err);
+					return;
+				}
+				counters.get(removedAlarm.getAlarmType()).decrementAndGet();
+			}
+			addAlarm(alarm);
+		}
+	}
+	
+	/**
+	 * Ask the {@link #executor} to refresh the table immediately.
+	 */
+	private void refreshNow() {
+		if (paused.get() || terminateThread.get()) {
+			return;
+		}
+		try {
+			executor.execute(this);
+		} catch (RejectedExecutionException ree) {
+			// The model has been closed
+		}
+	}
+	
 	/**
 	 * Start the thread.
 	 * 
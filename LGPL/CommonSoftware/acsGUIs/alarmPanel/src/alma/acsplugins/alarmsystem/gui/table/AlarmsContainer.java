@@ -20,7 +20,6 @@ package alma.acsplugins.alarmsystem.gui.table;
 
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
@@ -33,18 +32,21 @@ import alma.acs.gui.util.threadsupport.EDTExecutor;
  * It is composed of 2 collections:
  * <OL>
  *  <LI> the <code>HashMap</code> stores each entry accessed by its alarmID (the key)
- *  <LI> the <code>Vector</code> of <code>Strings</code> used to remember the position of 
+ *  <LI> the {@link AlarmsIndex} of <code>Strings</code> used to remember the position of 
  *  						each alarm when the max number of alarms has been reached
  *                          It also allows to access the alarms by row
  * </OL>         
- * Basically the array stores the alarmID of each row in the table.
+ * Basically the index stores the alarmID of each row in the table.
  * The content of the row i.e. the Alarm, is then obtained by the
  * HashMap passing the alarmID.
  * <BR>
  * In this way it is possible to get the entry of a row by getting
- * the key from the Vector. And it is possible to get an alarm
+ * the key from the index. And it is possible to get an alarm
  * from the HashMap.
  * <P>
+ * The changes of the rows are notified to the listener set with
+ * {@link #setRowsListener(AlarmsIndex.IndexListener)}.
+ * <P>
  * Synchronization is done by thread confinement (inside the EDT).
  * Invocation of read only methods must be done inside the EDT.
  * 
@@ -107,10 +109,10 @@ public class AlarmsContainer {
 	/**
 	 * The index when the reduction rules are not applied
 	 * <P>
-	 * Each item in the vector represents the ID of the entry 
+	 * Each item in the index represents the ID of the entry 
 	 * shown in a table row when the reduction rules are not used.
 	 */
-	private final List<String> index = Collections.synchronizedList(new Vector<String>());
+	private final AlarmsIndex index = new AlarmsIndex();
 	
 	/**
 	 * The maximum number of alarms to store in the container
@@ -127,6 +129,16 @@ public class AlarmsContainer {
 		maxAlarms=max;
 	}
 	
+	/**
+	 * Set the listener of the changes of the rows when the reduction
+	 * rules are not applied.
+	 * 
+	 * @param listener The listener; it can be <code>null</code>
+	 */
+	public void setRowsListener(AlarmsIndex.IndexListener listener) {
+		index.setListener(listener);
+	}
+	
 	/**
 	 * Return the number of alarms in the container.
 	 * 
@@ -168,8 +180,9 @@ public class AlarmsContainer {
 			EDTExecutor.instance().executeSync(new Runnable() {
 				@Override
 				public void run() {
-					index.add(entry.getAlarmId());
+					// The entry must be available when the listener is notified
 					entries.put(entry.getAlarmId(), entry);
+					index.addLast(entry.getAlarmId());
 				}
 			});
 		} catch (Throwable t) {
@@ -234,8 +247,8 @@ public class AlarmsContainer {
 		EDTExecutor.instance().execute(new Runnable() {
 			@Override
 			public void run() {
-				index.clear();
 				entries.clear();
+				index.clear();
 			}
 		});		
 	}
@@ -261,9 +274,9 @@ public class AlarmsContainer {
 			}
 			
 			public void run() {
-				String ID = index.remove(0);
+				String ID = index.removeFirst();
 				if (ID==null) {
-					throw new IllegalStateException("The index vector returned a null item");
+					throw new IllegalStateException("The index returned a null item");
 				}
 				removedEntry = entries.remove(ID);
 			}
@@ -300,12 +313,11 @@ public class AlarmsContainer {
 				@Override
 				public void run() {
 					String ID=entry.getAlarmId();
-					int pos=index.indexOf(ID);
+					int pos=index.remove(ID);
 					if (pos<0) {
 						IllegalStateException iste =new IllegalStateException("Alarm not in the container");
 						throw iste;
 					}
-					index.remove(pos);
 					AlarmTableEntry oldEntry = entries.remove(ID);
 					if (oldEntry==null) {
 						throw new IllegalStateException("The ID was in index but not in entries");
@@ -405,8 +417,7 @@ public class AlarmsContainer {
 				
 				@Override
 				public void run() {
-					int pos = index.indexOf(newAlarm.getAlarmId());
-					if (pos<0) {
+					if (!index.contains(newAlarm.getAlarmId())) {
 						throw new IllegalStateException("Entry not present in the container");
 					}
 					AlarmTableEntry entry = entries.get(newAlarm.getAlarmId());
@@ -417,8 +428,9 @@ public class AlarmsContainer {
 					entry.updateAlarm(newAlarm);
 					// If active, move the item in the head of the container
 					if (newAlarm.getStatus().isActive()) {
-						String key = index.remove(pos);
-						index.add(0,key);
+						index.moveToHead(newAlarm.getAlarmId());
+					} else {
+						index.updated(newAlarm.getAlarmId());
 					}
 				}
 			});
@@ -0,0 +1,403 @@
+/*
+ * ALMA - Atacama Large Millimiter Array (c) European Southern Observatory, 2013
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+package alma.acsplugins.alarmsystem.gui.table;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The IDs of the alarms in the order they are shown in the rows of the table.
+ * <P>
+ * The row of an ID is read from a map instead of scanning a vector of IDs,
+ * i.e. {@link #indexOf(String)}, {@link #contains(String)} and the lookups done by
+ * {@link #remove(String)} and {@link #moveToHead(String)} do not depend on the number of alarms.
+ * <BR>
+ * The IDs are stored in an array with free room at both ends:
+ * adding an ID at the head or at the tail does not move the other IDs, and removing an ID moves
+ * only the shorter of the two sides of the array.
+ * <P>
+ * Each change is notified to the {@link IndexListener}, if any, with the rows involved
+ * so that the table model can fire the event for those rows instead of <code>fireTableDataChanged()</code>.
+ * The listener is notified after the change, outside of the lock of this object.
+ * <P>
+ * Like the containers, the index is changed only from inside the EDT; the methods are
+ * synchronized to allow other threads to read the size and the IDs.
+ *
+ * @see AlarmsContainer
+ */
+public class AlarmsIndex {
+
+	/**
+	 * The listener of the changes of the rows of the index.
+	 * <P>
+	 * The methods have the same meaning of the homonymous methods of <code>AbstractTableModel</code>.
+	 */
+	public interface IndexListener {
+
+		/**
+		 * The rows from <code>first</code> to <code>last</code> (inclusive) have been inserted
+		 */
+		public void rowsInserted(int first, int last);
+
+		/**
+		 * The rows from <code>first</code> to <code>last</code> (inclusive) have been deleted
+		 */
+		public void rowsDeleted(int first, int last);
+
+		/**
+		 * The alarms in the rows from <code>first</code> to <code>last</code> (inclusive) have been updated
+		 */
+		public void rowsUpdated(int first, int last);
+
+		/**
+		 * All the rows changed (for example the index has been cleared)
+		 */
+		public void dataChanged();
+	}
+
+	/**
+	 * An ID with its position in {@link AlarmsIndex#slots}
+	 */
+	private static class Slot {
+
+		/**
+		 * The ID of the alarm
+		 */
+		public final String id;
+
+		/**
+		 * The position of this slot in the array
+		 */
+		public int pos;
+
+		public Slot(String id) {
+			this.id=id;
+		}
+	}
+
+	/**
+	 * The initial length of the array of slots
+	 */
+	private static final int INITIAL_CAPACITY=64;
+
+	/**
+	 * The slots of the rows: the row <code>i</code> is in <code>slots[head+i]</code>
+	 */
+	private Slot[] slots = new Slot[INITIAL_CAPACITY];
+
+	/**
+	 * The position of the first row in {@link #slots}
+	 */
+	private int head=INITIAL_CAPACITY/2;
+
+	/**
+	 * The position after the last row in {@link #slots}
+	 */
+	private int tail=INITIAL_CAPACITY/2;
+
+	/**
+	 * The slots by ID
+	 */
+	private final Map<String, Slot> slotsByID = new HashMap<String, Slot>();
+
+	/**
+	 * The listener of the changes; it can be <code>null</code>
+	 */
+	private volatile IndexListener listener;
+
+	/**
+	 * Set the listener of the changes of the rows
+	 *
+	 * @param listener The listener; <code>null</code> removes the listener
+	 */
+	public void setListener(IndexListener listener) {
+		this.listener=listener;
+	}
+
+	/**
+	 * @return The number of IDs (rows) in the index
+	 */
+	public synchronized int size() {
+		return tail-head;
+	}
+
+	/**
+	 * Return the ID of the alarm in the given row
+	 *
+	 * @param row The row
+	 * @return The ID in the given row
+	 */
+	public synchronized String get(int row) {
+		if (row<0 || row>=tail-head) {
+			throw new IndexOutOfBoundsException("Can't access item at pos "+row+": [0,"+(tail-head)+"[");
+		}
+		return slots[head+row].id;
+	}
+
+	/**
+	 * @param id The ID of the alarm
+	 * @return <code>true</code> if the index contains the passed ID
+	 */
+	public synchronized boolean contains(String id) {
+		return slotsByID.containsKey(id);
+	}
+
+	/**
+	 * Return the row of the alarm with the given ID
+	 *
+	 * @param id The ID of the alarm
+	 * @return The row of the alarm or -1 if the ID is not in the index
+	 */
+	public synchronized int indexOf(String id) {
+		Slot slot = slotsByID.get(id);
+		return (slot==null) ? -1 : slot.pos-head;
+	}
+
+	/**
+	 * Add the ID in the first row.
+	 *
+	 * @param id The not <code>null</code> ID to add
+	 * @return <code>false</code> if the ID was already in the index (and has not been added)
+	 */
+	public boolean addFirst(String id) {
+		synchronized (this) {
+			if (!insertFirst(id)) {
+				return false;
+			}
+		}
+		IndexListener l = listener;
+		if (l!=null) {
+			l.rowsInserted(0, 0);
+		}
+		return true;
+	}
+
+	/**
+	 * Add the ID in the last row.
+	 *
+	 * @param id The not <code>null</code> ID to add
+	 * @return <code>false</code> if the ID was already in the index (and has not been added)
+	 */
+	public boolean addLast(String id) {
+		if (id==null) {
+			throw new IllegalArgumentException("The ID can't be null");
+		}
+		int row;
+		synchronized (this) {
+			if (slotsByID.containsKey(id)) {
+				return false;
+			}
+			if (tail==slots.length) {
+				makeRoom();
+			}
+			Slot slot = new Slot(id);
+			slot.pos=tail;
+			slots[tail++]=slot;
+			slotsByID.put(id, slot);
+			row=tail-head-1;
+		}
+		IndexListener l = listener;
+		if (l!=null) {
+			l.rowsInserted(row, row);
+		}
+		return true;
+	}
+
+	/**
+	 * Remove the ID from the index
+	 *
+	 * @param id The ID to remove
+	 * @return The row of the removed ID or -1 if the ID was not in the index
+	 */
+	public int remove(String id) {
+		int row;
+		synchronized (this) {
+			row=delete(id);
+		}
+		IndexListener l = listener;
+		if (row>=0 && l!=null) {
+			l.rowsDeleted(row, row);
+		}
+		return row;
+	}
+
+	/**
+	 * Remove the ID in the first row
+	 *
+	 * @return The removed ID or <code>null</code> if the index is empty
+	 */
+	public String removeFirst() {
+		String id;
+		synchronized (this) {
+			if (tail==head) {
+				return null;
+			}
+			id=slots[head].id;
+			delete(id);
+		}
+		IndexListener l = listener;
+		if (l!=null) {
+			l.rowsDeleted(0, 0);
+		}
+		return id;
+	}
+
+	/**
+	 * Move the ID in the first row.
+	 * <P>
+	 * If the ID is already in the first row, the row is notified as updated.
+	 *
+	 * @param id The ID to move
+	 * @return The row of the ID before moving or -1 if the ID is not in the index
+	 */
+	public int moveToHead(String id) {
+		int row;
+		synchronized (this) {
+			row=indexOf(id);
+			if (row>0) {
+				delete(id);
+				insertFirst(id);
+			}
+		}
+		IndexListener l = listener;
+		if (row>=0 && l!=null) {
+			if (row==0) {
+				l.rowsUpdated(0, 0);
+			} else {
+				l.rowsDeleted(row, row);
+				l.rowsInserted(0, 0);
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Notify the listener that the alarm with the given ID has been updated.
+	 *
+	 * @param id The ID of the updated alarm
+	 * @return The row of the ID or -1 if the ID is not in the index
+	 */
+	public int updated(String id) {
+		int row=indexOf(id);
+		IndexListener l = listener;
+		if (row>=0 && l!=null) {
+			l.rowsUpdated(row, row);
+		}
+		return row;
+	}
+
+	/**
+	 * Remove all the IDs
+	 */
+	public void clear() {
+		synchronized (this) {
+			for (int t=head; t<tail; t++) {
+				slots[t]=null;
+			}
+			slotsByID.clear();
+			head=tail=slots.length/2;
+		}
+		IndexListener l = listener;
+		if (l!=null) {
+			l.dataChanged();
+		}
+	}
+
+	/**
+	 * Insert the ID in the first row without notifying the listener
+	 *
+	 * @param id The not <code>null</code> ID to add
+	 * @return <code>false</code> if the ID was already in the index
+	 */
+	private boolean insertFirst(String id) {
+		if (id==null) {
+			throw new IllegalArgumentException("The ID can't be null");
+		}
+		if (slotsByID.containsKey(id)) {
+			return false;
+		}
+		if (head==0) {
+			makeRoom();
+		}
+		Slot slot = new Slot(id);
+		slot.pos=--head;
+		slots[head]=slot;
+		slotsByID.put(id, slot);
+		return true;
+	}
+
+	/**
+	 * Delete the ID without notifying the listener.
+	 * <P>
+	 * The shorter side of the array is shifted over the slot of the deleted ID.
+	 *
+	 * @param id The ID to delete
+	 * @return The row of the deleted ID or -1 if the ID was not in the index
+	 */
+	private int delete(String id) {
+		Slot slot = slotsByID.remove(id);
+		if (slot==null) {
+			return -1;
+		}
+		int pos=slot.pos;
+		int row=pos-head;
+		if (pos-head < tail-pos) {
+			// Shift the slots before pos one position forward
+			System.arraycopy(slots, head, slots, head+1, pos-head);
+			slots[head]=null;
+			head++;
+			for (int t=head; t<=pos; t++) {
+				slots[t].pos=t;
+			}
+		} else {
+			// Shift the slots after pos one position backward
+			System.arraycopy(slots, pos+1, slots, pos, tail-pos-1);
+			tail--;
+			slots[tail]=null;
+			for (int t=pos; t<tail; t++) {
+				slots[t].pos=t;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Center the slots in the array, doubling its length if more than half of it is in use.
+	 */
+	private void makeRoom() {
+		int size=tail-head;
+		Slot[] newSlots = (size*2>slots.length) ? new Slot[slots.length*2] : slots;
+		int newHead=(newSlots.length-size)/2;
+		System.arraycopy(slots, head, newSlots, newHead, size);
+		if (newSlots==slots) {
+			// Clean the slots left over by the copy
+			for (int t=head; t<tail; t++) {
+				if (t<newHead || t>=newHead+size) {
+					slots[t]=null;
+				}
+			}
+		}
+		slots=newSlots;
+		head=newHead;
+		tail=newHead+size;
+		for (int t=head; t<tail; t++) {
+			slots[t].pos=t;
+		}
+	}
+}
@@ -18,10 +18,6 @@
  */
 package alma.acsplugins.alarmsystem.gui.table;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Vector;
-
 import javax.swing.SwingWorker;
 
 import alma.acs.gui.util.threadsupport.EDTExecutor;
@@ -50,10 +46,10 @@ public class AlarmsReductionContainer extends AlarmsContainer {
 	/**
 	 * The index when the reduction rules are in place
 	 * <P>
-	 * Each item in the vector represents the ID of the entry 
+	 * Each item in the index represents the ID of the entry 
 	 * shown in a table row when the reduction rules are used.
 	 */
-	private final List<String> indexWithReduction = Collections.synchronizedList(new Vector<String>());
+	private final AlarmsIndex indexWithReduction = new AlarmsIndex();
 	
 	/**
 	 * The <code>CategoryClient</code> to ask for parents/children
@@ -75,6 +71,17 @@ public class AlarmsReductionContainer extends AlarmsContainer {
 		super(max);
 	}
 	
+	/**
+	 * Set the listener of the changes of the rows when the reduction
+	 * rules are applied.
+	 * 
+	 * @param listener The listener; it can be <code>null</code>
+	 * @see AlarmsContainer#setRowsListener(AlarmsIndex.IndexListener)
+	 */
+	public void setReducedRowsListener(AlarmsIndex.IndexListener listener) {
+		indexWithReduction.setListener(listener);
+	}
+	
 	/**
 	 * Return the number of alarms in the container depending
 	 * if the reduction rules are applied or not
@@ -115,7 +122,7 @@ public class AlarmsReductionContainer extends AlarmsContainer {
 			EDTExecutor.instance().execute(new Runnable() {
 				@Override
 				public void run() {
-					indexWithReduction.add(alarm.getAlarmId());
+					indexWithReduction.addLast(alarm.getAlarmId());
 				}
 			});
 		}
@@ -237,10 +244,7 @@ public class AlarmsReductionContainer extends AlarmsContainer {
 		EDTExecutor.instance().execute(new Runnable() {
 			@Override
 			public void run() {
-				int pos = indexWithReduction.indexOf(alarm.getAlarmId());
-				if (pos>=0) {
-					indexWithReduction.remove(pos);
-				}
+				indexWithReduction.remove(alarm.getAlarmId());
 			}
 		});
 		super.remove(alarm);
@@ -280,10 +284,8 @@ public class AlarmsReductionContainer extends AlarmsContainer {
 	 */
 	public void replace(AlarmTableEntry newAlarm) throws AlarmContainerException {
 		super.replace(newAlarm);
-		int pos=indexWithReduction.indexOf(newAlarm.getAlarmId());
+		int pos=indexWithReduction.moveToHead(newAlarm.getAlarmId());
 		if (pos>=0) {
-			String key = indexWithReduction.remove(pos);
-			indexWithReduction.add(0,key);
 			if (newAlarm.getStatus().isActive()) {
 				hideReducedChildren(newAlarm);
 			} else {
@@ -329,9 +331,7 @@ public class AlarmsReductionContainer extends AlarmsContainer {
 					for (Alarm al: als) {
 						AlarmTableEntry newEntry = AlarmsReductionContainer.this.get(al.getAlarmId());
 						if (newEntry!=null) {
-							if (indexWithReduction.indexOf(al.getAlarmId())<0) {
-								indexWithReduction.add(al.getAlarmId());
-							}
+							indexWithReduction.addLast(al.getAlarmId());
 						}
 					}
 				}
@@ -384,8 +384,8 @@ public class AlarmsReductionContainer extends AlarmsContainer {
 		}
 		int ret=Integer.MAX_VALUE;
 		synchronized (indexWithReduction) {
-			for (String id: indexWithReduction) {
-				AlarmTableEntry entry = get(id);
+			for (int t=0; t<indexWithReduction.size(); t++) {
+				AlarmTableEntry entry = get(indexWithReduction.get(t));
 				if (entry.getStatus().isActive() && entry.isNew() && entry.getPriority()<ret) {
 					ret=entry.getPriority();
 				}
@@ -0,0 +1,168 @@
+/*
+ * ALMA - Atacama Large Millimiter Array (c) European Southern Observatory, 2013
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+package alma.acsplugins.alarmsystem.gui.table;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The alarms received from the alarm service and not yet injected in the table.
+ * <P>
+ * If an alarm is received more then once, the last occurrence replaces the old one
+ * so that the table is updated only once for each alarm.
+ * <BR>
+ * {@link #drain()} returns the queued alarms ordered by urgency (see {@link #URGENCY_ORDER})
+ * so that, in an alarm storm, the most critical alarms are injected in the table first.
+ * <P>
+ * The arrival of an urgent alarm (i.e. an active alarm with priority 0) is notified
+ * to the <code>Runnable</code> passed in the constructor, to let the table be updated without waiting
+ * for the next periodic refresh. The <code>Runnable</code> is run once until the next {@link #drain()},
+ * by the thread that queues the alarm.
+ */
+public class AlarmsUpdateQueue {
+
+	/**
+	 * Orders the alarms by urgency: the active alarms before the inactive ones and,
+	 * for the same state, the alarms with the highest priority (i.e. lower number) first.
+	 */
+	public static final Comparator<AlarmTableEntry> URGENCY_ORDER = new Comparator<AlarmTableEntry>() {
+		@Override
+		public int compare(AlarmTableEntry a1, AlarmTableEntry a2) {
+			boolean active1 = a1.getStatus().isActive();
+			boolean active2 = a2.getStatus().isActive();
+			if (active1!=active2) {
+				return active1 ? -1 : +1;
+			}
+			return a1.getPriority().compareTo(a2.getPriority());
+		}
+	};
+
+	/**
+	 * The queued alarms by ID, in order of arrival
+	 */
+	private final Map<String, AlarmTableEntry> alarms = new LinkedHashMap<String, AlarmTableEntry>();
+
+	/**
+	 * <code>true</code> if an urgent alarm has been queued since the last {@link #drain()}
+	 */
+	private boolean urgentQueued=false;
+
+	/**
+	 * The task to run when an urgent alarm is queued; it can be <code>null</code>
+	 */
+	private final Runnable urgentAlarmTask;
+
+	/**
+	 * Constructor
+	 *
+	 * @param urgentAlarmTask The task to run when an urgent alarm is queued; it can be <code>null</code>
+	 */
+	public AlarmsUpdateQueue(Runnable urgentAlarmTask) {
+		this.urgentAlarmTask=urgentAlarmTask;
+	}
+
+	/**
+	 * @param alarm The alarm
+	 * @return <code>true</code> if the alarm is active and has priority 0
+	 */
+	public static boolean isUrgent(AlarmTableEntry alarm) {
+		return alarm.getStatus().isActive() && alarm.getPriority().intValue()==0;
+	}
+
+	/**
+	 * Queue an alarm, replacing the alarm with the same ID, if any.
+	 *
+	 * @param alarm The not <code>null</code> alarm to queue
+	 */
+	public void put(AlarmTableEntry alarm) {
+		if (alarm==null) {
+			throw new IllegalArgumentException("The alarm can't be null");
+		}
+		boolean runTask=false;
+		synchronized (this) {
+			alarms.put(alarm.getAlarmId(), alarm);
+			if (!urgentQueued && isUrgent(alarm)) {
+				urgentQueued=true;
+				runTask=true;
+			}
+		}
+		if (runTask && urgentAlarmTask!=null) {
+			urgentAlarmTask.run();
+		}
+	}
+
+	/**
+	 * Put back the alarms that have been drained but not injected in the table.
+	 * <P>
+	 * An alarm is put back only if no newer alarm with the same ID has been queued meanwhile.
+	 *
+	 * @param drained The alarms returned by {@link #drain()}
+	 * @param from The position of the first alarm to put back
+	 */
+	public synchronized void putBack(AlarmTableEntry[] drained, int from) {
+		for (int t=from; t<drained.length; t++) {
+			if (!alarms.containsKey(drained[t].getAlarmId())) {
+				alarms.put(drained[t].getAlarmId(), drained[t]);
+			}
+		}
+	}
+
+	/**
+	 * Remove all the alarms from the queue.
+	 * <P>
+	 * The ordering is done outside of the lock, so that the threads
+	 * queuing alarms are not delayed.
+	 *
+	 * @return The alarms in the queue ordered by {@link #URGENCY_ORDER};
+	 *         alarms with the same urgency are in order of arrival
+	 */
+	public AlarmTableEntry[] drain() {
+		AlarmTableEntry[] ret;
+		synchronized (this) {
+			ret = alarms.values().toArray(new AlarmTableEntry[alarms.size()]);
+			alarms.clear();
+			urgentQueued=false;
+		}
+		Arrays.sort(ret, URGENCY_ORDER);
+		return ret;
+	}
+
+	/**
+	 * @return <code>true</code> if an urgent alarm has been queued since the last {@link #drain()}
+	 */
+	public synchronized boolean hasUrgentAlarms() {
+		return urgentQueued;
+	}
+
+	/**
+	 * @return <code>true</code> if the queue is empty
+	 */
+	public synchronized boolean isEmpty() {
+		return alarms.isEmpty();
+	}
+
+	/**
+	 * @return The number of alarms in the queue
+	 */
+	public synchronized int size() {
+		return alarms.size();
+	}
+}
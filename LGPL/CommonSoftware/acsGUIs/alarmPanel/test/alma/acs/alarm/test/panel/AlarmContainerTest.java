@@ -18,7 +18,9 @@
  */
 package alma.acs.alarm.test.panel;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Vector;
 
 import javax.swing.SwingWorker;
@@ -27,6 +29,7 @@ import junit.framework.TestCase;
 import alma.acsplugins.alarmsystem.gui.table.AlarmGUIType;
 import alma.acsplugins.alarmsystem.gui.table.AlarmTableEntry;
 import alma.acsplugins.alarmsystem.gui.table.AlarmsContainer;
+import alma.acsplugins.alarmsystem.gui.table.AlarmsIndex;
 import alma.acsplugins.alarmsystem.gui.table.AlarmsContainer.AlarmContainerException;
 import alma.acsplugins.alarmsystem.gui.table.AlarmsReductionContainer;
 import cern.laser.client.data.Alarm;
@@ -522,4 +525,132 @@ public class AlarmContainerTest extends TestCase {
 		}
 	}
 	
+	/**
+	 * Applies the changes notified by the container to a copy of the IDs
+	 * of its rows, as a <code>JTable</code> does with the events of the model.
+	 */
+	private class RowsMirror implements AlarmsIndex.IndexListener {
+		
+		/**
+		 * <code>true</code> if the rows are those with reduction rules applied
+		 */
+		private final boolean reduced;
+		
+		/**
+		 * The IDs of the rows
+		 */
+		public final List<String> rows = new ArrayList<String>();
+		
+		/**
+		 * The number of changes notified
+		 */
+		public int events=0;
+		
+		public RowsMirror(boolean reduced) {
+			this.reduced=reduced;
+		}
+		
+		public void rowsInserted(int first, int last) {
+			events++;
+			for (int t=first; t<=last; t++) {
+				rows.add(t, container.get(t,reduced).getAlarmId());
+			}
+		}
+		
+		public void rowsDeleted(int first, int last) {
+			events++;
+			for (int t=last; t>=first; t--) {
+				rows.remove(t);
+			}
+		}
+		
+		public void rowsUpdated(int first, int last) {
+			events++;
+			for (int t=first; t<=last; t++) {
+				assertEquals(rows.get(t), container.get(t,reduced).getAlarmId());
+			}
+		}
+		
+		public void dataChanged() {
+			events++;
+			rows.clear();
+			for (int t=0; t<container.size(reduced); t++) {
+				rows.add(container.get(t,reduced).getAlarmId());
+			}
+		}
+		
+		/**
+		 * Check that the IDs are those of the rows of the container
+		 */
+		public void check() {
+			assertEquals(container.size(reduced), rows.size());
+			for (int t=0; t<rows.size(); t++) {
+				assertEquals(container.get(t,reduced).getAlarmId(), rows.get(t));
+			}
+		}
+	}
+	
+	/**
+	 * Test that the changes of the rows are notified to the listeners 
+	 * with the rows involved.
+	 * 
+	 * @throws Exception
+	 */
+	public void testRowsEvents() throws Exception {
+		final RowsMirror mirror = new RowsMirror(false);
+		final RowsMirror reducedMirror = new RowsMirror(true);
+		container.setRowsListener(mirror);
+		container.setReducedRowsListener(reducedMirror);
+		
+		final Vector<Alarm> alarms = new Vector<Alarm>();
+		populateContainer(CONTAINER_SIZE/10, "TEST", alarms, null);
+		class Checker implements Runnable {
+			public void run() {
+				mirror.check();
+				reducedMirror.check();
+			}
+		}
+		EDTExecutor.instance().executeSync(new Checker());
+		assertEquals(CONTAINER_SIZE/10, mirror.events);
+		
+		// Replace some alarms: the active ones move to the first row
+		for (int t=0; t<alarms.size(); t+=7) {
+			Alarm al = alarms.get(t);
+			final Alarm newAlarm = new TestAlarm(
+					al.getAlarmId(),
+					al.isNodeChild(),
+					al.isNodeParent(),
+					!al.getStatus().isActive(),
+					al.getStatus().isMasked(),
+					al.getStatus().isReduced());
+			EDTExecutor.instance().executeSync(new Runnable() {
+				public void run() {
+					try {
+						container.replace(new AlarmTableEntry(newAlarm));
+					} catch (Throwable t) {
+						throw new RuntimeException(t);
+					}
+					if (newAlarm.getStatus().isActive()) {
+						assertEquals(newAlarm.getAlarmId(), container.get(0, false).getAlarmId());
+					}
+				}
+			});
+		}
+		EDTExecutor.instance().executeSync(new Checker());
+		
+		// Remove some alarms
+		for (int t=1; t<alarms.size(); t+=5) {
+			container.remove(new AlarmTableEntry(alarms.get(t)));
+		}
+		container.removeOldest();
+		container.removeInactiveAlarms(AlarmGUIType.INACTIVE);
+		EDTExecutor.instance().executeSync(new Checker());
+		
+		container.clear();
+		EDTExecutor.instance().executeSync(new Checker());
+		assertEquals(0, mirror.rows.size());
+		container.setRowsListener(null);
+		container.setReducedRowsListener(null);
+	}
+	
 }
@@ -0,0 +1,410 @@
+/*
+ * ALMA - Atacama Large Millimiter Array (c) European Southern Observatory, 2013
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+package alma.acs.alarm.test.panel;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
+
+import alma.acsplugins.alarmsystem.gui.table.AlarmTableEntry;
+import alma.acsplugins.alarmsystem.gui.table.AlarmTableModel;
+import alma.acsplugins.alarmsystem.gui.table.AlarmsIndex;
+import alma.acsplugins.alarmsystem.gui.table.AlarmsReductionContainer;
+import alma.acsplugins.alarmsystem.gui.table.AlarmsUpdateQueue;
+import cern.laser.client.data.Status;
+
+/**
+ * A headless benchmark that replays an alarm storm into a sorted table of alarms,
+ * without alarm service and category client.
+ * <P>
+ * The storm is generated beforehand with a fixed seed, and replayed at the given rate:
+ * most of the changes come from a few flapping alarms, 1% of the alarms have priority 0.
+ * The alarms are queued in a {@link AlarmsUpdateQueue} and injected in a {@link AlarmsReductionContainer}
+ * every {@link AlarmTableModel#REFRESH_TIMEINTERVAL} seconds, as the <code>AlarmTableModel</code> does, either
+ * <UL>
+ * 	<LI>"slices": ordered by urgency, in slices of {@link AlarmTableModel#ALARMS_PER_SLICE} alarms each with
+ * 		the events of the changed rows, and immediately when an urgent alarm is queued, as the model does now, or
+ * 	<LI>"dataChanged": all in one go inside the EDT followed by <code>fireTableDataChanged()</code>, as the model did.
+ * </UL>
+ * The table is sorted by priority and time as the alarm panel does, and the rows visible at the top
+ * of the table are read after each update as the renderer would do.
+ * <P>
+ * For each case it prints the max time spent in the EDT by one update, the max delay of the EDT to
+ * run a task posted every 10ms (i.e. how long the GUI does not respond), and the max latency between the
+ * arrival of a priority 0 alarm and its injection in the table.
+ * <P>
+ * Usage: <code>AlarmTableStormBenchmark [alarms [changes [changes/s [slices|dataChanged]]]]</code>,
+ * with default 20000 alarms, 200000 changes at 20000 changes/s and both cases.
+ * <P>
+ * Only for manual runs, e.g. <code>acsStartJava alma.acs.alarm.test.panel.AlarmTableStormBenchmark 20000 400000 40000 slices</code>.
+ */
+public class AlarmTableStormBenchmark {
+
+	/**
+	 * The number of rows read after each update
+	 */
+	private static final int VISIBLE_ROWS = 50;
+
+	/**
+	 * The period of the task that checks the responsiveness of the EDT (msecs)
+	 */
+	private static final int PROBE_PERIOD = 10;
+
+	/**
+	 * The changes are queued in bunches, sleeping if ahead of the rate
+	 */
+	private static final int CHANGES_PER_PACING = 100;
+
+	/**
+	 * A status with timestamps and user properties
+	 */
+	private static class StormAlarmStatus extends TestAlarmStatus {
+		private final Timestamp timestamp;
+
+		public StormAlarmStatus(boolean active, Timestamp timestamp) {
+			super(active, false, false);
+			this.timestamp=timestamp;
+		}
+
+		@Override
+		public Timestamp getSourceTimestamp() {
+			return timestamp;
+		}
+
+		@Override
+		public Properties getUserProperties() {
+			return new Properties();
+		}
+	}
+
+	/**
+	 * An alarm of the storm that records when it has been queued
+	 */
+	private static class StormAlarm extends TestAlarm {
+		private final int priority;
+		private final Status status;
+		final long queuedAt;
+
+		public StormAlarm(String id, int priority, boolean active) {
+			super(id, false, false, active, false, false);
+			this.priority=priority;
+			this.queuedAt=System.nanoTime();
+			this.status=new StormAlarmStatus(active, new Timestamp(System.currentTimeMillis()));
+		}
+
+		@Override
+		public Integer getPriority() {
+			return Integer.valueOf(priority);
+		}
+
+		@Override
+		public Status getStatus() {
+			return status;
+		}
+	}
+
+	/**
+	 * The model of the table: the ID, the priority (inactive alarms after the active ones)
+	 * and the time of the alarms in the container
+	 */
+	private static class StormTableModel extends AbstractTableModel implements AlarmsIndex.IndexListener {
+		final AlarmsReductionContainer items = new AlarmsReductionContainer(AlarmTableModel.MAX_ALARMS);
+
+		@Override
+		public int getRowCount() {
+			return items.size(false);
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 3;
+		}
+
+		@Override
+		public Class<?> getColumnClass(int columnIndex) {
+			switch (columnIndex) {
+			case 0: return String.class;
+			case 1: return Integer.class;
+			default: return Long.class;
+			}
+		}
+
+		@Override
+		public Object getValueAt(int rowIndex, int columnIndex) {
+			AlarmTableEntry entry = items.get(rowIndex, false);
+			switch (columnIndex) {
+			case 0: return entry.getAlarmId();
+			case 1: return Integer.valueOf(entry.getPriority().intValue()+(entry.getStatus().isActive() ? 0 : 4));
+			default: return Long.valueOf(entry.getStatus().getSourceTimestamp().getTime());
+			}
+		}
+
+		public void rowsInserted(int first, int last) {
+			fireTableRowsInserted(first, last);
+		}
+
+		public void rowsDeleted(int first, int last) {
+			fireTableRowsDeleted(first, last);
+		}
+
+		public void rowsUpdated(int first, int last) {
+			fireTableRowsUpdated(first, last);
+		}
+
+		public void dataChanged() {
+			fireTableDataChanged();
+		}
+	}
+
+	/**
+	 * The recorded storm: for each change, the alarm and its new state
+	 */
+	private static class Storm {
+		final String[] ids;
+		final int[] priorities;
+		final int[] changedAlarms;
+		final boolean[] activeStates;
+
+		Storm(int numAlarms, int numChanges) {
+			Random rnd = new Random(20130101L);
+			ids = new String[numAlarms];
+			priorities = new int[numAlarms];
+			for (int t=0; t<numAlarms; t++) {
+				ids[t]="StormFF:StormFM"+(t/10)+":"+(t%10);
+				priorities[t] = (t%100==0) ? 0 : 1+rnd.nextInt(3);
+			}
+			int flapping = Math.max(1, numAlarms/10);
+			boolean[] states = new boolean[numAlarms];
+			changedAlarms = new int[numChanges];
+			activeStates = new boolean[numChanges];
+			for (int t=0; t<numChanges; t++) {
+				int alarm = (rnd.nextInt(100)<80) ? rnd.nextInt(flapping) : rnd.nextInt(numAlarms);
+				states[alarm]=!states[alarm];
+				changedAlarms[t]=alarm;
+				activeStates[t]=states[alarm];
+			}
+		}
+	}
+
+	/**
+	 * Replays the storm on a new table
+	 */
+	private static class Replay {
+		final Storm storm;
+		final boolean slices;
+		final StormTableModel model = new StormTableModel();
+		final AlarmsUpdateQueue queue;
+		final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		JTable table;
+		long maxEDTNanos;
+		long maxUrgentLatencyNanos;
+		long urgentAlarms;
+		long sink;
+
+		Replay(Storm storm, boolean slices) throws Exception {
+			this.storm=storm;
+			this.slices=slices;
+			if (slices) {
+				model.items.setRowsListener(model);
+				queue = new AlarmsUpdateQueue(new Runnable() {
+					public void run() {
+						executor.execute(updater);
+					}
+				});
+			} else {
+				queue = new AlarmsUpdateQueue(null);
+			}
+			SwingUtilities.invokeAndWait(new Runnable() {
+				public void run() {
+					table = new JTable(model);
+					TableRowSorter<StormTableModel> sorter = new TableRowSorter<StormTableModel>(model);
+					sorter.setSortsOnUpdates(true);
+					List<RowSorter.SortKey> sortKeys = new ArrayList<RowSorter.SortKey>();
+					sortKeys.add(new RowSorter.SortKey(1, SortOrder.ASCENDING));
+					sortKeys.add(new RowSorter.SortKey(2, SortOrder.DESCENDING));
+					sorter.setSortKeys(sortKeys);
+					table.setRowSorter(sorter);
+				}
+			});
+		}
+
+		/**
+		 * Injects the alarm in the container as the <code>AlarmTableModel</code> does (inside the EDT)
+		 */
+		void inject(AlarmTableEntry alarm) throws Exception {
+			if (model.items.contains(alarm.getAlarmId())) {
+				model.items.replace(alarm);
+			} else {
+				if (model.items.size(false)>=AlarmTableModel.MAX_ALARMS) {
+					model.items.removeOldest();
+				}
+				model.items.add(alarm);
+			}
+			if (AlarmsUpdateQueue.isUrgent(alarm)) {
+				urgentAlarms++;
+				long latency = System.nanoTime()-((StormAlarm)alarm.getEncapsulatedAlarm()).queuedAt;
+				maxUrgentLatencyNanos = Math.max(maxUrgentLatencyNanos, latency);
+			}
+		}
+
+		/**
+		 * What the renderer reads
+		 */
+		void readVisibleRows() {
+			int visible = Math.min(VISIBLE_ROWS, table.getRowCount());
+			for (int row=0; row<visible; row++) {
+				int modelRow = table.convertRowIndexToModel(row);
+				sink += model.getValueAt(modelRow, 0).hashCode();
+				sink += ((Integer)model.getValueAt(modelRow, 1)).intValue();
+			}
+		}
+
+		/**
+		 * Runs an update inside the EDT, measuring its duration
+		 */
+		void runInEDT(final AlarmTableEntry[] alarms, final int first, final int last) throws Exception {
+			SwingUtilities.invokeAndWait(new Runnable() {
+				public void run() {
+					long start = System.nanoTime();
+					try {
+						for (int t=first; t<last; t++) {
+							inject(alarms[t]);
+						}
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+					if (!slices) {
+						model.fireTableDataChanged();
+					}
+					readVisibleRows();
+					maxEDTNanos = Math.max(maxEDTNanos, System.nanoTime()-start);
+				}
+			});
+		}
+
+		/**
+		 * The update of the table, as done by <code>AlarmTableModel.run()</code>
+		 */
+		final Runnable updater = new Runnable() {
+			public void run() {
+				try {
+					if (queue.isEmpty()) {
+						return;
+					}
+					AlarmTableEntry[] alarms = queue.drain();
+					if (!slices) {
+						runInEDT(alarms, 0, alarms.length);
+						return;
+					}
+					for (int from=0; from<alarms.length; from+=AlarmTableModel.ALARMS_PER_SLICE) {
+						if (from>0 && queue.hasUrgentAlarms()) {
+							queue.putBack(alarms, from);
+							return;
+						}
+						runInEDT(alarms, from, Math.min(from+AlarmTableModel.ALARMS_PER_SLICE, alarms.length));
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+
+		void run(int changesPerSecond) throws Exception {
+			final AtomicBoolean running = new AtomicBoolean(true);
+			final long[] maxEDTDelayNanos = new long[1];
+			Thread probe = new Thread("EDTProbe") {
+				public void run() {
+					try {
+						while (running.get()) {
+							long start = System.nanoTime();
+							SwingUtilities.invokeAndWait(new Runnable() {
+								public void run() {}
+							});
+							maxEDTDelayNanos[0] = Math.max(maxEDTDelayNanos[0], System.nanoTime()-start);
+							Thread.sleep(PROBE_PERIOD);
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			};
+			probe.start();
+			executor.scheduleWithFixedDelay(updater, 1, AlarmTableModel.REFRESH_TIMEINTERVAL, TimeUnit.SECONDS);
+
+			double changesPerMs = changesPerSecond/1000.0;
+			long start = System.currentTimeMillis();
+			for (int t=0; t<storm.changedAlarms.length; t++) {
+				int alarm = storm.changedAlarms[t];
+				queue.put(new AlarmTableEntry(new StormAlarm(storm.ids[alarm], storm.priorities[alarm], storm.activeStates[t])));
+				if (changesPerMs>0 && t%CHANGES_PER_PACING==0) {
+					long ahead = (long)(t/changesPerMs)-(System.currentTimeMillis()-start);
+					if (ahead>0) {
+						Thread.sleep(ahead);
+					}
+				}
+			}
+			// Flush what is left in the queue
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+			updater.run();
+			double seconds = (System.currentTimeMillis()-start)/1000.0;
+			running.set(false);
+			probe.join();
+
+			System.out.println(String.format("%-11s %d changes in %.1fs (%.0f changes/s): max %.1f ms in the EDT per update, "+
+					"max EDT delay %.1f ms, max latency of %d priority 0 alarms %.1f ms, %d rows",
+					slices ? "slices" : "dataChanged", storm.changedAlarms.length, seconds, storm.changedAlarms.length/seconds,
+					maxEDTNanos/1e6, maxEDTDelayNanos[0]/1e6, urgentAlarms, maxUrgentLatencyNanos/1e6, table.getRowCount()));
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		int numAlarms = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+		int numChanges = (args.length > 1 ? Integer.parseInt(args[1]) : 200000);
+		int changesPerSecond = (args.length > 2 ? Integer.parseInt(args[2]) : 20000);
+		String mode = (args.length > 3 ? args[3] : null);
+		Storm storm = new Storm(numAlarms, numChanges);
+		long sink=0;
+		if (mode==null || mode.equals("slices")) {
+			Replay replay = new Replay(storm, true);
+			replay.run(changesPerSecond);
+			sink+=replay.sink;
+		}
+		if (mode==null || mode.equals("dataChanged")) {
+			Replay replay = new Replay(storm, false);
+			replay.run(changesPerSecond);
+			sink+=replay.sink;
+		}
+		System.out.println("("+sink+")");
+		System.exit(0);
+	}
+}
@@ -21,8 +21,11 @@ package alma.acs.logging.archive.zoom;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.List;
 
 import com.cosylab.logging.engine.Filter;
 import com.cosylab.logging.engine.MinMaxFilter;
@@ -41,12 +44,117 @@ import alma.acs.logging.engine.io.IOPorgressListener;
  * <P>
  * The class read a file with the help of {@link IOHelper} and adds
  * a filter for the start and end dates and another one for the levels.
+ * <P>
+ * If the file has an index (see {@link LogFileIndex}), only the blocks of logs
+ * that can match the time and level intervals are read and parsed.
  * 
  * @author acaproni
  *
  */
 public class FileHelper implements ACSRemoteErrorListener {
 	
+	/**
+	 * An <code>InputStream</code> that returns only the bytes of the passed blocks
+	 * of a file of logs.
+	 * <P>
+	 * The bytes between the blocks are skipped: for plain files this results in 
+	 * a seek while for GZIP files the skipped bytes are uncompressed but not parsed.
+	 * 
+	 * @author acaproni
+	 *
+	 */
+	private static class BlocksInputStream extends InputStream {
+		
+		/**
+		 * The stream of the whole (uncompressed) file
+		 */
+		private final InputStream in;
+		
+		/**
+		 * The blocks to read, ordered by offset
+		 */
+		private final Iterator<LogFileIndex.Block> blocks;
+		
+		/**
+		 * The position in the (uncompressed) file
+		 */
+		private long pos=0;
+		
+		/**
+		 * The end of the block in progress
+		 */
+		private long blockEnd=0;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param in The stream of the whole file
+		 * @param blocks The blocks to read, ordered by offset
+		 */
+		public BlocksInputStream(InputStream in, List<LogFileIndex.Block> blocks) {
+			this.in=in;
+			this.blocks=blocks.iterator();
+		}
+		
+		/**
+		 * Move to the next block if the current one has been fully read
+		 * 
+		 * @return <code>false</code> if there are no more blocks to read
+		 */
+		private boolean nextBlock() throws IOException {
+			while (pos>=blockEnd) {
+				if (!blocks.hasNext()) {
+					return false;
+				}
+				LogFileIndex.Block block = blocks.next();
+				while (pos<block.startOffset) {
+					long skipped=in.skip(block.startOffset-pos);
+					if (skipped<=0) {
+						if (in.read()==-1) {
+							return false;
+						}
+						skipped=1;
+					}
+					pos+=skipped;
+				}
+				blockEnd=block.endOffset;
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!nextBlock()) {
+				return -1;
+			}
+			int ret=in.read();
+			if (ret!=-1) {
+				pos++;
+			}
+			return ret;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len==0) {
+				return 0;
+			}
+			if (!nextBlock()) {
+				return -1;
+			}
+			int ret=in.read(b, off, (int)Math.min(len, blockEnd-pos));
+			if (ret>0) {
+				pos+=ret;
+			}
+			return ret;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+	
 	/**
 	 * The min log level to read from the file (inclusive)
 	 */
@@ -159,7 +267,7 @@ public class FileHelper implements ACSRemoteErrorListener {
 	 * @return <code>false</code> in case of errors loading logs;
 	 * 			<code>true</code> otherwise  
 	 * 
-	 *  @throws ZoomException In case of errors creating filters
+	 *  @throws ZoomException In case of errors creating filters or opening the file
 	 *  @throws FileNotFoundException If the file was not found
 	 */
 	public boolean loadLogs(
@@ -170,17 +278,53 @@ public class FileHelper implements ACSRemoteErrorListener {
 		ioHelper.setFilters(filters);
 		errorParsingLogs=false;
 		externalErrorListener=errorListener;
-		FileReader fileReader = new FileReader(inputFile);
-		BufferedReader reader = new BufferedReader(fileReader);
+		BufferedReader reader = openReader();
 		try {
 			ioHelper.loadLogs(reader, logListener, null, this, ioListener);
 		} catch (Throwable t) {
 			throw new ZoomException("Error loading logs from file",t);
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				// The logs have been read: nothing to do
+			}
 		}
 		
 		return !errorParsingLogs;
 	}
 	
+	/**
+	 * Open the reader of the logs of the file.
+	 * <P>
+	 * If the index of the file is available (or can be built) then the reader
+	 * returns only the blocks of logs that can match the time and level intervals;
+	 * otherwise the reader returns the whole (uncompressed) file.
+	 * 
+	 * @return The reader to get logs from
+	 * @throws FileNotFoundException If the file was not found
+	 * @throws ZoomException In case of error opening the file
+	 */
+	private BufferedReader openReader() throws FileNotFoundException, ZoomException {
+		try {
+			LogFileIndex index = LogFileIndex.getIndex(inputFile);
+			List<LogFileIndex.Block> blocks = index.selectBlocks(startTime, endTime, minLogLevel, maxLogLevel);
+			InputStream inStream = new BlocksInputStream(LogFileIndex.openStream(inputFile), blocks);
+			return new BufferedReader(new InputStreamReader(inStream));
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			System.out.println("Index of "+inputFile.getAbsolutePath()+" unusable ("+e.getMessage()+"): reading the whole file");
+		}
+		try {
+			return new BufferedReader(new InputStreamReader(LogFileIndex.openStream(inputFile)));
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new ZoomException("Error opening "+inputFile.getAbsolutePath(),e);
+		}
+	}
+	
 	/**
 	 * Create the filters for loading logs;:
 	 * <UL>
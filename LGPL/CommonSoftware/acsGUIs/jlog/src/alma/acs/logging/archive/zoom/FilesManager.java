@@ -48,6 +48,12 @@ import com.cosylab.logging.engine.log.LogTypeHelper;
  * 
  * 				<BR>
  * 				File names have the following format: <code>logOutput&lt;StartDate&gt;--&lt;EndDate&gt;.xml</code>
+ * 				(or <code>.xml.gz</code> for compressed files)
+ * 
+ * <P>
+ * The logs of each file are read with the help of its index (see {@link LogFileIndex}) 
+ * built the first time the file is accessed: only the blocks of logs 
+ * that can be in the requested time and level intervals are read and parsed.
  * 
  * <P>
  * ARCHIVE does not ensure that the logs in a file are only those having the timestamp 
@@ -161,14 +167,19 @@ public class FilesManager {
 			if (name.indexOf(header)==-1) {
 				return false;
 			}
-			if (!name.toLowerCase().endsWith(".xml")) {
+			int extLength;
+			if (name.toLowerCase().endsWith(".xml")) {
+				extLength=4;
+			} else if (name.toLowerCase().endsWith(".xml.gz")) {
+				extLength=7;
+			} else {
 				return false;
 			}
-			// Remove the header and the .xml
+			// Remove the header and the .xml (or .xml.gz)
 			//
 			// For example if name was  logOutput2008-09-19T11:21:49.670--2008-09-19T11:21:50.115.xml
 			// The following substring returns 2008-09-19T11:21:49.670--2008-09-19T11:21:50.115
-			name=name.substring(header.length(),name.length()-4);
+			name=name.substring(header.length(),name.length()-extLength);
 			
 			// Get the start and end dates
 			String[] dates=name.split("--");
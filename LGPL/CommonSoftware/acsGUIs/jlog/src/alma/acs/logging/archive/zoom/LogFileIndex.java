@@ -0,0 +1,565 @@
+/*
+* ALMA - Atacama Large Millimiter Array
+* (c) European Southern Observatory, 2013
+*
+* This library is free software; you can redistribute it and/or
+* modify it under the terms of the GNU Lesser General Public
+* License as published by the Free Software Foundation; either
+* version 2.1 of the License, or (at your option) any later version.
+*
+* This library is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this library; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+*/
+package alma.acs.logging.archive.zoom;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import alma.acs.logging.engine.io.LogStringBuffer;
+import alma.acs.util.IsoDateFormat;
+
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+/**
+ * <code>LogFileIndex</code> is the sidecar index of a file of logs.
+ * <P>
+ * The logs of a file are grouped in blocks of contiguous logs.
+ * For each block the index stores
+ * <UL>
+ * 	<LI>the offset of the first and the last byte of the block in the file
+ * 		(in the uncompressed stream for GZIP files)
+ * 	<LI>the min and max timestamps of the logs of the block
+ * 	<LI>the log levels of the logs of the block (bit mask of the ordinals of {@link LogTypeHelper})
+ * </UL>
+ * While zooming, only the blocks that can contain logs in the requested time
+ * and level intervals are read and parsed.
+ * <P>
+ * The index is saved in a file in the same folder of the file of logs, having
+ * the same name plus the {@link #INDEX_FILE_EXTENSION} extension.
+ * It is built by scanning the file of logs the first time the file is accessed 
+ * by the zoom engine (see {@link #getIndex(File)}); the writers of the files 
+ * of logs do not produce the index.
+ * The index stores the length and the modification time of the file of logs
+ * so that it is rebuilt if the file of logs changes.
+ * <P>
+ * Objects of this class are immutable.
+ *
+ */
+public class LogFileIndex {
+
+	/**
+	 * A block of contiguous logs in the file.
+	 *
+	 */
+	public static class Block {
+
+		/**
+		 * The offset of the first byte of the first log of the block
+		 */
+		public final long startOffset;
+
+		/**
+		 * The offset of the byte following the last log of the block
+		 */
+		public final long endOffset;
+
+		/**
+		 * The min timestamp of the logs in the block
+		 */
+		public final long minTime;
+
+		/**
+		 * The max timestamp of the logs in the block
+		 */
+		public final long maxTime;
+
+		/**
+		 * The bit mask of the levels of the logs in the block
+		 * i.e. the bit <code>1&lt;&lt;LogTypeHelper.ordinal()</code>
+		 * is set if the block contains at least one log of such a level
+		 */
+		public final int levels;
+
+		/**
+		 * The number of logs in the block
+		 */
+		public final int numOfLogs;
+
+		/**
+		 * Constructor
+		 *
+		 * @param startOffset The offset of the first byte of the block
+		 * @param endOffset The offset of the byte following the block
+		 * @param minTime The min timestamp of the logs in the block
+		 * @param maxTime The max timestamp of the logs in the block
+		 * @param levels The bit mask of the levels of the logs in the block
+		 * @param numOfLogs The number of logs in the block
+		 */
+		public Block(long startOffset, long endOffset, long minTime, long maxTime, int levels, int numOfLogs) {
+			if (startOffset<0 || endOffset<startOffset) {
+				throw new IllegalArgumentException("Invalid offsets ["+startOffset+", "+endOffset+"]");
+			}
+			this.startOffset = startOffset;
+			this.endOffset = endOffset;
+			this.minTime = minTime;
+			this.maxTime = maxTime;
+			this.levels = levels;
+			this.numOfLogs = numOfLogs;
+		}
+
+		/**
+		 * Check if the block can contain logs in the passed time and level intervals
+		 *
+		 * @param start The start time (inclusive)
+		 * @param end The end time (inclusive)
+		 * @param levelsMask The bit mask of the requested levels
+		 * @return <code>true</code> if the block could contain logs in the given intervals
+		 */
+		public boolean matches(long start, long end, int levelsMask) {
+			return maxTime>=start && minTime<=end && (levels & levelsMask)!=0;
+		}
+	}
+
+	/**
+	 * <code>Builder</code> builds the index of a file while its logs are read
+	 * (see {@link LogFileIndex#build(File, int, long)}).
+	 * <P>
+	 * The logs must be passed to {@link #addLog(long, long, Long, LogTypeHelper)}
+	 * in the same order they are in the file.
+	 *
+	 */
+	public static class Builder {
+
+		/**
+		 * The max number of logs in a block
+		 */
+		private final int maxLogsPerBlock;
+
+		/**
+		 * The max number of bytes in a block.
+		 * <P>
+		 * A block can be longer if it contains only one log.
+		 */
+		private final long maxBytesPerBlock;
+
+		/**
+		 * The blocks built so far
+		 */
+		private final List<Block> blocks = new ArrayList<Block>();
+
+		// The block in progress
+		private long startOffset=-1;
+		private long endOffset;
+		private long minTime;
+		private long maxTime;
+		private int levels;
+		private int numOfLogs;
+
+		/**
+		 * Constructor
+		 *
+		 * @param maxLogsPerBlock The max number of logs in a block
+		 * @param maxBytesPerBlock The max number of bytes in a block
+		 */
+		public Builder(int maxLogsPerBlock, long maxBytesPerBlock) {
+			if (maxLogsPerBlock<=0 || maxBytesPerBlock<=0) {
+				throw new IllegalArgumentException("Invalid block size ["+maxLogsPerBlock+", "+maxBytesPerBlock+"]");
+			}
+			this.maxLogsPerBlock=maxLogsPerBlock;
+			this.maxBytesPerBlock=maxBytesPerBlock;
+		}
+
+		/**
+		 * Constructor with the default block sizes
+		 */
+		public Builder() {
+			this(DEFAULT_LOGS_PER_BLOCK,DEFAULT_BYTES_PER_BLOCK);
+		}
+
+		/**
+		 * Add a log to the index.
+		 *
+		 * @param offset The offset of the first byte of the log in the file
+		 * @param length The length of the log in bytes
+		 * @param time The timestamp of the log;
+		 * 				if unknown the whole time range is used
+		 * @param level The level of the log;
+		 * 				if <code>null</code> all the levels are used
+		 */
+		public void addLog(long offset, long length, Long time, LogTypeHelper level) {
+			if (offset<0 || length<0) {
+				throw new IllegalArgumentException("Invalid position ["+offset+", "+length+"]");
+			}
+			if (startOffset!=-1 &&
+					(numOfLogs>=maxLogsPerBlock || offset+length-startOffset>maxBytesPerBlock)) {
+				closeBlock();
+			}
+			long minT = (time==null)?0L:time.longValue();
+			long maxT = (time==null)?Long.MAX_VALUE:time.longValue();
+			int lvl= (level==null)?ALL_LEVELS:1<<level.ordinal();
+			if (startOffset==-1) {
+				startOffset=offset;
+				minTime=minT;
+				maxTime=maxT;
+				levels=0;
+				numOfLogs=0;
+			}
+			minTime=Math.min(minTime, minT);
+			maxTime=Math.max(maxTime, maxT);
+			levels|=lvl;
+			numOfLogs++;
+			endOffset=offset+length;
+		}
+
+		/**
+		 * Close the block in progress, if any
+		 */
+		private void closeBlock() {
+			if (startOffset==-1) {
+				return;
+			}
+			blocks.add(new Block(startOffset, endOffset, minTime, maxTime, levels, numOfLogs));
+			startOffset=-1;
+		}
+
+		/**
+		 * Build the index.
+		 *
+		 * @param fileLength The length of the indexed file
+		 * @param lastModified The time of the last modification of the indexed file
+		 * @return The index of the file
+		 */
+		public LogFileIndex build(long fileLength, long lastModified) {
+			closeBlock();
+			return new LogFileIndex(fileLength, lastModified, blocks);
+		}
+	}
+
+	/**
+	 * The extension of the files of index
+	 */
+	public static final String INDEX_FILE_EXTENSION=".idx";
+
+	/**
+	 * The default max number of logs in a block
+	 */
+	public static final int DEFAULT_LOGS_PER_BLOCK=256;
+
+	/**
+	 * The default max number of bytes in a block
+	 */
+	public static final long DEFAULT_BYTES_PER_BLOCK=256*1024;
+
+	/**
+	 * The bit mask with all the levels set
+	 */
+	public static final int ALL_LEVELS=(1<<LogTypeHelper.values().length)-1;
+
+	/**
+	 * The magic number at the beginning of each file of index
+	 */
+	private static final int MAGIC=0x4A4C4958; // JLIX
+
+	/**
+	 * The version of the format of the file of index
+	 */
+	private static final int VERSION=1;
+
+	/**
+	 * The length of the indexed file when the index has been built
+	 */
+	public final long fileLength;
+
+	/**
+	 * The modification time of the indexed file when the index has been built
+	 */
+	public final long lastModified;
+
+	/**
+	 * The blocks, ordered by offset
+	 */
+	private final List<Block> blocks;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fileLength The length of the indexed file
+	 * @param lastModified The modification time of the indexed file
+	 * @param blocks The blocks ordered by offset
+	 */
+	private LogFileIndex(long fileLength, long lastModified, List<Block> blocks) {
+		this.fileLength=fileLength;
+		this.lastModified=lastModified;
+		this.blocks=Collections.unmodifiableList(new ArrayList<Block>(blocks));
+	}
+
+	/**
+	 * @return The blocks of the index, ordered by offset
+	 */
+	public List<Block> getBlocks() {
+		return blocks;
+	}
+
+	/**
+	 * Return the blocks that can contain logs in the given time and level intervals.
+	 *
+	 * @param start The start time (inclusive)
+	 * @param end The end time (inclusive)
+	 * @param minLevel The min level (inclusive)
+	 * @param maxLevel The max level (inclusive)
+	 * @return The blocks to read, ordered by offset
+	 */
+	public List<Block> selectBlocks(long start, long end, LogTypeHelper minLevel, LogTypeHelper maxLevel) {
+		if (minLevel==null || maxLevel==null || minLevel.ordinal()>maxLevel.ordinal()) {
+			throw new IllegalArgumentException("Invalid level range ["+minLevel+", "+maxLevel+"]");
+		}
+		int mask=0;
+		for (int t=minLevel.ordinal(); t<=maxLevel.ordinal(); t++) {
+			mask|=1<<t;
+		}
+		List<Block> ret = new ArrayList<Block>();
+		for (Block block: blocks) {
+			if (block.matches(start, end, mask)) {
+				ret.add(block);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Check if this index is still valid for the passed file
+	 *
+	 * @param logFile The file of logs
+	 * @return <code>true</code> if the file has not been changed after building the index
+	 */
+	public boolean isValidFor(File logFile) {
+		return logFile.length()==fileLength && logFile.lastModified()==lastModified;
+	}
+
+	/**
+	 * Return the file of index of the passed file of logs
+	 *
+	 * @param logFile The file of logs
+	 * @return The file of index
+	 */
+	public static File getIndexFile(File logFile) {
+		return new File(logFile.getParentFile(),logFile.getName()+INDEX_FILE_EXTENSION);
+	}
+
+	/**
+	 * Return the index of the passed file of logs.
+	 * <P>
+	 * The index is read from the file of index if it exists and is still valid;
+	 * otherwise it is built by scanning the file of logs and saved for the next access.
+	 * Failing to save the index (for example if the folder is read-only) is not an error.
+	 *
+	 * @param logFile The file of logs
+	 * @return The index of the file
+	 * @throws IOException In case of error reading the file of logs
+	 */
+	public static LogFileIndex getIndex(File logFile) throws IOException {
+		if (logFile==null) {
+			throw new IllegalArgumentException("The file can't be null");
+		}
+		File indexFile = getIndexFile(logFile);
+		if (indexFile.canRead()) {
+			try {
+				LogFileIndex index = load(indexFile);
+				if (index.isValidFor(logFile)) {
+					return index;
+				}
+			} catch (IOException e) {
+				// Corrupted or unsupported: rebuild
+			}
+		}
+		LogFileIndex index = build(logFile, DEFAULT_LOGS_PER_BLOCK, DEFAULT_BYTES_PER_BLOCK);
+		try {
+			index.save(indexFile);
+		} catch (IOException e) {
+			indexFile.delete();
+		}
+		return index;
+	}
+
+	/**
+	 * Build the index by scanning the passed file of logs.
+	 * <P>
+	 * Only the timestamp and the level of each log are extracted: logs are not parsed.
+	 *
+	 * @param logFile The file of logs (plain XML or GZIP if the name ends with .gz)
+	 * @param maxLogsPerBlock The max number of logs in a block
+	 * @param maxBytesPerBlock The max number of bytes in a block
+	 * @return The index of the file
+	 * @throws IOException In case of error reading the file
+	 */
+	public static LogFileIndex build(File logFile, int maxLogsPerBlock, long maxBytesPerBlock) throws IOException {
+		long length = logFile.length();
+		long lastModified = logFile.lastModified();
+		Builder builder = new Builder(maxLogsPerBlock, maxBytesPerBlock);
+		IsoDateFormat dateFormat = new IsoDateFormat();
+		LogStringBuffer buffer = new LogStringBuffer();
+		StringBuilder xmlStr = new StringBuilder();
+		// ISO-8859-1 maps each byte in one char so that the position of a char
+		// is also the offset of the byte in the file
+		BufferedReader reader = new BufferedReader(new InputStreamReader(openStream(logFile),"ISO-8859-1"));
+		try {
+			char[] buf = new char[16384];
+			long pos=0;
+			int read;
+			while ((read=reader.read(buf,0,buf.length))>0) {
+				for (int t=0; t<read; t++) {
+					buffer.append(buf[t], xmlStr);
+					pos++;
+					if (xmlStr.length()>0) {
+						builder.addLog(pos-xmlStr.length(), xmlStr.length(), getTimestamp(xmlStr,dateFormat), getLevel(xmlStr));
+						xmlStr.setLength(0);
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return builder.build(length, lastModified);
+	}
+
+	/**
+	 * Open the stream to read the passed file uncompressing it if its name
+	 * ends with <I>.gz</I>
+	 *
+	 * @param logFile The file to read
+	 * @return The stream to read the (uncompressed) content of the file
+	 * @throws IOException In case of error opening the file
+	 */
+	static InputStream openStream(File logFile) throws IOException {
+		InputStream inStream = new BufferedInputStream(new FileInputStream(logFile));
+		if (logFile.getName().toLowerCase().endsWith(".gz")) {
+			return new GZIPInputStream(inStream);
+		}
+		return inStream;
+	}
+
+	/**
+	 * Get the timestamp of the log without parsing the XML
+	 *
+	 * @param xml The XML of the log
+	 * @param dateFormat The format to parse the timestamp
+	 * @return The timestamp or <code>null</code> if the timestamp is not found or invalid
+	 */
+	private static Long getTimestamp(CharSequence xml, IsoDateFormat dateFormat) {
+		String tag="TimeStamp=\"";
+		String str = xml.toString();
+		int pos = str.indexOf(tag);
+		int tagEnd=str.indexOf('>');
+		if (pos==-1 || (tagEnd!=-1 && pos>tagEnd)) {
+			return null;
+		}
+		int end = str.indexOf('"',pos+tag.length());
+		if (end==-1) {
+			return null;
+		}
+		try {
+			Date date=dateFormat.parse(str.substring(pos+tag.length(), end));
+			return Long.valueOf(date.getTime());
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the level of the log from its XML tag
+	 *
+	 * @param xml The XML of the log
+	 * @return The level or <code>null</code> if the tag is not recognized
+	 */
+	private static LogTypeHelper getLevel(CharSequence xml) {
+		int end=1;
+		while (end<xml.length() && Character.isLetter(xml.charAt(end))) {
+			end++;
+		}
+		String tag = xml.subSequence(1, end).toString();
+		for (LogTypeHelper type: LogTypeHelper.values()) {
+			if (type.logEntryType.equals(tag)) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Save the index in the passed file
+	 *
+	 * @param indexFile The file to write the index into
+	 * @throws IOException In case of error writing the file
+	 */
+	public void save(File indexFile) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(fileLength);
+			out.writeLong(lastModified);
+			out.writeInt(blocks.size());
+			for (Block block: blocks) {
+				out.writeLong(block.startOffset);
+				out.writeLong(block.endOffset);
+				out.writeLong(block.minTime);
+				out.writeLong(block.maxTime);
+				out.writeInt(block.levels);
+				out.writeInt(block.numOfLogs);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Load the index from the passed file
+	 *
+	 * @param indexFile The file of index
+	 * @return The index read from the file
+	 * @throws IOException In case of error reading the file or if the file is not a valid index
+	 */
+	public static LogFileIndex load(File indexFile) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			if (in.readInt()!=MAGIC || in.readInt()!=VERSION) {
+				throw new IOException(indexFile.getAbsolutePath()+" is not a valid index");
+			}
+			long length=in.readLong();
+			long lastModified=in.readLong();
+			int size=in.readInt();
+			if (size<0) {
+				throw new IOException("Invalid number of blocks in "+indexFile.getAbsolutePath());
+			}
+			List<Block> blocks = new ArrayList<Block>(size);
+			for (int t=0; t<size; t++) {
+				blocks.add(new Block(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readInt(), in.readInt()));
+			}
+			return new LogFileIndex(length, lastModified, blocks);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid block in "+indexFile.getAbsolutePath(),e);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -27,7 +27,6 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Vector;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import javax.swing.JOptionPane;
@@ -65,6 +64,14 @@ import com.cosylab.logging.engine.log.LogField;
  * To reduce the overload refreshing the content of the table when a lot of logs
  * have been added or removed, the refresh is triggered only after a certain amount
  * of time by a dedicated thread (see {@link #run()}).
+ * The thread adds the logs to the cache outside of the EDT, then inserts their keys
+ * in the table in slices of at most {@link #MAX_ROWS_PER_UPDATE} rows.
+ * The table is notified of the inserted and deleted ranges of rows only 
+ * (never with <code>fireTableDataChanged()</code>, except when it is cleared),
+ * so that the sorter of the table filters and sorts only the rows that changed.
+ * <P>
+ * The number of logs in the table can be bounded by number (see {@link #setMaxLog(int)}) and
+ * by time frame (see {@link #setTimeFrame(long)}): in both cases the oldest logs are removed.
  * <P>
  * When a log is deleted, it key is immediately removed from the List of logs ({@link #rows} 
  * but the key is still in the cache ({@link #allLogs}). A dedicated thread, {@link KeysDeleter}, 
@@ -202,6 +209,15 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 	 */
 	private static final int UPDATE_INTERVAL=2000;
 	
+	/**
+	 * The max number of rows inserted in the table in one go inside the EDT.
+	 * <P>
+	 * If more logs are waiting, they are inserted in several slices to keep the GUI responsive;
+	 * the table updater is also woken up before the {@link #UPDATE_INTERVAL} when so many 
+	 * logs are waiting.
+	 */
+	private static final int MAX_ROWS_PER_UPDATE=10000;
+	
 	/**
 	 * The interval of time to remove the keys
 	 * from the cache (msec)
@@ -209,13 +225,29 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 	private static final int KEY_DELETION_INTERVAL = 60000; 
 	
 	/**
-	 * The vector of logs to add in the rows.
+	 * The list of logs to add in the rows.
 	 * <P>
-	 * Newly arrived logs are appended to this vector and flushed into 
-	 * <code>rows</code> by the <code>TableUpdater</code> thread.
+	 * Newly arrived logs are appended to this list and flushed into 
+	 * <code>rows</code> by the <code>TableUpdater</code> thread that
+	 * replaces the list with an empty one.
 	 * <P>Newest logs are in the tail; oldest logs in the head.
+	 * <P>
+	 * The list is guarded by {@link #rowsToAddLock}.
+	 */
+	private List<ILogEntry> rowsToAdd = new ArrayList<ILogEntry>();
+	
+	/**
+	 * The lock for {@link #rowsToAdd}, also used to wake up the table updater thread.
+	 */
+	private final Object rowsToAddLock = new Object();
+	
+	/**
+	 * Incremented (inside the EDT) every time the table is cleared.
+	 * <P>
+	 * The logs are added to the cache out of the EDT: if the table has been
+	 * cleared in the meantime, their keys must not be inserted in the table.
 	 */
-	private final List<ILogEntry> rowsToAdd = Collections.synchronizedList(new Vector<ILogEntry>());
+	private volatile int clearCount=0;
 		
 	/**
 	 * The processor to reduce the logs
@@ -286,6 +318,13 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 	 */
 	private volatile int maxLog=0;
 	
+	/**
+	 * The time frame of the logs to keep in the table (msec).
+	 * <P>
+	 * A value of 0 means unlimited.
+	 */
+	private volatile long timeFrame=0;
+	
 	/**
 	 * Constructor
 	 */
@@ -428,7 +467,10 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 		// Remove the logs waiting to be inserted
 		EDTExecutor.instance().execute(new Runnable() {
 			public void run() {
-				rowsToAdd.clear();
+				clearCount++;
+				synchronized (rowsToAddLock) {
+					rowsToAdd.clear();
+				}
 				rows.clear();
 				keysDeleter.invalidate();
 				try {
@@ -611,63 +653,98 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 			throw new IllegalArgumentException("Can't append a null log to the table model");
 		}
 		if (!closed) {
-			rowsToAdd.add(log);
+			synchronized (rowsToAddLock) {
+				rowsToAdd.add(log);
+				if (rowsToAdd.size()==MAX_ROWS_PER_UPDATE) {
+					// Do not wait the UPDATE_INTERVAL to flush so many logs
+					rowsToAddLock.notify();
+				}
+			}
 		}
 	}
 	
 	/**
-	 * Flush the logs from the temporary vector into the table.
+	 * Flush the logs from the temporary list into the table.
 	 * <P>
-	 * New logs are appended in the temporary vector <code>rowsToAdd</code> to limit 
+	 * New logs are appended in the temporary list <code>rowsToAdd</code> to limit 
 	 * the frequency of updating the table model.
-	 * This method flushes the logs from the temporary vector into the model vector 
+	 * This method flushes the logs from the temporary list into the model 
 	 * (<code>rows</code>).
-	 * 
-	 * @return <code>true</code> if at least one log has been added to the model
+	 * <P>
+	 * The logs are reduced and added to the cache in this thread; only the insertion of their keys 
+	 * in <code>rows</code> (and the removal of the exceeding logs) is done inside the EDT, 
+	 * in slices of at most {@link #MAX_ROWS_PER_UPDATE} rows.
 	 */
 	private void flushLogs() {
 		
-		// rowsToAdd is reduced then copied into temp:
+		// rowsToAdd is replaced by an empty list:
 		// it is possible to append logs again without waiting for the flush
 		// i.e. modification of the model inside EDT do not block rowsToAdd
 		final List<ILogEntry> temp;
-		synchronized (rowsToAdd) {
+		synchronized (rowsToAddLock) {
 			if (rowsToAdd.isEmpty()) {
 				return;
 			}
-			// try to apply reduction rules only in OPERATOR mode
+			temp=rowsToAdd;
+			rowsToAdd=new ArrayList<ILogEntry>();
+		}
+		final int clearCountBeforeAdding=clearCount;
+		// try to apply reduction rules only in OPERATOR mode
+		try {
+			if (loggingClient.getEngine().getAudience().getInfo()==AudienceInfo.OPERATOR) {
+				logProcessor.reduce(temp);
+			}
+		} catch (Throwable t) {
+			System.err.println("Exception caught ("+t.getMessage()+")while reducing logs: reduction disabled this time");
+			t.printStackTrace(System.err);
+		}
+		
+		// Add the reduced logs into the cache and then their keys into the model (from inside the EDT)
+		int[] keys = new int[Math.min(temp.size(), MAX_ROWS_PER_UPDATE)];
+		int numOfKeys=0;
+		for (int t=temp.size()-1; t>=0 && !closed; t--) {
 			try {
-				if (loggingClient.getEngine().getAudience().getInfo()==AudienceInfo.OPERATOR) {
-					logProcessor.reduce(rowsToAdd);
-				}
-			} catch (Throwable t) {
-				System.err.println("Exception caught ("+t.getMessage()+")while reducing logs: reduction disabled this time");
-				t.printStackTrace(System.err);
+				keys[numOfKeys++]=allLogs.add(temp.get(t));
+			} catch (LogCacheException lce) {
+				System.err.println("Exception caught while inserting a new log entry in cache:");
+				System.err.println(lce.getLocalizedMessage());
+				lce.printStackTrace(System.err);
+				numOfKeys--;
+				continue;
+			}
+			if (numOfKeys==keys.length || t==0) {
+				insertRows(keys, numOfKeys, clearCountBeforeAdding);
+				numOfKeys=0;
 			}
-			temp=new Vector<ILogEntry>(rowsToAdd);
-			rowsToAdd.clear();
 		}
-			
-		// Add the reduced logs into the model (from inside the EDT)
+		if (numOfKeys>0) {
+			insertRows(keys, numOfKeys, clearCountBeforeAdding);
+		}
+	}
+	
+	/**
+	 * Insert the passed keys in the model and removes the exceeding logs,
+	 * notifying the table of the inserted and deleted rows.
+	 * <P>
+	 * The keys are inserted from inside the EDT, this method waits until they are.
+	 * 
+	 * @param keys The keys of the logs to insert
+	 * @param numOfKeys The number of keys to insert from <code>keys</code>
+	 * @param clearCountBeforeAdding The {@link #clearCount} before the logs have been added to the cache
+	 */
+	private void insertRows(final int[] keys, final int numOfKeys, final int clearCountBeforeAdding) {
 		try {
 			EDTExecutor.instance().executeSync(new Runnable() {
 				@Override
 				public void run() {
-					for (int t=temp.size()-1; t>=0; t--) {
-						ILogEntry log=temp.get(t);
-						Integer key;
-						try {
-							key=Integer.valueOf(allLogs.add(log));
-						} catch (LogCacheException lce) {
-							System.err.println("Exception caught while inserting a new log entry in cache:");
-							System.err.println(lce.getLocalizedMessage());
-							lce.printStackTrace(System.err);
-							continue;
-						}
-						rows.add(key);
+					if (clearCount!=clearCountBeforeAdding) {
+						// The table has been cleared after adding the logs to the cache
+						return;
 					}
-					// Finally notify the change
-					fireTableRowsInserted(0, temp.size()-1);
+					rows.addAll(keys, numOfKeys);
+					// Notify the change
+					fireTableRowsInserted(0, numOfKeys-1);
+					removeExceedingLogs();
 				}
 			});
 		} catch (InvocationTargetException e) {
@@ -691,36 +768,105 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 			throw new IllegalArgumentException("Impossible to set the max log to "+max);
 		}
 		maxLog=max;
+		removeExceedingLogsLater();
 	}
 	
 	/**
-	 * Check if there are too many logs in the table and if it is the case
-	 * then remove the oldest.
+	 * Set the time frame of the logs in the table
+	 * The time frame if the amount of time we want to keep in the table 
+	 * for example the last 2hr, measured from the newest log in the table 
+	 * (the visible logs can be less)
+	 * 
+	 * @param timeframe The time frame in milliseconds
+	 *                  0 means unlimited
+	 */
+	public void setTimeFrame(long timeframe) {
+		if (timeframe<0) {
+			throw new IllegalArgumentException("Impossible to set the time frame to "+timeframe);
+		}
+		timeFrame=timeframe;
+		removeExceedingLogsLater();
+	}
+	
+	/**
+	 * Remove the exceeding logs from inside the EDT, without waiting.
+	 * <P>
+	 * Needed when the limits change because the logs are otherwise 
+	 * removed only when new logs are inserted.
+	 */
+	private void removeExceedingLogsLater() {
+		EDTExecutor.instance().execute(new Runnable() {
+			@Override
+			public void run() {
+				removeExceedingLogs();
+			}
+		});
+	}
+	
+	/**
+	 * Check if there are too many logs in the table or logs older then the time frame 
+	 * and if it is the case then remove the oldest.
+	 * <P>
+	 * The oldest logs are in the last rows of the table: the table is notified 
+	 * of the deletion of this range of rows.
 	 * <P>
 	 * This method must be executed inside the EDT.
 	 * 
 	 * @see #maxLog
+	 * @see #timeFrame
 	 */
 	private void removeExceedingLogs() {
+		int sz=rows.size();
+		int numToRemove=0;
+		if (maxLog>0 && sz>maxLog) {
+			numToRemove=sz-maxLog;
+		}
+		if (timeFrame>0 && sz>numToRemove) {
+			numToRemove+=countLogsOutOfTimeFrame(rows, allLogs, sz-numToRemove, timeFrame);
+		}
+		if (numToRemove==0) {
+			return;
+		}
+		keysDeleter.scheduleForDeletion(rows.removeLastEntries(numToRemove));
+		fireTableRowsDeleted(sz-numToRemove, sz-1);
+	}
+	
+	/**
+	 * Count the oldest logs that are out of the time frame.
+	 * <P>
+	 * The logs are checked starting from the oldest one and stopping at the first log in the time frame 
+	 * so that, in the normal case, only a few logs are checked.
+	 * <P>
+	 * This method must be executed inside the EDT.
+	 * 
+	 * @param rows The keys of the logs in the rows of the table
+	 * @param logs The cache of the logs
+	 * @param sz The number of rows of the table to check (i.e. the rows that are not already 
+	 *           being removed because exceeding {@link #maxLog})
+	 * @param timeFrame The time frame (msec)
+	 * @return The number of oldest logs out of the time frame
+	 */
+	static int countLogsOutOfTimeFrame(RowEntries rows, LogCache logs, int sz, long timeFrame) {
+		long newestTimestamp;
 		try {
-			EDTExecutor.instance().executeSync(new Runnable() {
-				@Override
-				public void run() {
-					int sz=rows.size();
-					if (maxLog<=0 || sz<=maxLog) {
-						// The model is unbounded or there is still enough room in the model
-						return;
-					}
-					keysDeleter.scheduleForDeletion(rows.removeLastEntries(rows.size()-maxLog));
-					fireTableDataChanged();
+			newestTimestamp=logs.getLogTimestamp(rows.get(0)).longValue();
+		} catch (Exception e) {
+			// This can happen because deletion of logs is done asynchronously
+			return 0;
+		}
+		long oldestAllowed=newestTimestamp-timeFrame;
+		int ret=0;
+		for (int row=sz-1; row>0; row--) {
+			try {
+				if (logs.getLogTimestamp(rows.get(row)).longValue()>=oldestAllowed) {
+					break;
 				}
-			});
-		} catch (InvocationTargetException e) {
-			System.out.println("!!! Exception: "+e.getMessage()+"; model size="+rows.size());
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			} catch (Exception e) {
+				// The log has already been deleted: remove its row too
+			}
+			ret++;
 		}
+		return ret;
 	}
 
 	/* (non-Javadoc)
@@ -730,7 +876,11 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 	public void run() {
 		while (!terminateThread) {
 			try {
-				Thread.sleep(UPDATE_INTERVAL);
+				synchronized (rowsToAddLock) {
+					if (rowsToAdd.size()<MAX_ROWS_PER_UPDATE) {
+						rowsToAddLock.wait(UPDATE_INTERVAL);
+					}
+				}
 			} catch (InterruptedException ie) {
 				continue;
 			}
@@ -742,8 +892,6 @@ public class LogEntryTableModelBase extends AbstractTableModel implements Runnab
 				System.err.println("Error in thread "+Thread.currentThread().getName()+": "+t.getMessage());
 				t.printStackTrace(System.err);
 			}
-			// Too many logs? Remove the oldest!
-			removeExceedingLogs();
 		}
 		
 	}
@@ -23,9 +23,6 @@ package alma.acs.logging.table;
 import java.io.BufferedReader;
 import java.io.File;
 import java.net.URL;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
 
 import javax.swing.JOptionPane;
 
@@ -37,8 +34,7 @@ import alma.acs.logging.io.SaveFileChooser;
 import com.cosylab.logging.LoggingClient;
 
 /**
- * Extends the <code>LogEntryTableModelBase</code> adding I/O, deletion of logs
- * by time frame.
+ * Extends the <code>LogEntryTableModelBase</code> adding I/O.
  * 
  * @see LogEntryTableModelBase
  * @author: Ales Pucelj (ales.pucelj@kgb.ijs.si)
@@ -61,13 +57,6 @@ public class LogTableDataModel extends LogEntryTableModelBase {
 	 */
 	private IOLogsHelper ioHelper=null;
 	
-	/**
-	 * The time frame of the logs to keep in cache
-	 * This limit is not for the buffer but for the timeframe of the whole cache
-	 * A value of 0 means unlimited
-	 */
-	private volatile long timeFrame=0;
-	
 	/**
 	 * Returns whether the saving/loading of the file has been cancelled or not that reflects on the
 	 * status of the JToggleButton of the GUI. If canceled, then the button should be released. 
@@ -83,23 +72,6 @@ public class LogTableDataModel extends LogEntryTableModelBase {
 		super(client);
 	}
 	
-	/**
-	 * Set the time frame of the logs in the cache
-	 * The time frame if the amount of time we want to keep in the table 
-	 * for example the last 2hr
-	 * (the visible logs can be less)
-	 * 
-	 * @param timeframe The time frame in milliseconds
-	 *                  0 means unlimited
-	 */
-	public void setTimeFrame(long timeframe) {
-		if (timeframe<0) {
-			throw new IllegalArgumentException("Impossible to set the time frame to "+timeframe);
-		}
-		timeFrame=timeframe;
-		checkTimeFrame();
-	}
-	
 	public void loadFromURL() {
 		LoadURLDlg urlDlg = new LoadURLDlg(
 				"http://websqa.hq.eso.org/alma/snapshotRHE/ACS-Reports/TestCoverage-Linux/ACS/LGPL/CommonSoftware/jcont/test/tmp/all_logs.xml",
@@ -262,25 +234,6 @@ public class LogTableDataModel extends LogEntryTableModelBase {
 		return ioHelper;
 	}
 	
-	/**
-	 * Check if the time frame of the logs in cache exceeds the limit and
-	 * if it is the case, deletes the oldest logs
-	 */
-	private void checkTimeFrame() {
-		if (timeFrame==0) {
-			return;
-		}
-		Collection<Integer> logsToDelete = allLogs.getLogExceedingTimeFrame(timeFrame);
-		Collections.sort((List<Integer>)logsToDelete);
-		Collections.reverse((List<Integer>)logsToDelete);
-		
-		if (logsToDelete!=null && logsToDelete.size()>0) {
-			for (Integer logNumber: logsToDelete) {
-				//deleteLog(logNumber);
-			}
-		}
-	}
-	
 	/**
 	 * Closes all the threads and frees the resources
 	 * This is the last method to call before closing the application
@@ -21,7 +21,6 @@
 package alma.acs.logging.table;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,80 +34,145 @@ import java.util.List;
  * <B>Implementation note.</B><BR>
  * Even if logically, the entry in position <i>i</i> contains the key of the
  * log to show in the row <i>i</i> of the table, to improve performances, 
- * new keys are appended in the tail of the vector instead
+ * new keys are appended in the tail of the buffer instead
  * of being inserted in the head i.e. the key of the first log (in row 0) is 
- * is the last key of the vector (in position size-1). For this reason, {@link #get(int)}
- * convert from the passed index to the real position in the list.
+ * is the last key of the buffer. For this reason, {@link #get(int)}
+ * convert from the passed index to the real position in the buffer.
+ * <P>
+ * The keys are stored in a ring buffer of <code>int</code>: appending new keys 
+ * and removing the oldest keys (the last rows of the table) do not move 
+ * the other keys and do not allocate objects.
+ * The buffer grows when it is full and shrinks when it is cleared.
  * 
  * @author acaproni
  *
  */
 public class RowEntries {
 	
+	/**
+	 * The initial size of the buffer
+	 */
+	private static final int INITIAL_CAPACITY=20000;
+	
 	/**
 	 * The entries i.e. the keys.
 	 */
-	private final List<Integer> entries = Collections.synchronizedList(new ArrayList<Integer>(20000));
+	private int[] entries = new int[INITIAL_CAPACITY];
+	
+	/**
+	 * The position in {@link #entries} of the oldest key
+	 */
+	private int head=0;
+	
+	/**
+	 * The number of keys in {@link #entries}
+	 */
+	private int size=0;
 
 	/**
 	 * Remove the oldest <code>numOfEntries</code> entries from the 
 	 * array.
 	 * 
 	 * @param numOfEntries
+	 * @return the keys removed
+	 * @throws IndexOutOfBoundsException if there are less than <code>numOfEntries</code> entries
 	 */
-	public List<Integer> removeLastEntries(int numOfEntries) {
+	public synchronized List<Integer> removeLastEntries(int numOfEntries) {
 		if (numOfEntries<=0) {
 			throw new IllegalArgumentException("Invalid number of entries to remove: "+numOfEntries);
 		}
-		List<Integer> temp = new ArrayList<Integer>();
-		synchronized (entries) {
-			for (int t=0; t<numOfEntries; t++) {
-				temp.add(entries.get(0));
-				entries.remove(0);
-			}
+		if (numOfEntries>size) {
+			throw new IndexOutOfBoundsException("Can't remove "+numOfEntries+" entries out of "+size);
+		}
+		List<Integer> temp = new ArrayList<Integer>(numOfEntries);
+		for (int t=0; t<numOfEntries; t++) {
+			temp.add(Integer.valueOf(entries[head]));
+			head=(head+1)%entries.length;
 		}
+		size-=numOfEntries;
 		return temp;
 	}
 	
 	/**
 	 * Remove the first <code>numOfEntries</code> entries from the 
 	 * array.
+	 * <P>
+	 * If there are less than <code>numOfEntries</code> entries, all the entries are removed.
 	 * 
 	 * @param numOfEntries
 	 * @return the keys removed
 	 */
-	public List<Integer> removeFirstEntries(int numOfEntries) {
+	public synchronized List<Integer> removeFirstEntries(int numOfEntries) {
 		if (numOfEntries<=0) {
 			throw new IllegalArgumentException("Invalid number of entries to remove: "+numOfEntries);
 		}
-		List<Integer> temp = new ArrayList<Integer>();
-		synchronized (entries) {
-			for (int t=0; t<numOfEntries && !entries.isEmpty(); t++) {
-				temp.add(entries.get(entries.size()-1));
-				entries.remove(entries.size()-1);
-				
-			}
+		int n=Math.min(numOfEntries, size);
+		List<Integer> temp = new ArrayList<Integer>(n);
+		for (int t=0; t<n; t++) {
+			temp.add(Integer.valueOf(entries[(head+size-1)%entries.length]));
+			size--;
 		}
 		return temp;
 	}
 
 	/**
-	 * @return
-	 * @see java.util.List#size()
+	 * @return The number of keys
 	 */
-	public int size() {
-		return entries.size();
+	public synchronized int size() {
+		return size;
 	}
 	
 	/**
 	 * Add the passed key to the list of entries.
 	 * <P>
-	 * To improve performances, the key is appended at the end of the vector
+	 * To improve performances, the key is appended at the end of the buffer
 	 * 
 	 * @param key The integer key to add to the list
 	 */
-	public void add(Integer key) {
-		entries.add(key);
+	public synchronized void add(Integer key) {
+		add(key.intValue());
+	}
+	
+	/**
+	 * Add the passed keys to the list of entries, in the order of the array
+	 * i.e. the last key of the array will be shown in the first row.
+	 * 
+	 * @param keys The keys to add
+	 * @param len The number of keys of the array to add
+	 */
+	public synchronized void addAll(int[] keys, int len) {
+		ensureCapacity(size+len);
+		for (int t=0; t<len; t++) {
+			entries[(head+size)%entries.length]=keys[t];
+			size++;
+		}
+	}
+	
+	/**
+	 * Append one key.
+	 * Must be called while holding the lock.
+	 */
+	private void add(int key) {
+		ensureCapacity(size+1);
+		entries[(head+size)%entries.length]=key;
+		size++;
+	}
+	
+	/**
+	 * Grow the buffer, if needed, to contain the passed number of keys.
+	 * Must be called while holding the lock.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity<=entries.length) {
+			return;
+		}
+		int newLength=Math.max(capacity, entries.length*2);
+		int[] newEntries = new int[newLength];
+		int firstPart=Math.min(size, entries.length-head);
+		System.arraycopy(entries, head, newEntries, 0, firstPart);
+		System.arraycopy(entries, 0, newEntries, firstPart, size-firstPart);
+		entries=newEntries;
+		head=0;
 	}
 
 	/**
@@ -120,21 +184,31 @@ public class RowEntries {
 	 * @param index The index of the key to get
 	 * @return The key at passed row of the table
 	 */
-	public Integer get(int row) {
+	public synchronized Integer get(int row) {
 		// The index must be converted from the passed row 
 		// to the right index in the list
-		synchronized (entries) {
-			int indxInTheList=entries.size()-1-row;
-			return entries.get(indxInTheList);	
+		if (row<0 || row>=size) {
+			throw new IndexOutOfBoundsException("Row "+row+" out of "+size);
 		}
+		return Integer.valueOf(entries[(head+size-1-row)%entries.length]);
 	}
 
 	/**
-	 * 
-	 * @see java.util.List#clear()
+	 * @return The length of the buffer of the keys
 	 */
-	public void clear() {
-		entries.clear();
+	synchronized int capacity() {
+		return entries.length;
+	}
+
+	/**
+	 * Remove all the keys
+	 */
+	public synchronized void clear() {
+		head=0;
+		size=0;
+		if (entries.length>INITIAL_CAPACITY) {
+			entries = new int[INITIAL_CAPACITY];
+		}
 	}
 
 	/**
@@ -147,13 +221,13 @@ public class RowEntries {
 	 * @return The position in the list of the passed key or
 	 *         -1 if the list does not contain the passed key
 	 */
-	public int indexOf(Integer key) {
-		// Get the real position in the list
-		synchronized (entries) {
-			// Get the real position in the list
-			int pos=entries.indexOf(key);
-			// return the converted index
-			return pos==-1?pos:entries.size()-pos-1;
+	public synchronized int indexOf(Integer key) {
+		int k=key.intValue();
+		for (int row=0; row<size; row++) {
+			if (entries[(head+size-1-row)%entries.length]==k) {
+				return row;
+			}
 		}
+		return -1;
 	}
 }
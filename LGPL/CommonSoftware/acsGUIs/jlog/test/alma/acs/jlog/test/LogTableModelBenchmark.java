@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.jlog.test;
+
+import java.util.Collections;
+
+import javax.swing.JTable;
+import javax.swing.RowFilter;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
+
+import alma.acs.logging.table.RowEntries;
+
+/**
+ * A headless benchmark of the insertion and removal of rows in a sorted and filtered
+ * table of logs, as done by the <code>LogEntryTableModelBase</code>.
+ * <P>
+ * The table model has the keys of the logs in a {@link RowEntries}; the logs are not read from a cache.
+ * The rows are inserted in slices of 10000, the oldest rows are removed when the table
+ * exceeds the given max number of rows, and the 50 rows visible at the top of the table
+ * are read after each slice as the renderer would do.
+ * The table is notified either
+ * <UL>
+ * 	<LI>"ranges": with the ranges of the inserted and deleted rows, as the model does now, or
+ * 	<LI>"dataChanged": with <code>fireTableDataChanged()</code>, as the model did to remove the oldest logs
+ * 		(that forces the sorter to filter and sort all the rows).
+ * </UL>
+ * For each case, the throughput and the max time spent in the EDT for one slice are printed.
+ * <P>
+ * Usage: <code>LogTableModelBenchmark [entries [maxRows [ranges|dataChanged]]]</code>
+ * with default 1000000 entries, max rows half of the entries (0 means unlimited) and both cases.
+ * <P>
+ * Only for manual runs, e.g. <code>acsStartJava alma.acs.jlog.test.LogTableModelBenchmark 10000000 1000000 ranges</code>.
+ */
+public class LogTableModelBenchmark {
+
+	/**
+	 * The number of rows inserted in one go
+	 */
+	private static final int SLICE = 10000;
+
+	/**
+	 * The number of rows read after each slice
+	 */
+	private static final int VISIBLE_ROWS = 50;
+
+	/**
+	 * A model with the key and a fake log level for each row
+	 */
+	private static class KeysTableModel extends AbstractTableModel {
+		final RowEntries rows = new RowEntries();
+
+		@Override
+		public int getRowCount() {
+			return rows.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return 2;
+		}
+
+		@Override
+		public Class<?> getColumnClass(int columnIndex) {
+			return Integer.class;
+		}
+
+		@Override
+		public Object getValueAt(int rowIndex, int columnIndex) {
+			Integer key = rows.get(rowIndex);
+			return columnIndex==0 ? key : Integer.valueOf(key.intValue()%11);
+		}
+	}
+
+	private static long sink;
+
+	private static void run(final int entries, final int maxRows, final boolean ranges) throws Exception {
+		final KeysTableModel model = new KeysTableModel();
+		final JTable[] table = new JTable[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				table[0] = new JTable(model);
+				TableRowSorter<KeysTableModel> sorter = new TableRowSorter<KeysTableModel>(model);
+				sorter.setRowFilter(new RowFilter<KeysTableModel, Integer>() {
+					public boolean include(Entry<? extends KeysTableModel, ? extends Integer> entry) {
+						// Show 2 logs out of 3
+						return ((Integer)entry.getValue(0)).intValue()%3!=0;
+					}
+				});
+				sorter.setSortKeys(Collections.singletonList(new RowSorter.SortKey(1, SortOrder.ASCENDING)));
+				table[0].setRowSorter(sorter);
+			}
+		});
+
+		final int[] keys = new int[SLICE];
+		final long[] maxSliceNanos = new long[1];
+		long start = System.nanoTime();
+		for (int inserted=0; inserted<entries; inserted+=SLICE) {
+			final int sliceLen = Math.min(SLICE, entries-inserted);
+			for (int t=0; t<sliceLen; t++) {
+				keys[t]=inserted+t;
+			}
+			SwingUtilities.invokeAndWait(new Runnable() {
+				public void run() {
+					long sliceStart = System.nanoTime();
+					model.rows.addAll(keys, sliceLen);
+					if (ranges) {
+						model.fireTableRowsInserted(0, sliceLen-1);
+					} else {
+						model.fireTableDataChanged();
+					}
+					int sz = model.rows.size();
+					if (maxRows>0 && sz>maxRows) {
+						model.rows.removeLastEntries(sz-maxRows);
+						if (ranges) {
+							model.fireTableRowsDeleted(maxRows, sz-1);
+						} else {
+							model.fireTableDataChanged();
+						}
+					}
+					// What the renderer reads
+					int visible = Math.min(VISIBLE_ROWS, table[0].getRowCount());
+					for (int row=0; row<visible; row++) {
+						int modelRow = table[0].convertRowIndexToModel(row);
+						sink += ((Integer)model.getValueAt(modelRow, 0)).intValue();
+						sink += ((Integer)model.getValueAt(modelRow, 1)).intValue();
+					}
+					maxSliceNanos[0] = Math.max(maxSliceNanos[0], System.nanoTime()-sliceStart);
+				}
+			});
+		}
+		double seconds = (System.nanoTime()-start)/1e9;
+		System.out.println(String.format("%-11s %9d entries, max %8d rows: %10.0f entries/s, max %8.1f ms in the EDT per slice, %d rows (%d visible)",
+				ranges ? "ranges" : "dataChanged", entries, maxRows, entries/seconds, maxSliceNanos[0]/1e6,
+				model.getRowCount(), table[0].getRowCount()));
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		int entries = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+		int maxRows = (args.length > 1 ? Integer.parseInt(args[1]) : entries/2);
+		String mode = (args.length > 2 ? args[2] : null);
+		if (mode==null || mode.equals("ranges")) {
+			run(entries, maxRows, true);
+		}
+		if (mode==null || mode.equals("dataChanged")) {
+			run(entries, maxRows, false);
+		}
+		System.out.println("("+sink+")");
+		System.exit(0);
+	}
+}
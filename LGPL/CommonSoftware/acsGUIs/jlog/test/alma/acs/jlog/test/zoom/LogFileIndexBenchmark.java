@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.jlog.test.zoom;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+import com.cosylab.logging.engine.FiltersVector;
+import com.cosylab.logging.engine.MinMaxFilter;
+import com.cosylab.logging.engine.ACS.ACSRemoteErrorListener;
+import com.cosylab.logging.engine.ACS.ACSRemoteLogListener;
+import com.cosylab.logging.engine.log.ILogEntry;
+import com.cosylab.logging.engine.log.LogField;
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+import alma.acs.logging.archive.zoom.FileHelper;
+import alma.acs.logging.archive.zoom.LogFileIndex;
+import alma.acs.logging.engine.io.IOHelper;
+import alma.acs.logging.engine.io.IOPorgressListener;
+import alma.acs.util.IsoDateFormat;
+import alma.acs.util.StopWatch;
+
+/**
+ * A benchmark of the zooming with and without the index of the files
+ * (see {@link LogFileIndex}).
+ * <P>
+ * The benchmark writes a synthetic file of logs of the given size
+ * (one log per millisecond) then measures
+ * <UL>
+ * 	<LI>the time to build the index
+ * 	<LI>the time to read the logs of a few seconds in the middle of the file
+ * 		by parsing the whole file (i.e. without index)
+ * 	<LI>the time to read the same logs with the help of the index
+ * </UL>
+ * <P>
+ * Usage: <code>LogFileIndexBenchmark &lt;folder&gt; &lt;size in MB&gt; [gzip]</code>
+ *
+ */
+public class LogFileIndexBenchmark implements ACSRemoteLogListener, ACSRemoteErrorListener, IOPorgressListener {
+
+	/**
+	 * The number of logs read
+	 */
+	private long logsRead=0;
+
+	/**
+	 * The interval of logs to read in msec
+	 */
+	private static final long zoomInterval=5000;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length<2) {
+			System.out.println("USAGE: LogFileIndexBenchmark <folder> <size in MB> [gzip]");
+			System.exit(-1);
+		}
+		boolean gzip = args.length>2 && args[2].equalsIgnoreCase("gzip");
+		new LogFileIndexBenchmark().run(new File(args[0]), Long.parseLong(args[1])*1024*1024, gzip);
+	}
+
+	/**
+	 * Run the benchmark
+	 *
+	 * @param folder The folder to write the file of logs into
+	 * @param size The size of the file of logs (uncompressed)
+	 * @param gzip If <code>true</code> the file is compressed
+	 */
+	public void run(File folder, long size, boolean gzip) throws Exception {
+		long startTime = new IsoDateFormat().parse("2013-01-01T00:00:00.000").getTime();
+		File logFile = new File(folder, "logOutputBenchmark"+(gzip?".xml.gz":".xml"));
+		long numOfLogs = writeFile(logFile, size, startTime, gzip);
+		System.out.println("Written "+numOfLogs+" logs in "+logFile.getAbsolutePath()+" ("+logFile.length()+" bytes)");
+
+		long zoomStart=startTime+numOfLogs/2;
+		long zoomEnd=zoomStart+zoomInterval;
+
+		// Full scan
+		logsRead=0;
+		IOHelper ioHelper = new IOHelper();
+		FiltersVector filters = new FiltersVector();
+		filters.addFilter(new MinMaxFilter(LogField.TIMESTAMP,false,zoomStart,zoomEnd,false),true);
+		ioHelper.setFilters(filters);
+		StopWatch stopWatch = new StopWatch();
+		ioHelper.loadLogs(logFile.getAbsolutePath(), this, null, this, this, gzip);
+		System.out.println("Full scan: "+logsRead+" logs read in "+stopWatch.getLapTimeMillis()+" msec");
+
+		// Build the index
+		File indexFile = LogFileIndex.getIndexFile(logFile);
+		indexFile.delete();
+		stopWatch = new StopWatch();
+		LogFileIndex index = LogFileIndex.getIndex(logFile);
+		System.out.println("Index of "+index.getBlocks().size()+" blocks built in "+stopWatch.getLapTimeMillis()+" msec");
+
+		// Zoom with the index
+		logsRead=0;
+		stopWatch = new StopWatch();
+		FileHelper fileHelper = new FileHelper(
+				logFile,
+				zoomStart,
+				zoomEnd,
+				LogTypeHelper.values()[0],
+				LogTypeHelper.values()[LogTypeHelper.values().length-1]);
+		fileHelper.loadLogs(this, this, this);
+		System.out.println("Indexed: "+logsRead+" logs read in "+stopWatch.getLapTimeMillis()+" msec");
+
+		indexFile.delete();
+		logFile.delete();
+	}
+
+	/**
+	 * Write the file of logs
+	 *
+	 * @param logFile The file to write
+	 * @param size The size of the file (uncompressed)
+	 * @param startTime The time of the first log
+	 * @param gzip If <code>true</code> the file is compressed
+	 * @return The number of logs written in the file
+	 */
+	private long writeFile(File logFile, long size, long startTime, boolean gzip) throws Exception {
+		OutputStream outStream = new FileOutputStream(logFile);
+		if (gzip) {
+			outStream = new GZIPOutputStream(outStream);
+		}
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outStream, "ISO-8859-1"));
+		IsoDateFormat dateFormat = new IsoDateFormat();
+		LogTypeHelper[] types = LogTypeHelper.values();
+		long written=0;
+		long logs=0;
+		try {
+			String header="<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<Log>\n<Header Name=\"NameForXmlDocument\" Type=\"LOGFILE\" />\n";
+			writer.write(header);
+			written+=header.length();
+			while (written<size) {
+				String type = types[(int)(logs%(types.length-1))].logEntryType;
+				StringBuilder str = new StringBuilder("<");
+				str.append(type);
+				str.append(" TimeStamp=\"");
+				str.append(dateFormat.format(new Date(startTime+logs)));
+				str.append("\" File=\"LogFileIndexBenchmark.java\" Line=\"");
+				str.append(logs%1000);
+				str.append("\" Routine=\"writeFile\" Host=\"te22\" Process=\"Benchmark\" Thread=\"main\" SourceObject=\"LogFileIndexBenchmark\"><![CDATA[Log number ");
+				str.append(logs);
+				str.append("]]></");
+				str.append(type);
+				str.append(">\n");
+				writer.write(str.toString());
+				written+=str.length();
+				logs++;
+			}
+			writer.write("</Log>");
+		} finally {
+			writer.close();
+		}
+		return logs;
+	}
+
+	@Override
+	public void logEntryReceived(ILogEntry logEntry) {
+		logsRead++;
+	}
+
+	@Override
+	public void errorReceived(String xml) {
+		System.err.println("Error parsing "+xml);
+	}
+
+	@Override
+	public void bytesRead(long bytes) {}
+
+	@Override
+	public void bytesWritten(long bytes) {}
+
+	@Override
+	public void logsRead(int numOfLogs) {}
+
+	@Override
+	public void logsWritten(int numOfLogs) {}
+}
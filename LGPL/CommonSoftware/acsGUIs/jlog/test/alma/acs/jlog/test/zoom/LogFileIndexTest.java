@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.jlog.test.zoom;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Date;
+import java.util.List;
+
+import com.cosylab.logging.engine.log.LogTypeHelper;
+
+import alma.acs.logging.archive.zoom.LogFileIndex;
+import alma.acs.util.IsoDateFormat;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the index of the files of logs used while zooming.
+ *
+ */
+public class LogFileIndexTest extends TestCase {
+
+	/**
+	 * The xml file used for testing
+	 */
+	private static final String xmlFileName="logOutput2008-09-19T11_21_49.212--2008-09-19T11_21_49.670.xml";
+
+	/**
+	 * Total number of logs in the XML <code>xmlFileName</code>
+	 */
+	private static final int totalLogsInFile = 202;
+
+	/**
+	 * The max number of logs per block used for testing
+	 */
+	private static final int logsPerBlock = 16;
+
+	/**
+	 * The file to read for testing
+	 */
+	private File testFile;
+
+	/**
+	 * The file of the index written by the test
+	 */
+	private File indexFile;
+
+	public LogFileIndexTest() {
+		super(LogFileIndexTest.class.getName());
+	}
+
+	/**
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		String userDir = System.getProperty("user.dir");
+		assertNotNull(userDir);
+		testFile = new File(userDir+"/zoom/"+xmlFileName);
+		assertTrue(testFile.canRead());
+		indexFile = File.createTempFile("LogFileIndexTest", LogFileIndex.INDEX_FILE_EXTENSION);
+		indexFile.deleteOnExit();
+	}
+
+	/**
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception {
+		indexFile.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Check that the blocks of the index cover all the logs of the file
+	 * and that each block begins and ends with a log
+	 */
+	public void testBuild() throws Exception {
+		LogFileIndex index = LogFileIndex.build(testFile, logsPerBlock, LogFileIndex.DEFAULT_BYTES_PER_BLOCK);
+		assertNotNull(index);
+		assertEquals(testFile.length(), index.fileLength);
+		assertTrue(index.isValidFor(testFile));
+
+		List<LogFileIndex.Block> blocks = index.getBlocks();
+		assertEquals((totalLogsInFile+logsPerBlock-1)/logsPerBlock, blocks.size());
+
+		RandomAccessFile raf = new RandomAccessFile(testFile, "r");
+		try {
+			int logs=0;
+			long lastOffset=0;
+			for (LogFileIndex.Block block: blocks) {
+				assertTrue(block.startOffset>=lastOffset);
+				assertTrue(block.minTime<=block.maxTime);
+				assertTrue(block.levels!=0);
+				lastOffset=block.endOffset;
+				logs+=block.numOfLogs;
+
+				raf.seek(block.startOffset);
+				assertEquals('<', raf.read());
+				raf.seek(block.endOffset-1);
+				assertEquals('>', raf.read());
+			}
+			assertEquals(totalLogsInFile, logs);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Check that an index saved and loaded from a file is equal to the original
+	 */
+	public void testSaveLoad() throws Exception {
+		LogFileIndex index = LogFileIndex.build(testFile, logsPerBlock, LogFileIndex.DEFAULT_BYTES_PER_BLOCK);
+		index.save(indexFile);
+		LogFileIndex loaded = LogFileIndex.load(indexFile);
+		assertEquals(index.fileLength, loaded.fileLength);
+		assertEquals(index.lastModified, loaded.lastModified);
+		assertEquals(index.getBlocks().size(), loaded.getBlocks().size());
+		for (int t=0; t<index.getBlocks().size(); t++) {
+			LogFileIndex.Block b1 = index.getBlocks().get(t);
+			LogFileIndex.Block b2 = loaded.getBlocks().get(t);
+			assertEquals(b1.startOffset, b2.startOffset);
+			assertEquals(b1.endOffset, b2.endOffset);
+			assertEquals(b1.minTime, b2.minTime);
+			assertEquals(b1.maxTime, b2.maxTime);
+			assertEquals(b1.levels, b2.levels);
+			assertEquals(b1.numOfLogs, b2.numOfLogs);
+		}
+	}
+
+	/**
+	 * Check the selection of the blocks by time and level
+	 */
+	public void testSelectBlocks() throws Exception {
+		LogFileIndex index = LogFileIndex.build(testFile, logsPerBlock, LogFileIndex.DEFAULT_BYTES_PER_BLOCK);
+
+		// All the blocks
+		List<LogFileIndex.Block> blocks = index.selectBlocks(
+				0,
+				System.currentTimeMillis(),
+				LogTypeHelper.values()[0],
+				LogTypeHelper.values()[LogTypeHelper.values().length-1]);
+		assertEquals(index.getBlocks().size(), blocks.size());
+
+		// A time interval in the middle of the file
+		IsoDateFormat dateFormat = new IsoDateFormat();
+		Date startDate = dateFormat.parse("2008-09-19T11:21:49.500");
+		Date endDate = dateFormat.parse("2008-09-19T11:21:49.600");
+		blocks = index.selectBlocks(
+				startDate.getTime(),
+				endDate.getTime(),
+				LogTypeHelper.values()[0],
+				LogTypeHelper.values()[LogTypeHelper.values().length-1]);
+		assertFalse(blocks.isEmpty());
+		assertTrue(blocks.size()<index.getBlocks().size());
+		int logs=0;
+		for (LogFileIndex.Block block: blocks) {
+			assertTrue(block.maxTime>=startDate.getTime());
+			assertTrue(block.minTime<=endDate.getTime());
+			logs+=block.numOfLogs;
+		}
+		// There are 45 logs in this interval (see FileHelperTest)
+		assertTrue(logs>=45);
+
+		// A time interval before the logs of the file
+		Date date = dateFormat.parse("2008-09-18T11:21:49.500");
+		blocks = index.selectBlocks(
+				0,
+				date.getTime(),
+				LogTypeHelper.values()[0],
+				LogTypeHelper.values()[LogTypeHelper.values().length-1]);
+		assertTrue(blocks.isEmpty());
+
+		// There are no logs with level OFF
+		blocks = index.selectBlocks(0, System.currentTimeMillis(), LogTypeHelper.OFF, LogTypeHelper.OFF);
+		assertTrue(blocks.isEmpty());
+	}
+
+	/**
+	 * Check the building of the blocks while logs are added
+	 */
+	public void testBuilder() throws Exception {
+		LogFileIndex.Builder builder = new LogFileIndex.Builder(3, 1000);
+		long offset=0;
+		for (int t=0; t<7; t++) {
+			builder.addLog(offset, 100, Long.valueOf(1000L+t), LogTypeHelper.INFO);
+			offset+=100;
+		}
+		// This log does not fit in the max number of bytes of a block
+		builder.addLog(offset, 2000, null, null);
+		LogFileIndex index = builder.build(offset+2000, 0);
+
+		List<LogFileIndex.Block> blocks = index.getBlocks();
+		assertEquals(4, blocks.size());
+		assertEquals(3, blocks.get(0).numOfLogs);
+		assertEquals(0, blocks.get(0).startOffset);
+		assertEquals(300, blocks.get(0).endOffset);
+		assertEquals(1000L, blocks.get(0).minTime);
+		assertEquals(1002L, blocks.get(0).maxTime);
+		assertEquals(1<<LogTypeHelper.INFO.ordinal(), blocks.get(0).levels);
+		assertEquals(1, blocks.get(2).numOfLogs);
+		// The log with no timestamp and level is selected by any query
+		assertEquals(LogFileIndex.ALL_LEVELS, blocks.get(3).levels);
+		assertEquals(1, index.selectBlocks(5000, 6000, LogTypeHelper.ERROR, LogTypeHelper.ERROR).size());
+	}
+
+	/**
+	 * Check that the index is saved in the sidecar file and rebuilt if
+	 * the file of logs changes
+	 */
+	public void testGetIndex() throws Exception {
+		File logFile = File.createTempFile("logOutput", ".xml");
+		logFile.deleteOnExit();
+		File sidecar = LogFileIndex.getIndexFile(logFile);
+		sidecar.deleteOnExit();
+		try {
+			copyFile(testFile, logFile);
+			LogFileIndex index = LogFileIndex.getIndex(logFile);
+			assertTrue(sidecar.exists());
+			assertTrue(index.isValidFor(logFile));
+
+			// Truncate the file: the index must be rebuilt
+			RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+			try {
+				raf.setLength(index.getBlocks().get(0).endOffset);
+			} finally {
+				raf.close();
+			}
+			logFile.setLastModified(index.lastModified+10000);
+			assertFalse(index.isValidFor(logFile));
+			LogFileIndex newIndex = LogFileIndex.getIndex(logFile);
+			assertTrue(newIndex.isValidFor(logFile));
+			assertEquals(1, newIndex.getBlocks().size());
+		} finally {
+			sidecar.delete();
+			logFile.delete();
+		}
+	}
+
+	/**
+	 * Copy a file
+	 *
+	 * @param src The source file
+	 * @param dest The destination file
+	 */
+	private void copyFile(File src, File dest) throws Exception {
+		RandomAccessFile in = new RandomAccessFile(src, "r");
+		RandomAccessFile out = new RandomAccessFile(dest, "rw");
+		try {
+			byte[] buffer = new byte[(int)in.length()];
+			in.readFully(buffer);
+			out.setLength(0);
+			out.write(buffer);
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+}
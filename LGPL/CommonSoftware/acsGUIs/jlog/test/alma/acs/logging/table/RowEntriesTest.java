@@ -0,0 +1,197 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.logging.table;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the ring buffer of keys of {@link RowEntries}.
+ * <P>
+ * The keys added to {@link RowEntries} are consecutive integers so that
+ * the key expected in each row can be calculated.
+ *
+ * @author acaproni
+ *
+ */
+public class RowEntriesTest extends TestCase {
+
+	/**
+	 * The object to test
+	 */
+	private RowEntries rows;
+
+	/**
+	 * The next key to add
+	 */
+	private int nextKey;
+
+	/**
+	 * The oldest key in {@link #rows}
+	 */
+	private int oldestKey;
+
+	/**
+	 * Constructor
+	 */
+	public RowEntriesTest() {
+		super("RowEntriesTest");
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		rows = new RowEntries();
+		nextKey=0;
+		oldestKey=0;
+	}
+
+	/**
+	 * Add the given number of keys, half of them one by one
+	 * and half of them with {@link RowEntries#addAll(int[], int)}
+	 *
+	 * @param num The number of keys to add
+	 */
+	private void addKeys(int num) {
+		int[] keys = new int[num];
+		for (int t=0; t<num; t++) {
+			keys[t]=nextKey++;
+		}
+		int oneByOne=num/2;
+		for (int t=0; t<oneByOne; t++) {
+			rows.add(Integer.valueOf(keys[t]));
+		}
+		int[] others = new int[num-oneByOne+10];
+		System.arraycopy(keys, oneByOne, others, 0, num-oneByOne);
+		rows.addAll(others, num-oneByOne);
+	}
+
+	/**
+	 * Check that the rows contain all the keys from {@link #oldestKey}
+	 * to {@link #nextKey}, the newest in the first row.
+	 */
+	private void checkRows() {
+		assertEquals(nextKey-oldestKey, rows.size());
+		for (int row=0; row<rows.size(); row++) {
+			assertEquals("Wrong key in row "+row, Integer.valueOf(nextKey-1-row), rows.get(row));
+		}
+	}
+
+	/**
+	 * Add and remove keys so that the keys wrap around the end of the buffer
+	 * before and after the buffer grows.
+	 */
+	public void testWrapAroundGrowth() throws Exception {
+		int capacity=rows.capacity();
+		addKeys(capacity*3/4);
+		checkRows();
+		// Move the head toward the end of the buffer
+		List<Integer> removed=rows.removeLastEntries(capacity/2);
+		assertEquals(capacity/2, removed.size());
+		for (Integer key: removed) {
+			assertEquals(oldestKey++, key.intValue());
+		}
+		checkRows();
+		// The keys wrap around the end of the buffer
+		addKeys(capacity/2);
+		assertEquals(capacity, rows.capacity());
+		checkRows();
+		// The buffer grows while the keys wrap around
+		addKeys(capacity/2);
+		assertTrue(rows.capacity()>capacity);
+		checkRows();
+		assertEquals(0, rows.indexOf(Integer.valueOf(nextKey-1)));
+		assertEquals(rows.size()-1, rows.indexOf(Integer.valueOf(oldestKey)));
+		assertEquals(-1, rows.indexOf(Integer.valueOf(oldestKey-1)));
+	}
+
+	/**
+	 * Remove keys from both the head (the newest keys) and the tail (the oldest keys)
+	 * while the keys wrap around the end of the buffer.
+	 */
+	public void testMixedRemoval() throws Exception {
+		int capacity=rows.capacity();
+		addKeys(capacity-10);
+		rows.removeLastEntries(capacity-100);
+		oldestKey+=capacity-100;
+		addKeys(200);
+		checkRows();
+		for (int t=0; t<20; t++) {
+			// The newest
+			List<Integer> removed = rows.removeFirstEntries(3);
+			assertEquals(3, removed.size());
+			for (Integer key: removed) {
+				assertEquals(--nextKey, key.intValue());
+			}
+			// The oldest
+			removed = rows.removeLastEntries(2);
+			assertEquals(2, removed.size());
+			for (Integer key: removed) {
+				assertEquals(oldestKey++, key.intValue());
+			}
+			checkRows();
+			addKeys(1);
+			checkRows();
+		}
+		// removeFirstEntries removes all the keys if asked for more keys
+		int sz=rows.size();
+		assertEquals(sz, rows.removeFirstEntries(sz+10).size());
+		assertEquals(0, rows.size());
+	}
+
+	/**
+	 * Check that removing from the tail more keys than those in the buffer
+	 * throws an exception and does not remove any key.
+	 */
+	public void testRemoveTooMany() throws Exception {
+		addKeys(10);
+		try {
+			rows.removeLastEntries(11);
+			fail("Removing more keys than those in the buffer must throw");
+		} catch (IndexOutOfBoundsException e) {
+			// Expected
+		}
+		checkRows();
+		try {
+			rows.get(10);
+			fail("Getting a row out of the buffer must throw");
+		} catch (IndexOutOfBoundsException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Check that clearing a buffer that grew shrinks it to the initial capacity
+	 */
+	public void testClearShrink() throws Exception {
+		int capacity=rows.capacity();
+		addKeys(capacity*2+1);
+		assertTrue(rows.capacity()>capacity);
+		checkRows();
+		rows.clear();
+		assertEquals(0, rows.size());
+		assertEquals(capacity, rows.capacity());
+		oldestKey=nextKey;
+		addKeys(100);
+		checkRows();
+	}
+}
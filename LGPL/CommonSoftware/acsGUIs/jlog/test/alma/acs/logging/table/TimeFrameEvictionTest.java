@@ -0,0 +1,128 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.logging.table;
+
+import java.util.Collection;
+
+import junit.framework.TestCase;
+
+import alma.acs.jlog.test.CacheUtils;
+
+import com.cosylab.logging.client.cache.LogCache;
+import com.cosylab.logging.engine.log.ILogEntry;
+
+/**
+ * Test the selection of the logs out of the time frame of the table
+ * done by {@link LogEntryTableModelBase}.
+ * <P>
+ * The logs generated by {@link CacheUtils#generateLogs(int)} are one second apart:
+ * the first log is the oldest one and is shown in the last row of the table.
+ *
+ * @author acaproni
+ *
+ */
+public class TimeFrameEvictionTest extends TestCase {
+
+	/**
+	 * The number of logs in the table
+	 */
+	private static final int NUM_OF_LOGS=100;
+
+	/**
+	 * The cache of the logs
+	 */
+	private LogCache cache;
+
+	/**
+	 * The keys of the logs in the rows of the table
+	 */
+	private RowEntries rows;
+
+	/**
+	 * The keys of the logs, the oldest first
+	 */
+	private final Integer[] keys = new Integer[NUM_OF_LOGS];
+
+	/**
+	 * Constructor
+	 */
+	public TimeFrameEvictionTest() {
+		super("TimeFrameEvictionTest");
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		cache = new LogCache();
+		rows = new RowEntries();
+		Collection<ILogEntry> logs = CacheUtils.generateLogs(NUM_OF_LOGS);
+		int t=0;
+		for (ILogEntry log: logs) {
+			keys[t]=Integer.valueOf(cache.add(log));
+			rows.add(keys[t++]);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.clear();
+		super.tearDown();
+	}
+
+	/**
+	 * The logs older than the time frame, measured from the newest log, are selected.
+	 */
+	public void testOutOfTimeFrame() throws Exception {
+		// The newest log is never removed
+		assertEquals(NUM_OF_LOGS-1, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, NUM_OF_LOGS, 1));
+		// The logs in the last 10 seconds are kept
+		assertEquals(NUM_OF_LOGS-11, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, NUM_OF_LOGS, 10000));
+		// All the logs are in the time frame
+		assertEquals(0, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, NUM_OF_LOGS, (NUM_OF_LOGS-1)*1000));
+		assertEquals(0, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, NUM_OF_LOGS, 60*60*1000));
+	}
+
+	/**
+	 * Only the given number of rows are checked, the other rows
+	 * are those already being removed because they exceed the max number of logs.
+	 */
+	public void testOutOfTimeFrameWithMaxLogs() throws Exception {
+		// The newest 50 logs: those in the last 10 seconds are kept
+		assertEquals(50-11, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, 50, 10000));
+		// The newest 5 logs are in the time frame
+		assertEquals(0, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, 5, 10000));
+	}
+
+	/**
+	 * The rows of the logs already deleted from the cache are removed
+	 * together with the other rows out of the time frame.
+	 */
+	public void testDeletedLogs() throws Exception {
+		cache.deleteLog(keys[0]);
+		cache.deleteLog(keys[1]);
+		assertEquals(NUM_OF_LOGS-11, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, NUM_OF_LOGS, 10000));
+		// The oldest rows are removed even if all the logs in the cache are in the time frame
+		assertEquals(2, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, NUM_OF_LOGS, 60*60*1000));
+		// The loop stops at the first log in the time frame
+		cache.deleteLog(keys[NUM_OF_LOGS/2]);
+		assertEquals(2, LogEntryTableModelBase.countLogsOutOfTimeFrame(rows, cache, NUM_OF_LOGS, 60*60*1000));
+	}
+}
@@ -178,7 +178,7 @@ public class CDBAccess
 		 * @param	curl	changed entity in CDB
 		 * @see DALChangeListenerOperations#object_changed(String)
 		 */
-		public void object_changed(String curl)
+		public synchronized void object_changed(String curl)
 		{
 			// get the connectable from cache and reconnect it in separate thread
 			DAOProxy connectable = (DAOProxy) curlMap.get(curl);
@@ -193,7 +193,7 @@ public class CDBAccess
 		 * @param curl the path for our DAO object
 		 * @param conn the object for which we made the DAO
 		 */
-		public void handle(DAL dal, String curl, DAOProxy conn)
+		public synchronized void handle(DAL dal, String curl, DAOProxy conn)
 		{
 			// create CORBA instance
 			if (cl == null)
@@ -220,7 +220,7 @@ public class CDBAccess
 		 * Checks if object with the given CURL is already registered to this listener.
 		 * @param curl the path for our DAO object
 		 */
-		public boolean isRegistered(String curl)
+		public synchronized boolean isRegistered(String curl)
 		{
 			return curlMap.containsKey(curl);
 		}
@@ -228,7 +228,7 @@ public class CDBAccess
 		/**
 		 * Unregister this listener from DAL server(s).
 		 */
-		public void destroy()
+		public synchronized void destroy()
 		{
 			DAL dal;
 			Integer listenerID;
@@ -281,6 +281,7 @@ public class CDBAccess
 
 	/**
 	 * Performs the connect of the specified DAO.
+	 * Once the DAL is connected (or set using {@link #setDAL(DAL)}), this method can be called concurrently.
 	 * 
 	 * @param	curl	DAO curl, non-<code>null</code>
 	 * @return	DAO proxy.
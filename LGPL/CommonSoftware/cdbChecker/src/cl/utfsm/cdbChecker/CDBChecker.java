@@ -27,6 +27,7 @@
 
 package cl.utfsm.cdbChecker;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -34,6 +35,7 @@ import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -118,8 +120,9 @@ public class CDBChecker {
 	 * If at the end of all validations it is true, it means that something
 	 * failed and therefore we have to return with a failure
 	 * error code.
+	 * It is volatile because the XML files are validated in parallel.
 	 */
-    private boolean globalErrorFlag = false;
+    private volatile boolean globalErrorFlag = false;
     
 	public boolean isGlobalErrorFlag() {
 		return globalErrorFlag;
@@ -142,6 +145,10 @@ public class CDBChecker {
 	private boolean network       = false;
 	private boolean checkidl      = false;
 	private boolean recursive     = true;
+	private int threads           = Runtime.getRuntime().availableProcessors();
+	private File manifestFile     = null;
+
+	private CDBValidationEngine validationEngine;
 
 	public boolean isVerbose() {
 		return verbose;
@@ -243,41 +250,58 @@ public class CDBChecker {
 	 * @param File of an XML or XSD file to validate.
 	 */
 	protected void validateFileEncoding(String filename) throws IOException {
+		if (!validateFileEncoding(filename, System.out)) {
+			errorFlag=true;
+		}
+	}
+
+	/**
+	 * Variant of {@link #validateFileEncoding(String)} that can be used for several files in parallel.
+	 * 
+	 * @param out Where to print the errors.
+	 * @return false if the file has encoding errors.
+	 */
+	boolean validateFileEncoding(String filename, PrintStream out) throws IOException {
+		boolean valid = true;
 		File file = new File(filename);
-		FileInputStream fis;
-		fis = new FileInputStream(file);
-		//BufferedReader in = new BufferedReader(new InputStreamReader(fis,"ASCII"));
-		int ch;
-		int line = 1;
-		int i = 0;
-		boolean crEnding = false;
-		while((ch = fis.read())!=-1) {
-			i++;
-			//There shouldn't be any character over 126 since 127 is <del> and ASCII only goes to 127.
-			if(ch >= 127) {
-				System.out.print(filename+": [Error] Non-ASCII Character "+ch+" found in XML or XSD at character: "+line+":"+i+".\n");
-				errorFlag=true;
-				globalErrorFlag=true;
-			}
-			//There shouldn't be any control character but the line feed or tab.
-			if(ch < 32 && ch != 10 && ch != 9) {
-				if(ch == 13) {
-					if(!crEnding) {
-						System.out.print(filename+": [Error] Carriage Return Character ("+ch+") found in XML or XSD at: "+line+":"+i+".\n");
-						System.out.print(filename+": This is probably CRLF Windows termination. Further Carriage Return errors are hidden.\n");
-						crEnding = true;
+		BufferedInputStream fis = new BufferedInputStream(new FileInputStream(file));
+		try {
+			//BufferedReader in = new BufferedReader(new InputStreamReader(fis,"ASCII"));
+			int ch;
+			int line = 1;
+			int i = 0;
+			boolean crEnding = false;
+			while((ch = fis.read())!=-1) {
+				i++;
+				//There shouldn't be any character over 126 since 127 is <del> and ASCII only goes to 127.
+				if(ch >= 127) {
+					out.print(filename+": [Error] Non-ASCII Character "+ch+" found in XML or XSD at character: "+line+":"+i+".\n");
+					valid=false;
+					globalErrorFlag=true;
+				}
+				//There shouldn't be any control character but the line feed or tab.
+				if(ch < 32 && ch != 10 && ch != 9) {
+					if(ch == 13) {
+						if(!crEnding) {
+							out.print(filename+": [Error] Carriage Return Character ("+ch+") found in XML or XSD at: "+line+":"+i+".\n");
+							out.print(filename+": This is probably CRLF Windows termination. Further Carriage Return errors are hidden.\n");
+							crEnding = true;
+						}
 					}
+					else
+						out.print(filename+": [Error] Illegal Control Character ("+ch+") found in XML or XSD at: "+line+":"+i+".\n");
+					valid=false;
+					globalErrorFlag=true;
+				}
+				if(ch == 10){
+					i = 0;
+					line++;
 				}
-				else
-					System.out.print(filename+": [Error] Illegal Control Character ("+ch+") found in XML or XSD at: "+line+":"+i+".\n");
-				errorFlag=true;
-				globalErrorFlag=true;
-			}
-			if(ch == 10){
-				i = 0;
-				line++;
 			}
+		} finally {
+			fis.close();
 		}
+		return valid;
 	}
 	
 	/**
@@ -384,7 +408,7 @@ public class CDBChecker {
 	}
 	
 	/**
-	 * This method validates the XML files.
+	 * This method validates the XML files, in parallel using the {@link CDBValidationEngine}.
 	 * 
 	 * @param filenames name with absolute path of the XML file to validate.
 	 */	
@@ -392,42 +416,19 @@ public class CDBChecker {
 
 		System.out.println("*** Will verify XML files in directory: " + this.XMLPath);
 
-		for(int i=0;i<filenames.size();i++){
-
-			File file = new File(filenames.get(i));
-			if(file.length()!=0){
-				if(verbose){
-					System.out.print("    "+ filenames.get(i));
-					/*for(int j=0;j<(90-(int)((String)filename.get(i)).length())/8;j++)
-                                          System.out.print("\t");
-					 */}
-				String targetNamespace = ((xsd_targetns.toString()).replace(',',' ')).replace('=',' ').replace('{',' ').replace('}',' ');
-				errorFlag=false;
-				try{
-					validateFileEncoding(filenames.get(i));
-
-					SP.reset();
-					SP.setFeature("http://xml.org/sax/features/validation",true);
-					SP.setFeature("http://apache.org/xml/features/validation/schema", true);
-					SP.setFeature("http://xml.org/sax/features/namespace-prefixes",false);
-					SP.setFeature("http://xml.org/sax/features/namespaces",true);
-					SP.setErrorHandler(new CDBErrorHandler(this));
-					SP.setProperty("http://apache.org/xml/properties/schema/external-schemaLocation",targetNamespace);
-
-					FileInputStream fis = new FileInputStream(file);
-					InputSource inputSource = new InputSource(fis);
-					inputSource.setSystemId("file:///" + file.getAbsolutePath());
-					SP.parse(inputSource);
-					fis.close();
-					if(verbose && !errorFlag)
-						System.out.println("[OK]");
-				}catch(SAXException e){System.out.println("[SAXException] " + e.getMessage());}
-				catch(IOException e){System.out.println("[IOException] Probably "+ filenames.get(i) + " doesn't exist.");}
-			}else{
-				System.out.print( filenames.get(i) + ": [Warning] file is empty.\n");
-			}
-
+		if (validationEngine == null) {
+			validationEngine = createValidationEngine();
 		}
+		validationEngine.validate(filenames, System.out);
+	}
+
+	/**
+	 * Creates the engine for validating the XML files against the schemas found by {@link #getTargetNamespace(Vector)}.
+	 */
+	protected CDBValidationEngine createValidationEngine() {
+		String targetNamespace = ((xsd_targetns.toString()).replace(',',' ')).replace('=',' ').replace('{',' ').replace('}',' ');
+		CDBSchemasResolver resolver = new CDBSchemasResolver(this, schemaFolder + File.pathSeparator + XSDPath);
+		return new CDBValidationEngine(this, targetNamespace, xsd_targetns.values(), resolver, threads);
 	}
 	
 	
@@ -576,6 +577,12 @@ public class CDBChecker {
 		System.out.println("                            when searching for .xml/.xsd files");
 		System.out.println("      -n | --network        Get required schemas from the network");
 		System.out.println("      -c | --checkIdlTypes  Check if the idl types in CDB are available");
+		System.out.println("      -j | --threads <n>    Number of threads validating the XML files");
+		System.out.println("                            (default: number of processors)");
+		System.out.println("      -i | --incremental <manifestFile>");
+		System.out.println("                            Validate only the XML files that changed since the");
+		System.out.println("                            last check with the same manifest file, unless");
+		System.out.println("                            schemas changed");
 		System.out.println("      -h | --help           Show this help");
 		System.out.println("\n    The XMLPath and XSDPath can have multiple paths separated by \":\".");
 		System.out.println("    The paths must be absolute (i.e. they should start with '/')");
@@ -596,14 +603,16 @@ public class CDBChecker {
 	{
 		boolean retVal = true;
 		int c;
-		LongOpt[] longopts = new LongOpt[5];
+		LongOpt[] longopts = new LongOpt[7];
 		longopts[0] = new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h');
 		longopts[1] = new LongOpt("network", LongOpt.NO_ARGUMENT, null, 'n'); 
 		longopts[2] = new LongOpt("verbose", LongOpt.NO_ARGUMENT, null, 'v');
 		longopts[3] = new LongOpt("recursive", LongOpt.NO_ARGUMENT, null, 'r');
 		longopts[4] = new LongOpt("checkIdlTypes", LongOpt.NO_ARGUMENT, null, 'c');
+		longopts[5] = new LongOpt("threads", LongOpt.REQUIRED_ARGUMENT, null, 'j');
+		longopts[6] = new LongOpt("incremental", LongOpt.REQUIRED_ARGUMENT, null, 'i');
 		
-		Getopt myGetOpt = new Getopt("cdbChecker", args, "rhncvaW;", longopts);
+		Getopt myGetOpt = new Getopt("cdbChecker", args, "rhncvaj:i:W;", longopts);
 		myGetOpt.setOpterr(false); // We'll do our own error handling
 
 		while ((c = myGetOpt.getopt()) != -1) {
@@ -623,6 +632,21 @@ public class CDBChecker {
 				case 'c':
 					this.checkidl = true;
 					break;
+				case 'j':
+					try {
+						this.threads = Integer.parseInt(myGetOpt.getOptarg());
+					} catch (NumberFormatException e) {
+						this.threads = 0;
+					}
+					if (this.threads < 1) {
+						System.out.println("[Error] : the number of threads must be a positive integer");
+						globalErrorFlag = true;
+						retVal = false;
+					}
+					break;
+				case 'i':
+					this.manifestFile = new File(myGetOpt.getOptarg());
+					break;
 				case 'W':
 					System.out.println("[Error] : you tried a -W with an incorrect long option name");
 					globalErrorFlag = true;
@@ -844,16 +868,37 @@ public class CDBChecker {
 					System.out.println("*** Getting TargetNamespaces from schema files");
 				cdbchecker.getTargetNamespace(xsdFilenames);
 
+				// In incremental mode, unchanged schemas need not be validated again 
+				cdbchecker.validationEngine = cdbchecker.createValidationEngine();
+				boolean schemasUnchanged = false;
+				if (cdbchecker.manifestFile != null) {
+					List<String> schemaFiles = new ArrayList<String>(xsdFilenames);
+					schemaFiles.addAll(cdbchecker.getFilenames(new String[] {cdbchecker.schemaFolder}, "xsd"));
+					schemasUnchanged = cdbchecker.validationEngine.loadManifest(cdbchecker.manifestFile, schemaFiles);
+				}
+
 				// Validating Schemas
 				if (cdbchecker.verbose)
 					System.out.println("*** Validating Schemas");
-				cdbchecker.validateSchemas(xsdFilenames);
+				if (schemasUnchanged) {
+					if (cdbchecker.verbose)
+						System.out.println("    Schemas unchanged since the last check [OK]");
+				} else {
+					cdbchecker.validateSchemas(xsdFilenames);
+				}
+				boolean schemasValid = !cdbchecker.isGlobalErrorFlag();
 
 				// Validating XML files
 				if (cdbchecker.verbose)
 					System.out.println("*** Validating XML files");
 				cdbchecker.XMLValidate(XMLFilenames);
 
+				try {
+					cdbchecker.validationEngine.saveManifest(schemasValid);
+				} catch (IOException e) {
+					System.out.println("[Warning] Could not write manifest " + cdbchecker.manifestFile + ": " + e.getMessage());
+				}
+
 				// add panta@naoj 2009/10/05
 				// checks if implLang matches, those written in XXComponents.xml and XXContainers.xml
 				for (int i = 0; i < pathsMulti.length; i++) {
@@ -24,6 +24,7 @@
 
 package cl.utfsm.cdbChecker;
 
+import java.io.PrintStream;
 import java.util.List;
 
 import org.xml.sax.Attributes;
@@ -33,9 +34,23 @@ import org.xml.sax.helpers.DefaultHandler;
 class CDBContentHandler extends DefaultHandler implements ContentHandler{
 
 	private CDBChecker _checker;
+	private PrintStream _out;
+	private boolean _errors = false;
 
 	public CDBContentHandler(CDBChecker checker) {
+		this(checker, System.out);
+	}
+
+	public CDBContentHandler(CDBChecker checker, PrintStream out) {
 		_checker = checker;
+		_out = out;
+	}
+
+	/**
+	 * @return true if an IDL type was not found.
+	 */
+	public boolean hasErrors() {
+		return _errors;
 	}
 
 	public void startElement(String namespace, String localname, String type, Attributes attributes ){ 
@@ -46,11 +61,12 @@ class CDBContentHandler extends DefaultHandler implements ContentHandler{
 		if( _checker.isCheckIdl() && ( (localname == "Component") || (localname == "_" && namespace == "urn:schemas-cosylab-com:Components:1.0") ) ){
 			String idl = attributes.getValue("Type");
 			if(_checker.getIrRep().lookup_id(idl) == null){
-				System.out.println("[Error] IDL: "+idl+ " not found in Interface Repository.");
+				_out.println("[Error] IDL: "+idl+ " not found in Interface Repository.");
+				_errors = true;
 				_checker.setGlobalErrorFlag(true);
 			}
 			else if( _checker.isVerbose() )
-				System.out.println("    "+idl+ " [OK]");
+				_out.println("    "+idl+ " [OK]");
 		}
 	}
 }
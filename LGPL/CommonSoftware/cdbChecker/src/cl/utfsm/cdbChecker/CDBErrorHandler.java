@@ -24,6 +24,8 @@
 
 package cl.utfsm.cdbChecker;
 
+import java.io.PrintStream;
+
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
@@ -33,9 +35,28 @@ import org.xml.sax.helpers.DefaultHandler;
 class CDBErrorHandler extends DefaultHandler implements ErrorHandler {
 
 	private CDBChecker _checker;
+	private PrintStream _out;
+
+	/**
+	 * Set when a warning or error was reported, to check one file
+	 * without the shared error flag of the checker.
+	 */
+	private boolean _errors = false;
 
 	public CDBErrorHandler(CDBChecker checker) {
+		this(checker, System.out);
+	}
+
+	/**
+	 * @param out Where to print the problems, e.g. a buffer for the output of one file.
+	 */
+	public CDBErrorHandler(CDBChecker checker, PrintStream out) {
 		_checker = checker;
+		_out = out;
+	}
+
+	public boolean hasErrors() {
+		return _errors;
 	}
 
 	public void warning(SAXParseException e)
@@ -44,9 +65,10 @@ class CDBErrorHandler extends DefaultHandler implements ErrorHandler {
 		if(filename.startsWith("file:///"))
 			filename=filename.substring(8);
 		if(_checker.isVerbose())
-			System.out.print(":"+e.getLineNumber()+":"+e.getColumnNumber()+" [Warning]\n\t "+e.getMessage()+"\n");
+			_out.print(":"+e.getLineNumber()+":"+e.getColumnNumber()+" [Warning]\n\t "+e.getMessage()+"\n");
 		else
-			System.out.print(filename+":"+e.getLineNumber()+":"+e.getColumnNumber()+" [Warning]\n\t "+e.getMessage()+"\n");
+			_out.print(filename+":"+e.getLineNumber()+":"+e.getColumnNumber()+" [Warning]\n\t "+e.getMessage()+"\n");
+		_errors = true;
 		_checker.setErrorFlag(true);
 		_checker.setGlobalErrorFlag(true);
 	}
@@ -57,10 +79,11 @@ class CDBErrorHandler extends DefaultHandler implements ErrorHandler {
 		if(filename.startsWith("file:///"))
 			filename=filename.substring(8);
 		if(_checker.isVerbose())
-			System.out.print(":"+e.getLineNumber()+":"+e.getColumnNumber()+" [Error]\n\t "+e.getMessage()+"\n");	
+			_out.print(":"+e.getLineNumber()+":"+e.getColumnNumber()+" [Error]\n\t "+e.getMessage()+"\n");	
 		else
-			System.out.print(filename+":"+e.getLineNumber()+":"+e.getColumnNumber()+" [Error]\n\t "+e.getMessage()+"\n");	
+			_out.print(filename+":"+e.getLineNumber()+":"+e.getColumnNumber()+" [Error]\n\t "+e.getMessage()+"\n");	
 			
+		_errors = true;
 		_checker.setErrorFlag(true);
 		_checker.setGlobalErrorFlag(true);
 	}
@@ -71,12 +94,13 @@ class CDBErrorHandler extends DefaultHandler implements ErrorHandler {
 			if (filename.startsWith("file:///")) {
 				filename = filename.substring(8);
 			}
-			System.out.println(filename + ":" + e.getLineNumber() + ":" + e.getColumnNumber() + " [Fatal Error]\n\t " + e.getMessage());
+			_out.println(filename + ":" + e.getLineNumber() + ":" + e.getColumnNumber() + " [Fatal Error]\n\t " + e.getMessage());
 		} else {
-			System.out.println("[Fatal Error] There is something terribly wrong, we should never get here :(\n\t " + e.getMessage() + "\n");
+			_out.println("[Fatal Error] There is something terribly wrong, we should never get here :(\n\t " + e.getMessage() + "\n");
 		}
+		_errors = true;
 		_checker.setErrorFlag(true);
 		_checker.setGlobalErrorFlag(true);
-		System.out.println("************Unrecoverable error, please don't trust any messages after this one.***********\n");
+		_out.println("************Unrecoverable error, please don't trust any messages after this one.***********\n");
 	}
 }
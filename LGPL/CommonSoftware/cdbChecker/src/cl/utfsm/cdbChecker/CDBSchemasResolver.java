@@ -25,6 +25,7 @@
 package cl.utfsm.cdbChecker;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -41,9 +42,13 @@ public class CDBSchemasResolver implements EntityResolver
 	 * This boolean allows to keep this strange old behavior, but also
 	 * to reuse this class as a general xsd resolver.
 	 */
-	private boolean resolveOnlyHttp = true;
+	private volatile boolean resolveOnlyHttp = true;
 
-	private final Map<String, String> xsdCache = new HashMap<String, String>();
+	/**
+	 * Synchronized, because the resolver is shared by the threads of the {@link CDBValidationEngine}.
+	 * (ConcurrentHashMap does not allow the null values for schemas that were not found.)
+	 */
+	private final Map<String, String> xsdCache = Collections.synchronizedMap(new HashMap<String, String>());
 	
 	/**
 	 * Instantiates a CDBSchemasResolver and initialises the array of directories where to search for schema files.
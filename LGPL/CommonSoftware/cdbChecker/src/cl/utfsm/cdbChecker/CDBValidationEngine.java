@@ -0,0 +1,477 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) UTFSM - Universidad Tecnica Federico Santa Maria, 2011
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+
+package cl.utfsm.cdbChecker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.EntityResolverWrapper;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLErrorHandler;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLParseException;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Validates the XML files of a CDB against the schemas, for {@link CDBChecker#XMLValidate(java.util.Vector)}.
+ * <p>
+ * Compared with validating the files one after the other with a single parser, this engine
+ * <ul>
+ *   <li>parses the schemas only once, into a grammar pool that all parsers share read-only,
+ *       instead of parsing the schemas used by an XML file again for every file;
+ *   <li>validates the files in parallel, with one parser per thread;
+ *   <li>optionally skips the files that did not change since the last check,
+ *       based on the content hashes stored in a manifest file (incremental mode).
+ * </ul>
+ * The output for each file is buffered and printed in the order of the files,
+ * as soon as the file and all files before it are done.
+ * This gives the same report as the sequential validation, but without waiting for the end.
+ * <p>
+ * Schemas with errors or warnings are not put in the grammar pool,
+ * so that these problems are still reported for every XML file that uses such a schema, as before.
+ */
+public class CDBValidationEngine
+{
+	private static final String EXTERNAL_SCHEMA_LOCATION = "http://apache.org/xml/properties/schema/external-schemaLocation";
+
+	/**
+	 * Manifest key for the digest of the schemas and options; all other keys are XML file names.
+	 */
+	private static final String SCHEMAS_DIGEST_KEY = "cdbChecker.schemasDigest";
+
+	private final CDBChecker _checker;
+	private final String externalSchemaLocation;
+	private final List<String> schemaUrls;
+	private final CDBSchemasResolver resolver;
+	private final int threads;
+
+	/**
+	 * Created with the first parser, i.e. not at all if no file has to be validated.
+	 */
+	private XMLGrammarPool grammarPool;
+
+	private final ThreadLocal<SAXParser> parsers = new ThreadLocal<SAXParser>() {
+		@Override
+		protected SAXParser initialValue() {
+			return createParser();
+		}
+	};
+
+	/**
+	 * The manifest file for the incremental mode, or <code>null</code>.
+	 */
+	private File manifestFile;
+	private String schemasDigest;
+	private final Map<String, String> oldHashes = new HashMap<String, String>();
+	private final Map<String, String> newHashes = new LinkedHashMap<String, String>();
+
+	/**
+	 * @param checker  The checker whose options and error flags are used.
+	 * @param externalSchemaLocation  The value of the Xerces external-schemaLocation property, i.e. pairs of
+	 *            targetNamespace and schema URL separated by spaces.
+	 * @param schemaUrls  The URLs of the schemas to preload into the grammar pool.
+	 * @param resolver  The resolver for the schemas; the instance is shared by all threads.
+	 * @param threads  The number of threads that validate XML files.
+	 */
+	public CDBValidationEngine(CDBChecker checker, String externalSchemaLocation, Collection<String> schemaUrls,
+			CDBSchemasResolver resolver, int threads) {
+		_checker = checker;
+		this.externalSchemaLocation = externalSchemaLocation;
+		this.schemaUrls = new ArrayList<String>(schemaUrls);
+		this.resolver = resolver;
+		this.threads = threads;
+	}
+
+	/**
+	 * Enables the incremental mode, and reads the hashes of the files found valid by the last check, if any.
+	 * These hashes are discarded if the schemas or options have changed since the last check.
+	 *
+	 * @param manifestFile  The file with the hashes. It does not need to exist.
+	 * @param schemaFiles  All schema files that could be used by the XML files.
+	 * @return <code>true</code> if the schemas and options are the same as for the last check
+	 *         and the schemas were found valid then.
+	 */
+	public boolean loadManifest(File manifestFile, List<String> schemaFiles) {
+		this.manifestFile = manifestFile;
+		schemasDigest = computeSchemasDigest(schemaFiles);
+		if (!manifestFile.exists()) {
+			return false;
+		}
+		Properties manifest = new Properties();
+		try {
+			FileInputStream fis = new FileInputStream(manifestFile);
+			try {
+				manifest.load(fis);
+			} finally {
+				fis.close();
+			}
+		} catch (IOException e) {
+			System.out.println("[Warning] Could not read manifest " + manifestFile + ", validating all files.");
+			return false;
+		}
+		if (!schemasDigest.equals(manifest.getProperty(SCHEMAS_DIGEST_KEY))) {
+			_checker.logger.fine("Schemas or options changed since the last check, validating all files.");
+			return false;
+		}
+		for (String filename : manifest.stringPropertyNames()) {
+			if (!filename.equals(SCHEMAS_DIGEST_KEY)) {
+				oldHashes.put(filename, manifest.getProperty(filename));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the hashes of the files that were found valid (or skipped as unchanged) to the manifest file,
+	 * if the incremental mode is enabled.
+	 *
+	 * @param schemasValid  <code>false</code> if the schemas had errors, so that the next check validates all files again.
+	 */
+	public void saveManifest(boolean schemasValid) throws IOException {
+		if (manifestFile == null) {
+			return;
+		}
+		Properties manifest = new Properties();
+		manifest.putAll(newHashes);
+		if (schemasValid) {
+			manifest.setProperty(SCHEMAS_DIGEST_KEY, schemasDigest);
+		}
+		File tmpFile = new File(manifestFile.getPath() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(tmpFile);
+		try {
+			manifest.store(fos, "cdbChecker: SHA-1 hashes of the XML files found valid");
+		} finally {
+			fos.close();
+		}
+		if (!tmpFile.renameTo(manifestFile)) {
+			manifestFile.delete();
+			if (!tmpFile.renameTo(manifestFile)) {
+				throw new IOException("Failed to rename " + tmpFile + " to " + manifestFile);
+			}
+		}
+	}
+
+	/**
+	 * Validates the given XML files, printing the results to <code>out</code> in the order of the files.
+	 * Errors are also signalled through {@link CDBChecker#setGlobalErrorFlag(boolean)}.
+	 */
+	public void validate(List<String> filenames, PrintStream out) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<FileResult>> futures = new ArrayList<Future<FileResult>>(filenames.size());
+			for (String filename : filenames) {
+				futures.add(executor.submit(new FileValidation(filename)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				FileResult result;
+				try {
+					result = futures.get(i).get();
+				} catch (ExecutionException e) {
+					out.println("[Error] Failed to validate " + filenames.get(i) + ": " + e.getCause());
+					_checker.setGlobalErrorFlag(true);
+					continue;
+				} catch (InterruptedException e) {
+					out.println("[Error] Interrupted while validating " + filenames.get(i));
+					_checker.setGlobalErrorFlag(true);
+					Thread.currentThread().interrupt();
+					break;
+				}
+				out.write(result.output, 0, result.output.length);
+				out.flush();
+				if (result.valid && result.hash != null) {
+					newHashes.put(result.filename, result.hash);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class FileResult {
+		final String filename;
+		final byte[] output;
+		final boolean valid;
+		final String hash;
+
+		FileResult(String filename, byte[] output, boolean valid, String hash) {
+			this.filename = filename;
+			this.output = output;
+			this.valid = valid;
+			this.hash = hash;
+		}
+	}
+
+	private class FileValidation implements Callable<FileResult> {
+		private final String filename;
+
+		FileValidation(String filename) {
+			this.filename = filename;
+		}
+
+		@Override
+		public FileResult call() {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+			PrintStream fileOut = new PrintStream(buffer);
+			String hash = null;
+			boolean valid;
+			if (manifestFile != null) {
+				try {
+					hash = hashFile(filename);
+				} catch (IOException e) {
+					// validateFile will report it
+				}
+			}
+			if (hash != null && hash.equals(oldHashes.get(filename))) {
+				if (_checker.isVerbose()) {
+					fileOut.println("    " + filename + "[unchanged]");
+				}
+				valid = true;
+			}
+			else {
+				valid = validateFile(filename, fileOut);
+			}
+			fileOut.flush();
+			return new FileResult(filename, buffer.toByteArray(), valid, hash);
+		}
+	}
+
+	/**
+	 * Validates one XML file, with the same checks and output as the former sequential validation.
+	 *
+	 * @return <code>true</code> if no problem at all was found.
+	 */
+	private boolean validateFile(String filename, PrintStream out) {
+		File file = new File(filename);
+		if (file.length() == 0) {
+			out.print(filename + ": [Warning] file is empty.\n");
+			return false;
+		}
+		if (_checker.isVerbose()) {
+			out.print("    " + filename);
+		}
+		CDBErrorHandler errorHandler = new CDBErrorHandler(_checker, out);
+		CDBContentHandler contentHandler = new CDBContentHandler(_checker, out);
+		try {
+			boolean encodingValid = _checker.validateFileEncoding(filename, out);
+
+			SAXParser parser = parsers.get();
+			parser.setErrorHandler(errorHandler);
+			parser.setContentHandler(contentHandler);
+			FileInputStream fis = new FileInputStream(file);
+			try {
+				InputSource inputSource = new InputSource(fis);
+				inputSource.setSystemId("file:///" + file.getAbsolutePath());
+				parser.parse(inputSource);
+			} finally {
+				fis.close();
+			}
+			if (_checker.isVerbose() && encodingValid && !errorHandler.hasErrors()) {
+				out.println("[OK]");
+			}
+			return encodingValid && !errorHandler.hasErrors() && !contentHandler.hasErrors();
+		} catch (SAXException e) {
+			out.println("[SAXException] " + e.getMessage());
+		} catch (IOException e) {
+			out.println("[IOException] Probably " + filename + " doesn't exist.");
+		}
+		return false;
+	}
+
+	/**
+	 * Creates the parser for the calling thread.
+	 * The parsers do not share a symbol table, because Xerces interns all symbols anyway,
+	 * so that the pooled grammars work with the symbol table of any parser.
+	 */
+	private SAXParser createParser() {
+		SAXParser parser = new SAXParser(new SymbolTable(), getGrammarPool());
+		try {
+			parser.setFeature("http://xml.org/sax/features/validation", true);
+			parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+			parser.setFeature("http://xml.org/sax/features/namespace-prefixes", false);
+			parser.setFeature("http://xml.org/sax/features/namespaces", true);
+			parser.setProperty(EXTERNAL_SCHEMA_LOCATION, externalSchemaLocation);
+		} catch (SAXException e) {
+			throw new IllegalStateException("Failed to configure the Xerces parser", e);
+		}
+		parser.setEntityResolver(resolver);
+		return parser;
+	}
+
+	private synchronized XMLGrammarPool getGrammarPool() {
+		if (grammarPool == null) {
+			grammarPool = preloadGrammars();
+		}
+		return grammarPool;
+	}
+
+	/**
+	 * Parses the schemas into a locked grammar pool.
+	 * Each schema is parsed into its own pool first, which can use the grammars already in the shared pool
+	 * (typically the imported ones). Only if there were no errors or warnings, the grammars get copied to the shared pool.
+	 */
+	private XMLGrammarPool preloadGrammars() {
+		XMLGrammarPoolImpl sharedPool = new XMLGrammarPoolImpl();
+		EntityResolverWrapper entityResolver = new EntityResolverWrapper(resolver);
+		int rejected = 0;
+		for (String schemaUrl : schemaUrls) {
+			XMLGrammarPoolImpl pool = new ChainedGrammarPool(sharedPool);
+			ProblemCounter problemCounter = new ProblemCounter();
+			XMLGrammarPreparser preparser = new XMLGrammarPreparser(new SymbolTable());
+			preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+			preparser.setGrammarPool(pool);
+			preparser.setEntityResolver(entityResolver);
+			preparser.setErrorHandler(problemCounter);
+			preparser.setProperty(EXTERNAL_SCHEMA_LOCATION, externalSchemaLocation);
+			try {
+				preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA, new XMLInputSource(null, schemaUrl, null));
+			} catch (XNIException e) {
+				problemCounter.problems++;
+			} catch (IOException e) {
+				problemCounter.problems++;
+			}
+			if (problemCounter.problems == 0) {
+				for (Grammar grammar : pool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA)) {
+					if (!sharedPool.containsGrammar(grammar.getGrammarDescription())) {
+						sharedPool.putGrammar(grammar);
+					}
+				}
+			}
+			else {
+				rejected++;
+			}
+		}
+		sharedPool.lockPool();
+		_checker.logger.fine("Preloaded " + sharedPool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA).length +
+				" schema grammars; " + rejected + " schemas with problems will be loaded for every XML file.");
+		return sharedPool;
+	}
+
+	/**
+	 * A grammar pool that looks up grammars also in a parent pool, but caches only locally.
+	 */
+	private static class ChainedGrammarPool extends XMLGrammarPoolImpl {
+		private final XMLGrammarPool parent;
+
+		ChainedGrammarPool(XMLGrammarPool parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public Grammar retrieveGrammar(XMLGrammarDescription desc) {
+			Grammar grammar = parent.retrieveGrammar(desc);
+			return (grammar != null ? grammar : super.retrieveGrammar(desc));
+		}
+	}
+
+	private static class ProblemCounter implements XMLErrorHandler {
+		int problems = 0;
+
+		public void warning(String domain, String key, XMLParseException exception) {
+			problems++;
+		}
+		public void error(String domain, String key, XMLParseException exception) {
+			problems++;
+		}
+		public void fatalError(String domain, String key, XMLParseException exception) throws XNIException {
+			problems++;
+			throw exception;
+		}
+	}
+
+	/**
+	 * Computes a digest over everything besides the XML file itself that affects its validation:
+	 * the schema files (by name and content), the mapping of namespaces to schemas, and the IDL check option.
+	 * Note that with the IDL check, changes of the interface repository alone do not trigger a new validation.
+	 */
+	private String computeSchemasDigest(List<String> schemaFiles) {
+		MessageDigest md = newDigest();
+		for (String schemaFile : schemaFiles) {
+			String hash;
+			try {
+				hash = hashFile(schemaFile);
+			} catch (IOException e) {
+				hash = "unreadable";
+			}
+			md.update((new File(schemaFile).getName() + "=" + hash + "\n").getBytes());
+		}
+		md.update(externalSchemaLocation.getBytes());
+		md.update((_checker.isCheckIdl() ? "checkIdl" : "").getBytes());
+		return toHex(md.digest());
+	}
+
+	static String hashFile(String filename) throws IOException {
+		MessageDigest md = newDigest();
+		FileInputStream fis = new FileInputStream(filename);
+		try {
+			byte[] buf = new byte[8192];
+			int len;
+			while ((len = fis.read(buf)) > 0) {
+				md.update(buf, 0, len);
+			}
+		} finally {
+			fis.close();
+		}
+		return toHex(md.digest());
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) COSYLAB - Control System Laboratory, 2011
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package com.cosylab.cdb.jdal;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import alma.acs.concurrent.DaemonThreadFactory;
+
+import com.cosylab.cdb.client.CDBAccess;
+import com.cosylab.cdb.client.DAOProxy;
+
+/**
+ * Creates (i.e. reads and parses) the DAOs of a known sequence of curls in a few threads,
+ * ahead of the thread that uses them in the same order.
+ * At most a fixed number of DAOs is read ahead, so that the parsed DAOs of a large CDB are not all held in memory.
+ * <p>
+ * With a single thread, the DAOs are simply created on demand by the calling thread.
+ * Not thread-safe, to be used by a single consumer thread.
+ */
+final class DAOPrefetcher {
+
+	private final CDBAccess cdbAccess;
+	private final List<String> curls;
+	private final ExecutorService executor;
+	private final int window;
+
+	// key=curl, value=its first position in curls
+	private final Map<String, Integer> positions = new HashMap<String, Integer>();
+
+	// key=curl, value=pending or completed creation, in the order of the curls
+	private final LinkedHashMap<String, Future<DAOProxy>> pending = new LinkedHashMap<String, Future<DAOProxy>>();
+	private int next = 0;
+
+	/**
+	 * @param cdbAccess the CDB access whose DAL is already set.
+	 * @param curls the curls in the order in which they will be requested.
+	 * @param threads the number of threads.
+	 */
+	DAOPrefetcher(CDBAccess cdbAccess, List<String> curls, int threads) {
+		this.cdbAccess = cdbAccess;
+		this.curls = curls;
+		for (int i = curls.size() - 1; i >= 0; i--) {
+			positions.put(curls.get(i), i);
+		}
+		if (threads > 1 && curls.size() > 1) {
+			executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("DAOPrefetcher"));
+			window = threads * 4;
+			fill();
+		}
+		else {
+			executor = null;
+			window = 0;
+		}
+	}
+
+	private void fill() {
+		while (pending.size() < window && next < curls.size()) {
+			final String curl = curls.get(next++);
+			if (!pending.containsKey(curl)) {
+				pending.put(curl, executor.submit(new Callable<DAOProxy>() {
+					public DAOProxy call() {
+						return cdbAccess.createDAO(curl);
+					}
+				}));
+			}
+		}
+	}
+
+	/**
+	 * Returns the DAO of the given curl, the same as {@link CDBAccess#createDAO(String)}.
+	 * Curls that were not given to the constructor, or are requested a second time, are created by the calling thread.
+	 * @throws RuntimeException the exception of {@link CDBAccess#createDAO(String)}.
+	 */
+	DAOProxy createDAO(String curl) {
+		Future<DAOProxy> future = pending.remove(curl);
+		if (future == null) {
+			return cdbAccess.createDAO(curl);
+		}
+
+		// curls read ahead before the requested one were skipped by the consumer, and are discarded
+		int position = positions.get(curl);
+		Iterator<String> iter = pending.keySet().iterator();
+		while (iter.hasNext() && positions.get(iter.next()) < position) {
+			iter.remove();
+		}
+		fill();
+
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while reading DAO '" + curl + "'.", ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new RuntimeException("Failed to read DAO '" + curl + "'.", cause);
+		}
+	}
+
+	/**
+	 * Stops the threads. DAOs that were read ahead and not requested are discarded.
+	 */
+	void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		pending.clear();
+	}
+}
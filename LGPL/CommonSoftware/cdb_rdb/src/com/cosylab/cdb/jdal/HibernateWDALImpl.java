@@ -67,6 +67,7 @@ import javax.xml.parsers.SAXParserFactory;
 import org.exolab.castor.net.URILocation;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Criterion;
@@ -185,6 +186,12 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 	
 	static final boolean TMCDB_ACS_ONLY = Boolean.getBoolean("cdb_rdb.acsOnly");
 	
+	/**
+	 * Number of threads that read the component configurations ahead of the XML CDB import, 1 to read them in the importing thread.
+	 * See also {@link HibernateDBUtil#IMPORT_BATCH_SIZE_KEY}.
+	 */
+	static final String IMPORT_THREADS_KEY = "cdb_rdb.import.threads";
+	
 	// a DAL is always valid for *one* configuration:
   	protected String configName = null;
 	protected int configId = -1;
@@ -652,7 +659,11 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 	}
 	
 
-	private void loadSchemas(Session session) throws Throwable {
+	/**
+	 * Persists the schemas of the XML CDB that are not yet in the DB.
+	 * @param schemasByURN filled with the schema records of the configuration, key=URN.
+	 */
+	private void loadSchemas(Session session, Map<String, Schemas> schemasByURN) throws Throwable {
 
 		String schemas = DALImpl.getSchemas(m_root, m_logger);
 		if (schemas == null)
@@ -692,6 +703,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 				schemaRecord.setSchema(file.toString());
 				session.persist(schemaRecord);
 			}
+			schemasByURN.put(urn, schemaRecord);
 		}
 
 	}
@@ -702,6 +714,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 	protected boolean loadXMLCDB(String args[], ORB orb, POA poa, String configName)
 	{
 		m_logger.info("Reading configuration from XML CDB...");
+		final long importStartMillis = System.currentTimeMillis();
 
 		try
 		{
@@ -749,6 +762,22 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 			CDBAccess cdbAccess = new CDBAccess(orb, m_logger);
 			cdbAccess.setDAL(xmlCDB_);
 			
+			// lookup entities already persisted by this import (or found in the DB), to not query them for every component;
+			// only found entities are kept, since the plugin could add more
+			Map<String, Schemas> schemasByURN = new HashMap<String, Schemas>();
+			Map<String, ComponentType> componentTypesByIDL = new HashMap<String, ComponentType>();
+			Map<String, Computer> computersByNetworkName = new HashMap<String, Computer>();
+			Map<String, Container> containersByPathAndName = new HashMap<String, Container>();
+			
+			// components are not flushed one by one, but in batches
+			final int importBatchSize = HibernateDBUtil.getImportBatchSize();
+			int importedComponentCount = 0;
+			DAOPrefetcher componentConfigurationPrefetcher = null;
+			
+			// JDBC batching and ordered inserts only for the import session, not for the sessions serving the DAL
+			final SessionFactory importSessionFactory = hibernateUtil.buildSessionFactory(HibernateDBUtil.getImportProperties());
+			hibernateUtil.registerSessionFactory(importSessionFactory);
+			
 			try
 			{
 				hibernateUtil.beginTransaction();
@@ -790,7 +819,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 				}
 				
 				// load all schemas				
-				loadSchemas(session);
+				loadSchemas(session, schemasByURN);
 
 				try
 				{
@@ -848,8 +877,11 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 					String computerHostName = readString(containerDAO, "DeployInfo/Host", null);
 					if (computerHostName != null)
 					{
-						hostComputer = (Computer)session.createCriteria(Computer.class).
+						hostComputer = computersByNetworkName.get(computerHostName);
+						if (hostComputer == null) {
+							hostComputer = (Computer)session.createCriteria(Computer.class).
 													add(Restrictions.eq("networkName", computerHostName)).uniqueResult();
+						}
 						if (hostComputer == null) {
 							// NOTE: we add some dummy data as computer name, realtime flag, CPU type here
 							String computerName = computerHostName;
@@ -866,6 +898,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 							hostComputer.setPhysicalLocation(null);
 							session.persist(hostComputer);
 						}
+						computersByNetworkName.put(computerHostName, hostComputer);
 					}
 					
 					final String containerPath;
@@ -905,6 +938,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 						container.setPingInterval(pingInterval);
 					container.setAutoloadSharedLibs(containerDAO.get_string("Autoload"));
 					session.persist(container);
+					containersByPathAndName.put(containerPath + "/" + containerName, container);
 					// convert the "Flags" string of concatenated options to ContainerStartupOption 
 					String containerStartFlags = readString(containerDAO, "DeployInfo/Flags", null);
 					ContainerStartupOptionHelper containerStartupOptionHelper = new ContainerStartupOptionHelper(m_logger);
@@ -947,6 +981,22 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 					m_logger.warning("Failed to read MACI/Components DAO, skipping...");
 				}
 				
+				// the component configurations are read (and parsed) ahead, in the order of the loop below
+				List<String> componentConfigurationCurls = new ArrayList<String>();
+				for (Object node : nodes)
+				{
+					String prefix = (node.toString().length() == 0 || node.toString().equals("/")) ? "" : node.toString() + "/";
+					tokenizer = new StringTokenizer((String) componentDAO.get_field_data(prefix + "_elements"), ",");
+					while (tokenizer.hasMoreTokens())
+					{
+						String componentName = prefix + tokenizer.nextToken();
+						if (!componentName.startsWith("*") && readString(componentDAO, componentName+"/Name", null) != null)
+							componentConfigurationCurls.add(COMPONENT_TREE_NAME + "/" + componentName);
+					}
+				}
+				componentConfigurationPrefetcher = new DAOPrefetcher(cdbAccess, componentConfigurationCurls,
+						Integer.getInteger(IMPORT_THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+				
 				Iterator iter = nodes.iterator();
 	            while (iter.hasNext())
 	            {
@@ -1008,11 +1058,15 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 								containerPath = "/"; // for Oracle
 							}
 
-							Container container = (Container)session.createCriteria(Container.class)
-								.add(Restrictions.eq("configuration", config))
-								.add(Restrictions.eq("containerName", containerName))
-								.add(Restrictions.eq("path", containerPath)).uniqueResult();
+							Container container = containersByPathAndName.get(containerPath + "/" + containerName);
+							if (container == null) {
+								container = (Container)session.createCriteria(Container.class)
+									.add(Restrictions.eq("configuration", config))
+									.add(Restrictions.eq("containerName", containerName))
+									.add(Restrictions.eq("path", containerPath)).uniqueResult();
+							}
 							if (container != null) {
+								containersByPathAndName.put(containerPath + "/" + containerName, container);
 								componentContainerId = container.getContainerId();
 								tmpComponentContainer = container;
 							}
@@ -1048,6 +1102,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 								container.setRecovery(false);
 								container.setAutoloadSharedLibs(null);
 								session.persist(container);
+								containersByPathAndName.put(containerPath + "/" + containerName, container);
 								componentContainerId = container.getContainerId();
 								tmpComponentContainer = container;
 							}
@@ -1057,10 +1112,10 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 						boolean almaBranchDoesNotExist = componentName.startsWith("*");
 						boolean forceSubcomponentCheck = false;
 
-						int typeId;
 						String type = componentDAO.get_string(componentName+"/Type");
 						DAOProxy componentConfigurationDAO = null; // pulled out for performance optimization, to avoid reading it twice in many cases
 						Schemas schema = null;
+						ComponentType componentType;
 						
 						{
 							String schemaURN = null;
@@ -1072,7 +1127,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 								{
 										// @TODO: Suppress the NOTICE log (or lower its level) which we get from the CDB code if there is no component configuration under the CDB/alma/ branch.
 										//        NOTICE [CDB-RDB] Curl 'alma/SCHEDULING_MASTERSCHEDULER' does not exist.
-										componentConfigurationDAO = cdbAccess.createDAO(COMPONENT_TREE_NAME + "/" + componentName);
+										componentConfigurationDAO = componentConfigurationPrefetcher.createDAO(COMPONENT_TREE_NAME + "/" + componentName);
 										
 										schemaURN = componentConfigurationDAO.get_string("xmlns");
 
@@ -1117,23 +1172,35 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 								}
 							}
 							
-                            // get the Schema identifier for the schemaURN
-                            schema = (Schemas)session.createCriteria(Schemas.class)
-                            	.add(Restrictions.eq("URN", schemaURN))
-                            	.add(Restrictions.eq("configuration", config)).uniqueResult();
+                            // get the Schema identifier for the schemaURN (a null URN never matches)
+                            if (schemaURN != null)
+                            {
+                            	schema = schemasByURN.get(schemaURN);
+                            	if (schema == null)
+                            	{
+                            		schema = (Schemas)session.createCriteria(Schemas.class)
+                            			.add(Restrictions.eq("URN", schemaURN))
+                            			.add(Restrictions.eq("configuration", config)).uniqueResult();
+                            		if (schema != null)
+                            			schemasByURN.put(schemaURN, schema);
+                            	}
+                            }
                             if (schema == null && !almaBranchDoesNotExist)
                             	m_logger.severe("Component " + componentName + " of XSD type " + schemaURN + " has no XSD file.");
                             
-                            ComponentType componentType = (ComponentType)session.createCriteria(ComponentType.class)
-                            	.add(Restrictions.eq("IDL", type)).uniqueResult();
+                            componentType = componentTypesByIDL.get(type);
                             if (componentType == null)
                             {
-                            	componentType = new ComponentType();
-                            	componentType.setIDL(type);
-                                session.saveOrUpdate(componentType);
+                            	componentType = (ComponentType)session.createCriteria(ComponentType.class)
+                            		.add(Restrictions.eq("IDL", type)).uniqueResult();
+                            	if (componentType == null)
+                            	{
+                            		componentType = new ComponentType();
+                            		componentType.setIDL(type);
+                            		session.saveOrUpdate(componentType);
+                            	}
+                            	componentTypesByIDL.put(type, componentType);
                             }
-
-							typeId = componentType.getComponentTypeId();
 						}
 
 						boolean isControlDevice = !nonControlDeviceSet.contains(type) && !almaBranchDoesNotExist;
@@ -1144,8 +1211,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 						}
 						
 					    Component component = new Component();
-					    // TODO this can be optimized!!!
-					    component.setComponentType((ComponentType)session.get(ComponentType.class, typeId));
+					    component.setComponentType(componentType);
 					    component.setComponentName(realComponentName);
 					    component.setConfiguration(config);
 //					    component.setContainerId(componentContainerId);
@@ -1164,7 +1230,9 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 						component.setXMLDoc(xml);
                     	component.setURN(schema == null ? null : schema.getURN());
 						session.persist(component);
-						session.flush();
+						// flushing every component makes the import quadratic, since each flush checks all entities of the session
+						if (++importedComponentCount % importBatchSize == 0)
+							session.flush();
 					
 						// try to create alma branch (if available)
 						if ((isControlDevice || isCharateristicsDevice) && !almaBranchDoesNotExist) {
@@ -1175,6 +1243,8 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 								}
 								if (plugin != null && isControlDevice)
 								{
+									// the plugin may expect to find the component in the DB
+									session.flush();
 									plugin.controlDeviceImportEpilogue(session, config, cdbAccess, componentName, component);
 								}
 								
@@ -1437,7 +1507,7 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 
 				hibernateUtil.commitTransaction();
 				
-				m_logger.info("Configuration from XML CDB loaded.");
+				m_logger.info("Configuration from XML CDB loaded in " + (System.currentTimeMillis() - importStartMillis) + " ms.");
 			}
 			catch (CDBFieldDoesNotExistEx ex) {
 				throw AcsJCDBFieldDoesNotExistEx.fromCDBFieldDoesNotExistEx(ex);
@@ -1451,6 +1521,10 @@ public class HibernateWDALImpl extends WJDALPOA implements Recoverer {
 			finally
 			{
 				hibernateUtil.closeSession();
+				hibernateUtil.registerSessionFactory(null);
+				importSessionFactory.close();
+				if (componentConfigurationPrefetcher != null)
+					componentConfigurationPrefetcher.shutdown();
 				cdbAccess.destroy();
 
 				xmlCDB_._release();
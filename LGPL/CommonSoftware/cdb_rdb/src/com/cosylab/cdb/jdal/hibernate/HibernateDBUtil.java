@@ -36,6 +36,34 @@ public class HibernateDBUtil {
 	static final String HSQLDB_MEM_USER = "sa";
 	static final String HSQLDB_MEM_PASSWORD = "";
 
+	/**
+	 * Name of the property with the JDBC batch size of the XML CDB import session (<code>hibernate.jdbc.batch_size</code>),
+	 * which is also the number of components after which the import flushes the session.
+	 */
+	public static final String IMPORT_BATCH_SIZE_KEY = "cdb_rdb.import.batchSize";
+	public static final int IMPORT_BATCH_SIZE_DEFAULT = 100;
+
+	/**
+	 * @return the batch size set by {@link #IMPORT_BATCH_SIZE_KEY}, at least 1.
+	 */
+	public static int getImportBatchSize() {
+		return Math.max(1, Integer.getInteger(IMPORT_BATCH_SIZE_KEY, IMPORT_BATCH_SIZE_DEFAULT));
+	}
+
+	/**
+	 * Hibernate properties of the session factory used only by the XML CDB import
+	 * (see {@link HibernateUtil#buildSessionFactory(Properties)}), the other sessions are not batched.
+	 * Inserts are ordered by entity, so that the inserts of a flush form as few JDBC batches as possible
+	 * (no batching is done for tables with identity generated keys).
+	 * @return import session properties.
+	 */
+	public static Properties getImportProperties() {
+		Properties properties = new Properties();
+		properties.setProperty("hibernate.jdbc.batch_size", String.valueOf(getImportBatchSize()));
+		properties.setProperty("hibernate.order_inserts", "true");
+		return properties;
+	}
+
 	private final HibernateUtil hibernateUtil;
 	
 	private final String[] scripts;
@@ -85,6 +85,7 @@ public class HibernateUtil {
     private final ThreadLocal threadSession = new ThreadLocal();
     private final ThreadLocal threadTransaction = new ThreadLocal();
     private final ThreadLocal threadInterceptor = new ThreadLocal();
+    private final ThreadLocal threadSessionFactory = new ThreadLocal();
     
         
     
@@ -157,6 +158,32 @@ public class HibernateUtil {
         }
     }
 
+	/**
+	 * Build an additional session factory from the current configuration, with some properties overridden
+	 * (e.g. JDBC batching for a bulk import). The current configuration and session factory are not changed.
+	 * The caller must close the returned factory.
+	 * @param extraProperties	properties to add to (or override in) the current configuration.
+	 * @return new session factory.
+	 */
+	public SessionFactory buildSessionFactory(Properties extraProperties)
+	throws HibernateUtilException {
+		Configuration config = getConfiguration();
+		synchronized (config) {
+			Properties properties = config.getProperties();
+			Properties originalProperties = new Properties();
+			originalProperties.putAll(properties);
+			try {
+				config.addProperties(extraProperties);
+				return config.buildSessionFactory();
+			} catch (HibernateException ex) {
+				throw new HibernateUtilException(ex);
+			} finally {
+				properties.clear();
+				properties.putAll(originalProperties);
+			}
+		}
+	}
+
 	/**
      * Returns the SessionFactory used for this static class.
      *
@@ -232,12 +259,15 @@ public class HibernateUtil {
             if (s == null) {
                 //log.debug("Opening new Session for this thread.");
                 //System.err.println("Opening new Session for this thread.");
+                SessionFactory factory = (SessionFactory) threadSessionFactory.get();
+                if (factory == null)
+                    factory = getSessionFactory();
                 if (getInterceptor() != null) {
                     //System.err.println("Using interceptor: " + getInterceptor().getClass());
-                    s = getSessionFactory().withOptions().interceptor(getInterceptor()).openSession();
+                    s = factory.withOptions().interceptor(getInterceptor()).openSession();
                 } else {
                     //System.err.println("Without interceptor");
-                    s = getSessionFactory().openSession();
+                    s = factory.openSession();
                 }
                 threadSession.set(s);
             }
@@ -369,6 +399,20 @@ public class HibernateUtil {
         threadInterceptor.set(interceptor);
     }
     
+    /**
+     * Register a session factory with the current thread, e.g. one built by
+     * {@link #buildSessionFactory(Properties)}.
+     * <p>
+     * Every Session opened by the current thread is opened from this factory
+     * instead of the default one. Has no effect if the current Session of the
+     * thread is already open, effective on next close()/getSession().
+     * 
+     * @param factory the session factory, <code>null</code> to use the default one again.
+     */
+    public void registerSessionFactory(SessionFactory factory) {
+        threadSessionFactory.set(factory);
+    }
+    
     private Interceptor getInterceptor() {
         Interceptor interceptor =
                 (Interceptor) threadInterceptor.get();
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2011
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.tmcdb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.logging.Logger;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.omg.CORBA.ORB;
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.POAHelper;
+
+import alma.acs.logging.ClientLogManager;
+
+import com.cosylab.cdb.jdal.HibernateWDALImpl;
+import com.cosylab.cdb.jdal.hibernate.HibernateUtil;
+
+/**
+ * Measures the import of a synthetic XML CDB into the in-memory HSQLDB, as done by <code>hibernateCdbJDal -memory</code>.
+ * The generated CDB has one container per 100 components, and every other component has a configuration
+ * with three BACI properties under the <code>alma</code> branch (of the <code>TestPowerSupplyACS</code> type of the test CDB).
+ * <p>
+ * The time includes the initial loading of the imported configuration; the log message
+ * "Configuration from XML CDB loaded in ..." gives the time of the import alone.
+ * The printed numbers of imported records are meant to be compared between runs with different settings,
+ * e.g. with <code>-Dcdb_rdb.import.threads=1 -Dcdb_rdb.import.batchSize=1</code>
+ * to read the component configurations in the importing thread and flush after every component.
+ * <p>
+ * Only for manual runs from the test directory (for the schemas of <code>CDB/schemas</code>), e.g.
+ * <code>acsStartJava -DACS.cdbpath=$ACSROOT/config/CDB/schemas alma.acs.tmcdb.XmlCdbImportBenchmark 20000</code>.
+ */
+public class XmlCdbImportBenchmark
+{
+	static final String POWER_SUPPLY_TYPE = "IDL:alma/PS/PowerSupply:1.0";
+	static final String[] OTHER_TYPES = {
+		"IDL:alma/acsexmplLamp/Lamp:1.0", "IDL:alma/MOUNT_ACS/Mount:1.0", "IDL:alma/acsexmplFilterWheel/FilterWheel:1.0",
+		"IDL:alma/acsexmplClock/Clock:1.0", "IDL:alma/FRIDGE/FridgeControl:1.0"
+	};
+
+	private static PrintWriter createXml(File dir, String name) throws IOException {
+		dir.mkdirs();
+		return new PrintWriter(new File(dir, name + ".xml"), "ISO-8859-1");
+	}
+
+	private static void copyFile(File from, File to) throws IOException {
+		InputStream in = new FileInputStream(from);
+		try {
+			OutputStream out = new FileOutputStream(to);
+			try {
+				byte[] buffer = new byte[8192];
+				int len;
+				while ((len = in.read(buffer)) > 0) {
+					out.write(buffer, 0, len);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Generates the CDB under <code>root/CDB</code>.
+	 */
+	static void generateCdb(File root, int componentCount) throws IOException {
+		File cdb = new File(root, "CDB");
+
+		File schemas = new File(cdb, "schemas");
+		schemas.mkdirs();
+		File[] testSchemas = new File("CDB/schemas").listFiles();
+		if (testSchemas != null) {
+			for (File schema : testSchemas) {
+				copyFile(schema, new File(schemas, schema.getName()));
+			}
+		}
+
+		PrintWriter wr = createXml(new File(cdb, "MACI/Managers/Manager"), "Manager");
+		wr.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+		wr.println("<Manager xmlns=\"urn:schemas-cosylab-com:Manager:1.0\" xmlns:cdb=\"urn:schemas-cosylab-com:CDB:1.0\"");
+		wr.println("    xmlns:log=\"urn:schemas-cosylab-com:LoggingConfig:1.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+		wr.println("    Timeout=\"50.0\" ClientPingInterval=\"10.0\" ContainerPingInterval=\"10.0\" AdministratorPingInterval=\"10.0\">");
+		wr.println("  <Startup/>");
+		wr.println("  <ServiceComponents><cdb:_ string=\"Log\"/><cdb:_ string=\"CDB\"/></ServiceComponents>");
+		wr.println("  <LoggingConfig/>");
+		wr.println("</Manager>");
+		wr.close();
+
+		int containerCount = (componentCount + 99) / 100;
+		for (int i = 0; i < containerCount; i++) {
+			String containerName = "benchContainer" + i;
+			wr = createXml(new File(cdb, "MACI/Containers/" + containerName), containerName);
+			wr.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+			wr.println("<Container xmlns=\"urn:schemas-cosylab-com:Container:1.0\" xmlns:cdb=\"urn:schemas-cosylab-com:CDB:1.0\"");
+			wr.println("    xmlns:log=\"urn:schemas-cosylab-com:LoggingConfig:1.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+			wr.println("    Timeout=\"20.0\" ManagerRetry=\"10\" ImplLang=\"" + (i % 2 == 0 ? "cpp" : "java") + "\">");
+			wr.println("  <Autoload><cdb:_ string=\"baci\"/></Autoload>");
+			wr.println("  <DeployInfo Host=\"bench" + (i % 10) + ".example.org\" Flags=\"\" KeepAliveTime=\"-1\"/>");
+			wr.println("  <LoggingConfig centralizedLogger=\"Log\" minLogLevel=\"2\" dispatchPacketSize=\"0\" immediateDispatchLevel=\"99\"/>");
+			wr.println("</Container>");
+			wr.close();
+		}
+
+		wr = createXml(new File(cdb, "MACI/Components"), "Components");
+		wr.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+		wr.println("<Components xmlns=\"urn:schemas-cosylab-com:Components:1.0\" xmlns:cdb=\"urn:schemas-cosylab-com:CDB:1.0\"");
+		wr.println("    xmlns:baci=\"urn:schemas-cosylab-com:BACI:1.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">");
+		for (int i = 0; i < componentCount; i++) {
+			String type = (i % 2 == 0 ? POWER_SUPPLY_TYPE : OTHER_TYPES[(i / 2) % OTHER_TYPES.length]);
+			wr.println("  <_ Name=\"BENCH_" + i + "\" Code=\"benchImpl\" Type=\"" + type + "\" Container=\"benchContainer" + (i / 100) + "\" ImplLang=\"cpp\"/>");
+		}
+		wr.println("</Components>");
+		wr.close();
+
+		for (int i = 0; i < componentCount; i += 2) {
+			String componentName = "BENCH_" + i;
+			wr = createXml(new File(cdb, "alma/" + componentName), componentName);
+			wr.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+			wr.println("<TestPowerSupplyACS xmlns=\"urn:schemas-cosylab-com:TestPowerSupplyACS:1.0\" xmlns:baci=\"urn:schemas-cosylab-com:BACI:1.0\"");
+			wr.println("    xmlns:cdb=\"urn:schemas-cosylab-com:CDB:1.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">");
+			wr.println("  <current/>");
+			wr.println("  <readback/>");
+			wr.println("  <status/>");
+			wr.println("</TestPowerSupplyACS>");
+			wr.close();
+		}
+	}
+
+	private static long count(Session session, Class<?> type) {
+		return ((Number) session.createCriteria(type).setProjection(Projections.rowCount()).uniqueResult()).longValue();
+	}
+
+	public static void main(String[] args) throws Exception {
+		int componentCount = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+		Logger logger = ClientLogManager.getAcsLogManager().getLoggerForApplication("XmlCdbImportBenchmark", false);
+
+		File root = new File(System.getProperty("java.io.tmpdir"), "XmlCdbImportBenchmark" + System.currentTimeMillis());
+		long start = System.currentTimeMillis();
+		generateCdb(root, componentCount);
+		System.out.println("Generated CDB with " + componentCount + " components in " + root + " in " + (System.currentTimeMillis() - start) + " ms.");
+
+		ORB orb = ORB.init(new String[0], System.getProperties());
+		POA rootPOA = POAHelper.narrow(orb.resolve_initial_references("RootPOA"));
+		rootPOA.the_POAManager().activate();
+
+		start = System.currentTimeMillis();
+		new HibernateWDALImpl(new String[] { "-root", root.getAbsolutePath(), "-configName", "BENCH", "-memory" }, orb, rootPOA, logger);
+		System.out.println("Imported and loaded in " + (System.currentTimeMillis() - start) + " ms (threads="
+				+ System.getProperty("cdb_rdb.import.threads", "default") + ", batchSize=" + System.getProperty("cdb_rdb.import.batchSize", "default") + ").");
+
+		Session session = HibernateUtil.getInstance(logger).getSessionFactory().openSession();
+		try {
+			System.out.println("Imported " + count(session, Container.class) + " containers, " + count(session, Computer.class) + " computers, "
+					+ count(session, ComponentType.class) + " component types, " + count(session, Component.class) + " components, "
+					+ count(session, BACIProperty.class) + " BACI properties, " + count(session, Schemas.class) + " schemas.");
+		} finally {
+			session.close();
+		}
+
+		orb.shutdown(true);
+		System.exit(0);
+	}
+}
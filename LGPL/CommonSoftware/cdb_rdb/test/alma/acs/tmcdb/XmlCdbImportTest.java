@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2011
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.tmcdb;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.omg.CORBA.ORB;
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.POAHelper;
+
+import alma.acs.logging.ClientLogManager;
+
+import com.cosylab.cdb.jdal.HibernateWDALImpl;
+import com.cosylab.cdb.jdal.hibernate.HibernateDBUtil;
+import com.cosylab.cdb.jdal.hibernate.HibernateUtil;
+
+/**
+ * Checks the rows that the XML CDB import writes for a synthetic CDB (see {@link XmlCdbImportBenchmark#generateCdb(File, int)})
+ * against the expected dump of that CDB, built by {@link #expectedContainers(int)}, {@link #expectedComponents(int)}
+ * and {@link #expectedProperties(int)} from the same parameters as the generator, independently of the importer.
+ * <p>
+ * The CDB is imported into the in-memory HSQLDB twice: once flushing after every component and reading the component
+ * configurations in the importing thread, as the import did before it was batched, and once with a batch size
+ * that leaves a partial last batch.
+ * Only the columns given by the CDB are compared, not the generated IDs nor the defaults from the schemas.
+ */
+public class XmlCdbImportTest extends TestCase {
+
+	private static final int COMPONENT_COUNT = 250;
+
+	private static final String POWER_SUPPLY_URN = "urn:schemas-cosylab-com:TestPowerSupplyACS:1.0";
+
+	/**
+	 * Queries of the imported rows, the parameter is the configuration name.
+	 */
+	private static final String CONTAINER_QUERY =
+		"SELECT ct.ContainerName, ct.Path, ct.ImplLang, n.NetworkName FROM Container ct " +
+		"JOIN Configuration cf ON ct.ConfigurationId = cf.ConfigurationId " +
+		"LEFT JOIN NetworkDevice n ON ct.ComputerId = n.NetworkDeviceId WHERE cf.ConfigurationName = ?";
+	private static final String COMPONENT_QUERY =
+		"SELECT c.ComponentName, c.Path, ct.ContainerName, t.IDL, c.URN, c.ImplLang, c.Code FROM Component c " +
+		"JOIN Configuration cf ON c.ConfigurationId = cf.ConfigurationId JOIN ComponentType t ON c.ComponentTypeId = t.ComponentTypeId " +
+		"LEFT JOIN Container ct ON c.ContainerId = ct.ContainerId WHERE cf.ConfigurationName = ?";
+	private static final String PROPERTY_QUERY =
+		"SELECT c.ComponentName, p.PropertyName FROM BACIProperty p JOIN Component c ON p.ComponentId = c.ComponentId " +
+		"JOIN Configuration cf ON c.ConfigurationId = cf.ConfigurationId WHERE cf.ConfigurationName = ?";
+
+	/**
+	 * Gives access to the import of further configurations.
+	 */
+	private static class ImportingHibernateWDALImpl extends HibernateWDALImpl {
+
+		public ImportingHibernateWDALImpl(String[] args, ORB orb, POA poa, Logger logger) {
+			super(args, orb, poa, logger);
+		}
+
+		public boolean importConfiguration(String name) {
+			return loadXMLCDB(args, orb, poa, name);
+		}
+	}
+
+	private Logger logger;
+	private File root;
+	private ORB orb;
+	private POA rootPOA;
+
+	protected void setUp() throws Exception {
+		logger = ClientLogManager.getAcsLogManager().getLoggerForApplication(getName(), false);
+
+		// as started by hibernateCdbJDal -acsOnly
+		if (System.getProperty("cdb_rdb.hibernate.cfg.filename") == null)
+			System.setProperty("cdb_rdb.hibernate.cfg.filename", "/acsOnly-cdb_rdb-hibernate.cfg.xml");
+		if (System.getProperty("cdb_rdb.plugins.wdal") == null)
+			System.setProperty("cdb_rdb.plugins.wdal", "com.cosylab.cdb.jdal.hibernate.plugin.HibernateWDALAlarmPluginImpl");
+		if (System.getProperty("ACS.cdbpath") == null)
+			System.setProperty("ACS.cdbpath", System.getenv("ACSROOT") + "/config/CDB/schemas");
+
+		root = new File(System.getProperty("java.io.tmpdir"), getClass().getSimpleName() + System.currentTimeMillis());
+		XmlCdbImportBenchmark.generateCdb(root, COMPONENT_COUNT);
+
+		orb = ORB.init(new String[0], System.getProperties());
+		rootPOA = POAHelper.narrow(orb.resolve_initial_references("RootPOA"));
+		rootPOA.the_POAManager().activate();
+	}
+
+	protected void tearDown() throws Exception {
+		System.clearProperty(HibernateDBUtil.IMPORT_BATCH_SIZE_KEY);
+		System.clearProperty("cdb_rdb.import.threads");
+		orb.shutdown(true);
+		HibernateUtil.clearInstance();
+		delete(root);
+		ClientLogManager.getAcsLogManager().shutdown(true);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * @return the rows of the given configuration as sorted strings of space separated values.
+	 */
+	private static List<String> rows(Session session, final String query, final String configName) {
+		final List<String> rows = new ArrayList<String>();
+		session.doWork(new Work() {
+			public void execute(Connection connection) throws SQLException {
+				PreparedStatement statement = connection.prepareStatement(query);
+				try {
+					statement.setString(1, configName);
+					ResultSet rs = statement.executeQuery();
+					int columnCount = rs.getMetaData().getColumnCount();
+					while (rs.next()) {
+						StringBuilder row = new StringBuilder();
+						for (int i = 1; i <= columnCount; i++) {
+							if (i > 1)
+								row.append(' ');
+							row.append(rs.getString(i));
+						}
+						rows.add(row.toString());
+					}
+				} finally {
+					statement.close();
+				}
+			}
+		});
+		Collections.sort(rows);
+		return rows;
+	}
+
+	/**
+	 * @return the sorted rows of {@link #CONTAINER_QUERY} for the generated CDB.
+	 */
+	static List<String> expectedContainers(int componentCount) {
+		List<String> rows = new ArrayList<String>();
+		for (int i = 0; i < (componentCount + 99) / 100; i++) {
+			rows.add("benchContainer" + i + " / " + (i % 2 == 0 ? "cpp" : "java") + " bench" + (i % 10) + ".example.org");
+		}
+		Collections.sort(rows);
+		return rows;
+	}
+
+	/**
+	 * @return the sorted rows of {@link #COMPONENT_QUERY} for the generated CDB.
+	 */
+	static List<String> expectedComponents(int componentCount) {
+		List<String> rows = new ArrayList<String>();
+		for (int i = 0; i < componentCount; i++) {
+			String type = (i % 2 == 0 ? XmlCdbImportBenchmark.POWER_SUPPLY_TYPE : XmlCdbImportBenchmark.OTHER_TYPES[(i / 2) % XmlCdbImportBenchmark.OTHER_TYPES.length]);
+			String urn = (i % 2 == 0 ? POWER_SUPPLY_URN : null);
+			rows.add("BENCH_" + i + " / benchContainer" + (i / 100) + " " + type + " " + urn + " cpp benchImpl");
+		}
+		Collections.sort(rows);
+		return rows;
+	}
+
+	/**
+	 * @return the sorted rows of {@link #PROPERTY_QUERY} for the generated CDB.
+	 */
+	static List<String> expectedProperties(int componentCount) {
+		List<String> rows = new ArrayList<String>();
+		for (int i = 0; i < componentCount; i += 2) {
+			for (String property : new String[] { "current", "readback", "status" }) {
+				rows.add("BENCH_" + i + " " + property);
+			}
+		}
+		Collections.sort(rows);
+		return rows;
+	}
+
+	private void assertImported(String configName) {
+		Session session = HibernateUtil.getInstance(logger).getSessionFactory().openSession();
+		try {
+			assertEquals(expectedContainers(COMPONENT_COUNT), rows(session, CONTAINER_QUERY, configName));
+			assertEquals(expectedComponents(COMPONENT_COUNT), rows(session, COMPONENT_QUERY, configName));
+			assertEquals(expectedProperties(COMPONENT_COUNT), rows(session, PROPERTY_QUERY, configName));
+		} finally {
+			session.close();
+		}
+	}
+
+	public void testImportMatchesExpectedDump() throws Exception {
+		// flush after every component, read the configurations in the importing thread
+		System.setProperty(HibernateDBUtil.IMPORT_BATCH_SIZE_KEY, "1");
+		System.setProperty("cdb_rdb.import.threads", "1");
+		ImportingHibernateWDALImpl wdal = new ImportingHibernateWDALImpl(
+				new String[] { "-root", root.getAbsolutePath(), "-configName", "PERCOMPONENT", "-memory" }, orb, rootPOA, logger);
+		assertImported("PERCOMPONENT");
+
+		System.setProperty(HibernateDBUtil.IMPORT_BATCH_SIZE_KEY, "7");
+		System.clearProperty("cdb_rdb.import.threads");
+		assertTrue(wdal.importConfiguration("BATCHED"));
+		assertImported("BATCHED");
+	}
+}
@@ -22,9 +22,13 @@
 package alma.acs.alarmsystem.source;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 import alma.JavaContainerError.wrappers.AcsJContainerServicesEx;
+import alma.acs.alarmsystem.source.AlarmQueue.AlarmToQueue;
 import alma.acs.container.ContainerServicesBase;
 import alma.acs.logging.AcsLogLevel;
 import alma.acsErrTypeAlarmSourceFactory.ACSASFactoryNotInitedEx;
@@ -124,6 +128,49 @@ public class AlarmSender {
 		}
 	}
 	
+	/**
+	 * Send several alarms with a single push to the alarm service.
+	 * <P>
+	 * The alarm system proxy publishes the pushed alarms in one message
+	 * (one log with the ACS implementation, one ASIMessage with the CERN implementation).
+	 * 
+	 * @param alarmsToSend The alarms (activations and terminations) to send
+	 */
+	public void sendAlarms(Collection<AlarmToQueue> alarmsToSend) {
+		if (alarmsToSend==null || alarmsToSend.isEmpty()) {
+			return;
+		}
+		if (closed) {
+			StringBuilder str = new StringBuilder("Alarm factory closed alarm sending disabled");
+			containerServices.getLogger().log(AcsLogLevel.WARNING,str.toString()); 
+			return;
+		}
+		if (source==null) {
+			try {
+				init();
+			} catch (Throwable t) {
+				containerServices.getLogger().log(AcsLogLevel.ERROR,"Error initializing the alarm service structs",t);
+				return;
+			}
+		}
+		try {
+			// all the alarms of the batch have the same user timestamp
+			Timestamp now = new Timestamp(System.currentTimeMillis());
+			List<ACSFaultState> faultStates = new ArrayList<ACSFaultState>(alarmsToSend.size());
+			for (AlarmToQueue alarm: alarmsToSend) {
+				ACSFaultState fs = ACSAlarmSystemInterfaceFactory.createFaultState(alarm.faultFamily, alarm.faultMember, alarm.faultCode);
+				fs.setDescriptor(alarm.active ? ACSFaultState.ACTIVE : ACSFaultState.TERMINATE);
+				fs.setUserTimestamp(now);
+				Properties properties = alarm.getProperties();
+				fs.setUserProperties(properties==null ? emptyProps : properties);
+				faultStates.add(fs);
+			}
+			source.push(faultStates);
+		} catch (Exception e) {
+			containerServices.getLogger().log(AcsLogLevel.ERROR,"Error sending "+alarmsToSend.size()+" alarms",e);
+		}
+	}
+	
 	/**
 	 * Send an alarm with no user properties
 	 * 
@@ -21,17 +21,21 @@
  */
 package alma.acs.alarmsystem.source;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import alma.acs.alarmsystem.source.AlarmQueue.AlarmToQueue;
-import alma.acs.concurrent.NamedThreadFactory;
 import alma.acs.concurrent.ThreadLoopRunner;
 import alma.acs.concurrent.ThreadLoopRunner.CancelableRunnable;
 import alma.acs.concurrent.ThreadLoopRunner.ScheduleDelayMode;
@@ -41,14 +45,26 @@ import alma.acs.logging.AcsLogLevel;
 /**
  * The implementation of {@link AlarmSource}.
  * <P>
- * Flushing of queued alarms is done by a thread to avoid blocking 
+ * Flushing of queued alarms is done by the {@link #scheduledExecutor} to avoid blocking 
  * the caller if there are too many queued alarms.
  * There is possible critical race if the user executes a sequence
  * of queueAlarms()/flushAlarms(), it happens if the queueAlarms()
  * is called when the thread has not yet finished flushing
  * the alarms.
- * This is avoided by copying the alarms in {@link AlarmSourceImpl#queue}
- * in a temporary immutable vector. 
+ * This is avoided by moving the alarms from {@link AlarmSourceImpl#queue}
+ * into a temporary immutable vector. 
+ * <P>
+ * Changes of the state of the alarms are not sent one by one: the latest state of each alarm
+ * is stored in {@link #changesToPublish} and all the changes are sent together
+ * at the end of the flush window (see {@link #ALARM_FLUSH_WINDOW_PROPNAME}).
+ * Only the latest state of an alarm is sent, and only if it differs from the state sent before.
+ * <BR>
+ * Note that this delays the sending of an alarm by up to the flush window (100 ms by default)
+ * compared to previous versions, which sent each change immediately from the thread of the caller.
+ * Set the flush window to 0 to get the old behavior.
+ * <BR>
+ * The batch is pushed to the alarm system proxy as one collection, that the proxy
+ * publishes in one message (see {@link AlarmSender#sendAlarms(java.util.Collection)}).
  * <P>
  * Instances of {@link AlarmSource} objects should be get with {@link ContainerServices#getAlarmSource()}.
  * 
@@ -59,6 +75,13 @@ public class AlarmSourceImpl implements AlarmSource {
 	
 	/**
 	 * The task to flush the queue of alarms.
+	 * <P>
+	 * The alarms are passed to the same methods used when queuing is disabled,
+	 * so that raised alarms are published with the next batch and cleared alarms
+	 * go through the oscillation suppression.
+	 * The alarms are flushed even if the source has been disabled in the meantime,
+	 * because they were queued before (in particular by {@link AlarmSourceImpl#tearDown()}).
+	 *  
 	 * @see AlarmSourceImpl#queuing
 	 * @author acaproni
 	 */
@@ -78,11 +101,28 @@ public class AlarmSourceImpl implements AlarmSource {
 		@Override
 		public void run() {
 			for (AlarmToQueue alarm: alarmsToFlush) {
-				setAlarm(alarm.faultFamily, alarm.faultMember, alarm.faultCode, alarm.getProperties(), alarm.active);
+				if (alarm.active) {
+					internalAlarmRaise(alarm.faultFamily, alarm.faultMember, alarm.faultCode, alarm.getProperties());
+				} else {
+					alarmsToClean.putIfAbsent(buildAlarmID(alarm.faultFamily, alarm.faultMember, alarm.faultCode), System.currentTimeMillis());
+				}
 			}
 		}
 	}
 	
+	/**
+	 * The task that sends the changes collected in {@link AlarmSourceImpl#changesToPublish},
+	 * scheduled at most once per {@link AlarmSourceImpl#flushWindowMillis}.
+	 */
+	private class PublisherTask implements Runnable {
+		@Override
+		public void run() {
+			// changes stored from now on will be sent by the next task
+			publisherScheduled.set(false);
+			publishChanges();
+		}
+	}
+	
 	/**
 	 * The loop to clear alarms on the alarm service, run every second.
 	 * <P>
@@ -126,6 +166,19 @@ public class AlarmSourceImpl implements AlarmSource {
 	 */
 	public static final int ALARM_OSCILLATION_TIME=1;
 	
+	/**
+	 * Name of the property to set the time (msec) during which the changes of alarms are collected 
+	 * before being sent together to the alarm service.
+	 * <P>
+	 * If 0, each change is sent immediately from the thread that raises or clears the alarm.
+	 */
+	public static final String ALARM_FLUSH_WINDOW_PROPNAME = "alma.acs.alarmsystem.source.flushWindowMillis";
+	
+	/**
+	 * The default for {@link #ALARM_FLUSH_WINDOW_PROPNAME}.
+	 */
+	public static final int ALARM_FLUSH_WINDOW_DEFAULT = 100;
+	
 	/**
 	 * The object to publish alarms
 	 */
@@ -141,8 +194,40 @@ public class AlarmSourceImpl implements AlarmSource {
 	 * Using this queue should avoid sending the same information (raise or clear) several times in a row.
 	 * Note that this is different from the purpose of {@link #alarmsToClean} which limits the alternation
 	 * between raise and clear.
+	 * <P>
+	 * The map is updated when the changes are sent, see {@link #publishChanges()}.
 	 */
 	private final AlarmsMap alarms;
+	
+	/**
+	 * The latest state of the alarms changed since the last sending, 
+	 * i.e. the alarms raised by the user and the alarms cleared by the oscillation loop.
+	 * <P>
+	 * The key is the ID of the alarm; a newer state for the same alarm replaces the older one
+	 * and moves the alarm at the end of the map, so that the alarms are sent in the order of their latest change.
+	 * <P>
+	 * Access to the map, and the update of {@link #alarms} for the alarms taken from the map,
+	 * must be synchronized on the map itself.
+	 * 
+	 * @see #publishChanges()
+	 */
+	private final Map<String, AlarmToQueue> changesToPublish = new LinkedHashMap<String, AlarmToQueue>();
+	
+	/**
+	 * <code>true</code> if a {@link PublisherTask} is scheduled and has not yet started.
+	 */
+	private final AtomicBoolean publisherScheduled = new AtomicBoolean(false);
+	
+	/**
+	 * Serializes the sending of batches, see {@link #publishChanges()}.
+	 * We do not lock <code>this</code> which is used by the queuing methods.
+	 */
+	private final Object publishLock = new Object();
+	
+	/**
+	 * The time window (msec) to collect changes of alarms, see {@link #ALARM_FLUSH_WINDOW_PROPNAME}.
+	 */
+	private final long flushWindowMillis;
 
 	/**
 	 * The queue of alarms to be sent when the queuing will be disabled`.
@@ -180,10 +265,11 @@ public class AlarmSourceImpl implements AlarmSource {
 	private final ConcurrentHashMap<String, Long> alarmsToClean = new ConcurrentHashMap<String, Long>();
 	
 	/**
-	 * The executor to schedule the threads for flushing the queue
-	 * after a given time interval.
+	 * The executor to flush the queue (also after a given time interval),
+	 * and to send the changes of alarms at the end of the flush window.
 	 *
 	 * @see AlarmSource#queueAlarms(long, TimeUnit)
+	 * @see PublisherTask
 	 */
 	private final ScheduledExecutorService scheduledExecutor;
 	
@@ -201,15 +287,28 @@ public class AlarmSourceImpl implements AlarmSource {
 	 * @param containerServices The container services
 	 */
 	public AlarmSourceImpl(ContainerServicesBase containerServices) {
+		this(containerServices, null);
+	}
+	
+	/**
+	 * Constructor with a given sender.
+	 * <P>
+	 * Visibility is public for testing purposes.
+	 * 
+	 * @param containerServices The container services
+	 * @param alarmSender The object to send alarms; if <code>null</code> a new {@link AlarmSender} is used
+	 */
+	public AlarmSourceImpl(ContainerServicesBase containerServices, AlarmSender alarmSender) {
 		if (containerServices==null) {
 			throw new IllegalArgumentException("Invalid null ContainerServicesBase");
 		}
 		this.containerServices=containerServices;
 		alarms=new AlarmsMap(containerServices.getThreadFactory(),containerServices.getLogger());
-		alarmSender=new AlarmSender(containerServices);
+		this.alarmSender=(alarmSender!=null ? alarmSender : new AlarmSender(containerServices));
+		flushWindowMillis=Math.max(0, Long.getLong(ALARM_FLUSH_WINDOW_PROPNAME, ALARM_FLUSH_WINDOW_DEFAULT));
 		
 		// Allocating this optional executor here is cheap enough, because no thread is created, see ThreadPoolExecutor#prestartAllCoreThreads()
-		// The pool size is 1 because we can have only one thread at a time
+		// The pool size is 1 because the tasks are short: they only hand over the alarms to the alarm system
 		scheduledExecutor = Executors.newScheduledThreadPool(1, containerServices.getThreadFactory());
 		
 		oscillationLoop = new ThreadLoopRunner(
@@ -234,16 +333,19 @@ public class AlarmSourceImpl implements AlarmSource {
 			return;
 		}
 		if (queuing) {
-			synchronized (queue) {
-				queue.add(faultFamily, faultMember, faultCode, properties, true);
-			}
+			queue.add(faultFamily, faultMember, faultCode, properties, true);
 			return;
 		}
+		internalAlarmRaise(faultFamily, faultMember, faultCode, properties);
+	}
+	
+	/**
+	 * Raise an alarm, cancelling its pending clearing, if any.
+	 */
+	private void internalAlarmRaise(String faultFamily, String faultMember, int faultCode, Properties properties) {
 		String id= buildAlarmID(faultFamily, faultMember, faultCode);
 		alarmsToClean.remove(id);
-		if (!alarms.raise(id)) {
-			alarmSender.sendAlarm(faultFamily, faultMember, faultCode, properties, true);
-		}
+		storeChange(id, faultFamily, faultMember, faultCode, properties, true);
 	}
 
 	/**
@@ -257,9 +359,7 @@ public class AlarmSourceImpl implements AlarmSource {
 			return;
 		}
 		if (queuing) {
-			synchronized (queue) {
-				queue.add(faultFamily, faultMember, faultCode, null, false);
-			}
+			queue.add(faultFamily, faultMember, faultCode, null, false);
 			return;
 		}
 		String id= buildAlarmID(faultFamily, faultMember, faultCode);
@@ -267,7 +367,7 @@ public class AlarmSourceImpl implements AlarmSource {
 	}
 	
 	/**
-	 * Clear an alarm by sending to the alarm service.
+	 * Clear an alarm by sending to the alarm service (with the next batch).
 	 *  
 	 * @param id The id of the alarm
 	 */
@@ -283,8 +383,69 @@ public class AlarmSourceImpl implements AlarmSource {
 		String faultFamily=alarmMembers[0];
 		String faultMember=alarmMembers[1];
 		String faultCode=alarmMembers[2];
-		if (!alarms.clear(id)) {
-			alarmSender.sendAlarm(faultFamily, faultMember, Integer.parseInt(faultCode), false);
+		storeChange(id, faultFamily, faultMember, Integer.parseInt(faultCode), null, false);
+	}
+	
+	/**
+	 * Store the new state of an alarm, to be sent with the next batch.
+	 * <P>
+	 * With a flush window of 0, the change is sent immediately.
+	 * 
+	 * @param id The ID of the alarm
+	 * @param active The new state of the alarm
+	 */
+	private void storeChange(String id, String faultFamily, String faultMember, int faultCode, Properties properties, boolean active) {
+		synchronized (changesToPublish) {
+			AlarmsMap.AlarmInfo info = alarms.get(id);
+			if (info!=null && info.active==active && !changesToPublish.containsKey(id)) {
+				// Same state as sent before and nothing pending: only update the map, as when sending the alarm
+				if (active) {
+					alarms.raise(id);
+				} else {
+					alarms.clear(id);
+				}
+				return;
+			}
+			changesToPublish.remove(id);
+			changesToPublish.put(id, new AlarmToQueue(faultFamily, faultMember, faultCode, properties, active));
+		}
+		if (flushWindowMillis==0) {
+			publishChanges();
+		} else if (publisherScheduled.compareAndSet(false, true)) {
+			try {
+				scheduledExecutor.schedule(new PublisherTask(), flushWindowMillis, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// Shutting down: tearDown() sends the remaining changes
+				publisherScheduled.set(false);
+			}
+		}
+	}
+	
+	/**
+	 * Send the changes collected in {@link #changesToPublish} to the alarm service, in a single batch.
+	 * <P>
+	 * For each alarm only the latest state is sent, and only if it differs from the state
+	 * sent before (see {@link #alarms}). For example an active alarm that is cleared and raised again 
+	 * inside the flush window is not sent at all, while an alarm raised and then cleared 
+	 * is sent only once, as terminated.
+	 * <P>
+	 * The batches are sent one at a time, in the right order.
+	 */
+	private void publishChanges() {
+		synchronized (publishLock) {
+			List<AlarmToQueue> batch;
+			synchronized (changesToPublish) {
+				batch = new ArrayList<AlarmToQueue>(changesToPublish.size());
+				for (Map.Entry<String, AlarmToQueue> entry: changesToPublish.entrySet()) {
+					AlarmToQueue alarm = entry.getValue();
+					boolean alreadySent = (alarm.active ? alarms.raise(entry.getKey()) : alarms.clear(entry.getKey()));
+					if (!alreadySent) {
+						batch.add(alarm);
+					}
+				}
+				changesToPublish.clear();
+			}
+			alarmSender.sendAlarms(batch);
 		}
 	}
 
@@ -350,18 +511,24 @@ public class AlarmSourceImpl implements AlarmSource {
 		if (flusherFuture!=null) {
 			flusherFuture.cancel(false);
 		}
-		AlarmToQueue[] temp;
-		synchronized (queue) {
-			if (queue.isEmpty()) {
-				return;
+		if (queue.isEmpty()) {
+			return;
+		}
+		// Move the alarms out of the queue: an alarm queued concurrently is either taken here or left for the next flush
+		List<AlarmToQueue> temp = new ArrayList<AlarmToQueue>(queue.size());
+		for (Map.Entry<String, AlarmToQueue> entry: queue.entrySet()) {
+			if (queue.remove(entry.getKey(), entry.getValue())) {
+				temp.add(entry.getValue());
 			}
-			temp = new AlarmToQueue[queue.size()];
-			queue.values().toArray(temp);
-			queue.clear();
 		}
 		
-		ThreadFactory tf = new NamedThreadFactory(containerServices.getThreadFactory(), "AlarmQueueFlusher");
-		tf.newThread(new QueueFlusherTask(temp)).start();
+		QueueFlusherTask flusher = new QueueFlusherTask(temp.toArray(new AlarmToQueue[temp.size()]));
+		try {
+			scheduledExecutor.execute(flusher);
+		} catch (RejectedExecutionException e) {
+			// tearDown() is flushing the alarms: do it synchronously
+			flusher.run();
+		}
 	}
 
 	@Override
@@ -413,6 +580,9 @@ public class AlarmSourceImpl implements AlarmSource {
 			internalAlarmClear(key);
 		}
 		alarmsToClean.clear();
+		
+		// send the changes without waiting for the end of the flush window
+		publishChanges();
 
 		boolean oscillationLoopShutdownOK;
 		try {
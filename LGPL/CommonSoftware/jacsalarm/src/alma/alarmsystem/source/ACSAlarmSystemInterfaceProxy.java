@@ -91,6 +91,10 @@ public class ACSAlarmSystemInterfaceProxy implements ACSAlarmSystemInterface {
 	
 	/**
 	 * Push a collection of fault states.
+	 * <P>
+	 * The fault states are published together in one log:
+	 * a collection with only one fault state is logged like in {@link #push(ACSFaultState)}.
+	 * 
 	 * @param states
 	 * @throws ASIException if the fault state collection can not be pushed.
 	 */
@@ -98,9 +102,22 @@ public class ACSAlarmSystemInterfaceProxy implements ACSAlarmSystemInterface {
 		if (states==null || states.size()==0) {
 			return;
 		}
-		
+		if (states.size()==1) {
+			push(states.iterator().next());
+			return;
+		}
+		StringBuilder sb = new StringBuilder("Alarms sent:");
+		boolean first=true;
 		for (ACSFaultState acsFaultState : states) {
-			push(acsFaultState);
+			if (acsFaultState==null) {
+				continue;
+			}
+			sb.append(first ? " " : ", ");
+			appendFaultState(sb, acsFaultState);
+			first=false;
+		}
+		if (!first) {
+			m_logger.log(AcsLogLevel.ALERT,XmlNormalizer.normalize(sb.toString()));
 		}
 	}
 	
@@ -125,10 +142,21 @@ public class ACSAlarmSystemInterfaceProxy implements ACSAlarmSystemInterface {
 		if (fs==null) {
 			return;
 		}
-		StringBuilder sb = new StringBuilder("Alarm sent: <");
-		sb.append(fs.getFamily()+','+fs.getMember()+','+fs.getCode()+'>');
-		sb.append(" "+fs.getDescriptor());
+		StringBuilder sb = new StringBuilder("Alarm sent: ");
+		appendFaultState(sb, fs);
 		m_logger.log(AcsLogLevel.ALERT,XmlNormalizer.normalize(sb.toString()));
 	}
+	
+	/**
+	 * Append the triplet and the descriptor of a ACSFaultState
+	 * like <code>&lt;FF,FM,FC&gt; ACTIVE</code>
+	 * 
+	 * @param sb The StringBuilder to append the ACSFaultState to
+	 * @param fs The not <code>null</code> ACSFaultState to append
+	 */
+	private void appendFaultState(StringBuilder sb, ACSFaultState fs) {
+		sb.append('<'+fs.getFamily()+','+fs.getMember()+','+fs.getCode()+'>');
+		sb.append(" "+fs.getDescriptor());
+	}
 }
 
@@ -0,0 +1,285 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.alarmsystem.alarmsource.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import alma.acs.alarmsystem.source.AlarmQueue.AlarmToQueue;
+import alma.acs.alarmsystem.source.AlarmSender;
+import alma.acs.alarmsystem.source.AlarmSourceImpl;
+import alma.acs.container.ContainerServicesBase;
+import alma.acs.logging.AcsLogLevel;
+import alma.acs.nc.testsupport.DummyContainerServicesBase;
+import alma.alarmsystem.source.ACSAlarmSystemInterfaceProxy;
+import alma.alarmsystem.source.ACSFaultState;
+import alma.alarmsystem.source.ACSFaultStateImpl;
+
+/**
+ * Test the sending of the changes of alarms in batches done by {@link AlarmSourceImpl}
+ * at the end of the flush window.
+ * <P>
+ * The alarms are not sent to the alarm service but recorded by a {@link RecordingAlarmSender}
+ * so that the test is done entirely by junit by means of assert.
+ * The test does not need ACS services: the source runs with {@link DummyContainerServicesBase}.
+ *
+ * @author acaproni
+ *
+ */
+public class AlarmSourceBatchingTest extends TestCase {
+
+	/**
+	 * Records the batches of alarms instead of sending them.
+	 * <P>
+	 * Each alarm is recorded as <code>FM ACTIVE</code> or <code>FM TERMINATE</code>.
+	 */
+	private static class RecordingAlarmSender extends AlarmSender {
+
+		private final List<List<String>> batches = new ArrayList<List<String>>();
+
+		public RecordingAlarmSender(ContainerServicesBase containerServices) {
+			super(containerServices);
+		}
+
+		@Override
+		public void sendAlarm(String FF, String FM, int FC, Properties properties, boolean active) {
+			List<String> batch = new ArrayList<String>(1);
+			batch.add(FM+(active ? " ACTIVE" : " TERMINATE"));
+			addBatch(batch);
+		}
+
+		@Override
+		public void sendAlarms(Collection<AlarmToQueue> alarmsToSend) {
+			if (alarmsToSend.isEmpty()) {
+				return;
+			}
+			List<String> batch = new ArrayList<String>(alarmsToSend.size());
+			for (AlarmToQueue alarm: alarmsToSend) {
+				batch.add(alarm.faultMember+(alarm.active ? " ACTIVE" : " TERMINATE"));
+			}
+			addBatch(batch);
+		}
+
+		private synchronized void addBatch(List<String> batch) {
+			batches.add(batch);
+			notifyAll();
+		}
+
+		/**
+		 * Wait for the next batch
+		 *
+		 * @param timeout The max time to wait (msec)
+		 * @return The alarms of the next batch or <code>null</code> in case of timeout
+		 */
+		public synchronized List<String> awaitBatch(long timeout) throws InterruptedException {
+			long deadline = System.currentTimeMillis()+timeout;
+			while (batches.isEmpty() && System.currentTimeMillis()<deadline) {
+				wait(Math.max(1, deadline-System.currentTimeMillis()));
+			}
+			return batches.isEmpty() ? null : batches.remove(0);
+		}
+
+		/**
+		 * @return The number of batches received and not yet read
+		 */
+		public synchronized int getBatchesCount() {
+			return batches.size();
+		}
+	}
+
+	/**
+	 * The flush window (msec) used by the test.
+	 * <P>
+	 * It is longer than the time needed by the oscillation loop to clear an alarm
+	 * (at most twice {@link AlarmSourceImpl#ALARM_OSCILLATION_TIME}), so that the clearing
+	 * happens inside the window.
+	 */
+	private static final long FLUSH_WINDOW=4000;
+
+	/**
+	 * The fault family of the alarms
+	 */
+	private static final String FF = "BatchFF";
+
+	/**
+	 * The container services for the source
+	 */
+	private ContainerServicesBase containerServices;
+
+	/**
+	 * The source to test.
+	 */
+	private AlarmSourceImpl alarmSource;
+
+	/**
+	 * The sender that records the alarms
+	 */
+	private RecordingAlarmSender alarmSender;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Logger logger = Logger.getLogger(getName());
+		logger.setLevel(Level.WARNING);
+		containerServices = new DummyContainerServicesBase(getName(), logger);
+		System.setProperty(AlarmSourceImpl.ALARM_FLUSH_WINDOW_PROPNAME, String.valueOf(FLUSH_WINDOW));
+		alarmSender = new RecordingAlarmSender(containerServices);
+		alarmSource= new AlarmSourceImpl(containerServices, alarmSender);
+		alarmSource.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (alarmSource!=null) {
+			alarmSource.tearDown();
+		}
+		System.clearProperty(AlarmSourceImpl.ALARM_FLUSH_WINDOW_PROPNAME);
+		super.tearDown();
+	}
+
+	/**
+	 * Only the latest state of an alarm changed inside the flush window is sent,
+	 * and only if it differs from the state sent before.
+	 *
+	 * @throws Exception
+	 */
+	public void testCollapseInsideWindow() throws Exception {
+		for (int t=0; t<5; t++) {
+			alarmSource.raiseAlarm(FF, "A", 1);
+		}
+		alarmSource.raiseAlarm(FF, "B", 1);
+		assertEquals("Nothing must be sent before the end of the window", 0, alarmSender.getBatchesCount());
+		assertEquals(Arrays.asList("A ACTIVE", "B ACTIVE"), alarmSender.awaitBatch(2*FLUSH_WINDOW));
+
+		// C is raised and cleared: only the termination is sent
+		// A is cleared and raised again: nothing is sent
+		alarmSource.raiseAlarm(FF, "C", 1);
+		alarmSource.clearAlarm(FF, "C", 1);
+		alarmSource.clearAlarm(FF, "A", 1);
+		// Wait until the oscillation loop cleared A, still inside the window
+		Thread.sleep(FLUSH_WINDOW*3/4);
+		alarmSource.raiseAlarm(FF, "A", 1);
+		assertEquals(Arrays.asList("C TERMINATE"), alarmSender.awaitBatch(2*FLUSH_WINDOW));
+
+		// A and B are active already
+		alarmSource.raiseAlarm(FF, "A", 1);
+		alarmSource.raiseAlarm(FF, "B", 1);
+		assertNull(alarmSender.awaitBatch(2*FLUSH_WINDOW));
+	}
+
+	/**
+	 * The alarms of a batch are sent in the order of their latest change,
+	 * and the batches in the order they have been collected.
+	 *
+	 * @throws Exception
+	 */
+	public void testOrdering() throws Exception {
+		List<String> expected = new ArrayList<String>();
+		for (int t=0; t<10; t++) {
+			alarmSource.raiseAlarm(FF, "FM"+t, 1);
+			if (t!=3) {
+				expected.add("FM"+t+" ACTIVE");
+			}
+		}
+		// The new change of FM3 moves it at the end of the batch
+		alarmSource.raiseAlarm(FF, "FM3", 1);
+		expected.add("FM3 ACTIVE");
+		assertEquals(expected, alarmSender.awaitBatch(2*FLUSH_WINDOW));
+
+		alarmSource.clearAlarm(FF, "FM5", 1);
+		alarmSource.clearAlarm(FF, "FM1", 1);
+		alarmSource.raiseAlarm(FF, "FM10", 1);
+		List<String> batch = alarmSender.awaitBatch(2*FLUSH_WINDOW);
+		assertNotNull(batch);
+		// FM10 has been raised before the oscillation loop cleared the other alarms
+		assertEquals("FM10 ACTIVE", batch.get(0));
+		assertEquals(3, batch.size());
+		assertTrue(batch.containsAll(Arrays.asList("FM1 TERMINATE", "FM5 TERMINATE")));
+	}
+
+	/**
+	 * {@link AlarmSourceImpl#tearDown()} sends the pending changes, the queued alarms
+	 * and the alarms waiting to be cleared, without waiting for the end of the flush window.
+	 *
+	 * @throws Exception
+	 */
+	public void testFlushOnTearDown() throws Exception {
+		alarmSource.raiseAlarm(FF, "A", 1);
+		alarmSource.queueAlarms();
+		alarmSource.raiseAlarm(FF, "B", 1);
+		alarmSource.clearAlarm(FF, "A", 1);
+		assertEquals("Nothing must be sent before the end of the window", 0, alarmSender.getBatchesCount());
+
+		alarmSource.tearDown();
+		alarmSource=null;
+		// tearDown() is synchronous: A has never been sent as active
+		assertEquals(1, alarmSender.getBatchesCount());
+		assertEquals(Arrays.asList("B ACTIVE", "A TERMINATE"), alarmSender.awaitBatch(0));
+	}
+
+	/**
+	 * The ACS implementation of the alarm system publishes a collection
+	 * of fault states in one log, and a single fault state as before.
+	 * 
+	 * @throws Exception
+	 */
+	public void testCollectionSentInOneMessage() throws Exception {
+		final List<String> messages = new ArrayList<String>();
+		Logger logger = Logger.getLogger(getName()+".proxy");
+		logger.setUseParentHandlers(false);
+		logger.addHandler(new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				if (record.getLevel().equals(AcsLogLevel.ALERT)) {
+					messages.add(record.getMessage());
+				}
+			}
+			@Override
+			public void flush() {}
+			@Override
+			public void close() {}
+		});
+		ACSAlarmSystemInterfaceProxy proxy = new ACSAlarmSystemInterfaceProxy("BatchSource", logger);
+
+		List<ACSFaultState> states = new ArrayList<ACSFaultState>();
+		for (int t=0; t<3; t++) {
+			ACSFaultState fs = new ACSFaultStateImpl(FF, "FM"+t, 1);
+			fs.setDescriptor(t==1 ? ACSFaultState.TERMINATE : ACSFaultState.ACTIVE);
+			states.add(fs);
+		}
+		proxy.push(states);
+		proxy.push(states.subList(0, 1));
+		proxy.push(new ArrayList<ACSFaultState>());
+		assertEquals(2, messages.size());
+		assertEquals("Alarms sent: &lt;BatchFF,FM0,1&gt; ACTIVE, &lt;BatchFF,FM1,1&gt; TERMINATE, &lt;BatchFF,FM2,1&gt; ACTIVE", messages.get(0));
+		assertEquals("Alarm sent: &lt;BatchFF,FM0,1&gt; ACTIVE", messages.get(1));
+	}
+}
@@ -21,15 +21,26 @@
  */
 package alma.acs.classloading;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.StringTokenizer;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.security.CodeSource;
+import java.util.Enumeration;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import alma.acs.makesupport.AcsJarFileFinder;
-
 /**
  * The component-specific class loader.
  * Attempts to load classes directly, and only delegates to parent class loader after it failed.
@@ -41,6 +52,10 @@ import alma.acs.makesupport.AcsJarFileFinder;
  * The startup scripts must set this property.
  * Other jar files (e.g. ACS jars) must be in different directories than those given by this property.  
  * <p>
+ * The jar files are not scanned by every component class loader. They are looked up in the container-wide
+ * {@link ComponentJarIndex}, which also shares the opened <code>JarFile</code>s among the component class loaders.
+ * Also the resources are read from these shared <code>JarFile</code>s, see {@link #findResource(String)}.
+ * <p>
  * It is important to call the <code>close()</code> method when done with the classloader. 
  * Since ACS 12.3 (JDK 1.7) this method is provided by the base class. 
  * After changes in this area, make sure to manually run AcsComponentClassLoaderEnduranceTest to verify 
@@ -68,10 +83,26 @@ public class AcsComponentClassLoader extends URLClassLoader
 	 */
 	public static final String PROPERTY_CLASSLOADERVERBOSE = "acs.components.classloader.verbose";
 
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+
 	private boolean verbose;
 	private final Logger logger;
 	private final String componentName;
 
+	/**
+	 * The container-wide index of the component jar files.
+	 */
+	private final ComponentJarIndex jarIndex;
+
+	/**
+	 * The shared jar files that this class loader has acquired from the index, to be released in {@link #close()}.
+	 */
+	private final ConcurrentMap<ComponentJarIndex.Jar, JarFile> openJars = new ConcurrentHashMap<ComponentJarIndex.Jar, JarFile>();
+
+	private volatile boolean closed;
+
     /**
      * @param parent  parent class loader (currently the container class loader)
      * @param logger  the container logger, for debug output (see <code>PROPERTY_CLASSLOADERVERBOSE</code>). 
@@ -92,118 +123,325 @@ public class AcsComponentClassLoader extends URLClassLoader
 		}
 //System.out.println("Property '" + PROPERTY_JARDIRS + "' is set to " + jarDirPath);
 		
-		File[] jarDirs = parseJarDirs(jarDirPath);
+		jarIndex = ComponentJarIndex.getIndex(jarDirPath, logger);
 
-		AcsJarFileFinder jarFinder = new AcsJarFileFinder(jarDirs, null);
-		jarFinder.setVerbose(verbose);
-		File[] allJars = jarFinder.getAllFiles();
-		
-		for (int i = 0; i < allJars.length; i++) {
-			try {
-				addURL(allJars[i].toURI().toURL());
-				if (verbose) {
-		        	logger.finer("added " + allJars[i].getAbsolutePath() + 
-		        			" to the path of the component classloader for " + componentName);
-				}
-			}
-			catch (Exception e) {
-				logger.log(Level.WARNING, "failed to add " + allJars[i].getAbsolutePath() + 
-					" to the path of the component classloader for " + componentName, e);
+		if (verbose) {
+			for (ComponentJarIndex.Jar jar : jarIndex.getAllJars()) {
+	        	logger.finer("added " + jar.getFile().getAbsolutePath() + 
+	        			" to the path of the component classloader for " + componentName);
 			}
 		}
-
-		if (verbose) {		
-//			//test 
-//			URL[] urls = getURLs();
-//			System.out.println("first URL is " + urls[0].toString());
-//			System.out.println("last URL is " + urls[urls.length-1].toString());
-		}
 	}
 
-	private File[] parseJarDirs(String jarDirPath)
-	{
-		StringTokenizer tok = new StringTokenizer(jarDirPath, File.pathSeparator);
-		File[] jarDirs = new File[tok.countTokens()];
-		for (int i = 0; tok.hasMoreTokens(); i++) {
-			jarDirs[i] = new File(tok.nextToken());
-			if (verbose) {
-				logger.finer("Classloader for component '" + componentName + "' will look for jar files in directory "
-						+ jarDirs[i].getAbsolutePath());
-			}
-		}
-		return jarDirs;
+	/**
+	 * @return the URLs of the component jar files.
+	 * @see java.net.URLClassLoader#getURLs()
+	 */
+	public URL[] getURLs() {
+		return jarIndex.getURLs();
 	}
 	
-	
 	/**
 	 * Attempts to load the given class, and only delegates to parent class loader if it failed.
      * This bottom-up direction of classloading in the classloader hierarchy resembles the J2EE convention,
      * and thus violates the normal J2SE top-down direction.
      * <p>
-     * TODO-: check if certain system or ACS classes should be skipped and delegated upward right away.
-     * This may improve performance, assuming a bunch of <code>name.startsWith("java.")</code> etc are faster than 
-     * <code>findLoadedClass</code> and <code>findClass</code>.
+     * This class loader is registered as parallel capable, so that only concurrent requests for the same class get serialized.
+     * Classes that are not in the component jar files (e.g. JDK and ACS classes) are delegated to the parent
+     * without opening any jar file, see {@link ComponentJarIndex}.
      * 
 	 * @see java.lang.ClassLoader#loadClass(java.lang.String, boolean)
 	 */
-	protected synchronized Class<?> loadClass(String name, boolean resolve)
+	protected Class<?> loadClass(String name, boolean resolve)
 			throws ClassNotFoundException
 	{
-//		System.out.println("### load " + name);
-		// First, check if the class has already been loaded by this classloader
-		Class<?> c = findLoadedClass(name);
-		if (c == null) {
-			// try to load the component impl class before delegating to the parent class loader.
-			try {
-				c = findClass(name);
-			}
-			catch (ClassNotFoundException e) {
-				// fallthrough: try parent class loader after all;
-			}
+		synchronized (getClassLoadingLock(name)) {
+//			System.out.println("### load " + name);
+			// First, check if the class has already been loaded by this classloader
+			Class<?> c = findLoadedClass(name);
 			if (c == null) {
-				// The super implementation will delegate to the parent class loader.
-				// This is the default for all J2SE class loaders: first try parent, then self
-				if (verbose) {
-					logger.finer("AcsComponentClassLoader will delegate loading '" + name + "' to parent CL, a "
-							+ getParent().getClass().getName());
+				// try to load the component impl class before delegating to the parent class loader.
+				try {
+					c = findClass(name);
+				}
+				catch (ClassNotFoundException e) {
+					// fallthrough: try parent class loader after all;
+				}
+				if (c == null) {
+					// The super implementation will delegate to the parent class loader.
+					// This is the default for all J2SE class loaders: first try parent, then self
+					if (verbose) {
+						logger.finer("AcsComponentClassLoader will delegate loading '" + name + "' to parent CL, a "
+								+ getParent().getClass().getName());
+					}
+					c = super.loadClass(name, false);
 				}
-				c = super.loadClass(name, false);
 			}
+			else if (verbose) {
+	        	logger.finer("Class '" + name + "' already loaded by AcsComponentClassLoader for '" + componentName + 
+	        			"'. Nothing to do.");
+	        }
+	        
+			if (resolve) {
+				resolveClass(c);
+			}
+			return c;
 		}
-		else if (verbose) {
-        	logger.finer("Class '" + name + "' already loaded by AcsComponentClassLoader for '" + componentName + 
-        			"'. Nothing to do.");
-        }
-        
-		if (resolve) {
-			resolveClass(c);
-		}
-		return c;
 	}
 
     
 	/**
-	 * Calls <code>super.findClass(name)</code> and provides some System.out logging if in verbose mode.
+	 * Loads the class from the component jar files that may contain it according to the {@link ComponentJarIndex},
+	 * and provides some logging if in verbose mode.
 	 * 
 	 * @see java.lang.ClassLoader#findClass(java.lang.String)
 	 */
 	protected Class<?> findClass(String name) throws ClassNotFoundException
 	{
-		Class<?> clazz = null;
+		String path = name.replace('.', '/').concat(".class");
+		for (ComponentJarIndex.Jar jar : jarIndex.getJars(path)) {
+			JarFile jarFile = getJarFile(jar);
+			if (jarFile == null) {
+				continue;
+			}
+			JarEntry entry = jarFile.getJarEntry(path);
+			if (entry != null) {
+				Class<?> clazz = null;
+				try {
+					clazz = defineClass(name, jar, jarFile, entry);
+				}
+				catch (IOException ex) {
+					throw new ClassNotFoundException(name, ex);
+				}
+		        if (verbose) {
+		        	logger.finer("Class loader for component '" + componentName + "' loaded class " + name);
+		        }
+				return clazz;
+			}
+		}
+// should not be logged even in verbose mode, since this method is called for any class in the J2EE bottom-up classloader approach
+		throw new ClassNotFoundException(name);
+	}
+
+	private Class<?> defineClass(String name, ComponentJarIndex.Jar jar, JarFile jarFile, JarEntry entry) throws IOException
+	{
+		int pos = name.lastIndexOf('.');
+		if (pos > 0) {
+			String pkgName = name.substring(0, pos);
+			if (getPackage(pkgName) == null) {
+				try {
+					Manifest manifest = jarFile.getManifest();
+					if (manifest != null) {
+						definePackage(pkgName, manifest, jar.getURL());
+					}
+					else {
+						definePackage(pkgName, null, null, null, null, null, null, null);
+					}
+				}
+				catch (IllegalArgumentException ex) {
+					// package was defined concurrently for another class
+				}
+			}
+		}
+		
+		byte[] bytes = readEntry(jarFile, entry);
+		// the code signers are available only after reading the entry
+		CodeSource cs = new CodeSource(jar.getURL(), entry.getCodeSigners());
+		return defineClass(name, bytes, 0, bytes.length, cs);
+	}
+
+	private static byte[] readEntry(JarFile jarFile, JarEntry entry) throws IOException
+	{
+		InputStream in = jarFile.getInputStream(entry);
 		try {
-			clazz = super.findClass(name);
-        }
-		catch (ClassNotFoundException e) {
-// should be commented out even for verbose mode, since this method is called for any class in the J2EE bottom-up classloader approach
-//			if (verbose) {
-//				System.out.println(AcsComponentClassLoader.class.getName() + " failed to load class " + name);
-//			}
-			throw e;
+			long size = entry.getSize();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? (int) size : 8192);
+			byte[] buffer = new byte[8192];
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+				out.write(buffer, 0, len);
+			}
+			return out.toByteArray();
 		}
-        if (verbose) {
-        	logger.finer("Class loader for component '" + componentName + "' loaded class " + name);
-        }
-		return clazz;
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @see java.net.URLClassLoader#findResource(java.lang.String)
+	 */
+	public URL findResource(String name)
+	{
+		for (ComponentJarIndex.Jar jar : jarIndex.getJars(name)) {
+			URL url = findResource(jar, name);
+			if (url != null) {
+				return url;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @see java.net.URLClassLoader#findResources(java.lang.String)
+	 */
+	public Enumeration<URL> findResources(String name) throws IOException
+	{
+		Vector<URL> urls = new Vector<URL>();
+		for (ComponentJarIndex.Jar jar : jarIndex.getJars(name)) {
+			URL url = findResource(jar, name);
+			if (url != null) {
+				urls.add(url);
+			}
+		}
+		return urls.elements();
+	}
+
+	/**
+	 * Creates the <code>jar:</code> URL of the resource with a {@link ResourceURLStreamHandler}, 
+	 * so that the resource is read from the shared JarFile of the index 
+	 * and not from the JDK's own cache of JarFiles for <code>jar:</code> URLs.
+	 */
+	private URL findResource(ComponentJarIndex.Jar jar, String name)
+	{
+		JarFile jarFile = getJarFile(jar);
+		if (jarFile != null && jarFile.getJarEntry(name) != null) {
+			try {
+				return new URL("jar", "", -1, jar.getURL() + "!/" + name, new ResourceURLStreamHandler(jar, name));
+			}
+			catch (MalformedURLException ex) {
+				logger.log(Level.FINE, "failed to create URL for resource " + name + " in " + jar, ex);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Opens the resource URLs of this class loader through {@link #getJarFile(ComponentJarIndex.Jar)},
+	 * so that reading a resource does not open the jar file once more.
+	 * After this class loader has been closed, the resources can no longer be read.
+	 */
+	private class ResourceURLStreamHandler extends URLStreamHandler
+	{
+		private final ComponentJarIndex.Jar jar;
+		private final String name;
+
+		ResourceURLStreamHandler(ComponentJarIndex.Jar jar, String name) {
+			this.jar = jar;
+			this.name = name;
+		}
+
+		protected URLConnection openConnection(URL url) throws IOException {
+			return new ResourceURLConnection(url, jar, name);
+		}
+	}
+
+	private class ResourceURLConnection extends URLConnection
+	{
+		private final ComponentJarIndex.Jar jar;
+		private final String name;
+		private JarFile jarFile;
+		private JarEntry entry;
+
+		ResourceURLConnection(URL url, ComponentJarIndex.Jar jar, String name) {
+			super(url);
+			this.jar = jar;
+			this.name = name;
+		}
+
+		public void connect() throws IOException {
+			if (connected) {
+				return;
+			}
+			jarFile = getJarFile(jar);
+			if (jarFile == null) {
+				throw new IOException("Cannot read " + url + ": the component classloader for " + componentName + " was closed");
+			}
+			entry = jarFile.getJarEntry(name);
+			if (entry == null) {
+				throw new FileNotFoundException(url.toString());
+			}
+			connected = true;
+		}
+
+		public InputStream getInputStream() throws IOException {
+			connect();
+			return jarFile.getInputStream(entry);
+		}
+
+		public int getContentLength() {
+			long length = getContentLengthLong();
+			return ( length > Integer.MAX_VALUE ? -1 : (int) length );
+		}
+
+		public long getContentLengthLong() {
+			try {
+				connect();
+				return entry.getSize();
+			}
+			catch (IOException ex) {
+				return -1;
+			}
+		}
+
+		public long getLastModified() {
+			try {
+				connect();
+				return entry.getTime();
+			}
+			catch (IOException ex) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns the shared JarFile, acquiring it from the index on first use by this class loader.
+	 * @return the JarFile, or <code>null</code> if it cannot be opened or this class loader was closed.
+	 */
+	private JarFile getJarFile(ComponentJarIndex.Jar jar)
+	{
+		JarFile jarFile = openJars.get(jar);
+		if (jarFile == null) {
+			if (closed) {
+				return null;
+			}
+			try {
+				jarFile = jar.acquire();
+			}
+			catch (IOException ex) {
+				logger.log(Level.WARNING, "failed to open " + jar + " for the component classloader for " + componentName, ex);
+				return null;
+			}
+			JarFile existing = openJars.putIfAbsent(jar, jarFile);
+			if (existing != null) {
+				jar.release();
+				jarFile = existing;
+			}
+			else if (closed && openJars.remove(jar) != null) {
+				// raced with close()
+				jar.release();
+				return null;
+			}
+		}
+		return jarFile;
+	}
+
+	/**
+	 * Releases the jar files used by this class loader.
+	 * The shared JarFiles get closed when no other component class loader uses them.
+	 * 
+	 * @see java.net.URLClassLoader#close()
+	 */
+	public void close() throws IOException
+	{
+		closed = true;
+		for (ComponentJarIndex.Jar jar : openJars.keySet()) {
+			if (openJars.remove(jar) != null) {
+				jar.release();
+			}
+		}
+		super.close();
 	}
 
     protected void finalize() throws Throwable {
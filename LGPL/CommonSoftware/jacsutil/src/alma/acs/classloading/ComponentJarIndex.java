@@ -0,0 +1,350 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.classloading;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import alma.acs.makesupport.AcsJarFileFinder;
+
+/**
+ * Container-wide index of the component jar files, shared by all {@link AcsComponentClassLoader} instances.
+ * <p>
+ * Before, every component class loader scanned the jar directories and, because of the bottom-up class loading,
+ * opened and searched every component jar file for every class it was asked for, including all JDK and ACS classes.
+ * With many components this made component activation slow and kept a large number of <code>JarFile</code>s open.
+ * <p>
+ * This index is built only once per value of the <code>acs.components.classpath.jardirs</code> property.
+ * It maps each directory inside the jar files (i.e. the class package) to the jar files that contain entries in that directory,
+ * in the same order of precedence as the jar files were given to the component class loader so far.
+ * A component class loader therefore only opens those jar files that can actually contain a requested class or resource.
+ * <p>
+ * The index is immutable. When {@link #getIndex(String, Logger)} finds that jar files were added, removed or changed
+ * in the jar directories, it builds a new index, re-using the entries of the unchanged jar files.
+ * Class loaders that already exist keep working with the index they were created with.
+ * <p>
+ * The <code>JarFile</code>s are shared among the class loaders and reference counted (see {@link Jar#acquire()}
+ * and {@link Jar#release()}); a jar file gets closed as soon as the last class loader that uses it gets closed.
+ */
+public class ComponentJarIndex
+{
+	/**
+	 * The jar directories are checked for changes at most once in this time.
+	 */
+	public static final long REFRESH_CHECK_INTERVAL_MILLIS = 1000;
+
+	/**
+	 * The indexes, with the jar dir path as key.
+	 */
+	private static final Map<String, ComponentJarIndex> indexes = new HashMap<String, ComponentJarIndex>();
+
+	/**
+	 * A component jar file, shared by all indexes and class loaders.
+	 */
+	public static final class Jar
+	{
+		private final File file;
+		private final URL url;
+		private final long lastModified;
+		private final long length;
+
+		/**
+		 * The directories inside the jar file which contain files.
+		 */
+		private final String[] dirs;
+
+		private JarFile jarFile;
+		private int refCount;
+
+		private Jar(File file, URL url, long lastModified, long length, String[] dirs) {
+			this.file = file;
+			this.url = url;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.dirs = dirs;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public URL getURL() {
+			return url;
+		}
+
+		/**
+		 * @return <code>true</code> if the jar file on disk is still the one that was indexed.
+		 */
+		boolean isUpToDate(File file) {
+			return this.file.equals(file) && lastModified == file.lastModified() && length == file.length();
+		}
+
+		/**
+		 * Opens the jar file if it is not already open, and increments its reference count.
+		 * Every call must be matched by a call to {@link #release()}.
+		 */
+		public synchronized JarFile acquire() throws IOException {
+			if (jarFile == null) {
+				jarFile = new JarFile(file);
+			}
+			refCount++;
+			return jarFile;
+		}
+
+		/**
+		 * Decrements the reference count and closes the jar file when it is no longer used.
+		 */
+		public synchronized void release() {
+			if (refCount == 0) {
+				return;
+			}
+			if (--refCount == 0) {
+				try {
+					jarFile.close();
+				} catch (IOException ex) {
+					// nothing we can do
+				}
+				jarFile = null;
+			}
+		}
+
+		/**
+		 * @return the number of class loaders that currently use the jar file.
+		 */
+		public synchronized int getRefCount() {
+			return refCount;
+		}
+
+		public String toString() {
+			return file.getAbsolutePath();
+		}
+	}
+
+	private final String jarDirPath;
+	private final File[] jarDirs;
+	private final Jar[] jars;
+	private final URL[] urls;
+	private final Map<String, Jar[]> dirToJars;
+	private volatile long lastCheckMillis;
+
+	private static final Jar[] NO_JARS = new Jar[0];
+
+	private ComponentJarIndex(String jarDirPath, File[] jarDirs, Jar[] jars) {
+		this.jarDirPath = jarDirPath;
+		this.jarDirs = jarDirs;
+		this.jars = jars;
+		this.lastCheckMillis = System.currentTimeMillis();
+
+		urls = new URL[jars.length];
+		Map<String, List<Jar>> dirMap = new HashMap<String, List<Jar>>();
+		for (int i = 0; i < jars.length; i++) {
+			urls[i] = jars[i].url;
+			for (String dir : jars[i].dirs) {
+				List<Jar> dirJars = dirMap.get(dir);
+				if (dirJars == null) {
+					dirJars = new ArrayList<Jar>(1);
+					dirMap.put(dir, dirJars);
+				}
+				dirJars.add(jars[i]);
+			}
+		}
+		dirToJars = new HashMap<String, Jar[]>(dirMap.size() * 2);
+		for (Map.Entry<String, List<Jar>> entry : dirMap.entrySet()) {
+			dirToJars.put(entry.getKey(), entry.getValue().toArray(new Jar[entry.getValue().size()]));
+		}
+	}
+
+	/**
+	 * Returns the index of the jar files found in the given directories,
+	 * building or refreshing it if needed.
+	 *
+	 * @param jarDirPath  the jar directories, separated by <code>File.pathSeparator</code>
+	 * @param logger  used to log problems with jar files; can be <code>null</code>.
+	 */
+	public static ComponentJarIndex getIndex(String jarDirPath, Logger logger) {
+		return getIndex(jarDirPath, logger, REFRESH_CHECK_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * @param maxAgeMillis  the jar directories are checked for changes if the last check was longer ago than this.
+	 * @see #getIndex(String, Logger)
+	 */
+	static ComponentJarIndex getIndex(String jarDirPath, Logger logger, long maxAgeMillis) {
+		synchronized (indexes) {
+			ComponentJarIndex index = indexes.get(jarDirPath);
+			if (index != null) {
+				long now = System.currentTimeMillis();
+				if (now - index.lastCheckMillis < maxAgeMillis) {
+					return index;
+				}
+				File[] allJars = findJars(index.jarDirs);
+				if (index.isUpToDate(allJars)) {
+					index.lastCheckMillis = now;
+					return index;
+				}
+				index = build(jarDirPath, index.jarDirs, allJars, index, logger);
+			}
+			else {
+				File[] jarDirs = parseJarDirs(jarDirPath);
+				index = build(jarDirPath, jarDirs, findJars(jarDirs), null, logger);
+			}
+			indexes.put(jarDirPath, index);
+			return index;
+		}
+	}
+
+	private static File[] parseJarDirs(String jarDirPath) {
+		StringTokenizer tok = new StringTokenizer(jarDirPath, File.pathSeparator);
+		File[] jarDirs = new File[tok.countTokens()];
+		for (int i = 0; tok.hasMoreTokens(); i++) {
+			jarDirs[i] = new File(tok.nextToken());
+		}
+		return jarDirs;
+	}
+
+	private static File[] findJars(File[] jarDirs) {
+		return new AcsJarFileFinder(jarDirs, null).getAllFiles();
+	}
+
+	private boolean isUpToDate(File[] allJars) {
+		if (allJars.length != jars.length) {
+			return false;
+		}
+		for (int i = 0; i < jars.length; i++) {
+			if (!jars[i].isUpToDate(allJars[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the index, opening only those jar files that are not (unchanged) in the previous index.
+	 */
+	private static ComponentJarIndex build(String jarDirPath, File[] jarDirs, File[] allJars, ComponentJarIndex previous, Logger logger) {
+		Map<File, Jar> previousJars = new HashMap<File, Jar>();
+		if (previous != null) {
+			for (Jar jar : previous.jars) {
+				previousJars.put(jar.file, jar);
+			}
+		}
+		List<Jar> jars = new ArrayList<Jar>(allJars.length);
+		for (File file : allJars) {
+			Jar jar = previousJars.get(file);
+			if (jar == null || !jar.isUpToDate(file)) {
+				try {
+					jar = new Jar(file, file.toURI().toURL(), file.lastModified(), file.length(), listDirs(file));
+				} catch (Exception ex) {
+					if (logger != null) {
+						logger.log(Level.WARNING, "failed to index component jar file " + file.getAbsolutePath(), ex);
+					}
+					continue;
+				}
+			}
+			jars.add(jar);
+		}
+		return new ComponentJarIndex(jarDirPath, jarDirs, jars.toArray(new Jar[jars.size()]));
+	}
+
+	/**
+	 * @return the directories (without trailing '/') inside the jar file that contain files.
+	 */
+	private static String[] listDirs(File file) throws IOException {
+		Set<String> dirs = new LinkedHashSet<String>();
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (!entry.isDirectory()) {
+					dirs.add(getDir(entry.getName()));
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+		return dirs.toArray(new String[dirs.size()]);
+	}
+
+	private static String getDir(String entryName) {
+		int pos = entryName.lastIndexOf('/');
+		return (pos > 0 ? entryName.substring(0, pos) : "");
+	}
+
+	/**
+	 * @param entryName  name of a class file or resource, e.g. <code>alma/acs/Foo.class</code>
+	 * @return the jar files that may contain the given entry, in order of precedence.
+	 */
+	public Jar[] getJars(String entryName) {
+		Jar[] ret = dirToJars.get(getDir(entryName));
+		return (ret != null ? ret : NO_JARS);
+	}
+
+	/**
+	 * @return all indexed jar files, in order of precedence.
+	 */
+	public List<Jar> getAllJars() {
+		return Collections.unmodifiableList(Arrays.asList(jars));
+	}
+
+	/**
+	 * @return the URLs of all indexed jar files, in order of precedence.
+	 */
+	public URL[] getURLs() {
+		return urls.clone();
+	}
+
+	public String getJarDirPath() {
+		return jarDirPath;
+	}
+
+	/**
+	 * For tests: the open jar files with their reference counts.
+	 */
+	Map<File, Integer> getOpenJars() {
+		Map<File, Integer> ret = new LinkedHashMap<File, Integer>();
+		for (Jar jar : jars) {
+			int refCount = jar.getRefCount();
+			if (refCount > 0) {
+				ret.put(jar.file, refCount);
+			}
+		}
+		return ret;
+	}
+}
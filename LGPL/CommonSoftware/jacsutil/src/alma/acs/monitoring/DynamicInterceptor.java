@@ -96,7 +96,7 @@ public class DynamicInterceptor implements InvocationHandler
 	 */
 	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
 	{
-		InterceptionHandler handler = interceptionHandlerFactory.createInterceptionHandler();
+		InterceptionHandler handler = createInterceptionHandler(interceptionHandlerFactory, method);
 		
 		boolean allowCall = handler.callReceived(method, args);
 		
@@ -105,15 +105,20 @@ public class DynamicInterceptor implements InvocationHandler
 		
 		if (allowCall) {
 			try {
-				ClassLoader oldContCL = Thread.currentThread().getContextClassLoader();
-				if (contextCL != null) {
-					Thread.currentThread().setContextClassLoader(contextCL);
+				Thread currentThread = Thread.currentThread();
+				ClassLoader oldContCL = currentThread.getContextClassLoader();
+				// no need to swap (and restore) the class loader if it is already the right one
+				boolean swapCL = ( contextCL != null && contextCL != oldContCL );
+				if (swapCL) {
+					currentThread.setContextClassLoader(contextCL);
 				}
 				try {
 					// forward the call to the delegate object
 					retObj = method.invoke(delegate, args);
 				} finally {
-					Thread.currentThread().setContextClassLoader(oldContCL);
+					if (swapCL) {
+						currentThread.setContextClassLoader(oldContCL);
+					}
 				}
 			} catch (Throwable thr) {
 				realThr = unwindThrowableHierarchy(thr);
@@ -128,13 +133,25 @@ public class DynamicInterceptor implements InvocationHandler
 	}
 
 
+	/**
+	 * Gets the handler for one call, using {@link MethodInterceptionHandlerFactory#createInterceptionHandler(Method)}
+	 * if the factory supports it.
+	 */
+	static InterceptionHandler createInterceptionHandler(InterceptionHandlerFactory interceptionHandlerFactory, Method method) {
+		if (interceptionHandlerFactory instanceof MethodInterceptionHandlerFactory) {
+			return ((MethodInterceptionHandlerFactory) interceptionHandlerFactory).createInterceptionHandler(method);
+		}
+		return interceptionHandlerFactory.createInterceptionHandler();
+	}
+
+
 	/**
 	 * Pops <code>InvocationTargetException</code>s and <code>UndeclaredThrowableException</code>s
 	 * off the exception cause stack, until a "real" exception is found.
 	 * @param thr
 	 * @return
 	 */
-	private Throwable unwindThrowableHierarchy(Throwable thr) {
+	static Throwable unwindThrowableHierarchy(Throwable thr) {
 		Throwable realThr = thr;
 		if (thr instanceof InvocationTargetException || thr instanceof UndeclaredThrowableException) {
 			if (thr.getCause() != null) { // should always be true...
@@ -197,4 +214,20 @@ public class DynamicInterceptor implements InvocationHandler
 		public InterceptionHandler createInterceptionHandler();
 	}
 	
+	/**
+	 * Optional extension of {@link InterceptionHandlerFactory} for factories that can do better 
+	 * when they know the intercepted method already when creating the handler, 
+	 * for example by precomputing per-method settings or by returning a shared handler 
+	 * for calls that need no per-call state (e.g. calls that are not logged).
+	 * The interceptors use {@link #createInterceptionHandler(Method)} instead of {@link #createInterceptionHandler()}.
+	 */
+	public static interface MethodInterceptionHandlerFactory extends InterceptionHandlerFactory {
+		/**
+		 * Creates or gets an InterceptionHandler to be used for a single call of <code>method</code>.
+		 * A shared instance may only be returned if it keeps no state between <code>callReceived</code> and <code>callFinished</code>
+		 * and can be used concurrently.
+		 */
+		public InterceptionHandler createInterceptionHandler(Method method);
+	}
+	
 }
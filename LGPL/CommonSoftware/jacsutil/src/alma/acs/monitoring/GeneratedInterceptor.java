@@ -0,0 +1,401 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.monitoring;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+import alma.acs.monitoring.DynamicInterceptor.InterceptionHandler;
+import alma.acs.monitoring.DynamicInterceptor.InterceptionHandlerFactory;
+
+/**
+ * Alternative to {@link DynamicInterceptor} which does not use <code>java.lang.reflect.Proxy</code> and <code>Method.invoke</code>.
+ * For every intercepted interface, a subclass of <code>GeneratedInterceptor</code> that implements the interface
+ * is generated once (using javassist) and then instantiated for every delegate object.
+ * The generated methods call the delegate object directly; no-arg methods do not allocate an argument array.
+ * <p>
+ * The behavior is the same as that of {@link DynamicInterceptor} (same calls to the {@link InterceptionHandler},
+ * same context class loader handling and exception unwinding, <code>hashCode</code>, <code>equals</code> and <code>toString</code>
+ * are intercepted as well, undeclared checked exceptions are wrapped in {@link UndeclaredThrowableException}).
+ * If the class cannot be generated (e.g. for non-public interfaces, or if the interface's class loader
+ * cannot see this class), {@link #createGeneratedInterceptor(Class, Object, Logger, ClassLoader, InterceptionHandlerFactory)}
+ * falls back to {@link DynamicInterceptor}.
+ * <p>
+ * The generated class is defined by its own class loader, a child of the interface's class loader,
+ * so that no reflective access to <code>ClassLoader#defineClass</code> is needed (which is denied by newer JDKs).
+ * Therefore it can only use public types.
+ *
+ * @since ACS 12.2
+ */
+public abstract class GeneratedInterceptor
+{
+	/**
+	 * The generated class per intercepted interface, or the <code>Throwable</code> if the generation failed.
+	 * Using a ClassValue lets the generated class (and its class loader) be unloaded together with the interface.
+	 */
+	private static final ClassValue<Object> generatedClasses = new ClassValue<Object>() {
+		@Override
+		protected Object computeValue(Class<?> dynInterface) {
+			try {
+				return generateClass(dynInterface);
+			} catch (Throwable thr) {
+				return thr;
+			}
+		}
+	};
+
+	/**
+	 * Defines one generated class.
+	 */
+	private static class InterceptorClassLoader extends ClassLoader
+	{
+		InterceptorClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String className, byte[] bytecode, ProtectionDomain protectionDomain) {
+			return defineClass(className, bytecode, 0, bytecode.length, protectionDomain);
+		}
+	}
+
+	private static final AtomicInteger classCounter = new AtomicInteger();
+
+	/**
+	 * Name of the static field of the generated class that holds the intercepted methods.
+	 */
+	private static final String METHODS_FIELD = "interceptedMethods";
+
+	protected final Object delegate;
+	private final Logger logger;
+	private final ClassLoader contextCL;
+	private final InterceptionHandlerFactory interceptionHandlerFactory;
+
+	/**
+	 * The intercepted methods, the index is used by the generated code.
+	 */
+	private final Method[] methods;
+
+	/**
+	 * The checked exceptions declared by the intercepted methods.
+	 */
+	private final Class<?>[][] exceptionTypes;
+
+
+	/**
+	 * To be called only from the generated subclasses.
+	 * @param methods  The intercepted methods, as used for generating the subclass.
+	 */
+	protected GeneratedInterceptor(Object delegate, Logger logger, ClassLoader contextCL,
+			InterceptionHandlerFactory interceptionHandlerFactory, Method[] methods) {
+		this.delegate = delegate;
+		this.logger = logger;
+		this.contextCL = contextCL;
+		this.interceptionHandlerFactory = interceptionHandlerFactory;
+		this.methods = methods;
+		exceptionTypes = new Class<?>[methods.length][];
+		for (int i = 0; i < methods.length; i++) {
+			exceptionTypes[i] = methods[i].getExceptionTypes();
+		}
+	}
+
+
+	/**
+	 * Creates an interceptor for <code>delegate</code> which implements <code>dynInterface</code>,
+	 * using an instance of the class generated for <code>dynInterface</code>.
+	 * Parameters are the same as for {@link DynamicInterceptor#createDynamicInterceptor(Class, Object, Logger, ClassLoader, InterceptionHandlerFactory)},
+	 * which is used if the class cannot be generated.
+	 */
+	public static <T> T createGeneratedInterceptor(Class<T> dynInterface, Object delegate, Logger logger,
+			ClassLoader contextCL, InterceptionHandlerFactory interceptionHandlerFactory)
+	{
+		Class<?> generatedClass = getGeneratedClass(dynInterface, logger);
+		if (generatedClass != null) {
+			try {
+				Constructor<?> ctor = generatedClass.getConstructor(Object.class, Logger.class, ClassLoader.class, InterceptionHandlerFactory.class);
+				Object interceptor = ctor.newInstance(delegate, logger, contextCL, interceptionHandlerFactory);
+				return dynInterface.cast(interceptor);
+			} catch (Exception ex) {
+				logger.log(Level.FINE, "Failed to instantiate generated interceptor for " + dynInterface.getName() + ", will use a dynamic proxy.", ex);
+			}
+		}
+		return DynamicInterceptor.createDynamicInterceptor(dynInterface, delegate, logger, contextCL, interceptionHandlerFactory);
+	}
+
+
+	/**
+	 * Receives the intercepted calls from the generated methods.
+	 * Same as {@link DynamicInterceptor#invoke(Object, Method, Object[])}, except that the delegate gets called directly.
+	 * @param methodIndex  Index of the called method in {@link #methods}.
+	 * @param args  The call arguments, <code>null</code> for methods without parameters (as with <code>java.lang.reflect.Proxy</code>).
+	 */
+	protected final Object intercept(int methodIndex, Object[] args) throws Throwable {
+		Method method = methods[methodIndex];
+		InterceptionHandler handler = DynamicInterceptor.createInterceptionHandler(interceptionHandlerFactory, method);
+
+		boolean allowCall = handler.callReceived(method, args);
+
+		Object retObj = null;
+		Throwable realThr = null;
+
+		if (allowCall) {
+			Thread currentThread = Thread.currentThread();
+			ClassLoader oldContCL = currentThread.getContextClassLoader();
+			boolean swapCL = ( contextCL != null && contextCL != oldContCL );
+			if (swapCL) {
+				currentThread.setContextClassLoader(contextCL);
+			}
+			try {
+				// forward the call to the delegate object
+				retObj = invokeDelegate(methodIndex, args);
+			} catch (Throwable thr) {
+				realThr = DynamicInterceptor.unwindThrowableHierarchy(thr);
+			} finally {
+				if (swapCL) {
+					currentThread.setContextClassLoader(oldContCL);
+				}
+			}
+		}
+		else {
+			logger.fine("Rejected call to method '" + method.getName() + "' as advised by handler " + handler.getClass().getName());
+		}
+
+		try {
+			return handler.callFinished(retObj, args, realThr);
+		} catch (Throwable thr) {
+			if (thr instanceof RuntimeException || thr instanceof Error || isDeclared(methodIndex, thr)) {
+				throw thr;
+			}
+			// as done by java.lang.reflect.Proxy
+			throw new UndeclaredThrowableException(thr);
+		}
+	}
+
+	private boolean isDeclared(int methodIndex, Throwable thr) {
+		for (Class<?> exceptionType : exceptionTypes[methodIndex]) {
+			if (exceptionType.isInstance(thr)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Calls the method with the given index on {@link #delegate}. Implemented by the generated subclass.
+	 */
+	protected abstract Object invokeDelegate(int methodIndex, Object[] args) throws Throwable;
+
+
+	/**
+	 * @return <code>hashCode</code>, <code>equals</code> and <code>toString</code> followed by the methods of <code>dynInterface</code>,
+	 *         without duplicate signatures (as with <code>java.lang.reflect.Proxy</code>, the <code>Object</code> methods take precedence).
+	 */
+	private static Method[] getInterceptedMethods(Class<?> dynInterface) throws NoSuchMethodException {
+		List<Method> methods = new ArrayList<Method>();
+		Set<String> signatures = new HashSet<String>();
+		List<Method> candidates = new ArrayList<Method>();
+		candidates.add(Object.class.getMethod("hashCode"));
+		candidates.add(Object.class.getMethod("equals", Object.class));
+		candidates.add(Object.class.getMethod("toString"));
+		candidates.addAll(Arrays.asList(dynInterface.getMethods()));
+		for (Method method : candidates) {
+			if (!Modifier.isStatic(method.getModifiers())
+					&& signatures.add(method.getName() + Arrays.toString(method.getParameterTypes()))) {
+				methods.add(method);
+			}
+		}
+		return methods.toArray(new Method[methods.size()]);
+	}
+
+	/**
+	 * Gets the class generated for the given interface, generates it if needed.
+	 * @return the generated class, or <code>null</code> if it could not be generated.
+	 */
+	private static Class<?> getGeneratedClass(Class<?> dynInterface, Logger logger) {
+		Object generated = generatedClasses.get(dynInterface);
+		if (generated instanceof Throwable) {
+			logger.log(Level.FINE, "Failed to generate interceptor class for " + dynInterface.getName() + ", will use dynamic proxies.", (Throwable) generated);
+			return null;
+		}
+		return (Class<?>) generated;
+	}
+
+	/**
+	 * Generates the subclass of <code>GeneratedInterceptor</code> that implements <code>dynInterface</code>,
+	 * in the package of <code>dynInterface</code> (unless that is a <code>java</code> package)
+	 * and in a new child class loader of the loader of <code>dynInterface</code>.
+	 */
+	private static Class<?> generateClass(Class<?> dynInterface) throws Exception {
+		ClassLoader loader = dynInterface.getClassLoader();
+		if (!dynInterface.isInterface() || !Modifier.isPublic(dynInterface.getModifiers())) {
+			throw new IllegalArgumentException(dynInterface.getName() + " is not a public interface.");
+		}
+		if (loader == null || Class.forName(GeneratedInterceptor.class.getName(), false, loader) != GeneratedInterceptor.class) {
+			throw new IllegalArgumentException("Class loader of " + dynInterface.getName() + " does not see " + GeneratedInterceptor.class.getName());
+		}
+		Method[] methods = getInterceptedMethods(dynInterface);
+		for (Method method : methods) {
+			// the generated class is in a different runtime package
+			checkPublic(method.getReturnType(), method);
+			for (Class<?> type : method.getParameterTypes()) {
+				checkPublic(type, method);
+			}
+		}
+
+		ClassPool pool = new ClassPool(true);
+		pool.appendClassPath(new LoaderClassPath(loader));
+		pool.appendClassPath(new ClassClassPath(GeneratedInterceptor.class));
+
+		String className = ( dynInterface.getName().startsWith("java.") ? GeneratedInterceptor.class.getPackage().getName() + "." + dynInterface.getSimpleName() : dynInterface.getName() )
+				+ "$$AcsInterceptor" + classCounter.incrementAndGet();
+		CtClass ctClass = pool.makeClass(className);
+		try {
+			ctClass.setSuperclass(pool.get(GeneratedInterceptor.class.getName()));
+			ctClass.addInterface(pool.get(dynInterface.getName()));
+			// the methods are stored in a static field, so that all instances use the same indices
+			ctClass.addField(CtField.make("public static " + sourceName(Method[].class) + " " + METHODS_FIELD + ";", ctClass));
+			ctClass.addConstructor(CtNewConstructor.make(
+					new CtClass[] {
+						pool.get(Object.class.getName()), pool.get(Logger.class.getName()), pool.get(ClassLoader.class.getName()),
+						pool.get(InterceptionHandlerFactory.class.getName())
+					},
+					null, "{ super($1, $2, $3, $4, " + METHODS_FIELD + "); }", ctClass));
+
+			// the intercepted methods, which delegate to 'intercept'
+			for (int i = 0; i < methods.length; i++) {
+				Method method = methods[i];
+				Class<?>[] paramTypes = method.getParameterTypes();
+				CtClass[] ctParamTypes = new CtClass[paramTypes.length];
+				for (int p = 0; p < paramTypes.length; p++) {
+					ctParamTypes[p] = pool.get(sourceName(paramTypes[p]));
+				}
+				String args = ( paramTypes.length == 0 ? "null" : "$args" );
+				String body = ( method.getReturnType() == Void.TYPE
+						? "{ intercept(" + i + ", " + args + "); }"
+						: "{ return ($r) intercept(" + i + ", " + args + "); }" );
+				ctClass.addMethod(CtNewMethod.make(pool.get(sourceName(method.getReturnType())), method.getName(),
+						ctParamTypes, new CtClass[] { pool.get(Throwable.class.getName()) }, body, ctClass));
+			}
+
+			// the direct calls to the delegate object
+			StringBuilder body = new StringBuilder("{ switch ($1) {\n");
+			for (int i = 0; i < methods.length; i++) {
+				Method method = methods[i];
+				String target = ( method.getDeclaringClass() == Object.class ? "delegate" : "((" + dynInterface.getName() + ") delegate)" );
+				StringBuilder call = new StringBuilder(target).append('.').append(method.getName()).append('(');
+				Class<?>[] paramTypes = method.getParameterTypes();
+				for (int p = 0; p < paramTypes.length; p++) {
+					if (p > 0) {
+						call.append(", ");
+					}
+					call.append(unbox(paramTypes[p], "$2[" + p + "]"));
+				}
+				call.append(')');
+				body.append("case ").append(i).append(": ");
+				if (method.getReturnType() == Void.TYPE) {
+					body.append(call).append("; return null;\n");
+				}
+				else {
+					body.append("return ($w) ").append(call).append(";\n");
+				}
+			}
+			body.append("} throw new IllegalArgumentException(\"method index \" + $1); }");
+			ctClass.addMethod(CtNewMethod.make(pool.get(Object.class.getName()), "invokeDelegate",
+					new CtClass[] { CtClass.intType, pool.get(Object.class.getName() + "[]") },
+					new CtClass[] { pool.get(Throwable.class.getName()) }, body.toString(), ctClass));
+
+			Class<?> generatedClass = new InterceptorClassLoader(loader).define(className, ctClass.toBytecode(), dynInterface.getProtectionDomain());
+			generatedClass.getField(METHODS_FIELD).set(null, methods);
+			return generatedClass;
+		} finally {
+			ctClass.detach();
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException  if the type (or array component type) used by the method is not public.
+	 */
+	private static void checkPublic(Class<?> type, Method method) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (!type.isPrimitive() && !Modifier.isPublic(type.getModifiers())) {
+			throw new IllegalArgumentException("Method " + method + " uses the non-public type " + type.getName());
+		}
+	}
+
+	/**
+	 * @return the name of the type as used in Java source code, e.g. <code>java.lang.String[]</code>.
+	 */
+	private static String sourceName(Class<?> type) {
+		if (type.isArray()) {
+			return sourceName(type.getComponentType()) + "[]";
+		}
+		return type.getName();
+	}
+
+	/**
+	 * @return the source code that casts and (for primitive types) unwraps <code>expr</code> to <code>type</code>.
+	 */
+	private static String unbox(Class<?> type, String expr) {
+		if (!type.isPrimitive()) {
+			return "((" + sourceName(type) + ") " + expr + ")";
+		}
+		String wrapper;
+		if (type == Boolean.TYPE) {
+			wrapper = Boolean.class.getName();
+		} else if (type == Character.TYPE) {
+			wrapper = Character.class.getName();
+		} else if (type == Byte.TYPE) {
+			wrapper = Byte.class.getName();
+		} else if (type == Short.TYPE) {
+			wrapper = Short.class.getName();
+		} else if (type == Integer.TYPE) {
+			wrapper = Integer.class.getName();
+		} else if (type == Long.TYPE) {
+			wrapper = Long.class.getName();
+		} else if (type == Float.TYPE) {
+			wrapper = Float.class.getName();
+		} else {
+			wrapper = Double.class.getName();
+		}
+		return "((" + wrapper + ") " + expr + ")." + type.getName() + "Value()";
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.classloading;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import alma.acs.makesupport.AcsJarFileFinder;
+import alma.acs.testsupport.TestLogger;
+import alma.acs.util.StopWatch;
+
+/**
+ * Measures the time to create the class loaders for many components and load a few classes with each,
+ * comparing {@link AcsComponentClassLoader} with a plain bottom-up <code>URLClassLoader</code>
+ * over the same jar files (as the component class loader worked before the {@link ComponentJarIndex}).
+ * <p>
+ * Only for manual runs, e.g.
+ * <code>acsStartJava alma.acs.classloading.AcsComponentClassLoaderStartupBenchmark 500 alma.acs.MyCompImpl</code>.
+ * If the property <code>acs.components.classpath.jardirs</code> is not set, all ACS jars are used as component jars.
+ */
+public class AcsComponentClassLoaderStartupBenchmark
+{
+	/**
+	 * The old component class loader: all component jars on the URL path, bottom-up loading.
+	 */
+	private static class UnindexedClassLoader extends URLClassLoader
+	{
+		UnindexedClassLoader(URL[] urls, ClassLoader parent) {
+			super(urls, parent);
+		}
+
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				try {
+					c = findClass(name);
+				}
+				catch (ClassNotFoundException e) {
+					c = super.loadClass(name, false);
+				}
+			}
+			if (resolve) {
+				resolveClass(c);
+			}
+			return c;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int numComponents = (args.length > 0 ? Integer.parseInt(args[0]) : 500);
+		List<String> classNames = new ArrayList<String>();
+		classNames.add("java.lang.String");
+		classNames.add("java.util.logging.Logger");
+		for (int i = 1; i < args.length; i++) {
+			classNames.add(args[i]);
+		}
+
+		if (System.getProperty(AcsComponentClassLoader.PROPERTY_JARDIRS) == null) {
+			System.setProperty(AcsComponentClassLoader.PROPERTY_JARDIRS, System.getProperty(AcsSystemClassLoader.PROPERTY_JARDIRS));
+		}
+		String jarDirPath = System.getProperty(AcsComponentClassLoader.PROPERTY_JARDIRS);
+		Logger logger = TestLogger.getLogger(AcsComponentClassLoaderStartupBenchmark.class.getSimpleName());
+		ClassLoader parent = Thread.currentThread().getContextClassLoader();
+
+		String[] dirNames = jarDirPath.split(File.pathSeparator);
+		File[] jarDirs = new File[dirNames.length];
+		for (int i = 0; i < dirNames.length; i++) {
+			jarDirs[i] = new File(dirNames[i]);
+		}
+
+		System.out.println("Activating " + numComponents + " components, loading " + classNames + " with each.");
+
+		// the old way: scan jar dirs and open jars in every class loader
+		StopWatch sw = new StopWatch();
+		List<URLClassLoader> loaders = new ArrayList<URLClassLoader>(numComponents);
+		for (int i = 0; i < numComponents; i++) {
+			File[] jars = new AcsJarFileFinder(jarDirs, null).getAllFiles();
+			URL[] urls = new URL[jars.length];
+			for (int j = 0; j < jars.length; j++) {
+				urls[j] = jars[j].toURI().toURL();
+			}
+			URLClassLoader cl = new UnindexedClassLoader(urls, parent);
+			loadClasses(cl, classNames);
+			loaders.add(cl);
+		}
+		long unindexedMillis = sw.getLapTimeMillis();
+		closeAll(loaders);
+		System.out.println("Unindexed URLClassLoader: " + unindexedMillis + " ms (" + urlCount(jarDirs) + " jars)");
+
+		// with the shared index
+		sw = new StopWatch();
+		for (int i = 0; i < numComponents; i++) {
+			AcsComponentClassLoader cl = new AcsComponentClassLoader(parent, logger, "benchmarkComp" + i);
+			loadClasses(cl, classNames);
+			loaders.add(cl);
+		}
+		long indexedMillis = sw.getLapTimeMillis();
+		closeAll(loaders);
+		System.out.println("AcsComponentClassLoader:  " + indexedMillis + " ms (including building the index)");
+	}
+
+	private static void loadClasses(ClassLoader cl, List<String> classNames) {
+		for (String className : classNames) {
+			try {
+				Class.forName(className, true, cl);
+			}
+			catch (Throwable thr) {
+				System.out.println("Failed to load " + className + ": " + thr);
+			}
+		}
+	}
+
+	private static void closeAll(List<URLClassLoader> loaders) throws Exception {
+		for (URLClassLoader cl : loaders) {
+			cl.close();
+		}
+		loaders.clear();
+	}
+
+	private static int urlCount(File[] jarDirs) {
+		return new AcsJarFileFinder(jarDirs, null).getAllFiles().length;
+	}
+}
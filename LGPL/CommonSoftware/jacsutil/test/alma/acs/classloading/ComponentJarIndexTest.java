@@ -0,0 +1,247 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.classloading;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import alma.acs.testsupport.TestLogger;
+
+/**
+ * Tests {@link ComponentJarIndex} and its use by {@link AcsComponentClassLoader},
+ * with jar files created in temporary directories.
+ */
+public class ComponentJarIndexTest
+{
+	private static final String CLASS_NAME = TestMain.class.getName();
+	private static final String CLASS_ENTRY = CLASS_NAME.replace('.', '/') + ".class";
+	private static final String RESOURCE_ENTRY = "alma/acs/classloading/test/resource.txt";
+
+	private Logger logger;
+	private File dir1;
+	private File dir2;
+	private String jarDirPath;
+	private String oldJarDirs;
+
+	@Before
+	public void setUp() throws Exception {
+		logger = TestLogger.getLogger(getClass().getSimpleName());
+		dir1 = createTempDir("ComponentJarIndexTest1");
+		dir2 = createTempDir("ComponentJarIndexTest2");
+		jarDirPath = dir1.getAbsolutePath() + File.pathSeparator + dir2.getAbsolutePath();
+		oldJarDirs = System.setProperty(AcsComponentClassLoader.PROPERTY_JARDIRS, jarDirPath);
+
+		writeJar(new File(dir1, "classes.jar"), CLASS_ENTRY, readClassBytes());
+		writeJar(new File(dir1, "resources.jar"), RESOURCE_ENTRY, "from dir1".getBytes());
+		// this one is overlayed by the jar of the same name in dir1
+		writeJar(new File(dir2, "resources.jar"), RESOURCE_ENTRY, "from dir2".getBytes());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (oldJarDirs != null) {
+			System.setProperty(AcsComponentClassLoader.PROPERTY_JARDIRS, oldJarDirs);
+		}
+		else {
+			System.clearProperty(AcsComponentClassLoader.PROPERTY_JARDIRS);
+		}
+		deleteDir(dir1);
+		deleteDir(dir2);
+	}
+
+	/**
+	 * Component classes are loaded from the jar files, other classes by the parent class loader
+	 * without opening any jar file.
+	 */
+	@Test
+	public void testLoadClass() throws Exception {
+		AcsComponentClassLoader compCL = new AcsComponentClassLoader(getClass().getClassLoader(), logger, "testComp");
+		ComponentJarIndex index = ComponentJarIndex.getIndex(jarDirPath, logger);
+		try {
+			assertEquals(2, compCL.getURLs().length);
+
+			Class<?> stringClass = Class.forName("java.lang.String", true, compCL);
+			assertSame(String.class, stringClass);
+			assertTrue(index.getOpenJars().isEmpty());
+
+			Class<?> clazz = Class.forName(CLASS_NAME, true, compCL);
+			assertSame(compCL, clazz.getClassLoader());
+			assertNotSame(TestMain.class, clazz);
+			assertSame(clazz, compCL.loadClass(CLASS_NAME));
+			assertEquals(Collections.singletonMap(new File(dir1, "classes.jar"), 1), index.getOpenJars());
+			assertNotNull(clazz.getPackage());
+		}
+		finally {
+			compCL.close();
+		}
+		assertTrue(index.getOpenJars().isEmpty());
+	}
+
+	/**
+	 * The jar files are opened only once for all component class loaders, and closed with the last class loader.
+	 */
+	@Test
+	public void testSharedJarFiles() throws Exception {
+		AcsComponentClassLoader compCL1 = new AcsComponentClassLoader(getClass().getClassLoader(), logger, "testComp1");
+		AcsComponentClassLoader compCL2 = new AcsComponentClassLoader(getClass().getClassLoader(), logger, "testComp2");
+		ComponentJarIndex index = ComponentJarIndex.getIndex(jarDirPath, logger);
+		File classesJar = new File(dir1, "classes.jar");
+
+		Class<?> clazz1 = compCL1.loadClass(CLASS_NAME);
+		Class<?> clazz2 = compCL2.loadClass(CLASS_NAME);
+		assertNotSame(clazz1, clazz2);
+		assertEquals(Integer.valueOf(2), index.getOpenJars().get(classesJar));
+
+		compCL1.close();
+		assertEquals(Integer.valueOf(1), index.getOpenJars().get(classesJar));
+		compCL1.close();
+		assertEquals(Integer.valueOf(1), index.getOpenJars().get(classesJar));
+
+		compCL2.close();
+		assertTrue(index.getOpenJars().isEmpty());
+	}
+
+	/**
+	 * Resources are found in the jar files, with the same precedence as before the index,
+	 * and are read from the shared JarFile, which is no longer readable after closing the class loader.
+	 */
+	@Test
+	public void testResources() throws Exception {
+		AcsComponentClassLoader compCL = new AcsComponentClassLoader(getClass().getClassLoader(), logger, "testComp");
+		ComponentJarIndex index = ComponentJarIndex.getIndex(jarDirPath, logger);
+		File resourcesJar = new File(dir1, "resources.jar");
+		URL url = compCL.findResource(RESOURCE_ENTRY);
+		try {
+			assertNotNull(url);
+			assertEquals("from dir1", readString(url));
+			assertEquals(Collections.singletonMap(resourcesJar, 1), index.getOpenJars());
+			List<URL> urls = Collections.list(compCL.findResources(RESOURCE_ENTRY));
+			assertEquals(1, urls.size());
+			assertNull(compCL.findResource("alma/acs/classloading/test/missing.txt"));
+			assertNull(compCL.findResource("java/lang/String.class"));
+		}
+		finally {
+			compCL.close();
+		}
+		assertTrue(index.getOpenJars().isEmpty());
+		try {
+			readString(url);
+			fail("resource must not be readable after closing the class loader");
+		}
+		catch (IOException ex) {
+			// expected
+		}
+		assertTrue(index.getOpenJars().isEmpty());
+	}
+
+	/**
+	 * A new index is built when jar files are added, re-using the unchanged jar files.
+	 */
+	@Test
+	public void testRefresh() throws Exception {
+		ComponentJarIndex index1 = ComponentJarIndex.getIndex(jarDirPath, logger, 0);
+		assertSame(index1, ComponentJarIndex.getIndex(jarDirPath, logger, 0));
+		assertEquals(0, ComponentJarIndex.getIndex(jarDirPath, logger, 0).getJars("alma/acs/other/Foo.class").length);
+
+		writeJar(new File(dir2, "other.jar"), "alma/acs/other/Foo.class", new byte[] {1, 2, 3});
+		ComponentJarIndex index2 = ComponentJarIndex.getIndex(jarDirPath, logger, 0);
+		assertNotSame(index1, index2);
+		assertEquals(3, index2.getAllJars().size());
+		assertEquals(1, index2.getJars("alma/acs/other/Foo.class").length);
+		assertSame(index1.getJars(CLASS_ENTRY)[0], index2.getJars(CLASS_ENTRY)[0]);
+	}
+
+	private static File createTempDir(String prefix) throws Exception {
+		File dir = File.createTempFile(prefix, "");
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+		return dir;
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	private static void writeJar(File file, String entryName, byte[] content) throws Exception {
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+		try {
+			out.putNextEntry(new JarEntry(entryName));
+			out.write(content);
+			out.closeEntry();
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static byte[] readClassBytes() throws Exception {
+		InputStream in = TestMain.class.getClassLoader().getResourceAsStream(CLASS_ENTRY);
+		assertNotNull(in);
+		return readFully(in);
+	}
+
+	private static String readString(URL url) throws Exception {
+		return new String(readFully(url.openStream()));
+	}
+
+	private static byte[] readFully(InputStream in) throws Exception {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+				out.write(buffer, 0, len);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+}
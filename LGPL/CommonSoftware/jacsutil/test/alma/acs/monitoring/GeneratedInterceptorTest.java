@@ -0,0 +1,281 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import alma.acs.monitoring.DynamicInterceptor.InterceptionHandler;
+import alma.acs.monitoring.DynamicInterceptor.InterceptionHandlerFactory;
+import alma.acs.testsupport.TestLogger;
+
+/**
+ * Tests for {@link GeneratedInterceptor}, comparing its behavior with that of {@link DynamicInterceptor}.
+ */
+public class GeneratedInterceptorTest
+{
+	public static class TestException extends Exception {
+		public TestException(String msg) {
+			super(msg);
+		}
+	}
+
+	public static class Struct {
+		public int value;
+		public String toString() {
+			return "Struct(" + value + ")";
+		}
+	}
+
+	public static interface BaseInterface {
+		public String name();
+	}
+
+	public static interface TestInterface extends BaseInterface {
+		public void noArgs();
+		public int primitives(boolean b, char c, byte by, short s, int i, long l, float f, double d);
+		public String[] arrays(int[] ints, String[][] strings);
+		public void outParam(Struct struct);
+		public Struct struct(Struct struct);
+		public String name(); // same as in BaseInterface
+		public void fail(int mode) throws TestException;
+		public ClassLoader contextClassLoader();
+	}
+
+	interface NonPublicInterface {
+		public int value();
+	}
+
+	public static class TestImpl implements TestInterface, NonPublicInterface {
+		public void noArgs() {
+		}
+		public int primitives(boolean b, char c, byte by, short s, int i, long l, float f, double d) {
+			return (b ? 1 : 0) + c + by + s + i + (int) l + (int) f + (int) d;
+		}
+		public String[] arrays(int[] ints, String[][] strings) {
+			return new String[] { Arrays.toString(ints), Arrays.deepToString(strings) };
+		}
+		public void outParam(Struct struct) {
+			struct.value++;
+		}
+		public Struct struct(Struct struct) {
+			return struct;
+		}
+		public String name() {
+			return "impl";
+		}
+		public void fail(int mode) throws TestException {
+			switch (mode) {
+				case 0: throw new TestException("checked");
+				case 1: throw new IllegalStateException("unchecked");
+				default: throw new UndeclaredThrowableException(new TestException("wrapped"));
+			}
+		}
+		public ClassLoader contextClassLoader() {
+			return Thread.currentThread().getContextClassLoader();
+		}
+		public int value() {
+			return 42;
+		}
+		public String toString() {
+			return "TestImpl";
+		}
+		public int hashCode() {
+			return 4711;
+		}
+	}
+
+	/**
+	 * Records the handler calls.
+	 */
+	private static class RecordingHandlerFactory implements InterceptionHandlerFactory {
+		final List<String> calls = new ArrayList<String>();
+		boolean allowCalls = true;
+		Throwable replacement;
+
+		public InterceptionHandler createInterceptionHandler() {
+			return new InterceptionHandler() {
+				public boolean callReceived(Method method, Object[] args) {
+					calls.add("received " + method + " " + (args == null ? "null" : Arrays.deepToString(args)));
+					return allowCalls;
+				}
+				public Object callFinished(Object retVal, Object[] args, Throwable thr) throws Throwable {
+					calls.add("finished " + (retVal instanceof Object[] ? Arrays.toString((Object[]) retVal) : retVal) + " " + thr);
+					if (replacement != null) {
+						throw replacement;
+					}
+					if (thr != null) {
+						throw thr;
+					}
+					return (allowCalls ? retVal : "rejected");
+				}
+			};
+		}
+	}
+
+	private final Logger logger = TestLogger.getLogger(getClass().getName());
+
+	private void runCalls(TestInterface ti, List<String> results) {
+		ti.noArgs();
+		results.add(String.valueOf(ti.primitives(true, 'a', (byte) 2, (short) 3, 4, 5L, 6.5f, 7.5)));
+		results.add(Arrays.toString(ti.arrays(new int[] { 1, 2 }, new String[][] { { "a" }, { "b", "c" } })));
+		Struct struct = new Struct();
+		ti.outParam(struct);
+		results.add(String.valueOf(struct.value));
+		results.add(String.valueOf(ti.struct(struct) == struct));
+		results.add(ti.name());
+		results.add(((BaseInterface) ti).name());
+		for (int mode = 0; mode < 3; mode++) {
+			try {
+				ti.fail(mode);
+				results.add("no exception");
+			} catch (Throwable thr) {
+				results.add(thr.toString());
+			}
+		}
+		results.add(ti.toString());
+		results.add(String.valueOf(ti.equals(ti)));
+		results.add(String.valueOf(ti.hashCode() == ti.hashCode()));
+	}
+
+	@Test
+	public void testSameBehaviorAsDynamicInterceptor() throws Exception {
+		RecordingHandlerFactory dynFactory = new RecordingHandlerFactory();
+		TestInterface dyn = DynamicInterceptor.createDynamicInterceptor(TestInterface.class, new TestImpl(), logger, null, dynFactory);
+		assertTrue(Proxy.isProxyClass(dyn.getClass()));
+
+		RecordingHandlerFactory genFactory = new RecordingHandlerFactory();
+		TestInterface gen = GeneratedInterceptor.createGeneratedInterceptor(TestInterface.class, new TestImpl(), logger, null, genFactory);
+		assertTrue(gen instanceof GeneratedInterceptor);
+
+		List<String> dynResults = new ArrayList<String>();
+		runCalls(dyn, dynResults);
+		List<String> genResults = new ArrayList<String>();
+		runCalls(gen, genResults);
+
+		assertEquals(dynResults, genResults);
+		assertEquals(dynFactory.calls, genFactory.calls);
+		assertEquals("TestImpl", gen.toString());
+		assertEquals("alma.acs.monitoring.GeneratedInterceptorTest$TestException: checked", genResults.get(6));
+		assertEquals("java.lang.IllegalStateException: unchecked", genResults.get(7));
+		assertEquals("alma.acs.monitoring.GeneratedInterceptorTest$TestException: wrapped", genResults.get(8));
+		assertTrue(genFactory.calls.get(0).endsWith(" null"));
+	}
+
+	@Test
+	public void testHandlerDecisions() throws Exception {
+		RecordingHandlerFactory factory = new RecordingHandlerFactory();
+		TestImpl impl = new TestImpl();
+		TestInterface gen = GeneratedInterceptor.createGeneratedInterceptor(TestInterface.class, impl, logger, null, factory);
+
+		// rejected call
+		factory.allowCalls = false;
+		assertEquals("rejected", gen.name());
+		Struct struct = new Struct();
+		gen.outParam(struct);
+		assertEquals(0, struct.value);
+		factory.allowCalls = true;
+
+		// undeclared checked exception from the handler gets wrapped, as with dynamic proxies
+		factory.replacement = new TestException("from handler");
+		try {
+			gen.name();
+			fail("UndeclaredThrowableException expected");
+		} catch (UndeclaredThrowableException ex) {
+			assertSame(factory.replacement, ex.getCause());
+		}
+		try {
+			gen.fail(1);
+			fail("TestException expected");
+		} catch (TestException ex) {
+			assertSame(factory.replacement, ex);
+		}
+	}
+
+	@Test
+	public void testContextClassLoader() throws Exception {
+		ClassLoader componentCL = new URLClassLoader(new URL[0]);
+		ClassLoader oldCL = Thread.currentThread().getContextClassLoader();
+		TestInterface gen = GeneratedInterceptor.createGeneratedInterceptor(TestInterface.class, new TestImpl(), logger, componentCL, new RecordingHandlerFactory());
+		assertSame(componentCL, gen.contextClassLoader());
+		assertSame(oldCL, Thread.currentThread().getContextClassLoader());
+
+		gen = GeneratedInterceptor.createGeneratedInterceptor(TestInterface.class, new TestImpl(), logger, null, new RecordingHandlerFactory());
+		assertSame(oldCL, gen.contextClassLoader());
+	}
+
+	@Test
+	public void testMethodInterceptionHandlerFactory() throws Exception {
+		final List<Method> methods = new ArrayList<Method>();
+		final InterceptionHandler shared = new InterceptionHandler() {
+			public boolean callReceived(Method method, Object[] args) {
+				return true;
+			}
+			public Object callFinished(Object retVal, Object[] args, Throwable thr) throws Throwable {
+				return retVal;
+			}
+		};
+		DynamicInterceptor.MethodInterceptionHandlerFactory factory = new DynamicInterceptor.MethodInterceptionHandlerFactory() {
+			public InterceptionHandler createInterceptionHandler() {
+				throw new IllegalStateException("should not be used");
+			}
+			public InterceptionHandler createInterceptionHandler(Method method) {
+				methods.add(method);
+				return shared;
+			}
+		};
+		TestInterface dyn = DynamicInterceptor.createDynamicInterceptor(TestInterface.class, new TestImpl(), logger, null, factory);
+		TestInterface gen = GeneratedInterceptor.createGeneratedInterceptor(TestInterface.class, new TestImpl(), logger, null, factory);
+		assertEquals("impl", dyn.name());
+		assertEquals("impl", gen.name());
+		assertEquals(2, methods.size());
+		assertEquals(methods.get(0), methods.get(1));
+	}
+
+	@Test
+	public void testFallbackToDynamicProxy() throws Exception {
+		NonPublicInterface npi = GeneratedInterceptor.createGeneratedInterceptor(NonPublicInterface.class, new TestImpl(), logger, null, new RecordingHandlerFactory());
+		assertTrue(Proxy.isProxyClass(npi.getClass()));
+		assertEquals(42, npi.value());
+
+		// the class is generated only once
+		TestInterface gen1 = GeneratedInterceptor.createGeneratedInterceptor(TestInterface.class, new TestImpl(), logger, null, new RecordingHandlerFactory());
+		TestInterface gen2 = GeneratedInterceptor.createGeneratedInterceptor(TestInterface.class, new TestImpl(), logger, null, new RecordingHandlerFactory());
+		assertSame(gen1.getClass(), gen2.getClass());
+		assertFalse(gen1.equals(gen2));
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.monitoring;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alma.acs.monitoring.DynamicInterceptor.InterceptionHandler;
+import alma.acs.monitoring.DynamicInterceptor.InterceptionHandlerFactory;
+import alma.acs.monitoring.DynamicInterceptor.MethodInterceptionHandlerFactory;
+import alma.acs.testsupport.TestLogger;
+
+/**
+ * Measures the overhead per intercepted call of a no-arg and of a struct-arg method, with call logging disabled,
+ * comparing the direct call with
+ * <ul>
+ *   <li>{@link DynamicInterceptor} with a new handler per call (as used by the container sealant before ACS 12.2),
+ *   <li>{@link DynamicInterceptor} with a {@link MethodInterceptionHandlerFactory} that shares the handler of unlogged calls,
+ *   <li>{@link GeneratedInterceptor} with the same factory.
+ * </ul>
+ * The handlers mimic those of <code>alma.acs.container.ContainerSealant</code>.
+ * A context class loader is set, as done by the container.
+ * <p>
+ * Only for manual runs, e.g. <code>acsStartJava alma.acs.monitoring.InterceptorBenchmark 10000000</code>.
+ */
+public class InterceptorBenchmark
+{
+	public static class Struct {
+		public int value;
+		public double[] data = new double[4];
+	}
+
+	public static interface BenchmarkOperations {
+		public int counter();
+		public void update(Struct struct);
+	}
+
+	public static class BenchmarkImpl implements BenchmarkOperations {
+		private int counter;
+		public int counter() {
+			return ++counter;
+		}
+		public void update(Struct struct) {
+			struct.value++;
+		}
+	}
+
+	/**
+	 * Like the container sealant's handler: checks the log level, logs and measures only if enabled.
+	 */
+	private static class LoggingHandler implements InterceptionHandler {
+		private final Logger logger;
+		private final String qualMethodName;
+		private final boolean isLoggable;
+		private long startNanos;
+
+		LoggingHandler(Logger logger, String qualMethodName, boolean isLoggable) {
+			this.logger = logger;
+			this.qualMethodName = qualMethodName;
+			this.isLoggable = isLoggable;
+		}
+		public boolean callReceived(Method method, Object[] args) {
+			if (isLoggable) {
+				startNanos = System.nanoTime();
+				logger.log(Level.FINEST, "intercepted a call to '" + qualMethodName + "'.");
+			}
+			return true;
+		}
+		public Object callFinished(Object retVal, Object[] args, Throwable thr) throws Throwable {
+			if (isLoggable) {
+				logger.log(Level.FINEST, "returning from " + qualMethodName + " after " + (System.nanoTime() - startNanos) + " ns.");
+			}
+			if (thr != null) {
+				throw thr;
+			}
+			return retVal;
+		}
+	}
+
+	/**
+	 * New handler for every call, which computes the method name and log level decision per call.
+	 */
+	private static class PerCallHandlerFactory implements InterceptionHandlerFactory {
+		private final Logger logger;
+		PerCallHandlerFactory(Logger logger) {
+			this.logger = logger;
+		}
+		public InterceptionHandler createInterceptionHandler() {
+			return new InterceptionHandler() {
+				private InterceptionHandler delegate;
+				public boolean callReceived(Method method, Object[] args) {
+					delegate = new LoggingHandler(logger, "benchmark#" + method.getName(), logger.isLoggable(Level.FINEST));
+					return delegate.callReceived(method, args);
+				}
+				public Object callFinished(Object retVal, Object[] args, Throwable thr) throws Throwable {
+					return delegate.callFinished(retVal, args, thr);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Shared handler for calls that are not logged.
+	 */
+	private static class SharedHandlerFactory implements MethodInterceptionHandlerFactory {
+		private final Logger logger;
+		SharedHandlerFactory(Logger logger) {
+			this.logger = logger;
+		}
+		public InterceptionHandler createInterceptionHandler() {
+			throw new UnsupportedOperationException();
+		}
+		public InterceptionHandler createInterceptionHandler(Method method) {
+			// a real factory would cache this per method
+			if (logger.isLoggable(Level.FINEST)) {
+				return new LoggingHandler(logger, "benchmark#" + method.getName(), true);
+			}
+			return UNLOGGED;
+		}
+		private final InterceptionHandler UNLOGGED = new LoggingHandler(null, null, false);
+	}
+
+	private static long sink;
+
+	private static double run(BenchmarkOperations ops, boolean structArg, int calls) {
+		Struct struct = new Struct();
+		long start = System.nanoTime();
+		if (structArg) {
+			for (int i = 0; i < calls; i++) {
+				ops.update(struct);
+			}
+			sink += struct.value;
+		}
+		else {
+			for (int i = 0; i < calls; i++) {
+				sink += ops.counter();
+			}
+		}
+		return (System.nanoTime() - start) / (double) calls;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int calls = (args.length > 0 ? Integer.parseInt(args[0]) : 10000000);
+		Logger logger = TestLogger.getLogger("InterceptorBenchmark");
+		logger.setLevel(Level.INFO);
+		ClassLoader contextCL = new java.net.URLClassLoader(new java.net.URL[0]);
+
+		String[] names = { "direct call", "dynamic proxy, handler per call", "dynamic proxy, shared handler", "generated interceptor, shared handler" };
+		BenchmarkOperations[] impls = {
+			new BenchmarkImpl(),
+			DynamicInterceptor.createDynamicInterceptor(BenchmarkOperations.class, new BenchmarkImpl(), logger, contextCL, new PerCallHandlerFactory(logger)),
+			DynamicInterceptor.createDynamicInterceptor(BenchmarkOperations.class, new BenchmarkImpl(), logger, contextCL, new SharedHandlerFactory(logger)),
+			GeneratedInterceptor.createGeneratedInterceptor(BenchmarkOperations.class, new BenchmarkImpl(), logger, contextCL, new SharedHandlerFactory(logger))
+		};
+		if (!(impls[3] instanceof GeneratedInterceptor)) {
+			System.out.println("Warning: interceptor class could not be generated, using dynamic proxy.");
+		}
+
+		// warm-up, then measure
+		for (int round = 0; round < 3; round++) {
+			boolean measure = (round == 2);
+			for (int i = 0; i < impls.length; i++) {
+				double noArg = run(impls[i], false, calls);
+				double structArg = run(impls[i], true, calls);
+				if (measure) {
+					System.out.println(String.format("%-40s no-arg: %6.1f ns/call, struct-arg: %6.1f ns/call", names[i], noArg, structArg));
+				}
+			}
+		}
+		System.out.println("(" + calls + " calls each, " + sink + ")");
+	}
+}
@@ -20,11 +20,18 @@
  *******************************************************************************/
 package alma.acs.profiling.orb;
 
-import java.util.HashMap;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
+import javax.management.ObjectName;
+
 import org.jacorb.orb.acs.AcsORBProfiler;
 
 import alma.acs.logging.AcsLogger;
@@ -39,10 +46,15 @@ import alma.acs.util.IsoDateFormat;
  * see {@link #checkAndLogStatus()}.
  * <p>
  * To get logs for every ORB callback (only available for stdout), use {@link #DEBUG_CONFIG_PROPERTYNAME}.
+ * <p>
+ * In addition, live statistics are kept: request time histograms per POA and operation, 
+ * request queue and thread pool usage per POA, connection thread pool usage.
+ * They can be read and reset through {@link AcsORBProfilerMXBean}, see {@link #registerMBean(String)}.
+ * The recording of the request times is lock-free (a thread local lookup and a few atomic operations per request).
  * 
  * @author msekoran (first impl as cdb_rdb :: ORBRequestTimer), hsommer
  */
-public class AcsORBProfilerImplBase implements AcsORBProfiler
+public class AcsORBProfilerImplBase implements AcsORBProfiler, AcsORBProfilerMXBean
 {
 	/**
 	 * This property can optionally be set to one or more (comma and/or space separated) names of 
@@ -96,9 +108,29 @@ public class AcsORBProfilerImplBase implements AcsORBProfiler
 	
 	/**
 	 * Used to trace a request from {@link #requestStarted(int, String, String)} 
-	 * to {@link #requestFinished(int, String, String)}.
+	 * to {@link #requestFinished(int, String, String)}, which are called by the same thread.
+	 */
+	private final ThreadLocal<ThreadRequests> threadRequests = new ThreadLocal<ThreadRequests>() {
+		@Override
+		protected ThreadRequests initialValue() {
+			return new ThreadRequests();
+		}
+	};
+
+	/**
+	 * Live statistics, replaced by {@link #resetStatistics()}.
+	 */
+	private volatile Statistics statistics = new Statistics();
+
+	/**
+	 * Numbers the MBeans of all profilers in this JVM, see {@link #registerMBean(String)}.
+	 */
+	private static final AtomicInteger mbeanInstanceCounter = new AtomicInteger(0);
+
+	/**
+	 * Name of the MBean registered for this profiler, or <code>null</code>.
 	 */
-	private final HashMap<ThreadRequestId, Long> requestTimeMap = new HashMap<ThreadRequestId,Long>();
+	private volatile ObjectName mbeanName;
 
 	/**
 	 * Can be set via {@link #DEBUG_CONFIG_PROPERTYNAME}.
@@ -148,6 +180,7 @@ public class AcsORBProfilerImplBase implements AcsORBProfiler
 		}
 		
 		connectionPoolUsePercent = (int)(((totalThreads-idleThreads)/(double)maxThreads)*100);
+		updateMax(statistics.connectionThreadsMaxUsedPercent, connectionPoolUsePercent);
 		checkAndLogStatus();
 	}
 	
@@ -157,6 +190,11 @@ public class AcsORBProfilerImplBase implements AcsORBProfiler
 			System.out.println(IsoDateFormat.formatCurrentDate() + " undeliveredRequest: messageSize=" + messageSize + ", poaName=" + poaName + ", operation=" + operation);
 		}
 		undeliveredRequests.incrementAndGet();
+		Statistics stats = statistics;
+		stats.undeliveredRequests.incrementAndGet();
+		if (poaName != null) {
+			stats.getPoa(poaName).undeliveredRequests.incrementAndGet();
+		}
 		checkAndLogStatus();
 	}
 
@@ -178,6 +216,10 @@ public class AcsORBProfilerImplBase implements AcsORBProfiler
 				requestQueueMaxUsePOA = poaName;
 			}
 		}
+		PoaProfile poa = statistics.getPoa(poaName);
+		poa.queueSize = queueSize;
+		poa.maxQueueLength = maxQueueLength;
+		updateMax(poa.queueMaxUsePercent, requestQueueUsePercent);
 		checkAndLogStatus();
 	}
 
@@ -186,77 +228,259 @@ public class AcsORBProfilerImplBase implements AcsORBProfiler
 		if (debugThreadPoolSizeChanged) {
 			System.out.println(IsoDateFormat.formatCurrentDate() + " threadPoolSizeChanged: poaName=" + poaName + ", idleThreads=" + idleThreads + ", totalThreads=" + totalThreads + ", maxThreads=" + maxThreads);
 		}
+		PoaProfile poa = statistics.getPoa(poaName);
+		poa.busyThreads = totalThreads - idleThreads;
+		poa.maxThreads = maxThreads;
+		if (maxThreads > 0) {
+			updateMax(poa.threadsMaxUsePercent, (int)(((totalThreads-idleThreads)/(double)maxThreads)*100));
+		}
 		checkAndLogStatus();
 	}
 
 	/**
-	 * Uses requestId and threadId to trace a call from requestStarted to requestFinished.
+	 * Start times of the requests currently processed by one thread, 
+	 * used to trace a call from requestStarted to requestFinished.
 	 * <p>
+	 * Usually there is only one request per thread, but collocated calls can nest requests.
 	 * Note that multiple clients may generate the same requestId concurrently, 
-	 * and that at least for JacORB a single client may generate the same requestId concurrently for different ClientConnections.
-	 * <p>
-	 * TODO: Wouldn't using only the thread ID be good enough?
+	 * and that at least for JacORB a single client may generate the same requestId concurrently for different ClientConnections,
+	 * but not within the same thread.
 	 */
-	static final class ThreadRequestId {
-		private long threadId;
-		private int requestId;
-		public ThreadRequestId(long threadId, int requestId) {
-			this.threadId = threadId;
-			this.requestId = requestId;
+	static final class ThreadRequests {
+		/**
+		 * Requests never finished (should not happen) are dropped when more than this number are open.
+		 */
+		static final int MAX_OPEN_REQUESTS = 16;
+		final int[] requestIds = new int[MAX_OPEN_REQUESTS];
+		final long[] startTimes = new long[MAX_OPEN_REQUESTS];
+		int size = 0;
+
+		/**
+		 * Histogram of the last finished operation, since a thread usually serves the same operations.
+		 */
+		Statistics cachedStatistics;
+		String cachedPoaName;
+		String cachedOperation;
+		LatencyHistogram cachedHistogram;
+
+		LatencyHistogram getHistogram(Statistics statistics, String poaName, String operation) {
+			if (statistics != cachedStatistics || !equals(poaName, cachedPoaName) || !equals(operation, cachedOperation)) {
+				cachedHistogram = statistics.getPoa(poaName).getHistogram(operation);
+				cachedStatistics = statistics;
+				cachedPoaName = poaName;
+				cachedOperation = operation;
+			}
+			return cachedHistogram;
 		}
-		@Override
-		public int hashCode() {
-			return (int)threadId * 911 + requestId;
+
+		private static boolean equals(String s1, String s2) {
+			return (s1 == s2 || (s1 != null && s1.equals(s2)));
 		}
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			ThreadRequestId other = (ThreadRequestId) obj;
-			if (requestId != other.requestId)
-				return false;
-			if (threadId != other.threadId)
-				return false;
-			return true;
+
+		void started(int requestId, long startTime) {
+			if (size == MAX_OPEN_REQUESTS) {
+				// drop the oldest
+				System.arraycopy(requestIds, 1, requestIds, 0, size - 1);
+				System.arraycopy(startTimes, 1, startTimes, 0, size - 1);
+				size--;
+			}
+			requestIds[size] = requestId;
+			startTimes[size] = startTime;
+			size++;
+		}
+
+		/**
+		 * @return start time, or -1 if the request is not known.
+		 */
+		long finished(int requestId) {
+			for (int i = size - 1; i >= 0; i--) {
+				if (requestIds[i] == requestId) {
+					long startTime = startTimes[i];
+					size--;
+					System.arraycopy(requestIds, i + 1, requestIds, i, size - i);
+					System.arraycopy(startTimes, i + 1, startTimes, i, size - i);
+					return startTime;
+				}
+			}
+			return -1;
 		}
 	}
 	
 	@Override
 	public void requestStarted(int requestId, String poaName, String operation) {
-		long threadId = Thread.currentThread().getId();
 		if (debugRequestStarted) {
-			System.out.println(IsoDateFormat.formatCurrentDate() + " requestStarted(" + requestId + ", " + poaName + ", " + operation + ", " + threadId + ")");
-		}
-		synchronized (requestTimeMap) {
-			requestTimeMap.put(new ThreadRequestId(threadId, requestId), System.currentTimeMillis());
+			System.out.println(IsoDateFormat.formatCurrentDate() + " requestStarted(" + requestId + ", " + poaName + ", " + operation + ", " + Thread.currentThread().getId() + ")");
 		}
+		threadRequests.get().started(requestId, System.nanoTime());
 	}
 
 	@Override
 	public void requestFinished(int requestId, String poaName, String operation) {
-		synchronized (requestTimeMap) {
-			long threadId = Thread.currentThread().getId();
-			Long startTime = requestTimeMap.remove(new ThreadRequestId(threadId, requestId));
-			if (startTime != null)
-			{
-				long timeSpent = System.currentTimeMillis() - startTime.longValue();
-				if (debugRequestFinished) {
-					System.out.println(IsoDateFormat.formatCurrentDate() + " requestFinished(" + requestId + ", " + poaName + ", " + operation + ", " + threadId + ") in " + timeSpent + " ms");
+		ThreadRequests requests = threadRequests.get();
+		long startTime = requests.finished(requestId);
+		if (startTime >= 0)
+		{
+			long timeSpentNanos = System.nanoTime() - startTime;
+			requests.getHistogram(statistics, poaName, operation).record(timeSpentNanos);
+			if (debugRequestFinished) {
+				System.out.println(IsoDateFormat.formatCurrentDate() + " requestFinished(" + requestId + ", " + poaName + ", " + operation + ", " + Thread.currentThread().getId() + ") in " + (timeSpentNanos / 1000000) + " ms");
+			}
+		}
+		else
+		{
+			if (debugRequestFinished) {
+				System.out.println(IsoDateFormat.formatCurrentDate() + " requestFinished(" + requestId + ", " + poaName + ", " + operation + ", " + Thread.currentThread().getId() + ")");
+			}
+		}
+	}
+	
+	/**
+	 * Live statistics of one POA.
+	 */
+	private static final class PoaProfile {
+		final ConcurrentHashMap<String, LatencyHistogram> operations = new ConcurrentHashMap<String, LatencyHistogram>();
+		volatile int queueSize;
+		volatile int maxQueueLength;
+		final AtomicInteger queueMaxUsePercent = new AtomicInteger(0);
+		volatile int busyThreads;
+		volatile int maxThreads;
+		final AtomicInteger threadsMaxUsePercent = new AtomicInteger(0);
+		final AtomicLong undeliveredRequests = new AtomicLong(0);
+
+		LatencyHistogram getHistogram(String operation) {
+			LatencyHistogram histogram = operations.get(operation);
+			if (histogram == null) {
+				histogram = new LatencyHistogram();
+				LatencyHistogram previous = operations.putIfAbsent(operation, histogram);
+				if (previous != null) {
+					histogram = previous;
 				}
 			}
-			else
-			{
-				if (debugRequestFinished) {
-					System.out.println(IsoDateFormat.formatCurrentDate() + " requestFinished(" + requestId + ", " + poaName + ", " + operation + ", " + threadId + ")");
+			return histogram;
+		}
+	}
+
+	/**
+	 * Live statistics since the last reset.
+	 */
+	private static final class Statistics {
+		final long startTime = System.currentTimeMillis();
+		final ConcurrentHashMap<String, PoaProfile> poas = new ConcurrentHashMap<String, PoaProfile>();
+		final AtomicInteger connectionThreadsMaxUsedPercent = new AtomicInteger(0);
+		final AtomicLong undeliveredRequests = new AtomicLong(0);
+
+		PoaProfile getPoa(String poaName) {
+			if (poaName == null) {
+				poaName = "---";
+			}
+			PoaProfile poa = poas.get(poaName);
+			if (poa == null) {
+				poa = new PoaProfile();
+				PoaProfile previous = poas.putIfAbsent(poaName, poa);
+				if (previous != null) {
+					poa = previous;
 				}
 			}
+			return poa;
 		}
 	}
-	
+
+	private static void updateMax(AtomicInteger max, int value) {
+		int current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	@Override
+	public OperationStatistics[] getOperationStatistics() {
+		List<OperationStatistics> ret = new ArrayList<OperationStatistics>();
+		for (Map.Entry<String, PoaProfile> poa : statistics.poas.entrySet()) {
+			for (Map.Entry<String, LatencyHistogram> operation : poa.getValue().operations.entrySet()) {
+				ret.add(new OperationStatistics(poa.getKey(), operation.getKey(), operation.getValue().getSnapshot()));
+			}
+		}
+		return ret.toArray(new OperationStatistics[ret.size()]);
+	}
+
+	@Override
+	public PoaStatistics[] getPoaStatistics() {
+		List<PoaStatistics> ret = new ArrayList<PoaStatistics>();
+		for (Map.Entry<String, PoaProfile> entry : statistics.poas.entrySet()) {
+			PoaProfile poa = entry.getValue();
+			ret.add(new PoaStatistics(entry.getKey(), poa.queueSize, poa.maxQueueLength, poa.queueMaxUsePercent.get(),
+					poa.busyThreads, poa.maxThreads, poa.threadsMaxUsePercent.get(), poa.undeliveredRequests.get()));
+		}
+		return ret.toArray(new PoaStatistics[ret.size()]);
+	}
+
+	@Override
+	public int getConnectionThreadsUsedPercent() {
+		return connectionPoolUsePercent;
+	}
+
+	@Override
+	public int getConnectionThreadsMaxUsedPercent() {
+		return statistics.connectionThreadsMaxUsedPercent.get();
+	}
+
+	@Override
+	public long getUndeliveredRequests() {
+		return statistics.undeliveredRequests.get();
+	}
+
+	@Override
+	public long getStatisticsStartTime() {
+		return statistics.startTime;
+	}
+
+	/**
+	 * Requests that are being processed while resetting will still be recorded in the new statistics
+	 * (but not requests that finish while {@link #getOperationStatistics()} is being called on the old statistics).
+	 */
+	@Override
+	public void resetStatistics() {
+		statistics = new Statistics();
+	}
+
+	/**
+	 * Registers this profiler with the platform MBean server, under 
+	 * <code>alma.acs.profiling.orb:type=AcsORBProfiler,name=&lt;name&gt;,instance=&lt;n&gt;</code>,
+	 * where the instance number keeps the names of several profilers in the same JVM apart.
+	 * Failures are logged but not thrown, since profiling is optional.
+	 * <p>
+	 * The MBean should be removed with {@link #unregisterMBean()} when the ORB gets shut down.
+	 * @param name Name of the process (e.g. container name), to distinguish profilers.
+	 */
+	public void registerMBean(String name) {
+		try {
+			ObjectName objectName = new ObjectName("alma.acs.profiling.orb:type=AcsORBProfiler,name=" + ObjectName.quote(name) 
+					+ ",instance=" + mbeanInstanceCounter.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			mbeanName = objectName;
+			logger.finer("Registered ORB profiler MBean " + objectName);
+		} catch (Exception ex) {
+			logger.log(Level.FINE, "Failed to register ORB profiler MBean for '" + name + "'.", ex);
+		}
+	}
+
+	/**
+	 * Removes the MBean registered by {@link #registerMBean(String)}, if any.
+	 * Failures are logged but not thrown.
+	 */
+	public void unregisterMBean() {
+		ObjectName objectName = mbeanName;
+		if (objectName != null) {
+			mbeanName = null;
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+				logger.finer("Unregistered ORB profiler MBean " + objectName);
+			} catch (Exception ex) {
+				logger.log(Level.FINE, "Failed to unregister ORB profiler MBean " + objectName, ex);
+			}
+		}
+	}
+
 	/**
 	 * Logs the ORB status and resets {@link #undeliveredRequests}, {@link #requestQueueMaxUsePercent}.
 	 * We use repeat guard {@link #orbStatusLogRepeatGuard} so that at most one status message 
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.profiling.orb;
+
+/**
+ * JMX view of the live ORB profiling statistics collected by {@link AcsORBProfilerImplBase},
+ * see {@link AcsORBProfilerImplBase#registerMBean(String)}.
+ * <p>
+ * All statistics are accumulated since the profiler was created or since the last {@link #resetStatistics()}.
+ */
+public interface AcsORBProfilerMXBean
+{
+	/**
+	 * @return Request time statistics for every POA and operation that got called.
+	 */
+	public OperationStatistics[] getOperationStatistics();
+
+	/**
+	 * @return Request queue and thread pool usage of every POA.
+	 */
+	public PoaStatistics[] getPoaStatistics();
+
+	/**
+	 * @return Current percentage of busy threads in the connection thread pool.
+	 */
+	public int getConnectionThreadsUsedPercent();
+
+	/**
+	 * @return Maximum percentage of busy threads in the connection thread pool.
+	 */
+	public int getConnectionThreadsMaxUsedPercent();
+
+	/**
+	 * @return Number of requests that could not be delivered, see {@link org.jacorb.orb.acs.AcsORBProfiler#undeliveredRequest(int, String, String, boolean)}.
+	 */
+	public long getUndeliveredRequests();
+
+	/**
+	 * @return Time (Java time in ms) when the statistics were last reset.
+	 */
+	public long getStatisticsStartTime();
+
+	/**
+	 * Discards all statistics.
+	 */
+	public void resetStatistics();
+}
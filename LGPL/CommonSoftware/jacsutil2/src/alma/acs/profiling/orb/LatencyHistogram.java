@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.profiling.orb;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets, used by {@link AcsORBProfilerImplBase}
+ * to record request times per operation at a cost of a few atomic increments.
+ * <p>
+ * Latencies are recorded in microseconds. Every power of two is split into {@link #SUB_BUCKETS} linear sub-buckets,
+ * which gives a relative error of the percentiles of at most 25%, while covering all values up to hours in 256 buckets.
+ * <p>
+ * Concurrent {@link #record(long)} and {@link #getSnapshot()} calls are allowed; a snapshot taken during recording
+ * may be off by the requests being recorded.
+ */
+public class LatencyHistogram
+{
+	/**
+	 * Number of linear sub-buckets per power of two.
+	 */
+	public static final int SUB_BUCKETS = 4;
+
+	private static final int SUB_BUCKET_BITS = 2;
+
+	private static final int BUCKET_COUNT = 64 * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong totalMicros = new AtomicLong();
+
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	/**
+	 * Records one request.
+	 * @param nanos Request time in nanoseconds.
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		buckets.incrementAndGet(bucketIndex(micros));
+		totalMicros.addAndGet(micros);
+		long max = maxMicros.get();
+		while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+			max = maxMicros.get();
+		}
+	}
+
+	/**
+	 * Values below <code>2 * SUB_BUCKETS</code> get their own bucket,
+	 * larger values are split by exponent and the next {@link #SUB_BUCKET_BITS} bits.
+	 */
+	static int bucketIndex(long micros) {
+		if (micros < 2 * SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return the largest value (in microseconds) that falls into the given bucket.
+	 */
+	static long bucketUpperBound(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKETS;
+		long lowerBound = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * @return a copy of the current histogram data.
+	 */
+	public Snapshot getSnapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets.get(i);
+			count += counts[i];
+		}
+		return new Snapshot(counts, count, totalMicros.get(), maxMicros.get());
+	}
+
+	/**
+	 * Immutable copy of the histogram data.
+	 */
+	public static class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long totalMicros;
+		private final long maxMicros;
+
+		Snapshot(long[] counts, long count, long totalMicros, long maxMicros) {
+			this.counts = counts;
+			this.count = count;
+			this.totalMicros = totalMicros;
+			this.maxMicros = maxMicros;
+		}
+
+		/**
+		 * @return number of recorded requests.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return average request time in microseconds, or 0 if nothing was recorded.
+		 */
+		public long getMeanMicros() {
+			return (count > 0 ? totalMicros / count : 0);
+		}
+
+		/**
+		 * @return longest request time in microseconds.
+		 */
+		public long getMaxMicros() {
+			return maxMicros;
+		}
+
+		/**
+		 * @param percentile between 0 and 100.
+		 * @return upper bound (in microseconds, at most {@link #getMaxMicros()}) of the bucket
+		 *         that contains the given percentile, or 0 if nothing was recorded.
+		 */
+		public long getPercentileMicros(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(count * percentile / 100.0);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank && counts[i] > 0) {
+					return Math.min(bucketUpperBound(i), maxMicros);
+				}
+			}
+			return maxMicros;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.profiling.orb;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Request time statistics of one operation, as returned by {@link AcsORBProfilerMXBean#getOperationStatistics()}.
+ * All times are in microseconds; percentiles are upper bounds of {@link LatencyHistogram} buckets.
+ */
+public class OperationStatistics
+{
+	private final String poaName;
+	private final String operation;
+	private final long count;
+	private final long meanMicros;
+	private final long medianMicros;
+	private final long percentile90Micros;
+	private final long percentile99Micros;
+	private final long maxMicros;
+
+	@ConstructorProperties({"poaName", "operation", "count", "meanMicros", "medianMicros", "percentile90Micros", "percentile99Micros", "maxMicros"})
+	public OperationStatistics(String poaName, String operation, long count, long meanMicros, 
+			long medianMicros, long percentile90Micros, long percentile99Micros, long maxMicros) {
+		this.poaName = poaName;
+		this.operation = operation;
+		this.count = count;
+		this.meanMicros = meanMicros;
+		this.medianMicros = medianMicros;
+		this.percentile90Micros = percentile90Micros;
+		this.percentile99Micros = percentile99Micros;
+		this.maxMicros = maxMicros;
+	}
+
+	OperationStatistics(String poaName, String operation, LatencyHistogram.Snapshot snapshot) {
+		this(poaName, operation, snapshot.getCount(), snapshot.getMeanMicros(), snapshot.getPercentileMicros(50),
+				snapshot.getPercentileMicros(90), snapshot.getPercentileMicros(99), snapshot.getMaxMicros());
+	}
+
+	public String getPoaName() {
+		return poaName;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMeanMicros() {
+		return meanMicros;
+	}
+
+	public long getMedianMicros() {
+		return medianMicros;
+	}
+
+	public long getPercentile90Micros() {
+		return percentile90Micros;
+	}
+
+	public long getPercentile99Micros() {
+		return percentile99Micros;
+	}
+
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	@Override
+	public String toString() {
+		return poaName + "::" + operation + ": count=" + count + ", mean=" + meanMicros + 
+				" us, median=" + medianMicros + " us, 90%=" + percentile90Micros + 
+				" us, 99%=" + percentile99Micros + " us, max=" + maxMicros + " us";
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.profiling.orb;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Request queue and thread pool usage of one POA, as returned by {@link AcsORBProfilerMXBean#getPoaStatistics()}.
+ */
+public class PoaStatistics
+{
+	private final String poaName;
+	private final int queueSize;
+	private final int maxQueueLength;
+	private final int queueMaxUsePercent;
+	private final int busyThreads;
+	private final int maxThreads;
+	private final int threadsMaxUsePercent;
+	private final long undeliveredRequests;
+
+	@ConstructorProperties({"poaName", "queueSize", "maxQueueLength", "queueMaxUsePercent", "busyThreads", "maxThreads", "threadsMaxUsePercent", "undeliveredRequests"})
+	public PoaStatistics(String poaName, int queueSize, int maxQueueLength, int queueMaxUsePercent, 
+			int busyThreads, int maxThreads, int threadsMaxUsePercent, long undeliveredRequests) {
+		this.poaName = poaName;
+		this.queueSize = queueSize;
+		this.maxQueueLength = maxQueueLength;
+		this.queueMaxUsePercent = queueMaxUsePercent;
+		this.busyThreads = busyThreads;
+		this.maxThreads = maxThreads;
+		this.threadsMaxUsePercent = threadsMaxUsePercent;
+		this.undeliveredRequests = undeliveredRequests;
+	}
+
+	public String getPoaName() {
+		return poaName;
+	}
+
+	/**
+	 * @return Last reported request queue size.
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public int getMaxQueueLength() {
+		return maxQueueLength;
+	}
+
+	/**
+	 * @return Maximum request queue usage in percent.
+	 */
+	public int getQueueMaxUsePercent() {
+		return queueMaxUsePercent;
+	}
+
+	/**
+	 * @return Last reported number of busy threads in the POA thread pool.
+	 */
+	public int getBusyThreads() {
+		return busyThreads;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	/**
+	 * @return Maximum percentage of busy threads in the POA thread pool (saturation).
+	 */
+	public int getThreadsMaxUsePercent() {
+		return threadsMaxUsePercent;
+	}
+
+	public long getUndeliveredRequests() {
+		return undeliveredRequests;
+	}
+
+	@Override
+	public String toString() {
+		return poaName + ": queue=" + queueSize + "/" + maxQueueLength + " (max " + queueMaxUsePercent + 
+				"%), threads=" + busyThreads + "/" + maxThreads + " (max " + threadsMaxUsePercent + 
+				"%), lost calls=" + undeliveredRequests;
+	}
+}
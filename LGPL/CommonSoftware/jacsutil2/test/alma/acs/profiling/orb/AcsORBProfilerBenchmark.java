@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.profiling.orb;
+
+import alma.acs.logging.AcsLogger;
+import alma.acs.logging.ClientLogManager;
+
+/**
+ * Measures the instrumentation cost of a request (requestStarted + requestFinished) in {@link AcsORBProfilerImplBase},
+ * with several threads that call a few operations of the same POA.
+ * <p>
+ * Arguments: number of threads (default 4), number of requests per thread (default 1000000).
+ * <p>
+ * Only for manual runs, e.g. <code>acsStartJava alma.acs.profiling.orb.AcsORBProfilerBenchmark 4 1000000</code>.
+ */
+public class AcsORBProfilerBenchmark
+{
+	public static void main(String[] args) throws Exception {
+		final int threadCount = (args.length > 0 ? Integer.parseInt(args[0]) : 4);
+		final int requests = (args.length > 1 ? Integer.parseInt(args[1]) : 1000000);
+		final String[] operations = {"get_value", "set_value", "get_characteristics", "_is_a"};
+
+		AcsLogger logger = ClientLogManager.getAcsLogManager().getLoggerForApplication("AcsORBProfilerBenchmark", false);
+		final AcsORBProfilerImplBase profiler = new AcsORBProfilerImplBase(logger);
+
+		Thread[] threads = new Thread[threadCount];
+		final long[] nanos = new long[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			final int index = t;
+			threads[t] = new Thread() {
+				public void run() {
+					// warm-up included in measurement is negligible
+					long start = System.nanoTime();
+					for (int i = 0; i < requests; i++) {
+						String operation = operations[i & 3];
+						profiler.requestStarted(i, "ComponentPOA", operation);
+						profiler.requestFinished(i, "ComponentPOA", operation);
+					}
+					nanos[index] = (System.nanoTime() - start) / requests;
+				}
+			};
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		long total = 0;
+		for (int t = 0; t < threadCount; t++) {
+			threads[t].join();
+			total += nanos[t];
+		}
+		System.out.println("ORB profiler overhead per request: " + (total / threadCount) + " ns (" + threadCount + " threads, " + requests + " requests each)");
+
+		for (OperationStatistics op : profiler.getOperationStatistics()) {
+			System.out.println(op);
+		}
+		ClientLogManager.getAcsLogManager().shutdown(true);
+	}
+}
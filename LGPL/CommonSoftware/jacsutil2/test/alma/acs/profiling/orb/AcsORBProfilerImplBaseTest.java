@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.profiling.orb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.Set;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import alma.acs.logging.testsupport.JUnit4StandaloneTestBase;
+
+/**
+ * Tests the live statistics of {@link AcsORBProfilerImplBase} and {@link LatencyHistogram}.
+ */
+public class AcsORBProfilerImplBaseTest extends JUnit4StandaloneTestBase
+{
+	private AcsORBProfilerImplBase profiler;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		profiler = new AcsORBProfilerImplBase(logger);
+	}
+
+	@Test
+	public void testHistogramBuckets() throws Exception {
+		// buckets are contiguous
+		for (long micros = 0; micros < 100000; micros++) {
+			int index = LatencyHistogram.bucketIndex(micros);
+			assertTrue(micros <= LatencyHistogram.bucketUpperBound(index));
+			assertTrue(index == 0 || micros > LatencyHistogram.bucketUpperBound(index - 1));
+		}
+		assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) < 64 * LatencyHistogram.SUB_BUCKETS);
+	}
+
+	@Test
+	public void testHistogramPercentiles() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getSnapshot().getPercentileMicros(50));
+
+		// 1..1000 us in random order
+		Random random = new Random(1234);
+		long[] values = new long[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i + 1;
+		}
+		for (int i = values.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			long t = values[i]; values[i] = values[j]; values[j] = t;
+		}
+		for (long micros : values) {
+			histogram.record(micros * 1000);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+		assertEquals(1000, snapshot.getCount());
+		assertEquals(500, snapshot.getMeanMicros());
+		assertEquals(1000, snapshot.getMaxMicros());
+		assertPercentile(500, snapshot.getPercentileMicros(50));
+		assertPercentile(900, snapshot.getPercentileMicros(90));
+		assertPercentile(990, snapshot.getPercentileMicros(99));
+		assertEquals(1000, snapshot.getPercentileMicros(100));
+	}
+
+	private static void assertPercentile(long expected, long actual) {
+		assertTrue("expected about " + expected + " but was " + actual, actual >= expected && actual <= expected * 1.25);
+	}
+
+	@Test
+	public void testRequestStatistics() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			profiler.requestStarted(i, "ComponentPOA", "get_value");
+			profiler.requestFinished(i, "ComponentPOA", "get_value");
+		}
+
+		// nested request with the same request id (different client connections)
+		profiler.requestStarted(1, "ComponentPOA", "outer");
+		profiler.requestStarted(1, "ComponentPOA", "inner");
+		Thread.sleep(2);
+		profiler.requestFinished(1, "ComponentPOA", "inner");
+		profiler.requestFinished(1, "ComponentPOA", "outer");
+
+		// never started
+		profiler.requestFinished(99, "ComponentPOA", "unknown");
+
+		OperationStatistics[] ops = profiler.getOperationStatistics();
+		assertEquals(3, ops.length);
+		for (OperationStatistics op : ops) {
+			assertEquals("ComponentPOA", op.getPoaName());
+			if (op.getOperation().equals("get_value")) {
+				assertEquals(10, op.getCount());
+			}
+			else {
+				assertEquals(1, op.getCount());
+				assertTrue(op.getMaxMicros() >= 2000);
+			}
+		}
+
+		profiler.requestQueueSizeChanged(1, "ComponentPOA", 5, 10);
+		profiler.requestQueueSizeChanged(2, "ComponentPOA", 1, 10);
+		profiler.threadPoolSizeChanged("ComponentPOA", 1, 4, 4);
+		profiler.threadPoolSizeChanged("ComponentPOA", 3, 4, 4);
+		profiler.undeliveredRequest(100, "ComponentPOA", "get_value", true);
+		profiler.connectionThreadPoolSizeChanged(0, 10, 10);
+		profiler.connectionThreadPoolSizeChanged(8, 10, 10);
+
+		PoaStatistics[] poas = profiler.getPoaStatistics();
+		assertEquals(1, poas.length);
+		assertEquals(1, poas[0].getQueueSize());
+		assertEquals(50, poas[0].getQueueMaxUsePercent());
+		assertEquals(1, poas[0].getBusyThreads());
+		assertEquals(75, poas[0].getThreadsMaxUsePercent());
+		assertEquals(1, poas[0].getUndeliveredRequests());
+		assertEquals(1, profiler.getUndeliveredRequests());
+		assertEquals(20, profiler.getConnectionThreadsUsedPercent());
+		assertEquals(100, profiler.getConnectionThreadsMaxUsedPercent());
+
+		// reset
+		long startTime = profiler.getStatisticsStartTime();
+		Thread.sleep(2);
+		profiler.requestStarted(1, "ComponentPOA", "get_value");
+		profiler.resetStatistics();
+		assertTrue(profiler.getStatisticsStartTime() > startTime);
+		assertEquals(0, profiler.getOperationStatistics().length);
+		assertEquals(0, profiler.getPoaStatistics().length);
+		assertEquals(0, profiler.getUndeliveredRequests());
+		profiler.requestFinished(1, "ComponentPOA", "get_value");
+		assertEquals(1, profiler.getOperationStatistics()[0].getCount());
+	}
+
+	/**
+	 * Concurrent requests of several threads are all recorded.
+	 * The instrumentation cost per request is measured by {@link AcsORBProfilerBenchmark}.
+	 */
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		final int threadCount = 4;
+		final int requests = 100000;
+		final String[] operations = {"get_value", "set_value", "get_characteristics", "_is_a"};
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < requests; i++) {
+						String operation = operations[i & 3];
+						profiler.requestStarted(i, "ComponentPOA", operation);
+						profiler.requestFinished(i, "ComponentPOA", operation);
+					}
+				}
+			};
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		long count = 0;
+		for (OperationStatistics op : profiler.getOperationStatistics()) {
+			count += op.getCount();
+		}
+		assertEquals(threadCount * requests, count);
+	}
+
+	/**
+	 * Profilers registered under the same name get different MBeans, which are removed again when unregistered.
+	 */
+	@Test
+	public void testMBeanRegistration() throws Exception {
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName query = new ObjectName("alma.acs.profiling.orb:type=AcsORBProfiler,name=" + ObjectName.quote("TestContainer") + ",*");
+		AcsORBProfilerImplBase profiler2 = new AcsORBProfilerImplBase(logger);
+		profiler.registerMBean("TestContainer");
+		profiler2.registerMBean("TestContainer");
+		assertEquals(2, mbeanServer.queryNames(query, null).size());
+
+		profiler.unregisterMBean();
+		Set<ObjectName> names = mbeanServer.queryNames(query, null);
+		assertEquals(1, names.size());
+		AcsORBProfilerMXBean proxy = JMX.newMXBeanProxy(mbeanServer, names.iterator().next(), AcsORBProfilerMXBean.class);
+		profiler2.undeliveredRequest(100, "ComponentPOA", "get_value", true);
+		assertEquals(1, proxy.getUndeliveredRequests());
+
+		profiler2.unregisterMBean();
+		profiler2.unregisterMBean();
+		assertEquals(0, mbeanServer.queryNames(query, null).size());
+	}
+}
@@ -111,7 +111,7 @@ public class CharacteristicComponentImpl extends ComponentImplBase
 
 			// create characteristic model
 			// TODO think of error handling; why creating model per instance...
-			characteristicModelImpl = new CharacteristicModelImpl("alma/" + m_instanceName, dal);
+			characteristicModelImpl = new CharacteristicModelImpl("alma/" + m_instanceName, dal, m_logger);
 		} catch (AcsJContainerServicesEx ce)
 		{
 			throw new ComponentLifecycleException("Failed to create characteristic model.", ce);
@@ -184,6 +184,11 @@ public class CharacteristicComponentImpl extends ComponentImplBase
 				}
 			}
 		}
+
+		// release characteristics cache
+		if (characteristicModelImpl != null)
+			characteristicModelImpl.destroy();
+
 		super.cleanUp();
 	}
 
@@ -21,8 +21,7 @@
 
 package alma.ACS.impl;
 
-import java.util.ArrayList;
-import java.util.regex.Pattern;
+import java.util.logging.Logger;
 
 import org.omg.CORBA.Any;
 import org.omg.CORBA.NO_IMPLEMENT;
@@ -45,21 +44,17 @@ import alma.cdbErrType.CDBFieldDoesNotExistEx;
 import alma.cdbErrType.WrongCDBDataTypeEx;
 
 import com.cosylab.CDB.DAL;
-import com.cosylab.CDB.DAO;
-
-import com.cosylab.util.WildcharMatcher;;
 
 
 /**
  * Implementation of <code>alma.ACS.CharacteristicModel</code>.
- * TODO temporary implementation - real caching (DAL wide, not per CharacteristicModelImpl instance) has to be implemented
- * TODO what about reconnection then... is persistent DAL server enough?
+ * Characteristics are read from the DAL wide {@link CharacteristicsCache}, i.e. every CDB record is read once
+ * and shared by all the models (properties) of the component; changed records are reloaded.
  * @author <a href="mailto:matej.sekoranjaATcosylab.com">Matej Sekoranja</a>
  * @author <a href="mailto:cmenayATcsrg.inf.utfsm.cl">Camilo Menay</a>
  * @author <a href="mailto:cmaureirATinf.utfsm.cl">Cristian Maureira</a>
  * @version $id$
  */
-// TODO to be fully implemented, cached, etc.
 public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 	//for create an Any (i don't know any other method!)
@@ -74,9 +69,13 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 	 */
 	protected String modelName;
 	/**
-	 * CDB DAO.
+	 * DAL wide characteristics cache, released by {@link #destroy()}.
+	 */
+	protected CharacteristicsCache cache;
+	/**
+	 * Logger of the model's owner.
 	 */
-	protected DAO dao;
+	private final Logger logger;
 
 
 	// TODO remove this crap
@@ -91,6 +90,15 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 	 * @param dal		CDB DAL object, non-<code>null</code>.
 	 */
 	public CharacteristicModelImpl(String modelName, DAL dal) {
+		this(modelName, dal, Logger.getLogger(CharacteristicModelImpl.class.getName()));
+	}
+
+	/**
+	 * @param modelName	name of the model (used to determine CDB lookup), non-<code>null</code>.
+	 * @param dal		CDB DAL object, non-<code>null</code>.
+	 * @param logger	logger, non-<code>null</code>.
+	 */
+	public CharacteristicModelImpl(String modelName, DAL dal, Logger logger) {
 
 		if (modelName == null)
 			throw new NullPointerException("modelName == null");	
@@ -99,18 +107,68 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 			throw new NullPointerException("dal == null");	
 
 		this.modelName = modelName;
+		this.logger = logger;
 		
+		this.cache = CharacteristicsCache.acquire(dal);
 		try
 		{
-			this.dao = dal.get_DAO_Servant(modelName);
+			// read (and check) the record in advance
+			this.cache.getSnapshot(modelName, logger);
 		}
 		catch (Throwable th)
 		{
+			destroy();
 			// TODO throw better exception
 			throw new NullPointerException("Failed to get DAO for '" + modelName + "'.");
 		}
 	}
 
+	/**
+	 * Get current snapshot of the model's CDB record.
+	 * Not kept by the model, since the cached one is discarded when the record changes.
+	 * @return snapshot, non-<code>null</code>.
+	 * @throws CDBFieldDoesNotExistEx	if the record could not be read.
+	 */
+	private CharacteristicsSnapshot snapshot() throws CDBFieldDoesNotExistEx {
+		CharacteristicsCache cache;
+		synchronized (this)
+		{
+			cache = this.cache;
+		}
+		if (cache == null)
+			throw new CDBFieldDoesNotExistEx();	// destroyed
+		try
+		{
+			return cache.getSnapshot(modelName, logger);
+		}
+		catch (CDBFieldDoesNotExistEx ex)
+		{
+			throw ex;
+		}
+		catch (SystemException se)
+		{
+			throw se;
+		}
+		catch (Exception ex)
+		{
+			CDBFieldDoesNotExistEx fde = new CDBFieldDoesNotExistEx();
+			fde.initCause(ex);
+			throw fde;
+		}
+	}
+
+	/**
+	 * Release the characteristics cache, the model must not be used afterwards.
+	 * Subsequent calls have no effect.
+	 */
+	public synchronized void destroy() {
+		if (cache != null)
+		{
+			cache.release();
+			cache = null;
+		}
+	}
+
 	/*********************** [ CharacteristicModel ] ***********************/
 
 	/**
@@ -123,11 +181,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 	//cmenay
 
 		 try{
-			String strVal = new String();
-			if (prefix=="")	
-				strVal = dao.get_string(name);
-			else
-				strVal = dao.get_string(prefix+name);
+			String strVal = snapshot().get_string(prefix+name);
 
 			 //I needed the getAny() to create a new Any, since a constructor for
 			 // Any (i.e: new Any() ), doesn't exist
@@ -159,40 +213,11 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 	 * @see alma.ACS.CharacteristicModelOperations#find_characteristic(java.lang.String)
 	 */
 	public String[] find_characteristic(String wildcard) {
-		//cmenay
 		try {
-			String[] allSeq; 
-				if (prefix=="")	
-					allSeq = dao.get_string_seq("");
-				else
-					allSeq = dao.get_string_seq(prefix);
-			
-			int max;
-			max = allSeq.length;
-			ArrayList<String> arrSeq = new ArrayList<String>();
-			
-			String regExpStr = WildcharMatcher.simpleWildcardToRegex(wildcard);
-			Pattern pattern = Pattern.compile(regExpStr);
-
-			for(int i=0;i<max;i++)
-				if( pattern.matcher(allSeq[i]).matches())
-					arrSeq.add(allSeq[i]);
-			if (arrSeq.isEmpty())
-				throw new CDBFieldDoesNotExistEx();
-			
-			String[] ret = new String[arrSeq.size()];
-			
-			for(int i=0;i<arrSeq.size();i++)
-				ret[i]=arrSeq.get(i);
-			
-			return ret;
-			
+			return snapshot().find(prefix, wildcard);
 		} catch (CDBFieldDoesNotExistEx e) {
 			return new String[0];
-		} catch (WrongCDBDataTypeEx e) {
-			return new String[0];
 		}
-	
 	}
 
 	/**
@@ -205,10 +230,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 			
 			try {
 				
-				if (prefix=="")	
-					allSeq = dao.get_string_seq("");
-				else
-					allSeq = dao.get_string_seq(prefix);
+				allSeq = snapshot().get_string_seq(prefix);
 				Property[] p = new Property[allSeq.length];
 				for (int i=0;i<allSeq.length;i++){
 					Any a = get_characteristic_by_name(allSeq[i]);
@@ -256,10 +278,9 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 	public String getString(String name)
 		throws NoSuchCharacteristic
 	{
-		// TODO temporary implementation
 		try
 		{
-			return dao.get_string(prefix+name);
+			return snapshot().get_string(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -278,7 +299,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 		try
 		{
-			return (long)dao.get_long(prefix+name);
+			return (long)snapshot().get_long(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -294,10 +315,9 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 	public int getInteger(String name)
 		throws NoSuchCharacteristic
 	{
-		// TODO temporary implementation
 		try
 		{
-			return dao.get_long(prefix+name);
+			return snapshot().get_long(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -316,7 +336,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 		try
 		{
-			return dao.get_double(prefix+name);
+			return snapshot().get_double(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -334,10 +354,9 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 	public float getFloat(String name)
 		throws NoSuchCharacteristic
 	{
-		// TODO temporary implementation
 		try
 		{
-			return (float)dao.get_double(prefix+name);
+			return (float)snapshot().get_double(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -356,7 +375,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 		try
 		{
-			String str=dao.get_string(prefix+name);
+			String str=snapshot().get_string(prefix+name);
 			return Boolean.parseBoolean(str);
 		}
 		catch (Throwable th)
@@ -376,7 +395,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 		try
 		{
-			return dao.get_long_seq(prefix+name);
+			return snapshot().get_long_seq(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -395,7 +414,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 		try
 		{
-			return dao.get_double_seq(prefix+name);
+			return snapshot().get_double_seq(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -414,7 +433,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 		try
 		{
-			double[] temp = dao.get_double_seq(prefix+name);
+			double[] temp = snapshot().get_double_seq(prefix+name);
 			float[] ret = new float[temp.length];
 			
 			for(int i=0;i<temp.length;i++){				
@@ -440,7 +459,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 		try
 		{
-			return dao.get_long_seq(prefix+name);
+			return snapshot().get_long_seq(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -458,7 +477,7 @@ public class CharacteristicModelImpl implements CharacteristicModelOperations {
 
 		try
 		{
-			return dao.get_string_seq(prefix+name);
+			return snapshot().get_string_seq(prefix+name);
 		}
 		catch (Throwable th)
 		{
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimiter Array
+ * (c) European Southern Observatory, 2002
+ * Copyright by ESO (in the framework of the ALMA collaboration)
+ * and Cosylab 2002, All rights reserved
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package alma.ACS.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.omg.CORBA.ORB;
+import org.omg.PortableServer.POA;
+
+import com.cosylab.CDB.DAL;
+import com.cosylab.CDB.DALChangeListener;
+import com.cosylab.CDB.DALChangeListenerPOA;
+
+/**
+ * DAL wide cache of {@link CharacteristicsSnapshot} objects, shared by all the
+ * {@link CharacteristicModelImpl} instances (i.e. all the properties of all the components) using the same DAL.
+ * <p>
+ * Every CDB record is read only once (concurrent requests for the same record wait for the same read).
+ * A <code>DALChangeListener</code> is registered to the DAL so that a changed record is reloaded on the next access.
+ * If the listener cannot be registered (e.g. DAL is not a remote CORBA object), records are cached without invalidation.
+ * <p>
+ * Caches are reference counted: every {@link #acquire(DAL)} must be paired with a {@link #release()}.
+ * When the last user releases the cache, the change listener is removed from the DAL and deactivated,
+ * and the cache is discarded.
+ *
+ * @version $id$
+ */
+public class CharacteristicsCache {
+
+	/**
+	 * Caches per DAL, guarded by itself.
+	 */
+	private static final Map<DAL, CharacteristicsCache> caches = new HashMap<DAL, CharacteristicsCache>();
+
+	/**
+	 * Get (or create) cache for given DAL and increment its reference count.
+	 * Cache must be released by {@link #release()} when no longer used.
+	 * @param dal		CDB DAL object, non-<code>null</code>.
+	 * @return cache of the DAL.
+	 */
+	public static CharacteristicsCache acquire(DAL dal) {
+		synchronized (caches)
+		{
+			CharacteristicsCache cache = caches.get(dal);
+			if (cache == null)
+			{
+				cache = new CharacteristicsCache(dal);
+				caches.put(dal, cache);
+			}
+			cache.references++;
+			return cache;
+		}
+	}
+
+	/**
+	 * DAL change listener invalidating changed records.
+	 */
+	private class ChangeListener extends DALChangeListenerPOA {
+
+		/**
+		 * @see com.cosylab.CDB.DALChangeListenerOperations#object_changed(java.lang.String)
+		 */
+		public void object_changed(String curl) {
+			invalidate(curl);
+		}
+	}
+
+	/**
+	 * CDB DAL object.
+	 */
+	private final DAL dal;
+
+	/**
+	 * Number of users, guarded by <code>caches</code>.
+	 */
+	private int references;
+
+	/**
+	 * Snapshots (being) loaded, key is CDB record name.
+	 */
+	private final ConcurrentHashMap<String, Future<CharacteristicsSnapshot>> snapshots =
+		new ConcurrentHashMap<String, Future<CharacteristicsSnapshot>>();
+
+	/**
+	 * Registered listener servant, <code>null</code> if not (yet) registered.
+	 */
+	private ChangeListener listener;
+
+	/**
+	 * Registered listener ID, <code>null</code> if not (yet) registered.
+	 */
+	private Integer listenerID;
+
+	/**
+	 * <code>true</code> if listener registration failed or cache was released.
+	 */
+	private boolean listenerFailed;
+
+	/**
+	 * Statistics.
+	 */
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Constructor for caches not shared through {@link #acquire(DAL)}.
+	 * @param dal		CDB DAL object.
+	 */
+	protected CharacteristicsCache(DAL dal) {
+		this.dal = dal;
+	}
+
+	/**
+	 * Release the cache acquired by {@link #acquire(DAL)}.
+	 * The last release removes the change listener from the DAL and discards the cache.
+	 */
+	public void release() {
+		synchronized (caches)
+		{
+			if (references == 0 || --references > 0)
+				return;
+			caches.remove(dal);
+		}
+		unregisterListener();
+		clear();
+	}
+
+	/**
+	 * Register change listener, if not already registered.
+	 * @param logger	logger used to report a failure, non-<code>null</code>.
+	 * @return <code>true</code> if listener is registered.
+	 */
+	private synchronized boolean registerListener(Logger logger) {
+		if (listenerID != null)
+			return true;
+		else if (listenerFailed)
+			return false;
+
+		try
+		{
+			ORB orb = ((org.omg.CORBA.portable.ObjectImpl)dal)._orb();
+			listener = new ChangeListener();
+			DALChangeListener cl = listener._this(orb);
+			listenerID = Integer.valueOf(dal.add_change_listener(cl));
+			return true;
+		}
+		catch (Throwable th)
+		{
+			listenerFailed = true;
+			deactivateListener();
+			logger.log(Level.FINE, "Failed to register DAL change listener, cached characteristics will not be reloaded on change.", th);
+			return false;
+		}
+	}
+
+	/**
+	 * Remove change listener from the DAL and deactivate it, no listener is registered afterwards.
+	 */
+	private synchronized void unregisterListener() {
+		listenerFailed = true;
+		if (listenerID != null)
+		{
+			try
+			{
+				dal.remove_change_listener(listenerID.intValue());
+			}
+			catch (Throwable th)
+			{
+				// DAL might be already gone, noop
+			}
+			listenerID = null;
+		}
+		deactivateListener();
+	}
+
+	/**
+	 * Deactivate the listener servant, if any.
+	 */
+	private void deactivateListener() {
+		if (listener == null)
+			return;
+		try
+		{
+			POA poa = listener._default_POA();
+			poa.deactivate_object(poa.servant_to_id(listener));
+		}
+		catch (Throwable th)
+		{
+			// not activated, noop
+		}
+		listener = null;
+	}
+
+	/**
+	 * Get snapshot of given CDB record, loads it if not cached.
+	 * @param curl	CDB record name, non-<code>null</code>.
+	 * @param logger	logger of the caller, non-<code>null</code>.
+	 * @return snapshot of the record, non-<code>null</code>.
+	 * @throws Exception	if record could not be read (<code>CDBRecordDoesNotExistEx</code>, <code>CDBXMLErrorEx</code>, CORBA exception).
+	 */
+	public CharacteristicsSnapshot getSnapshot(final String curl, final Logger logger) throws Exception {
+		final boolean listen = registerListener(logger);
+
+		Future<CharacteristicsSnapshot> future = snapshots.get(curl);
+		if (future == null)
+		{
+			FutureTask<CharacteristicsSnapshot> task = new FutureTask<CharacteristicsSnapshot>(
+				new Callable<CharacteristicsSnapshot>() {
+					public CharacteristicsSnapshot call() throws Exception {
+						// listen before read, not to miss a change
+						if (listen)
+							listen(curl);
+						loads.incrementAndGet();
+						return new CharacteristicsSnapshot(curl, readRecord(curl), logger);
+					}
+				});
+			future = snapshots.putIfAbsent(curl, task);
+			if (future == null)
+			{
+				future = task;
+				task.run();
+			}
+			else
+				hits.incrementAndGet();
+		}
+		else
+			hits.incrementAndGet();
+
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException ee)
+		{
+			// do not cache failures
+			snapshots.remove(curl, future);
+			Throwable cause = ee.getCause();
+			if (cause instanceof Exception)
+				throw (Exception)cause;
+			else
+				throw ee;
+		}
+	}
+
+	/**
+	 * Ask the DAL to notify changes of the record.
+	 */
+	private synchronized void listen(String curl) {
+		if (listenerID != null)
+			dal.listen_for_changes(curl, listenerID.intValue());
+	}
+
+	/**
+	 * Read the record (XML) from the DAL.
+	 * @param curl	CDB record name.
+	 * @return XML of the record.
+	 * @throws Exception	if record could not be read.
+	 */
+	protected String readRecord(String curl) throws Exception {
+		return dal.get_DAO(curl);
+	}
+
+	/**
+	 * Remove record from the cache, it will be reloaded on next access.
+	 * Called by the DAL change listener.
+	 * @param curl	CDB record name.
+	 */
+	public void invalidate(String curl) {
+		if (snapshots.remove(curl) != null)
+			invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Clear the cache.
+	 */
+	public void clear() {
+		snapshots.clear();
+	}
+
+	/**
+	 * @return statistics string (loads, hits, invalidations).
+	 */
+	public String getStatistics() {
+		return "CDB records loaded: " + loads.get() + ", cache hits: " + hits.get() + ", invalidations: " + invalidations.get();
+	}
+}
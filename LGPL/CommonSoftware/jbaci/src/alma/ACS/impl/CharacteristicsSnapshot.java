@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimiter Array
+ * (c) European Southern Observatory, 2002
+ * Copyright by ESO (in the framework of the ALMA collaboration)
+ * and Cosylab 2002, All rights reserved
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package alma.ACS.impl;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+
+import alma.cdbErrType.CDBFieldDoesNotExistEx;
+import alma.cdbErrType.CDBXMLErrorEx;
+import alma.cdbErrType.WrongCDBDataTypeEx;
+import alma.cdbErrType.wrappers.AcsJCDBFieldDoesNotExistEx;
+import alma.cdbErrType.wrappers.AcsJCDBXMLErrorEx;
+
+import com.cosylab.cdb.jdal.DAOImpl;
+import com.cosylab.cdb.jdal.XMLHandler;
+import com.cosylab.util.WildcharMatcher;
+
+/**
+ * Immutable snapshot of all the characteristics of one CDB record (e.g. <code>alma/TEST_PS_1</code>),
+ * loaded with a single <code>DAL.get_DAO</code> call and parsed locally,
+ * in the same way as {@link com.cosylab.cdb.client.CDBAccess} does.
+ * <p>
+ * Field lookups follow exactly the semantics of the CDB <code>DAO</code>; typed values and the
+ * characteristic name lists used by wildcard searches are converted once and then served from memory.
+ * Exceptions are the same as those of the remote <code>DAO</code>.
+ *
+ * @version $id$
+ * @see CharacteristicsCache
+ */
+public class CharacteristicsSnapshot {
+
+	/**
+	 * Marker for fields that do not exist.
+	 */
+	private static final Object MISSING = new Object();
+
+	/**
+	 * CDB record name.
+	 */
+	private final String curl;
+
+	/**
+	 * Local (silent) DAO over the parsed record.
+	 */
+	private final DAOImpl dao;
+
+	/**
+	 * Converted values, key is type prefix + field name.
+	 */
+	private final ConcurrentHashMap<String, Object> values = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * Compiled wildcard patterns.
+	 */
+	private final ConcurrentHashMap<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+
+	/**
+	 * Creates snapshot from the XML returned by <code>DAL.get_DAO(curl)</code>.
+	 * @param curl	CDB record name, non-<code>null</code>.
+	 * @param xml	record XML, non-<code>null</code>.
+	 * @param logger	logger, non-<code>null</code>.
+	 * @throws CDBXMLErrorEx	if the XML cannot be parsed.
+	 */
+	public CharacteristicsSnapshot(String curl, String xml, Logger logger) throws CDBXMLErrorEx {
+		this.curl = curl;
+		try
+		{
+			SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+			XMLHandler xmlSolver = new XMLHandler(false, logger);
+			saxParser.parse(new InputSource(new StringReader(xml)), xmlSolver);
+			if (xmlSolver.m_errorString != null)
+			{
+				AcsJCDBXMLErrorEx e = new AcsJCDBXMLErrorEx();
+				e.setCurl(curl);
+				e.setErrorString("XML parser error: " + xmlSolver.m_errorString);
+				throw e.toCDBXMLErrorEx();
+			}
+			dao = new DAOImpl(curl, xmlSolver.m_rootNode, null, logger, true);
+		}
+		catch (CDBXMLErrorEx ex)
+		{
+			throw ex;
+		}
+		catch (Throwable th)
+		{
+			AcsJCDBXMLErrorEx e = new AcsJCDBXMLErrorEx(th);
+			e.setCurl(curl);
+			e.setErrorString("Failed to parse XML of '" + curl + "'.");
+			throw e.toCDBXMLErrorEx();
+		}
+	}
+
+	/**
+	 * @return CDB record name.
+	 */
+	public String getCURL() {
+		return curl;
+	}
+
+	/**
+	 * Get cached value or convert and cache it.
+	 * Missing fields are cached as well, wrong types are not (thrown every time).
+	 */
+	private Object lookup(char type, String name) throws WrongCDBDataTypeEx, CDBFieldDoesNotExistEx {
+		String key = type + name;
+		Object value = values.get(key);
+		if (value == null)
+		{
+			try
+			{
+				switch (type)
+				{
+					case 'S': value = dao.get_string(name); break;
+					case 'D': value = Double.valueOf(dao.get_double(name)); break;
+					case 'L': value = Integer.valueOf(dao.get_long(name)); break;
+					case 's': value = dao.get_string_seq(name); break;
+					case 'd': value = dao.get_double_seq(name); break;
+					case 'l': value = dao.get_long_seq(name); break;
+					default: throw new IllegalArgumentException("type: " + type);
+				}
+			}
+			catch (CDBFieldDoesNotExistEx ex)
+			{
+				value = MISSING;
+			}
+			values.put(key, value);
+		}
+
+		if (value == MISSING)
+		{
+			AcsJCDBFieldDoesNotExistEx ex = new AcsJCDBFieldDoesNotExistEx();
+			ex.setFieldName(name);
+			throw ex.toCDBFieldDoesNotExistEx();
+		}
+		return value;
+	}
+
+	public String get_string(String name) throws WrongCDBDataTypeEx, CDBFieldDoesNotExistEx {
+		return (String)lookup('S', name);
+	}
+
+	public double get_double(String name) throws WrongCDBDataTypeEx, CDBFieldDoesNotExistEx {
+		return ((Double)lookup('D', name)).doubleValue();
+	}
+
+	public int get_long(String name) throws WrongCDBDataTypeEx, CDBFieldDoesNotExistEx {
+		return ((Integer)lookup('L', name)).intValue();
+	}
+
+	public String[] get_string_seq(String name) throws WrongCDBDataTypeEx, CDBFieldDoesNotExistEx {
+		return ((String[])lookup('s', name)).clone();
+	}
+
+	public double[] get_double_seq(String name) throws WrongCDBDataTypeEx, CDBFieldDoesNotExistEx {
+		return ((double[])lookup('d', name)).clone();
+	}
+
+	public int[] get_long_seq(String name) throws WrongCDBDataTypeEx, CDBFieldDoesNotExistEx {
+		return ((int[])lookup('l', name)).clone();
+	}
+
+	/**
+	 * Find characteristics names of the given node matching the wildcard.
+	 * @param node		node name (e.g. <code>current/</code>), <code>""</code> for the record itself.
+	 * @param wildcard	wildcard (see {@link WildcharMatcher#simpleWildcardToRegex(String)}).
+	 * @return matching names, in CDB order, empty array if none or node does not exist.
+	 */
+	public String[] find(String node, String wildcard) {
+		String[] names;
+		try
+		{
+			names = (String[])lookup('s', node);
+		}
+		catch (Exception ex)
+		{
+			return new String[0];
+		}
+
+		Pattern pattern = patterns.get(wildcard);
+		if (pattern == null)
+		{
+			pattern = Pattern.compile(WildcharMatcher.simpleWildcardToRegex(wildcard));
+			patterns.put(wildcard, pattern);
+		}
+
+		List<String> matches = new ArrayList<String>();
+		for (String name : names)
+			if (pattern.matcher(name).matches())
+				matches.add(name);
+		return matches.toArray(new String[matches.size()]);
+	}
+}
@@ -87,7 +87,8 @@ public class PropertyImpl implements PropertyOperations, PropertyReferenceHolder
 			// create characteristic model
 			// TODO think of error handling; why crating model per instance, pass DAL reference...
 			//characteristicModelImpl = new CharacteristicModelImpl("alma/" + parentComponent.name() + "/" + name, dal);
-			characteristicModelImpl = new CharacteristicModelImpl("alma/" + parentComponent.name(), dal);
+			characteristicModelImpl = new CharacteristicModelImpl("alma/" + parentComponent.name(), dal,
+					parentComponent.getComponentContainerServices().getLogger());
 			// TODO remove this ugly crap
 			characteristicModelImpl.setFieldPrefix(name+"/");
 		} catch (AcsJContainerServicesEx ce)
@@ -116,6 +117,8 @@ public class PropertyImpl implements PropertyOperations, PropertyReferenceHolder
 	{
 		// unregister (and deactivate) from parent component
 		parentComponent.unregisterProperty(this);
+		// release characteristics cache
+		characteristicModelImpl.destroy();
 	}
 	
 	/**
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimiter Array
+ * (c) European Southern Observatory, 2002
+ * Copyright by ESO (in the framework of the ALMA collaboration)
+ * and Cosylab 2002, All rights reserved
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+
+package alma.ACS.jbaci.test;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import alma.ACS.impl.CharacteristicsCache;
+import alma.ACS.impl.CharacteristicsSnapshot;
+import alma.acs.logging.ClientLogManager;
+import alma.cdbErrType.CDBFieldDoesNotExistEx;
+import alma.cdbErrType.CDBXMLErrorEx;
+import alma.cdbErrType.WrongCDBDataTypeEx;
+
+/**
+ * <code>CharacteristicsSnapshot</code> test.
+ * @version $id$
+ */
+public class CharacteristicsSnapshotTest extends TestCase {
+
+	private static final String XML =
+		"<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" +
+		"<PowerSupply xmlns=\"urn:schemas-cosylab-com:PowerSupply:1.0\">" +
+		" <current description=\"Current\" format=\"%9.4f\" units=\"A\" min_value=\"0\" max_value=\"1000.5\" resolution=\"65535\"" +
+		"          alarm_on=\"1, 2, 3\" limits=\"0.5, 1.5\" states=\"OFF,ON\"/>" +
+		" <readback description=\"Readback\" units=\"A\" default_timer_trig=\"x\"/>" +
+		"</PowerSupply>";
+
+	private Logger logger;
+
+	private CharacteristicsSnapshot snapshot;
+
+	/**
+	 * Constructor for CharacteristicsSnapshotTest.
+	 * @param name
+	 */
+	public CharacteristicsSnapshotTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		String name = getClass().getSimpleName();
+		logger = ClientLogManager.getAcsLogManager().getLoggerForApplication(name, false);
+		snapshot = new CharacteristicsSnapshot("alma/PS", XML, logger);
+	}
+
+	/**
+	 * Typed values.
+	 */
+	public void testTypedValues() throws Exception {
+		assertEquals("alma/PS", snapshot.getCURL());
+		assertEquals("Current", snapshot.get_string("current/description"));
+		assertEquals(1000.5, snapshot.get_double("current/max_value"), 0.0);
+		assertEquals(65535, snapshot.get_long("current/resolution"));
+		assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, snapshot.get_long_seq("current/alarm_on")));
+		assertTrue(Arrays.equals(new double[] { 0.5, 1.5 }, snapshot.get_double_seq("current/limits")));
+		assertTrue(Arrays.equals(new String[] { "OFF", "ON" }, snapshot.get_string_seq("current/states")));
+
+		// cached values
+		assertEquals("Current", snapshot.get_string("current/description"));
+		assertEquals(65535, snapshot.get_long("current/resolution"));
+
+		// returned arrays are copies
+		snapshot.get_long_seq("current/alarm_on")[0] = 100;
+		assertEquals(1, snapshot.get_long_seq("current/alarm_on")[0]);
+	}
+
+	/**
+	 * Missing fields and wrong types, as remote DAO.
+	 */
+	public void testExceptions() throws Exception {
+		for (int i = 0; i < 2; i++)
+		{
+			try {
+				snapshot.get_string("current/nonexistent");
+				fail("CDBFieldDoesNotExistEx expected");
+			} catch (CDBFieldDoesNotExistEx ex) {
+				// OK
+			}
+
+			try {
+				snapshot.get_double("readback/default_timer_trig");
+				fail("WrongCDBDataTypeEx expected");
+			} catch (WrongCDBDataTypeEx ex) {
+				// OK
+			}
+		}
+
+		try {
+			new CharacteristicsSnapshot("alma/PS", "<PowerSupply", logger);
+			fail("CDBXMLErrorEx expected");
+		} catch (CDBXMLErrorEx ex) {
+			// OK
+		}
+	}
+
+	/**
+	 * Wildcard search.
+	 */
+	public void testFind() throws Exception {
+		assertTrue(Arrays.equals(new String[] { "current", "readback" }, snapshot.find("", "*")));
+		assertTrue(Arrays.equals(new String[] { "min_value", "max_value" }, snapshot.find("current/", "m*_value")));
+		assertTrue(Arrays.equals(new String[] { "units" }, snapshot.find("readback/", "unit?")));
+		assertEquals(0, snapshot.find("current/", "nonexistent*").length);
+		assertEquals(0, snapshot.find("nonexistent/", "*").length);
+	}
+
+	/**
+	 * Changed CDB record is reloaded after the DAL change notification.
+	 */
+	public void testInvalidationOnChange() throws Exception {
+		// CDB content, changed by the test
+		final String[] record = { XML };
+		CharacteristicsCache cache = new CharacteristicsCache(null) {
+			protected String readRecord(String curl) throws Exception {
+				return record[0];
+			}
+		};
+
+		CharacteristicsSnapshot first = cache.getSnapshot("alma/PS", logger);
+		assertEquals("Current", first.get_string("current/description"));
+
+		// change not yet notified, cached snapshot is returned
+		record[0] = XML.replace("description=\"Current\"", "description=\"Changed\"");
+		assertSame(first, cache.getSnapshot("alma/PS", logger));
+
+		// notification of other records has no effect
+		cache.invalidate("alma/OTHER");
+		assertSame(first, cache.getSnapshot("alma/PS", logger));
+
+		// DAL change listener notification
+		cache.invalidate("alma/PS");
+		CharacteristicsSnapshot second = cache.getSnapshot("alma/PS", logger);
+		assertNotSame(first, second);
+		assertEquals("Changed", second.get_string("current/description"));
+		// old snapshot is not modified
+		assertEquals("Current", first.get_string("current/description"));
+
+		assertEquals("CDB records loaded: 2, cache hits: 2, invalidations: 1", cache.getStatistics());
+	}
+
+}
@@ -21,11 +21,11 @@
  */
 package alma.acs.component.dynwrapper;
 
-import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
-import org.exolab.castor.xml.Marshaller;
-
+import alma.acs.entityutil.CastorSerializationService;
 import alma.acs.entityutil.EntityException;
 import alma.acs.entityutil.EntityTFinder;
 import alma.entities.commonentity.EntityT;
@@ -35,14 +35,33 @@ import alma.xmlentity.XmlEntityStruct;
 /**
  * A type mapper that can marshal a Castor generated entity object
  * to the IDL struct used for CORBA transport (<code>XmlEntityStruct</code>).
+ * <p>
+ * Optionally the marshalled XML of the last entity objects can be cached, see {@link #XML_CACHE_SIZE_PROPERTYNAME}.
  * 
  * @author hsommer
  */
 public class CastorMarshalMapper extends TypeMapper
 {
-
+	/**
+	 * Name of the property that sets the number of entity objects whose marshalled XML is cached, 
+	 * so that passing the same entity object again does not marshal it again. Default is 0 (no cache).
+	 * <p>
+	 * Only applications that do not modify entity objects after having passed them once may enable this cache.
+	 * Entity objects are identified by object identity; as a safeguard, the cached XML is only used 
+	 * if the entity id, document version and timestamp found in the <code>EntityT</code> child are unchanged.
+	 */
+	public static final String XML_CACHE_SIZE_PROPERTYNAME = "alma.acs.component.dynwrapper.xml_cache_size";
+	
 	private EntityTFinder m_entityTFinder;
 
+	private final CastorSerializationService m_castorService;
+
+	/**
+	 * The marshalled entity structs, or <code>null</code> if the cache is disabled.
+	 * Key is {@link IdentityKey}, access is synchronized on the map.
+	 */
+	private final Map<IdentityKey, CachedXml> m_xmlCache;
+
 
 	/**
 	 * @see alma.acs.component.dynwrapper.TypeMapper#TypeMapper(java.lang.Object, Logger)
@@ -52,6 +71,21 @@ public class CastorMarshalMapper extends TypeMapper
 		super(delegate, logger);
 		m_entityTFinder = new EntityTFinder(logger);
 		m_entityTFinder.setVerbose(m_verbose);
+		m_castorService = new CastorSerializationService();
+		
+		final int xmlCacheSize = Integer.getInteger(XML_CACHE_SIZE_PROPERTYNAME, 0);
+		if (xmlCacheSize > 0)
+		{
+			m_xmlCache = new LinkedHashMap<IdentityKey, CachedXml>(16, 0.75f, true) {
+				protected boolean removeEldestEntry(Map.Entry<IdentityKey, CachedXml> eldest) {
+					return size() > xmlCacheSize;
+				}
+			};
+		}
+		else
+		{
+			m_xmlCache = null;
+		}
 	}
 	
 	
@@ -151,13 +185,27 @@ public class CastorMarshalMapper extends TypeMapper
 		entStruct.entityId = entityMeta.getEntityId();
 		entStruct.entityTypeName = entityMeta.getEntityTypeName(); 
 		entStruct.schemaVersion = ( entityMeta.getSchemaVersion() != null ? entityMeta.getSchemaVersion() : "");  
+		
+		IdentityKey cacheKey = null;
+		if (m_xmlCache != null)
+		{
+			cacheKey = new IdentityKey(oldObject);
+			CachedXml cachedXml;
+			synchronized (m_xmlCache)
+			{
+				cachedXml = m_xmlCache.get(cacheKey);
+			}
+			if (cachedXml != null && cachedXml.matches(entityMeta))
+			{
+				entStruct.xmlString = cachedXml.xmlString;
+				return entStruct;
+			}
+		}
+		
 		try
 		{
-			StringWriter wr = new StringWriter();
-			Marshaller marsh = new Marshaller(wr);
-			marsh.setValidation(false);
-			marsh.marshal(oldObject);
-			entStruct.xmlString = wr.toString();
+			// the container's translation is a trusted call which never validates
+			entStruct.xmlString = m_castorService.marshal(oldObject, true);
 		}
 		catch (Exception e)
 		{
@@ -165,6 +213,14 @@ public class CastorMarshalMapper extends TypeMapper
 							"' using the Castor Marshaller without validation.";
 			throw new DynWrapperException(msg);
 		}
+		
+		if (cacheKey != null)
+		{
+			synchronized (m_xmlCache)
+			{
+				m_xmlCache.put(cacheKey, new CachedXml(entityMeta, entStruct.xmlString));
+			}
+		}
 
 		if (m_verbose)
 		{
@@ -174,4 +230,61 @@ public class CastorMarshalMapper extends TypeMapper
 		return entStruct;
 	}
 
+
+	/**
+	 * Map key that compares entity objects by identity, 
+	 * since Castor binding classes may or may not implement <code>equals</code>.
+	 */
+	private static class IdentityKey
+	{
+		private final Object entity;
+		
+		IdentityKey(Object entity)
+		{
+			this.entity = entity;
+		}
+		
+		public int hashCode()
+		{
+			return System.identityHashCode(entity);
+		}
+		
+		public boolean equals(Object obj)
+		{
+			return (obj instanceof IdentityKey && ((IdentityKey) obj).entity == entity);
+		}
+	}
+
+
+	/**
+	 * The marshalled XML of an entity object, together with the <code>EntityT</code> data it was marshalled with.
+	 */
+	private static class CachedXml
+	{
+		private final String entityId;
+		private final String documentVersion;
+		private final String timestamp;
+		final String xmlString;
+		
+		CachedXml(EntityT entityMeta, String xmlString)
+		{
+			this.entityId = entityMeta.getEntityId();
+			this.documentVersion = entityMeta.getDocumentVersion();
+			this.timestamp = entityMeta.getTimestamp();
+			this.xmlString = xmlString;
+		}
+		
+		boolean matches(EntityT entityMeta)
+		{
+			return equal(entityId, entityMeta.getEntityId()) && 
+					equal(documentVersion, entityMeta.getDocumentVersion()) && 
+					equal(timestamp, entityMeta.getTimestamp());
+		}
+		
+		private static boolean equal(String s1, String s2)
+		{
+			return (s1 == null ? s2 == null : s1.equals(s2));
+		}
+	}
+
 }
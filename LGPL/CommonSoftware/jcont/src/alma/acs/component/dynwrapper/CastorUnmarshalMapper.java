@@ -21,12 +21,9 @@
  */
 package alma.acs.component.dynwrapper;
 
-import java.io.StringReader;
 import java.util.logging.Logger;
 
-import org.exolab.castor.xml.Unmarshaller;
-import org.exolab.castor.xml.util.ClassDescriptorResolverImpl;
-
+import alma.acs.entityutil.CastorSerializationService;
 import alma.xmlentity.XmlEntityStruct;
 
 /**
@@ -37,6 +34,7 @@ import alma.xmlentity.XmlEntityStruct;
  */
 public class CastorUnmarshalMapper extends TypeMapper
 {
+	private final CastorSerializationService m_castorService;
 
 	/**
 	 * Constructor for CastorUnmarshalMapper.
@@ -45,6 +43,7 @@ public class CastorUnmarshalMapper extends TypeMapper
 	public CastorUnmarshalMapper(Object delegate, Logger logger)
 	{
 		super(delegate, logger);
+		m_castorService = new CastorSerializationService();
 	}
 
 	/**
@@ -60,12 +59,7 @@ public class CastorUnmarshalMapper extends TypeMapper
 		if (XmlEntityStruct.class.isAssignableFrom(oldObjClass))
 		{
 			// check if the Castor framework has the classes available to instantiate the xml as binding objects 
-			ClassDescriptorResolverImpl clDescRes = new ClassDescriptorResolverImpl();
-			clDescRes.setIntrospection(false);
-			if (clDescRes.resolve(newObjClass) != null)
-			{
-				canTranslate = true;
-			}
+			canTranslate = m_castorService.hasGeneratedDescriptor(newObjClass);
 		}
 		
 		if (m_verbose)
@@ -109,14 +103,10 @@ public class CastorUnmarshalMapper extends TypeMapper
 		// todo (for support of entity version conversions) 
 		// check entStruct.schemaVersion and use a previous version of newObjectClass if required,
 		// e.g. the respective class from a different Java package that denotes the vintage version     
-		Unmarshaller unmarsh = new Unmarshaller(newObjectClass);
-		unmarsh.setValidation(false);
-		unmarsh.setWhitespacePreserve(true);
-//		unmarsh.setIgnoreExtraAttributes(true);
-//		unmarsh.setIgnoreExtraElements(true);
 		Object entity;
 		try {
-			entity = unmarsh.unmarshal(new StringReader(entStruct.xmlString));
+			// the container's translation is a trusted call which never validates
+			entity = m_castorService.unmarshal(entStruct.xmlString, newObjectClass, true);
 		}
 		catch (Exception ex) {
 			
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import alma.ACS.OffShoot;
@@ -47,8 +48,11 @@ public class ComponentInvocationHandler implements InvocationHandler
 	
 	private final List<TypeMapper> m_typeMappers;
 	
-	// key=String(fromClassNameToClassName), value=Mapper that can do it
-	private final Map<String, TypeMapper> m_mapperMap;
+	// key=fromClass, value=(key=toClass, value=Mapper that can do it)
+	private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, TypeMapper>> m_mapperMap;
+
+	// key=proxy method, value=conversion plan built on first invocation
+	private final ConcurrentHashMap<Method, MethodPlan> m_methodPlanMap;
 
 	/**
 	 * Constructor for ComponentInvocationHandler.
@@ -85,7 +89,8 @@ public class ComponentInvocationHandler implements InvocationHandler
 		m_delegate = delegate;
 		m_logger = logger;
 		m_typeMappers = new ArrayList<TypeMapper>();
-		m_mapperMap = new HashMap<String, TypeMapper>();
+		m_mapperMap = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, TypeMapper>>();
+		m_methodPlanMap = new ConcurrentHashMap<Method, MethodPlan>();
 		m_delegateMethodMap = new HashMap<String, Method>();
 
 		// store delegate methods by name in a Map
@@ -175,7 +180,8 @@ public class ComponentInvocationHandler implements InvocationHandler
 	public Object invoke(Object proxy, Method proxyMethod, Object[] proxyArgs)
 		throws Throwable
 	{
-		Method delegateMethod = findDelegateMethod(proxyMethod);
+		MethodPlan plan = getMethodPlan(proxyMethod);
+		Method delegateMethod = plan.delegateMethod;
 		
 		// translate arguments (todo: only IN and INOUT)
 		Object[] delegateArgs = null;
@@ -184,8 +190,7 @@ public class ComponentInvocationHandler implements InvocationHandler
 			delegateArgs = new Object[proxyArgs.length];
 			for (int argIndex = 0; argIndex < proxyArgs.length; argIndex++)
 			{
-				Class delegateArgType = delegateMethod.getParameterTypes()[argIndex];
-				delegateArgs[argIndex] = translate(proxyArgs[argIndex], null, delegateArgType);
+				delegateArgs[argIndex] = plan.inArgConversions[argIndex].translate(proxyArgs[argIndex], null);
 			}
 		}
 		
@@ -208,8 +213,7 @@ public class ComponentInvocationHandler implements InvocationHandler
 			{
 				for (argIndex = 0; argIndex < proxyArgs.length; argIndex++)
 				{
-					Class facadeArgType = proxyMethod.getParameterTypes()[argIndex];
-					proxyArgs[argIndex] = translate(delegateArgs[argIndex], proxyArgs[argIndex], facadeArgType);
+					proxyArgs[argIndex] = plan.outArgConversions[argIndex].translate(delegateArgs[argIndex], proxyArgs[argIndex]);
 				}
 			}		
 		} 
@@ -225,7 +229,7 @@ public class ComponentInvocationHandler implements InvocationHandler
 		Object proxyRet = null;
 		try 
 		{
-			proxyRet = translate(delegateReturn, null, proxyMethod.getReturnType());
+			proxyRet = plan.returnConversion.translate(delegateReturn, null);
 		} 
 		catch (Exception e) 
 		{
@@ -237,6 +241,28 @@ public class ComponentInvocationHandler implements InvocationHandler
 	}
 
 
+	/**
+	 * Gets the conversion plan for the given proxy method, building it on the first invocation.
+	 * The plan holds the delegate method and the parameter and return types of both methods,
+	 * so that these are not looked up (and the type arrays not copied) for every call.
+	 */
+	private MethodPlan getMethodPlan(Method proxyMethod)
+		throws DynWrapperException
+	{
+		MethodPlan plan = m_methodPlanMap.get(proxyMethod);
+		if (plan == null)
+		{
+			plan = new MethodPlan(proxyMethod, findDelegateMethod(proxyMethod));
+			MethodPlan otherPlan = m_methodPlanMap.putIfAbsent(proxyMethod, plan);
+			if (otherPlan != null)
+			{
+				plan = otherPlan;
+			}
+		}
+		return plan;
+	}
+
+
 	/**
 	 * Finds the <code>Method</code> in the functional interface of the delegate object 
 	 * that maps to the given argument <code>method</code>. 
@@ -267,23 +293,46 @@ public class ComponentInvocationHandler implements InvocationHandler
 	
 	boolean canTranslate(Class<?> oldObjClass, Class<?> newObjClass)
 	{
-		String mapKey = oldObjClass.getName() + newObjClass.getName();
-		
-		if (m_mapperMap.containsKey(mapKey))
+		return (findTypeMapper(oldObjClass, newObjClass) != null);
+	}
+
+
+	/**
+	 * Gets the mapper that can translate from <code>oldObjClass</code> to <code>newObjClass</code>.
+	 * Once found, the mapper is remembered for that pair of classes. 
+	 * @return  the mapper, or <code>null</code> if none of our mappers can do it.
+	 */
+	private TypeMapper findTypeMapper(Class<?> oldObjClass, Class<?> newObjClass)
+	{
+		ConcurrentHashMap<Class<?>, TypeMapper> mappersForOldClass = m_mapperMap.get(oldObjClass);
+		if (mappersForOldClass != null)
 		{
-			// checked this already
-			return true;
+			TypeMapper typeMapper = mappersForOldClass.get(newObjClass);
+			if (typeMapper != null)
+			{
+				// checked this already
+				return typeMapper;
+			}
 		}
-
+		
 		// now try all our mappers and see who can do it
 		for (TypeMapper typeMapper : m_typeMappers) {
 			if (typeMapper.canTranslate(oldObjClass, newObjClass, this))
 			{
-				m_mapperMap.put(mapKey, typeMapper);
-				return true;
+				if (mappersForOldClass == null)
+				{
+					mappersForOldClass = new ConcurrentHashMap<Class<?>, TypeMapper>();
+					ConcurrentHashMap<Class<?>, TypeMapper> otherMappers = m_mapperMap.putIfAbsent(oldObjClass, mappersForOldClass);
+					if (otherMappers != null)
+					{
+						mappersForOldClass = otherMappers;
+					}
+				}
+				mappersForOldClass.put(newObjClass, typeMapper);
+				return typeMapper;
 			}
 		}
-		return false;
+		return null;
 	}
 
 
@@ -292,15 +341,7 @@ public class ComponentInvocationHandler implements InvocationHandler
 	{
 		if (oldObject == null)
 		{
-			// Normally a null stays a null, even if that would be illegal for a corba return value.
-			// For xml entities though, as a special service we translate a null to an empty XmlEntityStruct,
-			// see http://jira.alma.cl/browse/COMP-1336
-			if (newObjectClass == XmlEntityStruct.class) {
-				return new XmlEntityStruct();
-			}
-			else {
-				return null;
-			}
+			return translateNull(newObjectClass);
 		}
 		
 		// must convert since oldObject is of wrapper type even if the method signature uses the primitive type
@@ -313,26 +354,39 @@ public class ComponentInvocationHandler implements InvocationHandler
 		}
 		
 		// get the right Mapper
-		String mapKey = oldObject.getClass().getName() + newObjectClass.getName();
-		TypeMapper typeMapper = m_mapperMap.get(mapKey);
+		TypeMapper typeMapper = getTypeMapper(oldObject.getClass(), newObjectClass);
 		
-		// if not found, check them out again; perhaps canTranslate hadn't been called
-		if (typeMapper == null)
-		{
-			canTranslate(oldObject.getClass(), newObjectClass);
-			typeMapper = m_mapperMap.get(mapKey);
+		Object newObject = typeMapper.translate(oldObject, newObjectTemplate, newObjectClass, this);
+
+		return newObject;
+	}
+
+	private Object translateNull(Class<?> newObjectClass)
+	{
+		// Normally a null stays a null, even if that would be illegal for a corba return value.
+		// For xml entities though, as a special service we translate a null to an empty XmlEntityStruct,
+		// see http://jira.alma.cl/browse/COMP-1336
+		if (newObjectClass == XmlEntityStruct.class) {
+			return new XmlEntityStruct();
+		}
+		else {
+			return null;
 		}
+	}
+
+	private TypeMapper getTypeMapper(Class<?> oldObjClass, Class<?> newObjClass)
+		throws DynWrapperException
+	{
+		TypeMapper typeMapper = findTypeMapper(oldObjClass, newObjClass);
+		
 		// now we know that we can't deal with it 
 		if (typeMapper == null)
 		{
-			String msg = "no TypeMapper found to translate " + oldObject.getClass().getName() + " to " +
-							newObjectClass.getName();
+			String msg = "no TypeMapper found to translate " + oldObjClass.getName() + " to " +
+							newObjClass.getName();
 			throw new DynWrapperException(msg);
 		}
-		
-		Object newObject = typeMapper.translate(oldObject, newObjectTemplate, newObjectClass, this);
-
-		return newObject;
+		return typeMapper;
 	}
 
 	/**
@@ -355,4 +409,97 @@ public class ComponentInvocationHandler implements InvocationHandler
 		return inClass;
 	}
 	
+
+	/**
+	 * Precompiled conversions for the parameters and return value of one proxy method.
+	 */
+	private class MethodPlan
+	{
+		final Method delegateMethod;
+		
+		// facade to delegate, using the delegate parameter types
+		final Conversion[] inArgConversions;
+		
+		// delegate to facade, using the facade parameter types
+		final Conversion[] outArgConversions;
+		
+		final Conversion returnConversion;
+		
+		MethodPlan(Method proxyMethod, Method delegateMethod)
+		{
+			this.delegateMethod = delegateMethod;
+			Class<?>[] delegateArgTypes = delegateMethod.getParameterTypes();
+			Class<?>[] facadeArgTypes = proxyMethod.getParameterTypes();
+			inArgConversions = new Conversion[delegateArgTypes.length];
+			outArgConversions = new Conversion[facadeArgTypes.length];
+			for (int argIndex = 0; argIndex < delegateArgTypes.length; argIndex++)
+			{
+				inArgConversions[argIndex] = new Conversion(delegateArgTypes[argIndex]);
+			}
+			for (int argIndex = 0; argIndex < facadeArgTypes.length; argIndex++)
+			{
+				outArgConversions[argIndex] = new Conversion(facadeArgTypes[argIndex]);
+			}
+			returnConversion = new Conversion(proxyMethod.getReturnType());
+		}
+	}
+
+
+	/**
+	 * Conversion of the values passed in one parameter (or return value) slot to the given type.
+	 * Remembers the mapper used for the last seen source class, which normally is the same for every call.
+	 * Behaves like {@link ComponentInvocationHandler#translate(Object, Object, Class)}.
+	 */
+	private class Conversion
+	{
+		private final Class newObjectClass;
+		
+		private final Class<?> nullObjectClass;
+		
+		private volatile MapperBinding lastBinding;
+		
+		Conversion(Class<?> newObjectClass)
+		{
+			this.nullObjectClass = newObjectClass;
+			// must convert since the values are of wrapper type even if the method signature uses the primitive type
+			this.newObjectClass = primitiveToWrapper(newObjectClass);
+		}
+		
+		Object translate(Object oldObject, Object newObjectTemplate)
+			throws DynWrapperException
+		{
+			if (oldObject == null)
+			{
+				return translateNull(nullObjectClass);
+			}
+			
+			if (newObjectClass.isInstance(oldObject))
+			{
+				return oldObject;
+			}
+			
+			Class<?> oldObjClass = oldObject.getClass();
+			MapperBinding binding = lastBinding;
+			if (binding == null || binding.oldObjClass != oldObjClass)
+			{
+				binding = new MapperBinding(oldObjClass, getTypeMapper(oldObjClass, newObjectClass));
+				lastBinding = binding;
+			}
+			return binding.typeMapper.translate(oldObject, newObjectTemplate, newObjectClass, ComponentInvocationHandler.this);
+		}
+	}
+
+
+	private static class MapperBinding
+	{
+		final Class<?> oldObjClass;
+		final TypeMapper typeMapper;
+		
+		MapperBinding(Class<?> oldObjClass, TypeMapper typeMapper)
+		{
+			this.oldObjClass = oldObjClass;
+			this.typeMapper = typeMapper;
+		}
+	}
+	
 }
@@ -146,7 +146,30 @@ public class AcsContainer extends ContainerPOA
 
     private final ThreadFactory containerThreadFactory;
     
-	final ThreadPoolExecutor threadPoolExecutor;
+	/**
+	 * Runs the asynchronous component activations.
+	 */
+	final ComponentActivationEngine activationEngine;
+
+	/**
+	 * Fetches the component dependencies for the activation engine after {@link #set_component_shutdown_order(int[])},
+	 * one refresh at a time.
+	 */
+	private final ThreadPoolExecutor dependencyRefreshExecutor;
+
+	private final Object dependencyRefreshLock = new Object();
+
+	/**
+	 * Handles of the latest shutdown order whose dependencies are not fetched yet, or <code>null</code> 
+	 * if no refresh is queued. Since the shutdown order contains all active components of this container,
+	 * a queued refresh only needs the latest handles.
+	 */
+	private int[] pendingDependencyHandles;
+
+	/**
+	 * Component references shared by the ContainerServices of all components.
+	 */
+	private final ComponentReferenceCache componentReferenceCache;
 
 	private final ComponentMap m_activeComponentMap;
 
@@ -219,10 +242,11 @@ public class AcsContainer extends ContainerPOA
 			
 			// @TODO: Use "jacorb.poa.thread_pool_max" for max number of activation threads, 
 			// but without direct coupling to jacorb-specific variable.
-			threadPoolExecutor = new ThreadPoolExecutor(10, 10, 3, TimeUnit.MINUTES, 
-					new LinkedBlockingQueue<Runnable>(), containerThreadFactory, 
-					new ThreadPoolExecutor.AbortPolicy());
-			threadPoolExecutor.allowCoreThreadTimeOut(true);
+			activationEngine = new ComponentActivationEngine(m_logger, containerThreadFactory);
+			dependencyRefreshExecutor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, 
+					new LinkedBlockingQueue<Runnable>(), containerThreadFactory);
+			dependencyRefreshExecutor.allowCoreThreadTimeOut(true);
+			componentReferenceCache = new ComponentReferenceCache(m_logger);
 			
 			m_activeComponentMap = new ComponentMap(m_logger);
 			m_acsCorba = acsCorba;
@@ -306,6 +330,7 @@ public class AcsContainer extends ContainerPOA
                 return alarmLogger;
         	}
 		};
+		m_alarmContainerServices.setComponentReferenceCache(componentReferenceCache);
 
 		try {
 			ACSAlarmSystemInterfaceFactory.init(m_alarmContainerServices);
@@ -465,6 +490,30 @@ public class AcsContainer extends ContainerPOA
      */
     protected void loginToManager(int attempts) throws AcsJContainerEx {
         m_managerProxy.loginToManager(m_acsCorba.getContainerCorbaRef(this), attempts);
+        // the manager still knows the components of a previous run of this container, which it will activate again
+        updateActivationDependencies(new int[0]);
+    }
+
+    /**
+     * Gets the manager's infos about the active components of this container (in particular their clients)
+     * and passes them to the activation engine, which activates components after the components they use.
+     * Failures are only logged, since the activations will then just not be ordered.
+     * 
+     * @param componentHandles  handles of the components, or an empty array for all active components.
+     */
+    private void updateActivationDependencies(int[] componentHandles) {
+        try {
+            ComponentInfo[] infos = m_managerProxy.get_component_info(componentHandles, "*", "*", true);
+            List<ComponentInfo> ownInfos = new ArrayList<ComponentInfo>();
+            for (ComponentInfo info : infos) {
+                if (m_containerName.equals(info.container_name)) {
+                    ownInfos.add(info);
+                }
+            }
+            activationEngine.updateDependencies(ownInfos.toArray(new ComponentInfo[ownInfos.size()]));
+        } catch (Throwable thr) {
+            m_logger.log(Level.FINE, "Failed to get the component dependencies from the manager, component activations will not be ordered.", thr);
+        }
     }
 
     /////////////////////////////////////////////////////////////
@@ -593,7 +642,7 @@ public class AcsContainer extends ContainerPOA
 
             Class<? extends ACSComponentOperations> operationsIFClass = compHelper.getOperationsInterface();
             Constructor<? extends Servant> poaTieCtor =
-                compHelper.getPOATieClass().getConstructor(new Class[]{operationsIFClass});
+                ComponentActivationEngine.getPOATieConstructor(compHelper.getPOATieClass(), operationsIFClass);
 
             Object operationsIFImpl = null;
             // todo: use different condition (e.g. a new boolean from compHelper) so that a component
@@ -638,6 +687,7 @@ public class AcsContainer extends ContainerPOA
 
             compAdapter = new ComponentAdapter(compName, type, exe, componentHandle,
                     m_containerName, compImpl, m_managerProxy, sharedCdbRef, compCL, m_logger, m_acsCorba);
+            compAdapter.setComponentReferenceCache(componentReferenceCache);
 
             // to support automatic offshoot translation for xml-binded offshoots, we need to pass the dynamic adaptor
             if( !operationsIFClass.isInstance(compImpl) ) {
@@ -712,10 +762,9 @@ public class AcsContainer extends ContainerPOA
 			final String exe, final String type, final CBComponentInfo callback, final CBDescIn desc)
 	{
 		m_logger.finer("activate_component_async request received for '" + name + 
-				"', enqueueing (taskCount: " + threadPoolExecutor.getTaskCount() + ", active threads: " + 
-				threadPoolExecutor.getActiveCount() + ", maxPoolSize: " + threadPoolExecutor.getMaximumPoolSize() + ").");
+				"', enqueueing (" + activationEngine.getStatistics() + ").");
 		
-		threadPoolExecutor.execute(new Runnable() {
+		activationEngine.submit(name, new Runnable() {
 			
 			@Override
 			public void run() {
@@ -944,6 +993,9 @@ public class AcsContainer extends ContainerPOA
      * of its components.
      * This information will only be needed for a locally initiated container shutdown,
      * since the manager will call {@link #deactivate_component(int)} in a regular shutdown.
+     * <p>
+     * Since the order has changed, the dependencies among these components are fetched again from the manager
+     * for the {@link ComponentActivationEngine}.
      */
     public void set_component_shutdown_order(int[] handleSeq) {
         String handleSeqString = null;
@@ -956,6 +1008,30 @@ public class AcsContainer extends ContainerPOA
                 handleSeqString += handleSeq[i] + " ";
             }
             m_activeComponentMap.sort(handleSeq);
+
+            // the changed dependencies also determine the order of later activations;
+            // the manager is waiting for this call to return, thus we ask it from another thread.
+            synchronized (dependencyRefreshLock) {
+                boolean refreshQueued = (pendingDependencyHandles != null);
+                pendingDependencyHandles = handleSeq.clone();
+                if (!refreshQueued) {
+                    try {
+                        dependencyRefreshExecutor.execute(new Runnable() {
+                            public void run() {
+                                int[] handles;
+                                synchronized (dependencyRefreshLock) {
+                                    handles = pendingDependencyHandles;
+                                    pendingDependencyHandles = null;
+                                }
+                                updateActivationDependencies(handles);
+                            }
+                        });
+                    } catch (RejectedExecutionException ex) {
+                        // shutting down
+                        pendingDependencyHandles = null;
+                    }
+                }
+            }
         }
         m_logger.fine("set_component_shutdown_order called. Handles: " + handleSeqString);
 
@@ -1206,7 +1282,9 @@ public class AcsContainer extends ContainerPOA
 		
 		m_managerProxy.shutdownNotify();
 		
-		threadPoolExecutor.shutdown();
+		activationEngine.shutdown();
+		dependencyRefreshExecutor.shutdownNow();
+		m_logger.fine("Component reference cache: " + componentReferenceCache.getStatistics());
 
 		// shut down all active components
 		if (gracefully) {
@@ -1621,6 +1699,7 @@ public class AcsContainer extends ContainerPOA
 
         // have containerservices instances notify their clients
         List<String> compNames = Arrays.asList(component_names); 
+        componentReferenceCache.invalidate(compNames);
         for (ComponentAdapter compAd : m_activeComponentMap.getAllComponentAdapters()) {
       	  compAd.getContainerServices().fireComponentsUnavailable(compNames);
         }
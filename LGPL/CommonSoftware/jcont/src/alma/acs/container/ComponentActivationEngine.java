@@ -0,0 +1,481 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.container;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.omg.PortableServer.Servant;
+
+import si.ijs.maci.ComponentInfo;
+
+/**
+ * Runs the asynchronous component activations of the container (see {@link AcsContainer#activate_component_async})
+ * on a bounded thread pool, and caches the POA tie constructors of the component classes.
+ * <p>
+ * The activations follow the dependencies among the components of this container as known by the manager,
+ * i.e. the clients of each component, which the container passes to {@link #updateDependencies(ComponentInfo[])}.
+ * These components are sorted topologically, in order of their handles where they do not depend on each other,
+ * so that a component is activated after the components it uses.
+ * <ul>
+ * <li>A request for a component is held back (not given to the thread pool) while a component it uses is
+ *     being activated by this engine, i.e. is queued, held back or running. Components which are not being activated
+ *     never hold back others. Dependencies which would close a cycle are not taken into account (the sort decides).
+ * <li>Requests waiting for a free thread run in activation order, unknown components afterwards in the order of arrival.
+ * <li>A request is held back at most {@link #ACTIVATION_HOLD_TIMEOUT_PROPERTYNAME} milliseconds, 
+ *     in case the dependency information is outdated and the component it waits for now needs this component.
+ * </ul>
+ * The number of threads is given by the property {@link #ACTIVATION_THREADS_PROPERTYNAME}.
+ * Note that activations which (in <code>initialize</code> or <code>execute</code>) synchronously request other components
+ * of the same container occupy a thread while waiting for the nested activation, so the number of threads
+ * should be larger than the maximum nesting depth.
+ */
+public class ComponentActivationEngine
+{
+	/**
+	 * Name of the property that defines the max. number of concurrent asynchronous component activations.
+	 */
+	public static final String ACTIVATION_THREADS_PROPERTYNAME = "alma.acs.container.activation_threads";
+
+	public static final int DEFAULT_ACTIVATION_THREADS = 10;
+
+	/**
+	 * Name of the property that defines the max. time in milliseconds an activation request is held back
+	 * waiting for the activation of the components it depends on.
+	 */
+	public static final String ACTIVATION_HOLD_TIMEOUT_PROPERTYNAME = "alma.acs.container.activation_hold_timeout";
+
+	public static final long DEFAULT_ACTIVATION_HOLD_TIMEOUT = 30000;
+
+	/**
+	 * The POA tie constructor for each POA tie class.
+	 * Using a ClassValue keeps the cached constructor from preventing the unloading of classes
+	 * that were loaded by a component class loader.
+	 */
+	private static final ClassValue<Constructor<?>> tieConstructors = new ClassValue<Constructor<?>>() {
+		@Override
+		protected Constructor<?> computeValue(Class<?> poaTieClass) {
+			for (Constructor<?> ctor : poaTieClass.getConstructors()) {
+				Class<?>[] paramTypes = ctor.getParameterTypes();
+				if (paramTypes.length == 1 && paramTypes[0].isInterface()) {
+					return ctor;
+				}
+			}
+			return null;
+		}
+	};
+
+	private final Logger logger;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Releases the requests which are held back too long.
+	 */
+	private final ScheduledThreadPoolExecutor holdTimer;
+
+	private final long holdTimeoutMillis;
+
+	/**
+	 * Sequence number of the requests, to keep the order of arrival among requests of equal rank.
+	 */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Guards the dependency data and the pending requests below.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Latest manager info of the components of this container, by component name.
+	 */
+	private final Map<String, ComponentInfo> knownComponents = new HashMap<String, ComponentInfo>();
+
+	/**
+	 * Position in the activation order by component name. Lower rank gets activated first.
+	 */
+	private Map<String, Integer> activationRanks = new HashMap<String, Integer>();
+
+	/**
+	 * Names of the components each component uses, by component name.
+	 */
+	private Map<String, Set<String>> prerequisites = new HashMap<String, Set<String>>();
+
+	/**
+	 * Number of queued, held back or running requests by component name.
+	 */
+	private final Map<String, Integer> pendingActivations = new HashMap<String, Integer>();
+
+	/**
+	 * Requests waiting for the activation of components they use.
+	 */
+	private final List<ActivationTask> heldBack = new ArrayList<ActivationTask>();
+
+	private boolean isShutdown = false;
+
+	private final AtomicLong activationCount = new AtomicLong();
+	private final AtomicLong activationTimeSumMillis = new AtomicLong();
+	private final AtomicLong heldBackCount = new AtomicLong();
+
+	/**
+	 * A queued activation request.
+	 */
+	private class ActivationTask implements Runnable, Comparable<ActivationTask>
+	{
+		private final String componentName;
+		private final Runnable activation;
+		private final int rank;
+		private final long seq;
+		private final Set<String> usedComponents;
+		private ScheduledFuture<?> holdTimeout;
+
+		/**
+		 * Must be called with the lock held.
+		 */
+		ActivationTask(String componentName, Runnable activation) {
+			this.componentName = componentName;
+			this.activation = activation;
+			Integer r = activationRanks.get(componentName);
+			this.rank = (r != null ? r.intValue() : Integer.MAX_VALUE);
+			this.seq = sequence.getAndIncrement();
+			this.usedComponents = prerequisites.get(componentName);
+		}
+
+		/**
+		 * Must be called with the lock held.
+		 * @return true if a component used by this component is being activated.
+		 */
+		boolean mustWait() {
+			if (usedComponents != null) {
+				for (String usedComponent : usedComponents) {
+					if (pendingActivations.containsKey(usedComponent)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		public void run() {
+			long start = System.currentTimeMillis();
+			try {
+				activation.run();
+			}
+			finally {
+				activationTimeSumMillis.addAndGet(System.currentTimeMillis() - start);
+				activationCount.incrementAndGet();
+				activationDone(this);
+			}
+		}
+
+		public int compareTo(ActivationTask other) {
+			if (rank != other.rank) {
+				return (rank < other.rank ? -1 : 1);
+			}
+			return (seq < other.seq ? -1 : (seq == other.seq ? 0 : 1));
+		}
+	}
+
+	/**
+	 * @param logger
+	 * @param threadFactory  the container's thread factory
+	 * @param numThreads  max. number of concurrent activations
+	 * @param holdTimeoutMillis  max. time a request is held back waiting for the activation of the components it uses
+	 */
+	public ComponentActivationEngine(Logger logger, ThreadFactory threadFactory, int numThreads, long holdTimeoutMillis) {
+		if (numThreads <= 0) {
+			throw new IllegalArgumentException("numThreads must be > 0");
+		}
+		if (holdTimeoutMillis <= 0) {
+			throw new IllegalArgumentException("holdTimeoutMillis must be > 0");
+		}
+		this.logger = logger;
+		this.holdTimeoutMillis = holdTimeoutMillis;
+		executor = new ThreadPoolExecutor(numThreads, numThreads, 3, TimeUnit.MINUTES,
+				new PriorityBlockingQueue<Runnable>(), threadFactory,
+				new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		holdTimer = new ScheduledThreadPoolExecutor(1, threadFactory);
+		holdTimer.setKeepAliveTime(1, TimeUnit.MINUTES);
+		holdTimer.allowCoreThreadTimeOut(true);
+		holdTimer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * @param logger
+	 * @param threadFactory  the container's thread factory
+	 * @param numThreads  max. number of concurrent activations
+	 */
+	public ComponentActivationEngine(Logger logger, ThreadFactory threadFactory, int numThreads) {
+		this(logger, threadFactory, numThreads, DEFAULT_ACTIVATION_HOLD_TIMEOUT);
+	}
+
+	/**
+	 * Creates the engine with the number of threads given by the property {@link #ACTIVATION_THREADS_PROPERTYNAME}
+	 * and the hold timeout given by the property {@link #ACTIVATION_HOLD_TIMEOUT_PROPERTYNAME}.
+	 */
+	public ComponentActivationEngine(Logger logger, ThreadFactory threadFactory) {
+		this(logger, threadFactory, 
+				Integer.getInteger(ACTIVATION_THREADS_PROPERTYNAME, DEFAULT_ACTIVATION_THREADS).intValue(),
+				Long.getLong(ACTIVATION_HOLD_TIMEOUT_PROPERTYNAME, DEFAULT_ACTIVATION_HOLD_TIMEOUT).longValue());
+	}
+
+	/**
+	 * Queues an activation, or holds it back while components it uses are being activated.
+	 * @param componentName  name of the component to be activated
+	 * @param activation  the activation, must handle all errors itself
+	 * @throws RejectedExecutionException  after {@link #shutdown()}
+	 */
+	public void submit(String componentName, Runnable activation) {
+		synchronized (lock) {
+			if (isShutdown) {
+				throw new RejectedExecutionException("Component activation engine is shut down.");
+			}
+			final ActivationTask task = new ActivationTask(componentName, activation);
+			boolean mustWait = task.mustWait();
+			Integer count = pendingActivations.get(componentName);
+			pendingActivations.put(componentName, (count != null ? count.intValue() + 1 : 1));
+			if (mustWait) {
+				heldBack.add(task);
+				heldBackCount.incrementAndGet();
+				task.holdTimeout = holdTimer.schedule(new Runnable() {
+					public void run() {
+						holdTimedOut(task);
+					}
+				}, holdTimeoutMillis, TimeUnit.MILLISECONDS);
+				logger.finer("Holding back the activation of '" + componentName + "' until the components it uses are activated.");
+			}
+			else {
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException ex) {
+					removePending(componentName);
+					throw ex;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the dependencies among the components of this container, which determine the order of activation.
+	 * The given infos are merged with those of earlier calls (by component name).
+	 * Only requests submitted after this call are affected.
+	 * @param componentInfos  the manager's infos about components of this container; 
+	 *                        clients that are not among the known components are ignored.
+	 */
+	public void updateDependencies(ComponentInfo[] componentInfos) {
+		synchronized (lock) {
+			// a handle belongs to the latest info only
+			Map<Integer, ComponentInfo> infosByHandle = new TreeMap<Integer, ComponentInfo>();
+			for (ComponentInfo info : componentInfos) {
+				if (info.h != 0 && info.name != null) {
+					knownComponents.put(info.name, info);
+					infosByHandle.put(info.h, info);
+				}
+			}
+			for (Iterator<ComponentInfo> iter = knownComponents.values().iterator(); iter.hasNext();) {
+				ComponentInfo info = iter.next();
+				ComponentInfo other = infosByHandle.get(info.h);
+				if (other == null) {
+					infosByHandle.put(info.h, info);
+				}
+				else if (other != info) {
+					iter.remove();
+				}
+			}
+
+			// the components each component uses, in order of handles (i.e. of first activation)
+			Map<ComponentInfo, List<ComponentInfo>> usedComponents = new HashMap<ComponentInfo, List<ComponentInfo>>();
+			for (ComponentInfo info : infosByHandle.values()) {
+				usedComponents.put(info, new ArrayList<ComponentInfo>());
+			}
+			for (ComponentInfo info : infosByHandle.values()) {
+				for (int client : info.clients) {
+					ComponentInfo clientInfo = infosByHandle.get(client);
+					if (clientInfo != null && clientInfo != info && !usedComponents.get(clientInfo).contains(info)) {
+						usedComponents.get(clientInfo).add(info);
+					}
+				}
+			}
+
+			// topological sort: every component after the components it uses
+			Map<String, Integer> ranks = new HashMap<String, Integer>(infosByHandle.size() * 2);
+			Set<ComponentInfo> visiting = new HashSet<ComponentInfo>();
+			for (ComponentInfo info : infosByHandle.values()) {
+				addInActivationOrder(info, usedComponents, visiting, ranks);
+			}
+
+			// a component depends on the components it uses that come earlier in the activation order
+			Map<String, Set<String>> newPrerequisites = new HashMap<String, Set<String>>();
+			for (Map.Entry<ComponentInfo, List<ComponentInfo>> entry : usedComponents.entrySet()) {
+				String name = entry.getKey().name;
+				int rank = ranks.get(name).intValue();
+				for (ComponentInfo used : entry.getValue()) {
+					if (ranks.get(used.name).intValue() < rank) {
+						Set<String> names = newPrerequisites.get(name);
+						if (names == null) {
+							names = new HashSet<String>();
+							newPrerequisites.put(name, names);
+						}
+						names.add(used.name);
+					}
+				}
+			}
+
+			activationRanks = ranks;
+			prerequisites = newPrerequisites;
+			logger.finer("Updated the activation order of " + ranks.size() + " components, " + newPrerequisites.size() + " of which depend on others.");
+		}
+	}
+
+	/**
+	 * Depth-first: ranks the components used by the given component, then the component itself.
+	 * A used component which is still being visited closes a cycle, and is not taken into account.
+	 */
+	private static void addInActivationOrder(ComponentInfo info, Map<ComponentInfo, List<ComponentInfo>> usedComponents,
+			Set<ComponentInfo> visiting, Map<String, Integer> ranks) {
+		if (ranks.containsKey(info.name) || !visiting.add(info)) {
+			return;
+		}
+		for (ComponentInfo used : usedComponents.get(info)) {
+			addInActivationOrder(used, usedComponents, visiting, ranks);
+		}
+		visiting.remove(info);
+		ranks.put(info.name, ranks.size());
+	}
+
+	/**
+	 * No more activations are accepted; queued and held back activations will still run.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			isShutdown = true;
+			terminateIfDone();
+		}
+		if (activationCount.get() > 0) {
+			logger.fine("Component activation engine shut down. " + getStatistics());
+		}
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * @return textual statistics about queued, held back, running and completed activations.
+	 */
+	public String getStatistics() {
+		int held;
+		synchronized (lock) {
+			held = heldBack.size();
+		}
+		long count = activationCount.get();
+		return "queued: " + executor.getQueue().size() + ", held back: " + held + ", active: " + executor.getActiveCount() +
+				", max threads: " + executor.getMaximumPoolSize() + ", completed: " + count +
+				", held back in total: " + heldBackCount.get() +
+				(count > 0 ? ", avg. time: " + (activationTimeSumMillis.get() / count) + " ms" : "");
+	}
+
+	/**
+	 * Releases the held back requests that no longer need to wait.
+	 */
+	private void activationDone(ActivationTask task) {
+		synchronized (lock) {
+			removePending(task.componentName);
+			for (Iterator<ActivationTask> iter = heldBack.iterator(); iter.hasNext();) {
+				ActivationTask heldTask = iter.next();
+				if (!heldTask.mustWait()) {
+					iter.remove();
+					heldTask.holdTimeout.cancel(false);
+					executor.execute(heldTask);
+				}
+			}
+			terminateIfDone();
+		}
+	}
+
+	private void holdTimedOut(ActivationTask task) {
+		synchronized (lock) {
+			if (heldBack.remove(task)) {
+				logger.fine("Activation of '" + task.componentName + "' was held back for " + holdTimeoutMillis + 
+						" ms waiting for the components it uses; activating it now.");
+				executor.execute(task);
+				terminateIfDone();
+			}
+		}
+	}
+
+	/**
+	 * Must be called with the lock held.
+	 */
+	private void removePending(String componentName) {
+		Integer count = pendingActivations.get(componentName);
+		if (count == null || count.intValue() <= 1) {
+			pendingActivations.remove(componentName);
+		}
+		else {
+			pendingActivations.put(componentName, count.intValue() - 1);
+		}
+	}
+
+	/**
+	 * Must be called with the lock held.
+	 * The thread pool is shut down only when no request is held back any more.
+	 */
+	private void terminateIfDone() {
+		if (isShutdown && heldBack.isEmpty()) {
+			executor.shutdown();
+			holdTimer.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the constructor of the POA tie class which takes the operations interface of the component,
+	 * computing it only once per POA tie class.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Constructor<? extends Servant> getPOATieConstructor(Class<? extends Servant> poaTieClass, Class<?> operationsIFClass)
+			throws NoSuchMethodException {
+		Constructor<?> ctor = tieConstructors.get(poaTieClass);
+		if (ctor == null || ctor.getParameterTypes()[0] != operationsIFClass) {
+			// some unusual tie class: no caching
+			return poaTieClass.getConstructor(new Class[] {operationsIFClass});
+		}
+		return (Constructor<? extends Servant>) ctor;
+	}
+}
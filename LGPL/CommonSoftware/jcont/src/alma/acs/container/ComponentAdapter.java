@@ -150,6 +150,10 @@ public class ComponentAdapter
 		m_containerServices.setComponentXmlTranslatorProxy(xmlTranslatorProxy);
 	}
 
+	void setComponentReferenceCache(ComponentReferenceCache cache) {
+		m_containerServices.setComponentReferenceCache(cache);
+	}
+
 	ContainerServicesImpl getContainerServices() {
 		return m_containerServices;
 	}
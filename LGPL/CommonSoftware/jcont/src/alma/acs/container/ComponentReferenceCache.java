@@ -0,0 +1,369 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.container;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alma.JavaContainerError.wrappers.AcsJContainerServicesEx;
+import alma.acs.component.ComponentDescriptor;
+
+/**
+ * Caches references to components, keyed by component name (curl) and CORBA interface.
+ * <p>
+ * The container shares one instance among the <code>ContainerServicesImpl</code> objects of all its components,
+ * so that components which look up the same peer component get the reference (and its narrowed form)
+ * from the cache instead of calling the manager and narrowing it again.
+ * Component clients outside of a container have their own instance.
+ * <p>
+ * Only references that the manager does not count are cached, that is non-sticky references
+ * (see {@link ContainerServices#getComponentNonSticky(String)}), and component descriptors.
+ * Sticky references must still be requested by every client from the manager, which keeps track of
+ * the dependencies among components; the <code>ContainerServicesImpl</code> of each client keeps them as before.
+ * <p>
+ * Concurrent lookups of the same component and interface result in only one call to the manager;
+ * the other threads wait for its result. Failed lookups are not cached.
+ * <p>
+ * A cached component can get deactivated or restarted. The entries for a component are therefore removed
+ * <ul>
+ *   <li>when the manager notifies the container that the component is unavailable (see {@link #invalidate(Collection)}), and
+ *   <li>when a liveness check (<code>_non_existent()</code>) of the cached reference fails. The check is done
+ *       at most once in the interval given by the property {@link #LIVENESS_CHECK_INTERVAL_PROPERTYNAME},
+ *       by the thread that gets the reference after the interval is over.
+ * </ul>
+ * In both cases the next lookup asks the manager again.
+ */
+public class ComponentReferenceCache
+{
+	/**
+	 * Name of the property that defines the min. time in milliseconds between two liveness checks of a cached reference.
+	 * A value <= 0 disables the liveness checks.
+	 */
+	public static final String LIVENESS_CHECK_INTERVAL_PROPERTYNAME = "alma.acs.container.component_cache.liveness_check_interval_ms";
+
+	public static final long DEFAULT_LIVENESS_CHECK_INTERVAL_MILLIS = 10000;
+
+	/**
+	 * Gets a component reference from the manager.
+	 */
+	public static interface ReferenceLoader {
+		org.omg.CORBA.Object load(String curl) throws AcsJContainerServicesEx;
+	}
+
+	/**
+	 * The <code>narrow</code> method of the IDL-generated helper class of each CORBA interface.
+	 * Using a ClassValue keeps the cached method from preventing the unloading of classes
+	 * that were loaded by a component class loader.
+	 */
+	private static final ClassValue<Method> narrowMethods = new ClassValue<Method>() {
+		@Override
+		protected Method computeValue(Class<?> corbaInterface) {
+			try {
+				Class<?> helperClass = Class.forName(corbaInterface.getName() + "Helper", true, corbaInterface.getClassLoader());
+				return helperClass.getMethod("narrow", org.omg.CORBA.Object.class);
+			} catch (Exception ex) {
+				return null;
+			}
+		}
+	};
+
+	private static class Key
+	{
+		final String curl;
+		final Class<?> corbaInterface;
+
+		Key(String curl, Class<?> corbaInterface) {
+			this.curl = curl;
+			this.corbaInterface = corbaInterface;
+		}
+
+		@Override
+		public int hashCode() {
+			return curl.hashCode() * 31 + corbaInterface.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return curl.equals(other.curl) && corbaInterface == other.corbaInterface;
+		}
+	}
+
+	private static class Entry
+	{
+		final org.omg.CORBA.Object reference;
+		/**
+		 * Time of the last liveness check (or of the lookup)
+		 */
+		final AtomicLong lastCheckMillis;
+
+		Entry(org.omg.CORBA.Object reference) {
+			this.reference = reference;
+			lastCheckMillis = new AtomicLong(System.currentTimeMillis());
+		}
+	}
+
+	private final Logger logger;
+
+	private final long livenessCheckIntervalMillis;
+
+	/**
+	 * The future references, so that concurrent lookups can wait for the same manager call.
+	 */
+	private final ConcurrentHashMap<Key, Future<Entry>> entries = new ConcurrentHashMap<Key, Future<Entry>>();
+
+	private final ConcurrentHashMap<String, ComponentDescriptor> descriptors = new ConcurrentHashMap<String, ComponentDescriptor>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong loadCount = new AtomicLong();
+	private final AtomicLong joinedLookupCount = new AtomicLong();
+	private final AtomicLong narrowCount = new AtomicLong();
+	private final AtomicLong invalidationCount = new AtomicLong();
+	private final AtomicLong livenessCheckCount = new AtomicLong();
+	private final AtomicLong livenessFailureCount = new AtomicLong();
+
+	/**
+	 * @param logger
+	 * @param livenessCheckIntervalMillis  min. time between two liveness checks of a cached reference; <= 0 for no checks
+	 */
+	public ComponentReferenceCache(Logger logger, long livenessCheckIntervalMillis) {
+		this.logger = logger;
+		this.livenessCheckIntervalMillis = livenessCheckIntervalMillis;
+	}
+
+	/**
+	 * Creates the cache with the liveness check interval given by the property {@link #LIVENESS_CHECK_INTERVAL_PROPERTYNAME}.
+	 */
+	public ComponentReferenceCache(Logger logger) {
+		this(logger, Long.getLong(LIVENESS_CHECK_INTERVAL_PROPERTYNAME, DEFAULT_LIVENESS_CHECK_INTERVAL_MILLIS).longValue());
+	}
+
+	/**
+	 * Gets the reference to a component, narrowed to the given CORBA interface.
+	 * <p>
+	 * If the reference is not cached, it is retrieved with the given loader (only once for concurrent lookups), and
+	 * narrowed using the IDL-generated helper class of <code>corbaInterface</code>.
+	 * The plain reference is cached as well, so that the manager is called only once per component
+	 * even if it is requested with different interfaces.
+	 *
+	 * @param curl  the component name
+	 * @param corbaInterface  the IDL-generated interface of the component, or <code>org.omg.CORBA.Object</code> for the plain reference
+	 * @param loader  retrieves the plain reference from the manager if it is not cached
+	 * @throws AcsJContainerServicesEx  if the loader failed, or if the reference cannot be narrowed to <code>corbaInterface</code>
+	 */
+	public <T extends org.omg.CORBA.Object> T get(final String curl, final Class<T> corbaInterface, final ReferenceLoader loader)
+		throws AcsJContainerServicesEx
+	{
+		Key key = new Key(curl, corbaInterface);
+		while (true) {
+			boolean loadedHere = false;
+			Future<Entry> future = entries.get(key);
+			if (future == null) {
+				FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+					public Entry call() throws AcsJContainerServicesEx {
+						return load(curl, corbaInterface, loader);
+					}
+				});
+				future = entries.putIfAbsent(key, task);
+				if (future == null) {
+					future = task;
+					task.run();
+					loadedHere = true;
+				}
+			}
+			if (!loadedHere) {
+				if (future.isDone()) {
+					hitCount.incrementAndGet();
+				}
+				else {
+					joinedLookupCount.incrementAndGet();
+				}
+			}
+			Entry entry;
+			try {
+				entry = future.get();
+			} catch (ExecutionException ex) {
+				// the next lookup must try again
+				entries.remove(key, future);
+				Throwable cause = ex.getCause();
+				if (cause instanceof AcsJContainerServicesEx) {
+					throw (AcsJContainerServicesEx) cause;
+				}
+				AcsJContainerServicesEx ex2 = new AcsJContainerServicesEx(cause);
+				ex2.setContextInfo("Failed to get a reference to component " + curl);
+				throw ex2;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				AcsJContainerServicesEx ex2 = new AcsJContainerServicesEx(ex);
+				ex2.setContextInfo("Interrupted while waiting for the reference to component " + curl);
+				throw ex2;
+			}
+			if (!loadedHere && !isAlive(entry)) {
+				logger.fine("Cached reference to component " + curl + " is no longer valid, will get a new one.");
+				invalidate(curl);
+				continue;
+			}
+			return corbaInterface.cast(entry.reference);
+		}
+	}
+
+	private Entry load(String curl, Class<? extends org.omg.CORBA.Object> corbaInterface, ReferenceLoader loader)
+		throws AcsJContainerServicesEx
+	{
+		if (corbaInterface == org.omg.CORBA.Object.class) {
+			loadCount.incrementAndGet();
+			return new Entry(loader.load(curl));
+		}
+		org.omg.CORBA.Object reference = get(curl, org.omg.CORBA.Object.class, loader);
+		Method narrowMethod = narrowMethods.get(corbaInterface);
+		if (narrowMethod == null) {
+			AcsJContainerServicesEx ex = new AcsJContainerServicesEx();
+			ex.setContextInfo("No IDL-generated helper class found for " + corbaInterface.getName());
+			throw ex;
+		}
+		narrowCount.incrementAndGet();
+		Object narrowed = null;
+		Throwable failure = null;
+		try {
+			narrowed = narrowMethod.invoke(null, reference);
+		} catch (InvocationTargetException ex) {
+			// e.g. org.omg.CORBA.BAD_PARAM if the component does not implement the interface
+			failure = ex.getCause();
+		} catch (Exception ex) {
+			failure = ex;
+		}
+		if (narrowed == null) {
+			AcsJContainerServicesEx ex = new AcsJContainerServicesEx(failure);
+			ex.setContextInfo("Failed to narrow the reference to component " + curl + " to " + corbaInterface.getName());
+			throw ex;
+		}
+		return new Entry((org.omg.CORBA.Object) narrowed);
+	}
+
+	/**
+	 * Checks the liveness of the cached reference if the last check was longer ago than the liveness check interval.
+	 * Only one thread does the check, the others take the reference as valid.
+	 */
+	private boolean isAlive(Entry entry) {
+		if (livenessCheckIntervalMillis <= 0) {
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		long lastCheck = entry.lastCheckMillis.get();
+		if (now - lastCheck < livenessCheckIntervalMillis || !entry.lastCheckMillis.compareAndSet(lastCheck, now)) {
+			return true;
+		}
+		livenessCheckCount.incrementAndGet();
+		try {
+			if (!entry.reference._non_existent()) {
+				return true;
+			}
+		} catch (org.omg.CORBA.SystemException ex) {
+			// e.g. TRANSIENT if the container of the component is gone
+			logger.log(Level.FINER, "Liveness check of cached component reference failed.", ex);
+		}
+		livenessFailureCount.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Removes the cached references and descriptor of a component,
+	 * so that the next lookup will ask the manager.
+	 */
+	public void invalidate(String curl) {
+		boolean removed = (descriptors.remove(curl) != null);
+		for (Key key : entries.keySet()) {
+			if (key.curl.equals(curl)) {
+				removed |= (entries.remove(key) != null);
+			}
+		}
+		if (removed) {
+			invalidationCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes the cached references and descriptors of the given components,
+	 * typically after the manager has notified that they are unavailable.
+	 */
+	public void invalidate(Collection<String> curls) {
+		for (String curl : curls) {
+			invalidate(curl);
+		}
+	}
+
+	public ComponentDescriptor getDescriptor(String curl) {
+		return descriptors.get(curl);
+	}
+
+	public void putDescriptor(ComponentDescriptor desc) {
+		descriptors.put(desc.getName(), desc);
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of plain references retrieved from the manager.
+	 */
+	public long getLoadCount() {
+		return loadCount.get();
+	}
+
+	/**
+	 * @return the number of lookups that waited for the manager call of a concurrent lookup.
+	 */
+	public long getJoinedLookupCount() {
+		return joinedLookupCount.get();
+	}
+
+	public long getInvalidationCount() {
+		return invalidationCount.get();
+	}
+
+	public long getLivenessFailureCount() {
+		return livenessFailureCount.get();
+	}
+
+	/**
+	 * @return textual statistics about the cache usage.
+	 */
+	public String getStatistics() {
+		return "cached references: " + entries.size() + ", hits: " + hitCount.get() + ", manager calls: " + loadCount.get() +
+				", joined concurrent lookups: " + joinedLookupCount.get() + ", narrowed: " + narrowCount.get() +
+				", invalidations: " + invalidationCount.get() + ", liveness checks: " + livenessCheckCount.get() +
+				" (" + livenessFailureCount.get() + " failed)";
+	}
+}
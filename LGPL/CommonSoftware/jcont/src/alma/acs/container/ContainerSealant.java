@@ -27,6 +27,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +42,7 @@ import alma.acs.container.corba.CorbaNullFinder;
 import alma.acs.exceptions.CorbaExceptionConverter;
 import alma.acs.logging.AcsLogLevel;
 import alma.acs.monitoring.DynamicInterceptor;
+import alma.acs.monitoring.GeneratedInterceptor;
 import alma.acs.monitoring.DynamicInterceptor.InterceptionHandler;
 import alma.acs.monitoring.DynamicInterceptor.InterceptionHandlerFactory;
 import alma.acs.util.StopWatch;
@@ -63,9 +65,18 @@ public class ContainerSealant
 	/**
 	 * If this property is enabled, the container will check the return value and out/inout parameters 
 	 * for illegal null values that will cause exceptions during subsequent corba marshalling.
+	 * The property is evaluated when the sealant is created, i.e. at component or offshoot activation.
 	 */
 	public static final String CHECK_NULLS_CORBA_OUT_PROPERTYNAME = "alma.acs.container.check_nulls_corba_out";
 	
+	/**
+	 * If this property is enabled, the sealant uses a {@link GeneratedInterceptor} (a class generated per component interface 
+	 * that calls the component directly) instead of a dynamic proxy with {@link DynamicInterceptor}. 
+	 * The behavior is the same, only the overhead per call is lower. 
+	 * The property is evaluated when the sealant is created.
+	 */
+	public static final String GENERATED_INTERCEPTION_PROPERTYNAME = "alma.acs.container.generated_interception";
+	
 	
 	/**
 	 * Creates a ContainerSealant and uses it as the invocation handler for the returned dynamic proxy
@@ -103,6 +114,9 @@ public class ContainerSealant
 		InterceptionHandlerFactory interceptionHandlerFactory = 
 			new ComponentInterceptionHandlerFactory(name, isOffShoot, logger, methodNamesExcludedFromInvocationLogging);
 
+		if (Boolean.getBoolean(GENERATED_INTERCEPTION_PROPERTYNAME)) {
+			return GeneratedInterceptor.createGeneratedInterceptor(corbaInterface, component, logger, componentContextCL, interceptionHandlerFactory);
+		}
 		return DynamicInterceptor.createDynamicInterceptor(corbaInterface, component, logger, componentContextCL, interceptionHandlerFactory);
 	}
 
@@ -113,13 +127,40 @@ public class ContainerSealant
 	//////////////////////////////////////////////////////////////////////////////////////////////////
 	
 	/**
-	 * The handler created for every call to a component or offshoot (with lightweight implementation).
+	 * Settings of one intercepted method, computed at the first call of the method.
+	 */
+	private static class MethodInfo {
+		final Method method;
+		final String qualMethodName;
+		
+		/**
+		 * Whether the invocation logging is suppressed for this method.
+		 */
+		final boolean isExcludedFromInvocationLogging;
+		
+		/**
+		 * The handler used for all calls that are not logged. It keeps no per-call state. 
+		 */
+		final ComponentInterceptionHandler unloggedCallHandler;
+		
+		MethodInfo(Method method, String name, boolean isExcludedFromInvocationLogging, ComponentInterceptionHandlerFactory factory) {
+			this.method = method;
+			this.qualMethodName = name + "#" + method.getName();
+			this.isExcludedFromInvocationLogging = isExcludedFromInvocationLogging;
+			this.unloggedCallHandler = new ComponentInterceptionHandler(this, factory, false);
+		}
+	}
+	
+	/**
+	 * The handler for calls to a component or offshoot (with lightweight implementation).
 	 * Will log method invocation and return.
+	 * <p>
+	 * A new instance is created for every logged call; calls that are not logged share {@link MethodInfo#unloggedCallHandler}.
 	 */
 	private static class ComponentInterceptionHandler implements DynamicInterceptor.InterceptionHandler {
-		private final String name;
+		private final MethodInfo methodInfo;
 		private final Logger logger;
-		private final Set<String> methodNamesExcludedFromInvocationLogging;
+		private final boolean checkNullsCorbaOut;
 		private StopWatch methodInvWatch;
 		
 		/**
@@ -130,32 +171,28 @@ public class ContainerSealant
 		/**
 		 * Whether the call should be logged (because of level or suppressed logging for the given interface method).
 		 */
-		private boolean isLoggable = false;
+		private final boolean isLoggable;
 		
 		/**
 		 * The method that was called
 		 */
-		private Method method;
+		private final Method method;
 
 		
-		ComponentInterceptionHandler(String name, boolean isOffShoot, Logger logger, Set<String> methodNamesExcludedFromInvocationLogging) {
-			this.name = name;
-			this.logger = logger;
-			this.methodNamesExcludedFromInvocationLogging = methodNamesExcludedFromInvocationLogging;
-			// TODO: Now that component interception logs have been demoted from DEBUG to DELOUSE,
-			// shouldn't we also use DELOUSE for offshoot interception logs? Historically it is TRACE
-			// but also at that time we did not have the DELOUSE level available.
-			this.logLevel = ( isOffShoot ? AcsLogLevel.TRACE : AcsLogLevel.DELOUSE );
+		ComponentInterceptionHandler(MethodInfo methodInfo, ComponentInterceptionHandlerFactory factory, boolean isLoggable) {
+			this.methodInfo = methodInfo;
+			this.method = methodInfo.method;
+			this.logger = factory.logger;
+			this.logLevel = factory.logLevel;
+			this.checkNullsCorbaOut = factory.checkNullsCorbaOut;
+			this.isLoggable = isLoggable;
 		}
 		
 		@Override
 		public boolean callReceived(Method method, Object[] args) {
-			this.method = method;
-			isLoggable = ( !isExcludedFromInvocationLogging(method.getName()) && logger.isLoggable(logLevel) );
 			if (isLoggable) {
-				String qualMethodName = name + "#" + method.getName();
 				methodInvWatch = new StopWatch(logger);
-				logger.log(logLevel, "intercepted a call to '" + qualMethodName + "'.");
+				logger.log(logLevel, "intercepted a call to '" + methodInfo.qualMethodName + "'.");
 			}
 			return true;
 		}
@@ -164,7 +201,7 @@ public class ContainerSealant
 		public Object callFinished(Object retVal, Object[] args, Throwable realThr) throws Throwable {
 			
 			// log invocation time
-			String qualMethodName = name + "#" + method.getName();
+			String qualMethodName = methodInfo.qualMethodName;
 			if (isLoggable) {
 				logger.log(logLevel, "returning from " + qualMethodName + " after " + methodInvWatch.getLapTimeMillis() + " ms.");
 			}
@@ -212,7 +249,7 @@ public class ContainerSealant
 				}
 			}
 			
-			if (Boolean.getBoolean(CHECK_NULLS_CORBA_OUT_PROPERTYNAME)) {
+			if (checkNullsCorbaOut) {
 				try {
 					// check return value
 					Class<?> clzzRet = method.getReturnType();
@@ -256,32 +293,37 @@ public class ContainerSealant
 			
 			return retVal;
 		}
-		
-		/**
-		 * Checks if an invoked method is known to be excluded from logging.
-		 * This is always true for {@link ACSComponentOperations#componentState() componentState},
-		 * and for all methods that are set for no-logging.
-		 */
-		private boolean isExcludedFromInvocationLogging(String methodName) {
-			return (methodNamesExcludedFromInvocationLogging.contains(methodName));
-		}
 	}
 
 	
 	
 	/**
-	 * 
+	 * Creates the {@link ComponentInterceptionHandler}s, with per-method settings computed only once.
 	 */
-	private static class ComponentInterceptionHandlerFactory implements DynamicInterceptor.InterceptionHandlerFactory {
+	private static class ComponentInterceptionHandlerFactory implements DynamicInterceptor.MethodInterceptionHandlerFactory {
 		private final String name;
 		private final boolean isOffShoot;
 		private final Logger logger;
 		private final Set<String> methodNamesExcludedFromInvocationLogging;
+		
+		/**
+		 * The level at which we log the intercepted calls.
+		 */
+		private final Level logLevel;
+		
+		private final boolean checkNullsCorbaOut;
+		
+		private final ConcurrentHashMap<Method, MethodInfo> methodInfos = new ConcurrentHashMap<Method, MethodInfo>();
 
 		ComponentInterceptionHandlerFactory(String name, boolean isOffShoot, Logger logger, String[] excludedMethods) {
 			this.name = name;
 			this.isOffShoot = isOffShoot;
 			this.logger = logger;
+			// TODO: Now that component interception logs have been demoted from DEBUG to DELOUSE,
+			// shouldn't we also use DELOUSE for offshoot interception logs? Historically it is TRACE
+			// but also at that time we did not have the DELOUSE level available.
+			this.logLevel = ( isOffShoot ? AcsLogLevel.TRACE : AcsLogLevel.DELOUSE );
+			this.checkNullsCorbaOut = Boolean.getBoolean(CHECK_NULLS_CORBA_OUT_PROPERTYNAME);
 			methodNamesExcludedFromInvocationLogging = new HashSet<String>(2);
 			setExcludedMethods(excludedMethods);
 		}
@@ -345,9 +387,52 @@ public class ContainerSealant
 			}
 		}
 
+		@Override
+		public InterceptionHandler createInterceptionHandler(Method method) {
+			MethodInfo methodInfo = methodInfos.get(method);
+			if (methodInfo == null) {
+				methodInfo = new MethodInfo(method, name, isExcludedFromInvocationLogging(method.getName()), this);
+				MethodInfo existing = methodInfos.putIfAbsent(method, methodInfo);
+				if (existing != null) {
+					methodInfo = existing;
+				}
+			}
+			if (!methodInfo.isExcludedFromInvocationLogging && logger.isLoggable(logLevel)) {
+				return new ComponentInterceptionHandler(methodInfo, this, true);
+			}
+			return methodInfo.unloggedCallHandler;
+		}
+
+		/**
+		 * For callers that do not know the intercepted method in advance (the interceptors of this class 
+		 * call {@link #createInterceptionHandler(Method)}): the returned handler looks up the method settings 
+		 * when the call is received, and then behaves like the handler for that method.
+		 */
 		@Override
 		public InterceptionHandler createInterceptionHandler() {
-			return new ComponentInterceptionHandler(name, isOffShoot, logger, methodNamesExcludedFromInvocationLogging);
+			return new InterceptionHandler() {
+				private InterceptionHandler methodHandler;
+
+				@Override
+				public boolean callReceived(Method method, Object[] args) {
+					methodHandler = createInterceptionHandler(method);
+					return methodHandler.callReceived(method, args);
+				}
+
+				@Override
+				public Object callFinished(Object retVal, Object[] args, Throwable realThr) throws Throwable {
+					return methodHandler.callFinished(retVal, args, realThr);
+				}
+			};
+		}
+		
+		/**
+		 * Checks if an invoked method is known to be excluded from logging.
+		 * This is always true for {@link ACSComponentOperations#componentState() componentState},
+		 * and for all methods that are set for no-logging.
+		 */
+		private boolean isExcludedFromInvocationLogging(String methodName) {
+			return (methodNamesExcludedFromInvocationLogging.contains(methodName));
 		}
 	}
 
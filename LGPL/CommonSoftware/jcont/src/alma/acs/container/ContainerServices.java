@@ -127,6 +127,11 @@ public interface ContainerServices extends ContainerServicesBase
 	 * Since a non-sticky reference is not considered in reference counting, it will also not activate the component if it is 
 	 * not already active. As a consequence, asking for a non-sticky reference to a not-active Component throws an exception. 
 	 * The client represented by id (the handle) must have adequate access rights to access the component.
+	 * <p>
+	 * Inside a container, non-sticky references are cached and shared by all components of the container, 
+	 * so that repeated calls do not go to the Manager. A cached reference is dropped when the Manager reports the component 
+	 * as unavailable, or when a periodic liveness check fails; therefore this method may still return a reference 
+	 * to a component that has been deactivated very recently.
 	 * @param curl the component URL (component instance name)
 	 * @return  the CORBA proxy for the component.
 	 * @throws AcsJContainerServicesEx if something goes wrong
@@ -135,6 +140,20 @@ public interface ContainerServices extends ContainerServicesBase
 	public org.omg.CORBA.Object getComponentNonSticky(String curl) 
 			throws AcsJContainerServicesEx;
 
+	/**
+	 * Gets a non-sticky reference to a component, like {@link #getComponentNonSticky(String)}, 
+	 * already narrowed to the given IDL-generated interface.
+	 * <p>
+	 * The narrowed reference is cached as well, so that repeated calls neither go to the Manager 
+	 * nor to the component for the remote type check of <code>XxxHelper.narrow</code>.
+	 * @param curl the component URL (component instance name)
+	 * @param corbaInterface  the IDL-generated interface of the component, e.g. <code>alma.demo.HelloDemo.class</code>
+	 * @return  the CORBA proxy for the component.
+	 * @throws AcsJContainerServicesEx if something goes wrong, e.g. if the component does not implement <code>corbaInterface</code>
+	 */
+	public <T extends org.omg.CORBA.Object> T getComponentNonSticky(String curl, Class<T> corbaInterface) 
+			throws AcsJContainerServicesEx;
+
 
 	/**
 	 * Gets the default component specified by the component type.
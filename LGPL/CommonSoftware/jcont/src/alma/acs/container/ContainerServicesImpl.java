@@ -32,6 +32,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -127,6 +131,18 @@ public class ContainerServicesImpl implements ContainerServices
 
 	// sync'd map, key=curl, value=ComponentDescriptor
 	private final Map<String, ComponentDescriptor> m_componentDescriptorMap;
+
+	/**
+	 * Requests for sticky component references that are under way, key=curl.
+	 * Threads that concurrently request the same component for the first time wait for the one call to the manager.
+	 */
+	private final ConcurrentHashMap<String, FutureTask<org.omg.CORBA.Object>> m_pendingComponentRequests;
+
+	/**
+	 * Non-sticky references and component descriptors.
+	 * Inside a container this cache is shared by all components, see {@link #setComponentReferenceCache(ComponentReferenceCache)}.
+	 */
+	private volatile ComponentReferenceCache componentReferenceCache;
 	
 	/** 
 	 * The handle that the manager has assigned to the component to whom this ContainerServices object belongs, 
@@ -231,6 +247,8 @@ public class ContainerServicesImpl implements ContainerServices
 		m_usedNonStickyComponentsMap = Collections.synchronizedMap(new HashMap<String, org.omg.CORBA.Object>());
 		
 		m_componentDescriptorMap = Collections.synchronizedMap(new HashMap<String, ComponentDescriptor>());
+		m_pendingComponentRequests = new ConcurrentHashMap<String, FutureTask<org.omg.CORBA.Object>>();
+		componentReferenceCache = new ComponentReferenceCache(logger);
 		m_activatedOffshootsMap = Collections.synchronizedMap(new HashMap<Object, Servant>());
 
 		m_subscribers = new HashMap<String, AcsEventSubscriber<?>>();
@@ -249,6 +267,13 @@ public class ContainerServicesImpl implements ContainerServices
 		m_componentXmlTranslatorProxy = xmlTranslatorProxy;
 	}
 
+	/**
+	 * Replaces the cache of this client with the one of the container, which is shared by all its components.
+	 */
+	void setComponentReferenceCache(ComponentReferenceCache cache) {
+		componentReferenceCache = cache;
+	}
+
 	/////////////////////////////////////////////////////////////
 	// Implementation of ContainerServices
 	/////////////////////////////////////////////////////////////
@@ -340,6 +365,8 @@ public class ContainerServicesImpl implements ContainerServices
 	/**
 	 */
 	public void fireComponentsUnavailable (List<String> compNames) {
+		componentReferenceCache.invalidate(compNames);
+		
 		if (compListener == null) {
 			return;
 		}
@@ -481,6 +508,13 @@ public class ContainerServicesImpl implements ContainerServices
 		}
 
 		ComponentDescriptor desc = m_componentDescriptorMap.get(curl);
+		if (desc == null) {
+			// maybe another component of this container has asked for it already
+			desc = componentReferenceCache.getDescriptor(curl);
+			if (desc != null) {
+				m_componentDescriptorMap.put(curl, desc);
+			}
+		}
 		
 		if (desc == null) {
 			// try to get it from the manager
@@ -496,6 +530,7 @@ public class ContainerServicesImpl implements ContainerServices
 			if (compInfos.length == 1) {
 				desc = new ComponentDescriptor(compInfos[0]);
 				m_componentDescriptorMap.put(curl, desc);
+				componentReferenceCache.putDescriptor(desc);
 			}
 			else {
 				String msg = "failed to retrieve a unique component descriptor for the component instance "  + curl;
@@ -512,7 +547,7 @@ public class ContainerServicesImpl implements ContainerServices
 	/**
 	 * @see alma.acs.container.ContainerServices#getComponent(String)
 	 */	
-	public org.omg.CORBA.Object getComponent(String curl) throws AcsJContainerServicesEx
+	public org.omg.CORBA.Object getComponent(final String curl) throws AcsJContainerServicesEx
 	{
 		if (curl == null) {
 			AcsJBadParameterEx cause = new AcsJBadParameterEx();
@@ -538,36 +573,89 @@ public class ContainerServicesImpl implements ContainerServices
 		}
 		else
 		{
-			m_logger.fine("will retrieve remote component '" + curl + 
-							"' using ACS Manager#get_component with client handle " + getEffectiveClientHandle());
-		
-			/// @todo: think about timeouts
-			
+			// Only one thread calls the manager, others that ask for the same component meanwhile wait for its result.
+			FutureTask<org.omg.CORBA.Object> request = new FutureTask<org.omg.CORBA.Object>(new Callable<org.omg.CORBA.Object>() {
+				public org.omg.CORBA.Object call() throws AcsJContainerServicesEx {
+					return retrieveComponent(curl);
+				}
+			});
+			FutureTask<org.omg.CORBA.Object> pendingRequest = m_pendingComponentRequests.putIfAbsent(curl, request);
+			if (pendingRequest == null) {
+				try {
+					request.run();
+				} finally {
+					m_pendingComponentRequests.remove(curl, request);
+				}
+				pendingRequest = request;
+			}
+			else {
+				m_logger.fine("client '" + m_clientName + "' waits for the concurrent retrieval of component '" + curl + "'.");
+			}
 			try {
-			    stub = m_acsManagerProxy.get_component(getEffectiveClientHandle(), curl, true);
-			    m_logger.fine("component " + curl + " retrieved successfully.");
-			    m_usedComponentsMap.put(curl, stub);
-			} catch (AcsJmaciErrTypeEx ex) {				
-			    String msg = "Failed to retrieve component " + curl;
-			    m_logger.log(Level.FINE, msg, ex); // only a low-level log because the client component is supposed to log the exception which contains all context data 
-			    throw new AcsJContainerServicesEx(ex);
-			} catch (Throwable thr) {
-			    String msg = "Failed to retrieve component " + curl + " for unexpected reasons.";
-			    m_logger.log(Level.FINE, msg, thr);  
-				AcsJContainerServicesEx ex = new AcsJContainerServicesEx(thr);
-				ex.setContextInfo(msg);
-				throw ex;
-			}			
+				stub = pendingRequest.get();
+			} catch (ExecutionException ex) {
+				if (ex.getCause() instanceof AcsJContainerServicesEx) {
+					throw (AcsJContainerServicesEx) ex.getCause();
+				}
+				throw new AcsJContainerServicesEx(ex.getCause());
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				AcsJContainerServicesEx ex2 = new AcsJContainerServicesEx(ex);
+				ex2.setContextInfo("Interrupted while waiting for the retrieval of component " + curl);
+				throw ex2;
+			}
 		}
 
 		return stub;
 	}
+
+	/**
+	 * Gets a sticky reference from the manager and stores it in {@link #m_usedComponentsMap}.
+	 */
+	private org.omg.CORBA.Object retrieveComponent(String curl) throws AcsJContainerServicesEx {
+		m_logger.fine("will retrieve remote component '" + curl + 
+						"' using ACS Manager#get_component with client handle " + getEffectiveClientHandle());
+	
+		/// @todo: think about timeouts
+		
+		try {
+		    org.omg.CORBA.Object stub = m_acsManagerProxy.get_component(getEffectiveClientHandle(), curl, true);
+		    m_logger.fine("component " + curl + " retrieved successfully.");
+		    m_usedComponentsMap.put(curl, stub);
+		    return stub;
+		} catch (AcsJmaciErrTypeEx ex) {				
+		    String msg = "Failed to retrieve component " + curl;
+		    m_logger.log(Level.FINE, msg, ex); // only a low-level log because the client component is supposed to log the exception which contains all context data 
+		    throw new AcsJContainerServicesEx(ex);
+		} catch (Throwable thr) {
+		    String msg = "Failed to retrieve component " + curl + " for unexpected reasons.";
+		    m_logger.log(Level.FINE, msg, thr);  
+			AcsJContainerServicesEx ex = new AcsJContainerServicesEx(thr);
+			ex.setContextInfo(msg);
+			throw ex;
+		}			
+	}
 	
 	
 
 
+	/**
+	 * Non-sticky references are taken from the {@link ComponentReferenceCache}, 
+	 * which is shared by all components of the container. 
+	 * 
+	 * @see alma.acs.container.ContainerServices#getComponentNonSticky(java.lang.String)
+	 */
 	public org.omg.CORBA.Object getComponentNonSticky(String curl) 
 		throws AcsJContainerServicesEx
+	{
+		return getComponentNonSticky(curl, org.omg.CORBA.Object.class);
+	}
+
+	/**
+	 * @see alma.acs.container.ContainerServices#getComponentNonSticky(java.lang.String, java.lang.Class)
+	 */
+	public <T extends org.omg.CORBA.Object> T getComponentNonSticky(String curl, Class<T> corbaInterface) 
+		throws AcsJContainerServicesEx
 	{
 		if (curl == null) {
 			AcsJBadParameterEx cause = new AcsJBadParameterEx();
@@ -575,26 +663,41 @@ public class ContainerServicesImpl implements ContainerServices
 			cause.setParameterValue("null");
 			throw new AcsJContainerServicesEx(cause);
 		}
+		if (corbaInterface == null) {
+			AcsJBadParameterEx cause = new AcsJBadParameterEx();
+			cause.setParameter("corbaInterface"); 
+			cause.setParameterValue("null");
+			throw new AcsJContainerServicesEx(cause);
+		}
 
-		org.omg.CORBA.Object stub = null;
-		try {
-			stub = m_acsManagerProxy.get_component_non_sticky(getEffectiveClientHandle(), curl);
-		    m_logger.fine("Non-sticky reference to component '" + curl + "' retrieved successfully.");
-		    m_usedNonStickyComponentsMap.put(curl, stub);
-		} catch (AcsJmaciErrTypeEx ex) {				
-		    String msg = "Failed to retrieve non-sticky reference to component " + curl;
-		    m_logger.log(Level.FINE, msg, ex); // only a low-level log because the client component is supposed to log the exception which contains all context data 
-		    throw new AcsJContainerServicesEx(ex);
-		} catch (Throwable thr) {
-		    String msg = "Failed to retrieve non-sticky reference to component '" + curl + "' for unexpected reasons.";
-		    m_logger.log(Level.FINE, msg, thr);  
-			AcsJContainerServicesEx ex = new AcsJContainerServicesEx(thr);
-			ex.setContextInfo(msg);
-			throw ex;
-		}	
+		T stub = componentReferenceCache.get(curl, corbaInterface, nonStickyLoader);
+		m_usedNonStickyComponentsMap.put(curl, stub);
 		return stub;
 	}
 
+	/**
+	 * Gets non-sticky references from the manager for the {@link #componentReferenceCache}.
+	 */
+	private final ComponentReferenceCache.ReferenceLoader nonStickyLoader = new ComponentReferenceCache.ReferenceLoader() {
+		public org.omg.CORBA.Object load(String curl) throws AcsJContainerServicesEx {
+			try {
+				org.omg.CORBA.Object stub = m_acsManagerProxy.get_component_non_sticky(getEffectiveClientHandle(), curl);
+			    m_logger.fine("Non-sticky reference to component '" + curl + "' retrieved successfully.");
+			    return stub;
+			} catch (AcsJmaciErrTypeEx ex) {				
+			    String msg = "Failed to retrieve non-sticky reference to component " + curl;
+			    m_logger.log(Level.FINE, msg, ex); // only a low-level log because the client component is supposed to log the exception which contains all context data 
+			    throw new AcsJContainerServicesEx(ex);
+			} catch (Throwable thr) {
+			    String msg = "Failed to retrieve non-sticky reference to component '" + curl + "' for unexpected reasons.";
+			    m_logger.log(Level.FINE, msg, thr);  
+				AcsJContainerServicesEx ex = new AcsJContainerServicesEx(thr);
+				ex.setContextInfo(msg);
+				throw ex;
+			}	
+		}
+	};
+
 	/**
 	 * @see alma.acs.container.ContainerServices#getDefaultComponent(java.lang.String)
 	 */
@@ -638,7 +741,7 @@ public class ContainerServicesImpl implements ContainerServices
 		}
 		
 		m_usedComponentsMap.put(cInfo.name, cInfo.reference);
-		m_componentDescriptorMap.put(cInfo.name, new ComponentDescriptor(cInfo));
+		storeComponentDescriptor(cInfo);
 
 		return cInfo.reference;
 	}
@@ -705,7 +808,7 @@ public class ContainerServicesImpl implements ContainerServices
 		}
 		
 		m_usedComponentsMap.put(cInfo.name, cInfo.reference);
-		m_componentDescriptorMap.put(cInfo.name, new ComponentDescriptor(cInfo));
+		storeComponentDescriptor(cInfo);
 
 		return cInfo.reference;
 	}
@@ -742,7 +845,7 @@ public class ContainerServicesImpl implements ContainerServices
 			cInfo = m_acsManagerProxy.get_dynamic_component(getEffectiveClientHandle(), compSpec, markAsDefault);
 			
 			m_usedComponentsMap.put(cInfo.name, cInfo.reference);
-			m_componentDescriptorMap.put(cInfo.name, new ComponentDescriptor(cInfo));
+			storeComponentDescriptor(cInfo);
 		} catch (AcsJmaciErrTypeEx ex) {
 			m_logger.log(Level.FINE, "Failed to create dynamic component", ex);
 			throw new AcsJContainerServicesEx(ex);
@@ -760,6 +863,15 @@ public class ContainerServicesImpl implements ContainerServices
 
 
 
+	/**
+	 * Stores the descriptor of a component obtained from the manager, also in the shared cache.
+	 */
+	private void storeComponentDescriptor(ComponentInfo cInfo) {
+		ComponentDescriptor desc = new ComponentDescriptor(cInfo);
+		m_componentDescriptorMap.put(cInfo.name, desc);
+		componentReferenceCache.putDescriptor(desc);
+	}
+
 	public org.omg.CORBA.Object getReferenceWithCustomClientSideTimeout(org.omg.CORBA.Object originalCorbaRef, double timeoutSeconds) 
 		throws AcsJContainerServicesEx {
 		return acsCorba.wrapForRoundtripTimeout(originalCorbaRef, timeoutSeconds);
@@ -162,6 +162,15 @@ public class ContainerServicesProxy implements ContainerServices
 		return delegate.getComponentNonSticky(curl);
 	}
 
+	/**
+	 * @see alma.acs.container.ContainerServices#getComponentNonSticky(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public <T extends Object> T getComponentNonSticky(String curl, Class<T> corbaInterface) throws AcsJContainerServicesEx {
+		check();
+		return delegate.getComponentNonSticky(curl, corbaInterface);
+	}
+
 	/**
 	 * @see alma.acs.container.ContainerServices#getDefaultComponent(java.lang.String)
 	 */
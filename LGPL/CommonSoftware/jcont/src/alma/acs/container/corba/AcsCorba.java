@@ -61,6 +61,7 @@ import alma.acs.concurrent.DaemonThreadFactory;
 import alma.acs.container.AcsContainer;
 import alma.acs.container.ComponentServantManager;
 import alma.acs.logging.AcsLogger;
+import alma.acs.profiling.orb.AcsORBProfilerImplBase;
 import alma.acs.util.StopWatch;
 import alma.acs.util.UTCUtility;
 
@@ -97,6 +98,11 @@ public class AcsCorba
 
 	private org.omg.CORBA.ORB m_orb;
 
+	/**
+	 * The ORB profiler whose MBean gets unregistered in {@link #doneCorba()}, or <code>null</code>.
+	 */
+	private AcsORBProfilerImplBase m_orbProfiler;
+
 	/**
 	 * POA manager shared among RootPOA, ContainerPOA, component shared parent poa, offshoot poas, *BUT NOT with the component poas*.
 	 */
@@ -241,6 +247,11 @@ public class AcsCorba
 					}
 					AcsORBProfiler profiler = ctor.newInstance(m_logger);
 					((AcsProfilingORB) m_orb).registerAcsORBProfiler(profiler);
+					if (profiler instanceof AcsORBProfilerImplBase) {
+						// live statistics through JMX
+						m_orbProfiler = (AcsORBProfilerImplBase) profiler;
+						m_orbProfiler.registerMBean("Container");
+					}
 					m_logger.finer("Orb profiling set up, using " + orbProfilerClassname);
 				}
 				else {
@@ -645,6 +656,10 @@ public class AcsCorba
 	 * See also problems reported in COMP-2632.
 	 */
 	public void doneCorba() {
+		if (m_orbProfiler != null) {
+			m_orbProfiler.unregisterMBean();
+			m_orbProfiler = null;
+		}
 		if (m_orb != null) {
 			// Loggers cannot be expected to work at this point, thus any printing would have to go to stdout.
 			// For backward compatibility we don't print these messages though, which before ACS 8.0 were dysfunctional logs.
@@ -157,6 +157,14 @@ public class DummyContainerServices extends DummyContainerServicesBase implement
 		throw new AcsJContainerServicesEx();
 	}
 
+	/**
+	 * @see alma.acs.container.ContainerServices#getComponentNonSticky(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public <T extends Object> T getComponentNonSticky(String curl, Class<T> corbaInterface) throws AcsJContainerServicesEx {
+		throw new AcsJContainerServicesEx();
+	}
+
 	/**
 	 * @see alma.acs.container.ContainerServices#getDefaultComponent(java.lang.String)
 	 */
@@ -0,0 +1,237 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.entityutil;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.exolab.castor.xml.ClassDescriptorResolver;
+import org.exolab.castor.xml.MarshalException;
+import org.exolab.castor.xml.Marshaller;
+import org.exolab.castor.xml.Unmarshaller;
+import org.exolab.castor.xml.ValidationException;
+import org.exolab.castor.xml.util.ClassDescriptorResolverImpl;
+
+/**
+ * Marshals and unmarshals Castor binding objects, reusing what can be reused between calls:
+ * <ul>
+ *   <li>The class descriptors, which Castor otherwise looks up (and for non-generated classes, introspects)
+ *       for every new <code>Marshaller</code> or <code>Unmarshaller</code>.
+ *   <li>The <code>Unmarshaller</code>s, kept in a small pool per binding class.
+ *   <li>The character buffers into which the XML is marshalled, so that marshalling large entities
+ *       (tens to hundreds of KB) does not grow a new buffer every time.
+ * </ul>
+ * A Castor <code>Marshaller</code> is bound to its output writer, and is therefore created per call
+ * on a pooled writer, with the shared descriptors.
+ * <p>
+ * Castor validation is off unless requested explicitly or through the property {@link #VALIDATION_PROPERTYNAME}.
+ * The container's own translations between binding objects and <code>XmlEntityStruct</code>s
+ * are trusted internal calls which always bypass validation.
+ * <p>
+ * An instance caches the descriptors of all binding classes it has processed,
+ * therefore the instances should have the same lifetime as the users of these classes.
+ */
+public class CastorSerializationService
+{
+	/**
+	 * Name of the property that enables Castor validation for the calls that do not explicitly bypass it.
+	 * Default is <code>false</code>, which means that no validation is done, as it was always the case.
+	 */
+	public static final String VALIDATION_PROPERTYNAME = "alma.acs.entityutil.castor_validation";
+
+	/**
+	 * Max number of idle unmarshallers kept per binding class, and of idle buffers.
+	 */
+	private static final int MAX_IDLE = 8;
+
+	/**
+	 * Buffers that grew beyond this number of chars are not kept, to not hold the memory of exceptionally large entities.
+	 */
+	private static final int MAX_BUFFER_CHARS = 1024 * 1024;
+
+	private final boolean m_defaultValidation = Boolean.getBoolean(VALIDATION_PROPERTYNAME);
+
+	/**
+	 * Resolves and caches the class descriptors.
+	 * Castor's implementation synchronizes its cache, so that it can be shared by concurrent calls.
+	 */
+	private final ClassDescriptorResolver m_resolver;
+
+	// key=binding class, value=idle unmarshallers for this class
+	private final ConcurrentHashMap<Class<?>, BlockingQueue<Unmarshaller>> m_unmarshallerPools;
+
+	// key=binding class, value=true if the class has a generated descriptor
+	private final ConcurrentHashMap<Class<?>, Boolean> m_generatedDescriptorMap;
+
+	private final BlockingQueue<StringWriter> m_writerPool;
+
+
+	public CastorSerializationService()
+	{
+		m_resolver = new ClassDescriptorResolverImpl();
+		m_unmarshallerPools = new ConcurrentHashMap<Class<?>, BlockingQueue<Unmarshaller>>();
+		m_generatedDescriptorMap = new ConcurrentHashMap<Class<?>, Boolean>();
+		m_writerPool = new ArrayBlockingQueue<StringWriter>(MAX_IDLE);
+	}
+
+
+	/**
+	 * @return <code>true</code> if Castor validation is enabled for calls that do not bypass it,
+	 *         see {@link #VALIDATION_PROPERTYNAME}.
+	 */
+	public boolean isValidationEnabled()
+	{
+		return m_defaultValidation;
+	}
+
+
+	/**
+	 * Marshals a binding object to an XML string.
+	 *
+	 * @param bindingObject  the Castor binding object, must not be <code>null</code>.
+	 * @param bypassValidation  <code>true</code> to not validate even if {@link #isValidationEnabled()} is set,
+	 *                           for trusted internal calls.
+	 */
+	public String marshal(Object bindingObject, boolean bypassValidation)
+		throws IOException, MarshalException, ValidationException
+	{
+		StringWriter wr = borrowWriter();
+		try
+		{
+			Marshaller marsh = new Marshaller(wr);
+			prepareMarshaller(marsh, bypassValidation);
+			marsh.marshal(bindingObject);
+			return wr.toString();
+		}
+		finally
+		{
+			returnWriter(wr);
+		}
+	}
+
+
+	/**
+	 * Gets an empty writer to marshal into, which must be given back using {@link #returnWriter(StringWriter)}.
+	 * The writer keeps the buffer capacity from previous use.
+	 */
+	public StringWriter borrowWriter()
+	{
+		StringWriter wr = m_writerPool.poll();
+		if (wr == null)
+		{
+			wr = new StringWriter(4096);
+		}
+		return wr;
+	}
+
+
+	/**
+	 * Gives back a writer obtained from {@link #borrowWriter()}.
+	 * The writer must not be used any more by the caller.
+	 */
+	public void returnWriter(StringWriter wr)
+	{
+		StringBuffer buffer = wr.getBuffer();
+		if (buffer.capacity() <= MAX_BUFFER_CHARS)
+		{
+			buffer.setLength(0);
+			m_writerPool.offer(wr);
+		}
+	}
+
+
+	/**
+	 * Sets the shared descriptor resolver and the validation flag on a <code>Marshaller</code>
+	 * that was created for a writer from {@link #borrowWriter()}.
+	 */
+	public void prepareMarshaller(Marshaller marsh, boolean bypassValidation)
+	{
+		marsh.setResolver(m_resolver);
+		marsh.setValidation(!bypassValidation && m_defaultValidation);
+	}
+
+
+	/**
+	 * Unmarshals an XML string to an instance of the given binding class,
+	 * preserving whitespace.
+	 *
+	 * @param xml  the XML, must not be <code>null</code>.
+	 * @param bindingClass  the Castor binding class of the root element.
+	 * @param bypassValidation  <code>true</code> to not validate even if {@link #isValidationEnabled()} is set,
+	 *                           for trusted internal calls.
+	 */
+	public <T> T unmarshal(String xml, Class<T> bindingClass, boolean bypassValidation)
+		throws MarshalException, ValidationException
+	{
+		BlockingQueue<Unmarshaller> pool = m_unmarshallerPools.get(bindingClass);
+		if (pool == null)
+		{
+			pool = new ArrayBlockingQueue<Unmarshaller>(MAX_IDLE);
+			BlockingQueue<Unmarshaller> otherPool = m_unmarshallerPools.putIfAbsent(bindingClass, pool);
+			if (otherPool != null)
+			{
+				pool = otherPool;
+			}
+		}
+
+		Unmarshaller unmarsh = pool.poll();
+		if (unmarsh == null)
+		{
+			unmarsh = new Unmarshaller(bindingClass);
+			unmarsh.setResolver(m_resolver);
+			unmarsh.setWhitespacePreserve(true);
+//			unmarsh.setIgnoreExtraAttributes(true);
+//			unmarsh.setIgnoreExtraElements(true);
+		}
+		unmarsh.setValidation(!bypassValidation && m_defaultValidation);
+
+		Object bindingObject = unmarsh.unmarshal(new StringReader(xml));
+
+		// an unmarshaller that failed is not reused
+		pool.offer(unmarsh);
+
+		return bindingClass.cast(bindingObject);
+	}
+
+
+	/**
+	 * Checks if the given class is a Castor generated binding class, i.e. has a generated descriptor
+	 * (unlike arbitrary classes which Castor could handle by introspection).
+	 * The result is cached per class.
+	 */
+	public boolean hasGeneratedDescriptor(Class<?> bindingClass)
+	{
+		Boolean hasDescriptor = m_generatedDescriptorMap.get(bindingClass);
+		if (hasDescriptor == null)
+		{
+			ClassDescriptorResolverImpl clDescRes = new ClassDescriptorResolverImpl();
+			clDescRes.setIntrospection(false);
+			hasDescriptor = Boolean.valueOf(clDescRes.resolve(bindingClass) != null);
+			m_generatedDescriptorMap.put(bindingClass, hasDescriptor);
+		}
+		return hasDescriptor.booleanValue();
+	}
+}
@@ -21,12 +21,9 @@
  */
 package alma.acs.entityutil;
 
-import java.io.StringReader;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.exolab.castor.xml.Unmarshaller;
-
 import alma.entities.commonentity.EntityT;
 import alma.xmlentity.XmlEntityStruct;
 
@@ -53,6 +50,7 @@ public class EntityDeserializer
 
 	private static EntityDeserializer s_entityDeserializer;
 	private EntityTFinder m_finder;
+	private CastorSerializationService m_castorService;
 	
 
 	/**
@@ -81,6 +79,7 @@ public class EntityDeserializer
 	{
 		m_logger = logger;
 		m_finder = new EntityTFinder(m_logger);
+		m_castorService = new CastorSerializationService();
 	}
 
 
@@ -91,11 +90,12 @@ public class EntityDeserializer
 	 * @param entityClass  the binding class of which we want an instance
 	 *                      filled with the xml data.
 	 * @param timestamp  the timestamp to be stored in the entity object, for later serialization.
+	 * @param bypassValidation  <code>true</code> to never validate, see {@link CastorSerializationService#VALIDATION_PROPERTYNAME}.
 	 * @return  the binding class instance (should be casted by the caller).
 	 * @throws EntityException if the binding class instance can't be constructed from the xml. 
 	 *         Note that this exception is only logged at FINER level by this method, so make sure to log it appropriately.
 	 */
-	private Object deserializeEntity(String xmlString, Class entityClass, String timestamp)
+	private Object deserializeEntity(String xmlString, Class entityClass, String timestamp, boolean bypassValidation)
 	throws EntityException
 	{
 		if (xmlString == null) 
@@ -110,12 +110,7 @@ public class EntityDeserializer
 		Object entity;
 		try
 		{
-			Unmarshaller unmarsh = new Unmarshaller(entityClass);
-			unmarsh.setValidation(false);
-			unmarsh.setWhitespacePreserve(true);
-//			unmarsh.setIgnoreExtraAttributes(true);
-//			unmarsh.setIgnoreExtraElements(true);
-			entity = unmarsh.unmarshal(new StringReader(xmlString));
+			entity = m_castorService.unmarshal(xmlString, entityClass, bypassValidation);
 		}
 		catch (Exception e)
 		{
@@ -153,9 +148,21 @@ public class EntityDeserializer
 	 */
 	public Object deserializeEntity(XmlEntityStruct xes, Class entityClass)
 		throws EntityException
+	{
+		return deserializeEntity(xes, entityClass, false);
+	}
+
+
+	/**
+	 * Variant of {@link #deserializeEntity(XmlEntityStruct, Class)} for trusted internal calls,
+	 * which can skip the Castor validation that may be enabled through {@link CastorSerializationService#VALIDATION_PROPERTYNAME}.
+	 * @param bypassValidation  <code>true</code> to never validate.
+	 */
+	public Object deserializeEntity(XmlEntityStruct xes, Class entityClass, boolean bypassValidation)
+		throws EntityException
 	{
 		String xml = xes.xmlString;
 		String timestamp = xes.timeStamp;
-		return deserializeEntity(xml, entityClass, timestamp);
+		return deserializeEntity(xml, entityClass, timestamp, bypassValidation);
 	}
 }
@@ -47,6 +47,8 @@ public class EntitySerializer
 
 	private EntityTFinder m_finder;
 
+	private CastorSerializationService m_castorService;
+
 
 	/**
 	 * Singleton accessor.
@@ -71,6 +73,7 @@ public class EntitySerializer
 		m_logger = logger;
 		m_esf = new DefaultXmlEntityStructFactory();
 		m_finder = new EntityTFinder(m_logger);
+		m_castorService = new CastorSerializationService();
 		setVerbose(false);
 	}
 
@@ -165,18 +168,35 @@ public class EntitySerializer
 	 * @see #serializeEntity(Object, EntityT)
 	 */
 	public String serializeEntityPart(Object entityPart) throws EntityException {
+		return serializeEntityPart(entityPart, false);
+	}
+
+	/**
+	 * Variant of {@link #serializeEntityPart(Object)} for trusted internal calls,
+	 * which can skip the Castor validation that may be enabled through {@link CastorSerializationService#VALIDATION_PROPERTYNAME}.
+	 * @param bypassValidation  <code>true</code> to never validate.
+	 */
+	public String serializeEntityPart(Object entityPart, boolean bypassValidation) throws EntityException {
+		StringWriter wr = m_castorService.borrowWriter();
 		try {
-            StringWriter wr = new StringWriter();
             Marshaller marsh = createMarshaller(wr);
-            marsh.setValidation(false);
+            m_castorService.prepareMarshaller(marsh, bypassValidation);
             marsh.marshal(entityPart);
             return wr.toString();
         } 
 		catch (Exception e) {
 			throw new EntityException("failed to serialize entity part of type '" + entityPart.getClass().getName() + "'.", e);
         }
+		finally {
+			m_castorService.returnWriter(wr);
+		}
 	}
 
+	/**
+	 * Creates the marshaller for the given writer. 
+	 * The writer is reused for later calls, and the marshaller gets the cached class descriptors
+	 * and the validation flag set after this method returns.
+	 */
 	protected Marshaller createMarshaller(StringWriter wr) throws IOException {
 		return new Marshaller(wr);
 	}
@@ -22,6 +22,7 @@
 package alma.acs.entityutil;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import alma.entities.commonentity.EntityT;
@@ -38,6 +39,9 @@ public class EntityTFinder
 {
 	private Logger m_logger;
 	private boolean m_verbose = false;
+	
+	// key=entity class, value=method returning the EntityT child
+	private final ConcurrentHashMap<Class<?>, Method> m_entityTMethodMap = new ConcurrentHashMap<Class<?>, Method>();
 
 	public EntityTFinder(Logger logger)
 	{
@@ -46,7 +50,7 @@ public class EntityTFinder
 
 	/**
 	 * Only finds the method that can return the <code>EntityT</code> object.
-	 * Uses introspection.
+	 * Uses introspection, whose result is remembered per class.
 	 * <p>
 	 * Generally, the users are expected to not call this method, but use 
 	 * {@link #extractEntityT(Object)} instead.
@@ -58,7 +62,12 @@ public class EntityTFinder
 	public Method getEntityTMethod(Class entityClass)
 			throws EntityException
 	{
-		Method entityTMethod = null;
+		Method entityTMethod = m_entityTMethodMap.get(entityClass);
+		if (entityTMethod != null)
+		{
+			return entityTMethod;
+		}
+		
 		try
 		{
 			Method[] methods = entityClass.getDeclaredMethods();
@@ -89,6 +98,7 @@ public class EntityTFinder
 			m_logger.finer("entity method '" + entityTMethod.getName() + "' found in class '" + entityClass.getName() + "'.");
 		}
 		
+		m_entityTMethodMap.put(entityClass, entityTMethod);
 		return entityTMethod;
 	}
 	
@@ -25,7 +25,9 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import alma.acs.container.CleaningThreadFactoryTest;
+import alma.acs.container.ComponentActivationEngineTest;
 import alma.acs.container.ComponentMapTest;
+import alma.acs.container.ComponentReferenceCacheTest;
 import alma.acs.container.archive.UIDLibraryTest;
 import alma.acs.container.corba.AcsCorbaTest;
 import alma.acs.container.corba.CorbaNullFinderTest;
@@ -49,6 +51,8 @@ public class SelfcontainedJUnitTestsJCONT
 		//$JUnit-BEGIN$
         suite.addTestSuite(CleaningThreadFactoryTest.class);
         suite.addTestSuite(ComponentMapTest.class);
+        suite.addTestSuite(ComponentActivationEngineTest.class);
+        suite.addTestSuite(ComponentReferenceCacheTest.class);
 		suite.addTestSuite(EntityRefFinderTest.class);
 		suite.addTestSuite(EntitySerializerTest.class);
 		suite.addTestSuite(AcsCorbaTest.class);
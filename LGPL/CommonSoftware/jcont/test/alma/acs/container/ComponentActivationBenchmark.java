@@ -0,0 +1,104 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.container;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.omg.PortableServer.Servant;
+
+import si.ijs.maci.ComponentInfo;
+
+import alma.acs.container.ComponentActivationEngineTest.DummyOperations;
+import alma.acs.container.ComponentActivationEngineTest.DummyPOATie;
+import alma.acs.util.StopWatch;
+
+/**
+ * Measures the total time to "start" a container with many components,
+ * sequentially as the manager activates them and with the {@link ComponentActivationEngine}.
+ * The activation of a component is simulated by the POA tie instantiation and a given time
+ * for the component's <code>initialize</code> (e.g. CDB access).
+ * With the engine, the other components use one of the first 10 components,
+ * so that they are held back until the component they use is activated.
+ * <p>
+ * Only for manual runs:
+ * <code>acsStartJava alma.acs.container.ComponentActivationBenchmark [numComponents=500] [initMillis=20] [threads=10]</code>
+ */
+public class ComponentActivationBenchmark
+{
+	public static void main(String[] args) throws Exception {
+		int numComponents = (args.length > 0 ? Integer.parseInt(args[0]) : 500);
+		final long initMillis = (args.length > 1 ? Long.parseLong(args[1]) : 20);
+		int numThreads = (args.length > 2 ? Integer.parseInt(args[2]) : ComponentActivationEngine.DEFAULT_ACTIVATION_THREADS);
+		Logger logger = Logger.getLogger(ComponentActivationBenchmark.class.getName());
+
+		final DummyOperations impl = new DummyOperations() {
+			public void doSomething() {
+			}
+		};
+
+		// sequential, with reflection for every component
+		StopWatch sw = new StopWatch();
+		for (int i = 0; i < numComponents; i++) {
+			Constructor<? extends Servant> ctor = DummyPOATie.class.getConstructor(new Class[] {DummyOperations.class});
+			ctor.newInstance(impl);
+			Thread.sleep(initMillis);
+		}
+		System.out.println("Sequential activation of " + numComponents + " components: " + sw.getLapTimeMillis() + " ms");
+
+		// with the activation engine; the first 10 components are used by the others
+		int numUsed = Math.min(10, numComponents);
+		ComponentInfo[] dependencies = new ComponentInfo[numComponents];
+		for (int i = 0; i < numComponents; i++) {
+			int[] clients = new int[0];
+			if (i < numUsed) {
+				clients = new int[(numComponents - 1 - i) / numUsed];
+				for (int j = 0; j < clients.length; j++) {
+					clients[j] = i + (j + 1) * numUsed + 1;
+				}
+			}
+			dependencies[i] = ComponentActivationEngineTest.componentInfo("COMP_" + i, i + 1, clients);
+		}
+		ComponentActivationEngine engine = new ComponentActivationEngine(logger, Executors.defaultThreadFactory(), numThreads);
+		engine.updateDependencies(dependencies);
+		sw = new StopWatch();
+		for (int i = 0; i < numComponents; i++) {
+			engine.submit("COMP_" + i, new Runnable() {
+				public void run() {
+					try {
+						Constructor<? extends Servant> ctor = ComponentActivationEngine.getPOATieConstructor(DummyPOATie.class, DummyOperations.class);
+						ctor.newInstance(impl);
+						Thread.sleep(initMillis);
+					} catch (Exception ex) {
+						ex.printStackTrace();
+					}
+				}
+			});
+		}
+		engine.shutdown();
+		engine.awaitTermination(1, TimeUnit.HOURS);
+		System.out.println("Activation of " + numComponents + " components with " + numThreads + " threads: " + sw.getLapTimeMillis() + " ms");
+		System.out.println(engine.getStatistics());
+	}
+}
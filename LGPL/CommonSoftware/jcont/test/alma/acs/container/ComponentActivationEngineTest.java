@@ -0,0 +1,327 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.container;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import org.omg.PortableServer.POA;
+import org.omg.PortableServer.Servant;
+
+import si.ijs.maci.ComponentInfo;
+
+/**
+ * Tests {@link ComponentActivationEngine} without activating real components.
+ */
+public class ComponentActivationEngineTest extends TestCase {
+
+	/**
+	 * Handle type masks as used by the manager.
+	 */
+	private static final int COMPONENT_MASK = 0x01000000;
+	private static final int CONTAINER_MASK = 0x04000000;
+
+	private Logger logger;
+
+	/**
+	 * Mimics an IDL-generated operations interface.
+	 */
+	public static interface DummyOperations {
+		void doSomething();
+	}
+
+	/**
+	 * Mimics an IDL-generated POA tie class.
+	 */
+	public static class DummyPOATie extends Servant {
+		final DummyOperations delegate;
+		public DummyPOATie(DummyOperations delegate) {
+			this.delegate = delegate;
+		}
+		public DummyPOATie(DummyOperations delegate, POA poa) {
+			this.delegate = delegate;
+		}
+		public String[] _all_interfaces(POA poa, byte[] objectId) {
+			return new String[0];
+		}
+	}
+
+	protected void setUp() throws Exception {
+		logger = Logger.getLogger(getName());
+	}
+
+	/**
+	 * Creates the manager's info about a component of the container "TestContainer".
+	 * @param name  component name
+	 * @param handle  component number, without the component mask
+	 * @param clients  numbers of the components using this component
+	 */
+	static ComponentInfo componentInfo(String name, int handle, int... clients) {
+		int[] clientHandles = new int[clients.length];
+		for (int i = 0; i < clients.length; i++) {
+			clientHandles[i] = clients[i] | COMPONENT_MASK;
+		}
+		return new ComponentInfo("IDL:alma/Dummy:1.0", "Dummy", null, name, clientHandles, 
+				1 | CONTAINER_MASK, "TestContainer", handle | COMPONENT_MASK, 0, new String[0]);
+	}
+
+	/**
+	 * Submits the given components to an engine with one thread, while the thread is busy.
+	 * @return the names in the order of activation
+	 */
+	private List<String> activate(ComponentInfo[] dependencies, String... names) throws Exception {
+		ComponentActivationEngine engine = new ComponentActivationEngine(logger, Executors.defaultThreadFactory(), 1);
+		engine.updateDependencies(dependencies);
+
+		// block the only thread so that all further requests get queued
+		final CountDownLatch blocker = new CountDownLatch(1);
+		engine.submit("BLOCKER", new Runnable() {
+			public void run() {
+				try {
+					blocker.await();
+				} catch (InterruptedException ex) {
+					// end
+				}
+			}
+		});
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		for (final String name : names) {
+			engine.submit(name, new Runnable() {
+				public void run() {
+					order.add(name);
+				}
+			});
+		}
+		blocker.countDown();
+		engine.shutdown();
+		assertTrue(engine.awaitTermination(10, TimeUnit.SECONDS));
+		assertTrue(engine.getStatistics().contains("completed: " + (names.length + 1)));
+		return order;
+	}
+
+	/**
+	 * B uses A: A is activated first, although B was requested first.
+	 */
+	public void testDependencyActivatedFirst() throws Exception {
+		List<String> order = activate(new ComponentInfo[] {componentInfo("A", 1, 2), componentInfo("B", 2)}, "B", "A");
+		assertEquals(Arrays.asList("A", "B"), order);
+	}
+
+	/**
+	 * Queued activations of known components run in the topological order,
+	 * before the unknown ones which run in order of arrival.
+	 */
+	public void testActivationOrder() throws Exception {
+		// C5 uses C3, which uses C4
+		ComponentInfo[] dependencies = new ComponentInfo[] {
+				componentInfo("C5", 1), componentInfo("C3", 2, 1), componentInfo("C4", 3, 2)};
+		List<String> order = activate(dependencies, "C7", "C5", "C3", "C6", "C4");
+		assertEquals(Arrays.asList("C4", "C3", "C5", "C7", "C6"), order);
+
+		// no dependencies: order of arrival
+		order = activate(new ComponentInfo[0], "C7", "C3", "C5");
+		assertEquals(Arrays.asList("C7", "C3", "C5"), order);
+	}
+
+	/**
+	 * While a component is being activated, the components using it are held back, even if threads are free.
+	 * Other components are activated meanwhile.
+	 */
+	public void testDependentHeldBack() throws Exception {
+		ComponentActivationEngine engine = new ComponentActivationEngine(logger, Executors.defaultThreadFactory(), 4);
+		// B and C use A, D uses B
+		engine.updateDependencies(new ComponentInfo[] {
+				componentInfo("A", 1, 2, 3), componentInfo("B", 2, 4), componentInfo("C", 3), componentInfo("D", 4), componentInfo("E", 5)});
+
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch releaseA = new CountDownLatch(1);
+		final CountDownLatch eDone = new CountDownLatch(1);
+		engine.submit("A", new Runnable() {
+			public void run() {
+				try {
+					releaseA.await();
+				} catch (InterruptedException ex) {
+					// end
+				}
+				order.add("A");
+			}
+		});
+		for (final String name : new String[] {"B", "D", "C", "E"}) {
+			engine.submit(name, new Runnable() {
+				public void run() {
+					order.add(name);
+					if (name.equals("E")) {
+						eDone.countDown();
+					}
+				}
+			});
+		}
+		assertTrue(eDone.await(10, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		assertEquals(Arrays.asList("E"), order);
+		assertTrue(engine.getStatistics().contains("held back: 3"));
+
+		releaseA.countDown();
+		engine.shutdown();
+		assertTrue(engine.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(5, order.size());
+		assertTrue(order.indexOf("A") < order.indexOf("B"));
+		assertTrue(order.indexOf("A") < order.indexOf("C"));
+		assertTrue(order.indexOf("B") < order.indexOf("D"));
+	}
+
+	/**
+	 * Components which are not being activated never hold back a request.
+	 * A request is held back at most for the hold timeout, also if the components depend on each other.
+	 */
+	public void testNoDeadlock() throws Exception {
+		ComponentActivationEngine engine = new ComponentActivationEngine(logger, Executors.defaultThreadFactory(), 4, 300);
+		// A and B use each other, C uses A
+		engine.updateDependencies(new ComponentInfo[] {
+				componentInfo("A", 1, 2, 3), componentInfo("B", 2, 1), componentInfo("C", 3)});
+
+		// A is not being activated
+		final CountDownLatch cDone = new CountDownLatch(1);
+		engine.submit("C", new Runnable() {
+			public void run() {
+				cDone.countDown();
+			}
+		});
+		assertTrue(cDone.await(100, TimeUnit.MILLISECONDS));
+
+		// A and B each wait for the other one, e.g. in initialize; only one of the dependencies is taken into account
+		final CountDownLatch aStarted = new CountDownLatch(1);
+		final CountDownLatch bStarted = new CountDownLatch(1);
+		engine.submit("A", new Runnable() {
+			public void run() {
+				aStarted.countDown();
+				try {
+					bStarted.await();
+				} catch (InterruptedException ex) {
+					// end
+				}
+			}
+		});
+		engine.submit("B", new Runnable() {
+			public void run() {
+				bStarted.countDown();
+				try {
+					aStarted.await();
+				} catch (InterruptedException ex) {
+					// end
+				}
+			}
+		});
+		assertTrue(aStarted.await(1, TimeUnit.SECONDS));
+		assertTrue(bStarted.await(1, TimeUnit.SECONDS));
+
+		// C is held back by A only until the timeout
+		final CountDownLatch releaseA = new CountDownLatch(1);
+		final CountDownLatch cDoneAgain = new CountDownLatch(1);
+		engine.submit("A", new Runnable() {
+			public void run() {
+				try {
+					releaseA.await();
+				} catch (InterruptedException ex) {
+					// end
+				}
+			}
+		});
+		engine.submit("C", new Runnable() {
+			public void run() {
+				cDoneAgain.countDown();
+			}
+		});
+		assertFalse(cDoneAgain.await(150, TimeUnit.MILLISECONDS));
+		assertTrue(cDoneAgain.await(1, TimeUnit.SECONDS));
+
+		releaseA.countDown();
+		engine.shutdown();
+		assertTrue(engine.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Activations run in parallel up to the given number of threads.
+	 */
+	public void testParallelActivation() throws Exception {
+		final int numThreads = 4;
+		ComponentActivationEngine engine = new ComponentActivationEngine(logger, Executors.defaultThreadFactory(), numThreads);
+		final CountDownLatch allStarted = new CountDownLatch(numThreads);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+		final AtomicInteger concurrent = new AtomicInteger();
+		for (int i = 0; i < 3 * numThreads; i++) {
+			engine.submit("COMP_" + i, new Runnable() {
+				public void run() {
+					int c = concurrent.incrementAndGet();
+					synchronized (maxConcurrent) {
+						maxConcurrent.set(Math.max(maxConcurrent.get(), c));
+					}
+					allStarted.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException ex) {
+						// end
+					}
+					concurrent.decrementAndGet();
+				}
+			});
+		}
+		assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+		release.countDown();
+		engine.shutdown();
+		assertTrue(engine.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(numThreads, maxConcurrent.get());
+	}
+
+	/**
+	 * The POA tie constructor is found and cached.
+	 */
+	public void testPOATieConstructor() throws Exception {
+		Constructor<? extends Servant> ctor = ComponentActivationEngine.getPOATieConstructor(DummyPOATie.class, DummyOperations.class);
+		assertEquals(1, ctor.getParameterTypes().length);
+		assertSame(ctor, ComponentActivationEngine.getPOATieConstructor(DummyPOATie.class, DummyOperations.class));
+		DummyOperations delegate = new DummyOperations() {
+			public void doSomething() {
+			}
+		};
+		DummyPOATie tie = (DummyPOATie) ctor.newInstance(delegate);
+		assertSame(delegate, tie.delegate);
+
+		try {
+			ComponentActivationEngine.getPOATieConstructor(DummyPOATie.class, Runnable.class);
+			fail("NoSuchMethodException expected");
+		} catch (NoSuchMethodException ex) {
+			// expected
+		}
+	}
+}
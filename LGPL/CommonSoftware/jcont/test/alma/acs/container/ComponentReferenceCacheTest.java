@@ -0,0 +1,265 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2013
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.container;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import org.omg.CORBA.LocalObject;
+
+import alma.JavaContainerError.wrappers.AcsJContainerServicesEx;
+
+/**
+ * Tests {@link ComponentReferenceCache} against a local stand-in for the manager, without ORB.
+ */
+public class ComponentReferenceCacheTest extends TestCase {
+
+	/**
+	 * Mimics an IDL-generated interface.
+	 */
+	public static interface Peer extends org.omg.CORBA.Object {
+		String name();
+	}
+
+	/**
+	 * Mimics an IDL-generated helper class.
+	 */
+	public static class PeerHelper {
+		static final AtomicInteger narrowCount = new AtomicInteger();
+		public static Peer narrow(org.omg.CORBA.Object obj) {
+			narrowCount.incrementAndGet();
+			if (!(obj instanceof Peer)) {
+				throw new org.omg.CORBA.BAD_PARAM();
+			}
+			return (Peer) obj;
+		}
+	}
+
+	/**
+	 * A component reference whose liveness can be switched off.
+	 */
+	private static class PeerReference extends LocalObject implements Peer {
+		private final String name;
+		volatile boolean alive = true;
+		PeerReference(String name) {
+			this.name = name;
+		}
+		public String name() {
+			return name;
+		}
+		@Override
+		public boolean _non_existent() {
+			return !alive;
+		}
+	}
+
+	/**
+	 * Stand-in for the manager: hands out a new reference for each call, for active components only.
+	 * Calls can be blocked to let lookups overlap.
+	 */
+	private static class ManagerStandIn implements ComponentReferenceCache.ReferenceLoader {
+		final AtomicInteger calls = new AtomicInteger();
+		final List<String> activeComponents = Collections.synchronizedList(new ArrayList<String>());
+		volatile CountDownLatch callEntered = new CountDownLatch(0);
+		volatile CountDownLatch callGate = new CountDownLatch(0);
+
+		public org.omg.CORBA.Object load(String curl) throws AcsJContainerServicesEx {
+			calls.incrementAndGet();
+			callEntered.countDown();
+			try {
+				callGate.await();
+			} catch (InterruptedException ex) {
+				throw new AcsJContainerServicesEx(ex);
+			}
+			if (!activeComponents.contains(curl)) {
+				AcsJContainerServicesEx ex = new AcsJContainerServicesEx();
+				ex.setContextInfo("component " + curl + " is not active");
+				throw ex;
+			}
+			return new PeerReference(curl);
+		}
+	}
+
+	private Logger logger;
+	private ManagerStandIn manager;
+
+	protected void setUp() throws Exception {
+		logger = Logger.getLogger(getName());
+		manager = new ManagerStandIn();
+		manager.activeComponents.add("PEER_1");
+		manager.activeComponents.add("PEER_2");
+		PeerHelper.narrowCount.set(0);
+	}
+
+	public void testRepeatedLookups() throws Exception {
+		ComponentReferenceCache cache = new ComponentReferenceCache(logger, 0);
+		org.omg.CORBA.Object ref = cache.get("PEER_1", org.omg.CORBA.Object.class, manager);
+		for (int i = 0; i < 100; i++) {
+			assertSame(ref, cache.get("PEER_1", org.omg.CORBA.Object.class, manager));
+		}
+		assertNotSame(ref, cache.get("PEER_2", org.omg.CORBA.Object.class, manager));
+		assertEquals(2, manager.calls.get());
+		assertEquals(2, cache.getLoadCount());
+		assertEquals(100, cache.getHitCount());
+	}
+
+	/**
+	 * The plain reference is narrowed only once, and shared with the lookups without interface.
+	 */
+	public void testNarrowedLookups() throws Exception {
+		ComponentReferenceCache cache = new ComponentReferenceCache(logger, 0);
+		Peer peer = cache.get("PEER_1", Peer.class, manager);
+		assertEquals("PEER_1", peer.name());
+		for (int i = 0; i < 10; i++) {
+			assertSame(peer, cache.get("PEER_1", Peer.class, manager));
+		}
+		assertSame(peer, cache.get("PEER_1", org.omg.CORBA.Object.class, manager));
+		assertEquals(1, manager.calls.get());
+		assertEquals(1, PeerHelper.narrowCount.get());
+	}
+
+	public void testNarrowingFailures() throws Exception {
+		ComponentReferenceCache cache = new ComponentReferenceCache(logger, 0);
+		try {
+			// no helper class for this interface
+			cache.get("PEER_1", Peer2.class, manager);
+			fail("AcsJContainerServicesEx expected");
+		} catch (AcsJContainerServicesEx ex) {
+			// expected
+		}
+		// the plain reference is cached nonetheless
+		cache.get("PEER_1", org.omg.CORBA.Object.class, manager);
+		assertEquals(1, manager.calls.get());
+	}
+
+	public static interface Peer2 extends org.omg.CORBA.Object {
+	}
+
+	/**
+	 * Failed lookups are not cached.
+	 */
+	public void testFailedLookups() throws Exception {
+		ComponentReferenceCache cache = new ComponentReferenceCache(logger, 0);
+		try {
+			cache.get("PEER_3", Peer.class, manager);
+			fail("AcsJContainerServicesEx expected");
+		} catch (AcsJContainerServicesEx ex) {
+			assertEquals("component PEER_3 is not active", ex.getContextInfo());
+		}
+		manager.activeComponents.add("PEER_3");
+		assertEquals("PEER_3", cache.get("PEER_3", Peer.class, manager).name());
+		assertEquals(2, manager.calls.get());
+	}
+
+	/**
+	 * Threads that look up the same component while the manager call is under way wait for its result.
+	 */
+	public void testConcurrentLookups() throws Exception {
+		final ComponentReferenceCache cache = new ComponentReferenceCache(logger, 0);
+		final int numThreads = 20;
+		manager.callEntered = new CountDownLatch(1);
+		manager.callGate = new CountDownLatch(1);
+		final Peer[] results = new Peer[numThreads];
+		final CountDownLatch done = new CountDownLatch(numThreads);
+		for (int i = 0; i < numThreads; i++) {
+			final int index = i;
+			new Thread("Lookup" + i) {
+				public void run() {
+					try {
+						results[index] = cache.get("PEER_1", Peer.class, manager);
+					} catch (AcsJContainerServicesEx ex) {
+						ex.printStackTrace();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		assertTrue(manager.callEntered.await(10, TimeUnit.SECONDS));
+		// give the other threads time to join the lookup
+		Thread.sleep(200);
+		manager.callGate.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		assertEquals(1, manager.calls.get());
+		for (int i = 0; i < numThreads; i++) {
+			assertSame(results[0], results[i]);
+		}
+		assertEquals(numThreads - 1, cache.getJoinedLookupCount() + cache.getHitCount());
+		assertEquals(1, PeerHelper.narrowCount.get());
+	}
+
+	/**
+	 * After the manager reported the component as unavailable, the next lookup gets a new reference.
+	 */
+	public void testInvalidation() throws Exception {
+		ComponentReferenceCache cache = new ComponentReferenceCache(logger, 0);
+		Peer peer1 = cache.get("PEER_1", Peer.class, manager);
+		Peer peer2 = cache.get("PEER_2", Peer.class, manager);
+		cache.invalidate(Arrays.asList("PEER_1", "UNKNOWN"));
+		assertEquals(1, cache.getInvalidationCount());
+
+		Peer peer1New = cache.get("PEER_1", Peer.class, manager);
+		assertNotSame(peer1, peer1New);
+		assertSame(peer1New, cache.get("PEER_1", org.omg.CORBA.Object.class, manager));
+		assertSame(peer2, cache.get("PEER_2", Peer.class, manager));
+		assertEquals(3, manager.calls.get());
+	}
+
+	/**
+	 * A reference that fails the liveness check is replaced, or the lookup fails if the component is gone.
+	 */
+	public void testLivenessCheck() throws Exception {
+		ComponentReferenceCache cache = new ComponentReferenceCache(logger, 1);
+		PeerReference peer = (PeerReference) cache.get("PEER_1", Peer.class, manager);
+		Thread.sleep(10);
+		assertSame(peer, cache.get("PEER_1", Peer.class, manager));
+		assertEquals(0, cache.getLivenessFailureCount());
+
+		// restarted component
+		peer.alive = false;
+		Thread.sleep(10);
+		PeerReference peerNew = (PeerReference) cache.get("PEER_1", Peer.class, manager);
+		assertNotSame(peer, peerNew);
+		assertEquals(1, cache.getLivenessFailureCount());
+		assertEquals(2, manager.calls.get());
+
+		// deactivated component
+		peerNew.alive = false;
+		manager.activeComponents.remove("PEER_1");
+		Thread.sleep(10);
+		try {
+			cache.get("PEER_1", Peer.class, manager);
+			fail("AcsJContainerServicesEx expected");
+		} catch (AcsJContainerServicesEx ex) {
+			// expected
+		}
+	}
+}
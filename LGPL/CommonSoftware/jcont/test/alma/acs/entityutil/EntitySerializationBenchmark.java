@@ -0,0 +1,147 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.entityutil;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.logging.Logger;
+
+import org.exolab.castor.xml.Marshaller;
+import org.exolab.castor.xml.Unmarshaller;
+
+import alma.xmlentity.XmlEntityStruct;
+import alma.xmljbind.test.obsproject.ObsProject;
+import alma.xmljbind.test.obsproject.ObsUnitSetTChoice;
+import alma.xmljbind.test.obsproposal.ObsProposal;
+import alma.xmljbind.test.schedblock.SchedBlockRefT;
+
+/**
+ * Measures the throughput of {@link EntitySerializer} and {@link EntityDeserializer}
+ * compared with a new Castor marshaller / unmarshaller and writer per call (as before the {@link CastorSerializationService}),
+ * for entities of about 10 KB and 100 KB:
+ * <ul>
+ *   <li><code>ObsProposal</code> with a large text element (few nodes, large strings),
+ *   <li><code>ObsProject</code> with many SchedBlock references (many small nodes).
+ * </ul>
+ * Only for manual runs, e.g. <code>acsStartJava alma.acs.entityutil.EntitySerializationBenchmark 2000</code>.
+ */
+public class EntitySerializationBenchmark
+{
+	private static ObsProposal createObsProposal(int size) {
+		ObsProposal obsProp = new TestEntityFactory().getObsProposal();
+		StringBuilder sb = new StringBuilder(size);
+		while (sb.length() < size) {
+			sb.append("peak performance enduring a 24-7-365 schedule. ");
+		}
+		obsProp.setScientificJustification(sb.toString());
+		return obsProp;
+	}
+
+	private static ObsProject createObsProject(int size) {
+		ObsProject obsProj = new TestEntityFactory().getObsProject();
+		ObsUnitSetTChoice choice = obsProj.getObsProgram().getObsPlan().getObsUnitSetTChoice();
+		// about 80 chars per reference
+		for (int i = 0; i < size / 80; i++) {
+			SchedBlockRefT ref = new SchedBlockRefT();
+			ref.setEntityId("uid://X1230000000000000/X" + Integer.toHexString(0x10000000 + i));
+			choice.addSchedBlockRef(ref);
+		}
+		return obsProj;
+	}
+
+	private static String legacyMarshal(Object entity) throws Exception {
+		StringWriter wr = new StringWriter();
+		Marshaller marsh = new Marshaller(wr);
+		marsh.setValidation(false);
+		marsh.marshal(entity);
+		return wr.toString();
+	}
+
+	private static Object legacyUnmarshal(String xml, Class<?> entityClass) throws Exception {
+		Unmarshaller unmarsh = new Unmarshaller(entityClass);
+		unmarsh.setValidation(false);
+		unmarsh.setWhitespacePreserve(true);
+		return unmarsh.unmarshal(new StringReader(xml));
+	}
+
+	private static long sink;
+
+	/**
+	 * @return MB of XML per second for {legacy marshal, marshal, legacy unmarshal, unmarshal}
+	 */
+	private static double[] run(Object entity, int calls) throws Exception {
+		EntitySerializer serializer = EntitySerializer.getEntitySerializer(null);
+		EntityDeserializer deserializer = EntityDeserializer.getEntityDeserializer(null);
+		XmlEntityStruct entStruct = serializer.serializeEntity(entity);
+		double mb = entStruct.xmlString.length() * (double) calls / (1024 * 1024);
+		double[] result = new double[4];
+
+		long start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			sink += legacyMarshal(entity).length();
+		}
+		result[0] = mb / ((System.nanoTime() - start) / 1e9);
+
+		start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			sink += serializer.serializeEntity(entity).xmlString.length();
+		}
+		result[1] = mb / ((System.nanoTime() - start) / 1e9);
+
+		start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			sink += legacyUnmarshal(entStruct.xmlString, entity.getClass()).hashCode();
+		}
+		result[2] = mb / ((System.nanoTime() - start) / 1e9);
+
+		start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			sink += deserializer.deserializeEntity(entStruct, entity.getClass(), true).hashCode();
+		}
+		result[3] = mb / ((System.nanoTime() - start) / 1e9);
+
+		return result;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int calls = (args.length > 0 ? Integer.parseInt(args[0]) : 2000);
+		Logger logger = Logger.getLogger("EntitySerializationBenchmark");
+		EntitySerializer.getEntitySerializer(logger);
+		EntityDeserializer.getEntityDeserializer(logger);
+
+		int[] sizes = { 10 * 1024, 100 * 1024 };
+		for (int size : sizes) {
+			Object[] entities = { createObsProposal(size), createObsProject(size) };
+			int sizeCalls = calls * 10 * 1024 / size;
+			for (Object entity : entities) {
+				// warm-up, then measure
+				double[] result = null;
+				for (int round = 0; round < 3; round++) {
+					result = run(entity, sizeCalls);
+				}
+				System.out.println(String.format("%-12s %3d KB: marshal %6.1f -> %6.1f MB/s, unmarshal %6.1f -> %6.1f MB/s",
+						entity.getClass().getSimpleName(), size / 1024, result[0], result[1], result[2], result[3]));
+			}
+		}
+		System.out.println("(" + calls + " calls each for 10 KB, proportionally fewer for larger entities; " + sink + ")");
+	}
+}
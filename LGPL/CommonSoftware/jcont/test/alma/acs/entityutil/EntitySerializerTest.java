@@ -21,12 +21,19 @@
  */
 package alma.acs.entityutil;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import junit.framework.TestCase;
 
 import alma.entities.commonentity.EntityT;
 import alma.xmlentity.XmlEntityStruct;
+import alma.xmljbind.test.obsproject.ObsProject;
 import alma.xmljbind.test.obsproposal.ObsProposal;
 
 /**
@@ -36,6 +43,7 @@ import alma.xmljbind.test.obsproposal.ObsProposal;
 public class EntitySerializerTest extends TestCase
 {
 	private EntitySerializer m_serializer;
+	private EntityDeserializer m_deserializer;
 	private TestEntityFactory m_entityFactory;
 	
 	/**
@@ -47,6 +55,7 @@ public class EntitySerializerTest extends TestCase
 	{
 		super.setUp();
 		m_serializer = EntitySerializer.getEntitySerializer(Logger.getLogger("EntitySerializerTest"));
+		m_deserializer = EntityDeserializer.getEntityDeserializer(Logger.getLogger("EntitySerializerTest"));
 		m_entityFactory = new TestEntityFactory();
 	}
 
@@ -88,4 +97,81 @@ public class EntitySerializerTest extends TestCase
 		
 		System.out.println(obsPropXml);
 	}
+
+
+	/**
+	 * Serializing different entities alternately must not mix up the reused buffers,
+	 * and deserializing with the pooled unmarshallers must give back equal entities.
+	 */
+	public void testRoundTrip() throws EntityException
+	{
+		ObsProposal obsProp = m_entityFactory.getObsProposal();
+		ObsProject obsProj = m_entityFactory.getObsProject();
+		
+		XmlEntityStruct propStruct = m_serializer.serializeEntity(obsProp);
+		XmlEntityStruct projStruct = m_serializer.serializeEntity(obsProj);
+		assertEquals(propStruct.xmlString, m_serializer.serializeEntity(obsProp).xmlString);
+		assertFalse(propStruct.xmlString.equals(projStruct.xmlString));
+		
+		// the first round trip may add the (empty) timestamp, later ones must not change anything
+		for (int i = 0; i < 3; i++)
+		{
+			ObsProposal obsProp2 = (ObsProposal) m_deserializer.deserializeEntity(propStruct, ObsProposal.class);
+			XmlEntityStruct propStruct2 = m_serializer.serializeEntity(obsProp2);
+			assertEquals(obsProp.getObsProposalEntity().getEntityId(), obsProp2.getObsProposalEntity().getEntityId());
+			if (i > 0) {
+				assertEquals(propStruct.xmlString, propStruct2.xmlString);
+			}
+			propStruct = propStruct2;
+			
+			ObsProject obsProj2 = (ObsProject) m_deserializer.deserializeEntity(projStruct, ObsProject.class, true);
+			XmlEntityStruct projStruct2 = m_serializer.serializeEntity(obsProj2);
+			assertEquals(obsProj.getObsProposalRef().getEntityId(), obsProj2.getObsProposalRef().getEntityId());
+			if (i > 0) {
+				assertEquals(projStruct.xmlString, projStruct2.xmlString);
+			}
+			projStruct = projStruct2;
+		}
+	}
+
+
+	public void testConcurrentSerialization() throws Exception
+	{
+		final ObsProposal obsProp = m_entityFactory.getObsProposal();
+		final ObsProject obsProj = m_entityFactory.getObsProject();
+		final String propXml = m_serializer.serializeEntity(obsProp).xmlString;
+		final String projXml = m_serializer.serializeEntity(obsProj).xmlString;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++)
+			{
+				results.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						for (int i = 0; i < 50; i++)
+						{
+							if (!propXml.equals(m_serializer.serializeEntity(obsProp).xmlString) ||
+								!projXml.equals(m_serializer.serializeEntityPart(obsProj, true)))
+							{
+								return Boolean.FALSE;
+							}
+							XmlEntityStruct propStruct = m_serializer.serializeEntity(obsProp);
+							m_deserializer.deserializeEntity(propStruct, ObsProposal.class);
+						}
+						return Boolean.TRUE;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results)
+			{
+				assertTrue(result.get().booleanValue());
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
 }
@@ -0,0 +1,215 @@
+/*
+ *    ALMA - Atacama Large Millimiter Array
+ *    (c) European Southern Observatory, 2002
+ *    Copyright by ESO (in the framework of the ALMA collaboration),
+ *    All rights reserved
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston,
+ *    MA 02111-1307  USA
+ */
+package alma.acs.component.dynwrapper;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alma.ACS.ComponentStates;
+import alma.JContExmplErrTypeTest.XmlComponentErrorEx;
+import alma.acs.logging.ClientLogManager;
+import alma.demo.ObsProjectTree;
+import alma.demo.ObsProjectTreeJ;
+import alma.demo.SchedBlockHolder;
+import alma.demo.XmlComponentJ;
+import alma.demo.XmlComponentOperations;
+import alma.demo.XmlOffshoot;
+import alma.demo.XmlOffshootJ;
+import alma.xmlentity.XmlEntityStruct;
+import alma.xmlentity.XmlEntityStructHolder;
+import alma.xmljbind.test.obsproposal.ObsProposal;
+import alma.xmljbind.test.obsproposal.ObsProposalEntityT;
+import alma.xmljbind.test.schedblock.SchedBlock;
+
+/**
+ * Measures the time per call of <code>xmlInOutMethod</code> through the dynwrapper proxies,
+ * with an <code>ObsProposal</code> entity of about 10 KB and 100 KB as in-parameter:
+ * <ul>
+ *   <li>client side (entity object marshalled to an <code>XmlEntityStruct</code>),
+ *       without and with the cache of marshalled XML ({@link CastorMarshalMapper#XML_CACHE_SIZE_PROPERTYNAME}),
+ *   <li>server side (<code>XmlEntityStruct</code> unmarshalled to the entity object).
+ * </ul>
+ * No CORBA or container is involved.
+ * <p>
+ * Only for manual runs, e.g. <code>acsStartJava alma.acs.component.dynwrapper.DynWrapperBenchmark 2000</code>.
+ */
+public class DynWrapperBenchmark
+{
+	/**
+	 * Replaces the CORBA stub of the client side.
+	 */
+	private static class CorbaStub implements XmlComponentOperations
+	{
+		public ComponentStates componentState() {
+			return ComponentStates.COMPSTATE_OPERATIONAL;
+		}
+		public String name() {
+			return "benchmark";
+		}
+		public int dumbMethod(String somevalue) {
+			return 0;
+		}
+		public XmlEntityStruct createObsProposal() {
+			return null;
+		}
+		public XmlEntityStruct getBestSchedBlock() {
+			return null;
+		}
+		public XmlEntityStruct[] getAllSchedBlocks() {
+			return null;
+		}
+		public void addNewSchedBlocks(XmlEntityStruct[] newSchedBlocks) {
+		}
+		public void xmlInOutMethod(XmlEntityStruct opsPropIn, XmlEntityStructHolder schedBlockOut) {
+			schedBlockOut.value = null;
+		}
+		public ObsProjectTree getEntireTreeInAStruct() {
+			return null;
+		}
+		public String sayHello() {
+			return null;
+		}
+		public XmlOffshoot getOffshoot() {
+			return null;
+		}
+		public void deactivateOffshoot() {
+		}
+		public void activateOffshoot() {
+		}
+		public void exceptionMethod() throws XmlComponentErrorEx {
+		}
+	}
+
+	/**
+	 * Replaces the component implementation of the server side.
+	 */
+	private static class Component implements XmlComponentJ
+	{
+		private final ObsProposal obsProp;
+		Component(ObsProposal obsProp) {
+			this.obsProp = obsProp;
+		}
+		public ComponentStates componentState() {
+			return ComponentStates.COMPSTATE_OPERATIONAL;
+		}
+		public String name() {
+			return "benchmark";
+		}
+		public int dumbMethod(String somevalue) {
+			return 0;
+		}
+		public ObsProposal createObsProposal() {
+			return obsProp;
+		}
+		public SchedBlock getBestSchedBlock() {
+			return null;
+		}
+		public SchedBlock[] getAllSchedBlocks() {
+			return null;
+		}
+		public void addNewSchedBlocks(SchedBlock[] newSchedBlocks) {
+		}
+		public void xmlInOutMethod(ObsProposal obsPropIn, SchedBlockHolder schedBlockOut) {
+			schedBlockOut.value = null;
+		}
+		public ObsProjectTreeJ getEntireTreeInAStruct() {
+			return null;
+		}
+		public String sayHello() {
+			return null;
+		}
+		public XmlOffshootJ getOffshoot() {
+			return null;
+		}
+		public void deactivateOffshoot() {
+		}
+		public void activateOffshoot() {
+		}
+		public void exceptionMethod() throws XmlComponentErrorEx {
+		}
+	}
+
+	private static ObsProposal createObsProposal(int size) {
+		ObsProposal obsProp = new ObsProposal();
+		ObsProposalEntityT entity = new ObsProposalEntityT();
+		entity.setEntityId("uid://X0000000000000000/X00000001");
+		entity.setEntityIdEncrypted("ljasd;ljfa;lsfd");
+		obsProp.setObsProposalEntity(entity);
+		StringBuilder sb = new StringBuilder(size);
+		while (sb.length() < size) {
+			sb.append("peak performance enduring a 24-7-365 schedule. ");
+		}
+		obsProp.setScientificJustification(sb.toString());
+		return obsProp;
+	}
+
+	private static double runClient(XmlComponentJ clientProxy, ObsProposal obsProp, int calls) {
+		SchedBlockHolder holder = new SchedBlockHolder();
+		long start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			clientProxy.xmlInOutMethod(obsProp, holder);
+		}
+		return (System.nanoTime() - start) / (1000.0 * calls);
+	}
+
+	private static double runServer(XmlComponentOperations serverProxy, XmlEntityStruct entStruct, int calls) {
+		XmlEntityStructHolder holder = new XmlEntityStructHolder();
+		long start = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			serverProxy.xmlInOutMethod(entStruct, holder);
+		}
+		return (System.nanoTime() - start) / (1000.0 * calls);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int calls = (args.length > 0 ? Integer.parseInt(args[0]) : 2000);
+		Logger logger = ClientLogManager.getAcsLogManager().getLoggerForApplication("DynWrapperBenchmark", false);
+		logger.setLevel(Level.INFO);
+		DynamicProxyFactory factory = DynamicProxyFactory.getDynamicProxyFactory(logger);
+
+		XmlComponentJ clientProxy = factory.createClientProxy(XmlComponentJ.class, new CorbaStub(), XmlComponentOperations.class);
+		System.setProperty(CastorMarshalMapper.XML_CACHE_SIZE_PROPERTYNAME, "16");
+		XmlComponentJ cachingClientProxy = factory.createClientProxy(XmlComponentJ.class, new CorbaStub(), XmlComponentOperations.class);
+		System.clearProperty(CastorMarshalMapper.XML_CACHE_SIZE_PROPERTYNAME);
+
+		int[] sizes = { 10 * 1024, 100 * 1024 };
+		for (int size : sizes) {
+			ObsProposal obsProp = createObsProposal(size);
+			XmlComponentOperations serverProxy = (XmlComponentOperations)
+					factory.createServerProxy(XmlComponentOperations.class, new Component(obsProp), XmlComponentJ.class);
+			XmlEntityStruct entStruct = serverProxy.createObsProposal();
+			int sizeCalls = calls * 10 * 1024 / size;
+
+			// warm-up, then measure
+			for (int round = 0; round < 3; round++) {
+				double client = runClient(clientProxy, obsProp, sizeCalls);
+				double cachingClient = runClient(cachingClientProxy, obsProp, sizeCalls);
+				double server = runServer(serverProxy, entStruct, sizeCalls);
+				if (round == 2) {
+					System.out.println(String.format("entity of %6d chars: client %8.1f us/call, client with XML cache %8.1f us/call, server %8.1f us/call",
+							entStruct.xmlString.length(), client, cachingClient, server));
+				}
+			}
+		}
+		System.out.println("(" + calls + " calls each for 10 KB, proportionally fewer for larger entities)");
+	}
+}
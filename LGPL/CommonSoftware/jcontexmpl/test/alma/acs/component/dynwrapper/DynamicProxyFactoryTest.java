@@ -260,6 +260,49 @@ public class DynamicProxyFactoryTest extends TestCase
 
 
 
+	/**
+	 * Checks that the marshalled XML of an entity object is reused only if the cache is enabled,
+	 * and that it is not reused after the entity's timestamp has changed.
+	 */
+	public void testMarshalledXmlCache() throws Exception {
+		
+		final ObsProposal obsProp = compImpl.createObsProposal();
+		XmlTestComponent compImplWithFixedReturn = new DynamicProxyFactoryTest.XmlTestComponent() {
+			@Override
+			public ObsProposal createObsProposal() {
+				return obsProp;
+			}
+		};
+
+		// no cache by default
+		XmlComponentOperations serverProxy = (XmlComponentOperations) 
+				DynamicProxyFactory.getDynamicProxyFactory(m_logger).
+					createServerProxy(corbaIF, compImplWithFixedReturn, compIF);
+		String xml1 = serverProxy.createObsProposal().xmlString;
+		String xml2 = serverProxy.createObsProposal().xmlString;
+		assertEquals(xml1, xml2);
+		assertNotSame(xml1, xml2);
+
+		System.setProperty(CastorMarshalMapper.XML_CACHE_SIZE_PROPERTYNAME, "10");
+		try {
+			serverProxy = (XmlComponentOperations) 
+					DynamicProxyFactory.getDynamicProxyFactory(m_logger).
+						createServerProxy(corbaIF, compImplWithFixedReturn, compIF);
+		}
+		finally {
+			System.clearProperty(CastorMarshalMapper.XML_CACHE_SIZE_PROPERTYNAME);
+		}
+		xml1 = serverProxy.createObsProposal().xmlString;
+		xml2 = serverProxy.createObsProposal().xmlString;
+		assertSame(xml1, xml2);
+		
+		obsProp.getObsProposalEntity().setTimestamp("2013-06-01T12:00:00");
+		XmlEntityStruct entStruct = serverProxy.createObsProposal();
+		assertNotSame(xml1, entStruct.xmlString);
+		assertTrue(entStruct.xmlString.contains("2013-06-01T12:00:00"));
+		assertSame(entStruct.xmlString, serverProxy.createObsProposal().xmlString);
+	}
+
 	/**
 	 * Dumb little test implementation of the (inner) component interface
 	 * @author hsommer Dec 18, 2002 2:34:16 PM
@@ -0,0 +1,259 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cosylab.acs.maci.ComponentInfo;
+
+/**
+ * Queue of not yet delivered <code>components_available</code> / <code>components_unavailable</code>
+ * notifications of one client. Notifications are coalesced into batches (one remote call per batch), e.g.
+ * <code>available(A), available(B), unavailable(C)</code> results in two calls: <code>available(A, B)</code>
+ * and <code>unavailable(C)</code>.
+ *
+ * The order of the notifications of the same component is kept; notifications superseded before
+ * delivery are dropped:
+ * <ul>
+ * 	<li>a notification of the same type replaces the previous one (the latest info is sent),
+ * 	<li>unavailable drops the preceding available,
+ * 	<li>available after unavailable keeps both (the client has to know that the component was restarted).
+ * </ul>
+ *
+ * This class is not thread-safe.
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentAvailabilityQueue
+{
+
+	/**
+	 * Batch of notifications of the same type.
+	 */
+	public static final class Batch
+	{
+		private final ComponentInfo[] infos;
+		private final String[] names;
+
+		private Batch(ComponentInfo[] infos, String[] names)
+		{
+			this.infos = infos;
+			this.names = names;
+		}
+
+		/**
+		 * @return <code>true</code> for <code>components_available</code> batch.
+		 */
+		public boolean isAvailable()
+		{
+			return infos != null;
+		}
+
+		/**
+		 * @return infos of available components, <code>null</code> for unavailable batch.
+		 */
+		public ComponentInfo[] getInfos()
+		{
+			return infos;
+		}
+
+		/**
+		 * @return names of unavailable components, <code>null</code> for available batch.
+		 */
+		public String[] getNames()
+		{
+			return names;
+		}
+	}
+
+	/**
+	 * Queued notification.
+	 */
+	private static final class Entry
+	{
+		final String name;
+		final ComponentInfo info;
+		boolean dropped;
+		// previous live entry of the same component (only unavailable before available)
+		Entry previous;
+
+		Entry(String name, ComponentInfo info)
+		{
+			this.name = name;
+			this.info = info;
+		}
+
+		boolean isAvailable()
+		{
+			return info != null;
+		}
+	}
+
+	/**
+	 * Notifications in order of arrival (including dropped).
+	 */
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * Last live notification per component name.
+	 */
+	private final Map<String, Entry> last = new HashMap<String, Entry>();
+
+	/**
+	 * Number of live notifications.
+	 */
+	private int size = 0;
+
+	/**
+	 * Number of queued notifications (per component).
+	 */
+	private int queued = 0;
+
+	/**
+	 * Number of dropped (superseded) notifications.
+	 */
+	private int superseded = 0;
+
+	/**
+	 * Queue <code>components_available</code> notification.
+	 * @param infos	infos of available components, non-<code>null</code>.
+	 */
+	public void available(ComponentInfo[] infos)
+	{
+		for (int i = 0; i < infos.length; i++)
+			add(infos[i].getName(), infos[i]);
+	}
+
+	/**
+	 * Queue <code>components_unavailable</code> notification.
+	 * @param names	names of unavailable components, non-<code>null</code>.
+	 */
+	public void unavailable(String[] names)
+	{
+		for (int i = 0; i < names.length; i++)
+			add(names[i], null);
+	}
+
+	/**
+	 * Append all the live notifications of another queue (which is left unchanged).
+	 * Statistics of the other queue are also added.
+	 * @param queue	queue to append.
+	 */
+	public void addAll(ComponentAvailabilityQueue queue)
+	{
+		for (Entry entry : queue.entries)
+			if (!entry.dropped)
+				add(entry.name, entry.info);
+		// not counted twice
+		queued += queue.queued - queue.size;
+		superseded += queue.superseded;
+	}
+
+	private void add(String name, ComponentInfo info)
+	{
+		queued++;
+		Entry entry = new Entry(name, info);
+
+		Entry previous = last.get(name);
+		if (previous != null && previous.isAvailable())
+			previous = drop(previous);
+		if (previous != null && previous.isAvailable() == entry.isAvailable())
+			previous = drop(previous);
+		entry.previous = previous;
+
+		entries.add(entry);
+		last.put(name, entry);
+		size++;
+	}
+
+	private Entry drop(Entry entry)
+	{
+		entry.dropped = true;
+		size--;
+		superseded++;
+		return entry.previous;
+	}
+
+	/**
+	 * @return number of notifications to be delivered.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return number of queued notifications (per component), including superseded.
+	 */
+	public int getQueuedCount()
+	{
+		return queued;
+	}
+
+	/**
+	 * @return number of dropped (superseded) notifications.
+	 */
+	public int getSupersededCount()
+	{
+		return superseded;
+	}
+
+	/**
+	 * Remove all the notifications from the queue and coalesce them into batches.
+	 * @return batches in delivery order, non-<code>null</code>.
+	 */
+	public List<Batch> drain()
+	{
+		List<Batch> batches = new ArrayList<Batch>();
+		int i = 0;
+		int n = entries.size();
+		while (i < n)
+		{
+			Entry first = entries.get(i);
+			if (first.dropped)
+			{
+				i++;
+				continue;
+			}
+
+			// run of the same type
+			boolean available = first.isAvailable();
+			List<Entry> run = new ArrayList<Entry>();
+			for (; i < n; i++)
+			{
+				Entry entry = entries.get(i);
+				if (entry.dropped)
+					continue;
+				if (entry.isAvailable() != available)
+					break;
+				run.add(entry);
+			}
+
+			if (available)
+			{
+				ComponentInfo[] infos = new ComponentInfo[run.size()];
+				for (int j = 0; j < infos.length; j++)
+					infos[j] = run.get(j).info;
+				batches.add(new Batch(infos, null));
+			}
+			else
+			{
+				String[] names = new String[run.size()];
+				for (int j = 0; j < names.length; j++)
+					names[j] = run.get(j).name;
+				batches.add(new Batch(null, names));
+			}
+		}
+
+		entries.clear();
+		last.clear();
+		size = 0;
+		return batches;
+	}
+
+}
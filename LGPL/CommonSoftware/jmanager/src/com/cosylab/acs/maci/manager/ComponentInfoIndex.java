@@ -0,0 +1,318 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.util.WildcharMatcher;
+
+/**
+ * Index of the <code>ComponentInfo</code>s of the components data store,
+ * used to answer name/type wildchar queries without walking (and locking) the whole data store.
+ *
+ * The index contains:
+ * <ul>
+ * 	<li>a sorted (skip list) map name -> info, for exact names and searched for the literal prefix
+ * 		of a pattern (e.g. <code>CONTROL/DV01/*</code>),
+ * 	<li>an inverted index type -> infos.
+ * </ul>
+ * The candidates found by the index are still checked by <code>WildcharMatcher</code>,
+ * so the results are exactly the same as when matching all the components.
+ *
+ * The index is updated incrementally when an info is set or removed from the data store
+ * (see {@link #put(int, ComponentInfo)} and {@link #remove(int)}), each update costs O(log N).
+ * Updates are serialized, queries do not lock and see each update atomically per map.
+ *
+ * The index does not check the activation state of the components, since that is
+ * changed directly on the <code>ComponentInfo</code> instances.
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentInfoIndex
+{
+
+	/**
+	 * Orders the infos by name.
+	 */
+	private static final Comparator<ComponentInfo> NAME_ORDER = new Comparator<ComponentInfo>()
+	{
+		public int compare(ComponentInfo info1, ComponentInfo info2)
+		{
+			return info1.getName().compareTo(info2.getName());
+		}
+	};
+
+	/**
+	 * Data store handle to info map.
+	 */
+	private final Map<Integer, ComponentInfo> handleMap = new ConcurrentHashMap<Integer, ComponentInfo>();
+
+	/**
+	 * Sorted name to info map.
+	 */
+	private final ConcurrentSkipListMap<String, ComponentInfo> nameMap = new ConcurrentSkipListMap<String, ComponentInfo>();
+
+	/**
+	 * Type to infos map.
+	 */
+	private final Map<String, Set<ComponentInfo>> typeMap = new ConcurrentHashMap<String, Set<ComponentInfo>>();
+
+	/**
+	 * Constructor of an empty index.
+	 */
+	public ComponentInfoIndex()
+	{
+	}
+
+	/**
+	 * Adds (or replaces) the info of a data store handle.
+	 * If there are more infos with the same name, the last one is indexed.
+	 * @param handle	data store handle.
+	 * @param info		component info, <code>null</code> removes the info of the handle.
+	 */
+	public synchronized void put(int handle, ComponentInfo info)
+	{
+		if (info == null || info.getName() == null)
+		{
+			remove(handle);
+			return;
+		}
+
+		ComponentInfo old = handleMap.put(handle, info);
+		if (old == info)
+			return;
+		if (old != null)
+			unindex(old);
+
+		ComponentInfo sameName = nameMap.put(info.getName(), info);
+		if (sameName != null && sameName != info)
+			removeType(sameName);
+
+		Set<ComponentInfo> infos = typeMap.get(info.getType());
+		if (infos == null)
+		{
+			infos = Collections.newSetFromMap(new ConcurrentHashMap<ComponentInfo, Boolean>());
+			typeMap.put(info.getType(), infos);
+		}
+		infos.add(info);
+	}
+
+	/**
+	 * Removes the info of a data store handle.
+	 * @param handle	data store handle.
+	 */
+	public synchronized void remove(int handle)
+	{
+		ComponentInfo old = handleMap.remove(handle);
+		if (old != null)
+			unindex(old);
+	}
+
+	/**
+	 * Removes the info from the name and type maps, if it is the indexed one.
+	 * @param info	info to remove.
+	 */
+	private void unindex(ComponentInfo info)
+	{
+		if (nameMap.remove(info.getName(), info))
+			removeType(info);
+	}
+
+	/**
+	 * Removes the info from the type map.
+	 * @param info	info to remove.
+	 */
+	private void removeType(ComponentInfo info)
+	{
+		Set<ComponentInfo> infos = typeMap.get(info.getType());
+		if (infos != null)
+		{
+			infos.remove(info);
+			if (infos.isEmpty())
+				typeMap.remove(info.getType());
+		}
+	}
+
+	/**
+	 * Removes all the infos.
+	 */
+	public synchronized void clear()
+	{
+		handleMap.clear();
+		nameMap.clear();
+		typeMap.clear();
+	}
+
+	/**
+	 * Number of indexed components.
+	 * @return number of indexed components.
+	 */
+	public int size()
+	{
+		return nameMap.size();
+	}
+
+	/**
+	 * Returns the infos whose name matches <code>name_wc</code> and type matches <code>type_wc</code>.
+	 * @param name_wc	name wildchar pattern, non-<code>null</code>.
+	 * @param type_wc	type wildchar pattern, non-<code>null</code>.
+	 * @return	matching infos, ordered by name.
+	 */
+	public List<ComponentInfo> query(String name_wc, String type_wc)
+	{
+		List<ComponentInfo> result = new ArrayList<ComponentInfo>();
+
+		// exact name
+		if (isLiteral(name_wc))
+		{
+			ComponentInfo info = nameMap.get(name_wc);
+			if (info != null && WildcharMatcher.match(type_wc, info.getType()))
+				result.add(info);
+			return result;
+		}
+
+		// exact type, if it gives less candidates than the name prefix
+		String prefix = literalPrefix(name_wc);
+		Map<String, ComponentInfo> range = (prefix.length() == 0) ? nameMap : nameMap.tailMap(prefix);
+		if (isLiteral(type_wc))
+		{
+			Set<ComponentInfo> typeInfos = typeMap.get(type_wc);
+			if (typeInfos == null)
+				return result;
+			if (hasMoreThan(range, prefix, typeInfos.size()))
+			{
+				for (ComponentInfo info : typeInfos)
+					if (WildcharMatcher.match(name_wc, info.getName()))
+						result.add(info);
+				Collections.sort(result, NAME_ORDER);
+				return result;
+			}
+		}
+
+		boolean anyName = isAnyAfterPrefix(name_wc);
+		boolean anyType = type_wc.equals("*");
+		for (Map.Entry<String, ComponentInfo> entry : range.entrySet())
+		{
+			String name = entry.getKey();
+			if (!name.startsWith(prefix))
+				break;
+			ComponentInfo info = entry.getValue();
+			if ((anyName || WildcharMatcher.match(name_wc, name)) &&
+				(anyType || WildcharMatcher.match(type_wc, info.getType())))
+				result.add(info);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if there are more than <code>count</code> names with the given prefix, counting at most <code>count + 1</code> names.
+	 * @param range		names from the prefix on.
+	 * @param prefix	prefix.
+	 * @param count		count.
+	 * @return <code>true</code> if there are more than <code>count</code> names with the prefix.
+	 */
+	private static boolean hasMoreThan(Map<String, ComponentInfo> range, String prefix, int count)
+	{
+		int n = 0;
+		for (String name : range.keySet())
+		{
+			if (!name.startsWith(prefix))
+				return false;
+			if (++n > count)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the names of a sorted array which match the pattern.
+	 * @param sortedNames	sorted names.
+	 * @param name_wc		name wildchar pattern, non-<code>null</code>.
+	 * @return	matching names.
+	 */
+	public static List<String> matchNames(String[] sortedNames, String name_wc)
+	{
+		List<String> result = new ArrayList<String>();
+		int[] range = prefixRange(sortedNames, literalPrefix(name_wc));
+		boolean anyName = isAnyAfterPrefix(name_wc);
+		for (int i = range[0]; i < range[1]; i++)
+			if (anyName || WildcharMatcher.match(name_wc, sortedNames[i]))
+				result.add(sortedNames[i]);
+		return result;
+	}
+
+	/**
+	 * Returns the part of the pattern before the first wildchar (<code>*</code>, <code>?</code> or <code>[</code>).
+	 * @param pattern	wildchar pattern.
+	 * @return	literal prefix.
+	 */
+	static String literalPrefix(String pattern)
+	{
+		for (int i = 0; i < pattern.length(); i++)
+		{
+			char ch = pattern.charAt(i);
+			if (ch == '*' || ch == '?' || ch == '[')
+				return pattern.substring(0, i);
+		}
+		return pattern;
+	}
+
+	/**
+	 * Checks if pattern has no wildchars.
+	 * @param pattern	wildchar pattern.
+	 * @return <code>true</code> if pattern matches only itself.
+	 */
+	static boolean isLiteral(String pattern)
+	{
+		return literalPrefix(pattern).length() == pattern.length();
+	}
+
+	/**
+	 * Checks if pattern is of form <code>prefix*</code>, i.e. every name with the literal prefix matches.
+	 * @param pattern	wildchar pattern.
+	 * @return <code>true</code> if the pattern is a literal prefix followed by <code>*</code>s only.
+	 */
+	static boolean isAnyAfterPrefix(String pattern)
+	{
+		int len = literalPrefix(pattern).length();
+		if (len == pattern.length())
+			return false;
+		for (int i = len; i < pattern.length(); i++)
+			if (pattern.charAt(i) != '*')
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the range <code>[from, to)</code> of the names with the given prefix.
+	 * @param sortedNames	sorted names.
+	 * @param prefix		prefix.
+	 * @return range of indices.
+	 */
+	static int[] prefixRange(String[] sortedNames, String prefix)
+	{
+		if (prefix.length() == 0)
+			return new int[] { 0, sortedNames.length };
+
+		int from = Arrays.binarySearch(sortedNames, prefix);
+		if (from < 0)
+			from = -from - 1;
+
+		int to = from;
+		while (to < sortedNames.length && sortedNames[to].startsWith(prefix))
+			to++;
+
+		return new int[] { from, to };
+	}
+}
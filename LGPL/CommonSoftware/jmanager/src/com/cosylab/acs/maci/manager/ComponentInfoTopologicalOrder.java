@@ -0,0 +1,655 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.HandleConstants;
+
+/**
+ * Incrementally maintained topological (shutdown) order of components.
+ *
+ * A component has to be shut down before the components it uses, i.e. before the components
+ * which have it as a client. Instead of sorting all the components on every change (as
+ * <code>ComponentInfoTopologicalSort</code> does), every component has an order number which is kept
+ * consistent with the dependencies: when a client reference is added which violates the order, only
+ * the affected region (the components with order numbers between the client and the component)
+ * is searched and reordered (Pearce-Kelly dynamic topological sort). Removing a reference or a component
+ * never violates the order.
+ *
+ * As in <code>ComponentInfoTopologicalSort</code>:
+ * <ul>
+ * 	<li>components which are not dependent of each other are shut down in reverse order of (first) activation,
+ * 	<li>immortal components (having manager as client) and all the components they (indirectly) use
+ * 		are shut down after all other components,
+ * 	<li>cycles are allowed: a reference which would close a cycle is not taken into account for the order
+ * 		(until another reference of the cycle is removed).
+ * </ul>
+ *
+ * Every container has its components in a sorted set, so the shutdown order of a container is read
+ * in time proportional to the number of its components.
+ *
+ * This class is thread-safe, all the methods are synchronized.
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentInfoTopologicalOrder {
+
+	/**
+	 * Component vertex.
+	 */
+	private static class Node {
+
+		/**
+		 * Component handle.
+		 */
+		final int handle;
+
+		/**
+		 * Current component info.
+		 */
+		ComponentInfo info;
+
+		/**
+		 * Name of the container the node is registered at, can be <code>null</code>.
+		 */
+		String containerName;
+
+		/**
+		 * Order number, lower is shut down first.
+		 */
+		int ord;
+
+		/**
+		 * Component clients (handles), as last seen.
+		 */
+		int[] clientHandles = new int[0];
+
+		/**
+		 * Clients which are taken into account for the order.
+		 */
+		final Set<Node> in = new HashSet<Node>(4);
+
+		/**
+		 * Components this component is a client of, taken into account for the order.
+		 */
+		final Set<Node> out = new HashSet<Node>(4);
+
+		/**
+		 * Clients which would close a cycle.
+		 */
+		final Set<Node> ignoredIn = new HashSet<Node>(0);
+
+		/**
+		 * Components this component is a client of, but would close a cycle.
+		 */
+		final Set<Node> ignoredOut = new HashSet<Node>(0);
+
+		/**
+		 * <code>true</code> if manager is a client.
+		 */
+		boolean managerClient;
+
+		/**
+		 * Number of reasons to be immortal (manager as client or immortal client).
+		 */
+		int immortalRefs;
+
+		/**
+		 * DFS mark.
+		 */
+		boolean visited;
+
+		Node(int handle) {
+			this.handle = handle;
+		}
+
+		boolean isImmortal() {
+			return immortalRefs > 0;
+		}
+	}
+
+	/**
+	 * Order by number.
+	 */
+	private static final Comparator<Node> ORD_COMPARATOR = new Comparator<Node>() {
+		public int compare(Node n1, Node n2) {
+			return n1.ord < n2.ord ? -1 : (n1.ord == n2.ord ? 0 : 1);
+		}
+	};
+
+	/**
+	 * Shutdown order: mortal components first, then by number.
+	 */
+	private static final Comparator<Node> SHUTDOWN_COMPARATOR = new Comparator<Node>() {
+		public int compare(Node n1, Node n2) {
+			boolean i1 = n1.isImmortal();
+			boolean i2 = n2.isImmortal();
+			if (i1 != i2)
+				return i1 ? 1 : -1;
+			return ORD_COMPARATOR.compare(n1, n2);
+		}
+	};
+
+	/**
+	 * Nodes by component handle.
+	 */
+	private final Map<Integer, Node> nodes = new HashMap<Integer, Node>();
+
+	/**
+	 * Nodes waiting for their client (key) to be added.
+	 */
+	private final Map<Integer, Set<Node>> waiting = new HashMap<Integer, Set<Node>>();
+
+	/**
+	 * Nodes of each container, in shutdown order.
+	 */
+	private final Map<String, TreeSet<Node>> containerNodes = new HashMap<String, TreeSet<Node>>();
+
+	/**
+	 * Nodes having at least one ignored client (cycle).
+	 */
+	private final Set<Node> nodesWithIgnoredClients = new HashSet<Node>();
+
+	/**
+	 * Order ranges (from, to) of the removed dependencies, which could have broken a cycle.
+	 */
+	private final List<int[]> removedRanges = new ArrayList<int[]>();
+
+	/**
+	 * Order number of the last added node (new nodes are added at the beginning).
+	 */
+	private int minOrd = 0;
+
+	/**
+	 * Number of reorders.
+	 */
+	private long reorderCount = 0;
+
+	/**
+	 * Number of reordered nodes.
+	 */
+	private long reorderedNodesCount = 0;
+
+	/**
+	 * Add or update components, the components not added yet are added in the given order
+	 * (faster than adding them one by one when there are many dependencies among them).
+	 * @param infos	component infos in shutdown order (e.g. sorted by <code>ComponentInfoTopologicalSort</code>).
+	 */
+	public synchronized void update(ComponentInfo[] infos)
+	{
+		for (int i = infos.length - 1; i >= 0; i--)
+		{
+			if (nodes.containsKey(infos[i].getHandle()))
+				continue;
+			Node node = new Node(infos[i].getHandle());
+			node.ord = --minOrd;
+			node.info = infos[i];
+			nodes.put(node.handle, node);
+			node.containerName = infos[i].getContainerName();
+			attach(node);
+		}
+
+		for (int i = 0; i < infos.length; i++)
+			update(infos[i]);
+	}
+
+	/**
+	 * Add or update component.
+	 * @param info	component info, non-<code>null</code>.
+	 */
+	public synchronized void update(ComponentInfo info)
+	{
+		int handle = info.getHandle();
+		Node node = nodes.get(handle);
+		if (node == null)
+		{
+			node = new Node(handle);
+			node.ord = --minOrd;
+			nodes.put(handle, node);
+
+			// clients already referencing it
+			Set<Node> waitingNodes = waiting.remove(handle);
+			if (waitingNodes != null)
+				for (Node waitingNode : waitingNodes)
+					addEdge(node, waitingNode);
+		}
+
+		node.info = info;
+		if (node.containerName == null ? info.getContainerName() != null : !node.containerName.equals(info.getContainerName()))
+		{
+			detach(node);
+			node.containerName = info.getContainerName();
+			attach(node);
+		}
+
+		// diff clients
+		int[] clients = info.getClients().toArray();
+		boolean managerClient = false;
+		int count = 0;
+		for (int i = 0; i < clients.length; i++)
+		{
+			if (clients[i] == HandleConstants.MANAGER_MASK)
+				managerClient = true;
+			else if ((clients[i] & HandleConstants.TYPE_MASK) == HandleConstants.COMPONENT_MASK && clients[i] != handle)
+				clients[count++] = clients[i];
+		}
+		clients = Arrays.copyOf(clients, count);
+		Arrays.sort(clients);
+
+		int[] oldClients = node.clientHandles;
+		node.clientHandles = clients;
+
+		for (int i = 0; i < oldClients.length; i++)
+			if (Arrays.binarySearch(clients, oldClients[i]) < 0)
+				removeClient(node, oldClients[i]);
+
+		for (int i = 0; i < clients.length; i++)
+			if (Arrays.binarySearch(oldClients, clients[i]) < 0)
+			{
+				Node client = nodes.get(clients[i]);
+				if (client != null)
+					addEdge(client, node);
+				else
+					addWaiting(clients[i], node);
+			}
+
+		if (managerClient != node.managerClient)
+		{
+			node.managerClient = managerClient;
+			if (managerClient)
+				incrementImmortal(node);
+			else
+				decrementImmortal(node);
+		}
+
+		retryIgnored();
+	}
+
+	/**
+	 * Remove component.
+	 * @param handle	component handle.
+	 */
+	public synchronized void remove(int handle)
+	{
+		Node node = nodes.remove(handle);
+		if (node == null)
+			return;
+
+		detach(node);
+		if (!nodesWithIgnoredClients.isEmpty())
+			removedRanges.add(new int[] { node.ord, node.ord });
+
+		// its clients
+		for (int i = 0; i < node.clientHandles.length; i++)
+			removeClient(node, node.clientHandles[i]);
+
+		// the components it is a client of (still referencing it)
+		List<Node> used = new ArrayList<Node>(node.out);
+		used.addAll(node.ignoredOut);
+		for (Node n : used)
+		{
+			removeEdge(node, n);
+			addWaiting(handle, n);
+		}
+
+		if (node.managerClient)
+		{
+			node.managerClient = false;
+			decrementImmortal(node);
+		}
+
+		retryIgnored();
+	}
+
+	/**
+	 * Get shutdown order of the components of a container.
+	 * @param containerName	container name.
+	 * @return component infos in shutdown order (deactivated components are skipped).
+	 */
+	public synchronized ComponentInfo[] getShutdownOrder(String containerName)
+	{
+		TreeSet<Node> set = containerNodes.get(containerName);
+		if (set == null)
+			return new ComponentInfo[0];
+		return toInfos(set, true);
+	}
+
+	/**
+	 * Get shutdown order of all the components.
+	 * @return component infos in shutdown order.
+	 */
+	public synchronized ComponentInfo[] getShutdownOrder()
+	{
+		List<Node> list = new ArrayList<Node>(nodes.values());
+		Collections.sort(list, SHUTDOWN_COMPARATOR);
+		return toInfos(list, false);
+	}
+
+	/**
+	 * Number of components.
+	 * @return number of components.
+	 */
+	public synchronized int size()
+	{
+		return nodes.size();
+	}
+
+	/**
+	 * Statistics.
+	 * @return textual statistics.
+	 */
+	public synchronized String getStatistics()
+	{
+		return "components: " + nodes.size() + ", containers: " + containerNodes.size() +
+			", reorders: " + reorderCount + ", reordered components: " + reorderedNodesCount +
+			", components in cycles: " + nodesWithIgnoredClients.size();
+	}
+
+	/**
+	 * @param nodes			nodes in shutdown order.
+	 * @param activeOnly	skip components without container.
+	 * @return infos of the nodes.
+	 */
+	private static ComponentInfo[] toInfos(Iterable<Node> nodes, boolean activeOnly)
+	{
+		List<ComponentInfo> list = new ArrayList<ComponentInfo>();
+		for (Node node : nodes)
+			// if component already deactivated, skip it
+			if (!activeOnly || node.info.getContainer() != 0)
+				list.add(node.info);
+		return list.toArray(new ComponentInfo[list.size()]);
+	}
+
+	/**
+	 * Remove node from its container's set (before changing the order).
+	 */
+	private void detach(Node node)
+	{
+		if (node.containerName == null)
+			return;
+		TreeSet<Node> set = containerNodes.get(node.containerName);
+		if (set != null)
+		{
+			set.remove(node);
+			if (set.isEmpty())
+				containerNodes.remove(node.containerName);
+		}
+	}
+
+	/**
+	 * Add node to its container's set (after changing the order).
+	 */
+	private void attach(Node node)
+	{
+		if (node.containerName == null || !nodes.containsKey(node.handle))
+			return;
+		TreeSet<Node> set = containerNodes.get(node.containerName);
+		if (set == null)
+		{
+			set = new TreeSet<Node>(SHUTDOWN_COMPARATOR);
+			containerNodes.put(node.containerName, set);
+		}
+		set.add(node);
+	}
+
+	/**
+	 * Wait for a client to be added.
+	 */
+	private void addWaiting(int clientHandle, Node node)
+	{
+		Set<Node> set = waiting.get(clientHandle);
+		if (set == null)
+		{
+			set = new HashSet<Node>(2);
+			waiting.put(clientHandle, set);
+		}
+		set.add(node);
+	}
+
+	/**
+	 * Remove the client reference of a node.
+	 */
+	private void removeClient(Node node, int clientHandle)
+	{
+		Node client = nodes.get(clientHandle);
+		if (client != null)
+			removeEdge(client, node);
+		else
+		{
+			Set<Node> set = waiting.get(clientHandle);
+			if (set != null)
+			{
+				set.remove(node);
+				if (set.isEmpty())
+					waiting.remove(clientHandle);
+			}
+		}
+	}
+
+	/**
+	 * Add dependency, <code>client</code> has to be shut down before <code>node</code>.
+	 */
+	private void addEdge(Node client, Node node)
+	{
+		if (client.out.contains(node) || client.ignoredOut.contains(node))
+			return;
+
+		if (client.ord > node.ord && !reorder(client, node))
+		{
+			// cycle
+			client.ignoredOut.add(node);
+			node.ignoredIn.add(client);
+			nodesWithIgnoredClients.add(node);
+			return;
+		}
+
+		client.out.add(node);
+		node.in.add(client);
+		if (client.isImmortal())
+			incrementImmortal(node);
+	}
+
+	/**
+	 * Remove dependency.
+	 */
+	private void removeEdge(Node client, Node node)
+	{
+		if (client.out.remove(node))
+		{
+			node.in.remove(client);
+			if (client.isImmortal())
+				decrementImmortal(node);
+			if (!nodesWithIgnoredClients.isEmpty())
+				removedRanges.add(new int[] { client.ord, node.ord });
+		}
+		else if (client.ignoredOut.remove(node))
+		{
+			node.ignoredIn.remove(client);
+			if (node.ignoredIn.isEmpty())
+				nodesWithIgnoredClients.remove(node);
+		}
+	}
+
+	/**
+	 * Retry to add the dependencies which would close a cycle, if a removed dependency could have broken it.
+	 * The path closing the cycle of an ignored dependency <code>client -> node</code> only goes through
+	 * the components with order numbers between <code>node</code> and <code>client</code>.
+	 */
+	private void retryIgnored()
+	{
+		if (removedRanges.isEmpty())
+			return;
+
+		int[][] ranges = removedRanges.toArray(new int[removedRanges.size()][]);
+		removedRanges.clear();
+
+		List<Node> list = new ArrayList<Node>(nodesWithIgnoredClients);
+		for (Node node : list)
+		{
+			List<Node> clients = new ArrayList<Node>(node.ignoredIn);
+			for (Node client : clients)
+			{
+				for (int i = 0; i < ranges.length; i++)
+				{
+					if (node.ord <= ranges[i][0] && ranges[i][1] <= client.ord)
+					{
+						removeEdge(client, node);
+						addEdge(client, node);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reorder the affected region so that <code>client.ord < node.ord</code>.
+	 * @return <code>false</code> if the dependency would close a cycle (nothing is changed).
+	 */
+	private boolean reorder(Node client, Node node)
+	{
+		int lowerBound = node.ord;
+		int upperBound = client.ord;
+
+		// nodes which have to be shut down after node (and before client)
+		List<Node> forward = new ArrayList<Node>();
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(node);
+		node.visited = true;
+		boolean cycle = false;
+		while (!stack.isEmpty() && !cycle)
+		{
+			Node n = stack.pop();
+			forward.add(n);
+			for (Node m : n.out)
+			{
+				if (m == client)
+				{
+					cycle = true;
+					break;
+				}
+				if (!m.visited && m.ord < upperBound)
+				{
+					m.visited = true;
+					stack.push(m);
+				}
+			}
+		}
+		if (cycle)
+		{
+			for (Node n : forward)
+				n.visited = false;
+			for (Node n : stack)
+				n.visited = false;
+			return false;
+		}
+
+		// nodes which have to be shut down before client (and after node)
+		List<Node> backward = new ArrayList<Node>();
+		stack.push(client);
+		client.visited = true;
+		while (!stack.isEmpty())
+		{
+			Node n = stack.pop();
+			backward.add(n);
+			for (Node m : n.in)
+			{
+				if (!m.visited && m.ord > lowerBound)
+				{
+					m.visited = true;
+					stack.push(m);
+				}
+			}
+		}
+
+		// reuse the order numbers of the region, backward nodes first
+		Collections.sort(forward, ORD_COMPARATOR);
+		Collections.sort(backward, ORD_COMPARATOR);
+		int size = backward.size() + forward.size();
+		int[] ords = new int[size];
+		List<Node> region = new ArrayList<Node>(size);
+		region.addAll(backward);
+		region.addAll(forward);
+		for (int i = 0; i < size; i++)
+		{
+			Node n = region.get(i);
+			n.visited = false;
+			ords[i] = n.ord;
+		}
+		Arrays.sort(ords);
+
+		// order numbers are unique only after all the nodes are reordered
+		for (int i = 0; i < size; i++)
+			detach(region.get(i));
+		for (int i = 0; i < size; i++)
+			region.get(i).ord = ords[i];
+		for (int i = 0; i < size; i++)
+			attach(region.get(i));
+
+		reorderCount++;
+		reorderedNodesCount += size;
+		return true;
+	}
+
+	/**
+	 * Increment immortal reference count and propagate to the used components.
+	 */
+	private void incrementImmortal(Node node)
+	{
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(node);
+		while (!stack.isEmpty())
+		{
+			Node n = stack.pop();
+			if (n.immortalRefs == 0)
+			{
+				detach(n);
+				n.immortalRefs++;
+				attach(n);
+				for (Node m : n.out)
+					stack.push(m);
+			}
+			else
+				n.immortalRefs++;
+		}
+	}
+
+	/**
+	 * Decrement immortal reference count and propagate to the used components.
+	 */
+	private void decrementImmortal(Node node)
+	{
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(node);
+		while (!stack.isEmpty())
+		{
+			Node n = stack.pop();
+			if (n.immortalRefs == 1)
+			{
+				detach(n);
+				n.immortalRefs--;
+				attach(n);
+				for (Node m : n.out)
+					stack.push(m);
+			}
+			else
+				n.immortalRefs--;
+		}
+	}
+
+}
@@ -4,7 +4,6 @@
 
 package com.cosylab.acs.maci.manager;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -23,6 +22,9 @@ import com.cosylab.acs.maci.RemoteException;
 
 /**
  * Manages TS.
+ * The shutdown order is maintained incrementally by <code>ComponentInfoTopologicalOrder</code>,
+ * which is updated on every change of the components (see <code>componentChanged</code>, <code>componentRemoved</code>);
+ * this class only notifies the (dirty) containers about their components' shutdown order.
  */
 @SuppressWarnings("unchecked")
 public class ComponentInfoTopologicalSortManager implements Runnable {
@@ -42,26 +44,15 @@ public class ComponentInfoTopologicalSortManager implements Runnable {
 	 */
 	private volatile boolean destroyed = false;
 	
-	/**
-	 * Lock.
-	 */
-	private ReaderPreferenceReadWriteLock activationPendingRWLock;
-	//private ReadWriteLock activationPendingRWLock;
-	
 	/**
 	 * Dirty map.
 	 */
 	private HashSet dirtyContainerMap = new HashSet();
 
 	/**
-	 * Lock.
+	 * Current TS order.
 	 */
-	private Object listLock = new Object();
-
-	/**
-	 * Current ordered TS list.
-	 */
-	private ComponentInfo[] currentTSList = new ComponentInfo[0];
+	private ComponentInfoTopologicalOrder order = new ComponentInfoTopologicalOrder();
 
 	/**
 	 * List of all pending container shutdowns.
@@ -84,17 +75,24 @@ public class ComponentInfoTopologicalSortManager implements Runnable {
 	 */
 	public ComponentInfoTopologicalSortManager(HandleDataStore components,
 											   HandleDataStore containers,
-											   /* ReadWriteLock */ ReaderPreferenceReadWriteLock activationPendingRWLock,
 											   Set pendingContainerShutdown,
 											   ThreadPoolExecutor threadPool,
 											   Logger logger) {
 		this.components = components;
 		this.containers = containers;
-		this.activationPendingRWLock = activationPendingRWLock;
 		this.pendingContainerShutdown = pendingContainerShutdown;
 		this.threadPool = threadPool;
 		this.logger = logger;
 		
+		// initial order
+		synchronized (components)
+		{
+			List list = ComponentInfoTopologicalSort.sort(components);
+			ComponentInfo[] orderedList = new ComponentInfo[list.size()];
+			list.toArray(orderedList);
+			order.update(orderedList);
+		}
+
 		// make all containers dirty
 		synchronized (containers)
 		{
@@ -115,8 +113,8 @@ public class ComponentInfoTopologicalSortManager implements Runnable {
 	}
 	
 	/**
-	 * (Sync is clean since activationPendingRWLock is acquired and all
-	 * notify request is issued only from its reader lock).
+	 * (Sync is clean since the order is updated on every change of the components,
+	 * no activation/deactivation has to be blocked).
 	 * @see java.lang.Runnable#run()
 	 */
 	public void run() {
@@ -146,9 +144,6 @@ public class ComponentInfoTopologicalSortManager implements Runnable {
 			if (destroyed)
 				return;
 			
-			// aquire writer lock to prevent activation/deactivation
-			activationPendingRWLock.writeLock().lock();
-	
 			try 
 			{
 				Integer[] conts;
@@ -159,19 +154,6 @@ public class ComponentInfoTopologicalSortManager implements Runnable {
 					dirtyContainerMap.clear();
 				}
 
-				ComponentInfo[] orderedList; 
-				synchronized (components)
-				{
-					List list = ComponentInfoTopologicalSort.sort(components);
-					orderedList = new ComponentInfo[list.size()];
-					list.toArray(orderedList);
-				}
-				
-				synchronized (listLock) 
-				{
-					currentTSList = orderedList;
-				}
-				
 				for (int i = 0; i < conts.length; i++)
 				{
 					int handle = conts[i].intValue() & HandleConstants.HANDLE_MASK;
@@ -192,28 +174,19 @@ public class ComponentInfoTopologicalSortManager implements Runnable {
 					if (pendingContainerShutdown.contains(containerName))
 						break;
 
-					IntArray containerOrderdList = new IntArray(10);
+					ComponentInfo[] orderedList = order.getShutdownOrder(containerName);
+					IntArray containerOrderdList = new IntArray(orderedList.length);
 					for (int j = 0; j < orderedList.length; j++)
-					{
-						// if component already deactivated, skip it
-						if (orderedList[j].getContainer() == 0)
-							continue;
-						
-						// this is null proof
-						if (containerName.equals(orderedList[j].getContainerName()))
-						{
-							containerOrderdList.add(orderedList[j].getHandle());
-						}
-					}
+						containerOrderdList.add(orderedList[j].getHandle());
 					
 					// optimization
 					if (containerOrderdList.size() > 1)
 						notifyContainerShutdownOrder(containerInfo, containerOrderdList.toArray());
 				}
 			}
-			finally 
+			catch (Throwable th)
 			{
-				activationPendingRWLock.writeLock().unlock();
+				logger.log(Level.SEVERE, "Unexpected exception caught while notifying containers about shutdown order.", th);
 			}
 			try{
 				Thread.sleep(100);
@@ -227,34 +200,30 @@ public class ComponentInfoTopologicalSortManager implements Runnable {
 	}
 	
 	/**
-	 * Request topological sort.
+	 * Add or update component (called when its clients have changed).
+	 * @param componentInfo	component info.
 	 */
-	public void requestTopologicalSort() {
-
-		// aquire writer lock to prevent activation/deactivation
-		activationPendingRWLock.writeLock().lock();
+	public void componentChanged(ComponentInfo componentInfo)
+	{
+		order.update(componentInfo);
+	}
 
-		try 
-		{
-			ComponentInfo[] orderedList; 
-			synchronized (components)
-			{
-				List list = ComponentInfoTopologicalSort.sort(components);
-				orderedList = new ComponentInfo[list.size()];
-				list.toArray(orderedList);
-			}
-			
-			synchronized (listLock) 
-			{
-				currentTSList = orderedList;
-			}
-			
-		}
-		finally 
-		{
-			activationPendingRWLock.writeLock().unlock();
-		}
+	/**
+	 * Remove component.
+	 * @param componentHandle	component handle.
+	 */
+	public void componentRemoved(int componentHandle)
+	{
+		order.remove(componentHandle);
+	}
 
+	/**
+	 * Get TS statistics.
+	 * @return textual statistics.
+	 */
+	public String getStatistics()
+	{
+		return order.getStatistics();
 	}
 
 	/**
@@ -278,36 +247,9 @@ public class ComponentInfoTopologicalSortManager implements Runnable {
 	public ComponentInfo[] getComponentShutdownOrder(ContainerInfo containerInfo)
 	{
 		if (containerInfo == null)
-		{
-			synchronized (listLock) {
-				return currentTSList;
-			}
-		}
-		
-		String containerName = containerInfo.getName();
-
-		ComponentInfo[] orderedList;
-		synchronized (listLock) {
-			orderedList = currentTSList;
-		}
+			return order.getShutdownOrder();
 		
-		List containerOrderdList = new ArrayList(10);
-		for (int j = 0; j < orderedList.length; j++)
-		{
-			// if component already deactivated, skip it
-			if (orderedList[j].getContainer() == 0)
-				continue;
-			
-			// this is null proof
-			if (containerName.equals(orderedList[j].getContainerName()))
-			{
-				containerOrderdList.add(orderedList[j]);
-			}
-		}
-			
-		ComponentInfo[] retVal = new ComponentInfo[containerOrderdList.size()];
-		containerOrderdList.toArray(retVal);
-		return retVal;
+		return order.getShutdownOrder(containerInfo.getName());
 	}
 
 	/**
@@ -0,0 +1,420 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.manager;
+
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import alma.acs.concurrent.DaemonThreadFactory;
+
+/**
+ * Heartbeat scheduler, executes <code>PingTimerTask</code>s of clients and containers.
+ *
+ * A single timer thread only decides when a target is due and never calls it remotely;
+ * the (blocking) pings are executed by a bounded pool of ping threads. This way a hung
+ * client or container does not delay the heartbeat of the others.
+ *
+ * There is at most one outstanding ping per target: a heartbeat is skipped while the previous ping did not return.
+ * If a ping call has not returned within the target's deadline, it is counted as a failed ping attempt
+ * (see <code>PingTimerTask#pingTimedOut()</code>), and so once more for each further deadline it stays outstanding,
+ * so that the retry and logout semantics of <code>PingTimerTask</code> are kept.
+ * A timed-out ping is resolved only once: if it returns late, its result is ignored.
+ * The deadlines are handled by a separate deadline thread, so that they expire (and hung targets get logged out)
+ * also when all the ping threads are blocked by hung targets.
+ *
+ * The default deadline is the client-side timeout of the ping call (<code>manager.pingCallTimeout</code>, see
+ * <code>ClientProxy</code>), i.e. the time after which a ping failed also when it was executed by the timer thread,
+ * so that slow but alive targets are not logged out earlier than before.
+ *
+ * The first heartbeat of each target is delayed by a random fraction of its period (jitter),
+ * so that targets registered at the same time (e.g. on manager recovery) are not pinged in bursts.
+ *
+ * @version	@@VERSION@@
+ */
+public class HeartbeatScheduler
+{
+
+	/**
+	 * Default max. number of concurrent pings.
+	 */
+	public static final int DEFAULT_PING_THREADS = 10;
+
+	/**
+	 * Default fraction of the ping period used as max. jitter of the first heartbeat.
+	 */
+	public static final double DEFAULT_JITTER = 0.1;
+
+	/**
+	 * Default deadline of a ping (in ms), same as the default client-side timeout of the ping call.
+	 */
+	public static final long DEFAULT_DEADLINE = 20000;
+
+	/**
+	 * Interval of statistics reports (in ms).
+	 */
+	private static final long STATISTICS_REPORT_INTERVAL = 10 * 60000L;	// 10 minutes
+
+	/**
+	 * Logger.
+	 */
+	private final Logger logger;
+
+	/**
+	 * Timer, only schedules (never executes) pings.
+	 */
+	private final ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * Bounded pool executing pings.
+	 */
+	private final ThreadPoolExecutor pingExecutor;
+
+	/**
+	 * Deadline timer, handles the pings which did not return within their deadline.
+	 */
+	private final ScheduledThreadPoolExecutor deadlineTimer;
+
+	/**
+	 * Deadline of a ping (in ms) used if not given when scheduling.
+	 */
+	private final long defaultDeadline;
+
+	/**
+	 * Max. jitter (fraction of the period).
+	 */
+	private final double jitter;
+
+	/**
+	 * Random generator for jitter.
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * Shutdown status.
+	 */
+	private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+	/**
+	 * Statistics.
+	 */
+	private final AtomicLong pingCount = new AtomicLong();
+	private final AtomicLong deadlineMissedCount = new AtomicLong();
+	private final AtomicLong rttSumNs = new AtomicLong();
+	private final AtomicLong rttMaxNs = new AtomicLong();
+	private final AtomicLong lagSumNs = new AtomicLong();
+	private final AtomicLong lagMaxNs = new AtomicLong();
+
+	/**
+	 * Heartbeat of one target (client or container).
+	 */
+	private class PingTarget implements Runnable
+	{
+		private final PingTimerTask task;
+		private final long periodNs;
+		private final long deadlineNs;
+
+		/**
+		 * Ping in progress flag, guarantees at most one outstanding ping per target.
+		 */
+		private final AtomicBoolean pingInProgress = new AtomicBoolean(false);
+
+		/**
+		 * Resolved flag of the outstanding ping, set either by its completion or by its timeout.
+		 */
+		private volatile AtomicBoolean pingResolved;
+
+		/**
+		 * Deadline of the outstanding ping.
+		 */
+		private volatile ScheduledFuture<?> pingDeadline;
+
+		/**
+		 * Time when the next heartbeat is expected (to measure scheduling lag).
+		 */
+		private long nextHeartbeatNs;
+
+		private volatile ScheduledFuture<?> future;
+
+		public PingTarget(PingTimerTask task, long initialDelayNs, long periodNs, long deadlineNs)
+		{
+			this.task = task;
+			this.periodNs = periodNs;
+			this.deadlineNs = deadlineNs;
+			this.nextHeartbeatNs = System.nanoTime() + initialDelayNs;
+		}
+
+		/**
+		 * Executed by the timer thread.
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run()
+		{
+			if (task.isCancelled() || shutdown.get())
+			{
+				ScheduledFuture<?> f = future;
+				if (f != null)
+					f.cancel(false);
+				return;
+			}
+
+			final long heartbeatNs = nextHeartbeatNs;
+			nextHeartbeatNs += periodNs;
+
+			// previous ping still did not return, its deadline is handled by the deadline timer
+			if (!pingInProgress.compareAndSet(false, true))
+				return;
+
+			final AtomicBoolean resolved = new AtomicBoolean(false);
+			pingResolved = resolved;
+			try
+			{
+				pingExecutor.execute(new Runnable() {
+					public void run() {
+						long startNs = System.nanoTime();
+						recordMax(lagMaxNs, lagSumNs, Math.max(0, startNs - heartbeatNs));
+						try {
+							// the deadline applies to the ping call, not to the time the ping waited for a ping thread
+							pingDeadline = deadlineTimer.schedule(new PingDeadline(resolved), deadlineNs, TimeUnit.NANOSECONDS);
+							task.ping(resolved);
+						} finally {
+							recordMax(rttMaxNs, rttSumNs, System.nanoTime() - startNs);
+							pingCount.incrementAndGet();
+							ScheduledFuture<?> d = pingDeadline;
+							if (d != null)
+								d.cancel(false);
+							pingInProgress.set(false);
+						}
+					}
+				});
+			}
+			catch (Throwable th)
+			{
+				// rejected (shutdown)
+				pingInProgress.set(false);
+			}
+		}
+
+		/**
+		 * Deadline of an outstanding ping, executed by the deadline timer thread.
+		 */
+		private class PingDeadline implements Runnable
+		{
+			private final AtomicBoolean resolved;
+
+			public PingDeadline(AtomicBoolean resolved)
+			{
+				this.resolved = resolved;
+			}
+
+			public void run()
+			{
+				if (task.isCancelled() || shutdown.get())
+					return;
+
+				// a ping that completed (but did not yet release the target) is not timed-out,
+				// a ping that stays outstanding fails once per deadline
+				if (resolved.compareAndSet(false, true) ||
+					(pingResolved == resolved && pingInProgress.get()))
+				{
+					// late completion of the ping will be ignored
+					deadlineMissedCount.incrementAndGet();
+					task.pingTimedOut();
+
+					try
+					{
+						if (pingResolved == resolved && pingInProgress.get())
+							pingDeadline = deadlineTimer.schedule(this, deadlineNs, TimeUnit.NANOSECONDS);
+					}
+					catch (Throwable th)
+					{
+						// rejected (shutdown)
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param logger			logger.
+	 * @param pingThreads		max. number of concurrent pings.
+	 * @param jitter			max. jitter of the first heartbeat, as fraction of the ping period.
+	 * @param defaultDeadline	deadline of a ping in ms, if not given when scheduling.
+	 */
+	public HeartbeatScheduler(Logger logger, int pingThreads, double jitter, long defaultDeadline)
+	{
+		assert (logger != null);
+
+		if (pingThreads <= 0)
+			throw new IllegalArgumentException("pingThreads must be > 0");
+		if (jitter < 0.0 || jitter > 1.0)
+			throw new IllegalArgumentException("jitter must be in [0, 1]");
+		if (defaultDeadline <= 0)
+			throw new IllegalArgumentException("defaultDeadline must be > 0");
+
+		this.logger = logger;
+		this.jitter = jitter;
+		this.defaultDeadline = defaultDeadline;
+
+		timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("managerHeartbeatTimer"));
+		deadlineTimer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("managerHeartbeatDeadline"));
+		// most pings return before their deadline
+		deadlineTimer.setRemoveOnCancelPolicy(true);
+		pingExecutor = new ThreadPoolExecutor(pingThreads, pingThreads,
+				  Long.MAX_VALUE, TimeUnit.NANOSECONDS,
+				  new LinkedBlockingQueue<Runnable>(),
+				  new DaemonThreadFactory("managerHeartbeat"));
+
+		timer.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				if (HeartbeatScheduler.this.logger.isLoggable(Level.FINE))
+					HeartbeatScheduler.this.logger.fine("Heartbeat statistics: " + getStatistics(true));
+			}
+		}, STATISTICS_REPORT_INTERVAL, STATISTICS_REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Constructor with default deadline.
+	 * @param logger		logger.
+	 * @param pingThreads	max. number of concurrent pings.
+	 * @param jitter		max. jitter of the first heartbeat, as fraction of the ping period.
+	 */
+	public HeartbeatScheduler(Logger logger, int pingThreads, double jitter)
+	{
+		this(logger, pingThreads, jitter, DEFAULT_DEADLINE);
+	}
+
+	/**
+	 * Constructor with default jitter.
+	 * @param logger		logger.
+	 * @param pingThreads	max. number of concurrent pings.
+	 */
+	public HeartbeatScheduler(Logger logger, int pingThreads)
+	{
+		this(logger, pingThreads, DEFAULT_JITTER);
+	}
+
+	/**
+	 * Schedules the heartbeat of a target, with the default deadline of a ping.
+	 * Heartbeat is stopped when the task is canceled.
+	 * @param task			ping task.
+	 * @param initialDelay	delay of the first ping in ms (jitter is added).
+	 * @param period		ping period in ms.
+	 */
+	public void schedule(PingTimerTask task, long initialDelay, long period)
+	{
+		schedule(task, initialDelay, period, defaultDeadline);
+	}
+
+	/**
+	 * Schedules the heartbeat of a target.
+	 * Heartbeat is stopped when the task is canceled.
+	 * @param task			ping task.
+	 * @param initialDelay	delay of the first ping in ms (jitter is added).
+	 * @param period		ping period in ms.
+	 * @param deadline		time in ms after which an outstanding ping is considered as failed.
+	 */
+	public void schedule(PingTimerTask task, long initialDelay, long period, long deadline)
+	{
+		assert (task != null);
+
+		if (period <= 0 || deadline <= 0)
+			throw new IllegalArgumentException("period and deadline must be > 0");
+
+		if (shutdown.get())
+			return;
+
+		long delay = Math.max(0, initialDelay);
+		synchronized (random)
+		{
+			delay += (long)(random.nextDouble() * jitter * period);
+		}
+
+		PingTarget target = new PingTarget(task,
+				TimeUnit.MILLISECONDS.toNanos(delay),
+				TimeUnit.MILLISECONDS.toNanos(period),
+				TimeUnit.MILLISECONDS.toNanos(deadline));
+		target.future = timer.scheduleAtFixedRate(target, delay, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops all the heartbeats.
+	 */
+	public void shutdown()
+	{
+		if (shutdown.getAndSet(true))
+			return;
+
+		timer.shutdownNow();
+		deadlineTimer.shutdownNow();
+		pingExecutor.shutdownNow();
+	}
+
+	/**
+	 * Number of completed pings.
+	 * @return number of completed pings.
+	 */
+	public long getPingCount()
+	{
+		return pingCount.get();
+	}
+
+	/**
+	 * Number of times an outstanding ping exceeded its deadline.
+	 * @return number of missed deadlines.
+	 */
+	public long getDeadlineMissedCount()
+	{
+		return deadlineMissedCount.get();
+	}
+
+	/**
+	 * Returns the statistics as text: pings, missed deadlines, average/max round-trip time
+	 * and average/max scheduling lag (time from the planned heartbeat to the start of the ping).
+	 * @param resetMax	reset max. values.
+	 * @return statistics.
+	 */
+	public String getStatistics(boolean resetMax)
+	{
+		long pings = pingCount.get();
+		StringBuffer sbuff = new StringBuffer();
+		sbuff.append("pings = ").append(pings);
+		sbuff.append(", missed deadlines = ").append(deadlineMissedCount.get());
+		sbuff.append(", pending = ").append(pingExecutor.getQueue().size());
+		sbuff.append(", active = ").append(pingExecutor.getActiveCount());
+		if (pings > 0)
+		{
+			sbuff.append(", avg. RTT = ").append(TimeUnit.NANOSECONDS.toMicros(rttSumNs.get() / pings)).append(" us");
+			sbuff.append(", avg. lag = ").append(TimeUnit.NANOSECONDS.toMicros(lagSumNs.get() / pings)).append(" us");
+		}
+		long rttMax = resetMax ? rttMaxNs.getAndSet(0) : rttMaxNs.get();
+		long lagMax = resetMax ? lagMaxNs.getAndSet(0) : lagMaxNs.get();
+		sbuff.append(", max. RTT = ").append(TimeUnit.NANOSECONDS.toMicros(rttMax)).append(" us");
+		sbuff.append(", max. lag = ").append(TimeUnit.NANOSECONDS.toMicros(lagMax)).append(" us");
+		return sbuff.toString();
+	}
+
+	/**
+	 * Adds a sample to the sum and updates the max.
+	 */
+	private static void recordMax(AtomicLong max, AtomicLong sum, long value)
+	{
+		sum.addAndGet(value);
+		long current;
+		while (value > (current = max.get()))
+		{
+			if (max.compareAndSet(current, value))
+				break;
+		}
+	}
+}
@@ -12,6 +12,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Deque;
@@ -22,6 +23,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -30,10 +32,12 @@ import java.util.StringTokenizer;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -133,6 +137,7 @@ import com.cosylab.acs.maci.manager.recovery.ContainerInfoCommandComponentRemove
 import com.cosylab.acs.maci.manager.recovery.DefaultComponentCommandPut;
 import com.cosylab.acs.maci.manager.recovery.UnavailableComponentCommandPut;
 import com.cosylab.acs.maci.manager.recovery.UnavailableComponentCommandRemove;
+import com.cosylab.acs.maci.plug.ClientProxy;
 import com.cosylab.acs.maci.plug.ManagerProxy;
 import com.cosylab.cdb.client.CDBAccess;
 import com.cosylab.cdb.client.DAOProxy;
@@ -394,9 +399,27 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			{
 				gnt = new GroupedNotifyTask(key, runnable);
 				groupedNotifyTaskMap.put(key, gnt);
-				threadPool.execute(gnt);
+				if (notificationCoalescingWindow > 0 && runnable instanceof ComponentAvailabilityTask)
+				{
+					// give other notifications a chance to be coalesced
+					final GroupedNotifyTask delayedTask = gnt;
+					notificationCoalescingTimer.schedule(new TimerTask() {
+						public void run() {
+							try {
+								threadPool.execute(delayedTask);
+							} catch (RejectedExecutionException ree) {
+								// shutdown
+								synchronized (groupedNotifyTaskMap) {
+									groupedNotifyTaskMap.remove(delayedTask.key);
+								}
+							}
+						}
+					}, notificationCoalescingWindow);
+				}
+				else
+					threadPool.execute(gnt);
 			}
-			else
+			else if (!(runnable instanceof ComponentAvailabilityTask && gnt.coalesceTask((ComponentAvailabilityTask)runnable)))
 				gnt.addTask(runnable);
 		}
 	}
@@ -423,6 +446,23 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			tasks.addLast(task);
 		}
 
+		/**
+		 * Coalesces notifications with the last queued task, if it is also <code>ComponentAvailabilityTask</code>.
+		 * Must be synced outside.
+		 * @return <code>true</code> if coalesced.
+		 */
+		public boolean coalesceTask(ComponentAvailabilityTask task)
+		{
+			GroupedRunnable lastTask = tasks.peekLast();
+			if (lastTask instanceof ComponentAvailabilityTask)
+			{
+				((ComponentAvailabilityTask)lastTask).queue.addAll(task.queue);
+				return true;
+			}
+			else
+				return false;
+		}
+
 		public void run()
 		{
 			while (true)
@@ -654,6 +694,12 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private transient Lock componentsLock = null;
 
+	/**
+	 * Index of {@link #components} used by name/type queries, updated by the component commands.
+	 * Reading it does not require {@link #componentsLock}.
+	 */
+	private transient volatile ComponentInfoIndex componentInfoIndex = null;
+
 	public enum WhyUnloadedReason { REMOVED, TIMEOUT, DISAPPEARED, REPLACED };
 	/**
 	 * Monitor entry generated at every handle removal.
@@ -726,6 +772,11 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private transient Timer heartbeatTask = null;
 
+	/**
+	 * Heartbeat (ping) scheduler.
+	 */
+	private transient HeartbeatScheduler heartbeatScheduler = null;
+
 	/**
 	 * Delayed release timer.
 	 */
@@ -751,16 +802,6 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private transient Map<String, ReferenceCountingLock> activationSynchronization;
 
-	/**
-	 * Activation/deactivation synchronization mechanism.
-	 * Reader lock is acquired when activation/deactivation
-	 * is pending (i.e. until completed) and writer lock by
-	 * processes which require not to be run until
-	 * activation/deactivation is in progress.
-	 */
-	private transient ReaderPreferenceReadWriteLock activationPendingRWLock;
-//	private transient ReadWriteLock activationPendingRWLock;
-	
 	/**
 	 * Shutdown status.
 	 */
@@ -836,6 +877,11 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private transient String[] componentListCache = null;
 
+	/**
+	 * Sorted copy of {@link #componentListCache}, used by name queries.
+	 */
+	private transient volatile String[] sortedComponentListCache = null;
+
 	/**
 	 * CDB component specification system property name.
 	 */
@@ -877,6 +923,52 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	 */
 	private static final int HANDLE_MONITORING_TIME_MIN = 120;
 
+	/**
+	 * Max. number of concurrent pings (heartbeat threads) property name.
+	 */
+	private static final String NAME_HEARTBEAT_THREADS = "manager.heartbeat.threads";
+
+	/**
+	 * Max. number of concurrent pings.
+	 */
+	private transient int heartbeatThreads = HeartbeatScheduler.DEFAULT_PING_THREADS;
+
+	/**
+	 * Coalescing window of component availability notifications (in ms) property name.
+	 */
+	private static final String NAME_NOTIFICATION_COALESCING_WINDOW = "manager.notification.coalescingWindow";
+
+	/**
+	 * Default coalescing window of component availability notifications (in ms).
+	 */
+	private static final int NOTIFICATION_COALESCING_WINDOW_MS = 20;
+
+	/**
+	 * Time (in ms) the first component availability notification of a client is delayed,
+	 * so that notifications that follow are sent in the same remote call, <code>0</code> to disable the delay.
+	 */
+	private transient int notificationCoalescingWindow = NOTIFICATION_COALESCING_WINDOW_MS;
+
+	/**
+	 * Timer delaying component availability notifications.
+	 */
+	private transient Timer notificationCoalescingTimer;
+
+	/**
+	 * Number of component availability notification requests (per client).
+	 */
+	private transient AtomicLong availabilityNotificationRequests;
+
+	/**
+	 * Number of <code>components_available</code>/<code>components_unavailable</code> remote calls.
+	 */
+	private transient AtomicLong availabilityNotificationCalls;
+
+	/**
+	 * Number of dropped (superseded) per-component availability notifications.
+	 */
+	private transient AtomicLong supersededAvailabilityNotifications;
+
 	/**
 	 * Handle monitoring flag. 
 	 */	
@@ -1014,15 +1106,17 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		componentsLock = (ProfilingReentrantLock.isProfilingEnabled 
 				? new ProfilingReentrantLock("componentsLock")
 				: new ReentrantLock() );
+		initializeComponentInfoIndex();
 
 		random = new Random();
 		heartbeatTask = new Timer(true);
+		// a ping fails after the same time as when the pings were executed by a single timer thread
+		heartbeatScheduler = new HeartbeatScheduler(logger, heartbeatThreads, HeartbeatScheduler.DEFAULT_JITTER, ClientProxy.getPingTimeout());
 		delayedDeactivationTask = new Timer(true);
 
 		containerLoggedInMonitor = new Object();
 
 		activationSynchronization = new HashMap<String, ReferenceCountingLock>();
-		activationPendingRWLock = new ReaderPreferenceReadWriteLock();
 		shutdown = new AtomicBoolean(false);
 		
 		threadPool = new ThreadPoolExecutor(poolThreads, poolThreads,
@@ -1039,6 +1133,10 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		clientMessageQueue = new HashMap<Client, LinkedList<ClientMessageTask>>();
 		
 		groupedNotifyTaskMap = new HashMap<Object, GroupedNotifyTask>();
+		notificationCoalescingTimer = new Timer(true);
+		availabilityNotificationRequests = new AtomicLong();
+		availabilityNotificationCalls = new AtomicLong();
+		supersededAvailabilityNotifications = new AtomicLong();
 		
 		threadsUsedPercentage = new AtomicInteger(0);
 		
@@ -1096,7 +1194,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 		// start topology sort manager
 		topologySortManager = new ComponentInfoTopologicalSortManager(
-				components, containers, activationPendingRWLock,
+				components, containers,
 				pendingContainerShutdown, threadPool, logger);
 		
 		if (prevayler == null)
@@ -1142,7 +1240,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register container to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, clientInfo, alarmSource);
 			containerInfo.setTask(task);
-			heartbeatTask.schedule(task, 0, containerInfo.getPingInterval());
+			heartbeatScheduler.schedule(task, 0, containerInfo.getPingInterval());
 	    }
 
 	    // administrators
@@ -1156,7 +1254,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register administrator to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, adminInfo, null);
 			adminInfo.setTask(task);
-			heartbeatTask.schedule(task, 0, administratorPingInterval);
+			heartbeatScheduler.schedule(task, 0, administratorPingInterval);
 	    }
 
 	    // clients
@@ -1170,7 +1268,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register client to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, clientInfo, null);
 			clientInfo.setTask(task);
-			heartbeatTask.schedule(task, 0, clientPingInterval);
+			heartbeatScheduler.schedule(task, 0, clientPingInterval);
 	    }
 	}
 
@@ -1592,27 +1690,16 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// map of components to be returned
 			Map<String, ComponentInfo> map = new HashMap<String, ComponentInfo>();
 
-			// read active/registered components
-			componentsLock.lock();
-			try {
-				int h = components.first();
-				while (h != 0)
+			// read active/registered components (using the index, no need to lock components)
+			for (ComponentInfo componentInfo : componentInfoIndex.query(name_wc, type_wc))
+			{
+				if (componentInfo.getComponent() != null)
 				{
-					ComponentInfo componentInfo = (ComponentInfo)components.get(h);
-					if (componentInfo.getComponent() != null &&
-						WildcharMatcher.match(name_wc, componentInfo.getName()) &&
-						WildcharMatcher.match(type_wc, componentInfo.getType()))
-						{
-							// access rights to be checked here...
-
-							// found the match, add existing info to list
-							map.put(componentInfo.getName(), componentInfo);
-						}
+					// access rights to be checked here...
 
-					h = components.next(h);
+					// found the match, add existing info to list
+					map.put(componentInfo.getName(), componentInfo);
 				}
-			} finally {
-				componentsLock.unlock();
 			}
 
 			// add also non-active, if requested
@@ -1627,28 +1714,23 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 					{
 						// get names of all components
 						/*String[] ids =*/ componentsDAO.get_field_data(""); /// @TODO here to check if CDB is available
-					    String[] ids = getComponentsList();
+					    // only the names matching the criteria (prefix search in the sorted list)
+					    List<String> ids = ComponentInfoIndex.matchNames(getSortedComponentsList(), name_wc);
 
 						// test names
-						for (int i = 0; i < ids.length; i++)
+						for (int i = 0; i < ids.size(); i++)
 						{
 							// read name
-							String name = ids[i]; //readStringCharacteristics(componentsDAO, ids[i]+"/Name");
-							if (name == null)
-							{
-								logger.log(Level.WARNING,"Misconfigured CDB, there is no name of component '"+ids[i]+"' defined.");
-								continue;
-							}
+							String name = ids.get(i); //readStringCharacteristics(componentsDAO, ids[i]+"/Name");
 
 							// add if not already added and matches criteria
 							if (!map.containsKey(name) &&
 								//!name.equals(ComponentSpec.COMPSPEC_ANY) &&
-							    name.indexOf(ComponentSpec.COMPSPEC_ANY) != 0 &&
-								WildcharMatcher.match(name_wc, name))
+							    name.indexOf(ComponentSpec.COMPSPEC_ANY) != 0)
 							{
 
 								// read type
-								String type = readStringCharacteristics(componentsDAO, ids[i]+"/Type");
+								String type = readStringCharacteristics(componentsDAO, name+"/Type");
 								if (type == null)
 								{
 									logger.log(Level.WARNING,"Misconfigured CDB, there is no type of component '"+name+"' defined.");
@@ -1660,7 +1742,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 									WildcharMatcher.match(type_wc, type))
 								{
 									// read code
-									String code = readStringCharacteristics(componentsDAO, ids[i]+"/Code");
+									String code = readStringCharacteristics(componentsDAO, name+"/Code");
 									if (code == null)
 									{
 										logger.log(Level.WARNING,"Misconfigured CDB, there is no code of component '"+name+"' defined.");
@@ -1673,7 +1755,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 
 									// read container
-									String container = readStringCharacteristics(componentsDAO, ids[i]+"/Container");
+									String container = readStringCharacteristics(componentsDAO, name+"/Container");
 									if (container == null)
 									{
 										logger.log(Level.WARNING,"Misconfigured CDB, there is no container name of component '"+name+"' defined.");
@@ -2757,6 +2839,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		logger.log(Level.FINER,"Canceling heartbeat task.");
 		// cancel hertbeat task
 		heartbeatTask.cancel();
+		heartbeatScheduler.shutdown();
 		topologySortManager.destroy();
 
 		/*
@@ -2779,7 +2862,6 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			logger.log(Level.FINER,"Releasing all components in the system.");
 			try
 			{
-				topologySortManager.requestTopologicalSort();
 				releaseComponents(topologySortManager.getComponentShutdownOrder(null));
 			}
 			catch (Throwable th)
@@ -2803,6 +2885,8 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
             if (!threadPool.awaitTermination(3, TimeUnit.SECONDS))
             	threadPool.shutdownNow();
         } catch (InterruptedException ie) { /* noop */ } 
+		notificationCoalescingTimer.cancel();
+		logger.log(Level.FINE, "Component availability notifications: " + getComponentAvailabilityNotificationStatistics());
 
         if (alarmSource != null) {
             alarmSource.tearDown();
@@ -2963,7 +3047,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 				// register container to the heartbeat manager
 				PingTimerTask task = new PingTimerTask(this, logger, clientInfo, alarmSource);
 				containerInfo.setTask(task);
-				heartbeatTask.schedule(task, containerInfo.getPingInterval(), containerInfo.getPingInterval());
+				heartbeatScheduler.schedule(task, containerInfo.getPingInterval(), containerInfo.getPingInterval());
 
 				// !!! ACID - register AddContainerCommand
 				executeCommand(new ContainerCommandSet(handle, containerInfo));
@@ -3534,6 +3618,9 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 				    	componentInfo.setComponent(infos[i].getComponent());
 				    	componentInfo.setContainer(infos[i].getContainer());
 				    	componentInfo.setContainerName(infos[i].getContainerName());
+				    	// !!! ACID 3
+				    	// store the changes (also updates the shutdown order of the container)
+				    	executeCommand(new ComponentCommandSet(handle, componentInfo));
 
 				    	// remove if unavailable and notify
 				    	synchronized (unavailableComponents)
@@ -4007,7 +4094,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register administrator to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, clientInfo, null);
 			clientInfo.setTask(task);
-			heartbeatTask.schedule(task, administratorPingInterval, administratorPingInterval);
+			heartbeatScheduler.schedule(task, administratorPingInterval, administratorPingInterval);
 
 			// !!! ACID - register AddAdministratorCommand
 			executeCommand(new AdministratorCommandSet(handle, clientInfo));
@@ -4084,7 +4171,7 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			// register client to the heartbeat manager
 			PingTimerTask task = new PingTimerTask(this, logger, clientInfo, null);
 			clientInfo.setTask(task);
-			heartbeatTask.schedule(task, clientPingInterval, clientPingInterval);
+			heartbeatScheduler.schedule(task, clientPingInterval, clientPingInterval);
 
 			// !!! ACID - register AddClientCommand
 			executeCommand(new ClientCommandSet(handle, clientInfo));
@@ -5361,57 +5448,13 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 		if (clients != null)
 		{
-
-			/**
-			 * Task thats invokes <code>Client#components_available</code> method.
-			 */
-			class ComponentAvailableTask extends DefaultGroupedRunnable
-			{
-				private ClientInfo clientInfo;
-				private ComponentInfo[] info;
-
-				public ComponentAvailableTask(ClientInfo clientInfo, ComponentInfo[] info)
-				{
-					this.clientInfo = clientInfo;
-					this.info = info;
-				}
-
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
-
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							clientInfo.getClient().components_available(info);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Client.components_available' on "+clientInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Client.components_available' on "+clientInfo+".", re);
-						}
-					}
-				}
-			}
-
-
 			// spawn new task which surely does not block
 			for (int i = 0; i < clients.length; i++)
 			{
-				GroupedRunnable task = new ComponentAvailableTask(clients[i], info);
-				if (clients[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(clients[i].getClient(), task);
-					//threadPool.execute(task);
+				ComponentAvailabilityTask task = new ComponentAvailabilityTask(clients[i]);
+				task.queue.available(info);
+				notifyComponentAvailability(task);
 			}
-
 		}
 
 	}
@@ -5432,59 +5475,87 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 
 		if (clients != null)
 		{
-
-			/**
-			 * Task thats invokes <code>Client#components_unavailable</code> method.
-			 */
-			class ComponentUnavailableTask extends DefaultGroupedRunnable
+			// spawn new task which surely does not block
+			for (int i = 0; i < clients.length; i++)
 			{
-				private ClientInfo clientInfo;
-				private String[] names;
+				ComponentAvailabilityTask task = new ComponentAvailabilityTask(clients[i]);
+				task.queue.unavailable(names);
+				notifyComponentAvailability(task);
+			}
+		}
 
-				public ComponentUnavailableTask(ClientInfo clientInfo, String[] names)
-				{
-					this.clientInfo = clientInfo;
-					this.names = names;
-				}
+	}
 
-				public void run()
-				{
-					//final int MAX_RETRIES = 3;
+	/**
+	 * Runs or registers (coalesces) <code>ComponentAvailabilityTask</code>.
+	 * @param	task	task to be run.
+	 */
+	private void notifyComponentAvailability(ComponentAvailabilityTask task)
+	{
+		availabilityNotificationRequests.incrementAndGet();
+		if (task.clientInfo.getClient() instanceof SynchronousAdministrator)
+			task.run();
+		else
+			registerGroupedNotifyTaks(task.clientInfo.getClient(), task);
+	}
 
-					//for (int retries = 0; retries < MAX_RETRIES; retries++)
-					{
-						try
-						{
-							clientInfo.getClient().components_unavailable(names);
-							//break;
-						}
-						catch (RemoteTransientException re)
-						{
-							logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Client.components_unavailable' on "+clientInfo+".", re);
-							cancelAll();
-						}
-						catch (RemoteException re)
-						{
-							logger.log(Level.WARNING, "RemoteException caught while invoking 'Client.components_unavailable' on "+clientInfo+".", re);
-						}
-					}
-				}
-			}
+	/**
+	 * Task thats invokes <code>Client#components_available</code> and <code>Client#components_unavailable</code> methods.
+	 * Notifications queued for the same client are coalesced into one task (see <code>GroupedNotifyTask</code>).
+	 */
+	private class ComponentAvailabilityTask extends DefaultGroupedRunnable
+	{
+		private final ClientInfo clientInfo;
+		// synced to groupedNotifyTaskMap until taken from the GroupedNotifyTask
+		private final ComponentAvailabilityQueue queue = new ComponentAvailabilityQueue();
 
+		public ComponentAvailabilityTask(ClientInfo clientInfo)
+		{
+			this.clientInfo = clientInfo;
+		}
 
-			// spawn new task which surely does not block
-			for (int i = 0; i < clients.length; i++)
+		public void run()
+		{
+			supersededAvailabilityNotifications.addAndGet(queue.getSupersededCount());
+			for (ComponentAvailabilityQueue.Batch batch : queue.drain())
 			{
-				GroupedRunnable task = new ComponentUnavailableTask(clients[i], names);
-				if (clients[i].getClient() instanceof SynchronousAdministrator)
-					task.run();
-				else
-					registerGroupedNotifyTaks(clients[i].getClient(), task);
-					//threadPool.execute(task);
+				availabilityNotificationCalls.incrementAndGet();
+				String method = batch.isAvailable() ? "components_available" : "components_unavailable";
+				try
+				{
+					if (batch.isAvailable())
+						clientInfo.getClient().components_available(batch.getInfos());
+					else
+						clientInfo.getClient().components_unavailable(batch.getNames());
+				}
+				catch (RemoteTransientException re)
+				{
+					logger.log(Level.WARNING, "RemoteTransientException caught while invoking 'Client." + method + "' on "+clientInfo+".", re);
+					cancelAll();
+					break;
+				}
+				catch (RemoteException re)
+				{
+					logger.log(Level.WARNING, "RemoteException caught while invoking 'Client." + method + "' on "+clientInfo+".", re);
+				}
 			}
-
 		}
+	}
 
+	/**
+	 * Returns statistics of <code>components_available</code>/<code>components_unavailable</code> notifications:
+	 * number of notification requests (one remote call per client each before coalescing), number of remote calls made,
+	 * number of calls saved by coalescing and number of dropped (superseded) per-component notifications.
+	 * @return	statistics, non-<code>null</code>.
+	 */
+	public String getComponentAvailabilityNotificationStatistics()
+	{
+		long requests = availabilityNotificationRequests.get();
+		long calls = availabilityNotificationCalls.get();
+		return "notification requests: " + requests +
+			", calls: " + calls +
+			", calls saved: " + Math.max(0, requests - calls) +
+			", superseded notifications: " + supersededAvailabilityNotifications.get();
 	}
 
 
@@ -5942,13 +6013,8 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		String lockNotAcquiredCause = acquireSynchronizationObject(name, lockTimeoutMillis, "request component " + name);
 		if (lockNotAcquiredCause == null)
 		{
-			boolean releaseRWLock = true;
 			try
 			{
-				// try to acquire activation readers lock first
-				// NOTE: the locks are NOT reentrant
-				activationPendingRWLock.readLock().lock();
-
 				// Let AcsJCannotGetComponentEx fly up
 				ComponentInfo componentInfo = null;
 				try
@@ -5973,9 +6039,6 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			}
 			finally
 			{
-				if (releaseRWLock) {
-					activationPendingRWLock.readLock().unlock();
-				}
 				releaseSynchronizationObject(name);
 			}
 		}
@@ -6144,20 +6207,13 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		String lockNotAcquiredCause = acquireSynchronizationObject(name, getLockTimeout(), "request component " + name);
 		if (lockNotAcquiredCause == null)
 		{
-			boolean releaseRWLock = true;
 			try
 			{
-				// try to acquire activation readers lock first
-				// NOTE: the locks are NOT reentrant
-				activationPendingRWLock.readLock().lock();
-
 				// AcsJComponentSpecIncompatibleWithActiveComponentEx flies up
 				return internalNoSyncRequestComponent(requestor, name, type, code, containerName, keepAliveTime, status, activate);
 			}
 			finally
 			{
-				if (releaseRWLock)
-					activationPendingRWLock.readLock().unlock();
 				releaseSynchronizationObject(name);
 			}
 		}
@@ -7313,7 +7369,6 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		String lockNotAcquiredCause = acquireSynchronizationObject(name, lockTimeout, "deactivate component " + name);
 		if (lockNotAcquiredCause == null)
 		{
-			boolean releaseRWLock = false;
 			try
 			{
 				// resolve componentInfo from curl
@@ -7342,11 +7397,6 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 				if (componentInfo == null)
 					return;
 
-				// try to acquire activation readers lock first
-				// NOTE: the locks are NOT reentrant
-				releaseRWLock = true;
-				activationPendingRWLock.readLock().lock();
-
 				try {
 					internalNoSyncDeactivateComponent(componentInfo);
 				} catch (Throwable th) {
@@ -7355,8 +7405,6 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			}
 			finally
 			{
-				if (releaseRWLock)
-					activationPendingRWLock.readLock().unlock();
 				releaseSynchronizationObject(name);
 			}
 		}
@@ -7414,19 +7462,12 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		String lockNotAcquiredCause = acquireSynchronizationObject(name, lockTimeout, "release component " + name);
 		if (lockNotAcquiredCause == null)
 		{
-			boolean releaseRWLock = true;
 			try
 			{
-				// try to acquire activation readers lock first
-				// NOTE: the locks are NOT reentrant
-				activationPendingRWLock.readLock().lock();
-
 				return internalNoSyncReleaseComponent(owner, h, force);
 			}
 			finally
 			{
-				if (releaseRWLock)
-					activationPendingRWLock.readLock().unlock();
 				releaseSynchronizationObject(name);
 			}
 		}
@@ -8023,19 +8064,12 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		String lockNotAcquiredCause = acquireSynchronizationObject(name, lockTimeout, "restart component " + name);
 		if (lockNotAcquiredCause == null)
 		{
-			boolean releaseRWLock = true;
 			try
 			{
-				// try to acquire activation readers lock first
-				// NOTE: the locks are NOT reentrant
-				activationPendingRWLock.readLock().lock();
-
 				return internalNoSyncRestartComponent(owner, h);
 			}
 			finally
 			{
-				if (releaseRWLock)
-					activationPendingRWLock.readLock().unlock();
 				releaseSynchronizationObject(name);
 			}
 		}
@@ -9714,6 +9748,8 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	{
 		enableHandleMonitoring = System.getProperties().containsKey(NAME_HANDLE_MONITORING);
 		enableHandleMonitoringDurationMins = Integer.getInteger(NAME_HANDLE_MONITORING_TIME, HANDLE_MONITORING_TIME_MIN);
+		heartbeatThreads = Math.max(1, Integer.getInteger(NAME_HEARTBEAT_THREADS, HeartbeatScheduler.DEFAULT_PING_THREADS));
+		notificationCoalescingWindow = Math.max(0, Integer.getInteger(NAME_NOTIFICATION_COALESCING_WINDOW, NOTIFICATION_COALESCING_WINDOW_MS));
 		
 		DAOProxy managerDAO = getManagerDAOProxy();
 		if (managerDAO == null)
@@ -9779,12 +9815,14 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 			{
 			    // initial refresh
 			    componentListCache = refreshComponentsList(componentsDAO);
+			    sortedComponentListCache = sortedCopy(componentListCache);
 			    // ... and install link listener (to refresh after reconnect)
 			    componentsDAO.addConnectionListener(
 			            new DAOProxyConnectionListener()
 			            {
 			            	public void connected(DAOProxy proxy) {
 		                    	componentListCache = refreshComponentsList(proxy);
+		                    	sortedComponentListCache = sortedCopy(componentListCache);
 		                    }
 			            	public void disconnected(DAOProxy proxy) { /* noop */ }
 			        }
@@ -9805,6 +9843,55 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 	    return componentListCache;
 	}
 
+	/**
+	 * Get sorted list of all components.
+	 * @return sorted list of all components.
+	 */
+	private String[] getSortedComponentsList()
+	{
+	    return sortedComponentListCache;
+	}
+
+	/**
+	 * Returns sorted copy of the array, without <code>null</code> names.
+	 * @param array	array to be copied, can be <code>null</code>.
+	 * @return sorted copy, <code>null</code> if <code>array</code> is <code>null</code>.
+	 */
+	private String[] sortedCopy(String[] array)
+	{
+		if (array == null)
+			return null;
+		ArrayList<String> names = new ArrayList<String>(array.length);
+		for (int i = 0; i < array.length; i++)
+		{
+			if (array[i] == null)
+			{
+				logger.log(Level.WARNING,"Misconfigured CDB, there is a component with no name defined.");
+				continue;
+			}
+			names.add(array[i]);
+		}
+		String[] sorted = names.toArray(new String[names.size()]);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Builds the index of the components from the (recovered) components data store.
+	 * Afterwards the index is updated by the component commands.
+	 */
+	private void initializeComponentInfoIndex()
+	{
+		ComponentInfoIndex index = new ComponentInfoIndex();
+		int h = components.first();
+		while (h != 0)
+		{
+			index.put(h, (ComponentInfo)components.get(h));
+			h = components.next(h);
+		}
+		componentInfoIndex = index;
+	}
+
 	/**
 	 * Searches dao for all potential (nodes containing Name attribute) ComponentInfo nodes.
 	 * @param dc	dao to be searched.
@@ -10384,6 +10471,46 @@ public class ManagerImpl extends AbstractPrevalentSystem implements Manager, Han
 		}
 	}
 
+	/**
+	 * Notifies component info index and topology sort manager about a change of component info (e.g. its clients).
+	 * Called by the component commands.
+	 * @param handle	component handle (components data store index).
+	 */
+	public void componentInfoChanged(int handle)
+	{
+		ComponentInfoIndex index = componentInfoIndex;
+		if (index != null)
+			index.put(handle, (ComponentInfo)components.get(handle));
+
+		ComponentInfoTopologicalSortManager tsManager = topologySortManager;
+		if (tsManager != null)
+		{
+			ComponentInfo componentInfo = (ComponentInfo)components.get(handle);
+			if (componentInfo != null)
+				tsManager.componentChanged(componentInfo);
+		}
+	}
+
+	/**
+	 * Notifies component info index and topology sort manager about the removal of component info.
+	 * Called by the component commands before the info is deallocated.
+	 * @param handle	component handle (components data store index).
+	 */
+	public void componentInfoRemoved(int handle)
+	{
+		ComponentInfoIndex index = componentInfoIndex;
+		if (index != null)
+			index.remove(handle);
+
+		ComponentInfoTopologicalSortManager tsManager = topologySortManager;
+		if (tsManager != null)
+		{
+			ComponentInfo componentInfo = (ComponentInfo)components.get(handle);
+			if (componentInfo != null)
+				tsManager.componentRemoved(componentInfo.getHandle());
+		}
+	}
+
 	/**
 	 * Returns the containers.
 	 * @return HandleDataStore
@@ -5,6 +5,8 @@
 package com.cosylab.acs.maci.manager;
 
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,7 +19,7 @@ import alma.acs.alarmsystem.source.AlarmSource;
 import alma.alarmsystem.source.ACSFaultState;
 
 /**
- * Implementation of ping task executed by <code>java.util.Timer</class>.
+ * Implementation of ping task executed by <code>HeartbeatScheduler</class> (or <code>java.util.Timer</class>).
  * 
  * Manager pings its clients (both GUI clients, as well as Containers) repeatedly to verify that they still exist.
  * The return value of <code>Client#ping()</code> can be either "true", indicating that everything is OK with the client,
@@ -27,6 +29,7 @@ import alma.alarmsystem.source.ACSFaultState;
  * and only then shall the client be assumed to be malfunctioning.
  * If another exception is thrown, the client may be immediately assumed to be malfunctioning.
  * Once the client is found to be malfunctioning, the Manager makes an implicit logout of the client.
+ * A ping that does not return within the deadline of the <code>HeartbeatScheduler</code> counts as a timed-out ping.
  * 
  * @author		Matej Sekoranja (matej.sekoranja@cosylab.com)
  * @version	@@VERSION@@
@@ -44,7 +47,17 @@ public class PingTimerTask extends TimerTask
 	 * Counter for consequential <code>RemoteTransientException</code>
 	 * exception catches to <code>Client#ping</code> method.
 	 */
-	private int transientCount;
+	private final AtomicInteger transientCount = new AtomicInteger(0);
+
+	/**
+	 * Canceled flag (<code>TimerTask</code> does not expose its state).
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Logged out flag, guarantees single logout.
+	 */
+	private final AtomicBoolean loggedOut = new AtomicBoolean(false);
 
 	/**
 	 * Manager to which the client is logged in.
@@ -86,8 +99,24 @@ public class PingTimerTask extends TimerTask
 		this.logger = logger;
 		this.clientInfo = clientInfo;
 		this.alarmSource = alarmSource;
-		
-		this.transientCount = 0;
+	}
+
+	/**
+	 * @see java.util.TimerTask#cancel()
+	 */
+	public boolean cancel()
+	{
+		cancelled = true;
+		return super.cancel();
+	}
+
+	/**
+	 * Returns <code>true</code> if this task was canceled.
+	 * @return <code>true</code> if this task was canceled.
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
 	}
 
 	/**
@@ -95,6 +124,9 @@ public class PingTimerTask extends TimerTask
 	 */
 	private void logout()
 	{
+		if (!loggedOut.compareAndSet(false, true))
+			return;
+
 		// do not throw any exceptions here...
 		try
 		{
@@ -116,13 +148,32 @@ public class PingTimerTask extends TimerTask
 	 */
 	public void run()
 	{
+		ping(null);
+	}
+
+	/**
+	 * Pings the client and handles the result.
+	 * 
+	 * The result is handled only if <code>resolved</code> is <code>null</code> or it can be set from <code>false</code> to <code>true</code>,
+	 * i.e. only if the <code>HeartbeatScheduler</code> did not already handle this ping as timed-out (see {@link #pingTimedOut()}).
+	 * @param resolved	resolved flag of this ping, can be <code>null</code>.
+	 */
+	void ping(AtomicBoolean resolved)
+	{
+		if (cancelled)
+			return;
+
 		try
 		{
 			
 			logger.finest("Invoking ping on "+HandleHelper.toString(clientInfo.getHandle())+"].");
 
+			boolean ok = clientInfo.getClient().ping();
+			if (!resolve(resolved))
+				return;
+
 			// malfunctioning client check
-			if (clientInfo.getClient().ping() == false)
+			if (ok == false)
 			{
 				logger.info("Client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] announced itself as malfunctioning.");
 
@@ -136,15 +187,16 @@ public class PingTimerTask extends TimerTask
 			clear_alarm(clientInfo.getName());
 			
 			// reset transientCount to zero
-			transientCount = 0;
+			transientCount.set(0);
 		}
 		catch (RemoteTransientException rte)
 		{
 			//logger.log(Level.INFO, "Invoking client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] ping method thrown transient exception.", rte);
+			if (!resolve(resolved))
+				return;
 
 			// client not reachable
-			transientCount++;
-			if (transientCount >= MAX_TRANSIENT_COUNT)
+			if (transientCount.incrementAndGet() >= MAX_TRANSIENT_COUNT)
 			{
 				logger.info("Client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] is unreachable, logging it out.");
 
@@ -158,10 +210,11 @@ public class PingTimerTask extends TimerTask
 		catch (RemoteTimeoutException rtoe)
 		{
 			//logger.log(Level.INFO, "Invoking client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] ping method thrown timeout exception.", rtoe);
+			if (!resolve(resolved))
+				return;
 			
 			// client not reachable
-			transientCount++;
-			if (transientCount >= MAX_TRANSIENT_COUNT)
+			if (transientCount.incrementAndGet() >= MAX_TRANSIENT_COUNT)
 			{
 				logger.info("Client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] ping method timed-out several times, logging it out.");
 
@@ -174,6 +227,9 @@ public class PingTimerTask extends TimerTask
 		}
 		catch (Throwable ex)
 		{
+			if (!resolve(resolved))
+				return;
+
 			logger.log(Level.INFO, "Invoking client '"+clientInfo.getName()+"' ping method thrown an exception, logging it out.", ex);
 			//logger.info("Invoking client '"+clientInfo.getName()+"' ping method threw an unknown exception, logging it out.");
 
@@ -186,6 +242,37 @@ public class PingTimerTask extends TimerTask
 
 	}
 
+	/**
+	 * Resolves a ping.
+	 * @param resolved	resolved flag of the ping, can be <code>null</code>.
+	 * @return <code>true</code> if the ping was not resolved yet.
+	 */
+	private static boolean resolve(AtomicBoolean resolved)
+	{
+		return resolved == null || resolved.compareAndSet(false, true);
+	}
+
+	/**
+	 * Called by the heartbeat scheduler when the outstanding ping did not return within its deadline,
+	 * handled as <code>RemoteTimeoutException</code>.
+	 * The result of the outstanding ping, if it ever returns, is then ignored.
+	 */
+	public void pingTimedOut()
+	{
+		if (cancelled)
+			return;
+
+		if (transientCount.incrementAndGet() >= MAX_TRANSIENT_COUNT)
+		{
+			logger.info("Client '"+clientInfo.getName()+"' ["+HandleHelper.toString(clientInfo.getHandle())+"] ping method did not return within deadline several times, logging it out.");
+
+			// An alarm is raised for those clients that define an alarm interface
+			raise_alarm(clientInfo.getName());
+
+			logout();
+		}
+	}
+
 	/**
 	 * Returns a single-line rendition of this instance into text.
 	 * 
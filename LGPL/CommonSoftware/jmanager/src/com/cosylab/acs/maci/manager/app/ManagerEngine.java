@@ -11,7 +11,6 @@ import java.util.logging.Logger;
 
 import javax.naming.Context;
 
-import org.jacorb.orb.acs.AcsORBProfiler;
 import org.jacorb.orb.acs.AcsProfilingORB;
 import org.omg.CORBA.ORB;
 import org.omg.CosNaming.NamingContextHelper;
@@ -104,6 +103,11 @@ public class ManagerEngine
 	 */
 	private DefaultCORBAService corbaService = null;
 
+	/**
+	 * ORB profiler, whose MBean gets unregistered when the manager is destroyed.
+	 */
+	private ManagerOrbProfiler orbProfiler = null;
+
 	public static final String DISABLE_PREVAYLER = "acs.disablePrevayler";
 	private static final boolean isPrevaylerDisabled = Boolean.getBoolean(DISABLE_PREVAYLER);
 
@@ -294,8 +298,10 @@ public class ManagerEngine
 		// setup ORB profiling
 		try {
 			if (orb instanceof AcsProfilingORB) {
-				AcsORBProfiler profiler = new ManagerOrbProfiler(manager, logger);
+				ManagerOrbProfiler profiler = new ManagerOrbProfiler(manager, logger);
 				((AcsProfilingORB)orb).registerAcsORBProfiler(profiler);
+				profiler.registerMBean("Manager");
+				orbProfiler = profiler;
 				logger.finer("Orb profiling set up, using class " + ManagerOrbProfiler.class.getName());
 			}
 		} catch (Throwable th) {
@@ -415,6 +421,12 @@ public class ManagerEngine
 		// destroy CORBA service
 		if (corbaService != null)
 			corbaService.destroy();
+
+		if (orbProfiler != null)
+		{
+			orbProfiler.unregisterMBean();
+			orbProfiler = null;
+		}
 		
 		// add rights to group in order to be able to start with '-n'
 		if (recoveryLocation != null)
@@ -36,6 +36,7 @@ public class ComponentCommandClientAdd implements Command {
 	public Serializable execute(PrevalentSystem system) throws Exception {
 		ComponentInfo cobInfo = (ComponentInfo)((ManagerImpl)system).getComponents().get(handle);
 		cobInfo.getClients().add(clientHandle);
+		((ManagerImpl)system).componentInfoChanged(handle);
 		return null;
 	}
 }
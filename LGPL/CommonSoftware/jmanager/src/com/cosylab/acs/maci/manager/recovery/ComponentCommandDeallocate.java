@@ -48,6 +48,7 @@ public class ComponentCommandDeallocate implements Command {
 	 */
 	public Serializable execute(PrevalentSystem system) throws Exception {
 		((ManagerImpl)system).logHandleRelease(fullHandle, reason);
+		((ManagerImpl)system).componentInfoRemoved(handle);
 		((ManagerImpl)system).getComponents().deallocate(handle, depreallocate);
 		return null;
 	}
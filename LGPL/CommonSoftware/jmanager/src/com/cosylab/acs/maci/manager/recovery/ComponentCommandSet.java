@@ -34,6 +34,7 @@ public class ComponentCommandSet implements Command {
 	 */
 	public Serializable execute(PrevalentSystem system) throws Exception {
 		((ManagerImpl)system).getComponents().set(handle, data);
+		((ManagerImpl)system).componentInfoChanged(handle);
 		return null;
 	}
 }
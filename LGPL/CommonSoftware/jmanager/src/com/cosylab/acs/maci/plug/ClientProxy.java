@@ -338,6 +338,15 @@ public class ClientProxy extends CORBAReferenceSerializator implements Client, S
 		}
 	}
 	
+	/**
+	 * Returns the client-side timeout of the ping call.
+	 * @return the timeout of the ping call in ms.
+	 */
+	public static long getPingTimeout()
+	{
+		return (long)(pingTimeoutSec * 1000);
+	}
+
 	/**
 	 * @see com.cosylab.acs.maci.Client#ping()
 	 */
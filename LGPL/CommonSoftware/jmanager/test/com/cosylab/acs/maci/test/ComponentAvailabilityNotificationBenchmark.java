@@ -0,0 +1,165 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.cosylab.acs.maci.ClientInfo;
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.HandleConstants;
+import com.cosylab.acs.maci.RemoteException;
+import com.cosylab.acs.maci.StatusHolder;
+import com.cosylab.acs.maci.manager.ManagerImpl;
+import com.cosylab.acs.maci.plug.DefaultCORBAService;
+import com.cosylab.cdb.client.CDBAccess;
+
+/**
+ * Start-up benchmark of <code>components_available</code>/<code>components_unavailable</code> notifications:
+ * administrator clients use all the components of a container, which is then restarted (logout, login with state
+ * transfer) several times, as during a system (re)start. Measures the number of remote notification calls received
+ * by the administrators and the time needed to deliver all the notifications, for the given coalescing windows.
+ * Every notification call takes 1 ms (simulated remote call).
+ *
+ * Requires running CDB with the jmanager test configuration (as <code>ManagerImplTest</code>), only for manual runs:
+ * <code>acsStartJava com.cosylab.acs.maci.test.ComponentAvailabilityNotificationBenchmark [administrators=50] [restarts=20] [windows=0,20]</code>
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentAvailabilityNotificationBenchmark
+{
+
+	private static final String[] COMPONENTS = { "MOUNT1", "MOUNT2", "MOUNT3", "MOUNT4", "PBEND_B_01" };
+
+	/**
+	 * Simulated remote call time.
+	 */
+	private static final long CALL_TIME_MS = 1;
+
+	/**
+	 * Administrator counting the notifications.
+	 */
+	static class CountingAdministrator extends TestAdministrator
+	{
+		final AtomicLong calls = new AtomicLong();
+		final Map<String, Boolean> available = new HashMap<String, Boolean>();
+
+		public CountingAdministrator(String name)
+		{
+			super(name);
+		}
+
+		public void components_available(ComponentInfo[] cobs) throws RemoteException
+		{
+			call();
+			synchronized (available)
+			{
+				for (int i = 0; i < cobs.length; i++)
+					available.put(cobs[i].getName(), Boolean.TRUE);
+			}
+		}
+
+		public void components_unavailable(String[] cobs) throws RemoteException
+		{
+			call();
+			synchronized (available)
+			{
+				for (int i = 0; i < cobs.length; i++)
+					available.put(cobs[i], Boolean.FALSE);
+			}
+		}
+
+		private void call()
+		{
+			calls.incrementAndGet();
+			try {
+				Thread.sleep(CALL_TIME_MS);
+			} catch (InterruptedException ie) { /* noop */ }
+		}
+
+		boolean allAvailable()
+		{
+			synchronized (available)
+			{
+				for (String name : COMPONENTS)
+					if (available.get(name) != Boolean.TRUE)
+						return false;
+				return true;
+			}
+		}
+	}
+
+	private static void run(int administrators, int restarts, int window) throws Throwable
+	{
+		System.setProperty("manager.notification.coalescingWindow", String.valueOf(window));
+
+		Logger logger = Logger.global;
+		logger.setLevel(Level.OFF);
+		DefaultCORBAService corbaService = new DefaultCORBAService(logger);
+		ManagerImpl manager = new ManagerImpl();
+		manager.initialize(null, new CDBAccess(corbaService.getORB(), logger), null, logger, null);
+		manager.setTransport(new TestTransport());
+
+		try
+		{
+			TestContainer container = new TestContainer("Container");
+			Map supportedComponents = new HashMap();
+			for (String name : COMPONENTS)
+				supportedComponents.put(name, new TestComponent(name));
+			container.setSupportedComponents(supportedComponents);
+			ClientInfo containerInfo = manager.login(container);
+
+			CountingAdministrator[] admins = new CountingAdministrator[administrators];
+			for (int i = 0; i < administrators; i++)
+			{
+				admins[i] = new CountingAdministrator("admin" + i);
+				ClientInfo info = manager.login(admins[i]);
+				for (String name : COMPONENTS)
+					manager.getComponent(info.getHandle(), new URI(name), true, new StatusHolder());
+			}
+
+			long start = System.currentTimeMillis();
+			for (int r = 0; r < restarts; r++)
+			{
+				manager.logout(containerInfo.getHandle());
+				containerInfo = manager.login(container);
+			}
+
+			// wait for the delivery
+			for (CountingAdministrator admin : admins)
+				while (!admin.allAvailable())
+					Thread.sleep(1);
+			long time = System.currentTimeMillis() - start;
+
+			long calls = 0;
+			for (CountingAdministrator admin : admins)
+				calls += admin.calls.get();
+
+			System.out.println("coalescing window " + window + " ms: " + calls + " calls received, all delivered in " + time + " ms");
+			System.out.println("\t" + manager.getComponentAvailabilityNotificationStatistics());
+		}
+		finally
+		{
+			manager.shutdown(HandleConstants.MANAGER_MASK, 0);
+			corbaService.destroy();
+		}
+	}
+
+	public static void main(String[] args) throws Throwable
+	{
+		int administrators = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int restarts = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		String windows = args.length > 2 ? args[2] : "0,20";
+
+		System.out.println(administrators + " administrators, " + COMPONENTS.length + " components, " + restarts + " container restarts");
+		for (String window : windows.split(","))
+			run(administrators, restarts, Integer.parseInt(window.trim()));
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.manager.ComponentAvailabilityQueue;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for ComponentAvailabilityQueue.
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentAvailabilityQueueTest extends TestCase
+{
+
+	/**
+	 */
+	public ComponentAvailabilityQueueTest(String name)
+	{
+		super(name);
+	}
+
+	private static ComponentInfo createInfo(String name)
+	{
+		return new ComponentInfo(1, name, "IDL:test:1.0", "code", null);
+	}
+
+	/**
+	 * Batches as strings, e.g. <code>+A+B -C</code>.
+	 */
+	private static String toString(List<ComponentAvailabilityQueue.Batch> batches)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (ComponentAvailabilityQueue.Batch batch : batches)
+		{
+			if (sb.length() > 0)
+				sb.append(' ');
+			if (batch.isAvailable())
+			{
+				assertNull(batch.getNames());
+				for (ComponentInfo info : batch.getInfos())
+					sb.append('+').append(info.getName());
+			}
+			else
+			{
+				assertNull(batch.getInfos());
+				for (String name : batch.getNames())
+					sb.append('-').append(name);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Notifications of the same type are coalesced into one batch.
+	 */
+	public void testCoalescing()
+	{
+		ComponentAvailabilityQueue queue = new ComponentAvailabilityQueue();
+		queue.available(new ComponentInfo[] { createInfo("A") });
+		queue.available(new ComponentInfo[] { createInfo("B"), createInfo("C") });
+		queue.unavailable(new String[] { "D" });
+		queue.unavailable(new String[] { "E" });
+		queue.available(new ComponentInfo[] { createInfo("F") });
+		assertEquals(6, queue.size());
+
+		assertEquals("+A+B+C -D-E +F", toString(queue.drain()));
+		assertEquals(0, queue.size());
+		assertEquals(0, queue.getSupersededCount());
+		assertEquals(6, queue.getQueuedCount());
+		assertEquals(0, queue.drain().size());
+	}
+
+	/**
+	 * Superseded notifications are dropped, order of notifications of the same component is kept.
+	 */
+	public void testSuperseded()
+	{
+		ComponentAvailabilityQueue queue = new ComponentAvailabilityQueue();
+
+		// the latest info is sent
+		ComponentInfo a2 = createInfo("A");
+		queue.available(new ComponentInfo[] { createInfo("A") });
+		queue.available(new ComponentInfo[] { a2 });
+		List<ComponentAvailabilityQueue.Batch> batches = queue.drain();
+		assertEquals("+A", toString(batches));
+		assertSame(a2, batches.get(0).getInfos()[0]);
+
+		// unavailable drops available
+		queue.available(new ComponentInfo[] { createInfo("A"), createInfo("B") });
+		queue.unavailable(new String[] { "A" });
+		assertEquals("+B -A", toString(queue.drain()));
+
+		// restart: both are sent
+		queue.unavailable(new String[] { "A" });
+		queue.available(new ComponentInfo[] { createInfo("A") });
+		assertEquals("-A +A", toString(queue.drain()));
+
+		// repeated restarts
+		for (int i = 0; i < 10; i++)
+		{
+			queue.unavailable(new String[] { "A", "B" });
+			queue.available(new ComponentInfo[] { createInfo("A"), createInfo("B") });
+		}
+		assertEquals(4, queue.size());
+		assertEquals("-A-B +A+B", toString(queue.drain()));
+
+		// down at the end
+		queue.unavailable(new String[] { "A" });
+		queue.available(new ComponentInfo[] { createInfo("A") });
+		queue.unavailable(new String[] { "A" });
+		assertEquals("-A", toString(queue.drain()));
+
+		assertEquals(2 + 3 + 2 + 40 + 3, queue.getQueuedCount());
+		assertEquals(1 + 1 + 0 + 36 + 2, queue.getSupersededCount());
+	}
+
+	/**
+	 * Appending another queue.
+	 */
+	public void testAddAll()
+	{
+		ComponentAvailabilityQueue queue = new ComponentAvailabilityQueue();
+		queue.available(new ComponentInfo[] { createInfo("A"), createInfo("B") });
+
+		ComponentAvailabilityQueue other = new ComponentAvailabilityQueue();
+		other.unavailable(new String[] { "A" });
+		other.available(new ComponentInfo[] { createInfo("C") });
+		other.available(new ComponentInfo[] { createInfo("C") });
+
+		queue.addAll(other);
+		assertEquals(2, other.size());
+		assertEquals(5, queue.getQueuedCount());
+		assertEquals(2, queue.getSupersededCount());
+		assertEquals("+B -A +C", toString(queue.drain()));
+	}
+
+	/**
+	 * Random notifications, the state of every component seen by the client after the delivery
+	 * must be the same as without coalescing.
+	 */
+	public void testRandom()
+	{
+		final String[] NAMES = { "A", "B", "C", "D", "E" };
+		Random random = new Random(1234);
+		ComponentAvailabilityQueue queue = new ComponentAvailabilityQueue();
+		Map<String, Boolean> expected = new HashMap<String, Boolean>();
+		Map<String, Boolean> actual = new HashMap<String, Boolean>();
+
+		for (int round = 0; round < 1000; round++)
+		{
+			List<String> events = new ArrayList<String>();
+			int count = random.nextInt(10);
+			for (int i = 0; i < count; i++)
+			{
+				String name = NAMES[random.nextInt(NAMES.length)];
+				boolean available = random.nextBoolean();
+				if (available)
+					queue.available(new ComponentInfo[] { createInfo(name) });
+				else
+					queue.unavailable(new String[] { name });
+				expected.put(name, Boolean.valueOf(available));
+				events.add(name);
+			}
+
+			List<ComponentAvailabilityQueue.Batch> batches = queue.drain();
+			for (ComponentAvailabilityQueue.Batch batch : batches)
+			{
+				if (batch.isAvailable())
+					for (ComponentInfo info : batch.getInfos())
+						actual.put(info.getName(), Boolean.TRUE);
+				else
+					for (String name : batch.getNames())
+						actual.put(name, Boolean.FALSE);
+			}
+			assertEquals(expected, actual);
+			assertTrue(batches.size() <= events.size());
+		}
+	}
+
+	public static TestSuite suite()
+	{
+		return new TestSuite(ComponentAvailabilityQueueTest.class);
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.cosylab.acs.maci.Component;
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.RemoteException;
+import com.cosylab.acs.maci.manager.ComponentInfoIndex;
+import com.cosylab.acs.maci.manager.HandleDataStore;
+import com.cosylab.util.WildcharMatcher;
+
+/**
+ * Compares component info query latency and activation throughput under concurrent query load,
+ * for the full (locked) walk of the components data store and for <code>ComponentInfoIndex</code>.
+ * Activations are simulated by <code>HandleDataStore.set</code> under the components lock.
+ *
+ * Only for manual runs:
+ * <code>acsStartJava com.cosylab.acs.maci.test.ComponentInfoIndexBenchmark [components=10000] [queryThreads=4] [seconds=5]</code>
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentInfoIndexBenchmark
+{
+
+	private static final String[] PATTERNS = {
+		"CONTROL/DV01/*",
+		"CONTROL/DV42/MOUNT",
+		"CONTROL/*/MOUNT",
+		"*",
+	};
+
+	private static final String TYPE = "IDL:alma/Control/Mount:1.0";
+
+	private static final Component COMPONENT = new Component()
+	{
+		public void construct() throws RemoteException {}
+		public void destruct() throws RemoteException {}
+		public boolean doesImplement(String type) { return false; }
+		public String[] implementedInterfaces() { return new String[0]; }
+		public Object getObject() { return null; }
+	};
+
+	private final HandleDataStore components;
+	private final ReentrantLock componentsLock = new ReentrantLock();
+	private final String[] names;
+	private final int[] handles;
+	private final ComponentInfoIndex index = new ComponentInfoIndex();
+
+	/**
+	 * Constructor.
+	 * @param count	number of components.
+	 */
+	public ComponentInfoIndexBenchmark(int count)
+	{
+		components = new HandleDataStore(count);
+		names = new String[count];
+		handles = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			int antenna = i / 100;
+			names[i] = "CONTROL/DV" + (antenna < 10 ? "0" : "") + antenna + "/DEVICE" + (i % 100);
+			if (i % 100 == 1)
+				names[i] = names[i - 1].substring(0, names[i - 1].lastIndexOf('/')) + "/MOUNT";
+			handles[i] = components.allocate();
+			activate(i);
+		}
+	}
+
+	/**
+	 * Simulates an activation.
+	 */
+	private void activate(int i)
+	{
+		ComponentInfo info = new ComponentInfo(handles[i], names[i], i % 100 == 1 ? TYPE : "IDL:alma/Control/Device:1.0", "code", COMPONENT);
+		componentsLock.lock();
+		try
+		{
+			components.set(handles[i], info);
+			// as ManagerImpl.componentInfoChanged
+			index.put(handles[i], info);
+		}
+		finally
+		{
+			componentsLock.unlock();
+		}
+	}
+
+	/**
+	 * Query walking the whole data store, as done before the index.
+	 */
+	private int fullScan(String name_wc, String type_wc)
+	{
+		List<ComponentInfo> list = new ArrayList<ComponentInfo>();
+		componentsLock.lock();
+		try
+		{
+			int h = components.first();
+			while (h != 0)
+			{
+				ComponentInfo info = (ComponentInfo)components.get(h);
+				if (info.getComponent() != null &&
+					WildcharMatcher.match(name_wc, info.getName()) &&
+					WildcharMatcher.match(type_wc, info.getType()))
+					list.add(info);
+				h = components.next(h);
+			}
+		}
+		finally
+		{
+			componentsLock.unlock();
+		}
+		return list.size();
+	}
+
+	/**
+	 * Query using the index, as <code>ManagerImpl.getComponentInfo</code>.
+	 */
+	private int indexQuery(String name_wc, String type_wc)
+	{
+		int count = 0;
+		for (ComponentInfo info : index.query(name_wc, type_wc))
+			if (info.getComponent() != null)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Runs query threads and one activation thread for the given time.
+	 */
+	private void run(final boolean useIndex, int queryThreads, long millis) throws InterruptedException
+	{
+		final AtomicLong queries = new AtomicLong();
+		final AtomicLong queryNanos = new AtomicLong();
+		final AtomicLong activations = new AtomicLong();
+		final long end = System.currentTimeMillis() + millis;
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < queryThreads; t++)
+		{
+			threads.add(new Thread()
+			{
+				public void run()
+				{
+					int p = 0;
+					while (System.currentTimeMillis() < end)
+					{
+						String name_wc = PATTERNS[p++ % PATTERNS.length];
+						long start = System.nanoTime();
+						if (useIndex)
+							indexQuery(name_wc, TYPE);
+						else
+							fullScan(name_wc, TYPE);
+						queryNanos.addAndGet(System.nanoTime() - start);
+						queries.incrementAndGet();
+					}
+				}
+			});
+		}
+		threads.add(new Thread()
+		{
+			public void run()
+			{
+				int i = 0;
+				while (System.currentTimeMillis() < end)
+				{
+					activate(i++ % names.length);
+					activations.incrementAndGet();
+					// activations are much rarer than queries
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		});
+
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+
+		System.out.println((useIndex ? "index:     " : "full scan: ") +
+			"avg. query latency " + (queryNanos.get() / Math.max(1, queries.get()) / 1000) + " us, " +
+			(queries.get() * 1000 / millis) + " queries/s, " +
+			(activations.get() * 1000 / millis) + " activations/s");
+	}
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int queryThreads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		long millis = (args.length > 2 ? Long.parseLong(args[2]) : 5) * 1000;
+
+		ComponentInfoIndexBenchmark benchmark = new ComponentInfoIndexBenchmark(count);
+		System.out.println(count + " components, " + queryThreads + " query threads");
+
+		// warm-up
+		benchmark.run(false, queryThreads, millis / 5);
+		benchmark.run(true, queryThreads, millis / 5);
+
+		benchmark.run(false, queryThreads, millis);
+		benchmark.run(true, queryThreads, millis);
+	}
+
+}
@@ -0,0 +1,209 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.manager.ComponentInfoIndex;
+import com.cosylab.util.WildcharMatcher;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for ComponentInfoIndex.
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentInfoIndexTest extends TestCase
+{
+
+	private static final String[] TYPES = {
+		"IDL:alma/Control/Antenna:1.0",
+		"IDL:alma/Control/Mount:1.0",
+		"IDL:alma/Correlator/CCC:1.0"
+	};
+
+	private static final String[] PATTERNS = {
+		"*",
+		"CONTROL/DV01",
+		"CONTROL/DV01/*",
+		"CONTROL/DV0?/MOUNT",
+		"CONTROL/*/MOUNT",
+		"*MOUNT*",
+		"CONTROL/[A-D]V1*",
+		"CORR*",
+		"NOTHING*",
+		"",
+	};
+
+	private ComponentInfo[] infos;
+
+	/**
+	 */
+	public ComponentInfoIndexTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		List<ComponentInfo> list = new ArrayList<ComponentInfo>();
+		int handle = 1;
+		for (int i = 0; i < 20; i++)
+		{
+			String antenna = "CONTROL/DV" + (i < 10 ? "0" : "") + i;
+			list.add(new ComponentInfo(handle++, antenna, TYPES[0], "code", null));
+			list.add(new ComponentInfo(handle++, antenna + "/MOUNT", TYPES[1], "code", null));
+		}
+		list.add(new ComponentInfo(handle++, "CORR/CCC", TYPES[2], "code", null));
+		list.add(new ComponentInfo(handle++, "CONTROL", TYPES[0], "code", null));
+		infos = list.toArray(new ComponentInfo[list.size()]);
+	}
+
+	/**
+	 * Queries must give the same results as matching all the components.
+	 */
+	public void testQueryEqualsFullScan()
+	{
+		ComponentInfoIndex index = createIndex();
+		assertEquals(infos.length, index.size());
+
+		String[] typePatterns = { "*", TYPES[0], TYPES[1], "IDL:alma/Control/*", "IDL:none:1.0" };
+		for (String name_wc : PATTERNS)
+		{
+			for (String type_wc : typePatterns)
+			{
+				List<String> expected = new ArrayList<String>();
+				for (ComponentInfo info : infos)
+					if (WildcharMatcher.match(name_wc, info.getName()) && WildcharMatcher.match(type_wc, info.getType()))
+						expected.add(info.getName());
+				List<String> actual = new ArrayList<String>();
+				for (ComponentInfo info : index.query(name_wc, type_wc))
+					actual.add(info.getName());
+				Collections.sort(expected);
+				Collections.sort(actual);
+				assertEquals(name_wc + " / " + type_wc, expected, actual);
+			}
+		}
+
+		assertEquals(1, index.query("CONTROL/DV01", "*").size());
+		assertEquals(20, index.query("CONTROL/DV??", TYPES[0]).size());
+		assertEquals(0, new ComponentInfoIndex().query("*", "*").size());
+	}
+
+	/**
+	 * Creates an index of the infos, the data store handle of the i-th info is i + 1.
+	 */
+	private ComponentInfoIndex createIndex()
+	{
+		ComponentInfoIndex index = new ComponentInfoIndex();
+		for (int i = 0; i < infos.length; i++)
+			index.put(i + 1, infos[i]);
+		return index;
+	}
+
+	/**
+	 * Replacing and adding infos must update the name and type maps.
+	 */
+	public void testUpdate()
+	{
+		ComponentInfoIndex index = createIndex();
+
+		// same name, replaced info
+		ComponentInfo changed = new ComponentInfo(infos[0].getHandle(), infos[0].getName(), TYPES[2], "code", null);
+		index.put(1, changed);
+		assertEquals(infos.length, index.size());
+		assertSame(changed, index.query(infos[0].getName(), "*").get(0));
+		assertEquals(2, index.query("*", TYPES[2]).size());
+		assertEquals(0, index.query(infos[0].getName(), TYPES[0]).size());
+		assertEquals(19, index.query("CONTROL/DV??", TYPES[0]).size());
+
+		// setting the same info again changes nothing
+		index.put(1, changed);
+		assertEquals(infos.length, index.size());
+		assertEquals(2, index.query("*", TYPES[2]).size());
+
+		// new name
+		ComponentInfo added = new ComponentInfo(1000, "CONTROL/DV00/ZZZ", TYPES[1], "code", null);
+		index.put(1000, added);
+		assertEquals(infos.length + 1, index.size());
+		assertEquals(2, index.query("CONTROL/DV00/*", "*").size());
+		assertEquals(21, index.query("CONTROL/*", TYPES[1]).size());
+
+		// other name at the same handle
+		ComponentInfo renamed = new ComponentInfo(1000, "CORR/ZZZ", TYPES[1], "code", null);
+		index.put(1000, renamed);
+		assertEquals(infos.length + 1, index.size());
+		assertEquals(1, index.query("CONTROL/DV00/*", "*").size());
+		assertSame(renamed, index.query("CORR/ZZZ", TYPES[1]).get(0));
+	}
+
+	/**
+	 * Removed infos are not returned any more, results are ordered by name.
+	 */
+	public void testRemove()
+	{
+		ComponentInfoIndex index = createIndex();
+
+		// CORR/CCC
+		index.remove(infos.length - 1);
+		assertEquals(infos.length - 1, index.size());
+		assertEquals(0, index.query("CORR*", "*").size());
+		assertEquals(0, index.query("*", TYPES[2]).size());
+
+		// unknown handle
+		index.remove(12345);
+		assertEquals(infos.length - 1, index.size());
+
+		// null info removes
+		index.put(1, null);
+		assertEquals(infos.length - 2, index.size());
+		assertEquals(0, index.query(infos[0].getName(), "*").size());
+
+		// ordered by name, also when the type index is used
+		List<ComponentInfo> mounts = index.query("CONTROL/*", TYPES[1]);
+		assertEquals(20, mounts.size());
+		for (int i = 1; i < mounts.size(); i++)
+			assertTrue(mounts.get(i - 1).getName().compareTo(mounts.get(i).getName()) < 0);
+
+		index.clear();
+		assertEquals(0, index.size());
+		assertEquals(0, index.query("*", "*").size());
+	}
+
+	/**
+	 * Name matching in a sorted array.
+	 */
+	public void testMatchNames()
+	{
+		String[] names = new String[infos.length];
+		for (int i = 0; i < infos.length; i++)
+			names[i] = infos[i].getName();
+		Arrays.sort(names);
+
+		for (String name_wc : PATTERNS)
+		{
+			List<String> expected = new ArrayList<String>();
+			for (String name : names)
+				if (WildcharMatcher.match(name_wc, name))
+					expected.add(name);
+			assertEquals(name_wc, expected, ComponentInfoIndex.matchNames(names, name_wc));
+		}
+	}
+
+	public static TestSuite suite()
+	{
+		return new TestSuite(ComponentInfoIndexTest.class);
+	}
+
+}
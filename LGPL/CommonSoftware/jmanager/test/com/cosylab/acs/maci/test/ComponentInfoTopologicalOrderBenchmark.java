@@ -0,0 +1,122 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.List;
+import java.util.Random;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.HandleConstants;
+import com.cosylab.acs.maci.IntArray;
+import com.cosylab.acs.maci.manager.ComponentInfoTopologicalOrder;
+import com.cosylab.acs.maci.manager.ComponentInfoTopologicalSort;
+import com.cosylab.acs.maci.manager.HandleDataStore;
+
+/**
+ * Stress benchmark of the component shutdown order maintenance: random dependency (client reference) edits
+ * on many components, each followed by the extraction of the shutdown order of the container of the changed component.
+ * Compares full <code>ComponentInfoTopologicalSort</code> (as done before for every change) with the incremental
+ * <code>ComponentInfoTopologicalOrder</code>.
+ *
+ * Only for manual runs:
+ * <code>acsStartJava com.cosylab.acs.maci.test.ComponentInfoTopologicalOrderBenchmark [components=10000] [containers=100] [edits=100000]</code>
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentInfoTopologicalOrderBenchmark
+{
+
+	/**
+	 * Average number of clients per component.
+	 */
+	private static final int CLIENTS_PER_COMPONENT = 3;
+
+	public static void main(String[] args)
+	{
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int containerCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int edits = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+
+		Random random = new Random(1234);
+		HandleDataStore store = new HandleDataStore(count);
+		ComponentInfo[] infos = new ComponentInfo[count];
+		for (int i = 0; i < count; i++)
+		{
+			int h = store.allocate();
+			infos[i] = new ComponentInfo(HandleConstants.COMPONENT_MASK | h, "COMPONENT" + i, "IDL:test:1.0", "code", null);
+			infos[i].setContainer(HandleConstants.CONTAINER_MASK | 1);
+			infos[i].setContainerName("CONTAINER" + random.nextInt(containerCount));
+			store.set(h, infos[i]);
+		}
+
+		// random dependencies, some immortal components
+		for (int i = 0; i < count * CLIENTS_PER_COMPONENT; i++)
+			toggleRandomClient(infos, random);
+		for (int i = 0; i < count / 100; i++)
+			infos[random.nextInt(count)].getClients().add(HandleConstants.MANAGER_MASK);
+
+		long start = System.nanoTime();
+		ComponentInfoTopologicalOrder order = new ComponentInfoTopologicalOrder();
+		List<?> list = ComponentInfoTopologicalSort.sort(store);
+		order.update(list.toArray(new ComponentInfo[list.size()]));
+		System.out.println(count + " components, " + containerCount + " containers, initial order built in " +
+				((System.nanoTime() - start) / 1000000) + " ms");
+
+		// full sort for every edit (only a few edits, it is slow)
+		int fullSortEdits = Math.max(1, edits / 1000);
+		start = System.nanoTime();
+		for (int i = 0; i < fullSortEdits; i++)
+		{
+			ComponentInfo info = toggleRandomClient(infos, random);
+			list = ComponentInfoTopologicalSort.sort(store);
+			IntArray containerOrder = new IntArray();
+			for (Object o : list)
+				if (info.getContainerName().equals(((ComponentInfo)o).getContainerName()))
+					containerOrder.add(((ComponentInfo)o).getHandle());
+			order.update(info);
+		}
+		long fullSortNanos = (System.nanoTime() - start) / fullSortEdits;
+
+		// incremental
+		start = System.nanoTime();
+		for (int i = 0; i < edits; i++)
+		{
+			ComponentInfo info = toggleRandomClient(infos, random);
+			order.update(info);
+			order.getShutdownOrder(info.getContainerName());
+		}
+		long incrementalNanos = (System.nanoTime() - start) / edits;
+
+		System.out.println("full sort:   " + (fullSortNanos / 1000) + " us per edit (" + fullSortEdits + " edits)");
+		System.out.println("incremental: " + (incrementalNanos / 1000) + " us per edit (" + edits + " edits)");
+		System.out.println(order.getStatistics());
+	}
+
+	/**
+	 * Add or remove a random client reference.
+	 * Clients are mostly "higher level" components (with a lower index), i.e. there are only few cycles.
+	 * @return the component whose clients were changed.
+	 */
+	private static ComponentInfo toggleRandomClient(ComponentInfo[] infos, Random random)
+	{
+		int i = random.nextInt(infos.length);
+		int j = random.nextInt(infos.length);
+		if (i == j)
+			j = (j + 1) % infos.length;
+		if (i > j && random.nextInt(1000) != 0)
+		{
+			int t = i; i = j; j = t;
+		}
+
+		ComponentInfo client = infos[i];
+		ComponentInfo info = infos[j];
+		if (info.getClients().contains(client.getHandle()))
+			info.getClients().remove(client.getHandle());
+		else
+			info.getClients().add(client.getHandle());
+		return info;
+	}
+
+}
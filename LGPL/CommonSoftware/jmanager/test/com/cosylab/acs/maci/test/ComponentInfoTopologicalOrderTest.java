@@ -0,0 +1,257 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.cosylab.acs.maci.ComponentInfo;
+import com.cosylab.acs.maci.HandleConstants;
+import com.cosylab.acs.maci.manager.ComponentInfoTopologicalOrder;
+import com.cosylab.acs.maci.manager.ComponentInfoTopologicalSort;
+import com.cosylab.acs.maci.manager.HandleDataStore;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for ComponentInfoTopologicalOrder.
+ *
+ * @version	@@VERSION@@
+ */
+public class ComponentInfoTopologicalOrderTest extends TestCase
+{
+
+	private static final int CONTAINER_HANDLE = HandleConstants.CONTAINER_MASK | 1;
+
+	/**
+	 */
+	public ComponentInfoTopologicalOrderTest(String name)
+	{
+		super(name);
+	}
+
+	private static ComponentInfo createInfo(int index, String containerName)
+	{
+		ComponentInfo info = new ComponentInfo(HandleConstants.COMPONENT_MASK | index, "COMPONENT" + index, "IDL:test:1.0", "code", null);
+		info.setContainer(CONTAINER_HANDLE);
+		info.setContainerName(containerName);
+		return info;
+	}
+
+	private static int[] handles(ComponentInfo[] infos)
+	{
+		int[] handles = new int[infos.length];
+		for (int i = 0; i < infos.length; i++)
+			handles[i] = infos[i].getHandle();
+		return handles;
+	}
+
+	/**
+	 * Same order as <code>ComponentInfoTopologicalSort</code> for hierarchical components
+	 * (see ManagerImplTest.testComponentInfoTopologicalSort).
+	 */
+	public void testHierarchicalComponents()
+	{
+		HandleDataStore store = new HandleDataStore(16);
+		ComponentInfoTopologicalOrder order = new ComponentInfoTopologicalOrder();
+
+		// activation order: MOUNT1, MOUNT5, PBEND_B_01, MOUNT3, MOUNT2, MOUNT4
+		ComponentInfo mount1 = createInfo(store.allocate(), "Container");
+		ComponentInfo mount5 = createInfo(store.allocate(), "Container2");
+		ComponentInfo pbend = createInfo(store.allocate(), "Container");
+		ComponentInfo mount3 = createInfo(store.allocate(), "Container");
+		ComponentInfo mount2 = createInfo(store.allocate(), "Container");
+		ComponentInfo mount4 = createInfo(store.allocate(), "Container");
+		ComponentInfo[] all = { mount1, mount5, pbend, mount3, mount2, mount4 };
+		for (ComponentInfo info : all)
+		{
+			store.set(info.getHandle() & HandleConstants.HANDLE_MASK, info);
+			order.update(info);
+		}
+
+		// dependencies
+		mount5.getClients().add(mount3.getHandle());
+		mount5.getClients().add(pbend.getHandle());
+		pbend.getClients().add(mount3.getHandle());
+		mount3.getClients().add(mount2.getHandle());
+		mount2.getClients().add(mount4.getHandle());
+		for (ComponentInfo info : all)
+			order.update(info);
+
+		ComponentInfo[] expected = { mount4, mount2, mount3, pbend, mount1 };
+		assertEquals(handles(expected), handles(order.getShutdownOrder("Container")));
+		assertEquals(handles(new ComponentInfo[] { mount5 }), handles(order.getShutdownOrder("Container2")));
+		assertEquals(0, order.getShutdownOrder("none").length);
+
+		// deactivated components are skipped
+		mount1.setContainer(0);
+		assertEquals(4, order.getShutdownOrder("Container").length);
+
+		// but not in the complete order
+		assertEquals(6, order.getShutdownOrder().length);
+
+		// nothing is lost if order is built from scratch
+		List<?> sorted = ComponentInfoTopologicalSort.sort(store);
+		assertEquals(6, sorted.size());
+	}
+
+	/**
+	 * Immortal components and the components they use are shut down last.
+	 */
+	public void testImmortalComponents()
+	{
+		ComponentInfoTopologicalOrder order = new ComponentInfoTopologicalOrder();
+		ComponentInfo a = createInfo(1, "Container");
+		ComponentInfo b = createInfo(2, "Container");
+		ComponentInfo c = createInfo(3, "Container");
+		ComponentInfo d = createInfo(4, "Container");
+
+		// c is immortal, c uses d, a uses c
+		c.getClients().add(HandleConstants.MANAGER_MASK);
+		d.getClients().add(c.getHandle());
+		c.getClients().add(a.getHandle());
+		for (ComponentInfo info : new ComponentInfo[] { a, b, c, d })
+			order.update(info);
+
+		int[] shutdownOrder = handles(order.getShutdownOrder("Container"));
+		assertEquals(4, shutdownOrder.length);
+		assertEquals(c.getHandle(), shutdownOrder[2]);
+		assertEquals(d.getHandle(), shutdownOrder[3]);
+
+		// c no longer immortal, b is not dependent on any other component
+		c.getClients().remove(HandleConstants.MANAGER_MASK);
+		order.update(c);
+		d.getClients().remove(c.getHandle());
+		order.update(d);
+		order.remove(b.getHandle());
+		assertEquals(handles(new ComponentInfo[] { a, c, d }), handles(order.getShutdownOrder("Container")));
+	}
+
+	/**
+	 * Cycles are allowed, the reference closing the cycle is taken into account when the cycle is broken.
+	 */
+	public void testCycle()
+	{
+		ComponentInfoTopologicalOrder order = new ComponentInfoTopologicalOrder();
+		ComponentInfo a = createInfo(1, "Container");
+		ComponentInfo b = createInfo(2, "Container");
+		ComponentInfo c = createInfo(3, "Container");
+		order.update(a);
+		order.update(b);
+		order.update(c);
+
+		// a is client of b, b of c, c of a
+		b.getClients().add(a.getHandle());
+		order.update(b);
+		c.getClients().add(b.getHandle());
+		order.update(c);
+		a.getClients().add(c.getHandle());
+		order.update(a);
+		assertEquals(3, order.getShutdownOrder("Container").length);
+		assertTrue(order.getStatistics().indexOf("components in cycles: 1") != -1);
+
+		// break the cycle, c as client of a is now respected
+		c.getClients().remove(b.getHandle());
+		order.update(c);
+		assertEquals(handles(new ComponentInfo[] { c, a, b }), handles(order.getShutdownOrder("Container")));
+		assertTrue(order.getStatistics().indexOf("components in cycles: 0") != -1);
+
+		// removed component
+		order.remove(c.getHandle());
+		assertEquals(handles(new ComponentInfo[] { a, b }), handles(order.getShutdownOrder("Container")));
+
+		// client added after the component it uses
+		order.update(c);
+		assertEquals(handles(new ComponentInfo[] { c, a, b }), handles(order.getShutdownOrder("Container")));
+	}
+
+	/**
+	 * Random edits of an acyclic dependency graph, all the dependencies must be respected.
+	 */
+	public void testRandomEdits()
+	{
+		final int COUNT = 200;
+		final String[] CONTAINERS = { "A", "B", "C" };
+		Random random = new Random(1234);
+		ComponentInfoTopologicalOrder order = new ComponentInfoTopologicalOrder();
+
+		// hidden ranks keep the graph acyclic
+		List<ComponentInfo> infos = new ArrayList<ComponentInfo>();
+		for (int i = 1; i <= COUNT; i++)
+		{
+			ComponentInfo info = createInfo(i, CONTAINERS[random.nextInt(CONTAINERS.length)]);
+			infos.add(info);
+			order.update(info);
+		}
+
+		for (int edit = 0; edit < 5000; edit++)
+		{
+			int i = random.nextInt(COUNT);
+			int j = random.nextInt(COUNT);
+			if (i == j)
+				continue;
+			ComponentInfo client = infos.get(Math.min(i, j));
+			ComponentInfo used = infos.get(Math.max(i, j));
+			if (used.getClients().contains(client.getHandle()))
+				used.getClients().remove(client.getHandle());
+			else
+				used.getClients().add(client.getHandle());
+			order.update(used);
+
+			if (edit % 100 == 0)
+				checkOrder(order.getShutdownOrder(), infos);
+		}
+
+		checkOrder(order.getShutdownOrder(), infos);
+		int total = 0;
+		for (String containerName : CONTAINERS)
+		{
+			ComponentInfo[] containerOrder = order.getShutdownOrder(containerName);
+			total += containerOrder.length;
+			checkOrder(containerOrder, infos);
+			for (ComponentInfo info : containerOrder)
+				assertEquals(containerName, info.getContainerName());
+		}
+		assertEquals(COUNT, total);
+	}
+
+	private void checkOrder(ComponentInfo[] shutdownOrder, List<ComponentInfo> infos)
+	{
+		Map<Integer, Integer> position = new HashMap<Integer, Integer>();
+		for (int i = 0; i < shutdownOrder.length; i++)
+			position.put(shutdownOrder[i].getHandle(), i);
+
+		for (ComponentInfo info : infos)
+		{
+			Integer pos = position.get(info.getHandle());
+			if (pos == null)
+				continue;
+			int[] clients = info.getClients().toArray();
+			for (int k = 0; k < clients.length; k++)
+			{
+				Integer clientPos = position.get(clients[k]);
+				if (clientPos != null)
+					assertTrue(clientPos.intValue() < pos.intValue());
+			}
+		}
+	}
+
+	private static void assertEquals(int[] expected, int[] actual)
+	{
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], actual[i]);
+	}
+
+	public static TestSuite suite()
+	{
+		return new TestSuite(ComponentInfoTopologicalOrderTest.class);
+	}
+
+}
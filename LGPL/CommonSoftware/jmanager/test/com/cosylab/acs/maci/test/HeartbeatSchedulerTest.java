@@ -0,0 +1,274 @@
+/*
+ * @@COPYRIGHT@@
+ */
+
+package com.cosylab.acs.maci.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.cosylab.acs.maci.ClientInfo;
+import com.cosylab.acs.maci.RemoteException;
+import com.cosylab.acs.maci.manager.HeartbeatScheduler;
+import com.cosylab.acs.maci.manager.ManagerImpl;
+import com.cosylab.acs.maci.manager.PingTimerTask;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * JUnit Test for HeartbeatScheduler.
+ * 
+ * @version	@@VERSION@@
+ */
+public class HeartbeatSchedulerTest extends TestCase
+{
+
+	/**
+	 * Client which counts pings and optionally blocks in ping.
+	 */
+	private static class PingClient extends TestClient
+	{
+		final AtomicInteger pings = new AtomicInteger(0);
+		final long pingDuration;
+		static final AtomicInteger concurrentPings = new AtomicInteger(0);
+		static final AtomicInteger maxConcurrentPings = new AtomicInteger(0);
+
+		public PingClient(String name, long pingDuration)
+		{
+			super(name);
+			this.pingDuration = pingDuration;
+		}
+
+		public boolean ping() throws RemoteException
+		{
+			int concurrent = concurrentPings.incrementAndGet();
+			int max;
+			while (concurrent > (max = maxConcurrentPings.get()))
+				if (maxConcurrentPings.compareAndSet(max, concurrent))
+					break;
+			try {
+				pings.incrementAndGet();
+				if (pingDuration > 0)
+					Thread.sleep(pingDuration);
+			} catch (InterruptedException ie) {
+				// noop
+			} finally {
+				concurrentPings.decrementAndGet();
+			}
+			return super.ping();
+		}
+	}
+
+	/**
+	 * Ping task which counts pings and timeouts.
+	 */
+	private static class CountingPingTask extends PingTimerTask
+	{
+		final PingClient client;
+		final AtomicInteger timeouts = new AtomicInteger(0);
+		volatile Thread timeoutThread;
+
+		public CountingPingTask(ManagerImpl manager, Logger logger, int handle, long pingDuration)
+		{
+			this(manager, logger, handle, new PingClient("client" + handle, pingDuration));
+		}
+
+		private CountingPingTask(ManagerImpl manager, Logger logger, int handle, PingClient client)
+		{
+			super(manager, logger, new ClientInfo(handle, client.getName(), client), null);
+			this.client = client;
+		}
+
+		int pings()
+		{
+			return client.pings.get();
+		}
+
+		public void pingTimedOut()
+		{
+			timeoutThread = Thread.currentThread();
+			timeouts.incrementAndGet();
+		}
+	}
+
+	private Logger logger;
+	private ManagerImpl manager;
+	private HeartbeatScheduler scheduler;
+
+	/**
+	 */
+	public HeartbeatSchedulerTest(String name)
+	{
+		super(name);
+	}
+	
+	/**
+	 */
+	public static TestSuite suite()
+	{
+		return new TestSuite(HeartbeatSchedulerTest.class);
+	}
+
+	/**
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		logger = Logger.getLogger("HeartbeatSchedulerTest");
+		logger.setLevel(Level.OFF);
+		manager = new ManagerImpl();
+		PingClient.concurrentPings.set(0);
+		PingClient.maxConcurrentPings.set(0);
+	}
+
+	/**
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		if (scheduler != null)
+			scheduler.shutdown();
+	}
+
+	/**
+	 * A hung target must not delay the heartbeat of the others and must be reported after each deadline.
+	 */
+	public void testHungTarget() throws Exception
+	{
+		scheduler = new HeartbeatScheduler(logger, 4, 0.0);
+
+		CountingPingTask hung = new CountingPingTask(manager, logger, 1, 5000);
+		CountingPingTask healthy = new CountingPingTask(manager, logger, 2, 0);
+		scheduler.schedule(hung, 0, 100, 100);
+		scheduler.schedule(healthy, 0, 100, 100);
+
+		Thread.sleep(1050);
+
+		// only one outstanding ping per target
+		assertEquals(1, hung.pings());
+		assertTrue(hung.timeouts.get() >= 8);
+		assertTrue(healthy.pings() >= 9);
+		assertEquals(0, healthy.timeouts.get());
+
+		// timeouts are handled by the deadline thread
+		assertTrue(hung.timeoutThread.getName().startsWith("managerHeartbeatDeadline"));
+	}
+
+	/**
+	 * Deadlines expire also when all the ping threads are blocked by hung targets.
+	 */
+	public void testAllPingThreadsBlocked() throws Exception
+	{
+		scheduler = new HeartbeatScheduler(logger, 2, 0.0);
+
+		CountingPingTask hung1 = new CountingPingTask(manager, logger, 1, 5000);
+		CountingPingTask hung2 = new CountingPingTask(manager, logger, 2, 5000);
+		CountingPingTask waiting = new CountingPingTask(manager, logger, 3, 0);
+		scheduler.schedule(hung1, 0, 100, 200);
+		scheduler.schedule(hung2, 0, 100, 200);
+		Thread.sleep(50);
+		scheduler.schedule(waiting, 0, 100, 200);
+
+		Thread.sleep(700);
+
+		assertEquals(3, hung1.timeouts.get());
+		assertEquals(3, hung2.timeouts.get());
+		// its ping waits for a ping thread, which does not count as a timeout
+		assertEquals(0, waiting.pings());
+		assertEquals(0, waiting.timeouts.get());
+	}
+
+	/**
+	 * By default a slow but alive target is not timed-out as long as its ping returns within the ping call timeout.
+	 */
+	public void testDefaultDeadline() throws Exception
+	{
+		scheduler = new HeartbeatScheduler(logger, 2, 0.0);
+
+		CountingPingTask slow = new CountingPingTask(manager, logger, 1, 300);
+		scheduler.schedule(slow, 0, 100);
+
+		Thread.sleep(1000);
+
+		assertTrue(slow.pings() >= 2);
+		assertEquals(0, slow.timeouts.get());
+		assertEquals(0, scheduler.getDeadlineMissedCount());
+	}
+
+	/**
+	 * A ping that returns after its deadline was handled as timed-out: its late result is ignored.
+	 */
+	public void testLateCompletionIgnored() throws Exception
+	{
+		scheduler = new HeartbeatScheduler(logger, 2, 0.0);
+
+		// malfunctioning clients are logged out (and the task canceled)...
+		CountingPingTask fast = new CountingPingTask(manager, logger, 1, 0);
+		fast.client.setOperative(false);
+		// ... unless the ping was already resolved as timed-out
+		CountingPingTask late = new CountingPingTask(manager, logger, 2, 500);
+		late.client.setOperative(false);
+
+		scheduler.schedule(fast, 0, 100);
+		scheduler.schedule(late, 0, 200, 300);
+
+		// timed-out at 300 ms, returns at 500 ms, pinged again at 600 ms
+		Thread.sleep(560);
+
+		assertTrue(fast.isCancelled());
+		assertEquals(1, late.pings());
+		assertEquals(1, late.timeouts.get());
+		assertFalse(late.isCancelled());
+	}
+
+	/**
+	 * Canceled tasks are not pinged any more.
+	 */
+	public void testCancel() throws Exception
+	{
+		scheduler = new HeartbeatScheduler(logger, 2, 0.0);
+
+		CountingPingTask task = new CountingPingTask(manager, logger, 1, 0);
+		scheduler.schedule(task, 0, 50);
+		Thread.sleep(275);
+		task.cancel();
+		Thread.sleep(100);
+		int pings = task.pings();
+		assertTrue(pings >= 4);
+		Thread.sleep(200);
+		assertEquals(pings, task.pings());
+	}
+
+	/**
+	 * Number of concurrent pings is bounded, also with 300 clients of which some are hung.
+	 */
+	public void testBoundedParallelism() throws Exception
+	{
+		final int threads = 10;
+		scheduler = new HeartbeatScheduler(logger, threads);
+
+		CountingPingTask[] tasks = new CountingPingTask[300];
+		for (int i = 0; i < tasks.length; i++)
+		{
+			tasks[i] = new CountingPingTask(manager, logger, i + 1, (i % 100 == 0) ? 10000 : 1);
+			scheduler.schedule(tasks[i], 0, 200, 400);
+		}
+
+		Thread.sleep(2000);
+		scheduler.shutdown();
+
+		assertTrue(PingClient.maxConcurrentPings.get() <= threads);
+		for (int i = 0; i < tasks.length; i++)
+		{
+			if (i % 100 == 0)
+				assertTrue(tasks[i].timeouts.get() > 0);
+			else
+				assertTrue("client" + (i + 1) + " pinged " + tasks[i].pings() + " times", tasks[i].pings() >= 5);
+		}
+		assertTrue(scheduler.getPingCount() > 0);
+		assertTrue(scheduler.getDeadlineMissedCount() > 0);
+	}
+
+}
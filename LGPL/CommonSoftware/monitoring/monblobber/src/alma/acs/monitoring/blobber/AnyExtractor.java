@@ -66,7 +66,6 @@ import alma.TMCDB.uLongLongSeqBlobDataSeqHelper;
 import alma.TMCDB.uLongSeqBlobData;
 import alma.TMCDB.uLongSeqBlobDataSeqHelper;
 import alma.acs.monitoring.MonitorPointTimeSeries;
-import alma.acs.monitoring.MonitorPointValue;
 
 /**
  * Processes the monitor point data that arrives to the blobber in the form of Corba Anys.
@@ -103,6 +102,9 @@ class AnyExtractor
 	 * We keep NaN floating point types, so that they will have to be supressed later in the
 	 * data processing if needed. 
 	 * <p>
+	 * The extracted values are added to the columns of the MonitorPointTimeSeries as primitive values,
+	 * see {@link MonitorPointTimeSeries#addSample(long, double)} etc.
+	 * <p>
 	 * Currently this method also rearranges the sequence data based on information 
 	 * obtained from monitorPointExpert. This should be done separately in the future.
 	 * 
@@ -123,12 +125,10 @@ class AnyExtractor
 			// For this case, the index, i.e., the position inside the sequence is 0
 			if (inSequence.type().equal(doubleBlobDataSeqHelper.type())) {
 				doubleBlobData[] blobDataArray = doubleBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, doubleBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, doubleBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (doubleBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
-					mpv.addValue(blobData.value); // Double
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Double
 				}
 			}
 	
@@ -139,26 +139,19 @@ class AnyExtractor
 				if (blobDataMatrix != null && blobDataMatrix.length > 0) {
 					if (monitorPointExpert.isMultivaluedMonitorPoint(propertyName)) {
 						// We interpret this as a time series of a single multi-valued monitor point
-						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, doubleSeqBlobDataSeqHelper.type().id());
+						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, doubleSeqBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						outList.add(mpTs);
 						for (doubleSeqBlobData blobDataArray : blobDataMatrix) {
-							MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-							for (double value : blobDataArray.value) {
-								mpv.addValue(value); // Double
-							}
-							mpTs.addMonitorPointValue(mpv);
+							mpTs.addSample(blobDataArray.time, blobDataArray.value); // Double[]
 						}
 					}
 					else {
 						// We interpret this as a time series of multiple single-valued monitor points
-						populateList(outList, blobDataMatrix[0].value.length, doubleBlobDataSeqHelper.type().id());
+						populateList(outList, blobDataMatrix[0].value.length, doubleBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						for (doubleSeqBlobData blobDataArray : blobDataMatrix) {
 							int index = 0;
 							for (double value : blobDataArray.value) {
-								MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-								mpv.addValue(value); // Double
-								MonitorPointTimeSeries mpTs = outList.get(index);
-								mpTs.addMonitorPointValue(mpv);
+								outList.get(index).addSample(blobDataArray.time, value); // Double
 								index++;
 							}
 						}
@@ -170,12 +163,10 @@ class AnyExtractor
 			// This is time series data coming from a simple property.
 			else if (inSequence.type().equal(floatBlobDataSeqHelper.type())) {
 				floatBlobData[] blobDataArray = floatBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, floatBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, floatBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (floatBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
-					mpv.addValue(blobData.value); // Float
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Float
 				}
 			}
 			
@@ -186,26 +177,19 @@ class AnyExtractor
 				if (blobDataMatrix != null && blobDataMatrix.length > 0) {
 					if (monitorPointExpert.isMultivaluedMonitorPoint(propertyName)) {
 						// We interpret this as a time series of a single multi-valued monitor point
-						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, floatSeqBlobDataSeqHelper.type().id());
+						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, floatSeqBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						outList.add(mpTs);
 						for (floatSeqBlobData blobDataArray : blobDataMatrix) {
-							MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-							for (float value : blobDataArray.value) {
-								mpv.addValue(value); // Float
-							}
-							mpTs.addMonitorPointValue(mpv);
+							mpTs.addSample(blobDataArray.time, blobDataArray.value); // Float[]
 						}
 					}
 					else {
 						// We interpret this as a time series of multiple single-valued monitor points
-						populateList(outList, blobDataMatrix[0].value.length, floatBlobDataSeqHelper.type().id());
+						populateList(outList, blobDataMatrix[0].value.length, floatBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						for (floatSeqBlobData blobDataArray : blobDataMatrix) {
 							int index = 0;
 							for (float value : blobDataArray.value) {
-								MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-								mpv.addValue(value); // Float
-								MonitorPointTimeSeries mpTs = outList.get(index);
-								mpTs.addMonitorPointValue(mpv);
+								outList.get(index).addSample(blobDataArray.time, value); // Float
 								index++;
 							}
 						}
@@ -217,12 +201,10 @@ class AnyExtractor
 			// This is time series data coming from a simple property.
 			else if (inSequence.type().equal(longBlobDataSeqHelper.type())) {
 				longBlobData[] blobDataArray = longBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, longBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, longBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (longBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
-					mpv.addValue(blobData.value); // Long
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Long
 				}
 			}
 			// longSeqBlobDataSeq
@@ -232,26 +214,19 @@ class AnyExtractor
 				if (blobDataMatrix != null && blobDataMatrix.length > 0) {
 					if (monitorPointExpert.isMultivaluedMonitorPoint(propertyName)) {
 						// We interpret this as a time series of a single multi-valued monitor point
-						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, longSeqBlobDataSeqHelper.type().id());
+						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, longSeqBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						outList.add(mpTs);
 						for (longSeqBlobData blobDataArray : blobDataMatrix) {
-							MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-							for (long value : blobDataArray.value) {
-								mpv.addValue(value); // Long
-							}
-							mpTs.addMonitorPointValue(mpv);
+							mpTs.addSample(blobDataArray.time, blobDataArray.value); // Long[]
 						}
 					}
 					else {
 						// We interpret this as a time series of multiple single-valued monitor points
-						populateList(outList, blobDataMatrix[0].value.length, longBlobDataSeqHelper.type().id());
+						populateList(outList, blobDataMatrix[0].value.length, longBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						for (longSeqBlobData blobDataArray : blobDataMatrix) {
 							int index = 0;
 							for (long value : blobDataArray.value) {
-								MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-								mpv.addValue(value); // Long
-								MonitorPointTimeSeries mpTs = outList.get(index);
-								mpTs.addMonitorPointValue(mpv);
+								outList.get(index).addSample(blobDataArray.time, value); // Long
 								index++;
 							}
 						}
@@ -263,13 +238,11 @@ class AnyExtractor
 			// This is time series data coming from a simple property.
 			else if (inSequence.type().equal(uLongBlobDataSeqHelper.type())) {
 				uLongBlobData[] blobDataArray = uLongBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, uLongBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, uLongBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (uLongBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
 					// TODO: use Long and fix mismatch if blobData.value < 0
-					mpv.addValue(blobData.value); // Integer
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Integer
 				}
 			}
 			// uLongSeqBlobDataSeq
@@ -279,28 +252,21 @@ class AnyExtractor
 				if (blobDataMatrix != null && blobDataMatrix.length > 0) {
 					if (monitorPointExpert.isMultivaluedMonitorPoint(propertyName)) {
 						// We interpret this as a time series of a single multi-valued monitor point
-						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, uLongSeqBlobDataSeqHelper.type().id());
+						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, uLongSeqBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						outList.add(mpTs);
 						for (uLongSeqBlobData blobDataArray : blobDataMatrix) {
-							MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-							for (int value : blobDataArray.value) {
-								// TODO: use Long and fix mismatch if value < 0
-								mpv.addValue(value); // Integer
-							}
-							mpTs.addMonitorPointValue(mpv);
+							// TODO: use Long and fix mismatch if value < 0
+							mpTs.addSample(blobDataArray.time, blobDataArray.value); // Integer[]
 						}
 					}
 					else {
 						// We interpret this as a time series of multiple single-valued monitor points
-						populateList(outList, blobDataMatrix[0].value.length, uLongBlobDataSeqHelper.type().id());
+						populateList(outList, blobDataMatrix[0].value.length, uLongBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						for (uLongSeqBlobData blobDataArray : blobDataMatrix) {
 							int index = 0;
 							for (int value : blobDataArray.value) {
-								MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
 								// TODO: use Long and fix mismatch if value < 0
-								mpv.addValue(value); // Integer
-								MonitorPointTimeSeries mpTs = outList.get(index);
-								mpTs.addMonitorPointValue(mpv);
+								outList.get(index).addSample(blobDataArray.time, value); // Integer
 								index++;
 							}
 						}
@@ -312,12 +278,10 @@ class AnyExtractor
 			// This is time series data coming from a simple property.
 			else if (inSequence.type().equal(longLongBlobDataSeqHelper.type())) {
 				longLongBlobData[] blobDataArray = longLongBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, longLongBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, longLongBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (longLongBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
-					mpv.addValue(blobData.value); // Long
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Long
 				}
 			}
 			// longLongSeqBlobDataSeq
@@ -327,26 +291,19 @@ class AnyExtractor
 				if (blobDataMatrix != null && blobDataMatrix.length > 0) {
 					if (monitorPointExpert.isMultivaluedMonitorPoint(propertyName)) {
 						// We interpret this as a time series of a single multi-valued monitor point
-						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, longLongSeqBlobDataSeqHelper.type().id());
+						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, longLongSeqBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						outList.add(mpTs);
 						for (longLongSeqBlobData blobDataArray : blobDataMatrix) {
-							MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-							for (long value : blobDataArray.value) {
-								mpv.addValue(value); // Long
-							}
-							mpTs.addMonitorPointValue(mpv);
+							mpTs.addSample(blobDataArray.time, blobDataArray.value); // Long[]
 						}
 					}
 					else {
 						// We interpret this as a time series of multiple single-valued monitor points
-						populateList(outList, blobDataMatrix[0].value.length, longLongBlobDataSeqHelper.type().id());
+						populateList(outList, blobDataMatrix[0].value.length, longLongBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						for (longLongSeqBlobData blobDataArray : blobDataMatrix) {
 							int index = 0;
 							for (long value : blobDataArray.value) {
-								MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-								mpv.addValue(value); // Long
-								MonitorPointTimeSeries mpTs = outList.get(index);
-								mpTs.addMonitorPointValue(mpv);
+								outList.get(index).addSample(blobDataArray.time, value); // Long
 								index++;
 							}
 						}
@@ -358,17 +315,15 @@ class AnyExtractor
 			// This is time series data coming from a simple property.
 			else if (inSequence.type().equal(uLongLongBlobDataSeqHelper.type())) {
 				uLongLongBlobData[] blobDataArray = uLongLongBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, uLongLongBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, uLongLongBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (uLongLongBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
 					// TODO: Use BigInteger and fix mismatch for negative values, something like 
 					//          if (blobData.value < 0) {BigInteger.valueOf(blobData.value).add(new BigInteger("10000000000000000", 16)));
 					//          This will not resolve overflow problems with computing the statistics though.
 					//       Or better get rid of "unsigned long long" in our IDL, or replace it with something like
 					//          "typedef fixed<31,0> BigInt"
-					mpv.addValue(blobData.value); // Long
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Long
 				}
 			}
 			// uLongLongSeqBlobDataSeq
@@ -378,28 +333,21 @@ class AnyExtractor
 				if (blobDataMatrix != null && blobDataMatrix.length > 0) {
 					if (monitorPointExpert.isMultivaluedMonitorPoint(propertyName)) {
 						// We interpret this as a time series of a single multi-valued monitor point
-						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, uLongLongSeqBlobDataSeqHelper.type().id());
+						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, uLongLongSeqBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						outList.add(mpTs);
 						for (uLongLongSeqBlobData blobDataArray : blobDataMatrix) {
-							MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
 							// TODO: See type mismatch comment above for uLongLongBlobDataSeq
-							for (long value : blobDataArray.value) {
-								mpv.addValue(value); // Long
-							}
-							mpTs.addMonitorPointValue(mpv);
+							mpTs.addSample(blobDataArray.time, blobDataArray.value); // Long[]
 						}
 					}
 					else {
 						// We interpret this as a time series of multiple single-valued monitor points
-						populateList(outList, blobDataMatrix[0].value.length, uLongLongBlobDataSeqHelper.type().id());
+						populateList(outList, blobDataMatrix[0].value.length, uLongLongBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						for (uLongLongSeqBlobData blobDataArray : blobDataMatrix) {
 							int index = 0;
 							// TODO: See type mismatch comment above for uLongLongBlobDataSeq
 							for (long value : blobDataArray.value) {
-								MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-								mpv.addValue(value); // Long
-								MonitorPointTimeSeries mpTs = outList.get(index);
-								mpTs.addMonitorPointValue(mpv);
+								outList.get(index).addSample(blobDataArray.time, value); // Long
 								index++;
 							}
 						}
@@ -411,12 +359,10 @@ class AnyExtractor
 			// This is time series data coming from a simple property.
 			else if (inSequence.type().equal(booleanBlobDataSeqHelper.type())) {
 				booleanBlobData[] blobDataArray = booleanBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, booleanBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, booleanBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (booleanBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
-					mpv.addValue(blobData.value); // Boolean
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Boolean
 				}
 			}
 			// booleanSeqBlobDataSeq
@@ -426,26 +372,19 @@ class AnyExtractor
 				if (blobDataMatrix != null && blobDataMatrix.length > 0) {
 					if (monitorPointExpert.isMultivaluedMonitorPoint(propertyName)) {
 						// We interpret this as a time series of a single multi-valued monitor point
-						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, booleanSeqBlobDataSeqHelper.type().id());
+						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, booleanSeqBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						outList.add(mpTs);
 						for (booleanSeqBlobData blobDataArray : blobDataMatrix) {
-							MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-							for (boolean value : blobDataArray.value) {
-								mpv.addValue(value); // Boolean
-							}
-							mpTs.addMonitorPointValue(mpv);
+							mpTs.addSample(blobDataArray.time, blobDataArray.value); // Boolean[]
 						}
 					}
 					else {
 						// We interpret this as a time series of multiple single-valued monitor points
-						populateList(outList, blobDataMatrix[0].value.length, booleanBlobDataSeqHelper.type().id());
+						populateList(outList, blobDataMatrix[0].value.length, booleanBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						for (booleanSeqBlobData blobDataArray : blobDataMatrix) {
 							int index = 0;
 							for (boolean value : blobDataArray.value) {
-								MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-								mpv.addValue(value); // Boolean
-								MonitorPointTimeSeries mpTs = outList.get(index);
-								mpTs.addMonitorPointValue(mpv);
+								outList.get(index).addSample(blobDataArray.time, value); // Boolean
 								index++;
 							}
 						}
@@ -456,24 +395,20 @@ class AnyExtractor
 			// patternBlobDataSeq
 			else if (inSequence.type().equal(patternBlobDataSeqHelper.type())) {
 				patternBlobData[] blobDataArray = patternBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, patternBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, patternBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (patternBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
-					mpv.addValue(blobData.value); // Long
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Long
 				}
 			}
 			
 			// stringBlobDataSeq
 			else if (inSequence.type().equal(stringBlobDataSeqHelper.type())) {
 				stringBlobData[] blobDataArray = stringBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, stringBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, stringBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (stringBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
-					mpv.addValue(blobData.value); // String
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // String
 				}
 			}
 			// stringSeqBlobDataSeq
@@ -482,26 +417,19 @@ class AnyExtractor
 				if (blobDataMatrix != null && blobDataMatrix.length > 0) {
 					if (monitorPointExpert.isMultivaluedMonitorPoint(propertyName)) {
 						// We interpret this as a time series of a single multi-valued monitor point
-						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, stringSeqBlobDataSeqHelper.type().id());
+						MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, stringSeqBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						outList.add(mpTs);
 						for (stringSeqBlobData blobDataArray : blobDataMatrix) {
-							MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-							for (String value : blobDataArray.value) {
-								mpv.addValue(value); // String
-							}
-							mpTs.addMonitorPointValue(mpv);
+							mpTs.addSample(blobDataArray.time, blobDataArray.value); // String[]
 						}
 					}
 					else {
 						// We interpret this as a time series of multiple single-valued monitor points
-						populateList(outList, blobDataMatrix[0].value.length, stringBlobDataSeqHelper.type().id());
+						populateList(outList, blobDataMatrix[0].value.length, stringBlobDataSeqHelper.type().id(), blobDataMatrix.length);
 						for (stringSeqBlobData blobDataArray : blobDataMatrix) {
 							int index = 0;
 							for (String value : blobDataArray.value) {
-								MonitorPointValue mpv = new MonitorPointValue(blobDataArray.time);
-								mpv.addValue(value); // String
-								MonitorPointTimeSeries mpTs = outList.get(index);
-								mpTs.addMonitorPointValue(mpv);
+								outList.get(index).addSample(blobDataArray.time, value); // String
 								index++;
 							}
 						}
@@ -512,12 +440,10 @@ class AnyExtractor
 			// enumBlobDataSeq
 			else if (inSequence.type().equal(enumBlobDataSeqHelper.type())) {
 				enumBlobData[] blobDataArray = enumBlobDataSeqHelper.extract(inSequence);
-				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, enumBlobDataSeqHelper.type().id());
+				MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, enumBlobDataSeqHelper.type().id(), blobDataArray.length);
 				outList.add(mpTs);
 				for (enumBlobData blobData : blobDataArray) {
-					MonitorPointValue mpv = new MonitorPointValue(blobData.time);
-					mpv.addValue(blobData.value); // Integer
-					mpTs.addMonitorPointValue(mpv);
+					mpTs.addSample(blobData.time, blobData.value); // Integer
 				}
 			}
 	
@@ -537,11 +463,11 @@ class AnyExtractor
 
 
 	/**
-	 * Populate inList with the inCount number of containers.
+	 * Populate inList with the inCount number of containers, each sized for inSampleCount samples.
 	 */
-	private void populateList(List<MonitorPointTimeSeries> inList, int inCount, String anyTypeCode) {
+	private void populateList(List<MonitorPointTimeSeries> inList, int inCount, String anyTypeCode, int inSampleCount) {
 		for (int index = 0; index < inCount; index++) {
-			inList.add(new MonitorPointTimeSeries(index, anyTypeCode));
+			inList.add(new MonitorPointTimeSeries(index, anyTypeCode, inSampleCount));
 		}
 	}
 
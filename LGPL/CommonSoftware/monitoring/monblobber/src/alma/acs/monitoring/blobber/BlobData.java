@@ -23,7 +23,7 @@ import java.util.logging.Logger;
 import org.apache.commons.math.stat.descriptive.SummaryStatistics;
 
 import alma.acs.monitoring.MonitorPointTimeSeries;
-import alma.acs.monitoring.MonitorPointValue;
+import alma.acs.monitoring.MonitorPointTimeSeries.ValueType;
 import alma.acs.monitoring.DAO.ComponentData;
 import alma.acs.monitoring.DAO.ComponentStatistics;
 
@@ -41,7 +41,7 @@ public class BlobData extends ComponentData
 	
 	/**
 	 * Calculates the statistics and stores it in {@link #statistics}
-	 * if our monitor point data is represented as Number objects;
+	 * if our monitor point data is of a single-valued numeric type;
 	 * otherwise this call is ignored.
 	 * 
 	 * @param inDataList
@@ -49,32 +49,43 @@ public class BlobData extends ComponentData
 	void calculateStatistics() {
 		if (getDataSize() > 0) {
 			
-			// We trust that the data is homogeneous and check only the first MonitorPointValue
+			// We trust that the data is homogeneous and check only the first sample
 			
-			MonitorPointValue sampleMonitorPointValue = mpTs.getDataList().get(0);
-			
-			if (sampleMonitorPointValue.getData().isEmpty()) {
-				logger.finer("Ignoring calculateStatistics() call for a time series of MonitorPointValue objects that hold no data."); 
+			if (mpTs.getValueCount(0) == 0) {
+				logger.finer("Ignoring calculateStatistics() call for a time series of samples that hold no data."); 
 				return;
 			}
 			
 			// TODO: Should we also compute statistics for multi-valued properties?
 			// This was not done in the original (= pre-ACS 12.0) implementation of BlobberWorker#calculateStatistics
 			// and so far we keep this behavior. 
-			if (sampleMonitorPointValue.isMultiValued()) {
-				logger.finer("Ignoring calculateStatistics() call for a time series of multi-valued MonitorPointValue objects."); 
+			if (mpTs.getValueCount(0) > 1) {
+				logger.finer("Ignoring calculateStatistics() call for a time series of multi-valued samples."); 
 				return;
 			}
 
-			// After the above checks, there should be a single data item in our sampleMonitorPointValue
+			// After the above checks, there should be a single data item in our first sample
 			// We now verify that it has one of the expected numeric types.
-			Object sampleData = sampleMonitorPointValue.getData().get(0);
-			if (!(sampleData instanceof Integer || 
-				  sampleData instanceof Long || 
-				  sampleData instanceof Float || 
-				  sampleData instanceof Double)) 
-			{
-				logger.finer("Ignoring calculateStatistics() call for data type " + sampleData.getClass().getName()); 
+			ValueType type = mpTs.getValueType();
+			Object sampleData = null;
+			if (type == null) {
+				// data from MonitorPointValue objects
+				sampleData = mpTs.getValue(0, 0);
+				if (sampleData instanceof Integer) {
+					type = ValueType.INTEGER;
+				}
+				else if (sampleData instanceof Long) {
+					type = ValueType.LONG;
+				}
+				else if (sampleData instanceof Float) {
+					type = ValueType.FLOAT;
+				}
+				else if (sampleData instanceof Double) {
+					type = ValueType.DOUBLE;
+				}
+			}
+			if (type != ValueType.INTEGER && type != ValueType.LONG && type != ValueType.FLOAT && type != ValueType.DOUBLE) {
+				logger.finer("Ignoring calculateStatistics() call for data type " + (type != null ? type : sampleData.getClass().getName())); 
 				return;
 			}
 			
@@ -82,34 +93,34 @@ public class BlobData extends ComponentData
 			// using apache math lib that works only with 'double' type
 			
 			SummaryStatistics stat = new SummaryStatistics();
-			for (MonitorPointValue blobData : mpTs.getDataList()) {
-				Number value = (Number) blobData.getData().get(0);
-				stat.addValue(value.doubleValue());
+			int size = mpTs.size();
+			for (int i = 0; i < size; i++) {
+				stat.addValue(mpTs.getNumberAsDouble(i, 0));
 			}
 
 			statistics = new ComponentStatistics();
 			
 			// We store the results in a ComponentStatistics object, 
 			// converting to original data types where it makes sense
-			if (sampleData instanceof Integer) {
+			if (type == ValueType.INTEGER) {
 				statistics.min = new Integer((int) Math.round(stat.getMin()));
 				statistics.max = new Integer((int) Math.round(stat.getMax()));
 				statistics.mean = new Double(stat.getMean()); // or Float, to indicate lower precision?
 				statistics.stdDev = new Double(stat.getStandardDeviation()); // or Float, to indicate lower precision?
 			}
-			else if (sampleData instanceof Long) {
+			else if (type == ValueType.LONG) {
 				statistics.min = new Long(Math.round(stat.getMin()));
 				statistics.max = new Long(Math.round(stat.getMax()));
 				statistics.mean = new Double(stat.getMean()); 
 				statistics.stdDev = new Double(stat.getStandardDeviation()); 
 			}
-			else if (sampleData instanceof Float) {
+			else if (type == ValueType.FLOAT) {
 				statistics.min = new Float(stat.getMin());
 				statistics.max = new Float(stat.getMax());
 				statistics.mean = new Float(stat.getMean());
 				statistics.stdDev = new Float(stat.getStandardDeviation());
 			}
-			else if (sampleData instanceof Double) {
+			else if (type == ValueType.DOUBLE) {
 				statistics.min = new Double(stat.getMin());
 				statistics.max = new Double(stat.getMax());
 				statistics.mean = new Double(stat.getMean());
@@ -232,6 +232,9 @@ public class BlobberImpl extends ComponentImplBase implements BlobberOperations
 				m_logger.warning("Thread interrupted while shutting down the blobber loop");
 			}
 		}
+		if (myWorker != null) {
+			myWorker.cleanUp();
+		}
 		blobberPlugin.cleanUp();
 	}
 
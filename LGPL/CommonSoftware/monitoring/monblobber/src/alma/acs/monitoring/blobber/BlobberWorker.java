@@ -22,14 +22,26 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import alma.ACSErrTypeCommon.wrappers.AcsJCouldntCreateObjectEx;
+import alma.ACSErrTypeCommon.wrappers.AcsJNoResourcesEx;
 import alma.JavaContainerError.wrappers.AcsJContainerServicesEx;
 import alma.MonitorArchiver.CollectorListStatus;
 import alma.TMCDB.MonitorBlob;
@@ -53,6 +65,20 @@ import alma.acs.util.StopWatch;
 public class BlobberWorker extends CancelableRunnable {
 
     public static final String BLOBBER_CHECK_JVM_MEMORY_PROPERTYNAME = "alma.acs.monitoring.blobber.checkmemory";
+
+    /**
+     * Name of the property that sets the number of collectors that are harvested concurrently, see {@link #run()}.
+     * Default is {@link #BLOBBER_HARVEST_THREADS_DEFAULT}.
+     */
+    public static final String BLOBBER_HARVEST_THREADS_PROPERTYNAME = "alma.acs.monitoring.blobber.harvestThreads";
+    public static final int BLOBBER_HARVEST_THREADS_DEFAULT = 4;
+
+    /**
+     * Name of the property that sets the time in ms that a single collector may take to deliver its data,
+     * counted from the start of its <code>getMonitorData</code> call, see {@link #run()}.
+     * Default (or a value &lt;= 0) is the collector interval.
+     */
+    public static final String BLOBBER_COLLECTOR_TIMEOUT_PROPERTYNAME = "alma.acs.monitoring.blobber.collectorTimeoutMillis";
 	
     /**
      * DAOs store the data in the DB or on file, inside proper transaction(s) and performing auto-completion of hardware tables if necessary.
@@ -89,7 +115,7 @@ public class BlobberWorker extends CancelableRunnable {
      * <p>
      * We store the property name with full path, e.g. <code>CONTROL/AOSTiming/PSCR:STATUS</code>.
      */
-    private final HashSet<String> loggedFailedStore = new HashSet<String>();
+    private final Set<String> loggedFailedStore = Collections.synchronizedSet(new HashSet<String>());
 
     /**
      * See "<code>archive.tmcdb.monitoring.profiling</code>" in archiveConfig.properties, 
@@ -111,13 +137,39 @@ public class BlobberWorker extends CancelableRunnable {
      * Was added on ACS-9_0_0-B but then not merged to the HEAD in the old location ARCHIVE/TMCDB/.
      * @TODO replace with generic component ref cache
      */
-    private final HashMap<String, MonitorCollectorOperations> collectorName2ComponentReference = 
-    												new HashMap<String, MonitorCollectorOperations>();
+    private final ConcurrentHashMap<String, MonitorCollectorOperations> collectorName2ComponentReference = 
+    												new ConcurrentHashMap<String, MonitorCollectorOperations>();
 
     private final MonitorPointExpert monitorPointExpert;
 
 	private final AnyExtractor anyExtractor;
 
+	/**
+	 * Retrieves and decodes the data from the collectors, see {@link HarvestTask}.
+	 */
+	private final ExecutorService harvestExecutor;
+
+	/**
+	 * The harvested data on its way from the {@link #harvestExecutor} threads to the blobber thread that stores it.
+	 * Bounded, so that the collectors are not harvested faster than their data can be stored.
+	 */
+	private final BlockingQueue<HarvestedCollector> harvestedQueue;
+
+	/**
+	 * IDs of the collectors whose data is being retrieved, or waits to be stored.
+	 */
+	private final Set<String> collectorsInHarvest = Collections.synchronizedSet(new HashSet<String>());
+
+	/**
+	 * See {@link #BLOBBER_COLLECTOR_TIMEOUT_PROPERTYNAME}, &lt;= 0 for the collector interval.
+	 */
+	private final long collectorTimeoutMillis;
+
+	/**
+	 * Metrics of the last cycle, <code>null</code> before the first cycle.
+	 */
+	private volatile CycleStatistics lastCycleStatistics;
+
     /**
      * @param inContainerServices used for logging and to get references to the collector components.
      * @param blobberPlugin 
@@ -132,7 +184,17 @@ public class BlobberWorker extends CancelableRunnable {
         this.myMonitorDAOList = blobberPlugin.getMonitorDAOs();
 //        this.myWatchDog = blobberPlugin.getBlobberWatchDog();
         monitorPointExpert = blobberPlugin.getMonitorPointExpert();
-        anyExtractor = new AnyExtractor(myLogger, monitorPointExpert);
+        // the expert from the plugin does not have to be thread-safe, while the data gets decoded concurrently
+        final MonitorPointExpert pluginExpert = monitorPointExpert;
+        anyExtractor = new AnyExtractor(myLogger, new MonitorPointExpert() {
+        	public synchronized boolean isMultivaluedMonitorPoint(String propertyName) throws AcsJNoResourcesEx {
+        		return pluginExpert.isMultivaluedMonitorPoint(propertyName);
+        	}
+        });
+        int harvestThreads = Math.max(1, Integer.getInteger(BLOBBER_HARVEST_THREADS_PROPERTYNAME, BLOBBER_HARVEST_THREADS_DEFAULT));
+        harvestExecutor = Executors.newFixedThreadPool(harvestThreads, myContainerServices.getThreadFactory());
+        harvestedQueue = new ArrayBlockingQueue<HarvestedCollector>(harvestThreads);
+        collectorTimeoutMillis = Long.getLong(BLOBBER_COLLECTOR_TIMEOUT_PROPERTYNAME, 0);
     }
 
     protected void initWorker() {
@@ -263,7 +325,10 @@ public class BlobberWorker extends CancelableRunnable {
 				myLogger.fine("Trying to fetch collector for container " + inCollectorName);
 			}
 			ret = MonitorCollectorHelper.narrow(myContainerServices.getComponent(inCollectorName));
-			collectorName2ComponentReference.put(inCollectorName, ret);
+			MonitorCollectorOperations otherRet = collectorName2ComponentReference.putIfAbsent(inCollectorName, ret);
+			if (otherRet != null) {
+				ret = otherRet;
+			}
 		}
 		return ret;
 	}
@@ -271,19 +336,35 @@ public class BlobberWorker extends CancelableRunnable {
 	/**
 	 * This method will be called at fixed intervals. It gathers the data from all registered collectors and stores it
 	 * in the database, using the layer from module TMCBD/DAO.
+	 * <p>
+	 * The data of up to {@link #BLOBBER_HARVEST_THREADS_PROPERTYNAME} collectors is retrieved and decoded concurrently
+	 * by {@link #harvestExecutor}, while this thread stores the data of one collector after the other
+	 * as it comes in through {@link #harvestedQueue}.
+	 * <p>
+	 * Every collector has its own deadline, {@link #BLOBBER_COLLECTOR_TIMEOUT_PROPERTYNAME} after the start of its
+	 * <code>getMonitorData</code> call. This thread waits for a collector only until its deadline, and for all collectors
+	 * at most until the collector interval has passed since the start of the cycle.
+	 * Data from collectors that deliver later is stored in the following cycle, and such a collector is skipped
+	 * in following cycles until its data has been stored, so that it is never harvested concurrently.
+	 * <p>
+	 * The metrics of the cycle are published through {@link #cycleCompleted(CycleStatistics)}.
 	 * 
 	 * @see java.lang.Runnable#run()
 	 */
 	@Override
 	public void run() {
 
-		cycleCount.incrementAndGet();
-		myLogger.fine("Running BlobberWorker cycle " + cycleCount);
+		long cycle = cycleCount.incrementAndGet();
+		myLogger.fine("Running BlobberWorker cycle " + cycle);
 
-		int collectorCount = 0;
 		int insertCount = 0;
+		int busyCollectorCount = 0;
+		List<String> lateCollectorIds = new ArrayList<String>();
 
 		StopWatch stopWatchAllCollectors = new StopWatch(myLogger);
+		long intervalMillis = collectIntervalSec * 1000;
+		long deadlineMillis = System.currentTimeMillis() + intervalMillis;
+		long timeoutMillis = (collectorTimeoutMillis > 0 ? collectorTimeoutMillis : intervalMillis);
 
 		// Checking memory requires a GC run (and no other components running in the same container)
 		// to give reasonable results. Running GC from inside the program we don't want to do as default,
@@ -296,39 +377,77 @@ public class BlobberWorker extends CancelableRunnable {
 			myLogger.fine("Used JVM memory in kB after GC before blobber cycle: " + usedMemKBBeforeCycle);
 		}
 
+		// first store the data that came in too late for the previous cycle(s)
+		HarvestedCollector harvested;
+		while ((harvested = harvestedQueue.poll()) != null) {
+			insertCount += storeHarvestedCollector(harvested);
+		}
+
 		// loop over all collectors. Note that collectors can be added and removed during this loop,
 		// so that the initial list size does not necessarily show the number of executed collectors.
-		CollectorData collectorData = null;
+		// The harvests of this cycle that are not yet stored, by collector ID
+		Map<String, HarvestTask> pendingHarvests = new LinkedHashMap<String, HarvestTask>();
 		myCollectorList.resetIterator();
 		while (myCollectorList.hasNext()) {
-			try {
-				collectorData = myCollectorList.next();
+			CollectorData collectorData = myCollectorList.next();
 
-				// has this thread been requested to terminate?
-				if (shouldTerminate) {
-					myLogger.info("Loop over collectors terminated prematurely, skipping '"
-							+ collectorData.getCollectorId() + "' and subsequent collectors.");
+			// has this thread been requested to terminate?
+			if (shouldTerminate) {
+				myLogger.info("Loop over collectors terminated prematurely, skipping '"
+						+ collectorData.getCollectorId() + "' and subsequent collectors.");
+				break;
+			}
+
+			if (!collectorsInHarvest.add(collectorData.getCollectorId())) {
+				// backpressure: at most one harvest per collector
+				busyCollectorCount++;
+				myLogger.fine("Skipping collector " + collectorData.getCollectorId() + " whose data from an earlier cycle has not yet been stored.");
+				continue;
+			}
+			HarvestTask harvestTask = new HarvestTask(collectorData, cycle);
+			pendingHarvests.put(collectorData.getCollectorId(), harvestTask);
+			harvestExecutor.execute(harvestTask);
+		}
+		int collectorCount = pendingHarvests.size();
+
+		// store the data of this cycle's collectors as it comes in
+		long maxHarvestTimeMillis = 0;
+		try {
+			while (!shouldTerminate) {
+				// give up on the collectors that passed their deadline, and wait at most until the next deadline
+				long nowMillis = System.currentTimeMillis();
+				long waitUntilMillis = deadlineMillis;
+				for (Iterator<HarvestTask> it = pendingHarvests.values().iterator(); it.hasNext();) {
+					HarvestTask harvestTask = it.next();
+					long collectorDeadlineMillis = harvestTask.getDeadlineMillis(timeoutMillis);
+					if (collectorDeadlineMillis <= nowMillis) {
+						it.remove();
+						lateCollectorIds.add(harvestTask.collectorData.getCollectorId());
+					}
+					else {
+						waitUntilMillis = Math.min(waitUntilMillis, collectorDeadlineMillis);
+					}
+				}
+				if (pendingHarvests.isEmpty() || nowMillis >= deadlineMillis) {
 					break;
 				}
-
-				collectorCount++;
-				StopWatch stopWatchCurrentCollector = new StopWatch(myLogger);
-
-				// Get the corba ref for the current collector
-				MonitorCollectorOperations collector = getMonitorCollector(collectorData.getCollectorId());
-
-				// The data retrieval, processing, and storage happens here
-				insertCount += harvestCollector(collectorData, collector);
-
-				stopWatchCurrentCollector.logLapTime("process monitoring data from collector " + collectorData.getCollectorId());
-
-			} catch (Exception e) {
-				myLogger.log(Level.WARNING, "Exception caught while processing monitor collector " + collectorData.getCollectorId() 
-								+ "; the data cache for this collector will be cleared, the data is LOST FOREVER", e);
-				// @TODO Shouldn't we raise an alarm also here, now that we do when blobber comp fails to initialize?
-				// Then it would need to be cleared once (the same collector's??) data is processed ok in the next round.
+				// wake up at least every second to check shouldTerminate
+				harvested = harvestedQueue.poll(Math.min(waitUntilMillis - nowMillis, 1000), TimeUnit.MILLISECONDS);
+				if (harvested == null) {
+					continue;
+				}
+				if (harvested.cycle == cycle) {
+					pendingHarvests.remove(harvested.collectorData.getCollectorId());
+					maxHarvestTimeMillis = Math.max(maxHarvestTimeMillis, harvested.harvestTimeMillis);
+				}
+				insertCount += storeHarvestedCollector(harvested);
 			}
+		} catch (InterruptedException ex) {
+			myLogger.info("Interrupted while waiting for data from the collectors.");
+			Thread.currentThread().interrupt();
 		}
+		// collectors not harvested yet at the end of the cycle
+		lateCollectorIds.addAll(pendingHarvests.keySet());
 
 		if (Boolean.getBoolean(BLOBBER_CHECK_JVM_MEMORY_PROPERTYNAME)) {
 			System.gc();
@@ -337,73 +456,261 @@ public class BlobberWorker extends CancelableRunnable {
 			myLogger.fine("Used JVM memory in kB after GC after blobber cycle: " + usedMemKBAfterCycle);
 		}
 
-		long totalTimeMillis = stopWatchAllCollectors.getLapTimeMillis();
+		CycleStatistics statistics = new CycleStatistics(cycle, stopWatchAllCollectors.getLapTimeMillis(), intervalMillis,
+				collectorCount, lateCollectorIds, busyCollectorCount, insertCount, maxHarvestTimeMillis);
+		lastCycleStatistics = statistics;
+		cycleCompleted(statistics);
+	}
 
-		if (totalTimeMillis < collectIntervalSec * 1000) {
+	/**
+	 * Publishes the metrics of a cycle, called at the end of every cycle by the blobber thread.
+	 * This implementation logs them, at level FINE if all collectors were processed in time or WARNING otherwise,
+	 * and sends them as UDP debug messages if profiling is enabled.
+	 * Subclasses can override this method to publish the metrics elsewhere.
+	 * 
+	 * @param statistics The metrics of the cycle that just completed.
+	 */
+	protected void cycleCompleted(CycleStatistics statistics) {
+		String msg = "Processed monitoring data from " + statistics.getCollectorCount() + " collector(s) in "
+				+ statistics.getCycleTimeMillis() + " ms";
+		if (statistics.isWithinInterval() && statistics.getLateCollectorIds().isEmpty() && statistics.getBusyCollectorCount() == 0) {
 			// the good case: all collectors were processed within the foreseen time window
-			String msg = "Processed monitoring data from " + collectorCount + " collector(s) in " + totalTimeMillis + " ms (within the time limit).";
+			msg += " (within the time limit). Slowest collector took " + statistics.getMaxHarvestTimeMillis() + " ms.";
 			myLogger.fine(msg);
-			if (isProfilingEnabled) {
-				debugDataSender.sendUDPPacket(msg, cycleCount.longValue());
-				debugDataSender.sendUDPPacket("Total inserts for cycle " + cycleCount + " were " + insertCount, cycleCount.longValue());
-			}
 		} 
 		else {
-			// the bad case: this run took too long.
-			String msg = "Processed monitoring data from " + collectorCount + " collector(s) in " + totalTimeMillis
-					+ " ms (exceeding the time limit of " + collectIntervalSec + " s).";
+			// the bad case: this run took too long, or some collectors were too slow.
+			msg += " (" + (statistics.isWithinInterval() ? "within" : "exceeding") + " the time limit of " + collectIntervalSec + " s).";
+			if (!statistics.getLateCollectorIds().isEmpty()) {
+				msg += " " + statistics.getLateCollectorIds().size() + " collector(s) did not deliver their data in time, it will be stored in a later cycle: "
+						+ statistics.getLateCollectorIds() + ".";
+			}
+			if (statistics.getBusyCollectorCount() > 0) {
+				msg += " " + statistics.getBusyCollectorCount() + " collector(s) skipped because their data from an earlier cycle was not yet stored.";
+			}
 			myLogger.warning(msg);
-			if (isProfilingEnabled) {
-				debugDataSender.sendUDPPacket(msg, cycleCount.longValue());
-				debugDataSender.sendUDPPacket("Total inserts for cycle " + cycleCount + " were " + insertCount, cycleCount.longValue());
+		}
+		if (isProfilingEnabled) {
+			debugDataSender.sendUDPPacket(msg, statistics.getCycle());
+			debugDataSender.sendUDPPacket("Total inserts for cycle " + statistics.getCycle() + " were " + statistics.getInsertCount(), statistics.getCycle());
+		}
+	}
+
+	/**
+	 * @return The duration of the last blobber cycle, or -1 if there was no cycle yet. 
+	 */
+	long getLastCycleTimeMillis() {
+		CycleStatistics statistics = lastCycleStatistics;
+		return (statistics != null ? statistics.getCycleTimeMillis() : -1);
+	}
+
+	/**
+	 * @return The metrics of the last blobber cycle, or <code>null</code> if there was no cycle yet.
+	 */
+	public CycleStatistics getLastCycleStatistics() {
+		return lastCycleStatistics;
+	}
+
+	/**
+	 * Stops the threads that harvest the collectors, without waiting for running collector calls.
+	 * To be called after the last cycle.
+	 */
+	void cleanUp() {
+		harvestExecutor.shutdownNow();
+	}
+
+	/**
+	 * The metrics of one blobber cycle.
+	 */
+	public static class CycleStatistics {
+		private final long cycle;
+		private final long cycleTimeMillis;
+		private final long intervalMillis;
+		private final int collectorCount;
+		private final List<String> lateCollectorIds;
+		private final int busyCollectorCount;
+		private final int insertCount;
+		private final long maxHarvestTimeMillis;
+
+		CycleStatistics(long cycle, long cycleTimeMillis, long intervalMillis, int collectorCount, List<String> lateCollectorIds,
+				int busyCollectorCount, int insertCount, long maxHarvestTimeMillis) {
+			this.cycle = cycle;
+			this.cycleTimeMillis = cycleTimeMillis;
+			this.intervalMillis = intervalMillis;
+			this.collectorCount = collectorCount;
+			this.lateCollectorIds = Collections.unmodifiableList(lateCollectorIds);
+			this.busyCollectorCount = busyCollectorCount;
+			this.insertCount = insertCount;
+			this.maxHarvestTimeMillis = maxHarvestTimeMillis;
+		}
+
+		/**
+		 * @return The number of the cycle, starting with 1.
+		 */
+		public long getCycle() {
+			return cycle;
+		}
+
+		/**
+		 * @return The duration of the cycle.
+		 */
+		public long getCycleTimeMillis() {
+			return cycleTimeMillis;
+		}
+
+		/**
+		 * @return <code>true</code> if the cycle took less than the collector interval.
+		 */
+		public boolean isWithinInterval() {
+			return cycleTimeMillis < intervalMillis;
+		}
+
+		/**
+		 * @return The number of collectors harvested in the cycle.
+		 */
+		public int getCollectorCount() {
+			return collectorCount;
+		}
+
+		/**
+		 * @return The IDs of the collectors harvested in the cycle that did not deliver their data before their deadline
+		 *         or before the end of the cycle. Their data is stored in a later cycle.
+		 */
+		public List<String> getLateCollectorIds() {
+			return lateCollectorIds;
+		}
+
+		/**
+		 * @return The number of collectors not harvested in the cycle, because their data from an earlier cycle was not yet stored.
+		 */
+		public int getBusyCollectorCount() {
+			return busyCollectorCount;
+		}
+
+		/**
+		 * @return The number of attempted or successful DB inserts in the cycle, including the data of earlier cycles.
+		 */
+		public int getInsertCount() {
+			return insertCount;
+		}
+
+		/**
+		 * @return The longest time to retrieve and decode the data of a collector harvested and stored in the cycle.
+		 */
+		public long getMaxHarvestTimeMillis() {
+			return maxHarvestTimeMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "cycle " + cycle + ": " + cycleTimeMillis + " ms (interval " + intervalMillis + " ms), " + collectorCount
+					+ " collector(s), late " + lateCollectorIds + ", " + busyCollectorCount + " skipped, " + insertCount
+					+ " insert(s), slowest collector " + maxHarvestTimeMillis + " ms";
+		}
+	}
+
+	/**
+	 * The data from one collector, as retrieved and decoded by a {@link HarvestTask}.
+	 */
+	private static class HarvestedCollector {
+		final CollectorData collectorData;
+		final long cycle;
+		Exception failure;
+		int dataBlockCount;
+		long harvestTimeMillis;
+		// the decoded data to store, and the names of the baci properties (for logging)
+		final List<BlobData> blobDataList = new ArrayList<BlobData>();
+		final List<String> blobPropertyNames = new ArrayList<String>();
+
+		HarvestedCollector(CollectorData collectorData, long cycle) {
+			this.collectorData = collectorData;
+			this.cycle = cycle;
+		}
+	}
+
+	/**
+	 * Retrieves and decodes the data from one collector, and puts it into {@link BlobberWorker#harvestedQueue}.
+	 * Blocks while that queue is full, so that no more collectors get harvested as long as the storage is behind.
+	 */
+	private class HarvestTask implements Runnable {
+		private final CollectorData collectorData;
+		private final long cycle;
+		// -1 until the harvest starts
+		private volatile long startMillis = -1;
+		private volatile boolean harvestDone;
+
+		HarvestTask(CollectorData collectorData, long cycle) {
+			this.collectorData = collectorData;
+			this.cycle = cycle;
+		}
+
+		/**
+		 * @return The time by which the harvest must be done, or <code>Long.MAX_VALUE</code>
+		 *         if it has not started yet or is already done (waiting only for the storage).
+		 */
+		long getDeadlineMillis(long timeoutMillis) {
+			long start = startMillis;
+			return (start < 0 || harvestDone ? Long.MAX_VALUE : start + timeoutMillis);
+		}
+
+		public void run() {
+			startMillis = System.currentTimeMillis();
+			HarvestedCollector harvested = new HarvestedCollector(collectorData, cycle);
+			try {
+				StopWatch stopWatchCurrentCollector = new StopWatch(myLogger);
+				
+				// Get the corba ref for the current collector
+				MonitorCollectorOperations collector = getMonitorCollector(collectorData.getCollectorId());
+
+				// The data retrieval and processing happens here
+				harvestCollector(harvested, collector);
+
+				stopWatchCurrentCollector.logLapTime("retrieve monitoring data from collector " + collectorData.getCollectorId());
+			} catch (Exception ex) {
+				harvested.failure = ex;
+			}
+			harvested.harvestTimeMillis = System.currentTimeMillis() - startMillis;
+			harvestDone = true;
+			try {
+				harvestedQueue.put(harvested);
+			} catch (InterruptedException ex) {
+				// the blobber is shutting down
+				collectorsInHarvest.remove(collectorData.getCollectorId());
 			}
 		}
 	}
 
 	/**
-	 * Retrieves and processes the data from one monitor collector component, that is, from one container.
-	 * <p>
-	 * Storage details:
-	 * <ul>
-	 * <li>Uses {@link MonitorDAO} to control DB transactions and store the data.
-	 * <li>Uses a total of one DB transaction (for the data from all properties of all devices, which comes in many
-	 * {@link MonitorDataBlock}s).
-	 * </ul>
+	 * Retrieves and decodes the data from one monitor collector component, that is, from one container.
+	 * Runs in one of the {@link #harvestExecutor} threads.
 	 * 
-	 * @param collectorData
-	 *            The collector ID / name, used for logging and stats.
+	 * @param harvested
+	 *            Gets the decoded data that must be stored.
 	 * @param collector
 	 *            Reference to the collector component
-	 * @return Number of attempted or successful DB inserts, i.e., calls to
-	 *         {@link alma.archive.tmcdb.DAO.MonitorDAO#store(alma.archive.tmcdb.DAO.ComponentData)}.
 	 * @throws Exception
+	 *            If the data could not be retrieved from the collector.
 	 */
-	private int harvestCollector(CollectorData collectorData, MonitorCollectorOperations collector) throws Exception {
+	private void harvestCollector(HarvestedCollector harvested, MonitorCollectorOperations collector) throws Exception {
 
-		int insertCount = 0;
-
-		myLogger.fine("About to call " + collectorData.getCollectorId() + "#getMonitorData()");
+		String collectorId = harvested.collectorData.getCollectorId();
+		myLogger.fine("About to call " + collectorId + "#getMonitorData()");
 		MonitorDataBlock[] dataBlocks = collector.getMonitorData();
-		collectorData.setLastSuccessfulAccessTime(System.currentTimeMillis());
+		harvested.collectorData.setLastSuccessfulAccessTime(System.currentTimeMillis());
 
 		if (dataBlocks != null) {
+			harvested.dataBlockCount = dataBlocks.length;
 
-			// HSO TODO: do not call name() on the remote component, but use the local getCollectorId which happens to
-			// be the name.
 			if (myLogger.isLoggable(Level.FINE)) {
-				myLogger.fine("Received " + dataBlocks.length + " MonitorDataBlocks from collector " + collector.name());
+				myLogger.fine("Received " + dataBlocks.length + " MonitorDataBlocks from collector " + collectorId);
 			}
 
 			if (isProfilingEnabled) {
-				debugDataSender.sendUDPPacket("Received " + dataBlocks.length + " MonitorDataBlocks from collector " + collector.name(), cycleCount.longValue());
+				debugDataSender.sendUDPPacket("Received " + dataBlocks.length + " MonitorDataBlocks from collector " + collectorId, harvested.cycle);
 				Runtime runtime = Runtime.getRuntime();
-				debugDataSender.sendUDPPacket("Used memory: " + Long.toString((runtime.totalMemory() - runtime.freeMemory())), cycleCount.longValue());
-				debugDataSender.sendUDPPacket("Free memory: " + Long.toString(runtime.freeMemory()), cycleCount.longValue());
-				debugDataSender.sendUDPPacket("Total memory: " + Long.toString(runtime.totalMemory()), cycleCount.longValue());
-			}
-
-			for (MonitorDAO monitorDAO : myMonitorDAOList) {
-				monitorDAO.openTransactionStore(Long.toString(cycleCount.longValue()) + "-" + collectorData.getCollectorId()); // @TODO: Should we catch / log the possible Exception, or just let it fly?
+				debugDataSender.sendUDPPacket("Used memory: " + Long.toString((runtime.totalMemory() - runtime.freeMemory())), harvested.cycle);
+				debugDataSender.sendUDPPacket("Free memory: " + Long.toString(runtime.freeMemory()), harvested.cycle);
+				debugDataSender.sendUDPPacket("Total memory: " + Long.toString(runtime.totalMemory()), harvested.cycle);
 			}
 
 			// iterate over devices
@@ -446,55 +753,110 @@ public class BlobberWorker extends CancelableRunnable {
 							blobData = createBlobData(block, blob, container, propertyNameSimple, serialNumber, myLogger);
 
 							if (blobData.getDataSize() > 0) {
-								insertCount++;
-								
-								// hand over our blob data to the DAO(s)
-								storeData(blobData);
+								// to be handed over to the DAO(s) by the blobber thread
+								harvested.blobDataList.add(blobData);
+								harvested.blobPropertyNames.add(blob.propertyName);
 							}
 						}
 					} catch (Exception e) {
-
-						if (!this.loggedFailedStore.contains(blob.propertyName)) {
-
-							this.loggedFailedStore.add(blob.propertyName);
-
-							// @TODO check if http://jira.alma.cl/browse/COMP-4512 can be closed
-							String msg = "Problem when handling property [" + blob.propertyName + "]. "
-									+ "The data cache for this property in collector ["
-									+ collectorData.getCollectorId() + "] will be cleared, the data is NOT stored. ";
-							myLogger.log(Level.WARNING, msg, e);
-
-							// unclear if we want this log. If so, it should be included in the above log,
-							// to avoid spreading the info over many log records that won't be adjacent in jlog.
-							// see alma.archive.tmcdb.DAO.ComponentData.toString() where currently the clob data is excluded.
-							myLogger.log(Level.WARNING, "The data contained in the data cache: " + blobData);
-						} 
-						else {
-							// RK: Matthias suggested we log this too
-							// HSO commented it out again, because now instead we log this AcsJStoreFailureEx
-							// directly in alma.archive.tmcdb.DAO.MonitorDAOImpl.store(ComponentData) at level FINER
-							// myLogger.log(Level.WARNING,
-							// "Repeat of problem when handling property ["
-							// + blob.propertyName + "]", e);
-						}
+						logFailedProperty(blob.propertyName, collectorId, blobData, e);
 					}
 				} // end loop over properties of a single device
 			} // end loop over devices of a single container
+		}
+	}
+
+	/**
+	 * Stores the data from one monitor collector, that is, from one container.
+	 * <p>
+	 * Storage details:
+	 * <ul>
+	 * <li>Uses {@link MonitorDAO} to control DB transactions and store the data.
+	 * <li>Uses a total of one DB transaction (for the data from all properties of all devices, which comes in many
+	 * {@link MonitorDataBlock}s).
+	 * </ul>
+	 * 
+	 * @return Number of attempted or successful DB inserts, i.e., calls to
+	 *         {@link alma.archive.tmcdb.DAO.MonitorDAO#store(alma.archive.tmcdb.DAO.ComponentData)}.
+	 */
+	private int storeHarvestedCollector(HarvestedCollector harvested) {
+		String collectorId = harvested.collectorData.getCollectorId();
+		int insertCount = 0;
+		try {
+			if (harvested.failure != null) {
+				throw harvested.failure;
+			}
+			if (harvested.dataBlockCount == 0) {
+				return 0;
+			}
+			StopWatch stopWatchCurrentCollector = new StopWatch(myLogger);
+
+			for (MonitorDAO monitorDAO : myMonitorDAOList) {
+				monitorDAO.openTransactionStore(Long.toString(harvested.cycle) + "-" + collectorId); // @TODO: Should we catch / log the possible Exception, or just let it fly?
+			}
+
+			for (int i = 0; i < harvested.blobDataList.size(); i++) {
+				BlobData blobData = harvested.blobDataList.get(i);
+				try {
+					insertCount++;
+					// hand over our blob data to the DAO(s)
+					storeData(blobData);
+				} catch (Exception e) {
+					logFailedProperty(harvested.blobPropertyNames.get(i), collectorId, blobData, e);
+				}
+			}
 
 			// close the transaction
 			for (MonitorDAO monitorDAO : myMonitorDAOList) {
 				try {
-					myLogger.fine("myMonitorDAO.closeTransactionStore() for: " + dataBlocks.length
-							+ " MonitorDataBlocks from collector " + collector.name());
+					myLogger.fine("myMonitorDAO.closeTransactionStore() for: " + harvested.dataBlockCount
+							+ " MonitorDataBlocks from collector " + collectorId);
 					monitorDAO.closeTransactionStore();
 				} catch (Exception ex) {
 					myLogger.log(Level.WARNING, "Exception caught. Some monitoring data couldn't be archived", ex);
 				}
 			}
+
+			stopWatchCurrentCollector.logLapTime("store monitoring data from collector " + collectorId);
+
+		} catch (Exception e) {
+			myLogger.log(Level.WARNING, "Exception caught while processing monitor collector " + collectorId 
+							+ "; the data cache for this collector will be cleared, the data is LOST FOREVER", e);
+			// @TODO Shouldn't we raise an alarm also here, now that we do when blobber comp fails to initialize?
+			// Then it would need to be cleared once (the same collector's??) data is processed ok in the next round.
+		} finally {
+			collectorsInHarvest.remove(collectorId);
 		}
 		return insertCount;
 	}
 
+	/**
+	 * Logs the failure to handle the data of a property, only the first time for that property.
+	 */
+	private void logFailedProperty(String blobPropertyName, String collectorId, BlobData blobData, Exception e) {
+		if (this.loggedFailedStore.add(blobPropertyName)) {
+
+			// @TODO check if http://jira.alma.cl/browse/COMP-4512 can be closed
+			String msg = "Problem when handling property [" + blobPropertyName + "]. "
+					+ "The data cache for this property in collector ["
+					+ collectorId + "] will be cleared, the data is NOT stored. ";
+			myLogger.log(Level.WARNING, msg, e);
+
+			// unclear if we want this log. If so, it should be included in the above log,
+			// to avoid spreading the info over many log records that won't be adjacent in jlog.
+			// see alma.archive.tmcdb.DAO.ComponentData.toString() where currently the clob data is excluded.
+			myLogger.log(Level.WARNING, "The data contained in the data cache: " + blobData);
+		} 
+		else {
+			// RK: Matthias suggested we log this too
+			// HSO commented it out again, because now instead we log this AcsJStoreFailureEx
+			// directly in alma.archive.tmcdb.DAO.MonitorDAOImpl.store(ComponentData) at level FINER
+			// myLogger.log(Level.WARNING,
+			// "Repeat of problem when handling property ["
+			// + blob.propertyName + "]", e);
+		}
+	}
+
 	/**
 	 * Creates a BlobData object and fills it with data from the given block, blob etc.
 	 * Broken out from {@link #harvestCollector(CollectorData, MonitorCollectorOperations)} 
@@ -0,0 +1,143 @@
+/*
+ * ALMA - Atacama Large Millimiter Array
+ * Copyright (c) European Southern Observatory, 2011
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package alma.acs.monitoring.blobber;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.omg.CORBA.Any;
+
+import alma.ACSErrTypeCommon.wrappers.AcsJCouldntCreateObjectEx;
+import alma.TMCDB.MonitorBlob;
+import alma.TMCDB.MonitorCollectorOperations;
+import alma.TMCDB.MonitorDataBlock;
+import alma.TMCDB.doubleBlobData;
+import alma.TMCDB.doubleBlobDataSeqHelper;
+import alma.acs.component.client.ComponentClient;
+import alma.acs.container.ContainerServices;
+import alma.acs.logging.ClientLogManager;
+import alma.acs.util.AcsLocations;
+import alma.acs.util.UTCUtility;
+
+/**
+ * Measures the blobber cycle time for many simulated collectors that each take some time to deliver their data,
+ * which gets stored in an in-memory DAO.
+ * The printed cycle times are meant to be compared with the collector interval, and between runs with
+ * different settings of <code>-Dalma.acs.monitoring.blobber.harvestThreads</code> (1 for sequential harvesting).
+ * <p>
+ * Arguments: number of collectors (default 100), collector latency in ms (default 200),
+ * collector interval in s (default 10), number of cycles (default 5).
+ * <p>
+ * Only for manual runs with a running ACS, e.g.
+ * <code>acsStartJava -Dalma.acs.monitoring.blobber.harvestThreads=8 alma.acs.monitoring.blobber.BlobberHarvestBenchmark 100 200</code>.
+ */
+public class BlobberHarvestBenchmark
+{
+	static final int DEVICES_PER_COLLECTOR = 10;
+	static final int PROPERTIES_PER_DEVICE = 10;
+	private static final int SAMPLES_PER_PROPERTY = 10;
+
+	/**
+	 * Harvests the given collectors instead of collector components.
+	 */
+	static class BenchmarkWorker extends BlobberWorker {
+		private final ConcurrentHashMap<String, MonitorCollectorOperations> collectors = new ConcurrentHashMap<String, MonitorCollectorOperations>();
+
+		BenchmarkWorker(ContainerServices containerServices, BlobberPlugin blobberPlugin) throws AcsJCouldntCreateObjectEx {
+			super(containerServices, blobberPlugin);
+		}
+
+		void addSimulatedCollector(String name, MonitorCollectorOperations collector) {
+			collectors.put(name, collector);
+			setMaxCollectorCount(collectors.size());
+			addCollector(name);
+		}
+
+		@Override
+		protected MonitorCollectorOperations getMonitorCollector(String inCollectorName) {
+			return collectors.get(inCollectorName);
+		}
+	}
+
+	/**
+	 * @return The data of one collector, with {@link #DEVICES_PER_COLLECTOR} devices of {@link #PROPERTIES_PER_DEVICE} double properties.
+	 */
+	static MonitorDataBlock[] createData(ContainerServices containerServices, int collectorIndex) {
+		long baseTime = UTCUtility.utcJavaToOmg(System.currentTimeMillis());
+		MonitorDataBlock[] blocks = new MonitorDataBlock[DEVICES_PER_COLLECTOR];
+		for (int device = 0; device < DEVICES_PER_COLLECTOR; device++) {
+			String componentName = "BENCH/C" + collectorIndex + "/DEV" + device;
+			MonitorBlob[] blobs = new MonitorBlob[PROPERTIES_PER_DEVICE];
+			for (int property = 0; property < PROPERTIES_PER_DEVICE; property++) {
+				doubleBlobData[] samples = new doubleBlobData[SAMPLES_PER_PROPERTY];
+				for (int i = 0; i < SAMPLES_PER_PROPERTY; i++) {
+					samples[i] = new doubleBlobData(baseTime + i, i * 0.5 + property);
+				}
+				Any any = containerServices.getAdvancedContainerServices().getAny();
+				doubleBlobDataSeqHelper.insert(any, samples);
+				blobs[property] = new MonitorBlob(false, (short) 0, null, componentName + ":PROP" + property, any);
+			}
+			blocks[device] = new MonitorDataBlock(baseTime, baseTime + SAMPLES_PER_PROPERTY, componentName, "SN" + collectorIndex + "-" + device, blobs);
+		}
+		return blocks;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int collectorCount = (args.length > 0 ? Integer.parseInt(args[0]) : 100);
+		long latencyMillis = (args.length > 1 ? Long.parseLong(args[1]) : 200);
+		long intervalSec = (args.length > 2 ? Long.parseLong(args[2]) : 10);
+		int cycles = (args.length > 3 ? Integer.parseInt(args[3]) : 5);
+
+		Logger logger = ClientLogManager.getAcsLogManager().getLoggerForApplication("BlobberHarvestBenchmark", false);
+		ComponentClient client = new ComponentClient(logger, AcsLocations.figureOutManagerLocation(), "BlobberHarvestBenchmark");
+		try {
+			ContainerServices containerServices = client.getContainerServices();
+			InMemoryMonitorDAO dao = new InMemoryMonitorDAO();
+			BlobberPlugin plugin = new TestBlobberWorker.TestBlobberPlugin(containerServices, dao, new TestBlobber.TestMonitorPointExpert());
+			BenchmarkWorker worker = new BenchmarkWorker(containerServices, plugin);
+			worker.notifyCollectorIntervalChange(intervalSec);
+			for (int i = 0; i < collectorCount; i++) {
+				worker.addSimulatedCollector("BENCH/C" + i + "/MONITOR_COLLECTOR",
+						new SimulatedCollector(logger, latencyMillis, createData(containerServices, i)));
+			}
+
+			try {
+				for (int cycle = 1; cycle <= cycles; cycle++) {
+					long storesBefore = dao.storeCount.get();
+					long start = System.currentTimeMillis();
+					worker.run();
+					System.out.println("Cycle " + cycle + " with collectors of " + latencyMillis + " ms latency: "
+							+ worker.getLastCycleStatistics() + ", " + (dao.storeCount.get() - storesBefore) + " stores.");
+					// like the fixed rate loop of the blobber component
+					long sleepMillis = intervalSec * 1000 - (System.currentTimeMillis() - start);
+					if (sleepMillis > 0 && cycle < cycles) {
+						Thread.sleep(sleepMillis);
+					}
+				}
+			} finally {
+				worker.cleanUp();
+			}
+			System.out.println("Stored " + dao.storeCount.get() + " properties with " + dao.sampleCount.get() + " samples in "
+					+ dao.transactionCount.get() + " transactions (harvestThreads="
+					+ System.getProperty(BlobberWorker.BLOBBER_HARVEST_THREADS_PROPERTYNAME, "default") + ").");
+		} finally {
+			client.tearDown();
+		}
+	}
+}
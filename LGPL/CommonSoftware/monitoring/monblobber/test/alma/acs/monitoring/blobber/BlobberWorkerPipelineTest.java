@@ -0,0 +1,194 @@
+/*
+ * ALMA - Atacama Large Millimiter Array
+ * Copyright (c) European Southern Observatory, 2011
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package alma.acs.monitoring.blobber;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import alma.TMCDB.MonitorDataBlock;
+import alma.acs.component.client.ComponentClientTestCase;
+import alma.acs.logging.ClientLogManager;
+import alma.acs.monitoring.blobber.BlobberHarvestBenchmark.BenchmarkWorker;
+import alma.acs.monitoring.blobber.BlobberWorker.CycleStatistics;
+
+/**
+ * Tests the concurrent harvesting of the {@link BlobberWorker}, with simulated collectors and an in-memory DAO:
+ * bounded parallelism, backpressure from the storage and from slow collectors, per-collector deadlines
+ * and the cycle metrics.
+ */
+public class BlobberWorkerPipelineTest extends ComponentClientTestCase {
+
+	private static final int PROPERTIES_PER_COLLECTOR = BlobberHarvestBenchmark.DEVICES_PER_COLLECTOR * BlobberHarvestBenchmark.PROPERTIES_PER_DEVICE;
+
+	private InMemoryMonitorDAO dao;
+	private BenchmarkWorker worker;
+
+	public BlobberWorkerPipelineTest() throws Exception {
+		super(BlobberWorkerPipelineTest.class.getSimpleName());
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		dao = new InMemoryMonitorDAO();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (worker != null) {
+			worker.cleanUp();
+		}
+		System.clearProperty(BlobberWorker.BLOBBER_HARVEST_THREADS_PROPERTYNAME);
+		System.clearProperty(BlobberWorker.BLOBBER_COLLECTOR_TIMEOUT_PROPERTYNAME);
+		super.tearDown();
+	}
+
+	/**
+	 * Overridden to disable remote logging instead of initializing it.
+	 */
+	@Override
+	protected void initRemoteLogging() {
+		ClientLogManager.getAcsLogManager().suppressRemoteLogging();
+	}
+
+	/**
+	 * Creates the worker, with the given number of harvest threads and collector timeout (0 for the default).
+	 */
+	private void createWorker(int harvestThreads, long collectorTimeoutMillis, long intervalSec) throws Exception {
+		System.setProperty(BlobberWorker.BLOBBER_HARVEST_THREADS_PROPERTYNAME, Integer.toString(harvestThreads));
+		System.setProperty(BlobberWorker.BLOBBER_COLLECTOR_TIMEOUT_PROPERTYNAME, Long.toString(collectorTimeoutMillis));
+		BlobberPlugin plugin = new TestBlobberWorker.TestBlobberPlugin(getContainerServices(), dao, new TestBlobber.TestMonitorPointExpert());
+		worker = new BenchmarkWorker(getContainerServices(), plugin);
+		worker.notifyCollectorIntervalChange(intervalSec);
+	}
+
+	private MonitorDataBlock[] createData(int collectorIndex) {
+		return BlobberHarvestBenchmark.createData(getContainerServices(), collectorIndex);
+	}
+
+	/**
+	 * The collectors are harvested concurrently, by at most as many threads as configured,
+	 * and all their data is stored within the cycle.
+	 */
+	public void testConcurrentHarvest() throws Exception {
+		final int collectorCount = 8;
+		final long latencyMillis = 300;
+		createWorker(4, 0, 10);
+		SimulatedCollector.ConcurrencyCounter concurrencyCounter = new SimulatedCollector.ConcurrencyCounter();
+		for (int i = 0; i < collectorCount; i++) {
+			worker.addSimulatedCollector("C" + i, new SimulatedCollector(m_logger, latencyMillis, createData(i), concurrencyCounter));
+		}
+
+		worker.run();
+
+		CycleStatistics statistics = worker.getLastCycleStatistics();
+		m_logger.info("Statistics of " + statistics);
+		assertEquals(1, statistics.getCycle());
+		assertEquals(collectorCount, statistics.getCollectorCount());
+		assertEquals(Collections.<String>emptyList(), statistics.getLateCollectorIds());
+		assertEquals(0, statistics.getBusyCollectorCount());
+		assertTrue(statistics.isWithinInterval());
+		assertEquals(collectorCount * PROPERTIES_PER_COLLECTOR, statistics.getInsertCount());
+		assertTrue(statistics.getMaxHarvestTimeMillis() >= latencyMillis);
+		// sequential harvesting would take at least this long
+		assertTrue("cycle took " + statistics.getCycleTimeMillis() + " ms", statistics.getCycleTimeMillis() < collectorCount * latencyMillis);
+		assertEquals(statistics.getCycleTimeMillis(), worker.getLastCycleTimeMillis());
+
+		assertEquals(4, concurrencyCounter.getMaxConcurrentCallCount());
+		assertEquals(collectorCount, dao.transactionCount.get());
+		assertEquals(collectorCount * PROPERTIES_PER_COLLECTOR, dao.storeCount.get());
+	}
+
+	/**
+	 * With a slow DB, the collectors are harvested only as fast as their data gets stored.
+	 */
+	public void testStorageBackpressure() throws Exception {
+		final int collectorCount = 12;
+		final int harvestThreads = 2;
+		createWorker(harvestThreads, 0, 20);
+		dao.setCommitDelayMillis(100);
+		// the max number of collectors whose data was requested but is not stored yet
+		final AtomicInteger maxUnstored = new AtomicInteger();
+		final AtomicInteger callCount = new AtomicInteger();
+		for (int i = 0; i < collectorCount; i++) {
+			worker.addSimulatedCollector("C" + i, new SimulatedCollector(m_logger, 10, createData(i)) {
+				@Override
+				public MonitorDataBlock[] getMonitorData() {
+					int unstored = callCount.incrementAndGet() - (int) dao.transactionCount.get();
+					int max;
+					while (unstored > (max = maxUnstored.get()) && !maxUnstored.compareAndSet(max, unstored)) {
+						// retry
+					}
+					return super.getMonitorData();
+				}
+			});
+		}
+
+		worker.run();
+
+		CycleStatistics statistics = worker.getLastCycleStatistics();
+		m_logger.info("Statistics of " + statistics);
+		assertEquals(Collections.<String>emptyList(), statistics.getLateCollectorIds());
+		assertEquals(collectorCount, dao.transactionCount.get());
+		// one being stored, the queue (one entry per harvest thread), and one blocked in every harvest thread
+		assertTrue("max unstored collectors " + maxUnstored.get(), maxUnstored.get() <= 2 * harvestThreads + 1);
+	}
+
+	/**
+	 * A slow collector is given up after its own deadline, without delaying the cycle until the end of the interval.
+	 * It is not harvested again until its late data has been stored, which happens in the next cycle after it arrived.
+	 */
+	public void testCollectorDeadline() throws Exception {
+		final long slowLatencyMillis = 2000;
+		createWorker(4, 300, 10);
+		SimulatedCollector fast = new SimulatedCollector(m_logger, 20, createData(0));
+		SimulatedCollector slow = new SimulatedCollector(m_logger, slowLatencyMillis, createData(1));
+		worker.addSimulatedCollector("FAST", fast);
+		worker.addSimulatedCollector("SLOW", slow);
+
+		long startMillis = System.currentTimeMillis();
+		worker.run();
+		CycleStatistics statistics = worker.getLastCycleStatistics();
+		m_logger.info("Statistics of " + statistics);
+		assertEquals(Arrays.asList("SLOW"), statistics.getLateCollectorIds());
+		assertTrue("cycle took " + statistics.getCycleTimeMillis() + " ms", statistics.getCycleTimeMillis() < slowLatencyMillis);
+		assertEquals(Arrays.asList("1-FAST"), dao.transactionNames);
+
+		// the slow collector is still busy
+		worker.run();
+		statistics = worker.getLastCycleStatistics();
+		m_logger.info("Statistics of " + statistics);
+		assertEquals(1, statistics.getBusyCollectorCount());
+		assertEquals(1, statistics.getCollectorCount());
+		assertEquals(1, slow.getCallCount());
+		assertEquals(2, fast.getCallCount());
+
+		// the late data gets stored, then the slow collector is harvested again
+		Thread.sleep(Math.max(0, startMillis + slowLatencyMillis + 500 - System.currentTimeMillis()));
+		worker.run();
+		statistics = worker.getLastCycleStatistics();
+		m_logger.info("Statistics of " + statistics);
+		assertEquals(Arrays.asList("1-FAST", "2-FAST", "1-SLOW", "3-FAST"), dao.transactionNames);
+		assertEquals(0, statistics.getBusyCollectorCount());
+		assertEquals(2, statistics.getCollectorCount());
+		assertEquals(2, slow.getCallCount());
+		assertEquals(Arrays.asList("SLOW"), statistics.getLateCollectorIds());
+	}
+}
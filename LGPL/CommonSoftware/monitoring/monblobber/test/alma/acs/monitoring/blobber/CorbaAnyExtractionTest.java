@@ -529,6 +529,67 @@ public class CorbaAnyExtractionTest extends JUnit4StandaloneTestBase
 	}
 
 
+	/**
+	 * Tests that the text CLOB of columnar data is the same as for the equivalent MonitorPointValue objects,
+	 * and that the binary CLOB gives back the same data.
+	 */
+	@Test
+	public void testColumnarAndBinaryClob() throws Exception {
+		String propertyName = "MODULE_MODE_STATUS";
+
+		Any any = create_any();
+		double[][] doubleDataMatrix = { 
+				{ 1.0, -2.5, 3.25 }, 
+				{ 1.0E-10, 5.0E20, Double.NaN }, 
+				{}, 
+				{ 7.0, 8.0, 9.0 } };
+		doubleSeqBlobDataSeqHelper.insert(any, createDoubleSeqBlobData(doubleDataMatrix));
+		monitorPointExpert.setMultivalued(propertyName, true);
+		MonitorPointTimeSeries mpTs = anyExtractor.extractData(any, propertyName).get(0);
+		assertThat(mpTs.getValueType(), equalTo(MonitorPointTimeSeries.ValueType.DOUBLE));
+		assertThat(mpTs.size(), equalTo(doubleDataMatrix.length));
+
+		MonitorPointTimeSeries mpTsLegacy = new MonitorPointTimeSeries(0, mpTs.getCorbaTypeId());
+		for (int i = 0; i < doubleDataMatrix.length; i++) {
+			MonitorPointValue mpv = new MonitorPointValue(BASE_TIME + i);
+			for (double value : doubleDataMatrix[i]) {
+				mpv.addValue(value);
+			}
+			mpTsLegacy.addMonitorPointValue(mpv);
+		}
+		assertThat(clobber.generateClob(mpTs), equalTo(clobber.generateClob(mpTsLegacy)));
+
+		for (boolean compress : new boolean[] {false, true}) {
+			byte[] binaryClob = clobber.generateBinaryClob(mpTs, compress);
+			MonitorPointTimeSeries mpTsParsed = Clobber.parseBinaryClob(binaryClob);
+			assertThat(mpTsParsed.getCorbaTypeId(), equalTo(mpTs.getCorbaTypeId()));
+			assertThat(mpTsParsed.getValueType(), equalTo(MonitorPointTimeSeries.ValueType.DOUBLE));
+			assertThat(mpTsParsed.size(), equalTo(doubleDataMatrix.length));
+			for (int i = 0; i < doubleDataMatrix.length; i++) {
+				assertThat(mpTsParsed.getTime(i), equalTo(BASE_TIME + i));
+				assertThat(mpTsParsed.getValueCount(i), equalTo(doubleDataMatrix[i].length));
+				for (int j = 0; j < doubleDataMatrix[i].length; j++) {
+					// compare the bits, for NaN
+					assertThat(Double.doubleToLongBits(mpTsParsed.getDouble(i, j)), equalTo(Double.doubleToLongBits(doubleDataMatrix[i][j])));
+				}
+			}
+		}
+
+		// booleans and strings
+		MonitorPointTimeSeries mpTsBoolean = new MonitorPointTimeSeries(2, "IDL:alma/TMCDB/booleanBlobDataSeq:1.0");
+		MonitorPointTimeSeries mpTsString = new MonitorPointTimeSeries(0, "IDL:alma/TMCDB/stringSeqBlobDataSeq:1.0");
+		for (int i = 0; i < 100; i++) {
+			mpTsBoolean.addSample(BASE_TIME + i * 480000L, i % 3 == 0);
+			mpTsString.addSample(BASE_TIME + i, new String[] {"value " + i, "\u00e9t\u00e9 \u20ac"});
+		}
+		MonitorPointTimeSeries mpTsParsed = Clobber.parseBinaryClob(clobber.generateBinaryClob(mpTsBoolean, true));
+		assertThat(mpTsParsed.getMonitorPointIndex(), equalTo(2));
+		assertThat(clobber.generateClob(mpTsParsed), equalTo(clobber.generateClob(mpTsBoolean)));
+		mpTsParsed = Clobber.parseBinaryClob(clobber.generateBinaryClob(mpTsString, false));
+		assertThat(clobber.generateClob(mpTsParsed), equalTo(clobber.generateClob(mpTsString)));
+		assertThat(mpTsParsed.getString(99, 1), equalTo("\u00e9t\u00e9 \u20ac"));
+	}
+
 	
 	
 	private Any create_any() {
@@ -0,0 +1,72 @@
+/*
+ * ALMA - Atacama Large Millimiter Array
+ * Copyright (c) European Southern Observatory, 2011
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package alma.acs.monitoring.blobber;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import alma.acs.monitoring.DAO.ComponentData;
+import alma.acs.monitoring.DAO.MonitorDAO;
+
+/**
+ * Counts the stored data instead of writing it to a DB.
+ * The commit of a transaction can be slowed down to simulate a slow DB.
+ */
+public class InMemoryMonitorDAO implements MonitorDAO {
+
+	final AtomicLong storeCount = new AtomicLong();
+	final AtomicLong sampleCount = new AtomicLong();
+	final AtomicLong transactionCount = new AtomicLong();
+
+	/**
+	 * Names of the transactions, in the order they were opened.
+	 */
+	final List<String> transactionNames = Collections.synchronizedList(new ArrayList<String>());
+
+	private volatile long commitDelayMillis;
+
+	public void setCommitDelayMillis(long commitDelayMillis) {
+		this.commitDelayMillis = commitDelayMillis;
+	}
+
+	public void store(ComponentData inData) {
+		storeCount.incrementAndGet();
+		sampleCount.addAndGet(inData.sampleSize);
+	}
+
+	public void openTransactionStore(String transactionName) {
+		transactionNames.add(transactionName);
+	}
+
+	public void closeTransactionStore() {
+		if (commitDelayMillis > 0) {
+			try {
+				Thread.sleep(commitDelayMillis);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		transactionCount.incrementAndGet();
+	}
+
+	public void close() {
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2011
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.monitoring.blobber;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import alma.acs.monitoring.MonitorPointTimeSeries;
+import alma.acs.monitoring.MonitorPointValue;
+import alma.acs.monitoring.DAO.Clobber;
+
+/**
+ * Measures the throughput and the allocated memory of filling a MonitorPointTimeSeries and creating its CLOB,
+ * for a collector interval of single-valued and multi-valued double monitor points:
+ * <ul>
+ *   <li>"objects": a MonitorPointValue object with boxed values per sample, as the blobber did before the columnar data.
+ *   <li>"columnar": primitive samples, as added by the AnyExtractor now, with the text CLOB.
+ *   <li>"binary": primitive samples, with the deflated binary CLOB.
+ * </ul>
+ * The allocated memory is measured per thread, which requires the <code>com.sun.management</code> extension of the Sun / Oracle JVMs.
+ * <p>
+ * Only for manual runs, e.g. <code>acsStartJava alma.acs.monitoring.blobber.MonitorPointTimeSeriesBenchmark 20000</code>.
+ */
+public class MonitorPointTimeSeriesBenchmark
+{
+	private static final long BASE_TIME = 134000000000000000L;
+
+	private static long sink;
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void runObjects(Clobber clobber, double[][] data) {
+		MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, "IDL:alma/TMCDB/doubleSeqBlobDataSeq:1.0");
+		for (int i = 0; i < data.length; i++) {
+			MonitorPointValue mpv = new MonitorPointValue(BASE_TIME + i * 480000L);
+			for (double value : data[i]) {
+				mpv.addValue(value);
+			}
+			mpTs.addMonitorPointValue(mpv);
+		}
+		sink += clobber.generateClob(mpTs).length();
+	}
+
+	private static MonitorPointTimeSeries fillColumnar(double[][] data) {
+		MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(0, "IDL:alma/TMCDB/doubleSeqBlobDataSeq:1.0", data.length);
+		for (int i = 0; i < data.length; i++) {
+			if (data[i].length == 1) {
+				mpTs.addSample(BASE_TIME + i * 480000L, data[i][0]);
+			}
+			else {
+				mpTs.addSample(BASE_TIME + i * 480000L, data[i]);
+			}
+		}
+		return mpTs;
+	}
+
+	/**
+	 * @return {calls per second, bytes allocated per call}
+	 */
+	private static double[] measure(String mode, Clobber clobber, double[][] data, int calls) {
+		long bytesBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int call = 0; call < calls; call++) {
+			if (mode.equals("objects")) {
+				runObjects(clobber, data);
+			}
+			else if (mode.equals("columnar")) {
+				sink += clobber.generateClob(fillColumnar(data)).length();
+			}
+			else {
+				sink += clobber.generateBinaryClob(fillColumnar(data), true).length;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		return new double[] { calls / seconds, (allocatedBytes() - bytesBefore) / (double) calls };
+	}
+
+	public static void main(String[] args) throws Exception {
+		int calls = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+		Clobber clobber = new Clobber(Logger.getLogger("MonitorPointTimeSeriesBenchmark"));
+
+		// 50 Hz for 1 minute is 3000 samples, 1 Hz is 60 samples; a multi-valued point with 16 values at 1 Hz
+		int[][] shapes = { { 60, 1 }, { 3000, 1 }, { 60, 16 } };
+		String[] modes = { "objects", "columnar", "binary" };
+		for (int[] shape : shapes) {
+			double[][] data = new double[shape[0]][shape[1]];
+			for (int i = 0; i < shape[0]; i++) {
+				for (int j = 0; j < shape[1]; j++) {
+					data[i][j] = 20.0 + Math.sin(i * 0.01 + j) * 3.7;
+				}
+			}
+			int shapeCalls = Math.max(10, calls * 60 / (shape[0] * shape[1]));
+			StringBuilder line = new StringBuilder();
+			line.append(String.format("%5d samples x %2d values:", shape[0], shape[1]));
+			for (String mode : modes) {
+				// warm-up, then measure
+				double[] result = null;
+				for (int round = 0; round < 3; round++) {
+					result = measure(mode, clobber, data, shapeCalls);
+				}
+				line.append(String.format("  %s %8.0f/s %8.0f bytes", mode, result[0], result[1]));
+			}
+			System.out.println(line);
+		}
+		System.out.println("(" + calls + " calls for 60 values, proportionally fewer for more values; " + sink + ")");
+	}
+}
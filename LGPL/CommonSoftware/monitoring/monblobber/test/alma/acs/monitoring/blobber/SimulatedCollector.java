@@ -0,0 +1,108 @@
+/*
+ * ALMA - Atacama Large Millimiter Array
+ * Copyright (c) European Southern Observatory, 2011
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package alma.acs.monitoring.blobber;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import alma.TMCDB.MonitorDataBlock;
+
+/**
+ * Collector that returns the same data after some latency, which simulates the remote call and the collector's work.
+ * Counts the calls and how many of them run at the same time.
+ */
+public class SimulatedCollector extends MonitorTestCollector {
+
+	/**
+	 * Counts the calls that run at the same time, and their maximum.
+	 * Can be shared by several collectors to count their concurrent calls together.
+	 */
+	public static class ConcurrencyCounter {
+		private final AtomicInteger concurrentCallCount = new AtomicInteger();
+		private final AtomicInteger maxConcurrentCallCount = new AtomicInteger();
+
+		void enter() {
+			int concurrent = concurrentCallCount.incrementAndGet();
+			int max;
+			while (concurrent > (max = maxConcurrentCallCount.get()) && !maxConcurrentCallCount.compareAndSet(max, concurrent)) {
+				// retry
+			}
+		}
+
+		void exit() {
+			concurrentCallCount.decrementAndGet();
+		}
+
+		/**
+		 * @return The max number of calls that ran at the same time.
+		 */
+		public int getMaxConcurrentCallCount() {
+			return maxConcurrentCallCount.get();
+		}
+	}
+
+	private final MonitorDataBlock[] data;
+
+	private volatile long latencyMillis;
+
+	private final AtomicInteger callCount = new AtomicInteger();
+	private final ConcurrencyCounter concurrencyCounter;
+
+	/**
+	 * @param logger
+	 * @param latencyMillis Time each call to {@link #getMonitorData()} takes.
+	 * @param data The data returned by every call.
+	 * @param concurrencyCounter Counts the concurrent calls, can be shared by several collectors.
+	 */
+	public SimulatedCollector(Logger logger, long latencyMillis, MonitorDataBlock[] data, ConcurrencyCounter concurrencyCounter) {
+		super(logger);
+		this.latencyMillis = latencyMillis;
+		this.data = data;
+		this.concurrencyCounter = concurrencyCounter;
+	}
+
+	public SimulatedCollector(Logger logger, long latencyMillis, MonitorDataBlock[] data) {
+		this(logger, latencyMillis, data, new ConcurrencyCounter());
+	}
+
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @return The number of calls to {@link #getMonitorData()} so far.
+	 */
+	public int getCallCount() {
+		return callCount.get();
+	}
+
+	@Override
+	public MonitorDataBlock[] getMonitorData() {
+		callCount.incrementAndGet();
+		concurrencyCounter.enter();
+		try {
+			Thread.sleep(latencyMillis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			concurrencyCounter.exit();
+		}
+		return data;
+	}
+}
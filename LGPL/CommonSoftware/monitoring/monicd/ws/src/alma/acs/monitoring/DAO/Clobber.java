@@ -20,11 +20,19 @@
  *******************************************************************************/
 package alma.acs.monitoring.DAO;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
 
 import alma.acs.monitoring.MonitorPointTimeSeries;
+import alma.acs.monitoring.MonitorPointTimeSeries.ValueType;
 import alma.acs.monitoring.MonitorPointValue;
 
 
@@ -32,11 +40,36 @@ import alma.acs.monitoring.MonitorPointValue;
 /**
  * Creates a CLOB string intended for Oracle TMCDB storage from MonitorPointTimeSeries. 
  * TODO: Move this to the Oracle DAO and keep the ACS blobber layer free of CLOBs.
+ * <p>
+ * The text CLOB is built in a buffer that is reused by the following calls from the same thread,
+ * and for columnar time series (see {@link MonitorPointTimeSeries#getValueType()}) the values are appended without boxing.
+ * <p>
+ * As an alternative to the text format, {@link #generateBinaryClob(MonitorPointTimeSeries, boolean)} 
+ * encodes the data in a compact binary format, optionally compressed, which {@link #parseBinaryClob(byte[])} decodes again.
  * 
  * @author hsommer
  */
 public class Clobber
 {
+	/**
+	 * Buffers that grew beyond this size are not kept for reuse, to not hold the memory of exceptionally large time series.
+	 */
+	private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Version of the binary CLOB format, in the lower bits of the first byte. 
+	 */
+	private static final int BINARY_FORMAT_VERSION = 1;
+
+	/**
+	 * Flag in the first byte of a binary CLOB, set if the rest is deflated.
+	 */
+	private static final int BINARY_FORMAT_DEFLATED = 0x80;
+
+	private static final ThreadLocal<StringBuilder> textBuffers = new ThreadLocal<StringBuilder>();
+
+	private static final ThreadLocal<BinaryBuffer> binaryBuffers = new ThreadLocal<BinaryBuffer>();
+
 	private final Logger logger;
 
 	/**
@@ -51,9 +84,29 @@ public class Clobber
 	 * @return The CLOB, or null if the monitor point is of a floating number type and contains NaN
 	 */
 	public String generateClob(MonitorPointTimeSeries mpTs) {
+		StringBuilder clobBld = textBuffers.get();
+		if (clobBld == null) {
+			clobBld = new StringBuilder(1024);
+			textBuffers.set(clobBld);
+		}
+		try {
+			boolean ok = (mpTs.getValueType() != null ? appendColumnarClob(mpTs, clobBld) : appendValueListClob(mpTs, clobBld));
+			return (ok ? clobBld.toString() : null);
+		} finally {
+			clobBld.setLength(0);
+			if (clobBld.capacity() > MAX_BUFFER_SIZE) {
+				textBuffers.remove();
+			}
+		}
+	}
+
+	/**
+	 * Appends the CLOB for the MonitorPointValue objects of a time series that is not columnar.
+	 * @return false if the monitor point is of a floating number type and contains NaN
+	 */
+	private boolean appendValueListClob(MonitorPointTimeSeries mpTs, StringBuilder clobBld) {
 		
 		List<MonitorPointValue> timeSeriesData = mpTs.getDataList();
-		StringBuilder clobBld = new StringBuilder();
 		
 		for (int i = 0; i < timeSeriesData.size(); i++) {
 			MonitorPointValue mpVal = timeSeriesData.get(i);
@@ -81,14 +134,14 @@ public class Clobber
 				else if (sampleObj instanceof Float) {
 					// Skip NaN values (COMP-5564)
 					if (((Float)sampleObj).isNaN()) {
-						return null;
+						return false;
 					}
 					appendValueString(mpValData, clobBld);
 				}
 				else if (sampleObj instanceof Double) {
 					// Skip NaN values (COMP-5564)
 					if (((Double)sampleObj).isNaN() ) {
-						return null;
+						return false;
 					}
 					appendValueString(mpValData, clobBld);
 				}
@@ -114,7 +167,75 @@ public class Clobber
 		// TODO: Must we keep this trailing newline char from the legacy implementation?
 		clobBld.append('\n');
 		
-		return clobBld.toString();
+		return true;
+	}
+	
+	/**
+	 * Appends the CLOB for columnar data, in the same format as {@link #appendValueListClob(MonitorPointTimeSeries, StringBuilder)}.
+	 * @return false if the monitor point is of a floating number type and contains NaN
+	 */
+	private boolean appendColumnarClob(MonitorPointTimeSeries mpTs, StringBuilder clobBld) {
+		ValueType type = mpTs.getValueType();
+		int size = mpTs.size();
+		for (int i = 0; i < size; i++) {
+			int count = mpTs.getValueCount(i);
+			if (count == 0) {
+				continue;
+			}
+			if (i > 0) {
+				clobBld.append('|');
+			}
+			clobBld.append(mpTs.getTime(i)).append('|');
+
+			// As for MonitorPointValue objects, we check only the first value for NaN
+			switch (type) {
+			case INTEGER:
+				for (int j = 0; j < count; j++) {
+					appendSeparator(j, clobBld).append(mpTs.getInt(i, j));
+				}
+				break;
+			case LONG:
+				for (int j = 0; j < count; j++) {
+					appendSeparator(j, clobBld).append(mpTs.getLong(i, j));
+				}
+				break;
+			case FLOAT:
+				// Skip NaN values (COMP-5564)
+				if (Float.isNaN(mpTs.getFloat(i, 0))) {
+					return false;
+				}
+				for (int j = 0; j < count; j++) {
+					appendSeparator(j, clobBld).append(mpTs.getFloat(i, j));
+				}
+				break;
+			case DOUBLE:
+				// Skip NaN values (COMP-5564)
+				if (Double.isNaN(mpTs.getDouble(i, 0))) {
+					return false;
+				}
+				for (int j = 0; j < count; j++) {
+					appendSeparator(j, clobBld).append(mpTs.getDouble(i, j));
+				}
+				break;
+			case BOOLEAN:
+				// "1" for true and "0" for false, see COMP-8496
+				for (int j = 0; j < count; j++) {
+					appendSeparator(j, clobBld).append(mpTs.getBoolean(i, j) ? '1' : '0');
+				}
+				break;
+			case STRING:
+				for (int j = 0; j < count; j++) {
+					appendSeparator(j, clobBld).append(mpTs.getString(i, j));
+				}
+				break;
+			}
+		}
+		clobBld.append('\n');
+		return true;
+	}
+
+	private static StringBuilder appendSeparator(int valueIndex, StringBuilder clobBld) {
+		return (valueIndex > 0 ? clobBld.append(' ') : clobBld);
 	}
 	
 	/**
@@ -134,4 +255,270 @@ public class Clobber
 		}
 	}
 	
+
+	/**
+	 * Encodes columnar data in a compact binary format:
+	 * <ul>
+	 *   <li>1 byte format version, with the high bit set if the rest is deflated.
+	 *   <li>1 byte {@link ValueType} ordinal, the Corba type ID as modified UTF-8 (see {@link DataInputStream#readUTF()}),
+	 *       the monitor point index and the number of samples as variable-length integers.
+	 *   <li>For every sample, the difference to the previous timestamp (to 0 for the first)
+	 *       and the number of values as variable-length integers, followed by the values:
+	 *       integer types as variable-length integers, float and double as their raw IEEE 754 bits (big-endian),
+	 *       boolean as one byte, and strings as modified UTF-8.
+	 * </ul>
+	 * Variable-length integers use 7 bits per byte (low-order group first, high bit set if more bytes follow),
+	 * with signed values zigzag-encoded. Unlike the text CLOB, NaN values are kept.
+	 * <p>
+	 * The encoding buffer and deflater are reused by the following calls from the same thread.
+	 *
+	 * @param mpTs The time series, which must be columnar or empty.
+	 * @param compress <code>true</code> to deflate the data after the first byte.
+	 * @return The binary CLOB. 
+	 * @throws IllegalArgumentException if the data was added as MonitorPointValue objects.
+	 */
+	public byte[] generateBinaryClob(MonitorPointTimeSeries mpTs, boolean compress) {
+		ValueType type = mpTs.getValueType();
+		if (type == null && mpTs.size() > 0) {
+			throw new IllegalArgumentException("Binary CLOBs require columnar data.");
+		}
+		BinaryBuffer buf = binaryBuffers.get();
+		if (buf == null) {
+			buf = new BinaryBuffer();
+			binaryBuffers.set(buf);
+		}
+		try {
+			buf.writeByte(type == null ? 0xff : type.ordinal());
+			buf.writeUTF(mpTs.getCorbaTypeId() == null ? "" : mpTs.getCorbaTypeId());
+			buf.writeVarLong(mpTs.getMonitorPointIndex());
+			int size = mpTs.size();
+			buf.writeVarLong(size);
+			long previousTime = 0;
+			for (int i = 0; i < size; i++) {
+				long time = mpTs.getTime(i);
+				buf.writeVarLong(zigzag(time - previousTime));
+				previousTime = time;
+				int count = mpTs.getValueCount(i);
+				buf.writeVarLong(count);
+				for (int j = 0; j < count; j++) {
+					switch (type) {
+					case INTEGER:
+						buf.writeVarLong(zigzag(mpTs.getInt(i, j)));
+						break;
+					case LONG:
+						buf.writeVarLong(zigzag(mpTs.getLong(i, j)));
+						break;
+					case FLOAT:
+						buf.writeFixed(Float.floatToRawIntBits(mpTs.getFloat(i, j)), 4);
+						break;
+					case DOUBLE:
+						buf.writeFixed(Double.doubleToRawLongBits(mpTs.getDouble(i, j)), 8);
+						break;
+					case BOOLEAN:
+						buf.writeByte(mpTs.getBoolean(i, j) ? 1 : 0);
+						break;
+					case STRING:
+						buf.writeUTF(mpTs.getString(i, j));
+						break;
+					}
+				}
+			}
+			return buf.toByteArray(compress);
+		} finally {
+			buf.reset();
+			if (buf.data.length > MAX_BUFFER_SIZE) {
+				buf.deflater.end();
+				binaryBuffers.remove();
+			}
+		}
+	}
+
+	/**
+	 * Decodes a CLOB created by {@link #generateBinaryClob(MonitorPointTimeSeries, boolean)}.
+	 * @return The columnar time series.
+	 * @throws IOException if the data is truncated or not in the binary CLOB format.
+	 */
+	public static MonitorPointTimeSeries parseBinaryClob(byte[] clob) throws IOException {
+		if (clob.length == 0 || (clob[0] & ~BINARY_FORMAT_DEFLATED & 0xff) != BINARY_FORMAT_VERSION) {
+			throw new IOException("Not a binary CLOB of format version " + BINARY_FORMAT_VERSION);
+		}
+		InputStream in = new ByteArrayInputStream(clob, 1, clob.length - 1);
+		if ((clob[0] & BINARY_FORMAT_DEFLATED) != 0) {
+			in = new InflaterInputStream(in);
+		}
+		DataInputStream dataIn = new DataInputStream(in);
+		int typeOrdinal = dataIn.readUnsignedByte();
+		ValueType type = (typeOrdinal == 0xff ? null : ValueType.values()[typeOrdinal]);
+		String corbaTypeId = dataIn.readUTF();
+		int index = (int) readVarLong(dataIn);
+		int size = (int) readVarLong(dataIn);
+		MonitorPointTimeSeries mpTs = new MonitorPointTimeSeries(index, corbaTypeId, size);
+		long time = 0;
+		for (int i = 0; i < size; i++) {
+			time += unzigzag(readVarLong(dataIn));
+			int count = (int) readVarLong(dataIn);
+			switch (type) {
+			case INTEGER:
+				int[] intValues = new int[count];
+				for (int j = 0; j < count; j++) {
+					intValues[j] = (int) unzigzag(readVarLong(dataIn));
+				}
+				if (count == 1) mpTs.addSample(time, intValues[0]); else mpTs.addSample(time, intValues);
+				break;
+			case LONG:
+				long[] longValues = new long[count];
+				for (int j = 0; j < count; j++) {
+					longValues[j] = unzigzag(readVarLong(dataIn));
+				}
+				if (count == 1) mpTs.addSample(time, longValues[0]); else mpTs.addSample(time, longValues);
+				break;
+			case FLOAT:
+				float[] floatValues = new float[count];
+				for (int j = 0; j < count; j++) {
+					floatValues[j] = Float.intBitsToFloat(dataIn.readInt());
+				}
+				if (count == 1) mpTs.addSample(time, floatValues[0]); else mpTs.addSample(time, floatValues);
+				break;
+			case DOUBLE:
+				double[] doubleValues = new double[count];
+				for (int j = 0; j < count; j++) {
+					doubleValues[j] = Double.longBitsToDouble(dataIn.readLong());
+				}
+				if (count == 1) mpTs.addSample(time, doubleValues[0]); else mpTs.addSample(time, doubleValues);
+				break;
+			case BOOLEAN:
+				boolean[] booleanValues = new boolean[count];
+				for (int j = 0; j < count; j++) {
+					booleanValues[j] = (dataIn.readUnsignedByte() != 0);
+				}
+				if (count == 1) mpTs.addSample(time, booleanValues[0]); else mpTs.addSample(time, booleanValues);
+				break;
+			case STRING:
+				String[] stringValues = new String[count];
+				for (int j = 0; j < count; j++) {
+					stringValues[j] = dataIn.readUTF();
+				}
+				if (count == 1) mpTs.addSample(time, stringValues[0]); else mpTs.addSample(time, stringValues);
+				break;
+			}
+		}
+		return mpTs;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer in binary CLOB.");
+	}
+
+	/**
+	 * A growable byte array for the binary CLOB encoding, with a deflater to compress it.
+	 */
+	private static class BinaryBuffer {
+		byte[] data = new byte[1024];
+		int length;
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+		private void ensureCapacity(int additional) {
+			if (length + additional > data.length) {
+				data = Arrays.copyOf(data, Math.max(length + additional, data.length * 2));
+			}
+		}
+
+		void writeByte(int b) {
+			ensureCapacity(1);
+			data[length++] = (byte) b;
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7fL) != 0) {
+				data[length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			data[length++] = (byte) value;
+		}
+
+		void writeFixed(long bits, int byteCount) {
+			ensureCapacity(byteCount);
+			for (int shift = (byteCount - 1) * 8; shift >= 0; shift -= 8) {
+				data[length++] = (byte) (bits >>> shift);
+			}
+		}
+
+		/**
+		 * Writes the string in the modified UTF-8 of {@link java.io.DataOutputStream#writeUTF(String)}.
+		 */
+		void writeUTF(String str) {
+			int strLength = str.length();
+			ensureCapacity(2 + strLength * 3);
+			int start = length;
+			length += 2;
+			for (int i = 0; i < strLength; i++) {
+				char c = str.charAt(i);
+				if (c >= 0x0001 && c <= 0x007f) {
+					data[length++] = (byte) c;
+				}
+				else if (c > 0x07ff) {
+					data[length++] = (byte) (0xe0 | ((c >> 12) & 0x0f));
+					data[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+					data[length++] = (byte) (0x80 | (c & 0x3f));
+				}
+				else {
+					data[length++] = (byte) (0xc0 | ((c >> 6) & 0x1f));
+					data[length++] = (byte) (0x80 | (c & 0x3f));
+				}
+			}
+			int utfLength = length - start - 2;
+			if (utfLength > 0xffff) {
+				length = start;
+				throw new IllegalArgumentException("String too long for a binary CLOB: " + utfLength + " bytes");
+			}
+			data[start] = (byte) (utfLength >>> 8);
+			data[start + 1] = (byte) utfLength;
+		}
+
+		byte[] toByteArray(boolean compress) {
+			if (!compress) {
+				byte[] ret = new byte[length + 1];
+				ret[0] = (byte) BINARY_FORMAT_VERSION;
+				System.arraycopy(data, 0, ret, 1, length);
+				return ret;
+			}
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			// the deflated data is written behind the uncompressed data in the same buffer
+			int start = length;
+			ensureCapacity(length / 2 + 64);
+			while (!deflater.finished()) {
+				if (length == data.length) {
+					ensureCapacity(data.length / 2);
+				}
+				length += deflater.deflate(data, length, data.length - length);
+			}
+			byte[] ret = new byte[length - start + 1];
+			ret[0] = (byte) (BINARY_FORMAT_VERSION | BINARY_FORMAT_DEFLATED);
+			System.arraycopy(data, start, ret, 1, length - start);
+			return ret;
+		}
+
+		void reset() {
+			length = 0;
+			deflater.reset();
+		}
+	}
 }
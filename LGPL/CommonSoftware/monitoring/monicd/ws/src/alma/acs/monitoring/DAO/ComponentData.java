@@ -68,7 +68,7 @@ public class ComponentData {
 	public ComponentData(MonitorPointTimeSeries mpTs, Logger logger) {
 		if (mpTs != null) {
 			this.mpTs = mpTs;
-			this.sampleSize = mpTs.getDataList().size();
+			this.sampleSize = mpTs.size();
 		}
 		else {
 			// this can happen for dummy ComponentData used in tests or as queue sentinel in class BlobDataQueue
@@ -86,7 +86,7 @@ public class ComponentData {
 	}
 
 	/**
-	 * Gets the number of MonitorPointValue objects
+	 * Gets the number of samples (timestamps)
 	 * contained in the MonitorPointTimeSeries, 
 	 * or <code>-1</code> if in special cases this ComponentData objects holds no data.
 	 */
@@ -113,6 +113,17 @@ public class ComponentData {
 		return clobCache;
 	}
 
+	/**
+	 * Gets the monitor point data in the binary format of {@link Clobber#generateBinaryClob(MonitorPointTimeSeries, boolean)},
+	 * for DAOs that store it instead of the text CLOB of {@link #getClob()}.
+	 * Unlike that method, the result is not cached.
+	 * 
+	 * @param compress <code>true</code> to deflate the data.
+	 */
+	public byte[] getBinaryClob(boolean compress) {
+		return new Clobber(logger).generateBinaryClob(mpTs, compress);
+	}
+
 	/**
 	 * Returns a formatted name-value string, including the clobbed data.
 	 */
@@ -1,22 +1,57 @@
 package alma.acs.monitoring;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 
 /**
- * Holds the time-series data of one logical monitor point that was extracted 
+ * Holds the time-series data of one logical monitor point that was extracted
  * from the Corba Any representation sent by the monitor collector.
  * <p>
  * Note that data from one multi-valued monitor point
  * may have been split into several MonitorPointTimeSeries instances.
+ * <p>
+ * The data can be added in two ways, which must not be mixed for one instance:
+ * <ul>
+ *   <li>As primitive values, using the <code>addSample</code> methods.
+ *       The data is then kept in columns, i.e. in arrays of timestamps and of primitive values,
+ *       without creating an object per sample. This is what the blobber does.
+ *       The {@link #getValueType() value type} is fixed by the first sample.
+ *   <li>As {@link MonitorPointValue} objects, using {@link #addMonitorPointValue(MonitorPointValue)}.
+ * </ul>
+ * The data can be read independently of how it was added, through {@link #size()}, {@link #getTime(int)},
+ * {@link #getValueCount(int)} and {@link #getValue(int, int)}, or as MonitorPointValue objects through {@link #getDataList()}.
+ * The typed getters such as {@link #getDouble(int, int)} require columnar data.
  */
 public class MonitorPointTimeSeries
 {
+	/**
+	 * The types of the primitive value columns, with the Java types of the boxed values
+	 * as they appear in {@link MonitorPointValue#getData()}.
+	 */
+	public static enum ValueType {
+		/** Integer, from IDL (unsigned) long and enums. */
+		INTEGER,
+		/** Long, from IDL (unsigned) long long and pattern. */
+		LONG,
+		/** Float */
+		FLOAT,
+		/** Double */
+		DOUBLE,
+		/** Boolean */
+		BOOLEAN,
+		/** String */
+		STRING
+	}
+
+	private static final int DEFAULT_CAPACITY = 16;
+
 	/**
 	 * 0-based property index.
 	 * It is greater than zero only for monitor points that were extracted
-	 * (=demultiplexed) from a single baci property that represents multiple logical monitor points. 
+	 * (=demultiplexed) from a single baci property that represents multiple logical monitor points.
 	 */
 	private final int index;
 
@@ -24,54 +59,439 @@ public class MonitorPointTimeSeries
 	 * @see #getCorbaTypeId()
 	 */
 	private final String corbaTypeId;
-	
+
 	/**
-	 * The time series list.
+	 * The time series list, either filled through {@link #addMonitorPointValue(MonitorPointValue)},
+	 * or created from the columnar data in {@link #getDataList()} and discarded when more samples get added.
 	 */
-	private final List<MonitorPointValue> dataList;
+	private List<MonitorPointValue> dataList;
+
+	/**
+	 * The type of the columnar data, or <code>null</code> as long as no primitive samples were added.
+	 */
+	private ValueType valueType;
+
+	private int sampleCount;
+
+	private long[] times;
+
+	/**
+	 * The values of sample <code>i</code> are at positions <code>offsets[i]</code> to <code>offsets[i+1]-1</code> of the value column.
+	 */
+	private int[] offsets;
+
+	private int valueCount;
+
+	// the value column, only the one of valueType is used
+	private int[] intValues;
+	private long[] longValues;
+	private float[] floatValues;
+	private double[] doubleValues;
+	private boolean[] booleanValues;
+	private String[] stringValues;
 
 
 	/**
 	 * Constructor.
-	 * 
+	 *
 	 * @param index The index is <code>0</code> if this monitor point represents one baci property;
 	 *              It is a running integer value if multiple logical monitor points get extracted from one baci property.
 	 * @param corbaTypeId  See {@link #getCorbaTypeId()}.
 	 */
 	public MonitorPointTimeSeries(int index, String corbaTypeId) {
+		this(index, corbaTypeId, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor for columnar data of a known size.
+	 *
+	 * @param index See {@link #MonitorPointTimeSeries(int, String)}.
+	 * @param corbaTypeId  See {@link #getCorbaTypeId()}.
+	 * @param expectedSampleCount The number of samples for which space is allocated, which grows as needed.
+	 */
+	public MonitorPointTimeSeries(int index, String corbaTypeId, int expectedSampleCount) {
 		this.index = index;
 		this.corbaTypeId = corbaTypeId;
-		dataList = new ArrayList<MonitorPointValue>();
+		times = new long[Math.max(1, expectedSampleCount)];
+		offsets = new int[times.length + 1];
 	}
 
 	/**
 	 * Adds a <code>MonitorPointValue</code> to the list of time-series data.
+	 * @throws IllegalStateException if primitive samples were added already.
 	 */
 	public void addMonitorPointValue(MonitorPointValue value) {
+		if (valueType != null) {
+			throw new IllegalStateException("Cannot add MonitorPointValue objects to the columnar data of type " + valueType);
+		}
+		if (dataList == null) {
+			dataList = new ArrayList<MonitorPointValue>();
+		}
 		dataList.add(value);
 	}
-	
+
+	/**
+	 * Reserves the space for a sample of <code>count</code> values, and returns the position of its first value.
+	 * The values must be written before calling {@link #endSample(int)}.
+	 */
+	private int beginSample(long time, int count, ValueType type) {
+		if (valueType != type) {
+			if (valueType != null) {
+				throw new IllegalStateException("Cannot add a sample of type " + type + " to the data of type " + valueType);
+			}
+			if (dataList != null && !dataList.isEmpty()) {
+				throw new IllegalStateException("Cannot add primitive samples after MonitorPointValue objects.");
+			}
+			valueType = type;
+		}
+		if (sampleCount == times.length) {
+			int newLength = times.length * 2;
+			times = Arrays.copyOf(times, newLength);
+			offsets = Arrays.copyOf(offsets, newLength + 1);
+		}
+		times[sampleCount] = time;
+
+		int minCapacity = valueCount + count;
+		switch (type) {
+		case INTEGER:
+			if (intValues == null || intValues.length < minCapacity) {
+				intValues = (intValues == null ? new int[Math.max(minCapacity, times.length)] : Arrays.copyOf(intValues, Math.max(minCapacity, intValues.length * 2)));
+			}
+			break;
+		case LONG:
+			if (longValues == null || longValues.length < minCapacity) {
+				longValues = (longValues == null ? new long[Math.max(minCapacity, times.length)] : Arrays.copyOf(longValues, Math.max(minCapacity, longValues.length * 2)));
+			}
+			break;
+		case FLOAT:
+			if (floatValues == null || floatValues.length < minCapacity) {
+				floatValues = (floatValues == null ? new float[Math.max(minCapacity, times.length)] : Arrays.copyOf(floatValues, Math.max(minCapacity, floatValues.length * 2)));
+			}
+			break;
+		case DOUBLE:
+			if (doubleValues == null || doubleValues.length < minCapacity) {
+				doubleValues = (doubleValues == null ? new double[Math.max(minCapacity, times.length)] : Arrays.copyOf(doubleValues, Math.max(minCapacity, doubleValues.length * 2)));
+			}
+			break;
+		case BOOLEAN:
+			if (booleanValues == null || booleanValues.length < minCapacity) {
+				booleanValues = (booleanValues == null ? new boolean[Math.max(minCapacity, times.length)] : Arrays.copyOf(booleanValues, Math.max(minCapacity, booleanValues.length * 2)));
+			}
+			break;
+		case STRING:
+			if (stringValues == null || stringValues.length < minCapacity) {
+				stringValues = (stringValues == null ? new String[Math.max(minCapacity, times.length)] : Arrays.copyOf(stringValues, Math.max(minCapacity, stringValues.length * 2)));
+			}
+			break;
+		}
+		return valueCount;
+	}
+
+	private void endSample(int count) {
+		valueCount += count;
+		sampleCount++;
+		offsets[sampleCount] = valueCount;
+		dataList = null;
+	}
+
+	/**
+	 * Adds a sample of a single-valued monitor point of type {@link ValueType#INTEGER}.
+	 */
+	public void addSample(long time, int value) {
+		int pos = beginSample(time, 1, ValueType.INTEGER);
+		intValues[pos] = value;
+		endSample(1);
+	}
+
+	/**
+	 * Adds a sample of a multi-valued monitor point of type {@link ValueType#INTEGER}.
+	 */
+	public void addSample(long time, int[] values) {
+		int pos = beginSample(time, values.length, ValueType.INTEGER);
+		System.arraycopy(values, 0, intValues, pos, values.length);
+		endSample(values.length);
+	}
+
+	/**
+	 * Adds a sample of a single-valued monitor point of type {@link ValueType#LONG}.
+	 */
+	public void addSample(long time, long value) {
+		int pos = beginSample(time, 1, ValueType.LONG);
+		longValues[pos] = value;
+		endSample(1);
+	}
+
+	/**
+	 * Adds a sample of a multi-valued monitor point of type {@link ValueType#LONG}.
+	 */
+	public void addSample(long time, long[] values) {
+		int pos = beginSample(time, values.length, ValueType.LONG);
+		System.arraycopy(values, 0, longValues, pos, values.length);
+		endSample(values.length);
+	}
+
+	/**
+	 * Adds a sample of a single-valued monitor point of type {@link ValueType#FLOAT}.
+	 */
+	public void addSample(long time, float value) {
+		int pos = beginSample(time, 1, ValueType.FLOAT);
+		floatValues[pos] = value;
+		endSample(1);
+	}
+
+	/**
+	 * Adds a sample of a multi-valued monitor point of type {@link ValueType#FLOAT}.
+	 */
+	public void addSample(long time, float[] values) {
+		int pos = beginSample(time, values.length, ValueType.FLOAT);
+		System.arraycopy(values, 0, floatValues, pos, values.length);
+		endSample(values.length);
+	}
+
+	/**
+	 * Adds a sample of a single-valued monitor point of type {@link ValueType#DOUBLE}.
+	 */
+	public void addSample(long time, double value) {
+		int pos = beginSample(time, 1, ValueType.DOUBLE);
+		doubleValues[pos] = value;
+		endSample(1);
+	}
+
+	/**
+	 * Adds a sample of a multi-valued monitor point of type {@link ValueType#DOUBLE}.
+	 */
+	public void addSample(long time, double[] values) {
+		int pos = beginSample(time, values.length, ValueType.DOUBLE);
+		System.arraycopy(values, 0, doubleValues, pos, values.length);
+		endSample(values.length);
+	}
+
+	/**
+	 * Adds a sample of a single-valued monitor point of type {@link ValueType#BOOLEAN}.
+	 */
+	public void addSample(long time, boolean value) {
+		int pos = beginSample(time, 1, ValueType.BOOLEAN);
+		booleanValues[pos] = value;
+		endSample(1);
+	}
+
+	/**
+	 * Adds a sample of a multi-valued monitor point of type {@link ValueType#BOOLEAN}.
+	 */
+	public void addSample(long time, boolean[] values) {
+		int pos = beginSample(time, values.length, ValueType.BOOLEAN);
+		System.arraycopy(values, 0, booleanValues, pos, values.length);
+		endSample(values.length);
+	}
+
+	/**
+	 * Adds a sample of a single-valued monitor point of type {@link ValueType#STRING}.
+	 */
+	public void addSample(long time, String value) {
+		int pos = beginSample(time, 1, ValueType.STRING);
+		stringValues[pos] = value;
+		endSample(1);
+	}
+
+	/**
+	 * Adds a sample of a multi-valued monitor point of type {@link ValueType#STRING}.
+	 */
+	public void addSample(long time, String[] values) {
+		int pos = beginSample(time, values.length, ValueType.STRING);
+		System.arraycopy(values, 0, stringValues, pos, values.length);
+		endSample(values.length);
+	}
+
 	public int getMonitorPointIndex() {
 		return index;
 	}
 
 	/**
-	 * Gets the Corba Repository Id that the data was wrapped in 
+	 * Gets the Corba Repository Id that the data was wrapped in
 	 * (or would have been wrapped in, had it not been multiplexed).
-	 * <p> 
-	 * Currently used only for error logs, where it could become even more useful 
+	 * <p>
+	 * Currently used only for error logs, where it could become even more useful
 	 * if we have to debug issues with unsigned IDL type mismatches in the future.
 	 */
 	public String getCorbaTypeId() {
 		return corbaTypeId;
 	}
 
+	/**
+	 * @return The type of the columnar data, or <code>null</code> if the data was added as MonitorPointValue objects
+	 *         or there is no data yet.
+	 */
+	public ValueType getValueType() {
+		return valueType;
+	}
+
+	/**
+	 * @return The number of samples (timestamps) in this time series.
+	 */
+	public int size() {
+		if (valueType != null) {
+			return sampleCount;
+		}
+		return (dataList == null ? 0 : dataList.size());
+	}
+
+	/**
+	 * @return The time of sample <code>i</code>.
+	 */
+	public long getTime(int i) {
+		if (valueType != null) {
+			checkSample(i);
+			return times[i];
+		}
+		return dataList.get(i).getTime();
+	}
+
+	/**
+	 * @return The number of values of sample <code>i</code>,
+	 *         which is 1 for single-valued monitor points.
+	 */
+	public int getValueCount(int i) {
+		if (valueType != null) {
+			checkSample(i);
+			return offsets[i + 1] - offsets[i];
+		}
+		return dataList.get(i).getData().size();
+	}
+
+	private void checkSample(int i) {
+		if (i < 0 || i >= sampleCount) {
+			throw new IndexOutOfBoundsException("Sample index " + i + ", size " + sampleCount);
+		}
+	}
+
+	/**
+	 * @return The position of value <code>j</code> of sample <code>i</code> in the value column.
+	 */
+	private int position(int i, int j, ValueType type) {
+		if (valueType != type) {
+			throw new IllegalStateException("Cannot read data of type " + valueType + " as " + type);
+		}
+		checkSample(i);
+		int pos = offsets[i] + j;
+		if (j < 0 || pos >= offsets[i + 1]) {
+			throw new IndexOutOfBoundsException("Value index " + j + ", count " + (offsets[i + 1] - offsets[i]));
+		}
+		return pos;
+	}
+
+	/**
+	 * @return Value <code>j</code> of sample <code>i</code>, for data of type {@link ValueType#INTEGER}.
+	 */
+	public int getInt(int i, int j) {
+		return intValues[position(i, j, ValueType.INTEGER)];
+	}
+
+	/**
+	 * @return Value <code>j</code> of sample <code>i</code>, for data of type {@link ValueType#LONG}.
+	 */
+	public long getLong(int i, int j) {
+		return longValues[position(i, j, ValueType.LONG)];
+	}
+
+	/**
+	 * @return Value <code>j</code> of sample <code>i</code>, for data of type {@link ValueType#FLOAT}.
+	 */
+	public float getFloat(int i, int j) {
+		return floatValues[position(i, j, ValueType.FLOAT)];
+	}
+
+	/**
+	 * @return Value <code>j</code> of sample <code>i</code>, for data of type {@link ValueType#DOUBLE}.
+	 */
+	public double getDouble(int i, int j) {
+		return doubleValues[position(i, j, ValueType.DOUBLE)];
+	}
+
+	/**
+	 * @return Value <code>j</code> of sample <code>i</code>, for data of type {@link ValueType#BOOLEAN}.
+	 */
+	public boolean getBoolean(int i, int j) {
+		return booleanValues[position(i, j, ValueType.BOOLEAN)];
+	}
+
+	/**
+	 * @return Value <code>j</code> of sample <code>i</code>, for data of type {@link ValueType#STRING}.
+	 */
+	public String getString(int i, int j) {
+		return stringValues[position(i, j, ValueType.STRING)];
+	}
+
+	/**
+	 * @return Value <code>j</code> of sample <code>i</code> of numeric data as a double, without boxing columnar data.
+	 * @throws ClassCastException if the data is not numeric.
+	 */
+	public double getNumberAsDouble(int i, int j) {
+		if (valueType == null) {
+			return ((Number) dataList.get(i).getData().get(j)).doubleValue();
+		}
+		switch (valueType) {
+		case INTEGER:
+			return getInt(i, j);
+		case LONG:
+			return getLong(i, j);
+		case FLOAT:
+			return getFloat(i, j);
+		case DOUBLE:
+			return getDouble(i, j);
+		default:
+			throw new ClassCastException("Data of type " + valueType + " is not numeric.");
+		}
+	}
+
+	/**
+	 * @return Value <code>j</code> of sample <code>i</code> as a Number, Boolean, String etc object,
+	 *         the same as in {@link #getDataList()}.
+	 */
+	public Object getValue(int i, int j) {
+		if (valueType == null) {
+			return dataList.get(i).getData().get(j);
+		}
+		switch (valueType) {
+		case INTEGER:
+			return getInt(i, j);
+		case LONG:
+			return getLong(i, j);
+		case FLOAT:
+			return getFloat(i, j);
+		case DOUBLE:
+			return getDouble(i, j);
+		case BOOLEAN:
+			return getBoolean(i, j);
+		default:
+			return getString(i, j);
+		}
+	}
+
 	/**
 	 * The time series list of MonitorPointValue objects,
 	 * each of which holds one Number, Boolean, String etc object,
 	 * or several such objects, depending on the monitor point type.
+	 * <p>
+	 * For columnar data, the list is created on the first call with an object per sample and value,
+	 * and cannot be modified. Code that processes many time series should rather use the index-based getters.
 	 */
 	public List<MonitorPointValue> getDataList() {
+		if (dataList == null) {
+			if (valueType == null) {
+				dataList = new ArrayList<MonitorPointValue>();
+			}
+			else {
+				List<MonitorPointValue> list = new ArrayList<MonitorPointValue>(sampleCount);
+				for (int i = 0; i < sampleCount; i++) {
+					MonitorPointValue mpv = new MonitorPointValue(times[i]);
+					for (int j = 0; j < offsets[i + 1] - offsets[i]; j++) {
+						mpv.addValue(getValue(i, j));
+					}
+					list.add(mpv);
+				}
+				dataList = Collections.unmodifiableList(list);
+			}
+		}
 		return dataList;
 	}
-}
\ No newline at end of file
+}
@@ -152,6 +152,14 @@ public class ChannelData extends AbstractNotifyServiceElement implements Compara
 	}
 
 
+	ChannelQueueSize getQueueSizeStatistics() {
+		return cqs;
+	}
+
+	SlowestConsumers getSlowestConsumersStatistics() {
+		return slcon;
+	}
+
 	/**
 	 * The returned nodes will show up as children of the NC in the channel tree view.
 	 */
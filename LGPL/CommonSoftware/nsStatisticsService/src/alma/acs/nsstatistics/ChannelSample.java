@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.nsstatistics;
+
+/**
+ * The values obtained from one poll of a notification channel, 
+ * see {@link ChannelStatisticsEngine.ChannelProbe}.
+ */
+public class ChannelSample {
+
+	private final long timeMillis;
+	private final int numberConsumers;
+	private final int numberSuppliers;
+	private final long queueSize;
+	private final int numberSlowestConsumers;
+
+	/**
+	 * @param timeMillis  time of the poll
+	 * @param numberConsumers  number of consumers (without the dummy proxies of shared consumer admins)
+	 * @param numberSuppliers  number of suppliers
+	 * @param queueSize  size of the event queue of the NC as reported by the MC object, or -1 if not available
+	 * @param numberSlowestConsumers  number of consumers reported as slowest by the MC object
+	 *                  (0 if the queue is empty), or -1 if not available
+	 */
+	public ChannelSample(long timeMillis, int numberConsumers, int numberSuppliers, long queueSize, int numberSlowestConsumers) {
+		this.timeMillis = timeMillis;
+		this.numberConsumers = numberConsumers;
+		this.numberSuppliers = numberSuppliers;
+		this.queueSize = queueSize;
+		this.numberSlowestConsumers = numberSlowestConsumers;
+	}
+
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+
+	public int getNumberConsumers() {
+		return numberConsumers;
+	}
+
+	public int getNumberSuppliers() {
+		return numberSuppliers;
+	}
+
+	public long getQueueSize() {
+		return queueSize;
+	}
+
+	public int getNumberSlowestConsumers() {
+		return numberSlowestConsumers;
+	}
+}
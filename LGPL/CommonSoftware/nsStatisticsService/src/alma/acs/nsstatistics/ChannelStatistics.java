@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.nsstatistics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of one notification channel over the sliding window of the {@link ChannelStatisticsEngine},
+ * computed from the samples in the window when this object is created.
+ * <p>
+ * Objects of this class do not change and do no remote calls, so that they can be used freely
+ * by the eventGUI as well as by the nsStatisticsService.
+ */
+public class ChannelStatistics {
+
+	/**
+	 * Min. number of samples in the window before we report slow consumers.
+	 */
+	static final int SLOW_CONSUMER_MIN_SAMPLES = 3;
+
+	private final String qualifiedName;
+	private final int sampleCount;
+	private final long windowMillis;
+	private final long pollIntervalMillis;
+	private final int failedPolls;
+
+	private final int numberConsumers;
+	private final int numberSuppliers;
+	private final int minConsumers;
+	private final int maxConsumers;
+	private final double consumerChangesPerMinute;
+	private final double supplierChangesPerMinute;
+
+	private final long queueSize;
+	private final long maxQueueSize;
+	private final double avgQueueSize;
+	private final double queueGrowthPerSecond;
+
+	private final int numberSlowestConsumers;
+	private final double slowConsumerSampleRatio;
+
+	/**
+	 * @param qualifiedName  see {@link ChannelData#getQualifiedName()}
+	 * @param samples  the samples in the window, oldest first, at least one
+	 * @param pollIntervalMillis  the current poll interval of the channel
+	 * @param failedPolls  number of failed polls since the last successful one
+	 */
+	ChannelStatistics(String qualifiedName, List<ChannelSample> samples, long pollIntervalMillis, int failedPolls) {
+		this.qualifiedName = qualifiedName;
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.failedPolls = failedPolls;
+		sampleCount = samples.size();
+
+		ChannelSample first = samples.get(0);
+		ChannelSample last = samples.get(sampleCount - 1);
+		windowMillis = last.getTimeMillis() - first.getTimeMillis();
+		numberConsumers = last.getNumberConsumers();
+		numberSuppliers = last.getNumberSuppliers();
+		queueSize = last.getQueueSize();
+		numberSlowestConsumers = last.getNumberSlowestConsumers();
+
+		int minCons = Integer.MAX_VALUE;
+		int maxCons = 0;
+		long consumerChanges = 0;
+		long supplierChanges = 0;
+		long maxQueue = -1;
+		long queueSum = 0;
+		int queueSamples = 0;
+		ChannelSample firstWithQueue = null;
+		ChannelSample lastWithQueue = null;
+		int slowSamples = 0;
+		int samplesWithSlowInfo = 0;
+		ChannelSample previous = null;
+		for (ChannelSample sample : samples) {
+			minCons = Math.min(minCons, sample.getNumberConsumers());
+			maxCons = Math.max(maxCons, sample.getNumberConsumers());
+			if (previous != null) {
+				consumerChanges += Math.abs(sample.getNumberConsumers() - previous.getNumberConsumers());
+				supplierChanges += Math.abs(sample.getNumberSuppliers() - previous.getNumberSuppliers());
+			}
+			if (sample.getQueueSize() >= 0) {
+				maxQueue = Math.max(maxQueue, sample.getQueueSize());
+				queueSum += sample.getQueueSize();
+				queueSamples++;
+				if (firstWithQueue == null) {
+					firstWithQueue = sample;
+				}
+				lastWithQueue = sample;
+			}
+			if (sample.getNumberSlowestConsumers() >= 0) {
+				samplesWithSlowInfo++;
+				if (sample.getNumberSlowestConsumers() > 0) {
+					slowSamples++;
+				}
+			}
+			previous = sample;
+		}
+		minConsumers = minCons;
+		maxConsumers = maxCons;
+		double windowMinutes = windowMillis / 60000.0;
+		consumerChangesPerMinute = (windowMillis > 0 ? consumerChanges / windowMinutes : 0);
+		supplierChangesPerMinute = (windowMillis > 0 ? supplierChanges / windowMinutes : 0);
+		maxQueueSize = maxQueue;
+		avgQueueSize = (queueSamples > 0 ? (double)queueSum / queueSamples : -1);
+		long queueMillis = (firstWithQueue != null ? lastWithQueue.getTimeMillis() - firstWithQueue.getTimeMillis() : 0);
+		queueGrowthPerSecond = (queueMillis > 0 ? (lastWithQueue.getQueueSize() - firstWithQueue.getQueueSize()) * 1000.0 / queueMillis : 0);
+		slowConsumerSampleRatio = (samplesWithSlowInfo > 0 ? (double)slowSamples / samplesWithSlowInfo : 0);
+	}
+
+	/**
+	 * @see ChannelData#getQualifiedName()
+	 */
+	public String getQualifiedName() {
+		return qualifiedName;
+	}
+
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * @return the time between the oldest and the newest sample in the window
+	 */
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	/**
+	 * @return the time after which the channel will be polled again
+	 */
+	public long getPollIntervalMillis() {
+		return pollIntervalMillis;
+	}
+
+	/**
+	 * @return the number of failed polls since the last successful one
+	 */
+	public int getFailedPolls() {
+		return failedPolls;
+	}
+
+	public int getNumberConsumers() {
+		return numberConsumers;
+	}
+
+	public int getNumberSuppliers() {
+		return numberSuppliers;
+	}
+
+	public int getMinConsumers() {
+		return minConsumers;
+	}
+
+	public int getMaxConsumers() {
+		return maxConsumers;
+	}
+
+	/**
+	 * @return the rate of added plus removed consumers
+	 */
+	public double getConsumerChangesPerMinute() {
+		return consumerChangesPerMinute;
+	}
+
+	/**
+	 * @return the rate of added plus removed suppliers
+	 */
+	public double getSupplierChangesPerMinute() {
+		return supplierChangesPerMinute;
+	}
+
+	/**
+	 * @return the last queue size, or -1 if not available
+	 */
+	public long getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * @return the max. queue size in the window, or -1 if not available
+	 */
+	public long getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	/**
+	 * @return the average queue size in the window, or -1 if not available
+	 */
+	public double getAvgQueueSize() {
+		return avgQueueSize;
+	}
+
+	/**
+	 * @return the change of the queue size per second between the oldest and the newest sample in the window;
+	 *         a positive value means that the consumers do not keep up with the suppliers
+	 */
+	public double getQueueGrowthPerSecond() {
+		return queueGrowthPerSecond;
+	}
+
+	/**
+	 * @return the number of consumers reported as slowest by the last sample, or -1 if not available
+	 */
+	public int getNumberSlowestConsumers() {
+		return numberSlowestConsumers;
+	}
+
+	/**
+	 * @return the fraction of the samples in the window that reported slowest consumers
+	 */
+	public double getSlowConsumerSampleRatio() {
+		return slowConsumerSampleRatio;
+	}
+
+	/**
+	 * Slow consumers are suspected if the queue of the NC is not empty now, 
+	 * and slowest consumers were reported in most of the (at least {@value #SLOW_CONSUMER_MIN_SAMPLES}) samples of the window.
+	 */
+	public boolean isSlowConsumerSuspected() {
+		return ( sampleCount >= SLOW_CONSUMER_MIN_SAMPLES && queueSize > 0 && slowConsumerSampleRatio > 0.5 );
+	}
+
+	/**
+	 * @return the statistics as name/value pairs in a fixed order, e.g. for logging
+	 */
+	public Map<String, String> toMap() {
+		Map<String, String> ret = new LinkedHashMap<String, String>();
+		ret.put("Window samples", String.valueOf(sampleCount));
+		ret.put("Window seconds", String.valueOf(windowMillis / 1000));
+		ret.put("Poll interval seconds", String.valueOf(pollIntervalMillis / 1000));
+		ret.put("Consumer changes per minute", String.format("%.2f", consumerChangesPerMinute));
+		ret.put("Supplier changes per minute", String.format("%.2f", supplierChangesPerMinute));
+		ret.put("Queue size", "LAST=" + queueSize + ", MAX=" + maxQueueSize + ", AVG=" + String.format("%.1f", avgQueueSize));
+		ret.put("Queue growth per second", String.format("%.2f", queueGrowthPerSecond));
+		ret.put("Slow consumer samples", String.format("%.0f%%", slowConsumerSampleRatio * 100));
+		if (failedPolls > 0) {
+			ret.put("Failed polls", String.valueOf(failedPolls));
+		}
+		return ret;
+	}
+}
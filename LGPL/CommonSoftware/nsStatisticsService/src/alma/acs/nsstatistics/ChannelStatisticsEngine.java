@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.nsstatistics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls notification channels for consumer / supplier counts and queue statistics, 
+ * each channel on its own adaptive schedule, and keeps the results of the polls in a sliding window 
+ * from which {@link ChannelStatistics} are computed.
+ * <p>
+ * A channel is polled again after its poll interval. The interval starts at the value of the property 
+ * {@link #MIN_POLL_INTERVAL_PROPERTYNAME}. It doubles after each poll that found the same consumer and supplier counts 
+ * and an empty queue (and after each failed poll), up to the value of {@link #MAX_POLL_INTERVAL_PROPERTYNAME}, 
+ * and it is set back to the minimum as soon as something changes. This way the many idle channels of a system 
+ * load the notify services much less than the few busy ones. 
+ * <p>
+ * The remote calls are encapsulated in a {@link ChannelProbe}, so that the engine can also run against a fake.
+ * This class is thread-safe; the polls of one {@link #poll(Collection, long)} call are done sequentially.
+ */
+public class ChannelStatisticsEngine {
+
+	/**
+	 * Name of the property that defines the min. (and initial) time in milliseconds between two polls of a channel.
+	 */
+	public static final String MIN_POLL_INTERVAL_PROPERTYNAME = "alma.acs.nsstatistics.min_poll_interval_ms";
+
+	public static final long DEFAULT_MIN_POLL_INTERVAL_MILLIS = 5000;
+
+	/**
+	 * Name of the property that defines the max. time in milliseconds between two polls of an idle channel.
+	 */
+	public static final String MAX_POLL_INTERVAL_PROPERTYNAME = "alma.acs.nsstatistics.max_poll_interval_ms";
+
+	public static final long DEFAULT_MAX_POLL_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+	/**
+	 * Name of the property that defines the length in milliseconds of the sliding window of samples.
+	 */
+	public static final String WINDOW_PROPERTYNAME = "alma.acs.nsstatistics.window_ms";
+
+	public static final long DEFAULT_WINDOW_MILLIS = 15 * 60 * 1000;
+
+	/**
+	 * Retrieves the current values of a channel from its notify service.
+	 */
+	public static interface ChannelProbe {
+		/**
+		 * @throws Exception  any failure, e.g. a CORBA exception if the notify service or the NC is gone
+		 */
+		ChannelSample poll(ChannelData channel) throws Exception;
+
+		/**
+		 * Called when the channel no longer exists, to free data cached for it.
+		 */
+		void forget(ChannelData channel);
+	}
+
+	/**
+	 * Schedule and samples of one channel
+	 */
+	private static class ChannelState {
+		final ArrayDeque<ChannelSample> samples = new ArrayDeque<ChannelSample>();
+		long pollIntervalMillis;
+		long nextPollMillis;
+		int failedPolls;
+
+		ChannelState(long pollIntervalMillis) {
+			this.pollIntervalMillis = pollIntervalMillis;
+		}
+	}
+
+	private final Logger logger;
+	private final ChannelProbe probe;
+	private final long minPollIntervalMillis;
+	private final long maxPollIntervalMillis;
+	private final long windowMillis;
+
+	/**
+	 * key = qualified channel name (see {@link ChannelData#getQualifiedName()})
+	 */
+	private final Map<String, ChannelState> channelStates = new HashMap<String, ChannelState>();
+
+	private long pollCount;
+	private long skippedPollCount;
+	private long failedPollCount;
+
+	/**
+	 * @param logger
+	 * @param probe  does the remote calls
+	 * @param minPollIntervalMillis  min. and initial poll interval of a channel
+	 * @param maxPollIntervalMillis  max. poll interval of an idle channel
+	 * @param windowMillis  length of the sliding window of samples
+	 */
+	public ChannelStatisticsEngine(Logger logger, ChannelProbe probe, long minPollIntervalMillis, long maxPollIntervalMillis, long windowMillis) {
+		if (minPollIntervalMillis < 0 || maxPollIntervalMillis < minPollIntervalMillis) {
+			throw new IllegalArgumentException("Invalid poll intervals min=" + minPollIntervalMillis + " max=" + maxPollIntervalMillis);
+		}
+		this.logger = logger;
+		this.probe = probe;
+		this.minPollIntervalMillis = minPollIntervalMillis;
+		this.maxPollIntervalMillis = maxPollIntervalMillis;
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Creates the engine with the poll intervals and window length given by the properties 
+	 * {@link #MIN_POLL_INTERVAL_PROPERTYNAME}, {@link #MAX_POLL_INTERVAL_PROPERTYNAME} and {@link #WINDOW_PROPERTYNAME}.
+	 */
+	public ChannelStatisticsEngine(Logger logger, ChannelProbe probe) {
+		this(logger, probe, 
+				Long.getLong(MIN_POLL_INTERVAL_PROPERTYNAME, DEFAULT_MIN_POLL_INTERVAL_MILLIS).longValue(),
+				Long.getLong(MAX_POLL_INTERVAL_PROPERTYNAME, DEFAULT_MAX_POLL_INTERVAL_MILLIS).longValue(),
+				Long.getLong(WINDOW_PROPERTYNAME, DEFAULT_WINDOW_MILLIS).longValue());
+	}
+
+	/**
+	 * Polls those of the given channels that are due, and updates their consumer and supplier counts and deltas.
+	 * The deltas of the other channels are set to 0, since no change has been seen.
+	 * <p>
+	 * The samples and the schedule of a channel marked as new (see {@link ChannelData#isNewNc()}) are discarded, 
+	 * because an NC with the same name may have been destroyed and created again.
+	 * 
+	 * @param channels  the channels of the reachable notify services
+	 * @param nowMillis  the current time
+	 * @return  the number of channels that were polled
+	 */
+	public synchronized int poll(Collection<ChannelData> channels, long nowMillis) {
+		int polled = 0;
+		for (ChannelData channel : channels) {
+			String channelName = channel.getQualifiedName();
+			ChannelState state = channelStates.get(channelName);
+			if (state != null && channel.isNewNc()) {
+				// An NC with the same name has been created again: its counts start from 0
+				probe.forget(channel);
+				state = null;
+			}
+			if (state == null) {
+				state = new ChannelState(minPollIntervalMillis);
+				channelStates.put(channelName, state);
+			}
+			if (nowMillis < state.nextPollMillis) {
+				channel.setDeltaConsumers(0);
+				channel.setDeltaSuppliers(0);
+				skippedPollCount++;
+				continue;
+			}
+			polled++;
+			pollCount++;
+			ChannelSample sample = null;
+			try {
+				sample = probe.poll(channel);
+			} catch (Exception ex) {
+				failedPollCount++;
+				state.failedPolls++;
+				logger.log(Level.FINE, "Failed to poll NC " + channelName + " (" + state.failedPolls + " failures in a row).", ex);
+				channel.setDeltaConsumers(0);
+				channel.setDeltaSuppliers(0);
+				state.pollIntervalMillis = Math.min(2 * state.pollIntervalMillis, maxPollIntervalMillis);
+				state.nextPollMillis = nowMillis + state.pollIntervalMillis;
+				continue;
+			}
+			state.failedPolls = 0;
+			
+			ChannelSample previous = state.samples.peekLast();
+			int[] previousCounts = ( previous != null 
+					? new int[] {previous.getNumberConsumers(), previous.getNumberSuppliers()} 
+					: new int[] {0, 0} );
+			int[] counts = {sample.getNumberConsumers(), sample.getNumberSuppliers()};
+			logChanges(channelName, previousCounts, counts);
+			channel.setNumberConsumers(counts[0]);
+			channel.setNumberSuppliers(counts[1]);
+			channel.setDeltaConsumers(counts[0] - previousCounts[0]);
+			channel.setDeltaSuppliers(counts[1] - previousCounts[1]);
+
+			// adapt the schedule
+			boolean isIdle = ( previous != null && counts[0] == previousCounts[0] && counts[1] == previousCounts[1] 
+					&& sample.getQueueSize() <= 0 );
+			state.pollIntervalMillis = ( isIdle 
+					? Math.min(2 * state.pollIntervalMillis, maxPollIntervalMillis) 
+					: minPollIntervalMillis );
+			state.nextPollMillis = nowMillis + state.pollIntervalMillis;
+
+			// slide the window, keeping at least the new sample
+			state.samples.addLast(sample);
+			while (state.samples.size() > 1 && state.samples.peekFirst().getTimeMillis() < sample.getTimeMillis() - windowMillis) {
+				state.samples.removeFirst();
+			}
+		}
+		return polled;
+	}
+
+	/**
+	 * Logs added and removed consumers and suppliers.
+	 */
+	private void logChanges(String channelName, int[] previousCounts, int[] counts) {
+		final String[] roleNames = {"consumer", "supplier"};
+		for (int i = 0; i < counts.length; i++) {
+			int cdiff = counts[i] - previousCounts[i];
+			if (cdiff != 0) {
+				String cstr = channelName;
+				if (cdiff > 0) {
+					cstr += " has added " + cdiff + " " + roleNames[i];
+				} 
+				else {
+					cstr += " has removed " + (-cdiff) + " " + roleNames[i];
+				}
+				cstr += (Math.abs(cdiff)!=1 ? "s." : ".");
+				logger.info(cstr);
+			}
+		}
+	}
+
+	/**
+	 * Drops the samples of a channel that no longer exists.
+	 */
+	public synchronized void removeChannel(ChannelData channel) {
+		channelStates.remove(channel.getQualifiedName());
+		probe.forget(channel);
+	}
+
+	/**
+	 * Lets the given channel be polled at the next call to {@link #poll(Collection, long)}, 
+	 * e.g. after the user asked explicitly for fresh data about it.
+	 */
+	public synchronized void pollSoon(ChannelData channel) {
+		ChannelState state = channelStates.get(channel.getQualifiedName());
+		if (state != null) {
+			state.pollIntervalMillis = minPollIntervalMillis;
+			state.nextPollMillis = 0;
+		}
+	}
+
+	/**
+	 * @param qualifiedName  see {@link ChannelData#getQualifiedName()}
+	 * @return  the statistics of the channel, or <code>null</code> if the channel has not been polled successfully yet.
+	 */
+	public synchronized ChannelStatistics getStatistics(String qualifiedName) {
+		ChannelState state = channelStates.get(qualifiedName);
+		if (state == null || state.samples.isEmpty()) {
+			return null;
+		}
+		return new ChannelStatistics(qualifiedName, new ArrayList<ChannelSample>(state.samples), state.pollIntervalMillis, state.failedPolls);
+	}
+
+	/**
+	 * @return  the statistics of all channels that have been polled successfully.
+	 */
+	public synchronized List<ChannelStatistics> getStatistics() {
+		List<ChannelStatistics> ret = new ArrayList<ChannelStatistics>(channelStates.size());
+		for (String qualifiedName : channelStates.keySet()) {
+			ChannelStatistics stats = getStatistics(qualifiedName);
+			if (stats != null) {
+				ret.add(stats);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return textual statistics about the polls done by this engine.
+	 */
+	public synchronized String getEngineStatistics() {
+		return "channels: " + channelStates.size() + ", polls: " + pollCount + " (" + failedPollCount + " failed)" +
+				", skipped polls of idle channels: " + skippedPollCount;
+	}
+}
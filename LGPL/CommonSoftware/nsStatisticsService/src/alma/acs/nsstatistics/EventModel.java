@@ -44,15 +44,11 @@ import org.omg.CosNaming.NamingContext;
 import org.omg.CosNaming.NamingContextHelper;
 import org.omg.CosNaming.NamingContextPackage.CannotProceed;
 import org.omg.CosNaming.NamingContextPackage.NotFound;
-import org.omg.CosNotifyChannelAdmin.AdminNotFound;
 import org.omg.CosNotifyChannelAdmin.ChannelNotFound;
-import org.omg.CosNotifyChannelAdmin.ConsumerAdmin;
 import org.omg.CosNotifyChannelAdmin.EventChannel;
 import org.omg.CosNotifyChannelAdmin.EventChannelFactory;
 import org.omg.CosNotifyChannelAdmin.EventChannelFactoryHelper;
 import org.omg.CosNotifyChannelAdmin.EventChannelHelper;
-import org.omg.CosNotifyChannelAdmin.ProxyNotFound;
-import org.omg.CosNotifyChannelAdmin.ProxySupplier;
 import org.omg.DynamicAny.DynAnyFactory;
 import org.omg.DynamicAny.DynAnyFactoryHelper;
 
@@ -67,11 +63,9 @@ import alma.acs.concurrent.ThreadLoopRunner.CancelableRunnable;
 import alma.acs.concurrent.ThreadLoopRunner.ScheduleDelayMode;
 import alma.acs.container.ContainerServices;
 import alma.acs.exceptions.AcsJException;
-import alma.acs.logging.AcsLogLevel;
 import alma.acs.logging.ClientLogManager;
 import alma.acs.nc.ArchiveConsumer;
 import alma.acs.nc.Helper;
-import alma.acs.nc.NCSubscriber;
 import alma.acs.util.AcsLocations;
 import alma.acscommon.ACS_NC_DOMAIN_ARCHIVING;
 import alma.acscommon.ACS_NC_DOMAIN_LOGGING;
@@ -118,9 +112,9 @@ public class EventModel {
 	
 	
 	/**
-	 * key = name of NotifyService or NC; value=int[] {consumerCount, supplierCount}
+	 * Polls the NCs for consumer / supplier counts and queue statistics, and keeps their history.
 	 */
-	private final HashMap<String, int[]> lastConsumerAndSupplierCount;
+	private final ChannelStatisticsEngine statisticsEngine;
 	
 	/**
 	 * Consumers used by the eventGUI to subscribe to events on various NCs.
@@ -154,10 +148,11 @@ public class EventModel {
 		try {
 			notifyServices = new HashMap<String, NotifyServiceData>(); 
 			
-			lastConsumerAndSupplierCount = new HashMap<String, int[]>();
 			consumerMap = new HashMap<String, AdminConsumer>();
 	
 			m_logger = ClientLogManager.getAcsLogManager().getLoggerForApplication(nsStatsId, true);
+			
+			statisticsEngine = new ChannelStatisticsEngine(m_logger, new NotifyServiceChannelProbe(m_logger));
 
 			//ClientLogManager.getAcsLogManager().suppressRemoteLogging();
 
@@ -636,6 +631,7 @@ public class EventModel {
 				NotifyServiceData oldNcService = getNotifyServicesRoot().findHostingService(oldNcName);
 				ChannelData oldNcData = oldNcService.getChannelByName(oldNcName);
 				closeSelectedConsumer(oldNcData);
+				statisticsEngine.removeChannel(oldNcData);
 				oldNcService.removeChannel(oldNcName);
 			}
 		}
@@ -697,6 +693,13 @@ public class EventModel {
 
 
 
+	/**
+	 * Gives access to the statistics of the NCs, which get polled by {@link #getChannelStatistics()}.
+	 */
+	public ChannelStatisticsEngine getChannelStatisticsEngine() {
+		return statisticsEngine;
+	}
+
 	/**
 	 * Called by NotifyServiceUpdateJob (single/periodic refresh of service summary / channel tree).
 	 */
@@ -707,6 +710,8 @@ public class EventModel {
 			return false;
 		}
 		
+		// The engine polls each NC only when it is due, and updates the consumer and supplier counts of the ChannelData.
+		List<ChannelData> reachableChannels = new ArrayList<ChannelData>();
 		for (NotifyServiceData nsData : notifyServices.values()) {
 			
 			if (!nsData.isReachable()) {
@@ -714,73 +719,9 @@ public class EventModel {
 				continue;
 			}
 			
-			// iterate over NCs
-			// TODO: Try to rely only on MC data and skip these 'get_all_consumeradmins' etc calls,
-			// especially if we don't want to display the admin objects as tree nodes to show consumer allocation to the shared admins.
-			for (ChannelData channelData : nsData.getChannels()) {
-				String channelName = channelData.getQualifiedName();
-				EventChannel ec = channelData.getCorbaRef();
-				int[] consAndSupp = {0,0}; // initial or previous count of consumers / suppliers
-				if (channelData.isNewNc()) {
-					lastConsumerAndSupplierCount.put(channelName, consAndSupp);
-				} 
-				else if (lastConsumerAndSupplierCount.containsKey(channelName)) {
-					consAndSupp = lastConsumerAndSupplierCount.get(channelName);
-				}
-				
-				// for consumers we must count the proxies, cannot just deduce their number from the consumer admins
-				int consumerCount = 0;
-				for (int consumerAdminId : ec.get_all_consumeradmins()) {
-					try {
-						ConsumerAdmin consumerAdmin = ec.get_consumeradmin(consumerAdminId);
-						int[] push_suppliers_ids = consumerAdmin.push_suppliers();
-						for(int proxyID: push_suppliers_ids) {
-							try {
-								ProxySupplier proxy = consumerAdmin.get_proxy_supplier(proxyID);
-								if(!NCSubscriber.AdminReuseCompatibilityHack.isDummyProxy(proxy)) {
-									consumerCount++;
-								}
-							} catch(ProxyNotFound ex) {
-								m_logger.log(AcsLogLevel.NOTICE, "Proxy with ID='" + proxyID + "' not found for consumer admin with ID='" + consumerAdminId + "', " +
-										"even though this Id got listed a moment ago.", ex);
-							}
-						}
-					} catch (AdminNotFound ex) {
-						ex.printStackTrace();
-					}
-				}
-				
-				final String[] roleNames = {"consumer", "supplier"};
-				int [] proxyCounts = new int[2];
-				int [] proxyDeltas= new int[2];
-				proxyCounts[0] = consumerCount;
-				proxyCounts[1] = ec.get_all_supplieradmins().length; // currently for suppliers we have 1 admin object per supplier
-
-				// same code for consumer and supplier
-				for (int i = 0; i < proxyCounts.length; i++) {
-					String cstr = channelName;
-					int cdiff = proxyCounts[i] - consAndSupp[i];
-					if (cdiff != 0) {
-						if (cdiff > 0) {
-							cstr += " has added " + cdiff + " " + roleNames[i];
-						} 
-						else if (cdiff < 0) {
-							cstr += " has removed " + (-cdiff) + " " + roleNames[i];
-						}
-						cstr += (Math.abs(cdiff)!=1 ? "s." : ".");
-						m_logger.info(cstr);
-					}
-					proxyDeltas[i] = cdiff;
-				}
-				lastConsumerAndSupplierCount.put(channelName, proxyCounts);
-				//m_logger.info("Channel: " + channelName + " has " + adminCounts[0] + " consumers and " + adminCounts[1] + " suppliers.");
-
-				channelData.setNumberConsumers(proxyCounts[0]);
-				channelData.setNumberSuppliers(proxyCounts[1]);
-				channelData.setDeltaConsumers(proxyDeltas[0]);
-				channelData.setDeltaSuppliers(proxyDeltas[1]);
-			}
+			reachableChannels.addAll(nsData.getChannels());
 		}
+		statisticsEngine.poll(reachableChannels, System.currentTimeMillis());
 		
 		return true;
 	}
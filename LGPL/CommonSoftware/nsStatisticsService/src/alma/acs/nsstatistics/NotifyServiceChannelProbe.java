@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.nsstatistics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.omg.CosNotifyChannelAdmin.AdminNotFound;
+import org.omg.CosNotifyChannelAdmin.ConsumerAdmin;
+import org.omg.CosNotifyChannelAdmin.EventChannel;
+import org.omg.CosNotifyChannelAdmin.ProxyNotFound;
+import org.omg.CosNotifyChannelAdmin.ProxySupplier;
+
+import alma.acs.logging.AcsLogLevel;
+import alma.acs.nc.NCSubscriber;
+
+/**
+ * Polls a notification channel with CORBA calls to the notify service and to its TAO monitor-control object.
+ * <p>
+ * To count the consumers we must look at each proxy supplier, because of the dummy proxies 
+ * used by the NCSubscriber (see {@link NCSubscriber.AdminReuseCompatibilityHack}).
+ * The consumer admin references and the "real consumer" flag of the proxies are cached per channel, 
+ * so that a poll only needs <code>get_all_consumeradmins</code> and one <code>push_suppliers</code> per admin, 
+ * plus the resolution of the admins and proxies that are new since the previous poll.
+ * <p>
+ * Not thread-safe, gets called by the {@link ChannelStatisticsEngine} only.
+ */
+public class NotifyServiceChannelProbe implements ChannelStatisticsEngine.ChannelProbe {
+
+	/**
+	 * Consumer admin of a channel, with its known proxy suppliers.
+	 */
+	private static class CachedConsumerAdmin {
+		final ConsumerAdmin ref;
+		/**
+		 * key = proxy ID, value = true for a real consumer, false for a dummy proxy
+		 */
+		final Map<Integer, Boolean> proxies = new HashMap<Integer, Boolean>();
+
+		CachedConsumerAdmin(ConsumerAdmin ref) {
+			this.ref = ref;
+		}
+	}
+
+	private final Logger logger;
+
+	/**
+	 * key = qualified channel name, value = (key = consumer admin ID)
+	 */
+	private final Map<String, Map<Integer, CachedConsumerAdmin>> topology = new HashMap<String, Map<Integer, CachedConsumerAdmin>>();
+
+	public NotifyServiceChannelProbe(Logger logger) {
+		this.logger = logger;
+	}
+
+	@Override
+	public ChannelSample poll(ChannelData channel) throws Exception {
+		EventChannel ec = channel.getCorbaRef();
+		Map<Integer, CachedConsumerAdmin> knownAdmins = topology.get(channel.getQualifiedName());
+		if (knownAdmins == null) {
+			knownAdmins = new HashMap<Integer, CachedConsumerAdmin>();
+		}
+		
+		int consumerCount = 0;
+		Map<Integer, CachedConsumerAdmin> currentAdmins = new HashMap<Integer, CachedConsumerAdmin>();
+		for (int consumerAdminId : ec.get_all_consumeradmins()) {
+			CachedConsumerAdmin admin = knownAdmins.get(consumerAdminId);
+			if (admin == null) {
+				try {
+					admin = new CachedConsumerAdmin(ec.get_consumeradmin(consumerAdminId));
+				} catch (AdminNotFound ex) {
+					// destroyed since it got listed
+					continue;
+				}
+			}
+			currentAdmins.put(consumerAdminId, admin);
+			consumerCount += countConsumers(admin, consumerAdminId);
+		}
+		// drops the admins that are gone
+		topology.put(channel.getQualifiedName(), currentAdmins);
+
+		// currently for suppliers we have 1 admin object per supplier
+		int supplierCount = ec.get_all_supplieradmins().length;
+
+		long queueSize = -1;
+		int numberSlowestConsumers = -1;
+		try {
+			queueSize = channel.getQueueSizeStatistics().getQueueSize();
+			numberSlowestConsumers = ( queueSize > 0 
+					? channel.getSlowestConsumersStatistics().getSlowestConsumerNames().length 
+					: 0 );
+		} catch (RuntimeException ex) {
+			// e.g. M&C statistics not enabled for this notify service
+			logger.log(AcsLogLevel.DEBUG, "Failed to get M&C statistics of NC " + channel.getQualifiedName(), ex);
+		}
+		return new ChannelSample(System.currentTimeMillis(), consumerCount, supplierCount, queueSize, numberSlowestConsumers);
+	}
+
+	/**
+	 * Counts the real consumers of the given admin, resolving only the proxies that are not yet cached.
+	 */
+	private int countConsumers(CachedConsumerAdmin admin, int consumerAdminId) {
+		int[] proxyIds = admin.ref.push_suppliers();
+		Map<Integer, Boolean> currentProxies = new HashMap<Integer, Boolean>(proxyIds.length * 2);
+		int consumerCount = 0;
+		for (int proxyId : proxyIds) {
+			Boolean isRealConsumer = admin.proxies.get(proxyId);
+			if (isRealConsumer == null) {
+				try {
+					ProxySupplier proxy = admin.ref.get_proxy_supplier(proxyId);
+					isRealConsumer = Boolean.valueOf(!NCSubscriber.AdminReuseCompatibilityHack.isDummyProxy(proxy));
+				} catch (ProxyNotFound ex) {
+					logger.log(AcsLogLevel.NOTICE, "Proxy with ID='" + proxyId + "' not found for consumer admin with ID='" + consumerAdminId + "', " +
+							"even though this Id got listed a moment ago.", ex);
+					continue;
+				}
+			}
+			currentProxies.put(proxyId, isRealConsumer);
+			if (isRealConsumer.booleanValue()) {
+				consumerCount++;
+			}
+		}
+		admin.proxies.clear();
+		admin.proxies.putAll(currentProxies);
+		return consumerCount;
+	}
+
+	@Override
+	public void forget(ChannelData channel) {
+		topology.remove(channel.getQualifiedName());
+	}
+}
@@ -47,11 +47,18 @@ public class SlowestConsumers extends MCStatistics {
 		}
 		
 		children.clear(); 
-		String sc[] = getMcData().list();
+		String sc[] = getSlowestConsumerNames();
 		for (String s : sc) {
 			children.add(new ChannelParticipantName(s, this));
 		}
 		return "Slowest consumers: " + children.size();
 	}
+
+	/**
+	 * Gets the names of the slowest consumers, without checking the queue size first.
+	 */
+	public String[] getSlowestConsumerNames() {
+		return getMcData().list();
+	}
 	
 }
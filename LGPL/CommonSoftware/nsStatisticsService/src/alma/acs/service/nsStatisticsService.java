@@ -35,6 +35,7 @@ import java.util.logging.Logger;
 import alma.acs.exceptions.AcsJException;
 import alma.acs.logging.AcsLogLevel;
 import alma.acs.nsstatistics.ChannelData;
+import alma.acs.nsstatistics.ChannelStatistics;
 import alma.acs.nsstatistics.EventData;
 import alma.acs.nsstatistics.EventModel;
 import alma.acs.nsstatistics.MCStatistics;
@@ -297,8 +298,18 @@ public class nsStatisticsService extends Thread {
 				ChannelInfo channelInfo = serviceInfo.channels.get(channelName);
 				//if(channelInfo.status == Status.ENABLED) { 
 					Map<String,String> values = channelInfo.stats.getInfoParams(params);
+					// Add the values of the sliding window of consumer / supplier counts and queue sizes
+					ChannelStatistics windowStats = eventModel.getChannelStatisticsEngine().getStatistics(channelName);
+					if(windowStats != null) {
+						values.putAll(windowStats.toMap());
+					}
 					logger.log(AcsLogLevel.INFO, 
 						"STATISTICS OF NOTIFICATION CHANNEL " + channelName, values);
+					if(windowStats != null && windowStats.isSlowConsumerSuspected()) {
+						logger.log(AcsLogLevel.WARNING, "Channel " + channelName + " has a queue of " + windowStats.getQueueSize() + 
+							" events and slowest consumers were reported in " + Math.round(100 * windowStats.getSlowConsumerSampleRatio()) + 
+							"% of the samples of the last " + (windowStats.getWindowMillis() / 1000) + " s");
+					}
 					values = channelInfo.stats.getDbgParams();
 					logger.log(AcsLogLevel.DEBUG, 
 						"STATISTICS OF NOTIFICATION CHANNEL " + channelName, values);
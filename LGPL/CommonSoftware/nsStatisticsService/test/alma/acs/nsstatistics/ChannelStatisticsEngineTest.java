@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.nsstatistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the schedule and the sliding window of {@link ChannelStatisticsEngine},
+ * with a {@link ChannelStatisticsEngine.ChannelProbe} that returns the samples set by the test instead of calling the notify service.
+ */
+public class ChannelStatisticsEngineTest extends TestCase {
+
+	private static final long MIN_INTERVAL = 1000;
+	private static final long MAX_INTERVAL = 8000;
+	private static final long WINDOW = 10000;
+
+	/**
+	 * Returns the counts set by the test, or throws if {@link #failure} is set.
+	 */
+	private static class FakeProbe implements ChannelStatisticsEngine.ChannelProbe {
+		int consumers;
+		int suppliers;
+		long queueSize;
+		Exception failure;
+		long nowMillis;
+		int polls;
+		final List<String> forgotten = new ArrayList<String>();
+
+		public ChannelSample poll(ChannelData channel) throws Exception {
+			polls++;
+			if (failure != null) {
+				throw failure;
+			}
+			return new ChannelSample(nowMillis, consumers, suppliers, queueSize, 0);
+		}
+
+		public void forget(ChannelData channel) {
+			forgotten.add(channel.getQualifiedName());
+		}
+	}
+
+	private FakeProbe probe;
+	private ChannelStatisticsEngine engine;
+	private ChannelData channel;
+	private List<ChannelData> channels;
+
+	public ChannelStatisticsEngineTest() {
+		super("ChannelStatisticsEngineTest");
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		Logger logger = Logger.getLogger(getName());
+		probe = new FakeProbe();
+		engine = new ChannelStatisticsEngine(logger, probe, MIN_INTERVAL, MAX_INTERVAL, WINDOW);
+		NotifyServiceData service = new NotifyServiceData("TestNotifyService", "TestNotifyService", null, null, logger);
+		channel = new ChannelData(null, "TestChannel", service);
+		channel.setIsNewNc(false);
+		channels = Collections.singletonList(channel);
+	}
+
+	/**
+	 * Polls the channel at the given time.
+	 * @return true if the channel was polled, false if the poll was skipped.
+	 */
+	private boolean pollAt(long nowMillis) {
+		probe.nowMillis = nowMillis;
+		return engine.poll(channels, nowMillis) == 1;
+	}
+
+	private ChannelStatistics getStatistics() {
+		return engine.getStatistics(channel.getQualifiedName());
+	}
+
+	/**
+	 * The poll interval of an idle channel doubles up to the max. interval,
+	 * and polls that are not due are skipped.
+	 */
+	public void testBackOff() {
+		probe.consumers = 2;
+		probe.suppliers = 1;
+		assertTrue(pollAt(0));
+		assertEquals(MIN_INTERVAL, getStatistics().getPollIntervalMillis());
+
+		long now = 0;
+		long expectedInterval = MIN_INTERVAL;
+		while (expectedInterval < MAX_INTERVAL) {
+			assertFalse("Poll must be skipped before the interval elapsed", pollAt(now + expectedInterval - 1));
+			now += expectedInterval;
+			assertTrue(pollAt(now));
+			expectedInterval *= 2;
+			assertEquals(expectedInterval, getStatistics().getPollIntervalMillis());
+		}
+		// Capped at the max.
+		now += MAX_INTERVAL;
+		assertTrue(pollAt(now));
+		assertEquals(MAX_INTERVAL, getStatistics().getPollIntervalMillis());
+		assertEquals(2, channel.getNumberConsumers());
+		assertEquals(0, channel.getDeltaConsumers());
+	}
+
+	/**
+	 * A change of the counts or a non-empty queue sets the poll interval back to the minimum.
+	 */
+	public void testResetOnChange() {
+		probe.consumers = 1;
+		assertTrue(pollAt(0));
+		assertTrue(pollAt(1000));
+		assertTrue(pollAt(3000));
+		assertEquals(4 * MIN_INTERVAL, getStatistics().getPollIntervalMillis());
+
+		probe.consumers = 3;
+		probe.suppliers = 2;
+		assertTrue(pollAt(7000));
+		assertEquals(MIN_INTERVAL, getStatistics().getPollIntervalMillis());
+		assertEquals(3, channel.getNumberConsumers());
+		assertEquals(2, channel.getDeltaConsumers());
+		assertEquals(2, channel.getDeltaSuppliers());
+
+		// Same counts: back off again, and the deltas of the skipped poll are 0
+		assertTrue(pollAt(8000));
+		assertEquals(2 * MIN_INTERVAL, getStatistics().getPollIntervalMillis());
+		assertFalse(pollAt(9000));
+		assertEquals(0, channel.getDeltaConsumers());
+		assertEquals(0, channel.getDeltaSuppliers());
+
+		// Events in the queue keep the channel at the min. interval
+		probe.queueSize = 5;
+		assertTrue(pollAt(10000));
+		assertEquals(MIN_INTERVAL, getStatistics().getPollIntervalMillis());
+		assertTrue(pollAt(11000));
+		assertEquals(MIN_INTERVAL, getStatistics().getPollIntervalMillis());
+	}
+
+	/**
+	 * Samples older than the window are dropped, but the newest sample is always kept.
+	 */
+	public void testWindowTrimming() {
+		// The queue keeps the channel at the min. interval, so that it is polled every second
+		probe.queueSize = 1;
+		for (long now = 0; now <= 15000; now += MIN_INTERVAL) {
+			probe.consumers = (int)(now / MIN_INTERVAL);
+			assertTrue(pollAt(now));
+		}
+		ChannelStatistics stats = getStatistics();
+		// samples from 5000 to 15000
+		assertEquals(11, stats.getSampleCount());
+		assertEquals(WINDOW, stats.getWindowMillis());
+		assertEquals(5, stats.getMinConsumers());
+		assertEquals(15, stats.getMaxConsumers());
+
+		// A poll long after the window keeps only the new sample
+		assertTrue(pollAt(15000 + 3 * WINDOW));
+		stats = getStatistics();
+		assertEquals(1, stats.getSampleCount());
+		assertEquals(0, stats.getWindowMillis());
+	}
+
+	/**
+	 * A failed poll sets the deltas to 0, backs off like an idle poll and is counted,
+	 * and the samples polled before are kept.
+	 */
+	public void testFailure() {
+		assertNull(getStatistics());
+		probe.consumers = 1;
+		assertTrue(pollAt(0));
+		assertEquals(1, channel.getDeltaConsumers());
+
+		probe.failure = new RuntimeException("Fake failure of the notify service");
+		assertTrue(pollAt(1000));
+		assertTrue(pollAt(3000));
+		assertTrue(pollAt(7000));
+		ChannelStatistics stats = getStatistics();
+		assertEquals(3, stats.getFailedPolls());
+		assertEquals(8 * MIN_INTERVAL, stats.getPollIntervalMillis());
+		assertEquals(1, stats.getSampleCount());
+		assertEquals(0, channel.getDeltaConsumers());
+		assertEquals(0, channel.getDeltaSuppliers());
+		assertFalse(pollAt(14000));
+
+		// Recovery: the failures are reset and the change is seen against the last good sample
+		probe.failure = null;
+		probe.consumers = 2;
+		assertTrue(pollAt(15000));
+		stats = getStatistics();
+		assertEquals(0, stats.getFailedPolls());
+		assertEquals(MIN_INTERVAL, stats.getPollIntervalMillis());
+		assertEquals(1, channel.getDeltaConsumers());
+		assertEquals(5, probe.polls);
+	}
+
+	/**
+	 * A channel marked as new (an NC created again with the same name) starts from 0,
+	 * with no samples and the min. poll interval, and the probe forgets its cached data.
+	 */
+	public void testNewNcReset() {
+		probe.consumers = 3;
+		assertTrue(pollAt(0));
+		assertTrue(pollAt(1000));
+		assertEquals(2, getStatistics().getSampleCount());
+		assertEquals(2 * MIN_INTERVAL, getStatistics().getPollIntervalMillis());
+
+		channel.setIsNewNc(true);
+		probe.consumers = 1;
+		// polled even if not due according to the old schedule
+		assertTrue(pollAt(1500));
+		assertEquals(Collections.singletonList(channel.getQualifiedName()), probe.forgotten);
+		ChannelStatistics stats = getStatistics();
+		assertEquals(1, stats.getSampleCount());
+		assertEquals(MIN_INTERVAL, stats.getPollIntervalMillis());
+		assertEquals(1, channel.getNumberConsumers());
+		assertEquals(1, channel.getDeltaConsumers());
+
+		// Once known, the channel is scheduled normally again
+		channel.setIsNewNc(false);
+		assertFalse(pollAt(2000));
+		assertTrue(pollAt(2500));
+		assertEquals(2, getStatistics().getSampleCount());
+		assertEquals(1, probe.forgotten.size());
+	}
+}
@@ -20,9 +20,14 @@
  *******************************************************************************/
 package alma.acs.logging;
 
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import alma.acs.logging.RepeatGuard.Logic;
 
@@ -38,6 +43,13 @@ import alma.acs.logging.RepeatGuard.Logic;
  * upon access, which may distort the original guarding behavior (e.g. because the first check() of the re-created RepeatGuard always returns true,
  * even if the old RepeatGuard object would have returned false for another 100 invocations, or because {@linkplain RepeatGuard#counterAtLastExecution()}
  * will not be accurate.
+ * <p>
+ * This class is thread-safe without a global lock: the RepeatGuards are kept in a concurrent map, 
+ * and only calls for the same <code>ID</code> synchronize on the same RepeatGuard object. 
+ * The cache limit is therefore enforced as an approximate LRU: once the limit is exceeded, 
+ * one of the calling threads removes the least recently used RepeatGuards in one go, 
+ * leaving some free room so that the (comparatively expensive) cleanup does not run for every new <code>ID</code>.
+ * Other threads are not blocked while this happens, so that the cache may temporarily exceed its limit a little.
  * 
  * @author hsommer
  * @since ACS 8.0.0 
@@ -49,7 +61,17 @@ public class MultipleRepeatGuard
 	private final int defaultMaxRepetitions;
 	private final Logic defaultLogic;
 	
-	private final BoundedHashMap<String, RepeatGuard> guards;
+	private final ConcurrentMap<String, GuardEntry> guards;
+	
+	/**
+	 * @see #setCacheLimit(int)
+	 */
+	private volatile int maxEntries;
+	
+	/**
+	 * Ensures that only one thread at a time removes the least recently used RepeatGuards.
+	 */
+	private final AtomicBoolean evicting = new AtomicBoolean(false);
 	
 	/////////////////////////////////////////////////////////////////////////////////////
 	//////////////////////////// Repeat Guard functionality /////////////////////////////
@@ -82,7 +104,8 @@ public class MultipleRepeatGuard
 		this.defaultMaxRepetitions = maxRepetitions;
 		this.defaultLogic = logic;
 		
-		guards = new BoundedHashMap<String, RepeatGuard>(maxCacheSize, true);
+		setCacheLimit(maxCacheSize);
+		guards = new ConcurrentHashMap<String, GuardEntry>(Math.min(16, maxCacheSize), 0.75f, 16);
 	}
 	
 	/**
@@ -97,7 +120,7 @@ public class MultipleRepeatGuard
 	/**
 	 * @see RepeatGuard#check()
 	 */
-	public synchronized boolean check(String ID) {
+	public boolean check(String ID) {
 		RepeatGuard guard = getOrCreateRepeatGuard(ID);
 		return guard.check();
 	}
@@ -105,7 +128,7 @@ public class MultipleRepeatGuard
 	/**
 	 * @see RepeatGuard#checkAndIncrement()
 	 */
-	public synchronized boolean checkAndIncrement(String ID) {
+	public boolean checkAndIncrement(String ID) {
 		RepeatGuard guard = getOrCreateRepeatGuard(ID);
 		return guard.checkAndIncrement();
 	}
@@ -113,7 +136,7 @@ public class MultipleRepeatGuard
 	/**
 	 * @see RepeatGuard#increment()
 	 */
-	public synchronized void increment(String ID) {
+	public void increment(String ID) {
 		RepeatGuard guard = getOrCreateRepeatGuard(ID);
 		guard.increment();
 	}
@@ -121,7 +144,7 @@ public class MultipleRepeatGuard
 	/**
 	 * @see RepeatGuard#counter()
 	 */
-	public synchronized int counter(String ID) {
+	public int counter(String ID) {
 		RepeatGuard guard = getOrCreateRepeatGuard(ID);
 		return guard.counter();
 	}
@@ -133,7 +156,7 @@ public class MultipleRepeatGuard
 	 * 
 	 * @see RepeatGuard#counterAtLastExecution()
 	 */
-	public synchronized int counterAtLastExecution(String ID) {
+	public int counterAtLastExecution(String ID) {
 		RepeatGuard guard = getOrCreateRepeatGuard(ID);
 		return guard.counterAtLastExecution();
 	}
@@ -142,11 +165,11 @@ public class MultipleRepeatGuard
 	////////////////////////////// Map administration ///////////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////
 
-	public synchronized boolean hasRepeatGuard(String ID) {
+	public boolean hasRepeatGuard(String ID) {
 		return guards.containsKey(ID);
 	}
 	
-	public synchronized RepeatGuard getRepeatGuard(String ID) {
+	public RepeatGuard getRepeatGuard(String ID) {
 		return getOrCreateRepeatGuard(ID);
 	}
 	
@@ -157,8 +180,10 @@ public class MultipleRepeatGuard
 	 * @param ID
 	 * @param guard
 	 */
-	public synchronized void setRepeatGuard(String ID, RepeatGuard guard) {
-		guards.put(ID, guard);
+	public void setRepeatGuard(String ID, RepeatGuard guard) {
+		if (guards.put(ID, new GuardEntry(guard)) == null) {
+			evictIfNeeded();
+		}
 	}
 	
 	/**
@@ -169,66 +194,103 @@ public class MultipleRepeatGuard
 		return guards.size();
 	}
 	
-	public synchronized void clearCache() {
+	public void clearCache() {
 		guards.clear();
 	}
 	
+	/**
+	 * Sets a new value for the maximum number of RepeatGuards in the cache,
+	 * overriding the <code>maxCacheSize</code> value given in the constructor
+	 * or in previous invocations of this method.
+	 * @param maxEntries must be a positive number
+	 */
 	public void setCacheLimit(int maxEntries) {
-		guards.setMaxEntries(maxEntries);
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("maxEntries must be >= 1");
+		}
+		this.maxEntries = maxEntries;
 	}
 	
 	/////////////////////////////////////////////////////////////////////////////////////
 	/////////////////////// Auxiliary methods and inner classes /////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////
 
-	private synchronized RepeatGuard getOrCreateRepeatGuard(String ID) {
-		RepeatGuard guard = guards.get(ID);
-		if (guard == null) {
-			guard = new RepeatGuard(defaultInterval, defaultTimeUnit, defaultMaxRepetitions, defaultLogic);
-			guards.put(ID, guard);
+	private RepeatGuard getOrCreateRepeatGuard(String ID) {
+		GuardEntry entry = guards.get(ID);
+		if (entry == null) {
+			GuardEntry newEntry = new GuardEntry(new RepeatGuard(defaultInterval, defaultTimeUnit, defaultMaxRepetitions, defaultLogic));
+			entry = guards.putIfAbsent(ID, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+				evictIfNeeded();
+			}
+		}
+		else {
+			entry.touch();
 		}
-		return guard;
+		return entry.guard;
 	}
-
+	
 	/**
-	 * @TODO This class could be moved up to module jacsutil later.
+	 * Removes the least recently used RepeatGuards if the cache has exceeded its limit.
+	 * The cache is shrunk by an additional 1/16 of its limit, so that this rather expensive 
+	 * operation is amortized over many subsequent new IDs.
+	 * <p>
+	 * If another thread is already busy removing RepeatGuards, this method returns immediately. 
 	 */
-	private static class BoundedHashMap<K,V> extends LinkedHashMap<K,V> {
-		private volatile int maxEntries;
-
-		/**
-		 * Constructor.
-		 * The initial capacity of this map is determined as <code>Math.min(16, maxEntries)</code>.
-		 * The load factor is taken as 0.75 which is the default for other map types.
-		 * <p>
-		 * @param maxEntries the maximum capacity of this map. 
-		 * @param accessOrder
-		 *            if true, then this map is an LRU (least-recently used) cache that will remove the least recently used entries 
-		 *            when the number of stored entries has reached <code>maxEntries</code> and a new entry is stored; 
-		 *            otherwise insertion order is used (removing the entry that was inserted first).
-		 *            See {@link LinkedHashMap#LinkedHashMap(int, float, boolean)}.
-		 */
-		BoundedHashMap(int maxEntries, boolean accessOrder) {
-			super(Math.min(16, maxEntries), 0.75f, accessOrder);
-			setMaxEntries(maxEntries);
+	private void evictIfNeeded() {
+		int limit = maxEntries;
+		if (guards.size() <= limit || !evicting.compareAndSet(false, true)) {
+			return;
 		}
+		try {
+			List<Map.Entry<String, GuardEntry>> entries = new ArrayList<Map.Entry<String, GuardEntry>>(guards.entrySet());
+			int toRemove = entries.size() - (limit - limit / 16);
+			if (toRemove <= 0) {
+				return;
+			}
+			long[] accessTimes = new long[entries.size()];
+			for (int i = 0; i < accessTimes.length; i++) {
+				accessTimes[i] = entries.get(i).getValue().lastAccessNs;
+			}
+			Arrays.sort(accessTimes);
+			long threshold = accessTimes[Math.min(toRemove, accessTimes.length) - 1];
+			for (Map.Entry<String, GuardEntry> entry : entries) {
+				if (toRemove <= 0) {
+					break;
+				}
+				// the access time may have been updated in the meantime, in which case the RepeatGuard stays
+				if (entry.getValue().lastAccessNs <= threshold && guards.remove(entry.getKey(), entry.getValue())) {
+					toRemove--;
+				}
+			}
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	/**
+	 * Wraps a RepeatGuard with its last access time, used to find the least recently used RepeatGuards.
+	 * The access time is written without synchronization, which is good enough for an approximate LRU.
+	 * To avoid that threads using the same ID keep invalidating each other's cache line, 
+	 * the access time is only updated with a resolution of {@link #TOUCH_RESOLUTION_NS}.
+	 */
+	private static class GuardEntry {
+		private static final long TOUCH_RESOLUTION_NS = TimeUnit.MILLISECONDS.toNanos(1);
+		
+		final RepeatGuard guard;
+		volatile long lastAccessNs;
 		
-		@Override
-		protected boolean removeEldestEntry(Entry eldest) {
-			return size() > maxEntries;
+		GuardEntry(RepeatGuard guard) {
+			this.guard = guard;
+			lastAccessNs = System.nanoTime();
 		}
 		
-		/**
-		 * Sets a new value for the maximum number of entries in this map,
-		 * overriding the <code>maxEntries</code> value given in the constructor
-		 * or in previous invocations of this method.
-		 * @param maxEntries must be a positive number
-		 */
-		void setMaxEntries(int maxEntries) {
-			if (maxEntries <= 0) {
-				throw new IllegalArgumentException("maxEntries must be >= 1");
+		void touch() {
+			long now = System.nanoTime();
+			if (now - lastAccessNs > TOUCH_RESOLUTION_NS) {
+				lastAccessNs = now;
 			}
-			this.maxEntries = maxEntries;
 		}
 	}
 }
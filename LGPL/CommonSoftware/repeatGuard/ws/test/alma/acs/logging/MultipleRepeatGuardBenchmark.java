@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.logging;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import alma.acs.logging.RepeatGuard.Logic;
+
+/**
+ * Contention benchmark for {@link MultipleRepeatGuard}. 
+ * Not part of the TAT tests; run it manually with 
+ * <code>acsStartJava alma.acs.logging.MultipleRepeatGuardBenchmark [durationSeconds]</code>.
+ * <p>
+ * For 1 to 64 threads and 10k / 100k IDs, every thread calls {@link MultipleRepeatGuard#checkAndIncrement(String)}
+ * with pseudo-random IDs for the given duration, once with an unbounded cache and once with a cache 
+ * limited to half the number of IDs (so that the LRU cleanup is exercised), and the throughput is printed.
+ */
+public class MultipleRepeatGuardBenchmark {
+
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+	private static final int[] IDS = {10000, 100000};
+
+	public static void main(String[] args) throws Exception {
+		long durationMillis = Math.max(1, (args.length > 0 ? Long.parseLong(args[0]) * 1000 : 2000));
+		System.out.println("threads\tIDs\tcacheLimit\tops/s");
+		for (int numIDs : IDS) {
+			final String[] ids = new String[numIDs];
+			for (int i = 0; i < numIDs; i++) {
+				ids[i] = "Component-" + i;
+			}
+			for (int cacheLimit : new int[] {Integer.MAX_VALUE, numIDs / 2}) {
+				for (int numThreads : THREADS) {
+					MultipleRepeatGuard guard = new MultipleRepeatGuard(100, TimeUnit.MILLISECONDS, 10, Logic.OR, cacheLimit);
+					long ops = run(guard, ids, numThreads, durationMillis);
+					System.out.println(numThreads + "\t" + numIDs + "\t" + 
+							(cacheLimit == Integer.MAX_VALUE ? "none" : Integer.toString(cacheLimit)) + "\t" + 
+							(ops * 1000 / durationMillis));
+				}
+			}
+		}
+	}
+
+	private static long run(final MultipleRepeatGuard guard, final String[] ids, int numThreads, final long durationMillis) throws InterruptedException {
+		final AtomicLong totalOps = new AtomicLong(0);
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		final CountDownLatch doneSignal = new CountDownLatch(numThreads);
+		for (int t = 0; t < numThreads; t++) {
+			final int seed = t * 7919 + 1;
+			Thread thread = new Thread("MultipleRepeatGuardBenchmark-" + t) {
+				public void run() {
+					try {
+						startSignal.await();
+						// xorshift to pick IDs without contention on a shared Random
+						int x = seed;
+						long ops = 0;
+						long endTime = System.currentTimeMillis() + durationMillis;
+						while ((ops & 0x3ff) != 0 || System.currentTimeMillis() < endTime) {
+							x ^= x << 13;
+							x ^= x >>> 17;
+							x ^= x << 5;
+							guard.checkAndIncrement(ids[(x & 0x7fffffff) % ids.length]);
+							ops++;
+						}
+						totalOps.addAndGet(ops);
+					} catch (InterruptedException ex) {
+						// just exit
+					} finally {
+						doneSignal.countDown();
+					}
+				}
+			};
+			thread.start();
+		}
+		startSignal.countDown();
+		doneSignal.await();
+		return totalOps.get();
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * ALMA - Atacama Large Millimeter Array
+ * Copyright (c) ESO - European Southern Observatory, 2013
+ * (in the framework of the ALMA collaboration).
+ * All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ *******************************************************************************/
+package alma.acs.logging;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import alma.acs.logging.RepeatGuard.Logic;
+
+/**
+ * Tests {@link MultipleRepeatGuard}, in particular the RepeatGuard cache limit
+ * and the use from concurrent threads.
+ */
+public class MultipleRepeatGuardTest extends TestCase {
+
+	public MultipleRepeatGuardTest(String name) {
+		super(name);
+	}
+
+	/**
+	 * Each ID must behave like a separate RepeatGuard.
+	 */
+	public void testSameLogicAsRepeatGuard() {
+		MultipleRepeatGuard mrg = new MultipleRepeatGuard(1000, TimeUnit.SECONDS, 10, Logic.OR);
+		RepeatGuard rgA = new RepeatGuard(1000, TimeUnit.SECONDS, 10, Logic.OR);
+		RepeatGuard rgB = new RepeatGuard(1000, TimeUnit.SECONDS, 10, Logic.OR);
+		for (int i = 1; i <= 50; i++) {
+			assertEquals("ID A, i=" + i, rgA.checkAndIncrement(), mrg.checkAndIncrement("A"));
+			if (i % 2 == 0) {
+				mrg.increment("B");
+				rgB.increment();
+			}
+			assertEquals("ID B, i=" + i, rgB.check(), mrg.check("B"));
+			assertEquals(rgA.counter(), mrg.counter("A"));
+			assertEquals(rgA.counterAtLastExecution(), mrg.counterAtLastExecution("A"));
+			assertEquals(rgB.counter(), mrg.counter("B"));
+		}
+		assertEquals(2, mrg.getCacheSize());
+		assertTrue(mrg.hasRepeatGuard("A"));
+		assertFalse(mrg.hasRepeatGuard("C"));
+
+		RepeatGuard custom = new RepeatGuard(-1, null, 1, Logic.COUNTER);
+		mrg.setRepeatGuard("C", custom);
+		assertSame(custom, mrg.getRepeatGuard("C"));
+		mrg.clearCache();
+		assertEquals(0, mrg.getCacheSize());
+	}
+
+	/**
+	 * The cache must not grow beyond its limit, and frequently used IDs must survive the cleanup.
+	 */
+	public void testCacheLimit() throws Exception {
+		final int limit = 100;
+		MultipleRepeatGuard mrg = new MultipleRepeatGuard(-1, null, 10, Logic.COUNTER, limit);
+		RepeatGuard reference = new RepeatGuard(-1, null, 10, Logic.COUNTER);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("i=" + i, reference.checkAndIncrement(), mrg.checkAndIncrement("hot"));
+			mrg.check("ID-" + i);
+			assertTrue(mrg.getCacheSize() <= limit);
+			if (i % 20 == 0) {
+				Thread.sleep(2);
+			}
+		}
+		assertTrue(mrg.hasRepeatGuard("hot"));
+		assertTrue(mrg.hasRepeatGuard("ID-999"));
+		assertFalse(mrg.hasRepeatGuard("ID-0"));
+
+		mrg.setCacheLimit(10);
+		mrg.check("new");
+		assertTrue(mrg.getCacheSize() <= 10);
+		try {
+			mrg.setCacheLimit(0);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException ex) {
+			// good
+		}
+	}
+
+	/**
+	 * Many threads incrementing the same IDs must not lose any increment.
+	 */
+	public void testConcurrentAccess() throws Exception {
+		final int numThreads = 8;
+		final int numIDs = 100;
+		final int callsPerThread = 10000;
+		final MultipleRepeatGuard mrg = new MultipleRepeatGuard(-1, null, 10, Logic.COUNTER);
+		final AtomicInteger executions = new AtomicInteger(0);
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		Future<?>[] futures = new Future<?>[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			futures[t] = pool.submit(new Callable<Void>() {
+				public Void call() {
+					for (int i = 0; i < callsPerThread; i++) {
+						if (mrg.checkAndIncrement("ID-" + (i % numIDs))) {
+							executions.incrementAndGet();
+						}
+					}
+					return null;
+				}
+			});
+		}
+		for (Future<?> future : futures) {
+			future.get(1, TimeUnit.MINUTES);
+		}
+		pool.shutdown();
+
+		// Each ID got 800 calls: the first one executes, then every 10th
+		int callsPerID = numThreads * callsPerThread / numIDs;
+		assertEquals(numIDs * (1 + (callsPerID - 1) / 10), executions.get());
+		assertEquals(numIDs, mrg.getCacheSize());
+	}
+}